@@ -0,0 +1,82 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.benchmarks;
+
+import static org.openjdk.jmh.results.format.ResultFormatType.JSON;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar.
+ * <p>
+ * Accepts the usual JMH command line options (e.g. a regular expression for selecting benchmarks), but defaults to
+ * writing the results as JSON (<code>jmh-result.json</code> in the working directory), so they can be archived and
+ * compared between builds. All benchmarks run in headless mode and only use synthetic data, so no display or network
+ * access is needed:
+ * 
+ * <pre>
+ * mvn -Pbenchmarks -pl deegree-benchmarks -am package
+ * java -jar deegree-benchmarks/target/benchmarks.jar [regexp] [-rff result.json]
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class BenchmarkRunner {
+
+    public static void main( String[] args )
+                            throws Exception {
+        System.setProperty( "java.awt.headless", "true" );
+        CommandLineOptions cmdOptions = new CommandLineOptions( args );
+        if ( cmdOptions.shouldHelp() || cmdOptions.shouldList() ) {
+            Main.main( args );
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent( cmdOptions );
+        options.jvmArgsAppend( "-Djava.awt.headless=true" );
+        if ( !cmdOptions.getResultFormat().hasValue() ) {
+            options.resultFormat( JSON );
+        }
+        new Runner( options.build() ).run();
+    }
+}
@@ -0,0 +1,114 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.benchmarks;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.io.InputStream;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.feature.Feature;
+import org.deegree.feature.xpath.TypedObjectNodeXPathEvaluator;
+import org.deegree.filter.Filter;
+import org.deegree.filter.XPathEvaluator;
+import org.deegree.filter.xml.Filter110XMLDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for {@link Filter#evaluate(Object, XPathEvaluator)} on in-memory features using the filter
+ * <code>filter.xml</code> (comparison, like and BBOX operators).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+    private static final int NUM_FEATURES = 1000;
+
+    private Filter filter;
+
+    private List<Feature> features;
+
+    private XPathEvaluator<TypedObjectNode> evaluator;
+
+    @Setup
+    public void setup()
+                            throws Exception {
+        InputStream is = FilterBenchmark.class.getResourceAsStream( "filter.xml" );
+        try {
+            XMLStreamReader in = XMLInputFactory.newInstance().createXMLStreamReader( is );
+            in.nextTag();
+            filter = Filter110XMLDecoder.parse( in );
+            in.close();
+        } finally {
+            is.close();
+        }
+        features = new SyntheticData().parcels( NUM_FEATURES, 16 );
+        evaluator = new TypedObjectNodeXPathEvaluator();
+    }
+
+    @Benchmark
+    public int evaluate()
+                            throws Exception {
+        int matches = 0;
+        for ( Feature feature : features ) {
+            if ( filter.evaluate( feature, evaluator ) ) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,114 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.benchmarks;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.primitive.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for transforming polygons with {@link GeometryTransformer} between common EPSG coordinate systems.
+ * <p>
+ * The <code>transformation</code> parameter has the form <code>source&gt;target</code>. Polygons are generated in
+ * EPSG:4326 (covering Germany) and transformed into the source system during setup.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class GeometryTransformerBenchmark {
+
+    private static final int NUM_GEOMETRIES = 100;
+
+    @Param({ "EPSG:4326>EPSG:25832", "EPSG:4326>EPSG:3857", "EPSG:31467>EPSG:25832" })
+    public String transformation;
+
+    private List<Polygon> polygons;
+
+    private GeometryTransformer transformer;
+
+    @Setup
+    public void setup()
+                            throws Exception {
+        String[] crsIds = transformation.split( ">" );
+        ICRS wgs84 = CRSManager.lookup( "EPSG:4326" );
+        ICRS source = CRSManager.lookup( crsIds[0] );
+        ICRS target = CRSManager.lookup( crsIds[1] );
+
+        SyntheticData data = new SyntheticData( new GeometryFactory().createEnvelope( 6, 48, 14, 54, wgs84 ) );
+        List<Polygon> wgs84Polygons = data.polygons( NUM_GEOMETRIES, 64 );
+        polygons = new ArrayList<Polygon>( wgs84Polygons.size() );
+        GeometryTransformer toSource = new GeometryTransformer( source );
+        for ( Polygon polygon : wgs84Polygons ) {
+            polygons.add( toSource.transform( polygon ) );
+        }
+        transformer = new GeometryTransformer( target );
+    }
+
+    @Benchmark
+    public void transform( Blackhole bh )
+                            throws Exception {
+        for ( Polygon polygon : polygons ) {
+            bh.consume( transformer.transform( polygon ) );
+        }
+    }
+}
@@ -0,0 +1,126 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.benchmarks;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static org.deegree.gml.GMLVersion.GML_32;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.gml.GMLInputFactory;
+import org.deegree.gml.GMLOutputFactory;
+import org.deegree.gml.GMLStreamReader;
+import org.deegree.gml.GMLStreamWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for encoding and decoding GML 3.2 polygons (<code>GML3GeometryWriter</code> and
+ * <code>GML3GeometryReader</code>).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class GmlGeometryBenchmark {
+
+    @Param({ "16", "1024" })
+    public int numVertices;
+
+    private Polygon polygon;
+
+    private byte[] encoded;
+
+    private final XMLOutputFactory outFac = XMLOutputFactory.newInstance();
+
+    private final XMLInputFactory inFac = XMLInputFactory.newInstance();
+
+    @Setup
+    public void setup()
+                            throws Exception {
+        polygon = new SyntheticData().polygons( 1, numVertices ).get( 0 );
+        encoded = write().toByteArray();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream writeGeometry()
+                            throws Exception {
+        return write();
+    }
+
+    @Benchmark
+    public void readGeometry( Blackhole bh )
+                            throws Exception {
+        XMLStreamReader xmlStream = inFac.createXMLStreamReader( new ByteArrayInputStream( encoded ) );
+        xmlStream.nextTag();
+        GMLStreamReader gmlStream = GMLInputFactory.createGMLStreamReader( GML_32, xmlStream );
+        bh.consume( gmlStream.readGeometry() );
+        xmlStream.close();
+    }
+
+    private ByteArrayOutputStream write()
+                            throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLStreamWriter xmlStream = outFac.createXMLStreamWriter( bos, "UTF-8" );
+        GMLStreamWriter gmlStream = GMLOutputFactory.createGMLStreamWriter( GML_32, xmlStream );
+        gmlStream.write( polygon );
+        gmlStream.close();
+        return bos;
+    }
+}
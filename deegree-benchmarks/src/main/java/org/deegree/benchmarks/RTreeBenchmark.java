@@ -0,0 +1,123 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.benchmarks;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.commons.index.RTree;
+import org.deegree.commons.utils.Pair;
+import org.deegree.geometry.Envelope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for building and querying a bulk-loaded {@link RTree}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RTreeBenchmark {
+
+    private static final int NUM_QUERIES = 100;
+
+    @Param({ "10000", "100000" })
+    public int numObjects;
+
+    private List<Pair<float[], Integer>> entries;
+
+    private float[][] queryBoxes;
+
+    private RTree<Integer> tree;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        List<Envelope> envs = data.envelopes( numObjects, 0.001 );
+        entries = new ArrayList<Pair<float[], Integer>>( envs.size() );
+        for ( int i = 0; i < envs.size(); i++ ) {
+            entries.add( new Pair<float[], Integer>( toFloats( envs.get( i ) ), i ) );
+        }
+        List<Envelope> queries = data.envelopes( NUM_QUERIES, 0.05 );
+        queryBoxes = new float[queries.size()][];
+        for ( int i = 0; i < queryBoxes.length; i++ ) {
+            queryBoxes[i] = toFloats( queries.get( i ) );
+        }
+        tree = build();
+    }
+
+    @Benchmark
+    public RTree<Integer> insertBulk() {
+        return build();
+    }
+
+    @Benchmark
+    public void query( Blackhole bh ) {
+        for ( float[] queryBox : queryBoxes ) {
+            bh.consume( tree.query( queryBox ) );
+        }
+    }
+
+    private RTree<Integer> build() {
+        RTree<Integer> rtree = new RTree<Integer>( new float[] { 0, 0, 10000, 10000 }, 128 );
+        rtree.insertBulk( new ArrayList<Pair<float[], Integer>>( entries ) );
+        return rtree;
+    }
+
+    private static float[] toFloats( Envelope env ) {
+        return new float[] { (float) env.getMin().get0(), (float) env.getMin().get1(), (float) env.getMax().get0(),
+                            (float) env.getMax().get1() };
+    }
+}
@@ -0,0 +1,168 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.benchmarks;
+
+import static java.awt.RenderingHints.KEY_ANTIALIASING;
+import static java.awt.RenderingHints.VALUE_ANTIALIAS_ON;
+import static java.awt.image.BufferedImage.TYPE_INT_ARGB;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+import org.deegree.rendering.r2d.Java2DRenderer;
+import org.deegree.rendering.r2d.Java2DTextRenderer;
+import org.deegree.style.styling.LineStyling;
+import org.deegree.style.styling.PolygonStyling;
+import org.deegree.style.styling.TextStyling;
+import org.deegree.style.styling.components.Fill;
+import org.deegree.style.styling.components.Halo;
+import org.deegree.style.styling.components.Stroke;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for rendering polygons, lines and labels with {@link Java2DRenderer} and {@link Java2DTextRenderer}
+ * (which uses the <code>LabelRenderer</code>) into a 1024x1024 image.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderingBenchmark {
+
+    private static final int SIZE = 1024;
+
+    private static final int NUM_GEOMETRIES = 1000;
+
+    @Param({ "16", "256" })
+    public int numVertices;
+
+    private Graphics2D graphics;
+
+    private Java2DRenderer renderer;
+
+    private Java2DTextRenderer textRenderer;
+
+    private List<Polygon> polygons;
+
+    private List<LineString> lineStrings;
+
+    private List<Point> points;
+
+    private String[] labels;
+
+    private final PolygonStyling polygonStyling = new PolygonStyling();
+
+    private final LineStyling lineStyling = new LineStyling();
+
+    private final TextStyling textStyling = new TextStyling();
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData();
+        polygons = data.polygons( NUM_GEOMETRIES, numVertices );
+        lineStrings = data.lineStrings( NUM_GEOMETRIES, numVertices );
+        points = data.points( NUM_GEOMETRIES );
+        labels = new String[NUM_GEOMETRIES];
+        for ( int i = 0; i < labels.length; i++ ) {
+            labels[i] = "Label " + i;
+        }
+
+        polygonStyling.fill = new Fill();
+        polygonStyling.fill.color = new Color( 170, 170, 255 );
+        polygonStyling.stroke = new Stroke();
+        polygonStyling.stroke.color = new Color( 0, 0, 170 );
+        lineStyling.stroke.width = 2;
+        textStyling.halo = new Halo();
+
+        BufferedImage image = new BufferedImage( SIZE, SIZE, TYPE_INT_ARGB );
+        graphics = image.createGraphics();
+        graphics.setRenderingHint( KEY_ANTIALIASING, VALUE_ANTIALIAS_ON );
+        Envelope bbox = new GeometryFactory().createEnvelope( 0, 0, 10000, 10000, null );
+        renderer = new Java2DRenderer( graphics, SIZE, SIZE, bbox );
+        textRenderer = new Java2DTextRenderer( renderer );
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void renderPolygons() {
+        for ( Polygon polygon : polygons ) {
+            renderer.render( polygonStyling, polygon );
+        }
+    }
+
+    @Benchmark
+    public void renderLines() {
+        for ( LineString lineString : lineStrings ) {
+            renderer.render( lineStyling, lineString );
+        }
+    }
+
+    @Benchmark
+    public void renderLabels() {
+        for ( int i = 0; i < labels.length; i++ ) {
+            textRenderer.render( textStyling, labels[i], points.get( i ) );
+        }
+    }
+}
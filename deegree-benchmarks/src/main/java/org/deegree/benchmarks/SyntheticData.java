@@ -0,0 +1,261 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.benchmarks;
+
+import static org.deegree.commons.tom.primitive.BaseType.DECIMAL;
+import static org.deegree.commons.tom.primitive.BaseType.INTEGER;
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.POLYGON;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.feature.GenericFeature;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.property.SimpleProperty;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
+import org.deegree.geometry.primitive.LineString;
+import org.deegree.geometry.primitive.LinearRing;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.primitive.Polygon;
+
+/**
+ * Generates the synthetic geometries and features that the benchmarks operate on.
+ * <p>
+ * All data is derived from a fixed seed, so every run (and every build) works on exactly the same input.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SyntheticData {
+
+    /** Namespace of the synthetic feature type. */
+    public static final String APP_NS = "http://www.deegree.org/app";
+
+    /** Name of the synthetic feature type. */
+    public static final QName PARCEL = new QName( APP_NS, "Parcel", "app" );
+
+    private static final long SEED = 20140101L;
+
+    private static final GeometryFactory fac = new GeometryFactory();
+
+    private final Random random = new Random( SEED );
+
+    private final Envelope extent;
+
+    private final ICRS crs;
+
+    /**
+     * Creates a new {@link SyntheticData} generator for the extent <code>0,0,10000,10000</code> (without CRS).
+     */
+    public SyntheticData() {
+        this( fac.createEnvelope( 0, 0, 10000, 10000, null ) );
+    }
+
+    /**
+     * Creates a new {@link SyntheticData} generator.
+     * 
+     * @param extent
+     *            area that contains all generated geometries, must not be <code>null</code>
+     */
+    public SyntheticData( Envelope extent ) {
+        this.extent = extent;
+        this.crs = extent.getCoordinateSystem();
+    }
+
+    /**
+     * Returns star-shaped (but simple) polygons with randomly jittered vertices.
+     * 
+     * @param num
+     *            number of polygons
+     * @param numVertices
+     *            number of vertices of each exterior ring
+     * @return polygons, never <code>null</code>
+     */
+    public List<Polygon> polygons( int num, int numVertices ) {
+        List<Polygon> polygons = new ArrayList<Polygon>( num );
+        double maxRadius = Math.min( extent.getSpan0(), extent.getSpan1() ) / 50;
+        for ( int i = 0; i < num; i++ ) {
+            double cx = randomX();
+            double cy = randomY();
+            double radius = maxRadius * ( 0.2 + 0.8 * random.nextDouble() );
+            double[] coords = new double[( numVertices + 1 ) * 2];
+            for ( int j = 0; j < numVertices; j++ ) {
+                double angle = 2 * Math.PI * j / numVertices;
+                double r = radius * ( 0.6 + 0.4 * random.nextDouble() );
+                coords[j * 2] = cx + r * Math.cos( angle );
+                coords[j * 2 + 1] = cy + r * Math.sin( angle );
+            }
+            coords[numVertices * 2] = coords[0];
+            coords[numVertices * 2 + 1] = coords[1];
+            Points points = fac.createPoints( crs, coords, 2 );
+            LinearRing ring = fac.createLinearRing( null, crs, points );
+            polygons.add( fac.createPolygon( "P" + i, crs, ring, null ) );
+        }
+        return polygons;
+    }
+
+    /**
+     * Returns line strings that follow a random walk.
+     * 
+     * @param num
+     *            number of line strings
+     * @param numVertices
+     *            number of vertices of each line string
+     * @return line strings, never <code>null</code>
+     */
+    public List<LineString> lineStrings( int num, int numVertices ) {
+        List<LineString> lineStrings = new ArrayList<LineString>( num );
+        double step = Math.min( extent.getSpan0(), extent.getSpan1() ) / 500;
+        for ( int i = 0; i < num; i++ ) {
+            double x = randomX();
+            double y = randomY();
+            double[] coords = new double[numVertices * 2];
+            for ( int j = 0; j < numVertices; j++ ) {
+                coords[j * 2] = x;
+                coords[j * 2 + 1] = y;
+                x = clamp( x + step * ( random.nextDouble() - 0.5 ), extent.getMin().get0(), extent.getMax().get0() );
+                y = clamp( y + step * ( random.nextDouble() - 0.5 ), extent.getMin().get1(), extent.getMax().get1() );
+            }
+            lineStrings.add( fac.createLineString( "L" + i, crs, fac.createPoints( crs, coords, 2 ) ) );
+        }
+        return lineStrings;
+    }
+
+    /**
+     * Returns randomly distributed points.
+     * 
+     * @param num
+     *            number of points
+     * @return points, never <code>null</code>
+     */
+    public List<Point> points( int num ) {
+        List<Point> points = new ArrayList<Point>( num );
+        for ( int i = 0; i < num; i++ ) {
+            points.add( fac.createPoint( "PT" + i, randomX(), randomY(), crs ) );
+        }
+        return points;
+    }
+
+    /**
+     * Returns random envelopes (e.g. for spatial queries).
+     * 
+     * @param num
+     *            number of envelopes
+     * @param fraction
+     *            edge length of the envelopes (relative to the extent)
+     * @return envelopes, never <code>null</code>
+     */
+    public List<Envelope> envelopes( int num, double fraction ) {
+        List<Envelope> envelopes = new ArrayList<Envelope>( num );
+        double w = extent.getSpan0() * fraction;
+        double h = extent.getSpan1() * fraction;
+        for ( int i = 0; i < num; i++ ) {
+            double x = extent.getMin().get0() + random.nextDouble() * ( extent.getSpan0() - w );
+            double y = extent.getMin().get1() + random.nextDouble() * ( extent.getSpan1() - h );
+            envelopes.add( fac.createEnvelope( x, y, x + w, y + h, crs ) );
+        }
+        return envelopes;
+    }
+
+    /**
+     * Returns the synthetic feature type: <code>app:Parcel</code> with properties <code>app:name</code> (string),
+     * <code>app:category</code> (integer), <code>app:area</code> (decimal) and <code>app:geometry</code> (polygon).
+     * 
+     * @return feature type, never <code>null</code>
+     */
+    public static GenericFeatureType getParcelType() {
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new SimplePropertyType( new QName( APP_NS, "name", "app" ), 0, 1, STRING, null, null ) );
+        pts.add( new SimplePropertyType( new QName( APP_NS, "category", "app" ), 0, 1, INTEGER, null, null ) );
+        pts.add( new SimplePropertyType( new QName( APP_NS, "area", "app" ), 0, 1, DECIMAL, null, null ) );
+        pts.add( new GeometryPropertyType( new QName( APP_NS, "geometry", "app" ), 0, 1, null, null, POLYGON, DIM_2,
+                                           null ) );
+        return new GenericFeatureType( PARCEL, pts, false );
+    }
+
+    /**
+     * Returns <code>app:Parcel</code> features with polygon geometries.
+     * 
+     * @param num
+     *            number of features
+     * @param numVertices
+     *            number of vertices of each polygon
+     * @return features, never <code>null</code>
+     */
+    public List<Feature> parcels( int num, int numVertices ) {
+        GenericFeatureType ft = getParcelType();
+        List<PropertyType> pts = ft.getPropertyDeclarations();
+        List<Polygon> polygons = polygons( num, numVertices );
+        List<Feature> features = new ArrayList<Feature>( num );
+        for ( int i = 0; i < num; i++ ) {
+            List<Property> props = new ArrayList<Property>( 4 );
+            props.add( new SimpleProperty( (SimplePropertyType) pts.get( 0 ), "Parcel " + i ) );
+            props.add( new SimpleProperty( (SimplePropertyType) pts.get( 1 ), "" + random.nextInt( 10 ) ) );
+            props.add( new SimpleProperty( (SimplePropertyType) pts.get( 2 ), "" + random.nextInt( 1000 ) ) );
+            props.add( new GenericProperty( pts.get( 3 ), polygons.get( i ) ) );
+            features.add( new GenericFeature( ft, "PARCEL_" + i, props, null ) );
+        }
+        return features;
+    }
+
+    private double randomX() {
+        return extent.getMin().get0() + random.nextDouble() * extent.getSpan0();
+    }
+
+    private double randomY() {
+        return extent.getMin().get1() + random.nextDouble() * extent.getSpan1();
+    }
+
+    private static double clamp( double v, double min, double max ) {
+        return Math.max( min, Math.min( max, v ) );
+    }
+}
@@ -0,0 +1,306 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FeatureInputStream} that combines the results of several sources (e.g. queries), which are evaluated
+ * concurrently.
+ * <p>
+ * The features are returned in the order of the sources. Sources are evaluated in a window that starts at the source
+ * that is currently being read: at most <code>parallelism</code> sources are open at the same time and each of them
+ * buffers at most <code>capacity</code> features, so memory usage stays bounded even if the stream is read slowly.
+ * When the stream is closed (even before it has been read completely), all sources that have been opened are closed
+ * and sources that have not been opened yet are skipped.
+ * </p>
+ * <p>
+ * The sources are evaluated by an executor that is owned by the caller, see {@link #createExecutor(int)}.
+ * </p>
+ * 
+ * @see CombinedFeatureInputStream
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelFeatureInputStream implements FeatureInputStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ParallelFeatureInputStream.class );
+
+    private static final Object END = new Object();
+
+    private final ExecutorService service;
+
+    private final Producer[] producers;
+
+    private final int parallelism;
+
+    // index of the source that is currently being read
+    private int current;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates a new {@link ParallelFeatureInputStream} and starts the evaluation of the first sources.
+     * 
+     * @param service
+     *            executor that evaluates the sources, must not be <code>null</code>
+     * @param sources
+     *            sources of the features, evaluated in a separate thread, must not be <code>null</code>
+     * @param parallelism
+     *            maximum number of sources that are evaluated at the same time, must be positive
+     * @param capacity
+     *            maximum number of features to buffer per source, must be positive
+     */
+    public ParallelFeatureInputStream( ExecutorService service, List<Callable<FeatureInputStream>> sources,
+                                       int parallelism, int capacity ) {
+        if ( parallelism < 1 || capacity < 1 ) {
+            throw new IllegalArgumentException( "Parallelism and capacity must be positive." );
+        }
+        this.service = service;
+        this.parallelism = parallelism;
+        producers = new Producer[sources.size()];
+        for ( int i = 0; i < producers.length; i++ ) {
+            producers[i] = new Producer( i, sources.get( i ), capacity );
+        }
+        for ( int i = 0; i < Math.min( parallelism, producers.length ); i++ ) {
+            service.execute( producers[i] );
+        }
+    }
+
+    @Override
+    public void close() {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        for ( Producer producer : producers ) {
+            producer.cancel();
+        }
+    }
+
+    @Override
+    public FeatureCollection toCollection() {
+        return Features.toCollection( this );
+    }
+
+    @Override
+    public Iterator<Feature> iterator() {
+        return new Iterator<Feature>() {
+
+            private Feature next;
+
+            @Override
+            public boolean hasNext() {
+                if ( next == null ) {
+                    next = read();
+                }
+                return next != null;
+            }
+
+            @Override
+            public Feature next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                Feature f = next;
+                next = null;
+                return f;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int count() {
+        int i = 0;
+        for ( @SuppressWarnings("unused")
+        Feature f : this ) {
+            i++;
+        }
+        close();
+        return i;
+    }
+
+    private Feature read() {
+        while ( !closed && current < producers.length ) {
+            Object o;
+            try {
+                o = producers[current].queue.poll( 100, MILLISECONDS );
+            } catch ( InterruptedException e ) {
+                close();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException( "Interrupted while waiting for features.", e );
+            }
+            if ( o == null ) {
+                // not available yet, check if the stream has been closed in the meantime
+                continue;
+            }
+            if ( o instanceof Feature ) {
+                return (Feature) o;
+            }
+            if ( o instanceof Throwable ) {
+                close();
+                Throwable t = (Throwable) o;
+                throw new RuntimeException( t.getMessage(), t );
+            }
+            // source has been read completely, advance the window
+            current++;
+            int start = current + parallelism - 1;
+            if ( start < producers.length ) {
+                service.execute( producers[start] );
+            }
+        }
+        return null;
+    }
+
+    private class Producer implements Runnable {
+
+        private final int index;
+
+        private final Callable<FeatureInputStream> source;
+
+        private final BlockingQueue<Object> queue;
+
+        private volatile boolean cancelled;
+
+        private Producer( int index, Callable<FeatureInputStream> source, int capacity ) {
+            this.index = index;
+            this.source = source;
+            this.queue = new ArrayBlockingQueue<Object>( capacity );
+        }
+
+        @Override
+        public void run() {
+            Object last = END;
+            FeatureInputStream rs = null;
+            try {
+                if ( !cancelled ) {
+                    LOG.debug( "Evaluating source {}.", index );
+                    rs = source.call();
+                    Iterator<Feature> iter = rs.iterator();
+                    while ( !cancelled && iter.hasNext() ) {
+                        put( iter.next() );
+                    }
+                }
+            } catch ( Throwable t ) {
+                LOG.debug( "Evaluating source " + index + " failed: " + t.getMessage(), t );
+                last = t;
+            } finally {
+                if ( rs != null ) {
+                    try {
+                        rs.close();
+                    } catch ( Throwable t ) {
+                        LOG.debug( "Closing source " + index + " failed: " + t.getMessage(), t );
+                    }
+                }
+                try {
+                    put( last );
+                } catch ( InterruptedException e ) {
+                    // cancelled anyway
+                }
+            }
+        }
+
+        private void put( Object o )
+                                throws InterruptedException {
+            while ( !cancelled ) {
+                if ( queue.offer( o, 100, MILLISECONDS ) ) {
+                    return;
+                }
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            // free the buffered features
+            queue.clear();
+        }
+    }
+
+    /**
+     * Creates an executor for evaluating the sources of {@link ParallelFeatureInputStream}s. Sources that exceed the
+     * number of threads are queued. Idle threads expire, the executor must be shut down by the owner.
+     * 
+     * @param threads
+     *            maximum number of threads, must be positive
+     * @return executor, never <code>null</code>
+     */
+    public static ExecutorService createExecutor( int threads ) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor( threads, threads, 60, SECONDS,
+                                                              new LinkedBlockingQueue<Runnable>(),
+                                                              new DaemonThreadFactory() );
+        executor.allowCoreThreadTimeOut( true );
+        return executor;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread thread = new Thread( r, "feature-query-" + count.incrementAndGet() );
+            thread.setDaemon( true );
+            return thread;
+        }
+    }
+
+}
@@ -122,6 +122,10 @@ public class BBOX extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
+                    PreparedLiteral preparedBBox = getPreparedLiteral( param1Value, param2 );
+                    if ( preparedBBox != null ) {
+                        return preparedBBox.intersects( param1Value );
+                    }
                     Envelope transformedBBox = (Envelope) getCompatibleGeometry( param1Value, param2 );
                     return transformedBBox.intersects( param1Value );
                 }
@@ -64,6 +64,10 @@ public class Contains extends SpatialOperator {
         for ( TypedObjectNode paramValue : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( paramValue );
             if ( geom != null ) {
+                PreparedLiteral preparedLiteral = getPreparedLiteral( geom, geometry );
+                if ( preparedLiteral != null ) {
+                    return preparedLiteral.isWithin( geom );
+                }
                 Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
                 return geom.contains( transformedLiteral );
             }
@@ -64,6 +64,10 @@ public class Crosses extends SpatialOperator {
         for ( TypedObjectNode paramValue : propName.evaluate( obj, xpathEvaluator ) ) {
             Geometry geom = checkGeometryOrNull( paramValue );
             if ( geom != null ) {
+                PreparedLiteral preparedLiteral = getPreparedLiteral( geom, geometry );
+                if ( preparedLiteral != null ) {
+                    return preparedLiteral.crosses( geom );
+                }
                 Geometry transformedLiteral = getCompatibleGeometry( geom, geometry );
                 return geom.crosses( transformedLiteral );
             }
@@ -80,8 +80,7 @@ public class Intersects extends SpatialOperator {
             for ( TypedObjectNode paramValue : param1.evaluate( obj, xpathEvaluator ) ) {
                 Geometry param1Value = checkGeometryOrNull( paramValue );
                 if ( param1Value != null ) {
-                    Geometry transformedGeom = getCompatibleGeometry( param1Value, geometry );
-                    return transformedGeom.intersects( param1Value );
+                    return intersects( param1Value );
                 }
             }
         } else if ( obj instanceof Feature ) {
@@ -91,30 +90,21 @@ public class Intersects extends SpatialOperator {
             for ( Property prop : f.getProperties() ) {
                 if ( prop.getValue() instanceof Geometry ) {
                     foundGeom = true;
-                    Geometry geom = (Geometry) prop.getValue();
-                    Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                    if ( transformedGeom.intersects( geometry ) ) {
+                    if ( intersects( (Geometry) prop.getValue() ) ) {
                         return true;
                     }
                 }
             }
             if ( !foundGeom ) {
                 Envelope env = f.getEnvelope();
-                if ( env != null ) {
-                    Geometry g = getCompatibleGeometry( geometry, env );
-                    if ( g.intersects( geometry ) ) {
-                        return true;
-                    }
+                if ( env != null && intersects( env ) ) {
+                    return true;
                 }
             }
             if ( f.getExtraProperties() != null ) {
                 for ( Property prop : f.getExtraProperties().getProperties() ) {
-                    if ( prop.getValue() instanceof Geometry ) {
-                        Geometry geom = (Geometry) prop.getValue();
-                        Geometry transformedGeom = getCompatibleGeometry( geometry, geom );
-                        if ( transformedGeom.intersects( geometry ) ) {
-                            return true;
-                        }
+                    if ( prop.getValue() instanceof Geometry && intersects( (Geometry) prop.getValue() ) ) {
+                        return true;
                     }
                 }
             }
@@ -124,6 +114,16 @@ public class Intersects extends SpatialOperator {
         return false;
     }
 
+    private boolean intersects( Geometry param )
+                            throws FilterEvaluationException {
+        PreparedLiteral preparedLiteral = getPreparedLiteral( param, geometry );
+        if ( preparedLiteral != null ) {
+            return preparedLiteral.intersects( param );
+        }
+        Geometry transformedLiteral = getCompatibleGeometry( param, geometry );
+        return transformedLiteral.intersects( param );
+    }
+
     /**
      * @return the geometry
      */
@@ -0,0 +1,239 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.spatial;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.primitive.OrientableCurve;
+import org.deegree.geometry.primitive.OrientableSurface;
+import org.deegree.geometry.refs.GeometryReference;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+
+/**
+ * Literal geometry of a {@link SpatialOperator} (already transformed into the CRS of the evaluated values), prepared
+ * for repeated evaluation of topological predicates.
+ * <p>
+ * Every predicate first compares the envelopes of the operands and only performs the exact test (using a JTS
+ * {@link PreparedGeometry}) if the envelope test is not conclusive. The results are identical to the ones of the
+ * corresponding {@link Geometry} methods.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class PreparedLiteral {
+
+    private final Geometry literal;
+
+    private final com.vividsolutions.jts.geom.Geometry jtsGeom;
+
+    private final com.vividsolutions.jts.geom.Envelope jtsEnv;
+
+    private volatile PreparedGeometry prepared;
+
+    private PreparedLiteral( Geometry literal, com.vividsolutions.jts.geom.Geometry jtsGeom ) {
+        this.literal = literal;
+        this.jtsGeom = jtsGeom;
+        this.jtsEnv = jtsGeom.getEnvelopeInternal();
+    }
+
+    /**
+     * Creates a {@link PreparedLiteral} for the given geometry.
+     * 
+     * @param literal
+     *            literal geometry (in the CRS of the evaluated values), must not be <code>null</code>
+     * @return prepared literal, or <code>null</code> if the geometry is not backed by a JTS geometry
+     */
+    static PreparedLiteral create( Geometry literal ) {
+        Geometry geom = unwrap( literal );
+        if ( !( geom instanceof AbstractDefaultGeometry ) || geom instanceof OrientableCurve
+             || geom instanceof OrientableSurface ) {
+            return null;
+        }
+        return new PreparedLiteral( literal, ( (AbstractDefaultGeometry) geom ).getJTSGeometry() );
+    }
+
+    /**
+     * Returns the literal geometry.
+     * 
+     * @return literal geometry (in the CRS of the evaluated values), never <code>null</code>
+     */
+    Geometry getGeometry() {
+        return literal;
+    }
+
+    /**
+     * Returns whether the given value can be evaluated against a {@link PreparedLiteral}.
+     * <p>
+     * Envelopes and orientable primitives define their own predicate implementations, these (and non-JTS geometries)
+     * have to be evaluated using the {@link Geometry} methods.
+     * </p>
+     * 
+     * @param value
+     *            value to be evaluated, must not be <code>null</code>
+     * @return <code>true</code>, if the value can be evaluated against a prepared literal, <code>false</code> otherwise
+     */
+    static boolean accepts( Geometry value ) {
+        Geometry geom = unwrap( value );
+        return geom instanceof AbstractDefaultGeometry && !( geom instanceof Envelope )
+               && !( geom instanceof OrientableCurve ) && !( geom instanceof OrientableSurface );
+    }
+
+    /**
+     * Returns whether the literal intersects the given geometry.
+     * 
+     * @param value
+     *            value to be evaluated, must be accepted by {@link #accepts(Geometry)}
+     * @return <code>true</code>, if the literal intersects the geometry, <code>false</code> otherwise
+     */
+    boolean intersects( Geometry value ) {
+        com.vividsolutions.jts.geom.Geometry geom = getJTSGeometry( value );
+        if ( !jtsEnv.intersects( geom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return getPrepared().intersects( geom );
+    }
+
+    /**
+     * Returns whether the literal is disjoint from the given geometry.
+     * 
+     * @param value
+     *            value to be evaluated, must be accepted by {@link #accepts(Geometry)}
+     * @return <code>true</code>, if the literal is disjoint from the geometry, <code>false</code> otherwise
+     */
+    boolean isDisjoint( Geometry value ) {
+        return !intersects( value );
+    }
+
+    /**
+     * Returns whether the literal contains the given geometry.
+     * 
+     * @param value
+     *            value to be evaluated, must be accepted by {@link #accepts(Geometry)}
+     * @return <code>true</code>, if the literal contains the geometry, <code>false</code> otherwise
+     */
+    boolean contains( Geometry value ) {
+        com.vividsolutions.jts.geom.Geometry geom = getJTSGeometry( value );
+        if ( !jtsEnv.covers( geom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return getPrepared().contains( geom );
+    }
+
+    /**
+     * Returns whether the literal is within the given geometry.
+     * 
+     * @param value
+     *            value to be evaluated, must be accepted by {@link #accepts(Geometry)}
+     * @return <code>true</code>, if the literal is within the geometry, <code>false</code> otherwise
+     */
+    boolean isWithin( Geometry value ) {
+        com.vividsolutions.jts.geom.Geometry geom = getJTSGeometry( value );
+        if ( !geom.getEnvelopeInternal().covers( jtsEnv ) ) {
+            return false;
+        }
+        return getPrepared().within( geom );
+    }
+
+    /**
+     * Returns whether the given geometry touches the literal.
+     * 
+     * @param value
+     *            value to be evaluated, must be accepted by {@link #accepts(Geometry)}
+     * @return <code>true</code>, if the geometry touches the literal, <code>false</code> otherwise
+     */
+    boolean touches( Geometry value ) {
+        com.vividsolutions.jts.geom.Geometry geom = getJTSGeometry( value );
+        if ( !jtsEnv.intersects( geom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return geom.touches( jtsGeom );
+    }
+
+    /**
+     * Returns whether the given geometry overlaps the literal.
+     * 
+     * @param value
+     *            value to be evaluated, must be accepted by {@link #accepts(Geometry)}
+     * @return <code>true</code>, if the geometry overlaps the literal, <code>false</code> otherwise
+     */
+    boolean overlaps( Geometry value ) {
+        com.vividsolutions.jts.geom.Geometry geom = getJTSGeometry( value );
+        if ( !jtsEnv.intersects( geom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return geom.overlaps( jtsGeom );
+    }
+
+    /**
+     * Returns whether the given geometry crosses the literal.
+     * 
+     * @param value
+     *            value to be evaluated, must be accepted by {@link #accepts(Geometry)}
+     * @return <code>true</code>, if the geometry crosses the literal, <code>false</code> otherwise
+     */
+    boolean crosses( Geometry value ) {
+        com.vividsolutions.jts.geom.Geometry geom = getJTSGeometry( value );
+        if ( !jtsEnv.intersects( geom.getEnvelopeInternal() ) ) {
+            return false;
+        }
+        return geom.crosses( jtsGeom );
+    }
+
+    private static com.vividsolutions.jts.geom.Geometry getJTSGeometry( Geometry value ) {
+        return ( (AbstractDefaultGeometry) unwrap( value ) ).getJTSGeometry();
+    }
+
+    private static Geometry unwrap( Geometry geom ) {
+        if ( geom instanceof GeometryReference<?> ) {
+            return ( (GeometryReference<?>) geom ).getReferencedObject();
+        }
+        return geom;
+    }
+
+    private PreparedGeometry getPrepared() {
+        PreparedGeometry prepared = this.prepared;
+        if ( prepared == null ) {
+            prepared = PreparedGeometryFactory.prepare( jtsGeom );
+            this.prepared = prepared;
+        }
+        return prepared;
+    }
+}
@@ -35,8 +35,8 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.filter.spatial;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.deegree.commons.tom.TypedObjectNode;
 import org.deegree.commons.tom.genericxml.GenericXMLElement;
@@ -64,12 +64,16 @@ public abstract class SpatialOperator implements Operator {
 
     private static final Logger LOG = LoggerFactory.getLogger( SpatialOperator.class );
 
-    private final Map<String, Geometry> srsNameToTransformedGeometry = new HashMap<String, Geometry>();
+    private final ConcurrentMap<String, Geometry> srsNameToTransformedGeometry;
+
+    private final ConcurrentMap<String, PreparedLiteral> srsNameToPreparedLiteral;
 
     protected final Expression propName;
 
     protected SpatialOperator( Expression param1 ) {
         this.propName = param1;
+        this.srsNameToTransformedGeometry = new ConcurrentHashMap<String, Geometry>();
+        this.srsNameToPreparedLiteral = new ConcurrentHashMap<String, PreparedLiteral>();
     }
 
     /**
@@ -192,12 +196,11 @@ public abstract class SpatialOperator implements Operator {
                             throws FilterEvaluationException {
         Geometry transformedLiteral = literal;
         ICRS paramCRS = param.getCoordinateSystem();
-        ICRS literalCRS = literal.getCoordinateSystem();
-        if ( literalCRS != null && !( paramCRS.equals( literalCRS ) ) ) {
-            LOG.debug( "Need transformed literal geometry for evaluation: " + literalCRS.getAlias() + " -> "
-                       + paramCRS.getAlias() );
+        if ( needsTransformation( paramCRS, literal ) ) {
             transformedLiteral = srsNameToTransformedGeometry.get( paramCRS.getAlias() );
             if ( transformedLiteral == null ) {
+                LOG.debug( "Need transformed literal geometry for evaluation: "
+                           + literal.getCoordinateSystem().getAlias() + " -> " + paramCRS.getAlias() );
                 try {
                     GeometryTransformer transformer = new GeometryTransformer( paramCRS );
                     transformedLiteral = transformer.transform( literal );
@@ -210,5 +213,44 @@ public abstract class SpatialOperator implements Operator {
         return transformedLiteral;
     }
 
+    /**
+     * Returns a prepared version of the given geometry literal that has the same srs as the given geometry parameter.
+     * <p>
+     * The literal is transformed and prepared only once per srs, so repeated evaluations (e.g. for all features of a
+     * query) only have to perform the actual predicate tests.
+     * </p>
+     * 
+     * @param param
+     *            geometry parameter, must not be <code>null</code>
+     * @param literal
+     *            geometry literal, must not be <code>null</code>
+     * @return prepared literal geometry with the same srs as the parameter geometry, or <code>null</code> if the
+     *         parameter cannot be evaluated against a prepared literal (evaluation has to use
+     *         {@link #getCompatibleGeometry(Geometry, Geometry)})
+     * @throws FilterEvaluationException
+     *             if the transformation failed
+     */
+    PreparedLiteral getPreparedLiteral( Geometry param, Geometry literal )
+                            throws FilterEvaluationException {
+        if ( !PreparedLiteral.accepts( param ) ) {
+            return null;
+        }
+        ICRS paramCRS = param.getCoordinateSystem();
+        String key = needsTransformation( paramCRS, literal ) ? paramCRS.getAlias() : "";
+        PreparedLiteral prepared = srsNameToPreparedLiteral.get( key );
+        if ( prepared == null ) {
+            prepared = PreparedLiteral.create( getCompatibleGeometry( param, literal ) );
+            if ( prepared != null ) {
+                srsNameToPreparedLiteral.put( key, prepared );
+            }
+        }
+        return prepared;
+    }
+
+    private static boolean needsTransformation( ICRS paramCRS, Geometry literal ) {
+        ICRS literalCRS = literal.getCoordinateSystem();
+        return literalCRS != null && paramCRS != null && !paramCRS.equals( literalCRS );
+    }
+
     public abstract Object[] getParams();
 }
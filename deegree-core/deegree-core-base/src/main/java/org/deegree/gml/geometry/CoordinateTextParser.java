@@ -0,0 +1,322 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static javax.xml.stream.XMLStreamConstants.CDATA;
+import static javax.xml.stream.XMLStreamConstants.CHARACTERS;
+import static javax.xml.stream.XMLStreamConstants.COMMENT;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.ENTITY_REFERENCE;
+import static javax.xml.stream.XMLStreamConstants.PROCESSING_INSTRUCTION;
+import static javax.xml.stream.XMLStreamConstants.SPACE;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
+
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
+
+/**
+ * Parses coordinate values from the text content of GML elements (e.g. <code>gml:posList</code>,
+ * <code>gml:pos</code> or <code>gml:coordinates</code>).
+ * <p>
+ * The text is consumed directly from the character buffer of the <code>XMLStreamReader</code> and the values are
+ * collected in a growable <code>double</code> array, so no intermediate strings are created. Plain decimal values
+ * (optional sign, digits and decimal separator, at most 15 significant digits) are converted without calling
+ * {@link Double#parseDouble(String)}, all other notations (exponents, <code>NaN</code>, ...) are passed to it.
+ * </p>
+ * <p>
+ * Instances keep their buffers between invocations and are not thread-safe.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class CoordinateTextParser {
+
+    // powers of ten that are exactly representable as doubles
+    private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12,
+                                           1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private static final int MAX_FAST_DIGITS = 15;
+
+    private double[] values = new double[256];
+
+    private int numValues;
+
+    private char[] token = new char[32];
+
+    private int tokenLength;
+
+    private char decimal;
+
+    // only used for gml:coordinates
+    private boolean tuples;
+
+    private char cs;
+
+    private char ts;
+
+    private boolean tsIsWhitespace;
+
+    private int tupleDim;
+
+    private int valuesInTuple;
+
+    /**
+     * Parses the whitespace-separated list of doubles contained in the current element (e.g. <code>gml:pos</code> or
+     * <code>gml:posList</code>).
+     * 
+     * @param xmlStream
+     *            cursor must point at the <code>START_ELEMENT</code> event, points at the corresponding
+     *            <code>END_ELEMENT</code> event afterwards
+     * @return parsed values, never <code>null</code>
+     * @throws XMLParsingException
+     *             if a value cannot be parsed as a double
+     * @throws XMLStreamException
+     */
+    double[] parseDoubleList( XMLStreamReaderWrapper xmlStream )
+                            throws XMLParsingException, XMLStreamException {
+        reset( false, '.' );
+        read( xmlStream );
+        return Arrays.copyOf( values, numValues );
+    }
+
+    /**
+     * Parses the tuples contained in the current <code>gml:coordinates</code> element, respecting the separators
+     * specified by the <code>decimal</code>, <code>cs</code> and <code>ts</code> attributes.
+     * 
+     * @param xmlStream
+     *            cursor must point at the <code>START_ELEMENT</code> event, points at the corresponding
+     *            <code>END_ELEMENT</code> event afterwards
+     * @param crs
+     *            crs of the points, may be <code>null</code>
+     * @param geomFac
+     *            factory for creating the points, must not be <code>null</code>
+     * @return parsed points, never <code>null</code>
+     * @throws XMLParsingException
+     *             if the separators are invalid, a value cannot be parsed as a double or the tuples have different
+     *             dimensions
+     * @throws XMLStreamException
+     */
+    Points parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs, GeometryFactory geomFac )
+                            throws XMLParsingException, XMLStreamException {
+        char decimal = getSeparator( xmlStream, "decimal", "." );
+        char cs = getSeparator( xmlStream, "cs", "," );
+        char ts = getSeparator( xmlStream, "ts", " " );
+        if ( decimal == cs || decimal == ts || cs == ts ) {
+            String msg = "The values of the 'decimal', 'cs' and 'ts' attributes (='" + decimal + "', '" + cs + "', '"
+                         + ts + "') must be distinct.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        reset( true, decimal );
+        this.cs = cs;
+        this.ts = ts;
+        this.tsIsWhitespace = isWhitespace( ts );
+        read( xmlStream );
+        int dim = tupleDim > 0 ? tupleDim : 2;
+        return geomFac.createPoints( crs, Arrays.copyOf( values, numValues ), dim );
+    }
+
+    private void reset( boolean tuples, char decimal ) {
+        this.tuples = tuples;
+        this.decimal = decimal;
+        numValues = 0;
+        tokenLength = 0;
+        tupleDim = -1;
+        valuesInTuple = 0;
+    }
+
+    private void read( XMLStreamReaderWrapper xmlStream )
+                            throws XMLStreamException {
+        if ( xmlStream.getEventType() != START_ELEMENT ) {
+            String msg = "parser must be on START_ELEMENT to read next text";
+            throw new XMLStreamException( msg, xmlStream.getLocation() );
+        }
+        int eventType = xmlStream.next();
+        while ( eventType != END_ELEMENT ) {
+            switch ( eventType ) {
+            case CHARACTERS:
+            case CDATA:
+            case SPACE:
+                process( xmlStream, xmlStream.getTextCharacters(), xmlStream.getTextStart(),
+                         xmlStream.getTextLength() );
+                break;
+            case ENTITY_REFERENCE:
+                char[] text = xmlStream.getText().toCharArray();
+                process( xmlStream, text, 0, text.length );
+                break;
+            case PROCESSING_INSTRUCTION:
+            case COMMENT:
+                // skipping
+                break;
+            case START_ELEMENT:
+                throw new XMLStreamException( "element text content may not contain START_ELEMENT",
+                                              xmlStream.getLocation() );
+            default:
+                throw new XMLStreamException( "Unexpected event type " + eventType, xmlStream.getLocation() );
+            }
+            eventType = xmlStream.next();
+        }
+        endValue( xmlStream );
+        if ( tuples ) {
+            endTuple( xmlStream );
+        }
+    }
+
+    private void process( XMLStreamReaderWrapper xmlStream, char[] chars, int start, int length ) {
+        int end = start + length;
+        for ( int i = start; i < end; i++ ) {
+            char c = chars[i];
+            if ( tuples ) {
+                if ( c == cs ) {
+                    endValue( xmlStream );
+                    continue;
+                }
+                if ( c == ts || ( tsIsWhitespace && isWhitespace( c ) ) ) {
+                    endValue( xmlStream );
+                    endTuple( xmlStream );
+                    continue;
+                }
+            }
+            if ( isWhitespace( c ) ) {
+                endValue( xmlStream );
+                continue;
+            }
+            if ( tokenLength == token.length ) {
+                token = Arrays.copyOf( token, tokenLength * 2 );
+            }
+            token[tokenLength++] = c;
+        }
+    }
+
+    private void endValue( XMLStreamReaderWrapper xmlStream ) {
+        if ( tokenLength == 0 ) {
+            return;
+        }
+        if ( numValues == values.length ) {
+            values = Arrays.copyOf( values, numValues * 2 );
+        }
+        values[numValues++] = parseToken( xmlStream );
+        valuesInTuple++;
+        tokenLength = 0;
+    }
+
+    private void endTuple( XMLStreamReaderWrapper xmlStream ) {
+        if ( valuesInTuple == 0 ) {
+            return;
+        }
+        if ( tupleDim == -1 ) {
+            tupleDim = valuesInTuple;
+        } else if ( tupleDim != valuesInTuple ) {
+            String msg = "Cannot parse 'gml:coordinates': found a tuple with " + valuesInTuple
+                         + " values, but the previous tuples have " + tupleDim + " values.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        valuesInTuple = 0;
+    }
+
+    private double parseToken( XMLStreamReaderWrapper xmlStream ) {
+        char[] t = token;
+        int len = tokenLength;
+        int i = 0;
+        boolean negative = false;
+        if ( t[0] == '-' ) {
+            negative = true;
+            i++;
+        } else if ( t[0] == '+' ) {
+            i++;
+        }
+        long mantissa = 0;
+        boolean anyDigit = false;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean fraction = false;
+        boolean fast = true;
+        for ( ; i < len; i++ ) {
+            char c = t[i];
+            if ( c >= '0' && c <= '9' ) {
+                anyDigit = true;
+                if ( mantissa != 0 || c != '0' ) {
+                    if ( ++digits > MAX_FAST_DIGITS ) {
+                        fast = false;
+                        break;
+                    }
+                }
+                mantissa = mantissa * 10 + ( c - '0' );
+                if ( fraction ) {
+                    fractionDigits++;
+                }
+            } else if ( c == decimal && !fraction ) {
+                fraction = true;
+            } else {
+                fast = false;
+                break;
+            }
+        }
+        if ( fast && anyDigit && fractionDigits < POW10.length ) {
+            // both operands are exact, so the division is correctly rounded (same result as Double.parseDouble)
+            double value = fractionDigits == 0 ? mantissa : mantissa / POW10[fractionDigits];
+            return negative ? -value : value;
+        }
+        String s = new String( t, 0, len );
+        try {
+            return Double.parseDouble( decimal == '.' ? s : s.replace( decimal, '.' ) );
+        } catch ( NumberFormatException e ) {
+            String msg = "Value '" + s + "' cannot be parsed as a double.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+    }
+
+    private static char getSeparator( XMLStreamReaderWrapper xmlStream, String attrName, String defaultValue ) {
+        String value = xmlStream.getAttributeValueWDefault( attrName, defaultValue );
+        if ( value.length() != 1 ) {
+            String msg = "Value of the '" + attrName + "' attribute (='" + value + "') must be a single character.";
+            throw new XMLParsingException( xmlStream, msg );
+        }
+        return value.charAt( 0 );
+    }
+
+    private static boolean isWhitespace( char c ) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+}
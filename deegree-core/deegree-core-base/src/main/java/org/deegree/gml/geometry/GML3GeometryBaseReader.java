@@ -37,9 +37,8 @@ package org.deegree.gml.geometry;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.StringTokenizer;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
@@ -54,6 +53,7 @@ import org.deegree.cs.coordinatesystems.CRS;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
 import org.deegree.geometry.primitive.Point;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.commons.AbstractGMLObjectReader;
@@ -82,6 +82,8 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
 
     private final int defaultCoordDim;
 
+    private final CoordinateTextParser coordParser = new CoordinateTextParser();
+
     protected GML3GeometryBaseReader( GMLStreamReader gmlStream ) {
         super( gmlStream );
         this.geomFac = gmlStream.getGeometryFactory();
@@ -96,27 +98,27 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
 
         ICRS crs = determineActiveCRS( xmlStream, defaultCRS );
 
-        String s = xmlStream.getElementText();
-        // don't use String.split(regex) here (speed)
-        StringTokenizer st = new StringTokenizer( s );
-        List<String> tokens = new ArrayList<String>();
-        while ( st.hasMoreTokens() ) {
-            tokens.add( st.nextToken() );
-        }
-        double[] doubles = new double[tokens.size()];
-        for ( int i = 0; i < doubles.length; i++ ) {
-            try {
-                doubles[i] = Double.parseDouble( tokens.get( i ) );
-            } catch ( NumberFormatException e ) {
-                String msg = "Value '" + tokens.get( i ) + "' cannot be parsed as a double.";
-                throw new XMLParsingException( xmlStream, msg );
-            }
-        }
+        double[] doubles = coordParser.parseDoubleList( xmlStream );
         return geomFac.createPoint( null, doubles, crs );
     }
 
     protected List<Point> parsePosList( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLParsingException, XMLStreamException {
+        return asList( parsePackedPosList( xmlStream, crs ), crs );
+    }
+
+    /**
+     * Parses the current <code>gml:posList</code> element into a packed {@link Points} sequence.
+     * 
+     * @param xmlStream
+     *            cursor must point at the <code>START_ELEMENT</code> event (&lt;gml:posList&gt;), points at the
+     *            corresponding <code>END_ELEMENT</code> event afterwards
+     * @param crs
+     *            crs of the points, may be <code>null</code>
+     * @return parsed points, never <code>null</code>
+     */
+    protected Points parsePackedPosList( XMLStreamReaderWrapper xmlStream, ICRS crs )
+                            throws XMLParsingException, XMLStreamException {
 
         int coordDim = determineCoordDimensions( xmlStream, -1 );
         if ( coordDim == -1 && crs != null ) {
@@ -134,78 +136,43 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
             coordDim = defaultCoordDim;
         }
 
-        String s = xmlStream.getElementText();
-        // don't use String.split(regex) here (speed)
-        StringTokenizer st = new StringTokenizer( s );
-        List<String> tokens = new ArrayList<String>();
-        while ( st.hasMoreTokens() ) {
-            tokens.add( st.nextToken() );
-        }
-        int numCoords = tokens.size();
-        if ( numCoords % coordDim != 0 ) {
-            String msg = "Cannot parse 'gml:posList': contains " + tokens.size()
+        double[] coords = coordParser.parseDoubleList( xmlStream );
+        if ( coords.length % coordDim != 0 ) {
+            String msg = "Cannot parse 'gml:posList': contains " + coords.length
                          + " values, but coordinate dimension is " + coordDim + ". This does not match.";
             throw new XMLParsingException( xmlStream, msg );
         }
-
-        int numPoints = numCoords / coordDim;
-        List<Point> points = new ArrayList<Point>();
-
-        int tokenPos = 0;
-        for ( int i = 0; i < numPoints; i++ ) {
-            double[] pointCoords = new double[coordDim];
-            for ( int j = 0; j < coordDim; j++ ) {
-                try {
-                    pointCoords[j] = Double.parseDouble( tokens.get( tokenPos++ ) );
-                } catch ( NumberFormatException e ) {
-                    String msg = "Value '" + tokens.get( tokenPos - 1 ) + "' cannot be parsed as a double.";
-                    throw new XMLParsingException( xmlStream, msg );
-                }
-            }
-            points.add( geomFac.createPoint( null, pointCoords, crs ) );
-        }
-        return points;
+        return geomFac.createPoints( crs, coords, coordDim );
     }
 
     protected List<Point> parseCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
                             throws XMLParsingException, XMLStreamException {
+        return asList( parsePackedCoordinates( xmlStream, crs ), crs );
+    }
 
-        String decimalSeparator = xmlStream.getAttributeValueWDefault( "decimal", "." );
-        if ( !".".equals( decimalSeparator ) ) {
-            String msg = "Currently, only '.' is supported as decimal separator.";
-            throw new XMLParsingException( xmlStream, msg );
-        }
-
-        String coordinateSeparator = xmlStream.getAttributeValueWDefault( "cs", "," );
-        String tupleSeparator = xmlStream.getAttributeValueWDefault( "ts", " " );
-
-        String text = xmlStream.getElementText();
-
-        List<String> tuples = new LinkedList<String>();
-        StringTokenizer tupleTokenizer = new StringTokenizer( text, tupleSeparator );
-        while ( tupleTokenizer.hasMoreTokens() ) {
-            tuples.add( tupleTokenizer.nextToken() );
-        }
+    /**
+     * Parses the current <code>gml:coordinates</code> element into a packed {@link Points} sequence.
+     * 
+     * @param xmlStream
+     *            cursor must point at the <code>START_ELEMENT</code> event (&lt;gml:coordinates&gt;), points at the
+     *            corresponding <code>END_ELEMENT</code> event afterwards
+     * @param crs
+     *            crs of the points, may be <code>null</code>
+     * @return parsed points, never <code>null</code>
+     */
+    protected Points parsePackedCoordinates( XMLStreamReaderWrapper xmlStream, ICRS crs )
+                            throws XMLParsingException, XMLStreamException {
+        return coordParser.parseCoordinates( xmlStream, crs, geomFac );
+    }
 
-        List<Point> points = new ArrayList<Point>( tuples.size() );
-        for ( int i = 0; i < tuples.size(); i++ ) {
-            StringTokenizer coordinateTokenizer = new StringTokenizer( tuples.get( i ), coordinateSeparator );
-            List<String> tokens = new ArrayList<String>();
-            while ( coordinateTokenizer.hasMoreTokens() ) {
-                tokens.add( coordinateTokenizer.nextToken() );
-            }
-            double[] tuple = new double[tokens.size()];
-            for ( int j = 0; j < tuple.length; j++ ) {
-                try {
-                    tuple[j] = Double.parseDouble( tokens.get( j ) );
-                } catch ( NumberFormatException e ) {
-                    String msg = "Value '" + tokens.get( j ) + "' cannot be parsed as a double.";
-                    throw new XMLParsingException( xmlStream, msg );
-                }
-            }
-            points.add( geomFac.createPoint( null, tuple, crs ) );
+    private List<Point> asList( Points points, ICRS crs ) {
+        int dim = points.getDimension();
+        double[] coords = points.getAsArray();
+        List<Point> list = new ArrayList<Point>( points.size() );
+        for ( int i = 0; i < coords.length; i += dim ) {
+            list.add( geomFac.createPoint( null, Arrays.copyOfRange( coords, i, i + dim ), crs ) );
         }
-        return points;
+        return list;
     }
 
     protected double[] parseCoordType( XMLStreamReaderWrapper xmlStream )
@@ -328,23 +295,7 @@ class GML3GeometryBaseReader extends AbstractGMLObjectReader {
 
     protected double[] parseDoubleList( XMLStreamReaderWrapper xmlStream )
                             throws XMLParsingException, XMLStreamException {
-        String s = xmlStream.getElementText();
-        // don't use String.split(regex) here (speed)
-        StringTokenizer st = new StringTokenizer( s );
-        List<String> tokens = new ArrayList<String>();
-        while ( st.hasMoreTokens() ) {
-            tokens.add( st.nextToken() );
-        }
-        double[] doubles = new double[tokens.size()];
-        for ( int i = 0; i < doubles.length; i++ ) {
-            try {
-                doubles[i] = Double.parseDouble( tokens.get( i ) );
-            } catch ( NumberFormatException e ) {
-                String msg = "Value '" + tokens.get( i ) + "' cannot be parsed as a double.";
-                throw new XMLParsingException( xmlStream, msg );
-            }
-        }
-        return doubles;
+        return coordParser.parseDoubleList( xmlStream );
     }
 
     /**
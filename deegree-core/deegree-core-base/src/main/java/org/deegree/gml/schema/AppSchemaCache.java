@@ -0,0 +1,298 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.schema;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.xerces.xs.StringList;
+import org.apache.xerces.xs.XSNamespaceItemList;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.gml.GMLVersion;
+import org.deegree.workspace.Initializable;
+import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Workspace-scoped cache for parsed GML application schemas.
+ * <p>
+ * Resources that are configured with the same set of GML schema files (e.g. several feature stores based on the same
+ * AAA or INSPIRE schemas) share a single {@link GMLSchemaInfoSet}, so the schema files are only parsed once per
+ * workspace. Entries are keyed by the normalized schema URLs and the GML version. An entry is parsed again if one of
+ * its local schema files has been modified since it was read. A new cache instance is created whenever the workspace
+ * is (re-)started.
+ * </p>
+ * <p>
+ * Only the parsed schema is shared: every call to <code>get</code> returns a new {@link AppSchema} with its own
+ * feature types, as feature types are bound to the schema (and resource) they belong to.
+ * </p>
+ * 
+ * @see GMLAppSchemaReader
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class AppSchemaCache implements Initializable {
+
+    private static final Logger LOG = LoggerFactory.getLogger( AppSchemaCache.class );
+
+    private final ConcurrentMap<String, Entry> keyToEntry = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Returns the {@link AppSchemaCache} of the given workspace.
+     * 
+     * @param workspace
+     *            workspace, may be <code>null</code>
+     * @return cache of the workspace, or a new (unshared) cache if the workspace doesn't provide one, never
+     *         <code>null</code>
+     */
+    public static AppSchemaCache forWorkspace( Workspace workspace ) {
+        AppSchemaCache cache = null;
+        if ( workspace != null ) {
+            cache = workspace.getInitializable( AppSchemaCache.class );
+        }
+        return cache != null ? cache : new AppSchemaCache();
+    }
+
+    @Override
+    public void init( Workspace workspace ) {
+        keyToEntry.clear();
+    }
+
+    /**
+     * Returns a new {@link AppSchema} for the given schema file (which may be a directory).
+     * 
+     * @param gmlVersion
+     *            gml version of the schema files, can be null (auto-detect GML version)
+     * @param namespaceHints
+     *            optional hints (key: prefix, value: namespaces) for generating 'nice' qualified feature type and
+     *            property type names, may be null
+     * @param schemaFile
+     *            schema file or directory with schema files, must not be <code>null</code>
+     * @return application schema, never <code>null</code>
+     * @throws ClassCastException
+     * @throws ClassNotFoundException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     * @throws MalformedURLException
+     * @throws UnsupportedEncodingException
+     */
+    public AppSchema get( GMLVersion gmlVersion, Map<String, String> namespaceHints, File schemaFile )
+                            throws ClassCastException, ClassNotFoundException, InstantiationException,
+                            IllegalAccessException, MalformedURLException, UnsupportedEncodingException {
+        return get( gmlVersion, namespaceHints, GMLAppSchemaReader.getSchemaURLs( schemaFile ) );
+    }
+
+    /**
+     * Returns a new {@link AppSchema} for the given schema URLs.
+     * 
+     * @param gmlVersion
+     *            gml version of the schema files, can be null (auto-detect GML version)
+     * @param namespaceHints
+     *            optional hints (key: prefix, value: namespaces) for generating 'nice' qualified feature type and
+     *            property type names, may be null
+     * @param schemaUrls
+     *            URLs of the schema files, must not be <code>null</code>
+     * @return application schema, never <code>null</code>
+     * @throws ClassCastException
+     * @throws ClassNotFoundException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public AppSchema get( GMLVersion gmlVersion, Map<String, String> namespaceHints, String... schemaUrls )
+                            throws ClassCastException, ClassNotFoundException, InstantiationException,
+                            IllegalAccessException {
+        GMLSchemaInfoSet gmlSchema = getGMLSchema( gmlVersion, schemaUrls );
+        return new GMLAppSchemaReader( gmlSchema, namespaceHints ).extractAppSchema();
+    }
+
+    /**
+     * Returns the parsed GML schema for the given schema URLs.
+     * 
+     * @param gmlVersion
+     *            gml version of the schema files, can be null (auto-detect GML version)
+     * @param schemaUrls
+     *            URLs of the schema files, must not be <code>null</code>
+     * @return parsed GML schema (shared, must not be modified), never <code>null</code>
+     * @throws ClassCastException
+     * @throws ClassNotFoundException
+     * @throws InstantiationException
+     * @throws IllegalAccessException
+     */
+    public GMLSchemaInfoSet getGMLSchema( GMLVersion gmlVersion, String... schemaUrls )
+                            throws ClassCastException, ClassNotFoundException, InstantiationException,
+                            IllegalAccessException {
+        String key = getKey( gmlVersion, schemaUrls );
+        Entry entry = keyToEntry.get( key );
+        if ( entry != null && entry.isModified() ) {
+            LOG.info( "Schema files of " + Arrays.toString( schemaUrls ) + " have been modified, reading them again." );
+            keyToEntry.remove( key, entry );
+            entry = null;
+        }
+        if ( entry == null ) {
+            Entry newEntry = new Entry( gmlVersion, schemaUrls );
+            entry = keyToEntry.putIfAbsent( key, newEntry );
+            if ( entry == null ) {
+                entry = newEntry;
+            }
+        } else {
+            LOG.debug( "Using cached application schema for " + Arrays.toString( schemaUrls ) + "." );
+        }
+        try {
+            return entry.getGMLSchema();
+        } catch ( ClassNotFoundException e ) {
+            keyToEntry.remove( key, entry );
+            throw e;
+        } catch ( InstantiationException e ) {
+            keyToEntry.remove( key, entry );
+            throw e;
+        } catch ( IllegalAccessException e ) {
+            keyToEntry.remove( key, entry );
+            throw e;
+        } catch ( RuntimeException e ) {
+            keyToEntry.remove( key, entry );
+            throw e;
+        }
+    }
+
+    private static String getKey( GMLVersion gmlVersion, String[] schemaUrls ) {
+        String[] normalized = new String[schemaUrls.length];
+        for ( int i = 0; i < schemaUrls.length; i++ ) {
+            normalized[i] = normalize( schemaUrls[i] );
+        }
+        Arrays.sort( normalized );
+        StringBuilder sb = new StringBuilder();
+        sb.append( gmlVersion != null ? gmlVersion.name() : "auto" );
+        for ( String url : normalized ) {
+            sb.append( '\n' ).append( url );
+        }
+        return sb.toString();
+    }
+
+    private static String normalize( String schemaUrl ) {
+        String url = schemaUrl.trim();
+        File file = toFile( url );
+        if ( file != null ) {
+            try {
+                return file.getCanonicalFile().toURI().toString();
+            } catch ( Exception e ) {
+                LOG.debug( "Cannot normalize schema URL '" + url + "': " + e.getMessage() );
+            }
+        }
+        return url;
+    }
+
+    private static File toFile( String url ) {
+        if ( url.startsWith( "file:" ) ) {
+            try {
+                return new File( new URL( url ).toURI() );
+            } catch ( Exception e ) {
+                LOG.debug( "Cannot convert schema URL '" + url + "' to a file: " + e.getMessage() );
+            }
+        }
+        return null;
+    }
+
+    private static class Entry {
+
+        private final GMLVersion gmlVersion;
+
+        private final String[] schemaUrls;
+
+        private final Map<File, Long> fileToLastModified = new HashMap<File, Long>();
+
+        private GMLSchemaInfoSet gmlSchema;
+
+        Entry( GMLVersion gmlVersion, String[] schemaUrls ) {
+            this.gmlVersion = gmlVersion;
+            this.schemaUrls = schemaUrls;
+        }
+
+        synchronized GMLSchemaInfoSet getGMLSchema()
+                                throws ClassCastException, ClassNotFoundException, InstantiationException,
+                                IllegalAccessException {
+            if ( gmlSchema == null ) {
+                LOG.debug( "Reading application schema from " + Arrays.toString( schemaUrls ) + "." );
+                // record the modification times first, so changes made while parsing are detected as well
+                for ( String url : schemaUrls ) {
+                    addFile( url );
+                }
+                GMLSchemaInfoSet schema = new GMLSchemaInfoSet( gmlVersion, schemaUrls );
+                XSNamespaceItemList nsItems = schema.getNamespaces();
+                for ( int i = 0; i < nsItems.getLength(); i++ ) {
+                    StringList locations = nsItems.item( i ).getDocumentLocations();
+                    for ( int j = 0; j < locations.getLength(); j++ ) {
+                        addFile( locations.item( j ) );
+                    }
+                }
+                gmlSchema = schema;
+            }
+            return gmlSchema;
+        }
+
+        private void addFile( String url ) {
+            File file = toFile( url );
+            if ( file != null && !fileToLastModified.containsKey( file ) ) {
+                fileToLastModified.put( file, file.lastModified() );
+            }
+        }
+
+        /**
+         * @return <code>true</code>, if one of the local schema files has been modified (or deleted) since the schema
+         *         has been read, <code>false</code> otherwise (or if it has not been read yet)
+         */
+        synchronized boolean isModified() {
+            if ( gmlSchema == null ) {
+                return false;
+            }
+            for ( Map.Entry<File, Long> fileAndLastModified : fileToLastModified.entrySet() ) {
+                if ( fileAndLastModified.getKey().lastModified() != fileAndLastModified.getValue() ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -148,8 +148,25 @@ public class GMLAppSchemaReader {
     public GMLAppSchemaReader( GMLVersion gmlVersion, Map<String, String> namespaceHints, String... schemaUrls )
                             throws ClassCastException, ClassNotFoundException, InstantiationException,
                             IllegalAccessException {
+        this( new GMLSchemaInfoSet( gmlVersion, schemaUrls ), namespaceHints );
+    }
+
+    /**
+     * Creates a new {@link GMLAppSchemaReader} for an already parsed GML schema.
+     * <p>
+     * The schema infoset is only read, so it may be shared by several readers. Every call to
+     * {@link #extractAppSchema()} on a new reader creates new feature types.
+     * </p>
+     * 
+     * @param gmlSchema
+     *            parsed GML schema, must not be <code>null</code>
+     * @param namespaceHints
+     *            optional hints (key: prefix, value: namespaces) for generating 'nice' qualified feature type and
+     *            property type names, may be null
+     */
+    public GMLAppSchemaReader( GMLSchemaInfoSet gmlSchema, Map<String, String> namespaceHints ) {
 
-        analyzer = new GMLSchemaInfoSet( gmlVersion, schemaUrls );
+        analyzer = gmlSchema;
         this.gmlVersion = analyzer.getVersion();
 
         for ( Entry<String, String> nsToPrefix : analyzer.getNamespacePrefixes().entrySet() ) {
@@ -280,7 +297,7 @@ public class GMLAppSchemaReader {
         this( gmlVersion, namespaceHints, getSchemaURLs( schemaFile ) );
     }
 
-    private static String[] getSchemaURLs( File schemaFile )
+    static String[] getSchemaURLs( File schemaFile )
                             throws MalformedURLException, UnsupportedEncodingException {
 
         List<String> schemaUrls = new ArrayList<String>();
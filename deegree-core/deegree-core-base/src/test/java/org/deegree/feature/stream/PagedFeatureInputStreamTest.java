@@ -0,0 +1,181 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.junit.Test;
+
+/**
+ * Tests for {@link PagedFeatureInputStream}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PagedFeatureInputStreamTest {
+
+    @Test
+    public void testPage() {
+        TestStream source = new TestStream( 10 );
+        assertEquals( ids( 3, 4, 5 ), ids( new PagedFeatureInputStream( source, 3, 3 ) ) );
+        // features after the page are never fetched
+        assertEquals( 6, source.produced );
+    }
+
+    @Test
+    public void testFirstPage() {
+        assertEquals( ids( 0, 1 ), ids( new PagedFeatureInputStream( new TestStream( 10 ), 0, 2 ) ) );
+    }
+
+    @Test
+    public void testNoLimit() {
+        assertEquals( ids( 7, 8, 9 ), ids( new PagedFeatureInputStream( new TestStream( 10 ), 7, -1 ) ) );
+    }
+
+    @Test
+    public void testLastPageIsShort() {
+        assertEquals( ids( 8, 9 ), ids( new PagedFeatureInputStream( new TestStream( 10 ), 8, 5 ) ) );
+    }
+
+    @Test
+    public void testStartIndexBeyondEnd() {
+        Iterator<Feature> iter = new PagedFeatureInputStream( new TestStream( 10 ), 10, 5 ).iterator();
+        assertFalse( iter.hasNext() );
+        try {
+            iter.next();
+            fail( "Expected exception." );
+        } catch ( NoSuchElementException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testZeroMaxFeatures() {
+        TestStream source = new TestStream( 10 );
+        assertTrue( ids( new PagedFeatureInputStream( source, 0, 0 ) ).isEmpty() );
+        assertEquals( 0, source.produced );
+    }
+
+    @Test
+    public void testCountClosesStream() {
+        TestStream source = new TestStream( 10 );
+        assertEquals( 4, new PagedFeatureInputStream( source, 2, 4 ).count() );
+        assertTrue( source.closed );
+    }
+
+    private static List<String> ids( int... ids ) {
+        List<String> list = new ArrayList<String>();
+        for ( int id : ids ) {
+            list.add( "f" + id );
+        }
+        return list;
+    }
+
+    private static List<String> ids( FeatureInputStream rs ) {
+        List<String> list = new ArrayList<String>();
+        for ( Feature f : rs ) {
+            list.add( f.getId() );
+        }
+        rs.close();
+        return list;
+    }
+
+    private static class TestStream implements FeatureInputStream {
+
+        private final int size;
+
+        private int produced;
+
+        private boolean closed;
+
+        private TestStream( int size ) {
+            this.size = size;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            return new Iterator<Feature>() {
+
+                @Override
+                public boolean hasNext() {
+                    return produced < size;
+                }
+
+                @Override
+                public Feature next() {
+                    Feature f = mock( Feature.class );
+                    when( f.getId() ).thenReturn( "f" + produced++ );
+                    return f;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return Features.toCollection( this );
+        }
+
+        @Override
+        public int count() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
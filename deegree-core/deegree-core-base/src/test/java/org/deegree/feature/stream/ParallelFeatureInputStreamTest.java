@@ -0,0 +1,247 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ParallelFeatureInputStream}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ParallelFeatureInputStreamTest {
+
+    private final ExecutorService executor = ParallelFeatureInputStream.createExecutor( 3 );
+
+    private final AtomicInteger open = new AtomicInteger();
+
+    private final AtomicInteger maxOpen = new AtomicInteger();
+
+    private final AtomicInteger opened = new AtomicInteger();
+
+    private final AtomicInteger closed = new AtomicInteger();
+
+    private final AtomicInteger produced = new AtomicInteger();
+
+    @After
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testOrderIsPreserved() {
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+        for ( int i = 0; i < 6; i++ ) {
+            // later sources are faster
+            sources.add( source( i, 20, 6 - i ) );
+        }
+        FeatureInputStream rs = new ParallelFeatureInputStream( executor, sources, 3, 5 );
+        int n = 0;
+        for ( Feature f : rs ) {
+            assertEquals( "f" + ( n / 20 ) + "_" + ( n % 20 ), f.getId() );
+            n++;
+        }
+        rs.close();
+        assertEquals( 120, n );
+        assertEquals( 6, opened.get() );
+        assertEquals( 6, closed.get() );
+        assertTrue( maxOpen.get() <= 3 );
+    }
+
+    @Test
+    public void testMoreParallelismThanThreads() {
+        ExecutorService single = ParallelFeatureInputStream.createExecutor( 1 );
+        try {
+            List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+            for ( int i = 0; i < 4; i++ ) {
+                sources.add( source( i, 20, 0 ) );
+            }
+            // sources beyond the number of threads are queued
+            FeatureInputStream rs = new ParallelFeatureInputStream( single, sources, 3, 5 );
+            int n = 0;
+            for ( Feature f : rs ) {
+                assertEquals( "f" + ( n / 20 ) + "_" + ( n % 20 ), f.getId() );
+                n++;
+            }
+            rs.close();
+            assertEquals( 80, n );
+            assertEquals( 1, maxOpen.get() );
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEndClosesSources()
+                            throws InterruptedException {
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+        for ( int i = 0; i < 6; i++ ) {
+            sources.add( source( i, Integer.MAX_VALUE, 0 ) );
+        }
+        FeatureInputStream rs = new ParallelFeatureInputStream( executor, sources, 2, 10 );
+        Iterator<Feature> iter = rs.iterator();
+        for ( int i = 0; i < 5; i++ ) {
+            assertEquals( "f0_" + i, iter.next().getId() );
+        }
+        Thread.sleep( 100 );
+        // back-pressure: sources are not read beyond the buffer capacity
+        assertTrue( produced.get() <= 2 * 11 + 5 );
+        rs.close();
+        for ( int i = 0; i < 50 && closed.get() < opened.get(); i++ ) {
+            Thread.sleep( 20 );
+        }
+        assertEquals( 2, opened.get() );
+        assertEquals( 2, closed.get() );
+        assertFalse( iter.hasNext() );
+    }
+
+    @Test
+    public void testFailureIsPropagated() {
+        List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>();
+        sources.add( source( 0, 3, 0 ) );
+        sources.add( new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call()
+                                    throws Exception {
+                throw new IllegalStateException( "query failed" );
+            }
+        } );
+        sources.add( source( 2, 3, 0 ) );
+        FeatureInputStream rs = new ParallelFeatureInputStream( executor, sources, 2, 10 );
+        Iterator<Feature> iter = rs.iterator();
+        for ( int i = 0; i < 3; i++ ) {
+            assertEquals( "f0_" + i, iter.next().getId() );
+        }
+        try {
+            iter.hasNext();
+            fail( "Expected exception." );
+        } catch ( RuntimeException e ) {
+            assertEquals( "query failed", e.getMessage() );
+        }
+    }
+
+    private Callable<FeatureInputStream> source( final int id, final int size, final long delay ) {
+        return new Callable<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream call()
+                                    throws Exception {
+                Thread.sleep( delay );
+                opened.incrementAndGet();
+                int current = open.incrementAndGet();
+                int max = maxOpen.get();
+                while ( current > max && !maxOpen.compareAndSet( max, current ) ) {
+                    max = maxOpen.get();
+                }
+                return new TestStream( id, size );
+            }
+        };
+    }
+
+    private class TestStream implements FeatureInputStream {
+
+        private final int id;
+
+        private final int size;
+
+        private TestStream( int id, int size ) {
+            this.id = id;
+            this.size = size;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            return new Iterator<Feature>() {
+
+                private int i;
+
+                @Override
+                public boolean hasNext() {
+                    return i < size;
+                }
+
+                @Override
+                public Feature next() {
+                    produced.incrementAndGet();
+                    Feature f = mock( Feature.class );
+                    when( f.getId() ).thenReturn( "f" + id + "_" + i++ );
+                    return f;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            open.decrementAndGet();
+            closed.incrementAndGet();
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return Features.toCollection( this );
+        }
+
+        @Override
+        public int count() {
+            return size;
+        }
+    }
+
+}
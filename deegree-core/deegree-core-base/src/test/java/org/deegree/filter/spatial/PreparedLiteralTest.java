@@ -0,0 +1,119 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.filter.spatial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that evaluating topological predicates against {@link PreparedLiteral}s yields the same results as the
+ * corresponding {@link Geometry} methods.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PreparedLiteralTest {
+
+    private static final String[] WKT = { "POINT(5 5)", "POINT(0 0)", "POINT(20 20)", "POINT(10 5)",
+                                         "LINESTRING(0 0,10 10)", "LINESTRING(-5 5,15 5)", "LINESTRING(10 0,10 10)",
+                                         "LINESTRING(20 20,30 30)", "LINESTRING(2 2,8 8)",
+                                         "POLYGON((0 0,10 0,10 10,0 10,0 0))", "POLYGON((2 2,8 2,8 8,2 8,2 2))",
+                                         "POLYGON((5 5,15 5,15 15,5 15,5 5))", "POLYGON((10 0,20 0,20 10,10 10,10 0))",
+                                         "POLYGON((30 30,40 30,40 40,30 40,30 30))",
+                                         "POLYGON((0 0,10 0,10 10,0 10,0 0),(3 3,7 3,7 7,3 7,3 3))",
+                                         "MULTIPOINT((1 1),(25 25))",
+                                         "MULTIPOLYGON(((0 0,4 0,4 4,0 4,0 0)),((6 6,9 6,9 9,6 9,6 6)))" };
+
+    private List<Geometry> geometries;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        WKTReader reader = new WKTReader( null );
+        geometries = new ArrayList<Geometry>();
+        for ( String wkt : WKT ) {
+            geometries.add( reader.read( wkt ) );
+        }
+    }
+
+    @Test
+    public void testPredicatesMatchUnprepared() {
+        for ( Geometry literal : geometries ) {
+            PreparedLiteral prepared = PreparedLiteral.create( literal );
+            assertNotNull( prepared );
+            for ( Geometry value : geometries ) {
+                String msg = value + " / " + literal;
+                assertEquals( msg, literal.intersects( value ), prepared.intersects( value ) );
+                assertEquals( msg, value.isDisjoint( literal ), prepared.isDisjoint( value ) );
+                assertEquals( msg, value.isWithin( literal ), prepared.contains( value ) );
+                assertEquals( msg, value.contains( literal ), prepared.isWithin( value ) );
+                assertEquals( msg, value.touches( literal ), prepared.touches( value ) );
+                assertEquals( msg, value.overlaps( literal ), prepared.overlaps( value ) );
+                assertEquals( msg, value.crosses( literal ), prepared.crosses( value ) );
+            }
+        }
+    }
+
+    @Test
+    public void testEnvelopeLiteral() {
+        Geometry bbox = new GeometryFactory().createEnvelope( 1, 1, 6, 6, null );
+        PreparedLiteral prepared = PreparedLiteral.create( bbox );
+        assertNotNull( prepared );
+        for ( Geometry value : geometries ) {
+            assertEquals( value.toString(), bbox.intersects( value ), prepared.intersects( value ) );
+        }
+    }
+
+    @Test
+    public void testEnvelopeValueNotAccepted()
+                            throws Exception {
+        Intersects op = new Intersects( null, geometries.get( 9 ) );
+        Geometry bbox = new GeometryFactory().createEnvelope( 1, 1, 6, 6, null );
+        assertNull( op.getPreparedLiteral( bbox, op.getGeometry() ) );
+        assertNotNull( op.getPreparedLiteral( geometries.get( 0 ), op.getGeometry() ) );
+    }
+}
@@ -0,0 +1,142 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.geometry;
+
+import static java.util.Locale.ENGLISH;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.XMLStreamReaderWrapper;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.points.Points;
+import org.junit.Test;
+
+/**
+ * Tests for {@link CoordinateTextParser}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CoordinateTextParserTest {
+
+    private final CoordinateTextParser parser = new CoordinateTextParser();
+
+    @Test
+    public void testParseDoubleList()
+                            throws XMLStreamException {
+        XMLStreamReaderWrapper xmlStream = getStream( "<posList>\n  1 -2.5\t+3.25 0.000125\n1e3 -0 007 </posList>" );
+        double[] values = parser.parseDoubleList( xmlStream );
+        assertArrayEquals( new double[] { 1, -2.5, 3.25, 0.000125, 1000, -0.0, 7 }, values, 0.0 );
+        assertEquals( "posList", xmlStream.getLocalName() );
+    }
+
+    @Test
+    public void testParseDoubleListSameAsParseDouble()
+                            throws XMLStreamException {
+        Random random = new Random( 42 );
+        StringBuilder sb = new StringBuilder( "<posList>" );
+        String[] tokens = new String[1000];
+        for ( int i = 0; i < tokens.length; i++ ) {
+            double d = ( random.nextDouble() - 0.5 ) * Math.pow( 10, random.nextInt( 12 ) );
+            if ( i % 2 == 0 ) {
+                tokens[i] = Double.toString( d );
+            } else {
+                tokens[i] = String.format( ENGLISH, "%." + random.nextInt( 20 ) + "f", d );
+            }
+            sb.append( tokens[i] ).append( ' ' );
+        }
+        sb.append( "</posList>" );
+        double[] values = parser.parseDoubleList( getStream( sb.toString() ) );
+        assertEquals( tokens.length, values.length );
+        for ( int i = 0; i < tokens.length; i++ ) {
+            assertEquals( tokens[i], Double.parseDouble( tokens[i] ), values[i], 0.0 );
+        }
+    }
+
+    @Test
+    public void testParseDoubleListEmpty()
+                            throws XMLStreamException {
+        assertEquals( 0, parser.parseDoubleList( getStream( "<pos> </pos>" ) ).length );
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void testParseDoubleListInvalid()
+                            throws XMLStreamException {
+        parser.parseDoubleList( getStream( "<pos>1 2.0.0</pos>" ) );
+    }
+
+    @Test
+    public void testParseCoordinatesDefaultSeparators()
+                            throws XMLStreamException {
+        Points points = parser.parseCoordinates( getStream( "<coordinates>1,2 3.5,4\n  5,6 </coordinates>" ), null,
+                                                 new GeometryFactory() );
+        assertEquals( 2, points.getDimension() );
+        assertEquals( 3, points.size() );
+        assertArrayEquals( new double[] { 1, 2, 3.5, 4, 5, 6 }, points.getAsArray(), 0.0 );
+    }
+
+    @Test
+    public void testParseCoordinatesCustomSeparators()
+                            throws XMLStreamException {
+        String xml = "<coordinates decimal=\",\" cs=\" \" ts=\";\">1,5 2 3;4 5,25 6</coordinates>";
+        Points points = parser.parseCoordinates( getStream( xml ), null, new GeometryFactory() );
+        assertEquals( 3, points.getDimension() );
+        assertArrayEquals( new double[] { 1.5, 2, 3, 4, 5.25, 6 }, points.getAsArray(), 0.0 );
+    }
+
+    @Test(expected = XMLParsingException.class)
+    public void testParseCoordinatesInconsistentDimension()
+                            throws XMLStreamException {
+        parser.parseCoordinates( getStream( "<coordinates>1,2 3,4,5</coordinates>" ), null, new GeometryFactory() );
+    }
+
+    private XMLStreamReaderWrapper getStream( String xml )
+                            throws XMLStreamException {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader( new StringReader( xml ) );
+        XMLStreamReaderWrapper xmlStream = new XMLStreamReaderWrapper( reader, null );
+        xmlStream.nextTag();
+        return xmlStream;
+    }
+}
@@ -0,0 +1,144 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.gml.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collections;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.feature.types.AppSchema;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.GenericAppSchema;
+import org.junit.Test;
+
+/**
+ * Tests for {@link AppSchemaCache}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class AppSchemaCacheTest {
+
+    @Test
+    public void testSameSchemaIsShared()
+                            throws Exception {
+        AppSchemaCache cache = new AppSchemaCache();
+        URL schemaURL = this.getClass().getResource( "../misc/schema/Philosopher.xsd" );
+        AppSchema schema = cache.get( null, null, schemaURL.toString() );
+        assertEquals( 4, schema.getFeatureTypes( "http://www.deegree.org/app", true, true ).size() );
+        AppSchema schema2 = cache.get( null, null, schemaURL.toString() );
+        AppSchema schema3 = cache.get( null, null, new File( schemaURL.toURI() ) );
+        assertNotSame( schema, schema2 );
+        assertSame( schema.getGMLSchema(), schema2.getGMLSchema() );
+        assertSame( schema.getGMLSchema(), schema3.getGMLSchema() );
+    }
+
+    @Test
+    public void testDifferentHintsShareParsedSchema()
+                            throws Exception {
+        AppSchemaCache cache = new AppSchemaCache();
+        String schemaURL = this.getClass().getResource( "../misc/schema/Philosopher.xsd" ).toString();
+        AppSchema schema = cache.get( null, null, schemaURL );
+        AppSchema hinted = cache.get( null, Collections.singletonMap( "app", "http://www.deegree.org/app" ),
+                                      schemaURL );
+        assertNotSame( schema, hinted );
+        assertSame( schema.getGMLSchema(), hinted.getGMLSchema() );
+    }
+
+    @Test
+    public void testStoresSharingSchemaHaveOwnFeatureTypes()
+                            throws Exception {
+        AppSchemaCache cache = new AppSchemaCache();
+        String schemaURL = this.getClass().getResource( "../misc/schema/Philosopher.xsd" ).toString();
+        AppSchema store1Schema = cache.get( null, null, schemaURL );
+        AppSchema store2Schema = cache.get( null, null, schemaURL );
+
+        // first store builds its own schema from the feature types (as the SQL feature store mapping does)
+        FeatureType[] fts = store1Schema.getFeatureTypes();
+        AppSchema mappedSchema = new GenericAppSchema( fts, null, null, store1Schema.getGMLSchema(), null, null );
+
+        for ( FeatureType ft : fts ) {
+            assertSame( mappedSchema, ft.getSchema() );
+            FeatureType store2Ft = store2Schema.getFeatureType( ft.getName() );
+            assertNotSame( ft, store2Ft );
+            assertSame( store2Schema, store2Ft.getSchema() );
+        }
+    }
+
+    @Test
+    public void testModifiedSchemaIsReadAgain()
+                            throws Exception {
+        File schemaFile = File.createTempFile( "appschemacache", ".xsd" );
+        try {
+            InputStream is = this.getClass().getResourceAsStream( "../misc/schema/Philosopher.xsd" );
+            OutputStream os = new FileOutputStream( schemaFile );
+            try {
+                IOUtils.copy( is, os );
+            } finally {
+                IOUtils.closeQuietly( is );
+                IOUtils.closeQuietly( os );
+            }
+            AppSchemaCache cache = new AppSchemaCache();
+            GMLSchemaInfoSet gmlSchema = cache.get( null, null, schemaFile ).getGMLSchema();
+            assertSame( gmlSchema, cache.get( null, null, schemaFile ).getGMLSchema() );
+
+            schemaFile.setLastModified( schemaFile.lastModified() + 10000 );
+            GMLSchemaInfoSet reread = cache.get( null, null, schemaFile ).getGMLSchema();
+            assertNotSame( gmlSchema, reread );
+            assertSame( reread, cache.get( null, null, schemaFile ).getGMLSchema() );
+        } finally {
+            schemaFile.delete();
+        }
+    }
+
+    @Test
+    public void testCachesAreIndependent()
+                            throws Exception {
+        String schemaURL = this.getClass().getResource( "../misc/schema/Philosopher.xsd" ).toString();
+        AppSchema schema = new AppSchemaCache().get( null, null, schemaURL );
+        assertNotSame( schema.getGMLSchema(),
+                       AppSchemaCache.forWorkspace( null ).get( null, null, schemaURL ).getGMLSchema() );
+    }
+}
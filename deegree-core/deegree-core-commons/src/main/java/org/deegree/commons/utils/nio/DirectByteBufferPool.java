@@ -36,17 +36,34 @@
 
 package org.deegree.commons.utils.nio;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * The <code>DirectByteBufferPool</code> pools a number of direct 'native' bytebuffers so they can be reused.
+ * <p>
+ * Requested capacities are rounded up to power-of-two size classes. Buffers of the smaller size classes are carved from
+ * large direct slabs, so buffers of similar sizes share memory and the direct memory budget does not fragment into
+ * buffers of unique sizes. Freed buffers are kept in lock-free free lists (one per size class), so allocation and
+ * deallocation do not require a global lock.
+ * </p>
+ * <p>
+ * If a size class has no free buffers and no new slab can be reserved (the total capacity of the pool is limited), a
+ * slab whose buffers are all free is carved again for the requested size class. If no such slab is large enough,
+ * completely free slabs are released to reserve a new one, otherwise a free buffer of a larger size class is used. If
+ * there is none either, the pool either fails (throws an {@link OutOfMemoryError}) or blocks until a buffer is freed,
+ * depending on the {@link ExhaustionPolicy}.
+ * </p>
+ * <p>
+ * The returned buffers have a limit equal to the requested capacity, their capacity may be larger.
+ * </p>
  * 
  * @author <a href="mailto:schneider@lat-lon.de">Markus Schneider</a>
  * @author last edited by: $Author: schneider $
@@ -57,22 +74,52 @@ public class DirectByteBufferPool {
 
     private static Logger LOG = LoggerFactory.getLogger( DirectByteBufferPool.class );
 
-    private final int MAX_MEMORY_CAPACITY;
+    /**
+     * Determines the behaviour of the pool if the requested buffer cannot be allocated without exceeding the capacity
+     * limit.
+     */
+    public enum ExhaustionPolicy {
+        /** Throw an {@link OutOfMemoryError}. */
+        FAIL,
+        /** Wait until a suitable buffer is freed (or the maximum wait time has elapsed). */
+        BLOCK
+    }
+
+    // smallest size class: 1 KiB
+    private static final int MIN_SHIFT = 10;
+
+    // largest size class: 1 GiB
+    private static final int MAX_SHIFT = 30;
+
+    private static final int MAX_SLAB_SIZE = 4 * 1024 * 1024;
+
+    private static final int MIN_SLAB_SIZE = 64 * 1024;
+
+    private final long maxCapacity;
+
+    private final int slabSize;
+
+    private final String name;
+
+    private final ExhaustionPolicy policy;
+
+    private final long maxWaitMillis;
 
-    private long totalCapacity;
+    private final SizeClass[] sizeClasses = new SizeClass[MAX_SHIFT - MIN_SHIFT + 1];
 
-    // private final Set<PooledByteBuffer> allBuffers = new HashSet<PooledByteBuffer>();
+    private final AtomicLong reservedCapacity = new AtomicLong();
 
-    // private final SortedMap<Integer, Set<PooledByteBuffer>> freeBuffers = new TreeMap<Integer,
-    // Set<PooledByteBuffer>>();
+    private final AtomicLong allocatedCapacity = new AtomicLong();
 
-    private final Set<PooledByteBuffer> allBuffers = new HashSet<PooledByteBuffer>();
+    private final AtomicLong requestedCapacity = new AtomicLong();
 
-    private final Map<Integer, Set<PooledByteBuffer>> freeBuffers = new HashMap<Integer, Set<PooledByteBuffer>>();
+    private final AtomicLong numSlabs = new AtomicLong();
 
-    private String name;
+    private final AtomicLong nextId = new AtomicLong();
 
-    private int id = 0;
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final Object freeSignal = new Object();
 
     /**
      * Construct a direct byte buffer which may allocate buffers with given capacity
@@ -82,8 +129,32 @@ public class DirectByteBufferPool {
      * @param name
      */
     public DirectByteBufferPool( int capacityLimit, String name ) {
-        this.MAX_MEMORY_CAPACITY = capacityLimit;
+        this( capacityLimit, name, ExhaustionPolicy.FAIL, 0 );
+    }
+
+    /**
+     * Construct a direct byte buffer pool with the given exhaustion policy.
+     * 
+     * @param capacityLimit
+     *            total capacity (in bytes) of this pool
+     * @param name
+     *            name of the pool (used for logging)
+     * @param policy
+     *            behaviour if the capacity limit is reached, must not be <code>null</code>
+     * @param maxWaitMillis
+     *            maximum number of milliseconds to wait for a free buffer (only used for
+     *            {@link ExhaustionPolicy#BLOCK}), <code>0</code> for no limit
+     */
+    public DirectByteBufferPool( long capacityLimit, String name, ExhaustionPolicy policy, long maxWaitMillis ) {
+        this.maxCapacity = capacityLimit;
         this.name = name;
+        this.policy = policy;
+        this.maxWaitMillis = maxWaitMillis;
+        long slab = Long.highestOneBit( Math.max( 1, capacityLimit / 16 ) );
+        this.slabSize = (int) Math.max( MIN_SLAB_SIZE, Math.min( MAX_SLAB_SIZE, slab ) );
+        for ( int i = 0; i < sizeClasses.length; i++ ) {
+            sizeClasses[i] = new SizeClass( i, 1 << ( MIN_SHIFT + i ) );
+        }
     }
 
     /**
@@ -94,185 +165,435 @@ public class DirectByteBufferPool {
      *             if no PooledByteBuffer with the given capacity is available and allocating it from the system would
      *             exceed the assigned resources
      */
-    public synchronized PooledByteBuffer allocate( int capacity )
+    public PooledByteBuffer allocate( int capacity )
                             throws OutOfMemoryError {
+        SizeClass sizeClass = getSizeClass( capacity );
+        PooledByteBuffer buffer = poll( sizeClass );
+        if ( buffer == null ) {
+            buffer = allocateSlow( sizeClass );
+        }
+        if ( buffer == null ) {
+            buffer = handleExhaustion( sizeClass, capacity );
+        }
+        buffer.setInUse( capacity );
+        allocatedCapacity.addAndGet( buffer.capacity() );
+        requestedCapacity.addAndGet( capacity );
+        sizeClasses[buffer.getSizeClass()].inUse.incrementAndGet();
+        buffer.clear();
+        buffer.limit( capacity );
+        return buffer;
+    }
 
-        PooledByteBuffer buffer = null;
+    /**
+     * Notifies the pool the given buffer is free for use.
+     * 
+     * @param buffer
+     *            to be freed.
+     */
+    public void deallocate( PooledByteBuffer buffer ) {
+        if ( buffer == null ) {
+            return;
+        }
+        if ( !buffer.isFromPool( this ) ) {
+            String msg = name + ":Buffer to be deallocated (" + buffer + ") has not been allocated using the pool.";
+            LOG.warn( msg );
+            buffer.markAsFree();
+            return;
+        }
+        int requested = buffer.setFree();
+        if ( requested < 0 ) {
+            LOG.warn( name + ":Buffer to be deallocated (" + buffer + ") has already been deallocated." );
+            return;
+        }
+        SizeClass sizeClass = sizeClasses[buffer.getSizeClass()];
+        sizeClass.inUse.decrementAndGet();
+        allocatedCapacity.addAndGet( -buffer.capacity() );
+        requestedCapacity.addAndGet( -requested );
+
+        // offer first, so a slab only becomes completely free once all of its buffers are in the free list
+        sizeClass.free.offer( buffer );
+        buffer.getSlab().release();
+        if ( waiters.get() > 0 ) {
+            synchronized ( freeSignal ) {
+                freeSignal.notifyAll();
+            }
+        }
+    }
 
-        Set<PooledByteBuffer> availableBuffers = this.freeBuffers.get( capacity );
-        // System.out.println( sb.toString() );
-        if ( availableBuffers != null && !availableBuffers.isEmpty() ) {
-            if ( LOG.isDebugEnabled() ) {
-                StringBuilder sb = new StringBuilder( name );
-                sb.append( ":(" ).append( allBuffers.size() ).append( ")| found a freebuffer entry for capacity: " );
-                sb.append( capacity ).append( ", buffer has size(): " + availableBuffers.size() );
-                LOG.debug( sb.toString() );
+    /**
+     * @param capacity
+     * @return true if the pool has more free space.
+     */
+    public boolean canAllocate( int capacity ) {
+        SizeClass sizeClass = getSizeClass( capacity );
+        long available = maxCapacity - reservedCapacity.get();
+        if ( available >= sizeClass.size ) {
+            return true;
+        }
+        for ( int i = sizeClass.index; i < sizeClasses.length; i++ ) {
+            if ( !sizeClasses[i].free.isEmpty() ) {
+                return true;
             }
-            buffer = availableBuffers.iterator().next();
-            buffer.clear();
-            availableBuffers.remove( buffer );
-        } else {
-            // test if a larger buffer is free and retrieve that.
-            if ( !freeBuffers.isEmpty() ) {
-                for ( Integer cap : freeBuffers.keySet() ) {
-                    if ( cap != null && cap >= capacity ) {
-                        availableBuffers = freeBuffers.get( cap );
-                        if ( !availableBuffers.isEmpty() ) {
-                            if ( LOG.isDebugEnabled() ) {
-                                StringBuilder sb = new StringBuilder( name );
-                                sb.append( ":(" ).append( allBuffers.size() ).append( ")| found a larger (" );
-                                sb.append( cap ).append( ") freebuffer entry for capacity: " );
-                                sb.append( capacity ).append( ", buffer has size(): " + availableBuffers.size() );
-                                LOG.debug( sb.toString() );
-                            }
-                            buffer = availableBuffers.iterator().next();
-                            buffer.clear();
-                            buffer.limit( capacity );
-                            availableBuffers.remove( buffer );
-                            break;
-                        }
+        }
+        for ( SizeClass other : sizeClasses ) {
+            for ( Slab slab : other.slabs ) {
+                if ( slab.isFree() ) {
+                    if ( slab.capacity >= sizeClass.size ) {
+                        return true;
                     }
+                    available += slab.capacity;
                 }
             }
-            if ( buffer == null ) {
-                if ( LOG.isDebugEnabled() ) {
-                    StringBuilder sb = new StringBuilder( name );
-                    sb.append( ":(" ).append( allBuffers.size() ).append( ")| no freebuffer entry for capacity: " );
-                    sb.append( capacity ).append( ", creating new direct buffer." );
-                    LOG.debug( sb.toString() );
-                }
-                if ( totalCapacity + capacity > MAX_MEMORY_CAPACITY ) {
-                    String msg = name + ": Maximum memory size for direct buffers (=" + MAX_MEMORY_CAPACITY
-                                 + ") exceeded, requested: " + capacity + ", freebuffers: " + this.freeBuffers.size()
-                                 + " totalBuffers: " + allBuffers.size();
-                    throw new OutOfMemoryError( msg );
-                }
-                buffer = new PooledByteBuffer( capacity, this, id++ );
+        }
+        return available >= sizeClass.size;
+    }
+
+    /**
+     * Returns the maximum capacity of the pool.
+     * 
+     * @return maximum number of bytes of direct memory that the pool may allocate
+     */
+    public long getMaxCapacity() {
+        return maxCapacity;
+    }
+
+    /**
+     * Returns the capacity of the direct memory that has been reserved from the system (slabs and large buffers).
+     * 
+     * @return number of reserved bytes
+     */
+    public long getReservedCapacity() {
+        return reservedCapacity.get();
+    }
+
+    /**
+     * Returns the capacity of the buffers that are currently in use.
+     * 
+     * @return number of bytes in use (capacities of the buffers, i.e. rounded up to the size classes)
+     */
+    public long getAllocatedCapacity() {
+        return allocatedCapacity.get();
+    }
+
+    /**
+     * Returns the capacity that has been requested for the buffers that are currently in use.
+     * 
+     * @return number of requested bytes in use
+     */
+    public long getRequestedCapacity() {
+        return requestedCapacity.get();
+    }
+
+    /**
+     * Returns the utilization of the reserved memory.
+     * 
+     * @return ratio of allocated to reserved capacity (between <code>0</code> and <code>1</code>)
+     */
+    public double getUtilization() {
+        long reserved = reservedCapacity.get();
+        return reserved == 0 ? 0 : (double) allocatedCapacity.get() / reserved;
+    }
 
-                totalCapacity += capacity;
-                allBuffers.add( buffer );
+    /**
+     * Returns the internal fragmentation, i.e. the share of the allocated capacity that is wasted by rounding up the
+     * requested capacities to the size classes.
+     * 
+     * @return ratio of unused to allocated capacity (between <code>0</code> and <code>1</code>)
+     */
+    public double getFragmentation() {
+        long allocated = allocatedCapacity.get();
+        return allocated == 0 ? 0 : 1.0 - (double) requestedCapacity.get() / allocated;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder( name );
+        sb.append( ": slabs: " ).append( numSlabs.get() );
+        sb.append( ", reserved: " ).append( reservedCapacity.get() ).append( "/" ).append( maxCapacity );
+        sb.append( ", allocated: " ).append( allocatedCapacity.get() );
+        sb.append( ", requested: " ).append( requestedCapacity.get() );
+        sb.append( ", buffers in use (size:count):" );
+        for ( SizeClass sizeClass : sizeClasses ) {
+            int inUse = sizeClass.inUse.get();
+            if ( inUse > 0 ) {
+                sb.append( ' ' ).append( sizeClass.size ).append( ':' ).append( inUse );
+            }
+        }
+        return sb.toString();
+    }
+
+    private SizeClass getSizeClass( int capacity ) {
+        if ( capacity > 1 << MAX_SHIFT ) {
+            throw new OutOfMemoryError( name + ": Requested capacity (" + capacity
+                                        + ") exceeds the maximum size of pooled buffers." );
+        }
+        int shift = capacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros( capacity - 1 );
+        return sizeClasses[Math.max( shift, MIN_SHIFT ) - MIN_SHIFT];
+    }
+
+    /**
+     * Takes a buffer from the free list of the given size class. Buffers of slabs that are being carved for another
+     * size class are skipped (and dropped).
+     */
+    private PooledByteBuffer poll( SizeClass sizeClass ) {
+        PooledByteBuffer buffer;
+        while ( ( buffer = sizeClass.free.poll() ) != null ) {
+            if ( buffer.getSlab().acquire() ) {
+                return buffer;
             }
         }
+        return null;
+    }
+
+    private PooledByteBuffer allocateSlow( SizeClass sizeClass ) {
+        PooledByteBuffer buffer = carve( sizeClass );
+        if ( buffer == null ) {
+            buffer = reclaim( sizeClass );
+        }
+        if ( buffer == null ) {
+            buffer = pollLarger( sizeClass );
+        }
         return buffer;
     }
 
+    private PooledByteBuffer pollLarger( SizeClass sizeClass ) {
+        for ( int i = sizeClass.index + 1; i < sizeClasses.length; i++ ) {
+            PooledByteBuffer buffer = poll( sizeClasses[i] );
+            if ( buffer != null ) {
+                LOG.debug( "{}: using free buffer of size {} for size class {}.", new Object[] { name,
+                                                                                                 sizeClasses[i].size,
+                                                                                                 sizeClass.size } );
+                return buffer;
+            }
+        }
+        return null;
+    }
+
     /**
-     * @param capacity
-     * @return the requested byte buffer
-     * 
-     * @throws OutOfMemoryError
-     *             if no PooledByteBuffer with the given capacity is available and allocating it from the system would
-     *             exceed the assigned resources
+     * Reserves a new direct slab for the given size class and splits it into buffers.
      */
-    public synchronized PooledByteBuffer allocate_( int capacity )
-                            throws OutOfMemoryError {
+    private PooledByteBuffer carve( SizeClass sizeClass ) {
+        int size = sizeClass.size;
+        int carveSize = Math.max( size, slabSize );
+        if ( !reserve( carveSize ) ) {
+            // try a smaller slab with the remaining budget
+            long remaining = maxCapacity - reservedCapacity.get();
+            if ( remaining < size ) {
+                return null;
+            }
+            carveSize = (int) Math.max( size, Long.highestOneBit( Math.min( remaining, carveSize ) ) );
+            if ( !reserve( carveSize ) ) {
+                return null;
+            }
+        }
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( name + ": allocating new direct slab of " + carveSize + " bytes for size class " + size
+                       + ", reserved: " + reservedCapacity.get() + "/" + maxCapacity );
+        }
+        ByteBuffer memory;
+        try {
+            memory = ByteBuffer.allocateDirect( carveSize );
+        } catch ( OutOfMemoryError e ) {
+            reservedCapacity.addAndGet( -carveSize );
+            throw e;
+        }
+        numSlabs.incrementAndGet();
+        return split( new Slab( memory ), sizeClass );
+    }
 
-        PooledByteBuffer buffer = null;
-
-        // get all free byte buffers with at least the given capacity
-        Map<Integer, Set<PooledByteBuffer>> tailMap = new HashMap<Integer, Set<PooledByteBuffer>>();// this.freeBuffers.tailMap(
-        // capacity );
-        // Map<Integer, Set<PooledByteBuffer>> tailMap = this.freeBuffers;
-
-        // Set<PooledByteBuffer> freeBuffers = this.freeBuffers.get( capacity );
-        // if ( freeBuffers != null && freeBuffers.size() > 0 ) {
-        if ( /* tailMap != null && */!tailMap.isEmpty() ) {
-            Iterator<Set<PooledByteBuffer>> tailIt = tailMap.values().iterator();
-            while ( tailIt.hasNext() && buffer == null ) {
-                Set<PooledByteBuffer> frBuffers = tailIt.next();
-                if ( frBuffers != null && !frBuffers.isEmpty() ) {
-                    Iterator<PooledByteBuffer> frBufIt = frBuffers.iterator();
-                    while ( buffer == null && frBufIt.hasNext() ) {
-                        buffer = frBufIt.next();
-                        if ( buffer != null ) {
-                            buffer.clear();
-                            // set the limit
-                            buffer.limit( capacity );
-                        }
+    /**
+     * Reuses the memory of slabs whose buffers are all free (and that have been carved for other size classes).
+     */
+    private PooledByteBuffer reclaim( SizeClass sizeClass ) {
+        int size = sizeClass.size;
+        long releasable = maxCapacity - reservedCapacity.get();
+        for ( SizeClass other : sizeClasses ) {
+            if ( other == sizeClass ) {
+                continue;
+            }
+            for ( Slab slab : other.slabs ) {
+                if ( slab.isFree() ) {
+                    if ( slab.capacity >= size && retire( other, slab ) ) {
+                        LOG.debug( "{}: carving free slab of size class {} for size class {}.",
+                                   new Object[] { name, other.size, size } );
+                        // a new slab instance, so stale buffers of the retired one can never be acquired again
+                        return split( new Slab( slab.memory ), sizeClass );
                     }
+                    releasable += slab.capacity;
                 }
-                if ( buffer != null && frBuffers != null ) {
-                    frBuffers.remove( buffer );
-                }
-            }
-            if ( LOG.isDebugEnabled() ) {
-                StringBuilder sb = new StringBuilder( name );
-                sb.append( "| Found a free Buffer!" );
-                sb.append( "| requested: " ).append( capacity );
-                sb.append( "| tailMap: " ).append( tailMap );
-                sb.append( "| freebuffers: " ).append( freeBuffers.size() );
-                sb.append( "| allBuffers: " ).append( allBuffers.size() );
-                LOG.debug( sb.toString() );
             }
         }
-        if ( buffer == null ) {
-            if ( LOG.isDebugEnabled() ) {
-                StringBuilder sb = new StringBuilder( name );
-                sb.append( "| requested: " ).append( capacity );
-                sb.append( "| tailMap: " ).append( tailMap );
-                sb.append( "| freebuffers: " ).append( freeBuffers.size() );
-                sb.append( "| allBuffers: " ).append( allBuffers.size() );
-                LOG.debug( sb.toString() );
-            }
-            if ( totalCapacity + capacity > MAX_MEMORY_CAPACITY ) {
-                String msg = name + ":Maximum memory size for direct buffers (=" + MAX_MEMORY_CAPACITY + ") exceeded";
-                throw new OutOfMemoryError( msg );
+        if ( releasable < size ) {
+            return null;
+        }
+        // no single free slab is large enough: release free slabs until a new slab can be reserved (the memory is
+        // returned to the system once the slabs are garbage collected)
+        for ( SizeClass other : sizeClasses ) {
+            for ( Slab slab : other.slabs ) {
+                if ( maxCapacity - reservedCapacity.get() >= size ) {
+                    return carve( sizeClass );
+                }
+                if ( retire( other, slab ) ) {
+                    LOG.debug( "{}: releasing free slab of {} bytes.", name, slab.capacity );
+                    reservedCapacity.addAndGet( -slab.capacity );
+                    numSlabs.decrementAndGet();
+                }
             }
+        }
+        return carve( sizeClass );
+    }
 
-            buffer = new PooledByteBuffer( capacity, this, id++ );
-            totalCapacity += capacity;
-            allBuffers.add( buffer );
-            LOG.debug( "New buffer: " + buffer );
+    /**
+     * Marks the given slab as unusable for its size class, if all of its buffers are free, and removes its buffers from
+     * the free list.
+     */
+    private boolean retire( SizeClass sizeClass, Slab slab ) {
+        if ( !slab.retire() ) {
+            return false;
         }
-        return buffer;
+        sizeClass.slabs.remove( slab );
+        Iterator<PooledByteBuffer> iter = sizeClass.free.iterator();
+        while ( iter.hasNext() ) {
+            if ( iter.next().getSlab() == slab ) {
+                iter.remove();
+            }
+        }
+        return true;
     }
 
     /**
-     * Notifies the pool the given buffer is free for use.
-     * 
-     * @param buffer
-     *            to be freed.
+     * Splits the given slab into buffers of the given size class. All but one are added to the free list of the size
+     * class, the remaining one is returned (and in use).
      */
-    public synchronized void deallocate( PooledByteBuffer buffer ) {
-        if ( buffer != null ) {
-
-            if ( !allBuffers.contains( buffer ) ) {
-                String msg = name + ":Buffer to be deallocated (" + buffer + ") has not been allocated using the pool.";
-                LOG.warn( msg );
-                buffer.markAsFree();
-                // throw new IllegalArgumentException( msg );
+    private PooledByteBuffer split( Slab slab, SizeClass sizeClass ) {
+        int size = sizeClass.size;
+        ByteBuffer memory = slab.memory;
+        slab.acquireFirst();
+        PooledByteBuffer first = null;
+        for ( int offset = 0; offset + size <= slab.capacity; offset += size ) {
+            memory.limit( offset + size );
+            memory.position( offset );
+            ByteBuffer slice = memory.slice();
+            slice.order( ByteOrder.nativeOrder() );
+            PooledByteBuffer buffer = new PooledByteBuffer( slice, this, slab, nextId.getAndIncrement(),
+                                                            sizeClass.index );
+            if ( first == null ) {
+                first = buffer;
             } else {
-                int capacity = buffer.capacity();
-                Set<PooledByteBuffer> buffers = freeBuffers.get( capacity );
-                if ( buffers == null ) {
-                    buffers = new HashSet<PooledByteBuffer>();
-                    freeBuffers.put( capacity, buffers );
-                }
-                // System.out.println( name + ":deallocate: freebuffer capas after: " + freeBuffers.size()
-                // + ", number of freebuffers for capa: " + capacity + ", "
-                // + freeBuffers.get( capacity ).size() );
-                buffers.add( buffer );
-                // System.out.println( name + ":deallocate: freebuffer capas before: " + freeBuffers.size()
-                // + ", number of freebuffers for capa: " + capacity + ", "
-                // + freeBuffers.get( capacity ).size() );
+                sizeClass.free.offer( buffer );
+            }
+        }
+        sizeClass.slabs.add( slab );
+        return first;
+    }
 
+    private boolean reserve( long capacity ) {
+        while ( true ) {
+            long current = reservedCapacity.get();
+            if ( current + capacity > maxCapacity ) {
+                return false;
+            }
+            if ( reservedCapacity.compareAndSet( current, current + capacity ) ) {
+                return true;
             }
         }
     }
 
-    @Override
-    public String toString() {
-        return "Number of buffers: " + this.allBuffers.size() + ", total capacity: " + totalCapacity;
+    private PooledByteBuffer handleExhaustion( SizeClass sizeClass, int capacity ) {
+        if ( policy == ExhaustionPolicy.BLOCK ) {
+            long deadline = maxWaitMillis > 0 ? System.currentTimeMillis() + maxWaitMillis : Long.MAX_VALUE;
+            waiters.incrementAndGet();
+            try {
+                synchronized ( freeSignal ) {
+                    while ( true ) {
+                        PooledByteBuffer buffer = poll( sizeClass );
+                        if ( buffer == null ) {
+                            buffer = allocateSlow( sizeClass );
+                        }
+                        if ( buffer != null ) {
+                            return buffer;
+                        }
+                        long wait = deadline - System.currentTimeMillis();
+                        if ( wait <= 0 ) {
+                            break;
+                        }
+                        freeSignal.wait( Math.min( wait, 1000 ) );
+                    }
+                }
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+        String msg = name + ": Maximum memory size for direct buffers (=" + maxCapacity + ") exceeded, requested: "
+                     + capacity + ", " + this;
+        throw new OutOfMemoryError( msg );
+    }
+
+    private static class SizeClass {
+
+        private final int index;
+
+        private final int size;
+
+        private final ConcurrentLinkedQueue<PooledByteBuffer> free = new ConcurrentLinkedQueue<PooledByteBuffer>();
+
+        private final AtomicInteger inUse = new AtomicInteger();
+
+        // slabs that are currently carved into buffers of this size class
+        private final ConcurrentLinkedQueue<Slab> slabs = new ConcurrentLinkedQueue<Slab>();
+
+        SizeClass( int index, int size ) {
+            this.index = index;
+            this.size = size;
+        }
     }
 
     /**
-     * @param capacity
-     * @return true if the pool has more free space.
+     * Direct memory that is carved into the buffers of one size class. Keeps track of the number of its buffers in use,
+     * so the memory can be carved for another size class once all of them are free.
      */
-    public synchronized boolean canAllocate( int capacity ) {
-        boolean result = false;
-        Set<PooledByteBuffer> capBuffers = freeBuffers.get( capacity );
-        result = capBuffers != null && !capBuffers.isEmpty();
-        return result || ( ( totalCapacity + capacity ) <= MAX_MEMORY_CAPACITY );
+    static final class Slab {
+
+        private final ByteBuffer memory;
+
+        private final int capacity;
+
+        // number of buffers in use, -1 if the slab has been retired (carved for another size class or released)
+        private final AtomicInteger inUse = new AtomicInteger();
+
+        Slab( ByteBuffer memory ) {
+            this.memory = memory;
+            this.capacity = memory.capacity();
+        }
+
+        boolean acquire() {
+            while ( true ) {
+                int current = inUse.get();
+                if ( current < 0 ) {
+                    return false;
+                }
+                if ( inUse.compareAndSet( current, current + 1 ) ) {
+                    return true;
+                }
+            }
+        }
+
+        void acquireFirst() {
+            inUse.set( 1 );
+        }
+
+        void release() {
+            inUse.decrementAndGet();
+        }
+
+        boolean isFree() {
+            return inUse.get() == 0;
+        }
+
+        boolean retire() {
+            return inUse.compareAndSet( 0, -1 );
+        }
     }
 }
@@ -36,6 +36,7 @@ package org.deegree.commons.utils.nio;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 
@@ -54,17 +55,32 @@ public class PooledByteBuffer {
 
     private final long id;
 
+    private final DirectByteBufferPool.Slab slab;
+
+    private final int sizeClass;
+
+    // requested capacity while in use, -1 if free
+    private final AtomicInteger requested = new AtomicInteger( -1 );
+
     /**
      * Only intantiable from the {@link DirectByteBufferPool}.
      * 
-     * @param capacity
+     * @param buffer
+     *            slice of a direct slab
      * @param pool
+     * @param slab
+     *            slab the buffer has been carved from
+     * @param id
+     * @param sizeClass
+     *            index of the size class in the pool
      */
-    PooledByteBuffer( int capacity, DirectByteBufferPool pool, long id ) {
-        this.buffer = ByteBuffer.allocateDirect( capacity );
-        this.buffer.order( ByteOrder.nativeOrder() );
+    PooledByteBuffer( ByteBuffer buffer, DirectByteBufferPool pool, DirectByteBufferPool.Slab slab, long id,
+                      int sizeClass ) {
+        this.buffer = buffer;
         this.pool = pool;
+        this.slab = slab;
         this.id = id;
+        this.sizeClass = sizeClass;
     }
 
     /**
@@ -75,6 +91,8 @@ public class PooledByteBuffer {
         this.buffer = ByteBuffer.allocateDirect( capacity );
         this.buffer.order( ByteOrder.nativeOrder() );
         this.id = 0;
+        this.slab = null;
+        this.sizeClass = -1;
     }
 
     /**
@@ -95,6 +113,29 @@ public class PooledByteBuffer {
         }
     }
 
+    boolean isFromPool( DirectByteBufferPool pool ) {
+        return pool != null && this.pool == pool;
+    }
+
+    DirectByteBufferPool.Slab getSlab() {
+        return slab;
+    }
+
+    int getSizeClass() {
+        return sizeClass;
+    }
+
+    void setInUse( int requestedCapacity ) {
+        requested.set( requestedCapacity );
+    }
+
+    /**
+     * @return the requested capacity, or <code>-1</code> if the buffer has already been freed
+     */
+    int setFree() {
+        return requested.getAndSet( -1 );
+    }
+
     /**
      * Just set the reference to null.
      */
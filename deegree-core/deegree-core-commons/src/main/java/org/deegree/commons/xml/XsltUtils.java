@@ -46,16 +46,25 @@ import java.io.File;
 import java.io.OutputStream;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.transform.Result;
+import javax.xml.transform.Templates;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 
 /**
  * Utility methods to transform xml streams with xslt.
+ * <p>
+ * Compiled stylesheets are cached and shared between invocations. A cached stylesheet is compiled again if the
+ * modification date of the file changes.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -64,14 +73,86 @@ import javax.xml.transform.stream.StreamSource;
  */
 public class XsltUtils {
 
+    private static final ConcurrentMap<String, CompiledStylesheet> CACHE = new ConcurrentHashMap<String, CompiledStylesheet>();
+
     public static void transform( byte[] doc, URL xsltUrl, OutputStream out )
                             throws URISyntaxException, TransformerException {
         StreamSource source = new StreamSource( new ByteArrayInputStream( doc ) );
-        StreamSource xslt = new StreamSource( new File( xsltUrl.toURI() ) );
-        TransformerFactory fac = TransformerFactory.newInstance();
-        Transformer t = fac.newTransformer( xslt );
+        Transformer t = getStylesheet( xsltUrl ).templates.newTransformer();
         Result result = new StreamResult( out );
         t.transform( source, result );
     }
 
+    /**
+     * Returns the compiled version of the given stylesheet.
+     * 
+     * @param xsltUrl
+     *            location of the stylesheet, must point to a file
+     * @return compiled stylesheet, never <code>null</code>
+     * @throws URISyntaxException
+     * @throws TransformerException
+     *             if the stylesheet could not be compiled
+     */
+    public static Templates getTemplates( URL xsltUrl )
+                            throws URISyntaxException, TransformerException {
+        return getStylesheet( xsltUrl ).templates;
+    }
+
+    /**
+     * Creates a SAX handler that transforms the received document with the given stylesheet and writes the result to
+     * the given stream. This allows to transform documents while they are generated.
+     * 
+     * @param xsltUrl
+     *            location of the stylesheet, must point to a file
+     * @param out
+     *            stream to write the transformation result to, must not be <code>null</code>
+     * @return transforming handler, never <code>null</code>
+     * @throws URISyntaxException
+     * @throws TransformerException
+     *             if the stylesheet could not be compiled or the XSLT processor does not support SAX
+     */
+    public static TransformerHandler createTransformerHandler( URL xsltUrl, OutputStream out )
+                            throws URISyntaxException, TransformerException {
+        CompiledStylesheet stylesheet = getStylesheet( xsltUrl );
+        if ( !stylesheet.factory.getFeature( SAXTransformerFactory.FEATURE ) ) {
+            throw new TransformerException( "The XSLT processor does not support SAX input." );
+        }
+        TransformerHandler handler;
+        synchronized ( stylesheet.factory ) {
+            handler = ( (SAXTransformerFactory) stylesheet.factory ).newTransformerHandler( stylesheet.templates );
+        }
+        handler.setResult( new StreamResult( out ) );
+        return handler;
+    }
+
+    private static CompiledStylesheet getStylesheet( URL xsltUrl )
+                            throws URISyntaxException, TransformerException {
+        File file = new File( xsltUrl.toURI() );
+        long lastModified = file.lastModified();
+        String key = xsltUrl.toExternalForm();
+        CompiledStylesheet stylesheet = CACHE.get( key );
+        if ( stylesheet == null || stylesheet.lastModified != lastModified ) {
+            TransformerFactory fac = TransformerFactory.newInstance();
+            Templates templates = fac.newTemplates( new StreamSource( file ) );
+            stylesheet = new CompiledStylesheet( fac, templates, lastModified );
+            CACHE.put( key, stylesheet );
+        }
+        return stylesheet;
+    }
+
+    private static class CompiledStylesheet {
+
+        private final TransformerFactory factory;
+
+        private final Templates templates;
+
+        private final long lastModified;
+
+        private CompiledStylesheet( TransformerFactory factory, Templates templates, long lastModified ) {
+            this.factory = factory;
+            this.templates = templates;
+            this.lastModified = lastModified;
+        }
+    }
+
 }
@@ -0,0 +1,568 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.xml.stax;
+
+import static javax.xml.XMLConstants.NULL_NS_URI;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+import static javax.xml.XMLConstants.XML_NS_PREFIX;
+import static javax.xml.XMLConstants.XML_NS_URI;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * {@link XMLStreamWriter} that forwards the written events to a SAX {@link ContentHandler}.
+ * <p>
+ * Allows to feed StAX based encoders (e.g. the GML writers) directly into SAX based consumers (e.g. XSLT transformer
+ * handlers) without serializing the document first. Namespaces are repaired: prefixes that are used by elements or
+ * attributes, but have not been declared in scope, are declared automatically. If the handler is a
+ * {@link LexicalHandler} as well, comments and CDATA sections are forwarded, otherwise comments are dropped.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ContentHandlerXMLStreamWriter implements XMLStreamWriter {
+
+    private final ContentHandler handler;
+
+    private final LexicalHandler lexicalHandler;
+
+    private final List<Scope> scopes = new ArrayList<Scope>();
+
+    private NamespaceContext rootContext;
+
+    private Scope pending;
+
+    private boolean pendingEmpty;
+
+    private AttributesImpl attributes = new AttributesImpl();
+
+    private boolean documentStarted;
+
+    private boolean documentEnded;
+
+    private int generatedPrefixes;
+
+    /**
+     * Creates a new {@link ContentHandlerXMLStreamWriter} instance.
+     * 
+     * @param handler
+     *            handler to forward the events to, must not be <code>null</code>
+     */
+    public ContentHandlerXMLStreamWriter( ContentHandler handler ) {
+        this.handler = handler;
+        this.lexicalHandler = handler instanceof LexicalHandler ? (LexicalHandler) handler : null;
+        scopes.add( new Scope( null, null, null ) );
+    }
+
+    @Override
+    public void writeStartDocument()
+                            throws XMLStreamException {
+        startDocument();
+    }
+
+    @Override
+    public void writeStartDocument( String version )
+                            throws XMLStreamException {
+        startDocument();
+    }
+
+    @Override
+    public void writeStartDocument( String encoding, String version )
+                            throws XMLStreamException {
+        startDocument();
+    }
+
+    @Override
+    public void writeEndDocument()
+                            throws XMLStreamException {
+        flushPending();
+        while ( scopes.size() > 1 ) {
+            writeEndElement();
+        }
+        if ( documentStarted && !documentEnded ) {
+            documentEnded = true;
+            try {
+                handler.endDocument();
+            } catch ( SAXException e ) {
+                throw new XMLStreamException( e.getMessage(), e );
+            }
+        }
+    }
+
+    @Override
+    public void writeStartElement( String localName )
+                            throws XMLStreamException {
+        String uri = lookup( "", false );
+        startElement( "", localName, uri == null ? NULL_NS_URI : uri, false );
+    }
+
+    @Override
+    public void writeStartElement( String namespaceURI, String localName )
+                            throws XMLStreamException {
+        startElement( getElementPrefix( namespaceURI ), localName, namespaceURI, false );
+    }
+
+    @Override
+    public void writeStartElement( String prefix, String localName, String namespaceURI )
+                            throws XMLStreamException {
+        startElement( prefix, localName, namespaceURI, false );
+    }
+
+    @Override
+    public void writeEmptyElement( String localName )
+                            throws XMLStreamException {
+        String uri = lookup( "", false );
+        startElement( "", localName, uri == null ? NULL_NS_URI : uri, true );
+    }
+
+    @Override
+    public void writeEmptyElement( String namespaceURI, String localName )
+                            throws XMLStreamException {
+        startElement( getElementPrefix( namespaceURI ), localName, namespaceURI, true );
+    }
+
+    @Override
+    public void writeEmptyElement( String prefix, String localName, String namespaceURI )
+                            throws XMLStreamException {
+        startElement( prefix, localName, namespaceURI, true );
+    }
+
+    @Override
+    public void writeEndElement()
+                            throws XMLStreamException {
+        flushPending();
+        if ( scopes.size() < 2 ) {
+            throw new XMLStreamException( "No element to be closed." );
+        }
+        endElement( scopes.remove( scopes.size() - 1 ) );
+    }
+
+    @Override
+    public void writeNamespace( String prefix, String namespaceURI )
+                            throws XMLStreamException {
+        if ( prefix == null || prefix.isEmpty() || XMLNS_ATTRIBUTE.equals( prefix ) ) {
+            writeDefaultNamespace( namespaceURI );
+            return;
+        }
+        if ( pending == null ) {
+            throw new XMLStreamException( "Namespace declarations are only allowed after a start element." );
+        }
+        declare( prefix, namespaceURI );
+    }
+
+    @Override
+    public void writeDefaultNamespace( String namespaceURI )
+                            throws XMLStreamException {
+        if ( pending == null ) {
+            throw new XMLStreamException( "Namespace declarations are only allowed after a start element." );
+        }
+        declare( "", namespaceURI );
+    }
+
+    @Override
+    public void writeAttribute( String localName, String value )
+                            throws XMLStreamException {
+        checkAttributeAllowed();
+        attributes.addAttribute( NULL_NS_URI, localName, localName, "CDATA", value );
+    }
+
+    @Override
+    public void writeAttribute( String namespaceURI, String localName, String value )
+                            throws XMLStreamException {
+        if ( namespaceURI == null || namespaceURI.isEmpty() ) {
+            writeAttribute( localName, value );
+            return;
+        }
+        checkAttributeAllowed();
+        String prefix = getPrefix( namespaceURI );
+        if ( prefix == null || prefix.isEmpty() ) {
+            prefix = generatePrefix();
+        }
+        addAttribute( prefix, namespaceURI, localName, value );
+    }
+
+    @Override
+    public void writeAttribute( String prefix, String namespaceURI, String localName, String value )
+                            throws XMLStreamException {
+        if ( prefix == null || prefix.isEmpty() ) {
+            writeAttribute( namespaceURI, localName, value );
+            return;
+        }
+        checkAttributeAllowed();
+        addAttribute( prefix, namespaceURI, localName, value );
+    }
+
+    @Override
+    public void writeCharacters( String text )
+                            throws XMLStreamException {
+        if ( text != null ) {
+            writeCharacters( text.toCharArray(), 0, text.length() );
+        }
+    }
+
+    @Override
+    public void writeCharacters( char[] text, int start, int len )
+                            throws XMLStreamException {
+        flushPending();
+        try {
+            handler.characters( text, start, len );
+        } catch ( SAXException e ) {
+            throw new XMLStreamException( e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public void writeCData( String data )
+                            throws XMLStreamException {
+        flushPending();
+        try {
+            if ( lexicalHandler != null ) {
+                lexicalHandler.startCDATA();
+            }
+            handler.characters( data.toCharArray(), 0, data.length() );
+            if ( lexicalHandler != null ) {
+                lexicalHandler.endCDATA();
+            }
+        } catch ( SAXException e ) {
+            throw new XMLStreamException( e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public void writeComment( String data )
+                            throws XMLStreamException {
+        flushPending();
+        if ( lexicalHandler != null ) {
+            try {
+                lexicalHandler.comment( data.toCharArray(), 0, data.length() );
+            } catch ( SAXException e ) {
+                throw new XMLStreamException( e.getMessage(), e );
+            }
+        }
+    }
+
+    @Override
+    public void writeProcessingInstruction( String target )
+                            throws XMLStreamException {
+        writeProcessingInstruction( target, "" );
+    }
+
+    @Override
+    public void writeProcessingInstruction( String target, String data )
+                            throws XMLStreamException {
+        flushPending();
+        try {
+            handler.processingInstruction( target, data );
+        } catch ( SAXException e ) {
+            throw new XMLStreamException( e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public void writeDTD( String dtd )
+                            throws XMLStreamException {
+        // DTDs cannot be forwarded to a content handler
+    }
+
+    @Override
+    public void writeEntityRef( String name )
+                            throws XMLStreamException {
+        throw new XMLStreamException( "Entity references are not supported by the ContentHandlerXMLStreamWriter." );
+    }
+
+    @Override
+    public String getPrefix( String uri )
+                            throws XMLStreamException {
+        if ( uri == null ) {
+            return null;
+        }
+        if ( XML_NS_URI.equals( uri ) ) {
+            return XML_NS_PREFIX;
+        }
+        for ( int i = scopes.size() - 1; i >= 0; i-- ) {
+            for ( Map.Entry<String, String> binding : scopes.get( i ).bindings.entrySet() ) {
+                if ( binding.getValue().equals( uri ) && uri.equals( lookup( binding.getKey(), false ) ) ) {
+                    return binding.getKey();
+                }
+            }
+        }
+        if ( rootContext != null ) {
+            String prefix = rootContext.getPrefix( uri );
+            if ( prefix != null && uri.equals( lookup( prefix, false ) ) ) {
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void setPrefix( String prefix, String uri )
+                            throws XMLStreamException {
+        scopes.get( scopes.size() - 1 ).bindings.put( prefix == null ? "" : prefix, uri );
+    }
+
+    @Override
+    public void setDefaultNamespace( String uri )
+                            throws XMLStreamException {
+        setPrefix( "", uri );
+    }
+
+    @Override
+    public void setNamespaceContext( NamespaceContext context )
+                            throws XMLStreamException {
+        this.rootContext = context;
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return new NamespaceContext() {
+
+            @Override
+            public String getNamespaceURI( String prefix ) {
+                String uri = lookup( prefix, false );
+                return uri == null ? NULL_NS_URI : uri;
+            }
+
+            @Override
+            public String getPrefix( String namespaceURI ) {
+                try {
+                    return ContentHandlerXMLStreamWriter.this.getPrefix( namespaceURI );
+                } catch ( XMLStreamException e ) {
+                    return null;
+                }
+            }
+
+            @Override
+            public Iterator<String> getPrefixes( String namespaceURI ) {
+                String prefix = getPrefix( namespaceURI );
+                if ( prefix == null ) {
+                    return Collections.<String> emptyList().iterator();
+                }
+                return Collections.singletonList( prefix ).iterator();
+            }
+        };
+    }
+
+    @Override
+    public Object getProperty( String name )
+                            throws IllegalArgumentException {
+        throw new IllegalArgumentException( "Property '" + name + "' is not supported." );
+    }
+
+    @Override
+    public void flush()
+                            throws XMLStreamException {
+        // nothing to do
+    }
+
+    /**
+     * Closes all open elements and ends the document (if it has been started).
+     */
+    @Override
+    public void close()
+                            throws XMLStreamException {
+        writeEndDocument();
+    }
+
+    private void startDocument()
+                            throws XMLStreamException {
+        if ( !documentStarted ) {
+            documentStarted = true;
+            try {
+                handler.startDocument();
+            } catch ( SAXException e ) {
+                throw new XMLStreamException( e.getMessage(), e );
+            }
+        }
+    }
+
+    private void startElement( String prefix, String localName, String namespaceURI, boolean empty )
+                            throws XMLStreamException {
+        flushPending();
+        startDocument();
+        if ( prefix == null ) {
+            prefix = "";
+        }
+        if ( namespaceURI == null ) {
+            namespaceURI = NULL_NS_URI;
+        }
+        String qName = prefix.isEmpty() ? localName : prefix + ":" + localName;
+        pending = new Scope( namespaceURI, localName, qName );
+        pendingEmpty = empty;
+        scopes.add( pending );
+        String declared = lookup( prefix, true );
+        if ( !namespaceURI.equals( declared == null ? NULL_NS_URI : declared ) ) {
+            declare( prefix, namespaceURI );
+        }
+    }
+
+    private void endElement( Scope scope )
+                            throws XMLStreamException {
+        try {
+            handler.endElement( scope.namespaceURI, scope.localName, scope.qName );
+            for ( String prefix : scope.declared.keySet() ) {
+                handler.endPrefixMapping( prefix );
+            }
+        } catch ( SAXException e ) {
+            throw new XMLStreamException( e.getMessage(), e );
+        }
+    }
+
+    private void flushPending()
+                            throws XMLStreamException {
+        if ( pending == null ) {
+            return;
+        }
+        Scope scope = pending;
+        pending = null;
+        try {
+            for ( Map.Entry<String, String> declaration : scope.declared.entrySet() ) {
+                handler.startPrefixMapping( declaration.getKey(), declaration.getValue() );
+            }
+            handler.startElement( scope.namespaceURI, scope.localName, scope.qName, attributes );
+        } catch ( SAXException e ) {
+            throw new XMLStreamException( e.getMessage(), e );
+        }
+        attributes = new AttributesImpl();
+        if ( pendingEmpty ) {
+            endElement( scopes.remove( scopes.size() - 1 ) );
+        }
+    }
+
+    private void checkAttributeAllowed()
+                            throws XMLStreamException {
+        if ( pending == null ) {
+            throw new XMLStreamException( "Attributes are only allowed after a start element." );
+        }
+    }
+
+    private void addAttribute( String prefix, String namespaceURI, String localName, String value ) {
+        if ( !namespaceURI.equals( lookup( prefix, true ) ) ) {
+            declare( prefix, namespaceURI );
+        }
+        attributes.addAttribute( namespaceURI, localName, prefix + ":" + localName, "CDATA", value );
+    }
+
+    private String getElementPrefix( String namespaceURI )
+                            throws XMLStreamException {
+        if ( namespaceURI == null || namespaceURI.isEmpty() ) {
+            return "";
+        }
+        String prefix = getPrefix( namespaceURI );
+        return prefix != null ? prefix : generatePrefix();
+    }
+
+    private String generatePrefix() {
+        String prefix;
+        do {
+            prefix = "ns" + ( ++generatedPrefixes );
+        } while ( lookup( prefix, false ) != null );
+        return prefix;
+    }
+
+    private void declare( String prefix, String namespaceURI ) {
+        Scope scope = pending != null ? pending : scopes.get( scopes.size() - 1 );
+        scope.bindings.put( prefix, namespaceURI );
+        scope.declared.put( prefix, namespaceURI );
+    }
+
+    private String lookup( String prefix, boolean declaredOnly ) {
+        if ( XML_NS_PREFIX.equals( prefix ) ) {
+            return XML_NS_URI;
+        }
+        if ( XMLNS_ATTRIBUTE.equals( prefix ) ) {
+            return XMLNS_ATTRIBUTE_NS_URI;
+        }
+        for ( int i = scopes.size() - 1; i >= 0; i-- ) {
+            Scope scope = scopes.get( i );
+            Map<String, String> bindings = declaredOnly ? scope.declared : scope.bindings;
+            if ( bindings.containsKey( prefix ) ) {
+                return bindings.get( prefix );
+            }
+        }
+        if ( !declaredOnly && rootContext != null ) {
+            String uri = rootContext.getNamespaceURI( prefix );
+            if ( uri != null && !uri.isEmpty() ) {
+                return uri;
+            }
+        }
+        return null;
+    }
+
+    private static class Scope {
+
+        private final String namespaceURI;
+
+        private final String localName;
+
+        private final String qName;
+
+        private final Map<String, String> bindings = new HashMap<String, String>();
+
+        private final Map<String, String> declared = new LinkedHashMap<String, String>();
+
+        private Scope( String namespaceURI, String localName, String qName ) {
+            this.namespaceURI = namespaceURI;
+            this.localName = localName;
+            this.qName = qName;
+        }
+    }
+
+}
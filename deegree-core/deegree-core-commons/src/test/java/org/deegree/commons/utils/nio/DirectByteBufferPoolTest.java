@@ -0,0 +1,267 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.utils.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link DirectByteBufferPool}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DirectByteBufferPoolTest {
+
+    @Test
+    public void testAllocateLimitAndSizeClass() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 1024 * 1024, "test" );
+        PooledByteBuffer buffer = pool.allocate( 3000 );
+        assertEquals( 3000, buffer.limit() );
+        assertEquals( 4096, buffer.capacity() );
+        assertEquals( 0, buffer.position() );
+        assertEquals( 4096, pool.getAllocatedCapacity() );
+        assertEquals( 3000, pool.getRequestedCapacity() );
+        buffer.free();
+        assertEquals( 0, pool.getAllocatedCapacity() );
+        assertEquals( 0, pool.getRequestedCapacity() );
+    }
+
+    @Test
+    public void testReuse() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 64 * 1024, "test" );
+        // all buffers of the slab are in use
+        PooledByteBuffer buffer = allocate( pool, 32, 2000 ).get( 7 );
+        long id = buffer.getId();
+        long reserved = pool.getReservedCapacity();
+        pool.deallocate( buffer );
+        PooledByteBuffer buffer2 = pool.allocate( 1500 );
+        assertEquals( id, buffer2.getId() );
+        assertEquals( 1500, buffer2.limit() );
+        assertEquals( reserved, pool.getReservedCapacity() );
+    }
+
+    @Test
+    public void testDoubleFree() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 1024 * 1024, "test" );
+        PooledByteBuffer buffer = pool.allocate( 2000 );
+        pool.allocate( 2000 );
+        buffer.free();
+        buffer.free();
+        assertEquals( 2048, pool.getAllocatedCapacity() );
+    }
+
+    @Test
+    public void testCapacityLimit() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 256 * 1024, "test" );
+        PooledByteBuffer buffer = pool.allocate( 128 * 1024 );
+        pool.allocate( 128 * 1024 );
+        assertFalse( pool.canAllocate( 1024 ) );
+        try {
+            pool.allocate( 1024 );
+            fail( "Expected OutOfMemoryError." );
+        } catch ( OutOfMemoryError e ) {
+            // expected
+        }
+        buffer.free();
+        assertTrue( pool.canAllocate( 1024 ) );
+        // the slab of the free buffer is carved for the smaller size class
+        PooledByteBuffer small = pool.allocate( 1024 );
+        assertEquals( 1024, small.limit() );
+        assertEquals( 1024, small.capacity() );
+        assertEquals( 256 * 1024, pool.getReservedCapacity() );
+    }
+
+    @Test
+    public void testUseFreeBufferOfLargerSizeClass() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 128 * 1024, "test" );
+        PooledByteBuffer buffer = pool.allocate( 32 * 1024 );
+        PooledByteBuffer other = pool.allocate( 32 * 1024 );
+        pool.allocate( 64 * 1024 );
+        buffer.free();
+        // the slab of the freed buffer is still partially in use, so the free buffer is used as it is
+        PooledByteBuffer small = pool.allocate( 1024 );
+        assertEquals( 1024, small.limit() );
+        assertEquals( 32 * 1024, small.capacity() );
+        assertEquals( 128 * 1024, pool.getReservedCapacity() );
+        other.free();
+    }
+
+    @Test
+    public void testBuffersFreedByOtherThreadAreAvailable()
+                            throws InterruptedException {
+        final DirectByteBufferPool pool = new DirectByteBufferPool( 64 * 1024, "test" );
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for ( PooledByteBuffer buffer : allocate( pool, 64, 1024 ) ) {
+                        buffer.free();
+                    }
+                } catch ( Throwable e ) {
+                    error.set( e );
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertNull( error.get() );
+        assertEquals( 64, allocate( pool, 64, 1024 ).size() );
+        assertEquals( 64 * 1024, pool.getReservedCapacity() );
+    }
+
+    @Test
+    public void testFreeSlabIsCarvedForOtherSizeClass() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 64 * 1024, "test" );
+        List<PooledByteBuffer> buffers = allocate( pool, 64, 1024 );
+        assertFalse( pool.canAllocate( 32 * 1024 ) );
+        for ( PooledByteBuffer buffer : buffers ) {
+            buffer.free();
+        }
+        assertTrue( pool.canAllocate( 32 * 1024 ) );
+        List<PooledByteBuffer> large = allocate( pool, 2, 32 * 1024 );
+        assertEquals( 32 * 1024, large.get( 0 ).capacity() );
+        assertEquals( 32 * 1024, large.get( 1 ).capacity() );
+        assertEquals( 64 * 1024, pool.getReservedCapacity() );
+        for ( PooledByteBuffer buffer : large ) {
+            buffer.free();
+        }
+        // and back again
+        assertEquals( 64, allocate( pool, 64, 1024 ).size() );
+    }
+
+    @Test
+    public void testFreeSlabsAreReleasedForLargerBuffer() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 128 * 1024, "test" );
+        List<PooledByteBuffer> buffers = allocate( pool, 128, 1024 );
+        assertEquals( 128 * 1024, pool.getReservedCapacity() );
+        for ( PooledByteBuffer buffer : buffers ) {
+            buffer.free();
+        }
+        assertTrue( pool.canAllocate( 128 * 1024 ) );
+        PooledByteBuffer large = pool.allocate( 128 * 1024 );
+        assertEquals( 128 * 1024, large.capacity() );
+        assertEquals( 128 * 1024, pool.getReservedCapacity() );
+    }
+
+    @Test
+    public void testConcurrentAllocation()
+                            throws InterruptedException {
+        final DirectByteBufferPool pool = new DirectByteBufferPool( 1024 * 1024, "test" );
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for ( int i = 0; i < 4; i++ ) {
+            final int thread = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for ( int j = 0; j < 200; j++ ) {
+                            // changing size classes, so slabs have to be carved again
+                            int size = 1024 << ( ( thread + j ) % 4 * 2 );
+                            for ( PooledByteBuffer buffer : allocate( pool, 128 * 1024 / size, size ) ) {
+                                buffer.free();
+                            }
+                        }
+                    } catch ( Throwable e ) {
+                        error.set( e );
+                    }
+                }
+            };
+            threads.add( t );
+            t.start();
+        }
+        for ( Thread t : threads ) {
+            t.join();
+        }
+        assertNull( error.get() );
+        assertEquals( 0, pool.getAllocatedCapacity() );
+        assertTrue( pool.getReservedCapacity() <= 1024 * 1024 );
+    }
+
+    @Test
+    public void testStatistics() {
+        DirectByteBufferPool pool = new DirectByteBufferPool( 1024 * 1024, "test" );
+        pool.allocate( 1024 );
+        pool.allocate( 1536 );
+        assertEquals( 3072, pool.getAllocatedCapacity() );
+        assertEquals( 2560, pool.getRequestedCapacity() );
+        assertEquals( 1.0 - 2560.0 / 3072, pool.getFragmentation(), 1E-9 );
+        assertEquals( 3072.0 / pool.getReservedCapacity(), pool.getUtilization(), 1E-9 );
+    }
+
+    @Test
+    public void testBlockingPolicy()
+                            throws InterruptedException {
+        final DirectByteBufferPool pool = new DirectByteBufferPool( 64 * 1024, "test",
+                                                                    DirectByteBufferPool.ExhaustionPolicy.BLOCK, 5000 );
+        final PooledByteBuffer buffer = pool.allocate( 64 * 1024 );
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep( 100 );
+                } catch ( InterruptedException e ) {
+                    // ignore
+                }
+                buffer.free();
+            }
+        };
+        t.start();
+        PooledByteBuffer buffer2 = pool.allocate( 64 * 1024 );
+        assertEquals( buffer.getId(), buffer2.getId() );
+        t.join();
+    }
+
+    private static List<PooledByteBuffer> allocate( DirectByteBufferPool pool, int count, int capacity ) {
+        List<PooledByteBuffer> buffers = new ArrayList<PooledByteBuffer>();
+        for ( int i = 0; i < count; i++ ) {
+            buffers.add( pool.allocate( capacity ) );
+        }
+        return buffers;
+    }
+}
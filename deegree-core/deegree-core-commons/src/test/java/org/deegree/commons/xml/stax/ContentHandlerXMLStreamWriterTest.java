@@ -0,0 +1,111 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.commons.xml.stax;
+
+import static javax.xml.transform.OutputKeys.OMIT_XML_DECLARATION;
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+
+import org.deegree.commons.xml.XMLAdapter;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link ContentHandlerXMLStreamWriter}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ContentHandlerXMLStreamWriterTest {
+
+    @Test
+    public void testCopyElement()
+                            throws XMLStreamException, TransformerConfigurationException {
+        String input = "<app:a xmlns:app=\"http://www.deegree.org/app\"><app:b app:attr=\"attribute\">Hello</app:b><c/></app:a>";
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader( new StringReader( input ) );
+        XMLStreamUtils.skipStartDocument( reader );
+
+        StringWriter output = new StringWriter();
+        XMLStreamWriter writer = new ContentHandlerXMLStreamWriter( createSerializer( output ) );
+        writer.writeStartDocument();
+        XMLAdapter.writeElement( writer, reader );
+        writer.close();
+        assertEquals( input, output.toString() );
+    }
+
+    @Test
+    public void testUndeclaredNamespaces()
+                            throws XMLStreamException, TransformerConfigurationException {
+        StringWriter output = new StringWriter();
+        XMLStreamWriter writer = new ContentHandlerXMLStreamWriter( createSerializer( output ) );
+        writer.writeStartDocument();
+        writer.setPrefix( "app", "http://www.deegree.org/app" );
+        writer.writeStartElement( "http://www.deegree.org/app", "a" );
+        writer.writeAttribute( "http://www.deegree.org/other", "attr", "attribute" );
+        writer.writeEmptyElement( "app", "b", "http://www.deegree.org/app" );
+        writer.writeEndDocument();
+        assertEquals( "<app:a xmlns:app=\"http://www.deegree.org/app\" xmlns:ns1=\"http://www.deegree.org/other\" "
+                      + "ns1:attr=\"attribute\"><app:b/></app:a>", output.toString() );
+    }
+
+    private static TransformerHandler createSerializer( StringWriter output )
+                            throws TransformerConfigurationException {
+        SAXTransformerFactory fac = (SAXTransformerFactory) TransformerFactory.newInstance();
+        TransformerHandler handler = fac.newTransformerHandler();
+        handler.getTransformer().setOutputProperty( OMIT_XML_DECLARATION, "yes" );
+        handler.setResult( new StreamResult( output ) );
+        return handler;
+    }
+
+}
@@ -46,10 +46,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.deegree.commons.utils.FileUtils;
 import org.deegree.coverage.raster.AbstractRaster;
@@ -68,6 +73,12 @@ import org.slf4j.Logger;
 
 /**
  * The <code>CacheRasterReader</code> is a grid based caching mechanism for raster readers.
+ * <p>
+ * Tiles which are in memory are read without locking. Loading a tile (from the cache file or from the cached reader)
+ * only locks the tile itself, so concurrent requests for different tiles do not block each other. Tiles which have
+ * already been written to the cache file are memory-mapped when they are read again. The mappings are released as soon
+ * as the tiles are removed from memory, after all running reads of the reader have finished.
+ * </p>
  * 
  * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
  * @author last edited by: $Author$
@@ -79,17 +90,21 @@ public class CacheRasterReader extends GridFileReader {
 
     private static final int TILE_SIZE = 500;
 
+    // guards the cache file (writing, deleting)
     private final Object LOCK = new Object();
 
+    // read lock: held while tile buffers are read, write lock: held while mapped tiles are unmapped
+    private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+
     private final Map<Integer, TileEntry> tiles;
 
     private RasterReader cachedReader;
 
     private GridWriter gridWriter;
 
-    private long lastReadAccess;
+    private volatile long lastReadAccess;
 
-    private long inMemorySize;
+    private final AtomicLong inMemorySize = new AtomicLong();
 
     private RasterCache cacheManager;
 
@@ -239,7 +254,7 @@ public class CacheRasterReader extends GridFileReader {
                         } catch ( IOException e ) {
                             LOG.error( "Could not create tile from buffer because: " + e.getLocalizedMessage(), e );
                         }
-                        this.inMemorySize += entry.setBuffer( entryBuffer );
+                        this.inMemorySize.addAndGet( entry.setBuffer( entryBuffer ) );
                     }
                 }
             }
@@ -334,9 +349,15 @@ public class CacheRasterReader extends GridFileReader {
                     for ( int row = minCRmaxCR[1]; row < getTileRows() && row <= minCRmaxCR[3]; ++row ) {
                         for ( int col = minCRmaxCR[0]; col < getTileColumns() && col <= minCRmaxCR[2]; ++col ) {
                             leaveStreamOpen( true );
-                            // getTileBuffer will get a read only (copy-of the tiles[row][col]) bytebuffer.
-                            ByteBuffer tileBuffer = getTileBuffer( col, row );
-                            copyValuesFromTile( col, row, intersection, tileBuffer, resultBuffer );
+                            long reserved = reserveTileMemory( col, row );
+                            mappingLock.readLock().lock();
+                            try {
+                                // getTileBuffer will get a read only (copy-of the tiles[row][col]) bytebuffer.
+                                ByteBuffer tileBuffer = getTileBuffer( col, row, reserved );
+                                copyValuesFromTile( col, row, intersection, tileBuffer, resultBuffer );
+                            } finally {
+                                mappingLock.readLock().unlock();
+                            }
                         }
                     }
                     leaveStreamOpen( false );
@@ -358,13 +379,19 @@ public class CacheRasterReader extends GridFileReader {
     public long clear( boolean deleteCacheFile ) {
         long result = 0;
         synchronized ( LOCK ) {
+            List<ByteBuffer> mapped = new ArrayList<ByteBuffer>();
             for ( TileEntry entry : tiles.values() ) {
                 if ( entry != null ) {
-                    long r = entry.clear( deleteCacheFile );
-                    inMemorySize -= r;
+                    long r;
+                    synchronized ( entry ) {
+                        addMapped( entry, mapped );
+                        r = entry.clear( deleteCacheFile );
+                    }
+                    inMemorySize.addAndGet( -r );
                     result += r;
                 }
             }
+            unmap( mapped );
             if ( deleteCacheFile ) {
                 deleteCacheFile();
             }
@@ -380,6 +407,23 @@ public class CacheRasterReader extends GridFileReader {
     public boolean deleteCacheFile() {
         boolean result = true;
         synchronized ( LOCK ) {
+            // the tiles mapped from the file must be unmapped before it can be deleted
+            List<ByteBuffer> mapped = new ArrayList<ByteBuffer>();
+            long freed = 0;
+            for ( TileEntry entry : tiles.values() ) {
+                if ( entry != null ) {
+                    synchronized ( entry ) {
+                        if ( addMapped( entry, mapped ) ) {
+                            freed += entry.clear( true );
+                        }
+                    }
+                }
+            }
+            if ( freed > 0 ) {
+                inMemorySize.addAndGet( -freed );
+                RasterCache.releaseMemory( freed );
+            }
+            unmap( mapped );
             super.dispose();
             File f = file();
             if ( f != null ) {
@@ -456,7 +500,7 @@ public class CacheRasterReader extends GridFileReader {
      * 
      */
     public long currentApproxMemory() {
-        return inMemorySize;
+        return inMemorySize.get();
     }
 
     /**
@@ -497,6 +541,97 @@ public class CacheRasterReader extends GridFileReader {
         return result;
     }
 
+    /**
+     * Marks all in memory tiles to be written to the cache file and queues them for writing (see
+     * {@link RasterCache#writeEvictedTiles(CacheRasterReader, long)}). Tiles which are already on file are removed from
+     * memory at once, the others are removed after they have been written. Must only be called if a cache file can be
+     * created.
+     * 
+     * @return the amount of memory which is no longer accounted for.
+     */
+    long evict() {
+        if ( cachedReader != null ) {
+            // close the file in the reader as well.
+            cachedReader.dispose();
+            super.dispose();
+        }
+        long result = 0;
+        long pending = 0;
+        List<ByteBuffer> mapped = new ArrayList<ByteBuffer>();
+        for ( TileEntry entry : tiles.values() ) {
+            if ( entry != null ) {
+                synchronized ( entry ) {
+                    if ( entry.isInMemory() ) {
+                        if ( entry.isOnFile() ) {
+                            addMapped( entry, mapped );
+                            result += entry.clear( false );
+                        } else {
+                            pending += entry.markEvicting();
+                        }
+                    }
+                }
+            }
+        }
+        result += pending;
+        inMemorySize.addAndGet( -result );
+        unmap( mapped );
+        if ( pending > 0 ) {
+            RasterCache.writeEvictedTiles( this, pending );
+        }
+        return result;
+    }
+
+    /**
+     * Writes the tiles marked by {@link #evict()} to the cache file and removes them from memory.
+     * 
+     * @return the number of bytes the cache file has grown
+     */
+    long writeEvictedTiles() {
+        if ( gridWriter == null ) {
+            return 0;
+        }
+        synchronized ( LOCK ) {
+            long onDisk = cacheFileSize();
+            gridWriter.leaveStreamOpen( true );
+            boolean rewriteInfo = false;
+            try {
+                for ( int row = 0; row < getTileRows(); ++row ) {
+                    for ( int column = 0; column < getTileColumns(); ++column ) {
+                        TileEntry entry = getEntry( column, row );
+                        if ( entry == null ) {
+                            continue;
+                        }
+                        synchronized ( entry ) {
+                            if ( !entry.isEvicting() ) {
+                                continue;
+                            }
+                            try {
+                                boolean onFile = gridWriter.writeTile( column, row, entry.getBuffer() );
+                                entry.setTileOnFile( onFile );
+                                rewriteInfo = rewriteInfo || onFile;
+                            } catch ( IOException e ) {
+                                LOG.error( "Exception occurred while writing tile to cache file: "
+                                           + e.getLocalizedMessage() );
+                            }
+                            // if writing failed, the tile will be read from the original reader again
+                            entry.finishEviction();
+                        }
+                    }
+                }
+                if ( rewriteInfo ) {
+                    if ( !writeCacheInfo() ) {
+                        if ( !deleteCacheFile() ) {
+                            LOG.debug( "Could not delete grid file." );
+                        }
+                    }
+                }
+            } finally {
+                gridWriter.leaveStreamOpen( false );
+            }
+            return cacheFileSize() - onDisk;
+        }
+    }
+
     /**
      * Writes all current in memory byte buffers to the cache file (if existing).
      */
@@ -546,44 +681,72 @@ public class CacheRasterReader extends GridFileReader {
 //    }
 
     /**
-     * Get a tile buffer from the cache, it will be read only.
+     * Reserves the memory for the given tile, if it is not in memory. The reservation must not be done while holding
+     * the lock of the tile (or the mapping lock), it may cause a dead lock with the raster cache.
+     * 
+     * @return the reserved memory, to be passed to {@link #getTileBuffer(int, int, long)}
+     */
+    private long reserveTileMemory( int column, int row ) {
+        TileEntry entry = getEntry( column, row );
+        if ( entry == null || entry.getBuffer() != null ) {
+            return 0;
+        }
+        long tileSize = getBytesPerTile();
+        RasterCache.freeMemory( tileSize );
+        return tileSize;
+    }
+
+    /**
+     * Get a tile buffer from the cache, it will be read only. Must be called while holding the read lock of the
+     * {@link #mappingLock}, the buffer must not be used after it was released.
      * 
      * @param column
      * @param row
+     * @param reserved
+     *            memory reserved by {@link #reserveTileMemory(int, int)}
      */
-    private ByteBuffer getTileBuffer( int column, int row ) {
-        ByteBuffer result = null;
+    private ByteBuffer getTileBuffer( int column, int row, long reserved ) {
         TileEntry entry = getEntry( column, row );
-        if ( entry != null ) {
-
-            ByteBuffer entryBuffer = null;
-            synchronized ( LOCK ) {
-                entryBuffer = entry.getBuffer();
+        if ( entry == null ) {
+            RasterCache.releaseMemory( reserved );
+            return null;
+        }
+        ByteBuffer result = entry.getBuffer();
+        if ( result != null ) {
+            RasterCache.releaseMemory( reserved );
+            return result;
+        }
+        synchronized ( entry ) {
+            result = entry.getBuffer();
+            if ( result != null ) {
+                // loaded by another thread
+                RasterCache.releaseMemory( reserved );
+                return result;
             }
-            if ( entryBuffer == null ) {
-                // allocation of the buffer should not be in the synchronized block, it may cause a dead lock with the
-                // raster cache.
-                entryBuffer = allocateTileBuffer( false, true );
+            long tileSize = getBytesPerTile();
+            if ( reserved < tileSize ) {
+                // the tile has been removed from memory after the reservation, account for it without evicting
+                RasterCache.releaseMemory( reserved - tileSize );
             }
-
-            synchronized ( LOCK ) {
-                if ( !entry.isInMemory() ) {
-                    // check the cache file
-                    if ( entry.isOnFile() ) {
-                        try {
-                            entryBuffer = super.getTileData( column, row, entryBuffer );
-                        } catch ( IOException e ) {
-                            // could not read from the tile, so get rid of the tilesOnFile
-                            entry.setTileOnFile( false );
-                        }
-                    }
-                    if ( !entry.isOnFile() ) {
-                        // this can happen if the file could not be read from the cache file because of an IOException.
-                        readTileFromReader( entry, entryBuffer );
-                    }
-                    this.inMemorySize += entry.setBuffer( entryBuffer );
+            ByteBuffer entryBuffer = null;
+            if ( entry.isOnFile() ) {
+                try {
+                    entryBuffer = mapTile( column, row );
+                } catch ( IOException e ) {
+                    LOG.debug( "Could not map tile from cache file: {}", e.getLocalizedMessage() );
+                }
+                if ( entryBuffer == null ) {
+                    // could not read from the tile, so get rid of the tilesOnFile
+                    entry.setTileOnFile( false );
+                } else {
+                    this.inMemorySize.addAndGet( entry.setMappedBuffer( entryBuffer ) );
+                    return entryBuffer.asReadOnlyBuffer();
                 }
             }
+            // this can happen if the file could not be read from the cache file because of an IOException.
+            entryBuffer = allocateTileBuffer( false, false );
+            readTileFromReader( entry, entryBuffer );
+            this.inMemorySize.addAndGet( entry.setBuffer( entryBuffer ) );
             result = entryBuffer.asReadOnlyBuffer();
         }
         return result;
@@ -613,7 +776,7 @@ public class CacheRasterReader extends GridFileReader {
                         // if the result is the same instance, create a copy
                         LOG.debug( "The rectangle did not fit, creating copy." );
                         src = ByteBuffer.allocate( tileBuffer.capacity() );
-                        this.inMemorySize += src.capacity();
+                        this.inMemorySize.addAndGet( src.capacity() );
                         tileBuffer.clear();
                         src.put( tileBuffer );
                     }
@@ -644,35 +807,38 @@ public class CacheRasterReader extends GridFileReader {
 //                } else {
                     gridWriter.leaveStreamOpen( true );
                     boolean rewriteInfo = false;
+                    List<ByteBuffer> mapped = new ArrayList<ByteBuffer>();
                     for ( int row = 0; row < getTileRows(); ++row ) {
                         for ( int column = 0; column < getTileColumns(); ++column ) {
                             TileEntry entry = getEntry( column, row );
                             if ( entry != null ) {
-                                if ( !entry.isOnFile() ) {
-                                    if ( entry.isInMemory() ) {
-                                        try {
-                                            boolean onFile = gridWriter.writeTile( column, row, entry.getBuffer() );
-                                            entry.setTileOnFile( onFile );
-                                            if ( !rewriteInfo ) {
-                                                rewriteInfo = onFile;
-                                            }
-                                        } catch ( IOException e ) {
-                                            if ( LOG.isDebugEnabled() ) {
-                                                LOG.debug(
-                                                           "(Stack) Exception occurred while writing tile to cache file: "
-                                                                                   + e.getLocalizedMessage(), e );
-                                            } else {
-                                                LOG.error( "Exception occurred while writing tile to cache file: "
-                                                           + e.getLocalizedMessage() );
+                                synchronized ( entry ) {
+                                    if ( !entry.isOnFile() ) {
+                                        if ( entry.isInMemory() ) {
+                                            try {
+                                                boolean onFile = gridWriter.writeTile( column, row, entry.getBuffer() );
+                                                entry.setTileOnFile( onFile );
+                                                if ( !rewriteInfo ) {
+                                                    rewriteInfo = onFile;
+                                                }
+                                            } catch ( IOException e ) {
+                                                String msg = "Exception occurred while writing tile to cache file: "
+                                                             + e.getLocalizedMessage();
+                                                if ( LOG.isDebugEnabled() ) {
+                                                    LOG.debug( "(Stack) " + msg, e );
+                                                } else {
+                                                    LOG.error( msg );
+                                                }
                                             }
                                         }
                                     }
-                                }
-                                if ( clearBuffer ) {
-                                    if ( entry.isOnFile() && entry.isInMemory() ) {
-                                        long mem = entry.clear( false );
-                                        this.inMemorySize -= mem;
-                                        freedUpMemory += mem;
+                                    if ( clearBuffer ) {
+                                        if ( entry.isOnFile() && entry.isInMemory() ) {
+                                            addMapped( entry, mapped );
+                                            long mem = entry.clear( false );
+                                            this.inMemorySize.addAndGet( -mem );
+                                            freedUpMemory += mem;
+                                        }
                                     }
                                 }
                             }
@@ -686,12 +852,46 @@ public class CacheRasterReader extends GridFileReader {
                         }
                         gridWriter.leaveStreamOpen( false );
                     }
+                    unmap( mapped );
 //                }
             }
         }
         return freedUpMemory;
     }
 
+    /**
+     * Adds the memory buffer of the given tile to the list, if it was mapped from the cache file. Must be called while
+     * holding the lock of the tile.
+     * 
+     * @return true if the tile is mapped
+     */
+    private static boolean addMapped( TileEntry entry, List<ByteBuffer> mapped ) {
+        ByteBuffer tile = entry.getMappedBuffer();
+        if ( tile != null ) {
+            mapped.add( tile );
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Releases the mappings of tiles which have been removed from memory. Waits until all running reads have finished,
+     * so no thread accesses the tiles anymore. Must not be called while holding the lock of a tile.
+     */
+    private void unmap( List<ByteBuffer> mapped ) {
+        if ( mapped.isEmpty() ) {
+            return;
+        }
+        mappingLock.writeLock().lock();
+        try {
+            for ( ByteBuffer tile : mapped ) {
+                unmap( tile );
+            }
+        } finally {
+            mappingLock.writeLock().unlock();
+        }
+    }
+
     private boolean writeCacheInfo() {
         boolean result = false;
         if ( gridWriter != null && file() != null ) {
@@ -49,6 +49,12 @@ import java.util.SortedSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.deegree.commons.utils.StringUtils;
 import org.deegree.coverage.raster.SimpleRaster;
@@ -66,6 +72,15 @@ import org.slf4j.Logger;
  * <p>
  * The RasterCache memory size and the amount of disk space can be set by adding the keys
  * {@link #DEF_RASTER_CACHE_MEM_SIZE} and {@link #DEF_RASTER_CACHE_DISK_SIZE} to the JVM.
+ * </p>
+ * <p>
+ * The cache is segmented by reader: every {@link CacheRasterReader} manages its own tiles and locks every tile
+ * separately, so requests to different tiles do not block each other. The memory and disk budgets are kept in atomic
+ * counters, only a thread which has to free memory enters the (single) eviction lock. Evicted tiles are written to the
+ * cache files asynchronously (write-behind), unless {@link #DEF_RASTER_CACHE_WRITE_BEHIND} is set to
+ * <code>false</code>. Evicted tiles which are waiting to be written still count against the memory budget, if the
+ * budget is exceeded the evicting thread waits for the pending writes.
+ * </p>
  * 
  * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
  * @author last edited by: $Author$
@@ -87,16 +102,24 @@ public class RasterCache {
     /** A key which can be given to the JVM to define the amount of disk memory used for caching (e.g. 1024m). */
     public static final String DEF_RASTER_CACHE_DISK_SIZE = "deegree.raster.cache.disksize";
 
-    private static long maxCacheMem;
+    /**
+     * A key which can be given to the JVM to define if evicted tiles should be written to the cache files
+     * asynchronously (default: true).
+     */
+    public static final String DEF_RASTER_CACHE_WRITE_BEHIND = "deegree.raster.cache.writebehind";
+
+    private static volatile long maxCacheMem;
+
+    private static volatile long maxCacheDisk;
 
-    private static long maxCacheDisk;
+    private static volatile boolean writeBehind;
 
     /**
      * Standard name for a deegree cache file.
      */
     public static final String FILE_EXTENSION = ".d3rcache";
 
-    private static final Object MEM_LOCK = new Object();
+    private static final ReentrantLock EVICTION_LOCK = new ReentrantLock();
 
     private static final Object CURRENT_CACHE_LOCK = new Object();
 
@@ -104,9 +127,21 @@ public class RasterCache {
 
     private final File cacheDir;
 
-    private static long currentlyUsedMemory = 0;
+    private static final AtomicLong currentlyUsedMemory = new AtomicLong();
 
-    private static long currentlyUsedDisk = 0;
+    private static final AtomicLong currentlyUsedDisk = new AtomicLong();
+
+    // memory of evicted tiles which are waiting to be written to the cache files
+    private static final AtomicLong pendingWriteMemory = new AtomicLong();
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor( new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "raster-cache-writer" );
+            t.setDaemon( true );
+            return t;
+        }
+    } );
 
     private final static ConcurrentSkipListSet<CacheRasterReader> cache = new ConcurrentSkipListSet<CacheRasterReader>(
                                                                                                                         new CacheComparator() );
@@ -119,7 +154,8 @@ public class RasterCache {
      * properties in the JVM.
      */
     private static void evaluateProperties() {
-        synchronized ( MEM_LOCK ) {
+        EVICTION_LOCK.lock();
+        try {
             String cacheSize = System.getProperty( DEF_RASTER_CACHE_MEM_SIZE );
             long mm = StringUtils.parseByteSize( cacheSize );
             if ( mm == 0 ) {
@@ -151,6 +187,9 @@ public class RasterCache {
                           ( mm / ( 1024 * 1024 ) ) + "Mb", DEF_RASTER_CACHE_DISK_SIZE );
             }
             maxCacheDisk = mm;
+            writeBehind = !"false".equalsIgnoreCase( System.getProperty( DEF_RASTER_CACHE_WRITE_BEHIND ) );
+        } finally {
+            EVICTION_LOCK.unlock();
         }
     }
 
@@ -256,14 +295,22 @@ public class RasterCache {
      * @return the currentlyUsedMemory
      */
     public static final long getCurrentlyUsedMemory() {
-        return currentlyUsedMemory;
+        return currentlyUsedMemory.get();
     }
 
     /**
      * @return the currentlyUsedDisk
      */
     public static final long getCurrentlyUsedDisk() {
-        return currentlyUsedDisk;
+        return currentlyUsedDisk.get();
+    }
+
+    /**
+     * @return the memory of evicted tiles which are waiting to be written to the cache files (not included in
+     *         {@link #getCurrentlyUsedMemory()})
+     */
+    public static final long getPendingWriteMemory() {
+        return pendingWriteMemory.get();
     }
 
     /**
@@ -282,7 +329,10 @@ public class RasterCache {
      * 
      */
     public static void clear( boolean deleteCacheFiles ) {
-        synchronized ( MEM_LOCK ) {
+        // the writer would correct the used disk space after it has been reset
+        awaitPendingWrites();
+        EVICTION_LOCK.lock();
+        try {
             Iterator<CacheRasterReader> it = cache.iterator();
             while ( it != null && it.hasNext() ) {
                 CacheRasterReader next = it.next();
@@ -291,8 +341,10 @@ public class RasterCache {
                 }
             }
             cache.clear();
-            currentlyUsedMemory = 0;
-            currentlyUsedDisk = 0;
+            currentlyUsedMemory.set( 0 );
+            currentlyUsedDisk.set( 0 );
+        } finally {
+            EVICTION_LOCK.unlock();
         }
         synchronized ( CURRENT_CACHE_LOCK ) {
             if ( deleteCacheFiles && currentCaches.values() != null ) {
@@ -321,7 +373,8 @@ public class RasterCache {
      * Writes all current caches to their cache files, but leaves the in memory cached rasters alone.
      */
     public static void flush() {
-        synchronized ( MEM_LOCK ) {
+        EVICTION_LOCK.lock();
+        try {
             Iterator<CacheRasterReader> it = cache.iterator();
             while ( it != null && it.hasNext() ) {
                 CacheRasterReader next = it.next();
@@ -329,14 +382,19 @@ public class RasterCache {
                     next.flush();
                 }
             }
+        } finally {
+            EVICTION_LOCK.unlock();
         }
+        awaitPendingWrites();
     }
 
     /**
      * Iterates over all current cache directories and calls dispose on their cache files.
      */
     public static void dispose() {
-        synchronized ( MEM_LOCK ) {
+        awaitPendingWrites();
+        EVICTION_LOCK.lock();
+        try {
             Iterator<CacheRasterReader> it = cache.iterator();
             long allocatedMem = 0;
             int i = 1;
@@ -350,6 +408,8 @@ public class RasterCache {
             }
             LOG.debug( "Disposing allocated {} MB on the heap.",
                        ( Math.round( ( allocatedMem / ( 1024 * 1024d ) ) * 100d ) / 100d ) );
+        } finally {
+            EVICTION_LOCK.unlock();
         }
     }
 
@@ -364,60 +424,133 @@ public class RasterCache {
      * @return the amount of currently used cache memory, which is only an approximation.
      */
     public static long freeMemory( long requiredMemory ) {
-        synchronized ( MEM_LOCK ) {
-            LOG.debug( "Currently used cache memory:{} MB, totalCacheMemory:{} MB", currentlyUsedMemory
+        if ( LOG.isDebugEnabled() ) {
+            LOG.debug( "Currently used cache memory:{} MB, totalCacheMemory:{} MB", currentlyUsedMemory.get()
                                                                                     / ( 1024d * 1024 ),
                        maxCacheMem / ( 1024d * 1024 ) );
-            if ( currentlyUsedMemory + requiredMemory > maxCacheMem ) {
+        }
+        if ( currentlyUsedMemory.get() + pendingWriteMemory.get() + requiredMemory > maxCacheMem ) {
+            EVICTION_LOCK.lock();
+            try {
                 disposeMemory( requiredMemory );
+            } finally {
+                EVICTION_LOCK.unlock();
             }
-            currentlyUsedMemory += requiredMemory;
         }
+        return currentlyUsedMemory.addAndGet( requiredMemory );
+    }
 
-        return currentlyUsedMemory;
+    /**
+     * Returns memory which was reserved using {@link #freeMemory(long)}, but is not used.
+     * 
+     * @param memory
+     *            to be returned
+     */
+    static void releaseMemory( long memory ) {
+        currentlyUsedMemory.addAndGet( -memory );
     }
 
+    /**
+     * Queues the evicted tiles of the given reader to be written to its cache file. Until they are written, the memory
+     * of the tiles is accounted as pending and their size is accounted as used disk space (the writer corrects it with
+     * the actual size of the written data).
+     * 
+     * @param reader
+     * @param pendingMemory
+     *            memory of the evicted tiles which have to be written
+     */
+    static void writeEvictedTiles( final CacheRasterReader reader, final long pendingMemory ) {
+        pendingWriteMemory.addAndGet( pendingMemory );
+        currentlyUsedDisk.addAndGet( pendingMemory );
+        WRITER.execute( new Runnable() {
+            @Override
+            public void run() {
+                long written = 0;
+                try {
+                    written = reader.writeEvictedTiles();
+                } catch ( Throwable t ) {
+                    LOG.error( "Writing evicted tiles to cache file " + reader.file() + " failed: "
+                               + t.getLocalizedMessage(), t );
+                } finally {
+                    currentlyUsedDisk.addAndGet( written - pendingMemory );
+                    pendingWriteMemory.addAndGet( -pendingMemory );
+                }
+            }
+        } );
+    }
+
+    /**
+     * Waits until all evicted tiles that have been queued so far are written to their cache files.
+     */
+    static void awaitPendingWrites() {
+        try {
+            WRITER.submit( new Runnable() {
+                @Override
+                public void run() {
+                    // nothing to do, just wait for the preceding writes
+                }
+            } ).get();
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        } catch ( ExecutionException e ) {
+            LOG.debug( "Waiting for pending cache writes failed: {}", e.getLocalizedMessage() );
+        }
+    }
+
+    /**
+     * Only to be called while holding the {@link #EVICTION_LOCK}.
+     */
     private static void disposeMemory( long requiredMemory ) {
-        synchronized ( MEM_LOCK ) {
-            if ( currentlyUsedMemory + requiredMemory > maxCacheMem ) {
-                // make a copy, to reflect the last read access.
-                SortedSet<CacheRasterReader> sort = new ConcurrentSkipListSet<CacheRasterReader>( cache );
-                Iterator<CacheRasterReader> it = sort.iterator();
-                if ( it != null ) {
-                    final double halfMem = maxCacheMem * 0.5;
-                    int readersConsidered = 0;
-                    while ( it.hasNext() ) {
-                        CacheRasterReader next = it.next();
-                        if ( next != null ) {
-                            ++readersConsidered;
-                            long onDisk = next.cacheFileSize();
-                            if ( currentlyUsedDisk > maxCacheDisk && onDisk > 0 ) {
-                                // just delete the cache file and any in memory data from the least recently used cache
-                                // file.
-                                currentlyUsedMemory -= next.clear( true );
-                                currentlyUsedDisk -= onDisk;
-                            } else {
-                                long mem = next.currentApproxMemory();
-                                if ( mem > 0 && next.canCreateCacheFile() ) {
-                                    currentlyUsedMemory -= next.dispose( false );
+        if ( currentlyUsedMemory.get() + pendingWriteMemory.get() + requiredMemory > maxCacheMem ) {
+            // make a copy, to reflect the last read access.
+            SortedSet<CacheRasterReader> sort = new ConcurrentSkipListSet<CacheRasterReader>( cache );
+            Iterator<CacheRasterReader> it = sort.iterator();
+            if ( it != null ) {
+                final double halfMem = maxCacheMem * 0.5;
+                int readersConsidered = 0;
+                while ( it.hasNext() ) {
+                    CacheRasterReader next = it.next();
+                    if ( next != null ) {
+                        ++readersConsidered;
+                        long onDisk = next.cacheFileSize();
+                        if ( currentlyUsedDisk.get() > maxCacheDisk && onDisk > 0 ) {
+                            // just delete the cache file and any in memory data from the least recently used cache
+                            // file.
+                            currentlyUsedMemory.addAndGet( -next.clear( true ) );
+                            currentlyUsedDisk.addAndGet( -onDisk );
+                        } else {
+                            long mem = next.currentApproxMemory();
+                            if ( mem > 0 && next.canCreateCacheFile() ) {
+                                if ( writeBehind ) {
+                                    // the used disk space is updated after the tiles have been written
+                                    currentlyUsedMemory.addAndGet( -next.evict() );
+                                } else {
+                                    currentlyUsedMemory.addAndGet( -next.dispose( false ) );
                                     // add the new cache file size
-                                    currentlyUsedDisk += ( next.cacheFileSize() - onDisk );
-                                } else if ( mem > 0 ) {
-                                    currentlyUsedMemory -= next.dispose( true );
+                                    currentlyUsedDisk.addAndGet( next.cacheFileSize() - onDisk );
                                 }
+                            } else if ( mem > 0 ) {
+                                currentlyUsedMemory.addAndGet( -next.dispose( true ) );
                             }
                         }
-                        if ( currentlyUsedMemory + requiredMemory < halfMem ) {
-                            break;
-                        }
                     }
-
-                    if ( currentlyUsedMemory > halfMem || readersConsidered > ( cache.size() * 0.5 ) ) {
-                        // disposed more than half of the readers or could not get required memory..., update the real
-                        // memory, it might well be the current values are invalid.
-                        updateCurrentlyUsedSpace();
+                    if ( currentlyUsedMemory.get() + requiredMemory < halfMem ) {
+                        break;
                     }
                 }
+                if ( currentlyUsedMemory.get() + pendingWriteMemory.get() + requiredMemory > maxCacheMem ) {
+                    // the evicted tiles are still in memory until they are written, the writer does not need the
+                    // eviction lock.
+                    LOG.debug( "Waiting for {} MB of evicted tiles to be written.",
+                               pendingWriteMemory.get() / ( 1024 * 1024d ) );
+                    awaitPendingWrites();
+                }
+
+                if ( currentlyUsedMemory.get() > halfMem || readersConsidered > ( cache.size() * 0.5 ) ) {
+                    // disposed more than half of the readers or could not get required memory..., update the real
+                    // memory, it might well be the current values are invalid.
+                    updateCurrentlyUsedSpace();
+                }
             }
         }
     }
@@ -426,7 +559,8 @@ public class RasterCache {
      * Iterates over all known readers and (re) calculates their in memory data.
      */
     private static void updateCurrentlyUsedSpace() {
-        synchronized ( MEM_LOCK ) {
+        EVICTION_LOCK.lock();
+        try {
             LOG.debug( "Updating estimation of in-memory cache." );
             long cum = 0;
             long onDisk = 0;
@@ -438,13 +572,15 @@ public class RasterCache {
                     onDisk += next.cacheFileSize();
                 }
             }
-            LOG.debug( "Resetting currently used memory from: {} to: {}", ( currentlyUsedMemory / ( 1024 * 1024d ) ),
-                       ( cum / ( 1024 * 1024d ) ) );
+            LOG.debug( "Resetting currently used memory from: {} to: {}",
+                       ( currentlyUsedMemory.get() / ( 1024 * 1024d ) ), ( cum / ( 1024 * 1024d ) ) );
 
             LOG.debug( "Resetting currently used space on disk from: {} to: {}",
-                       ( currentlyUsedDisk / ( 1024 * 1024d ) ), ( onDisk / ( 1024 * 1024d ) ) );
-            currentlyUsedMemory = cum;
-            currentlyUsedDisk = onDisk;
+                       ( currentlyUsedDisk.get() / ( 1024 * 1024d ) ), ( onDisk / ( 1024 * 1024d ) ) );
+            currentlyUsedMemory.set( cum );
+            currentlyUsedDisk.set( onDisk );
+        } finally {
+            EVICTION_LOCK.unlock();
         }
     }
 
@@ -454,11 +590,10 @@ public class RasterCache {
      * @param reader
      */
     private static void addReader( CacheRasterReader reader ) {
-        boolean added = false;
-        synchronized ( MEM_LOCK ) {
-            currentlyUsedMemory += reader.currentApproxMemory();
-            currentlyUsedDisk += reader.cacheFileSize();
-            added = cache.add( reader );
+        boolean added = cache.add( reader );
+        if ( added ) {
+            currentlyUsedMemory.addAndGet( reader.currentApproxMemory() );
+            currentlyUsedDisk.addAndGet( reader.cacheFileSize() );
         }
         if ( !added ) {
             LOG.debug( "Not adding reader ({}) to cache because it is already in the cache.", reader );
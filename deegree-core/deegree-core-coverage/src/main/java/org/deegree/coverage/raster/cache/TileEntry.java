@@ -42,6 +42,11 @@ import org.deegree.coverage.raster.geom.RasterRect;
 /**
  * A tile entry is one tile of a cached Raster. The cached raster is gridified, each grid is a tile, represented by this
  * class.
+ * <p>
+ * The state of a tile is read without locking, modifications (loading, writing and clearing) must be done while
+ * holding the monitor of the tile entry. A tile may be in the process of being evicted, i.e. its memory buffer is
+ * still readable, but is waiting to be written to the cache file (see {@link #markEvicting()}).
+ * </p>
  * 
  * @author <a href="mailto:bezema@lat-lon.de">Rutger Bezema</a>
  * @author last edited by: $Author$
@@ -50,13 +55,19 @@ import org.deegree.coverage.raster.geom.RasterRect;
  */
 class TileEntry {
     // the memory buffer containing the data of this buffer.
-    private ByteBuffer memoryTile;
+    private volatile ByteBuffer memoryTile;
 
     // time this tile was written to cache.
-    private long writtenToCache;
+    private volatile long writtenToCache;
 
     // time this tile was read from the original raster
-    private long readFromOriginal;
+    private volatile long readFromOriginal;
+
+    // true if the memory buffer is waiting to be written to the cache file
+    private volatile boolean evicting;
+
+    // true if the memory buffer is mapped from the cache file
+    private volatile boolean mapped;
 
     private RasterRect rasterRect;
 
@@ -82,24 +93,48 @@ class TileEntry {
     public long setBuffer( ByteBuffer buffer ) {
         long result = 0;
         if ( buffer != null ) {
-            if ( this.memoryTile == null ) {
+            if ( !isInMemory() ) {
                 result = buffer.capacity();
             }
         } else {
-            if ( this.memoryTile != null ) {
+            if ( isInMemory() ) {
                 result = -this.memoryTile.capacity();
             }
         }
+        this.evicting = false;
+        this.mapped = false;
         this.memoryTile = buffer;
-        readFromOriginal = this.memoryTile == null ? 0 : System.currentTimeMillis();
+        readFromOriginal = buffer == null ? 0 : System.currentTimeMillis();
         return result;
     }
 
+    /**
+     * Sets a memory buffer which was mapped from the cache file.
+     * 
+     * @param buffer
+     *            mapped from the cache file, must not be <code>null</code>
+     * @return the size of the memory which is added to the cache.
+     */
+    public long setMappedBuffer( ByteBuffer buffer ) {
+        long result = setBuffer( buffer );
+        this.mapped = true;
+        return result;
+    }
+
+    /**
+     * @return the memory buffer of this tile if it was mapped from the cache file, <code>null</code> otherwise. The
+     *         mapping must be released after the tile was cleared.
+     */
+    public ByteBuffer getMappedBuffer() {
+        return mapped ? memoryTile : null;
+    }
+
     /**
      * @return the byte buffer of this tile or <code>null</code> if no such memory buffer is available.
      */
     public ByteBuffer getBuffer() {
-        return memoryTile == null ? null : memoryTile.asReadOnlyBuffer();
+        ByteBuffer tile = memoryTile;
+        return tile == null ? null : tile.asReadOnlyBuffer();
     }
 
     /**
@@ -108,15 +143,49 @@ class TileEntry {
      * @return the size of the freed memory
      */
     public long deteleBuffer() {
-        if ( this.memoryTile == null ) {
+        if ( !isInMemory() ) {
             return 0;
         }
         long result = memoryTile.capacity();
         this.readFromOriginal = 0;
         memoryTile = null;
+        mapped = false;
         return result;
     }
 
+    /**
+     * Marks the memory buffer of this tile as waiting to be written to the cache file. The buffer stays readable until
+     * {@link #finishEviction()} is called, but it is no longer accounted as cached memory.
+     * 
+     * @return the size of the memory which is no longer accounted for
+     */
+    public long markEvicting() {
+        if ( !isInMemory() ) {
+            return 0;
+        }
+        evicting = true;
+        return memoryTile.capacity();
+    }
+
+    /**
+     * @return true if the memory buffer of this tile is waiting to be written to the cache file.
+     */
+    public boolean isEvicting() {
+        return evicting;
+    }
+
+    /**
+     * Removes the memory buffer of an evicted tile (after it was written to the cache file).
+     */
+    public void finishEviction() {
+        if ( evicting ) {
+            evicting = false;
+            memoryTile = null;
+            mapped = false;
+            readFromOriginal = 0;
+        }
+    }
+
     /**
      * @return the time the memory buffer was set (was read from the cached file), or 0 if no information about access
      *         time is available.
@@ -148,18 +217,20 @@ class TileEntry {
      * 
      */
     public long clear( boolean clearFileTime ) {
-        long result = memoryTile == null ? 0 : memoryTile.capacity();
+        long result = isInMemory() ? memoryTile.capacity() : 0;
+        evicting = false;
         memoryTile = null;
+        mapped = false;
         readFromOriginal = 0;
         writtenToCache = clearFileTime ? 0 : writtenToCache;
         return result;
     }
 
     /**
-     * @return true if this
+     * @return true if this tile has a memory buffer which is accounted as cached memory (i.e. is not being evicted).
      */
     public boolean isInMemory() {
-        return this.memoryTile != null;
+        return this.memoryTile != null && !evicting;
     }
 
     /**
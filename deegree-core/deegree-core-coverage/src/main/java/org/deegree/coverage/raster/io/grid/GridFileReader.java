@@ -44,8 +44,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -283,6 +286,69 @@ public class GridFileReader extends GridReader {
 
     }
 
+    /**
+     * Maps the data of the given tile from the grid file into memory (read only). The mapping stays valid after the
+     * grid file was closed.
+     * 
+     * @param columnId
+     * @param rowId
+     * @return the mapped tile data, or <code>null</code> if the grid file does not (yet) contain the tile.
+     * @throws IOException
+     */
+    protected ByteBuffer mapTile( int columnId, int rowId )
+                            throws IOException {
+        int tileInBlob = getTileId( columnId, rowId ) % getTilesPerBlob();
+        long position = tileInBlob * getBytesPerTile();
+        synchronized ( LOCK ) {
+            try {
+                FileChannel channel = getFileChannel();
+                if ( position + getBytesPerTile() > channel.size() ) {
+                    return null;
+                }
+                return channel.map( MapMode.READ_ONLY, position, getBytesPerTile() );
+            } finally {
+                closeReadStream();
+            }
+        }
+    }
+
+    /**
+     * Releases the mapping of a tile which was created by {@link #mapTile(int, int)}, without waiting for the garbage
+     * collector. The buffer (and all views of it) must not be accessed afterwards.
+     * 
+     * @param tile
+     *            a buffer returned by {@link #mapTile(int, int)}, may be <code>null</code>
+     */
+    protected static void unmap( ByteBuffer tile ) {
+        if ( tile == null || !tile.isDirect() ) {
+            return;
+        }
+        try {
+            Class<?> unsafeClass = Class.forName( "sun.misc.Unsafe" );
+            Method invokeCleaner = null;
+            try {
+                invokeCleaner = unsafeClass.getMethod( "invokeCleaner", ByteBuffer.class );
+            } catch ( NoSuchMethodException e ) {
+                // Java 8 and earlier, use the cleaner of the buffer
+            }
+            if ( invokeCleaner != null ) {
+                Field theUnsafe = unsafeClass.getDeclaredField( "theUnsafe" );
+                theUnsafe.setAccessible( true );
+                invokeCleaner.invoke( theUnsafe.get( null ), tile );
+            } else {
+                Method cleanerMethod = tile.getClass().getMethod( "cleaner" );
+                cleanerMethod.setAccessible( true );
+                Object cleaner = cleanerMethod.invoke( tile );
+                if ( cleaner != null ) {
+                    cleaner.getClass().getMethod( "clean" ).invoke( cleaner );
+                }
+            }
+        } catch ( Exception e ) {
+            // the mapping will be released by the garbage collector
+            LOG.debug( "Could not unmap tile: {}", e.getLocalizedMessage() );
+        }
+    }
+
     /**
      * @param tileColumn
      * @param tileRow
@@ -41,6 +41,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -298,6 +299,39 @@ public class TestRasterCache {
         clearCache();
     }
 
+    /**
+     * Test that tiles which were written behind are read back from the cache files unchanged.
+     * 
+     * @throws IOException
+     * @throws URISyntaxException
+     */
+    @Test
+    public void testWriteBehind()
+                            throws IOException, URISyntaxException {
+        setRasterCache();
+        TiledRaster tR = buildTiledRaster( OriginLocation.CENTER );
+        ByteBuffer expected = getBytes( tR );
+        checkMemSize( TILED_RASTER_SIZE );
+
+        // loading the overview evicts three tiles of the tiled raster
+        AbstractRaster raster = buildRaster( OriginLocation.CENTER, "overview.png", "png", "epsg:26912" );
+        getBytes( raster );
+        checkDiskSize( TILED_SINGLE_RASTER_SIZE * 3 );
+        Assert.assertEquals( 0, RasterCache.getPendingWriteMemory() );
+        checkFiles( new FileInfo[] { TILE_0_0, TILE_0_1, TILE_1_0 } );
+
+        // the evicted tiles are read from the cache files
+        Assert.assertEquals( expected, getBytes( tR ) );
+        clearCache();
+    }
+
+    private static ByteBuffer getBytes( AbstractRaster raster ) {
+        AbstractRaster subRaster = raster.getSubRaster( raster.getEnvelope() );
+        ByteBuffer buffer = ( (ByteBufferRasterData) subRaster.getAsSimpleRaster().getRasterData() ).getByteBuffer();
+        buffer.rewind();
+        return buffer;
+    }
+
     @Test
     public void testMultiThreaded()
                             throws IOException, URISyntaxException {
@@ -412,6 +446,7 @@ public class TestRasterCache {
     }
 
     private void checkFiles( FileInfo[] expected ) {
+        RasterCache.awaitPendingWrites();
         File[] curFiles = CACHE_DIR.listFiles();
         Assert.assertNotNull( "The files of the raster cache could not be listed, this may not be.", curFiles );
         if ( expected == null ) {
@@ -436,6 +471,7 @@ public class TestRasterCache {
     }
 
     private void checkDiskSize( long expected ) {
+        RasterCache.awaitPendingWrites();
         Assert.assertEquals( expected, RasterCache.getCurrentlyUsedDisk() );
     }
 
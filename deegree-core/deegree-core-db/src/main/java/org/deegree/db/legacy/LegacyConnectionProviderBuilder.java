@@ -51,13 +51,17 @@ import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.dialect.SqlDialectProvider;
 import org.deegree.db.legacy.jaxb.JDBCConnection;
+import org.deegree.db.pool.PoolSettings;
+import org.deegree.db.pool.PooledConnectionProvider;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.Workspace;
 import org.slf4j.Logger;
 
 /**
- * Builds legacy connection providers.
+ * Builds connection providers from JDBC connection configurations: a {@link PooledConnectionProvider}, if a
+ * connection pool is configured, a {@link LegacyConnectionProvider} otherwise.
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -84,10 +88,27 @@ public class LegacyConnectionProviderBuilder implements ResourceBuilder<Connecti
     @Override
     public ConnectionProvider build() {
         String url = config.getUrl();
+        boolean readOnly = config.isReadOnly() == null ? false : config.isReadOnly();
+        JDBCConnection.ConnectionPool poolConfig = config.getConnectionPool();
+        if ( poolConfig != null ) {
+            PooledConnectionProvider cprov = new PooledConnectionProvider( url, config.getUser(),
+                                                                           config.getPassword(), readOnly,
+                                                                           getPoolSettings( poolConfig ), metadata );
+            try {
+                cprov.setDialect( findDialect( cprov, url ) );
+            } catch ( RuntimeException e ) {
+                cprov.destroy();
+                throw e;
+            }
+            return cprov;
+        }
         LegacyConnectionProvider cprov;
-        cprov = new LegacyConnectionProvider( url, config.getUser(), config.getPassword(),
-                                              config.isReadOnly() == null ? false : config.isReadOnly(), metadata );
+        cprov = new LegacyConnectionProvider( url, config.getUser(), config.getPassword(), readOnly, metadata );
+        cprov.setDialect( findDialect( cprov, url ) );
+        return cprov;
+    }
 
+    private SQLDialect findDialect( ConnectionProvider cprov, String url ) {
         ServiceLoader<SqlDialectProvider> dialectLoader = ServiceLoader.load( SqlDialectProvider.class,
                                                                               workspace.getModuleClassLoader() );
         Iterator<SqlDialectProvider> iter = dialectLoader.iterator();
@@ -105,11 +126,31 @@ public class LegacyConnectionProviderBuilder implements ResourceBuilder<Connecti
                 JDBCUtils.close( conn );
             }
         }
-        cprov.setDialect( dialect );
         if ( dialect == null ) {
             LOG.warn( "No SQL dialect for {} found, trying to continue.", url );
         }
-        return cprov;
+        return dialect;
+    }
+
+    private static PoolSettings getPoolSettings( JDBCConnection.ConnectionPool config ) {
+        int maxActive = get( config.getMaxActive(), PoolSettings.DEFAULT_MAX_ACTIVE );
+        int minIdle = Math.min( get( config.getMinIdle(), PoolSettings.DEFAULT_MIN_IDLE ), maxActive );
+        try {
+            return new PoolSettings( minIdle, maxActive,
+                                     get( config.getMaxWaitMillis(), PoolSettings.DEFAULT_MAX_WAIT_MILLIS ),
+                                     get( config.getIdleTimeoutMillis(), PoolSettings.DEFAULT_IDLE_TIMEOUT_MILLIS ),
+                                     get( config.getMaxLifetimeMillis(), PoolSettings.DEFAULT_MAX_LIFETIME_MILLIS ),
+                                     get( config.getValidateAfterIdleMillis(),
+                                          PoolSettings.DEFAULT_VALIDATE_AFTER_IDLE_MILLIS ),
+                                     get( config.getLeakDetectionThresholdMillis(), 0L ),
+                                     get( config.getStatementCacheSize(), PoolSettings.DEFAULT_STATEMENT_CACHE_SIZE ) );
+        } catch ( IllegalArgumentException e ) {
+            throw new ResourceInitException( "Invalid connection pool configuration: " + e.getMessage(), e );
+        }
+    }
+
+    private static <T> T get( T value, T defaultValue ) {
+        return value != null ? value : defaultValue;
     }
 
 }
@@ -0,0 +1,648 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.deegree.db.pool.PoolEntry.IN_USE;
+import static org.deegree.db.pool.PoolEntry.NOT_IN_USE;
+import static org.deegree.db.pool.PoolEntry.REMOVED;
+import static org.deegree.db.pool.PoolEntry.RESERVED;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.deegree.commons.annotations.LoggingNotes;
+import org.slf4j.Logger;
+
+/**
+ * JDBC connection pool with a lock-free borrow path.
+ * <p>
+ * Borrowing first tries the connections recently returned by the calling thread (thread-affine cache), then scans all
+ * pooled connections, claiming a connection by a compare-and-set of its state. Only if no connection is idle, a new
+ * connection is opened (up to the maximum) or the thread waits for a connection to be handed over by a returning
+ * thread. Waiting threads are served in FIFO order and give up after the configured maximum wait time.
+ * </p>
+ * <p>
+ * A housekeeping thread closes connections that have been idle for too long or exceeded their lifetime, keeps the
+ * minimum number of idle connections open and reports connections that have been borrowed for longer than the leak
+ * detection threshold (including the stack trace of the borrowing code).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@LoggingNotes(debug = "logs creation and eviction of connections", warn = "logs possible connection leaks")
+class ConcurrentConnectionPool implements ConnectionPoolMXBean {
+
+    private static final Logger LOG = getLogger( ConcurrentConnectionPool.class );
+
+    private static final long HOUSEKEEPING_PERIOD_MILLIS = 30000;
+
+    private static final long RETRY_NANOS = MILLISECONDS.toNanos( 100 );
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final int MAX_THREAD_ENTRIES = 16;
+
+    private static final int MAX_HANDOFF_ATTEMPTS = 64;
+
+    private final String id;
+
+    private final String url;
+
+    private final String user;
+
+    private final String password;
+
+    private final boolean readOnly;
+
+    private final PoolSettings settings;
+
+    private final CopyOnWriteArrayList<PoolEntry> entries = new CopyOnWriteArrayList<PoolEntry>();
+
+    private final ThreadLocal<List<WeakReference<PoolEntry>>> threadEntries = new ThreadLocal<List<WeakReference<PoolEntry>>>() {
+        @Override
+        protected List<WeakReference<PoolEntry>> initialValue() {
+            return new ArrayList<WeakReference<PoolEntry>>( MAX_THREAD_ENTRIES );
+        }
+    };
+
+    private final SynchronousQueue<PoolEntry> handoff = new SynchronousQueue<PoolEntry>( true );
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    // number of open connections, including connections that are being opened
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicBoolean fillPending = new AtomicBoolean();
+
+    private final AtomicLong borrows = new AtomicLong();
+
+    private final AtomicLong borrowNanos = new AtomicLong();
+
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong created = new AtomicLong();
+
+    private final AtomicLong closed = new AtomicLong();
+
+    private final AtomicLong leaks = new AtomicLong();
+
+    private final AtomicLong statementHits = new AtomicLong();
+
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    private volatile ScheduledExecutorService housekeeper;
+
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new {@link ConcurrentConnectionPool}. No connections are opened and no threads are started, the
+     * housekeeping is started by {@link #start()}.
+     * 
+     * @param id
+     *            identifier of the pool (used for logging and thread names), must not be <code>null</code>
+     * @param url
+     *            JDBC URL, must not be <code>null</code>
+     * @param user
+     *            DB user, may be <code>null</code>
+     * @param password
+     *            DB password, may be <code>null</code>
+     * @param readOnly
+     *            <code>true</code>, if connections should be set to read-only mode
+     * @param settings
+     *            pool settings, must not be <code>null</code>
+     */
+    ConcurrentConnectionPool( String id, String url, String user, String password, boolean readOnly,
+                              PoolSettings settings ) {
+        this.id = id;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.readOnly = readOnly;
+        this.settings = settings;
+    }
+
+    /**
+     * Starts the housekeeping thread, which also opens the minimum number of idle connections. Does nothing if the pool
+     * has already been started or shut down.
+     */
+    synchronized void start() {
+        if ( housekeeper != null || shutdown ) {
+            return;
+        }
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "jdbc-pool-" + id );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+        long period = HOUSEKEEPING_PERIOD_MILLIS;
+        if ( settings.getLeakDetectionThresholdMillis() > 0 ) {
+            period = Math.min( period, Math.max( 1000, settings.getLeakDetectionThresholdMillis() / 2 ) );
+        }
+        executor.scheduleWithFixedDelay( new Runnable() {
+            @Override
+            public void run() {
+                housekeep();
+            }
+        }, 0, period, MILLISECONDS );
+        housekeeper = executor;
+    }
+
+    /**
+     * Borrows a connection from the pool.
+     * 
+     * @return connection, never <code>null</code>, must be closed after use to return it to the pool
+     * @throws SQLTimeoutException
+     *             if no connection became available within the maximum wait time
+     * @throws SQLException
+     *             if opening a new connection failed or the pool has been shut down
+     */
+    Connection getConnection()
+                            throws SQLException {
+        if ( shutdown ) {
+            throw new SQLException( "Connection pool '" + id + "' has been shut down." );
+        }
+        long start = System.nanoTime();
+        long deadline = start + MILLISECONDS.toNanos( settings.getMaxWaitMillis() );
+        PoolEntry entry;
+        try {
+            while ( true ) {
+                entry = borrow( deadline );
+                if ( entry == null ) {
+                    timeouts.incrementAndGet();
+                    throw new SQLTimeoutException( "No connection of pool '" + id + "' became available within "
+                                                   + settings.getMaxWaitMillis() + " [ms] (active: "
+                                                   + getActiveConnections() + ", waiting: " + waiters.get() + ")." );
+                }
+                if ( isUsable( entry ) ) {
+                    break;
+                }
+                discard( entry );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new SQLException( "Interrupted while waiting for a connection of pool '" + id + "'.", e );
+        }
+        recordBorrow( System.nanoTime() - start );
+        Throwable stack = null;
+        if ( settings.getLeakDetectionThresholdMillis() > 0 ) {
+            stack = new Throwable( "Connection borrowed here" );
+        }
+        entry.borrowed( System.currentTimeMillis(), stack );
+        return ProxyConnection.create( this, entry );
+    }
+
+    private PoolEntry borrow( long deadline )
+                            throws SQLException, InterruptedException {
+        List<WeakReference<PoolEntry>> list = threadEntries.get();
+        for ( int i = list.size() - 1; i >= 0; i-- ) {
+            PoolEntry entry = list.remove( i ).get();
+            if ( entry != null && entry.compareAndSetState( NOT_IN_USE, IN_USE ) ) {
+                return entry;
+            }
+        }
+
+        while ( true ) {
+            PoolEntry entry = claimIdle();
+            if ( entry != null ) {
+                return entry;
+            }
+            entry = createEntry( IN_USE );
+            if ( entry != null ) {
+                return entry;
+            }
+            long remaining = deadline - System.nanoTime();
+            if ( remaining <= 0 ) {
+                return null;
+            }
+            // only threads that are about to wait are announced, so returning threads don't hand over in vain
+            waiters.incrementAndGet();
+            try {
+                // a connection returned before the announcement is not handed over, but is idle
+                entry = claimIdle();
+                if ( entry != null ) {
+                    return entry;
+                }
+                entry = handoff.poll( Math.min( remaining, RETRY_NANOS ), NANOSECONDS );
+                if ( entry != null && entry.compareAndSetState( NOT_IN_USE, IN_USE ) ) {
+                    return entry;
+                }
+            } finally {
+                waiters.decrementAndGet();
+            }
+        }
+    }
+
+    private PoolEntry claimIdle() {
+        for ( PoolEntry entry : entries ) {
+            if ( entry.compareAndSetState( NOT_IN_USE, IN_USE ) ) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a borrowed connection to the pool (or closes it, if it has been evicted or exceeded its lifetime).
+     * 
+     * @param entry
+     *            entry of the connection, must not be <code>null</code>
+     */
+    void release( PoolEntry entry ) {
+        long now = System.currentTimeMillis();
+        entry.returned( now );
+        if ( shutdown || entry.evicted || isExpired( entry, now ) ) {
+            discard( entry );
+            return;
+        }
+        entry.setState( NOT_IN_USE );
+        if ( handOver( entry ) ) {
+            return;
+        }
+        List<WeakReference<PoolEntry>> list = threadEntries.get();
+        if ( list.size() < MAX_THREAD_ENTRIES ) {
+            list.add( new WeakReference<PoolEntry>( entry ) );
+        }
+    }
+
+    private boolean handOver( PoolEntry entry ) {
+        for ( int i = 0; waiters.get() > 0 && i < MAX_HANDOFF_ATTEMPTS; i++ ) {
+            if ( entry.getState() != NOT_IN_USE || handoff.offer( entry ) ) {
+                return true;
+            }
+            Thread.yield();
+        }
+        return false;
+    }
+
+    /**
+     * Removes the given connection from the pool and closes it.
+     * 
+     * @param entry
+     *            entry of the connection, must not be <code>null</code>
+     */
+    void discard( PoolEntry entry ) {
+        entry.setState( REMOVED );
+        if ( !entries.remove( entry ) ) {
+            return;
+        }
+        size.decrementAndGet();
+        closed.incrementAndGet();
+        entry.clearStatements();
+        try {
+            entry.conn.close();
+        } catch ( SQLException e ) {
+            LOG.debug( "Closing connection failed: {}", e.getMessage() );
+        }
+        if ( waiters.get() > 0 && !shutdown ) {
+            scheduleFill();
+        }
+    }
+
+    /**
+     * Discards the given connection, e.g. because a statement on it has been cancelled.
+     * 
+     * @param conn
+     *            connection (or the physical connection, e.g. as returned by a statement), must not be
+     *            <code>null</code>
+     */
+    void invalidate( Connection conn ) {
+        ProxyConnection handler = ProxyConnection.getHandler( conn );
+        if ( handler != null ) {
+            handler.invalidate();
+            return;
+        }
+        for ( PoolEntry entry : entries ) {
+            if ( entry.conn == conn ) {
+                // physical connection: closed when the borrowing code closes its proxy
+                entry.evicted = true;
+                try {
+                    conn.close();
+                } catch ( SQLException e ) {
+                    LOG.debug( "Closing connection failed: {}", e.getMessage() );
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes all idle connections and stops housekeeping. Borrowed connections are closed when they are returned.
+     */
+    void shutdown() {
+        synchronized ( this ) {
+            shutdown = true;
+            if ( housekeeper != null ) {
+                housekeeper.shutdownNow();
+            }
+        }
+        for ( PoolEntry entry : entries ) {
+            if ( entry.compareAndSetState( NOT_IN_USE, RESERVED ) ) {
+                discard( entry );
+            }
+        }
+        int active = getActiveConnections();
+        if ( active > 0 ) {
+            LOG.warn( "Connection pool '{}' shut down with {} connection(s) still in use.", id, active );
+        }
+    }
+
+    private PoolEntry createEntry( int state )
+                            throws SQLException {
+        while ( true ) {
+            int current = size.get();
+            if ( current >= settings.getMaxActive() ) {
+                return null;
+            }
+            if ( size.compareAndSet( current, current + 1 ) ) {
+                break;
+            }
+        }
+        Connection conn = null;
+        try {
+            conn = DriverManager.getConnection( url, user, password );
+            if ( readOnly ) {
+                conn.setReadOnly( true );
+            }
+        } catch ( SQLException e ) {
+            size.decrementAndGet();
+            if ( conn != null ) {
+                try {
+                    conn.close();
+                } catch ( SQLException e2 ) {
+                    // nothing to do
+                }
+            }
+            throw e;
+        } catch ( RuntimeException e ) {
+            size.decrementAndGet();
+            throw e;
+        }
+        PoolEntry entry = new PoolEntry( conn, state, settings.getStatementCacheSize() );
+        entries.add( entry );
+        created.incrementAndGet();
+        LOG.debug( "Opened connection {} of pool '{}'.", size.get(), id );
+        return entry;
+    }
+
+    private boolean isUsable( PoolEntry entry ) {
+        long now = System.currentTimeMillis();
+        if ( entry.evicted || isExpired( entry, now ) ) {
+            return false;
+        }
+        if ( now - entry.lastAccess < settings.getValidateAfterIdleMillis() ) {
+            return true;
+        }
+        try {
+            return entry.conn.isValid( VALIDATION_TIMEOUT_SECONDS );
+        } catch ( SQLException e ) {
+            LOG.debug( "Validation of connection failed: {}", e.getMessage() );
+            return false;
+        } catch ( AbstractMethodError e ) {
+            // pre-JDBC 4 driver
+            return true;
+        }
+    }
+
+    private boolean isExpired( PoolEntry entry, long now ) {
+        long maxLifetime = settings.getMaxLifetimeMillis();
+        return maxLifetime > 0 && now - entry.createdAt > maxLifetime;
+    }
+
+    private void recordBorrow( long nanos ) {
+        borrows.incrementAndGet();
+        borrowNanos.addAndGet( nanos );
+        long max = maxBorrowNanos.get();
+        while ( nanos > max && !maxBorrowNanos.compareAndSet( max, nanos ) ) {
+            max = maxBorrowNanos.get();
+        }
+    }
+
+    /**
+     * Evicts idle connections that exceeded the idle timeout or their lifetime, reports possible leaks and opens
+     * connections up to the minimum number of idle connections.
+     */
+    void housekeep() {
+        long now = System.currentTimeMillis();
+        long idleTimeout = settings.getIdleTimeoutMillis();
+        long leakThreshold = settings.getLeakDetectionThresholdMillis();
+        for ( PoolEntry entry : entries ) {
+            if ( entry.getState() == IN_USE ) {
+                if ( leakThreshold > 0 ) {
+                    checkLeak( entry, now, leakThreshold );
+                }
+                continue;
+            }
+            if ( !entry.compareAndSetState( NOT_IN_USE, RESERVED ) ) {
+                continue;
+            }
+            boolean idleTooLong = idleTimeout > 0 && now - entry.lastAccess > idleTimeout
+                                  && size.get() > settings.getMinIdle();
+            if ( idleTooLong || entry.evicted || isExpired( entry, now ) ) {
+                LOG.debug( "Evicting idle connection of pool '{}'.", id );
+                discard( entry );
+            } else {
+                entry.setState( NOT_IN_USE );
+                handOver( entry );
+            }
+        }
+        fill();
+    }
+
+    private void checkLeak( PoolEntry entry, long now, long leakThreshold ) {
+        long borrowedAt = entry.borrowedAt;
+        Throwable stack = entry.borrowStack;
+        if ( borrowedAt > 0 && !entry.leakReported && now - borrowedAt > leakThreshold ) {
+            entry.leakReported = true;
+            leaks.incrementAndGet();
+            LOG.warn( "Connection of pool '{}' has been in use for {} [ms], possible connection leak.",
+                      new Object[] { id, now - borrowedAt, stack } );
+        }
+    }
+
+    private void scheduleFill() {
+        ScheduledExecutorService executor = housekeeper;
+        if ( executor != null && fillPending.compareAndSet( false, true ) ) {
+            try {
+                executor.execute( new Runnable() {
+                    @Override
+                    public void run() {
+                        fillPending.set( false );
+                        fill();
+                    }
+                } );
+            } catch ( RejectedExecutionException e ) {
+                fillPending.set( false );
+            }
+        }
+    }
+
+    private void fill() {
+        int needed = Math.max( 0, settings.getMinIdle() - getIdleConnections() ) + waiters.get();
+        for ( int i = 0; i < needed && !shutdown; i++ ) {
+            PoolEntry entry;
+            try {
+                entry = createEntry( NOT_IN_USE );
+            } catch ( SQLException e ) {
+                LOG.warn( "Unable to open connection for pool '{}': {}", id, e.getMessage() );
+                return;
+            }
+            if ( entry == null ) {
+                return;
+            }
+            handOver( entry );
+        }
+    }
+
+    private int count( int state ) {
+        int count = 0;
+        for ( PoolEntry entry : entries ) {
+            if ( entry.getState() == state ) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return count( IN_USE );
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return count( NOT_IN_USE );
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return entries.size();
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return settings.getMaxActive();
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection() {
+        return waiters.get();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrows.get();
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    @Override
+    public long getMeanBorrowMicros() {
+        long count = borrows.get();
+        return count == 0 ? 0 : NANOSECONDS.toMicros( borrowNanos.get() / count );
+    }
+
+    @Override
+    public long getMaxBorrowMicros() {
+        return NANOSECONDS.toMicros( maxBorrowNanos.get() );
+    }
+
+    @Override
+    public long getCreatedCount() {
+        return created.get();
+    }
+
+    @Override
+    public long getClosedCount() {
+        return closed.get();
+    }
+
+    @Override
+    public long getLeakCount() {
+        return leaks.get();
+    }
+
+    @Override
+    public long getStatementCacheHitCount() {
+        return statementHits.get();
+    }
+
+    @Override
+    public long getStatementCacheMissCount() {
+        return statementMisses.get();
+    }
+
+    void statementRequested( boolean cached ) {
+        if ( cached ) {
+            statementHits.incrementAndGet();
+        } else {
+            statementMisses.incrementAndGet();
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+/**
+ * Management interface (metrics) of a {@link PooledConnectionProvider}.
+ * <p>
+ * Pools are registered with the platform MBean server as <code>org.deegree:type=ConnectionPool,name=[id]</code>.
+ * Counters are cumulative since the pool has been created.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public interface ConnectionPoolMXBean {
+
+    /**
+     * @return number of connections that are currently borrowed
+     */
+    int getActiveConnections();
+
+    /**
+     * @return number of open connections that are currently not borrowed
+     */
+    int getIdleConnections();
+
+    /**
+     * @return number of open connections
+     */
+    int getTotalConnections();
+
+    /**
+     * @return maximum number of connections
+     */
+    int getMaxConnections();
+
+    /**
+     * @return number of threads that are currently waiting for a connection
+     */
+    int getThreadsAwaitingConnection();
+
+    /**
+     * @return number of successful borrows
+     */
+    long getBorrowCount();
+
+    /**
+     * @return number of borrows that failed, because no connection became available in time
+     */
+    long getTimeoutCount();
+
+    /**
+     * @return mean time (in microseconds) needed for a successful borrow (including waiting and connecting)
+     */
+    long getMeanBorrowMicros();
+
+    /**
+     * @return maximum time (in microseconds) needed for a successful borrow (including waiting and connecting)
+     */
+    long getMaxBorrowMicros();
+
+    /**
+     * @return number of connections that have been opened
+     */
+    long getCreatedCount();
+
+    /**
+     * @return number of connections that have been closed (idle timeout, lifetime, failed validation, invalidation)
+     */
+    long getClosedCount();
+
+    /**
+     * @return number of connections that have been reported as possible leaks
+     */
+    long getLeakCount();
+
+    /**
+     * @return number of prepared statements that have been taken from the statement caches of the connections
+     */
+    long getStatementCacheHitCount();
+
+    /**
+     * @return number of prepared statements that had to be prepared, because they were not cached
+     */
+    long getStatementCacheMissCount();
+
+}
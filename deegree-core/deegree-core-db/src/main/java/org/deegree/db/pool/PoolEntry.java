@@ -0,0 +1,222 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+
+/**
+ * A physical connection managed by a {@link ConcurrentConnectionPool}, together with its state and the prepared
+ * statements that are kept open for reuse.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class PoolEntry {
+
+    private static final Logger LOG = getLogger( PoolEntry.class );
+
+    static final int NOT_IN_USE = 0;
+
+    static final int IN_USE = 1;
+
+    static final int RESERVED = 2;
+
+    static final int REMOVED = 3;
+
+    private final AtomicInteger state;
+
+    final Connection conn;
+
+    final long createdAt;
+
+    volatile long lastAccess;
+
+    volatile long borrowedAt;
+
+    volatile Throwable borrowStack;
+
+    volatile boolean leakReported;
+
+    volatile boolean evicted;
+
+    private final int statementCacheSize;
+
+    // least recently used first, guarded by itself
+    private final Map<String, CachedStatement> statements;
+
+    PoolEntry( Connection conn, int state, int statementCacheSize ) {
+        this.conn = conn;
+        this.state = new AtomicInteger( state );
+        this.createdAt = System.currentTimeMillis();
+        this.lastAccess = createdAt;
+        this.statementCacheSize = statementCacheSize;
+        this.statements = new LinkedHashMap<String, CachedStatement>( 16, 0.75f, true );
+    }
+
+    int getState() {
+        return state.get();
+    }
+
+    void setState( int newState ) {
+        state.set( newState );
+    }
+
+    boolean compareAndSetState( int expect, int update ) {
+        return state.compareAndSet( expect, update );
+    }
+
+    void borrowed( long now, Throwable stack ) {
+        borrowedAt = now;
+        borrowStack = stack;
+        leakReported = false;
+    }
+
+    void returned( long now ) {
+        lastAccess = now;
+        borrowedAt = 0;
+        borrowStack = null;
+    }
+
+    boolean isStatementCacheEnabled() {
+        return statementCacheSize > 0;
+    }
+
+    /**
+     * Removes the cached statement for the given SQL from the cache.
+     * 
+     * @param sql
+     *            SQL of the statement, must not be <code>null</code>
+     * @return cached statement, or <code>null</code> if there is none
+     */
+    CachedStatement takeStatement( String sql ) {
+        synchronized ( statements ) {
+            return statements.remove( sql );
+        }
+    }
+
+    /**
+     * Puts the given statement into the cache. If the cache is full, the least recently used statement is closed.
+     * 
+     * @param stmt
+     *            statement to be cached, must not be <code>null</code>
+     * @return <code>true</code>, if the statement has been cached, <code>false</code> if the cache already contains a
+     *         statement for the same SQL (the caller has to close the statement)
+     */
+    boolean offerStatement( CachedStatement stmt ) {
+        CachedStatement eldest = null;
+        synchronized ( statements ) {
+            if ( evicted || statementCacheSize == 0 || statements.containsKey( stmt.sql ) ) {
+                return false;
+            }
+            statements.put( stmt.sql, stmt );
+            if ( statements.size() > statementCacheSize ) {
+                Iterator<Entry<String, CachedStatement>> iter = statements.entrySet().iterator();
+                eldest = iter.next().getValue();
+                iter.remove();
+            }
+        }
+        if ( eldest != null ) {
+            eldest.closeQuietly();
+        }
+        return true;
+    }
+
+    /**
+     * Closes all cached statements.
+     */
+    void clearStatements() {
+        CachedStatement[] cached;
+        synchronized ( statements ) {
+            cached = statements.values().toArray( new CachedStatement[statements.size()] );
+            statements.clear();
+        }
+        for ( CachedStatement stmt : cached ) {
+            stmt.closeQuietly();
+        }
+    }
+
+    /**
+     * A prepared statement of this connection that can be reused, together with the settings it has been created with.
+     */
+    static final class CachedStatement {
+
+        final String sql;
+
+        final PreparedStatement stmt;
+
+        final int fetchSize;
+
+        final int maxRows;
+
+        final int queryTimeout;
+
+        CachedStatement( String sql, PreparedStatement stmt )
+                                throws SQLException {
+            this.sql = sql;
+            this.stmt = stmt;
+            this.fetchSize = stmt.getFetchSize();
+            this.maxRows = stmt.getMaxRows();
+            this.queryTimeout = stmt.getQueryTimeout();
+        }
+
+        void closeQuietly() {
+            try {
+                stmt.close();
+            } catch ( SQLException e ) {
+                LOG.trace( "Closing cached statement failed: {}", e.getMessage() );
+            }
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+/**
+ * Sizing and timing parameters of a {@link PooledConnectionProvider}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PoolSettings {
+
+    /** Default minimum number of idle connections (as used by the legacy pool). */
+    public static final int DEFAULT_MIN_IDLE = 5;
+
+    /** Default maximum number of connections (as used by the legacy pool). */
+    public static final int DEFAULT_MAX_ACTIVE = 25;
+
+    /** Default maximum time to wait for a connection: 30 seconds. */
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 30000;
+
+    /** Default time after which surplus idle connections are closed: 10 minutes. */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 600000;
+
+    /** Default maximum lifetime of a connection: 30 minutes. */
+    public static final long DEFAULT_MAX_LIFETIME_MILLIS = 1800000;
+
+    /** Default idle time after which a connection is validated before it is handed out: 5 seconds. */
+    public static final long DEFAULT_VALIDATE_AFTER_IDLE_MILLIS = 5000;
+
+    /** Default number of prepared statements to keep open per connection. */
+    public static final int DEFAULT_STATEMENT_CACHE_SIZE = 32;
+
+    private final int minIdle;
+
+    private final int maxActive;
+
+    private final long maxWaitMillis;
+
+    private final long idleTimeoutMillis;
+
+    private final long maxLifetimeMillis;
+
+    private final long validateAfterIdleMillis;
+
+    private final long leakDetectionThresholdMillis;
+
+    private final int statementCacheSize;
+
+    /**
+     * Creates new {@link PoolSettings} with default values and disabled leak detection.
+     */
+    public PoolSettings() {
+        this( DEFAULT_MIN_IDLE, DEFAULT_MAX_ACTIVE, DEFAULT_MAX_WAIT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS,
+              DEFAULT_MAX_LIFETIME_MILLIS, DEFAULT_VALIDATE_AFTER_IDLE_MILLIS, 0, DEFAULT_STATEMENT_CACHE_SIZE );
+    }
+
+    /**
+     * Creates new {@link PoolSettings}.
+     * 
+     * @param minIdle
+     *            number of connections to keep open (even if idle), must not be negative
+     * @param maxActive
+     *            maximum number of connections, must be positive
+     * @param maxWaitMillis
+     *            maximum time to wait for a connection if all connections are in use
+     * @param idleTimeoutMillis
+     *            idle time after which connections exceeding <code>minIdle</code> are closed, 0 disables closing
+     * @param maxLifetimeMillis
+     *            time after which connections are retired (once they are idle), 0 means unlimited
+     * @param validateAfterIdleMillis
+     *            idle time after which a connection is validated before handing it out, 0 validates on every borrow
+     * @param leakDetectionThresholdMillis
+     *            time after which a borrowed connection is reported as possible leak, 0 disables leak detection
+     * @param statementCacheSize
+     *            number of prepared statements to keep open per connection (for reuse), 0 disables caching
+     */
+    public PoolSettings( int minIdle, int maxActive, long maxWaitMillis, long idleTimeoutMillis,
+                         long maxLifetimeMillis, long validateAfterIdleMillis, long leakDetectionThresholdMillis,
+                         int statementCacheSize ) {
+        if ( maxActive <= 0 ) {
+            throw new IllegalArgumentException( "Maximum number of connections must be positive." );
+        }
+        if ( minIdle < 0 || minIdle > maxActive ) {
+            throw new IllegalArgumentException( "Minimum number of idle connections must be between 0 and "
+                                                + maxActive + "." );
+        }
+        this.minIdle = minIdle;
+        this.maxActive = maxActive;
+        this.maxWaitMillis = Math.max( 0, maxWaitMillis );
+        this.idleTimeoutMillis = Math.max( 0, idleTimeoutMillis );
+        this.maxLifetimeMillis = Math.max( 0, maxLifetimeMillis );
+        this.validateAfterIdleMillis = Math.max( 0, validateAfterIdleMillis );
+        this.leakDetectionThresholdMillis = Math.max( 0, leakDetectionThresholdMillis );
+        this.statementCacheSize = Math.max( 0, statementCacheSize );
+    }
+
+    /**
+     * @return number of connections to keep open
+     */
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * @return maximum number of connections
+     */
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    /**
+     * @return maximum time (in milliseconds) to wait for a connection
+     */
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return idle time (in milliseconds) after which surplus connections are closed, 0 if disabled
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @return maximum lifetime (in milliseconds) of a connection, 0 if unlimited
+     */
+    public long getMaxLifetimeMillis() {
+        return maxLifetimeMillis;
+    }
+
+    /**
+     * @return idle time (in milliseconds) after which a connection is validated before handing it out
+     */
+    public long getValidateAfterIdleMillis() {
+        return validateAfterIdleMillis;
+    }
+
+    /**
+     * @return time (in milliseconds) after which a borrowed connection is reported as possible leak, 0 if disabled
+     */
+    public long getLeakDetectionThresholdMillis() {
+        return leakDetectionThresholdMillis;
+    }
+
+    /**
+     * @return number of prepared statements to keep open per connection, 0 if disabled
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+}
@@ -0,0 +1,188 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.deegree.db.ConnectionProvider;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceException;
+import org.deegree.workspace.ResourceInitException;
+import org.deegree.workspace.ResourceMetadata;
+import org.slf4j.Logger;
+
+/**
+ * {@link ConnectionProvider} backed by a {@link ConcurrentConnectionPool}, an alternative to the legacy (commons-dbcp
+ * based) connection pool for highly concurrent access.
+ * <p>
+ * The metrics of the pool are available via {@link #getMetrics()} and via JMX (see {@link ConnectionPoolMXBean}).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PooledConnectionProvider implements ConnectionProvider {
+
+    private static final Logger LOG = getLogger( PooledConnectionProvider.class );
+
+    private final ResourceMetadata<ConnectionProvider> metadata;
+
+    private final String id;
+
+    private final ConcurrentConnectionPool pool;
+
+    private SQLDialect dialect;
+
+    private ObjectName mbeanName;
+
+    /**
+     * Creates a new {@link PooledConnectionProvider} instance.
+     * 
+     * @param url
+     *            JDBC URL, must not be <code>null</code>
+     * @param user
+     *            DB user, may be <code>null</code>
+     * @param password
+     *            DB password, may be <code>null</code>
+     * @param readOnly
+     *            <code>true</code>, if connections should be set to read-only mode
+     * @param settings
+     *            pool settings, must not be <code>null</code>
+     * @param metadata
+     *            resource metadata, may be <code>null</code>
+     */
+    public PooledConnectionProvider( String url, String user, String password, boolean readOnly,
+                                     PoolSettings settings, ResourceMetadata<ConnectionProvider> metadata ) {
+        this.metadata = metadata;
+        this.id = metadata != null ? metadata.getIdentifier().getId() : "<unspecified>";
+        this.pool = new ConcurrentConnectionPool( id, url, user, password, readOnly, settings );
+    }
+
+    public void setDialect( SQLDialect dialect ) {
+        this.dialect = dialect;
+    }
+
+    /**
+     * Returns the metrics of the connection pool.
+     * 
+     * @return live view of the metrics, never <code>null</code>
+     */
+    public ConnectionPoolMXBean getMetrics() {
+        return pool;
+    }
+
+    @Override
+    public ResourceMetadata<? extends Resource> getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public void init() {
+        pool.start();
+        try {
+            pool.getConnection().close();
+        } catch ( SQLException e ) {
+            pool.shutdown();
+            throw new ResourceInitException( e.getLocalizedMessage(), e );
+        }
+        registerMBean();
+    }
+
+    @Override
+    public Connection getConnection() {
+        try {
+            return pool.getConnection();
+        } catch ( SQLException e ) {
+            throw new ResourceException( e.getLocalizedMessage(), e );
+        }
+    }
+
+    @Override
+    public void destroy() {
+        unregisterMBean();
+        pool.shutdown();
+    }
+
+    @Override
+    public SQLDialect getDialect() {
+        return dialect;
+    }
+
+    @Override
+    public void invalidate( Connection conn ) {
+        pool.invalidate( conn );
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName( "org.deegree:type=ConnectionPool,name=" + ObjectName.quote( id ) );
+            if ( !mbs.isRegistered( name ) ) {
+                mbs.registerMBean( pool, name );
+                mbeanName = name;
+            }
+        } catch ( Exception e ) {
+            LOG.debug( "Unable to register connection pool metrics: {}", e.getMessage() );
+        }
+    }
+
+    private void unregisterMBean() {
+        if ( mbeanName != null ) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean( mbeanName );
+            } catch ( Exception e ) {
+                LOG.debug( "Unable to unregister connection pool metrics: {}", e.getMessage() );
+            }
+            mbeanName = null;
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.deegree.db.pool.PoolEntry.CachedStatement;
+import org.slf4j.Logger;
+
+/**
+ * Handler for the {@link Connection} proxies handed out by a {@link ConcurrentConnectionPool}.
+ * <p>
+ * Closing the proxy returns the physical connection to the pool: statements created through the proxy are closed,
+ * uncommitted transactions are rolled back and auto-commit is restored. Connections that raised an SQL exception
+ * indicating a broken connection (SQL state class <code>08</code>) are discarded instead.
+ * </p>
+ * <p>
+ * If statement caching is enabled, prepared statements created by {@link Connection#prepareStatement(String)} are taken
+ * from (and returned to) the statement cache of the physical connection, see {@link ProxyStatement}.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class ProxyConnection implements InvocationHandler {
+
+    private static final Logger LOG = getLogger( ProxyConnection.class );
+
+    private static final int PRUNE_THRESHOLD = 64;
+
+    private final ConcurrentConnectionPool pool;
+
+    private final PoolEntry entry;
+
+    private final List<Statement> statements = new ArrayList<Statement>();
+
+    private volatile boolean closed;
+
+    private ProxyConnection( ConcurrentConnectionPool pool, PoolEntry entry ) {
+        this.pool = pool;
+        this.entry = entry;
+    }
+
+    static Connection create( ConcurrentConnectionPool pool, PoolEntry entry ) {
+        return (Connection) Proxy.newProxyInstance( ProxyConnection.class.getClassLoader(),
+                                                    new Class<?>[] { Connection.class },
+                                                    new ProxyConnection( pool, entry ) );
+    }
+
+    /**
+     * Returns the handler of the given connection.
+     * 
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @return handler, or <code>null</code> if the connection has not been created by a pool
+     */
+    static ProxyConnection getHandler( Connection conn ) {
+        if ( Proxy.isProxyClass( conn.getClass() ) ) {
+            InvocationHandler handler = Proxy.getInvocationHandler( conn );
+            if ( handler instanceof ProxyConnection ) {
+                return (ProxyConnection) handler;
+            }
+        }
+        return null;
+    }
+
+    PoolEntry getEntry() {
+        return entry;
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args )
+                            throws Throwable {
+        String name = method.getName();
+        if ( "close".equals( name ) ) {
+            close();
+            return null;
+        }
+        if ( "isClosed".equals( name ) ) {
+            return closed || entry.conn.isClosed();
+        }
+        if ( "equals".equals( name ) ) {
+            return proxy == args[0];
+        }
+        if ( "hashCode".equals( name ) ) {
+            return System.identityHashCode( proxy );
+        }
+        if ( "toString".equals( name ) ) {
+            return "Pooled connection (" + entry.conn + ")";
+        }
+        if ( closed ) {
+            throw new SQLException( "Connection has already been closed (returned to the pool)." );
+        }
+        if ( "unwrap".equals( name ) && ( (Class<?>) args[0] ).isInstance( proxy ) ) {
+            return proxy;
+        }
+        if ( "isWrapperFor".equals( name ) && ( (Class<?>) args[0] ).isInstance( proxy ) ) {
+            return true;
+        }
+        if ( "prepareStatement".equals( name ) && args.length == 1 && entry.isStatementCacheEnabled() ) {
+            return prepareCached( (Connection) proxy, (String) args[0] );
+        }
+        try {
+            Object result = method.invoke( entry.conn, args );
+            if ( result instanceof Statement ) {
+                track( (Statement) result );
+            }
+            return result;
+        } catch ( InvocationTargetException e ) {
+            Throwable cause = e.getCause();
+            if ( cause instanceof SQLException && isConnectionError( (SQLException) cause ) ) {
+                LOG.debug( "Connection error ({}), connection will be discarded.", cause.getMessage() );
+                entry.evicted = true;
+            }
+            throw cause;
+        }
+    }
+
+    /**
+     * Discards the connection immediately (it will not be handed out again).
+     */
+    void invalidate() {
+        if ( !closed ) {
+            closed = true;
+            entry.evicted = true;
+            pool.discard( entry );
+        }
+    }
+
+    private PreparedStatement prepareCached( Connection proxy, String sql )
+                            throws SQLException {
+        CachedStatement cached = entry.takeStatement( sql );
+        pool.statementRequested( cached != null );
+        if ( cached == null ) {
+            try {
+                PreparedStatement stmt = entry.conn.prepareStatement( sql );
+                try {
+                    cached = new CachedStatement( sql, stmt );
+                } catch ( SQLException e ) {
+                    stmt.close();
+                    throw e;
+                }
+            } catch ( SQLException e ) {
+                if ( isConnectionError( e ) ) {
+                    LOG.debug( "Connection error ({}), connection will be discarded.", e.getMessage() );
+                    entry.evicted = true;
+                }
+                throw e;
+            }
+        }
+        PreparedStatement stmt = ProxyStatement.create( entry, cached, proxy );
+        track( stmt );
+        return stmt;
+    }
+
+    private void close() {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        if ( !entry.evicted ) {
+            try {
+                reset();
+            } catch ( SQLException e ) {
+                LOG.debug( "Resetting pooled connection failed, discarding it: {}", e.getMessage() );
+                entry.evicted = true;
+            }
+        }
+        pool.release( entry );
+    }
+
+    private void reset()
+                            throws SQLException {
+        Connection conn = entry.conn;
+        synchronized ( statements ) {
+            for ( Statement stmt : statements ) {
+                try {
+                    stmt.close();
+                } catch ( SQLException e ) {
+                    LOG.trace( "Closing statement failed: {}", e.getMessage() );
+                }
+            }
+            statements.clear();
+        }
+        if ( !conn.getAutoCommit() ) {
+            conn.rollback();
+            conn.setAutoCommit( true );
+        }
+        conn.clearWarnings();
+    }
+
+    private void track( Statement stmt ) {
+        synchronized ( statements ) {
+            if ( statements.size() >= PRUNE_THRESHOLD ) {
+                Iterator<Statement> iter = statements.iterator();
+                while ( iter.hasNext() ) {
+                    try {
+                        if ( iter.next().isClosed() ) {
+                            iter.remove();
+                        }
+                    } catch ( SQLException e ) {
+                        iter.remove();
+                    }
+                }
+            }
+            statements.add( stmt );
+        }
+    }
+
+    static boolean isConnectionError( SQLException e ) {
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith( "08" );
+    }
+
+}
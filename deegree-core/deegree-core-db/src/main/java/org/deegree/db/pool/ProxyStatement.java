@@ -0,0 +1,207 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.deegree.db.pool.PoolEntry.CachedStatement;
+import org.slf4j.Logger;
+
+/**
+ * Handler for the {@link PreparedStatement} proxies that wrap statements from the statement cache of a
+ * {@link PoolEntry}.
+ * <p>
+ * Closing the proxy does not close the physical statement, but resets it (parameters, fetch size, maximum number of
+ * rows and query timeout) and puts it back into the statement cache of the connection. Statements whose state cannot
+ * be reset reliably (e.g. after batches or cursor settings) or that raised an SQL exception are closed instead.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class ProxyStatement implements InvocationHandler {
+
+    private static final Logger LOG = getLogger( ProxyStatement.class );
+
+    // changes that cannot be undone by reset()
+    private static final Set<String> UNRESETTABLE = new HashSet<String>( Arrays.asList( "addBatch", "setCursorName",
+                                                                                        "setEscapeProcessing",
+                                                                                        "setFetchDirection",
+                                                                                        "setMaxFieldSize",
+                                                                                        "setLargeMaxRows",
+                                                                                        "setPoolable",
+                                                                                        "closeOnCompletion" ) );
+
+    private final PoolEntry entry;
+
+    private final CachedStatement cached;
+
+    private final Connection conn;
+
+    private boolean reusable = true;
+
+    private volatile boolean closed;
+
+    private ProxyStatement( PoolEntry entry, CachedStatement cached, Connection conn ) {
+        this.entry = entry;
+        this.cached = cached;
+        this.conn = conn;
+    }
+
+    /**
+     * Creates a proxy for the given cached statement.
+     * 
+     * @param entry
+     *            entry of the connection that the statement belongs to, must not be <code>null</code>
+     * @param cached
+     *            cached statement, must not be <code>null</code>
+     * @param conn
+     *            connection proxy that is returned by {@link PreparedStatement#getConnection()}, must not be
+     *            <code>null</code>
+     * @return statement proxy, never <code>null</code>
+     */
+    static PreparedStatement create( PoolEntry entry, CachedStatement cached, Connection conn ) {
+        return (PreparedStatement) Proxy.newProxyInstance( ProxyStatement.class.getClassLoader(),
+                                                           new Class<?>[] { PreparedStatement.class },
+                                                           new ProxyStatement( entry, cached, conn ) );
+    }
+
+    @Override
+    public Object invoke( Object proxy, Method method, Object[] args )
+                            throws Throwable {
+        String name = method.getName();
+        if ( "close".equals( name ) ) {
+            close();
+            return null;
+        }
+        if ( "isClosed".equals( name ) ) {
+            return closed || cached.stmt.isClosed();
+        }
+        if ( "equals".equals( name ) ) {
+            return proxy == args[0];
+        }
+        if ( "hashCode".equals( name ) ) {
+            return System.identityHashCode( proxy );
+        }
+        if ( "toString".equals( name ) ) {
+            return "Pooled statement (" + cached.stmt + ")";
+        }
+        if ( closed ) {
+            throw new SQLException( "Statement has already been closed." );
+        }
+        if ( "getConnection".equals( name ) ) {
+            return conn;
+        }
+        if ( "unwrap".equals( name ) && ( (Class<?>) args[0] ).isInstance( proxy ) ) {
+            return proxy;
+        }
+        if ( "isWrapperFor".equals( name ) && ( (Class<?>) args[0] ).isInstance( proxy ) ) {
+            return true;
+        }
+        if ( UNRESETTABLE.contains( name ) ) {
+            reusable = false;
+        }
+        try {
+            return method.invoke( cached.stmt, args );
+        } catch ( InvocationTargetException e ) {
+            Throwable cause = e.getCause();
+            reusable = false;
+            if ( cause instanceof SQLException && ProxyConnection.isConnectionError( (SQLException) cause ) ) {
+                LOG.debug( "Connection error ({}), connection will be discarded.", cause.getMessage() );
+                entry.evicted = true;
+            }
+            throw cause;
+        }
+    }
+
+    private void close() {
+        if ( closed ) {
+            return;
+        }
+        closed = true;
+        if ( reusable && !entry.evicted ) {
+            try {
+                reset();
+                if ( entry.offerStatement( cached ) ) {
+                    return;
+                }
+            } catch ( SQLException e ) {
+                LOG.debug( "Resetting cached statement failed, closing it: {}", e.getMessage() );
+            }
+        }
+        cached.closeQuietly();
+    }
+
+    private void reset()
+                            throws SQLException {
+        PreparedStatement stmt = cached.stmt;
+        ResultSet rs = stmt.getResultSet();
+        if ( rs != null ) {
+            rs.close();
+        }
+        stmt.clearParameters();
+        stmt.clearWarnings();
+        if ( stmt.getFetchSize() != cached.fetchSize ) {
+            stmt.setFetchSize( cached.fetchSize );
+        }
+        if ( stmt.getMaxRows() != cached.maxRows ) {
+            stmt.setMaxRows( cached.maxRows );
+        }
+        if ( stmt.getQueryTimeout() != cached.queryTimeout ) {
+            stmt.setQueryTimeout( cached.queryTimeout );
+        }
+    }
+
+}
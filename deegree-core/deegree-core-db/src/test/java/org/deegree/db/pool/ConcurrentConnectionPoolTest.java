@@ -0,0 +1,441 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.db.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ConcurrentConnectionPool} (using an H2 in-memory database).
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ConcurrentConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1";
+
+    private ConcurrentConnectionPool pool;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        Class.forName( "org.h2.Driver" );
+    }
+
+    @After
+    public void tearDown() {
+        if ( pool != null ) {
+            pool.shutdown();
+        }
+    }
+
+    private ConcurrentConnectionPool createPool( int maxActive, long maxWait, long maxLifetime, long leakThreshold ) {
+        PoolSettings settings = new PoolSettings( 0, maxActive, maxWait, 0, maxLifetime, 60000, leakThreshold, 2 );
+        ConcurrentConnectionPool newPool = new ConcurrentConnectionPool( "test", URL, "sa", "", false, settings );
+        newPool.start();
+        return newPool;
+    }
+
+    private static PoolEntry entry( Connection conn ) {
+        return ProxyConnection.getHandler( conn ).getEntry();
+    }
+
+    @Test
+    public void testReturnedConnectionIsReused()
+                            throws SQLException {
+        pool = createPool( 5, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        PoolEntry first = entry( conn );
+        conn.close();
+        assertTrue( conn.isClosed() );
+        Connection conn2 = pool.getConnection();
+        assertNotSame( conn, conn2 );
+        assertSame( first, entry( conn2 ) );
+        assertEquals( 1, pool.getActiveConnections() );
+        conn2.close();
+        assertEquals( 0, pool.getActiveConnections() );
+        assertEquals( 1, pool.getIdleConnections() );
+        assertEquals( 1, pool.getCreatedCount() );
+        assertEquals( 2, pool.getBorrowCount() );
+    }
+
+    @Test
+    public void testClosedConnectionRejectsCalls()
+                            throws SQLException {
+        pool = createPool( 5, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        conn.close();
+        // closing twice does no harm
+        conn.close();
+        try {
+            conn.createStatement();
+            fail( "Expected SQLException." );
+        } catch ( SQLException e ) {
+            // expected
+        }
+        assertEquals( 1, pool.getIdleConnections() );
+    }
+
+    @Test
+    public void testReturnRollsBackAndClosesStatements()
+                            throws SQLException {
+        pool = createPool( 1, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        Statement stmt = conn.createStatement();
+        stmt.execute( "CREATE TABLE ROLLBACK_TEST (ID INT)" );
+        conn.setAutoCommit( false );
+        stmt.execute( "INSERT INTO ROLLBACK_TEST VALUES (1)" );
+        conn.close();
+        assertTrue( stmt.isClosed() );
+
+        conn = pool.getConnection();
+        assertTrue( conn.getAutoCommit() );
+        stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery( "SELECT COUNT(*) FROM ROLLBACK_TEST" );
+        rs.next();
+        assertEquals( 0, rs.getInt( 1 ) );
+        stmt.execute( "DROP TABLE ROLLBACK_TEST" );
+        conn.close();
+    }
+
+    @Test
+    public void testTimeoutIfExhausted()
+                            throws SQLException {
+        pool = createPool( 2, 100, 0, 0 );
+        Connection conn1 = pool.getConnection();
+        Connection conn2 = pool.getConnection();
+        try {
+            pool.getConnection();
+            fail( "Expected SQLTimeoutException." );
+        } catch ( SQLTimeoutException e ) {
+            // expected
+        }
+        assertEquals( 1, pool.getTimeoutCount() );
+        assertEquals( 0, pool.getThreadsAwaitingConnection() );
+        assertEquals( 2, pool.getTotalConnections() );
+        conn1.close();
+        conn2.close();
+    }
+
+    @Test
+    public void testHandoffToWaitingThread()
+                            throws Exception {
+        pool = createPool( 1, 5000, 0, 0 );
+        Connection conn = pool.getConnection();
+        final PoolEntry held = entry( conn );
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiting = executor.submit( new Callable<Boolean>() {
+                @Override
+                public Boolean call()
+                                        throws Exception {
+                    Connection conn = pool.getConnection();
+                    boolean same = entry( conn ) == held;
+                    conn.close();
+                    return same;
+                }
+            } );
+            while ( pool.getThreadsAwaitingConnection() == 0 ) {
+                Thread.sleep( 5 );
+            }
+            conn.close();
+            assertTrue( waiting.get() );
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals( 1, pool.getCreatedCount() );
+        assertEquals( 0, pool.getThreadsAwaitingConnection() );
+    }
+
+    @Test
+    public void testOnlyBlockedThreadsAreWaiting()
+                            throws Exception {
+        pool = createPool( 2, 1000, 0, 0 );
+        final AtomicInteger maxWaiting = new AtomicInteger();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread monitor = new Thread() {
+            @Override
+            public void run() {
+                while ( !done.get() ) {
+                    maxWaiting.set( Math.max( maxWaiting.get(), pool.getThreadsAwaitingConnection() ) );
+                }
+            }
+        };
+        monitor.start();
+        try {
+            for ( int i = 0; i < 1000; i++ ) {
+                // the second connection is found by scanning (or opened), never waited for
+                Connection conn1 = pool.getConnection();
+                Connection conn2 = pool.getConnection();
+                conn1.close();
+                conn2.close();
+            }
+        } finally {
+            done.set( true );
+            monitor.join();
+        }
+        assertEquals( 0, maxWaiting.get() );
+        assertEquals( 2, pool.getCreatedCount() );
+    }
+
+    @Test
+    public void testExpiredConnectionIsReplaced()
+                            throws Exception {
+        pool = createPool( 5, 1000, 1, 0 );
+        Connection conn = pool.getConnection();
+        PoolEntry first = entry( conn );
+        Thread.sleep( 10 );
+        conn.close();
+        assertEquals( 1, pool.getClosedCount() );
+        conn = pool.getConnection();
+        assertNotSame( first, entry( conn ) );
+        conn.close();
+    }
+
+    @Test
+    public void testPreparedStatementIsReused()
+                            throws SQLException {
+        pool = createPool( 5, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        PreparedStatement stmt = conn.prepareStatement( "SELECT ? FROM DUAL" );
+        int defaultFetchSize = stmt.getFetchSize();
+        stmt.setFetchSize( defaultFetchSize + 10 );
+        stmt.setInt( 1, 42 );
+        ResultSet rs = stmt.executeQuery();
+        assertTrue( rs.next() );
+        assertEquals( 42, rs.getInt( 1 ) );
+        assertSame( conn, stmt.getConnection() );
+        stmt.close();
+        assertTrue( stmt.isClosed() );
+        assertTrue( rs.isClosed() );
+        conn.close();
+
+        conn = pool.getConnection();
+        PreparedStatement stmt2 = conn.prepareStatement( "SELECT ? FROM DUAL" );
+        assertNotSame( stmt, stmt2 );
+        assertEquals( defaultFetchSize, stmt2.getFetchSize() );
+        stmt2.setInt( 1, 43 );
+        rs = stmt2.executeQuery();
+        assertTrue( rs.next() );
+        assertEquals( 43, rs.getInt( 1 ) );
+        conn.close();
+        assertTrue( stmt2.isClosed() );
+        assertEquals( 1, pool.getStatementCacheHitCount() );
+        assertEquals( 1, pool.getStatementCacheMissCount() );
+    }
+
+    @Test
+    public void testStatementCacheIsBounded()
+                            throws SQLException {
+        pool = createPool( 5, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        for ( int i = 0; i < 3; i++ ) {
+            conn.prepareStatement( "SELECT " + i + " FROM DUAL" ).close();
+        }
+        // statement 0 has been evicted (cache size is 2)
+        conn.prepareStatement( "SELECT 2 FROM DUAL" ).close();
+        conn.prepareStatement( "SELECT 0 FROM DUAL" ).close();
+        conn.close();
+        assertEquals( 1, pool.getStatementCacheHitCount() );
+        assertEquals( 4, pool.getStatementCacheMissCount() );
+    }
+
+    @Test
+    public void testSameStatementPreparedTwice()
+                            throws SQLException {
+        pool = createPool( 5, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        PreparedStatement stmt = conn.prepareStatement( "SELECT 1 FROM DUAL" );
+        PreparedStatement stmt2 = conn.prepareStatement( "SELECT 1 FROM DUAL" );
+        assertTrue( stmt.executeQuery().next() );
+        assertTrue( stmt2.executeQuery().next() );
+        stmt.close();
+        stmt2.close();
+        conn.prepareStatement( "SELECT 1 FROM DUAL" ).close();
+        conn.close();
+        assertEquals( 1, pool.getStatementCacheHitCount() );
+        assertEquals( 2, pool.getStatementCacheMissCount() );
+    }
+
+    @Test
+    public void testHousekeepingStartsOnStart()
+                            throws Exception {
+        PoolSettings settings = new PoolSettings( 1, 5, 1000, 0, 0, 60000, 0, 0 );
+        pool = new ConcurrentConnectionPool( "unstarted", URL, "sa", "", false, settings );
+        Thread.sleep( 100 );
+        assertEquals( 0, pool.getTotalConnections() );
+        assertFalse( isThreadAlive( "jdbc-pool-unstarted" ) );
+
+        pool.start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while ( pool.getIdleConnections() < 1 && System.currentTimeMillis() < deadline ) {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, pool.getIdleConnections() );
+        assertTrue( isThreadAlive( "jdbc-pool-unstarted" ) );
+    }
+
+    private static boolean isThreadAlive( String name ) {
+        for ( Thread t : Thread.getAllStackTraces().keySet() ) {
+            if ( name.equals( t.getName() ) && t.isAlive() ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testIdleEviction()
+                            throws Exception {
+        PoolSettings settings = new PoolSettings( 0, 5, 1000, 1, 0, 60000, 0, 0 );
+        pool = new ConcurrentConnectionPool( "test", URL, "sa", "", false, settings );
+        pool.getConnection().close();
+        Thread.sleep( 10 );
+        pool.housekeep();
+        assertEquals( 0, pool.getTotalConnections() );
+        assertEquals( 1, pool.getClosedCount() );
+    }
+
+    @Test
+    public void testLeakDetection()
+                            throws Exception {
+        pool = createPool( 5, 1000, 0, 1 );
+        Connection conn = pool.getConnection();
+        Thread.sleep( 10 );
+        pool.housekeep();
+        pool.housekeep();
+        assertEquals( 1, pool.getLeakCount() );
+        conn.close();
+    }
+
+    @Test
+    public void testInvalidate()
+                            throws SQLException {
+        pool = createPool( 5, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        PoolEntry first = entry( conn );
+        pool.invalidate( conn );
+        assertTrue( conn.isClosed() );
+        assertEquals( 0, pool.getTotalConnections() );
+        conn.close();
+        conn = pool.getConnection();
+        assertNotSame( first, entry( conn ) );
+        conn.close();
+    }
+
+    @Test
+    public void testInvalidatePhysicalConnection()
+                            throws SQLException {
+        pool = createPool( 5, 1000, 0, 0 );
+        Connection conn = pool.getConnection();
+        Statement stmt = conn.createStatement();
+        pool.invalidate( stmt.getConnection() );
+        conn.close();
+        assertEquals( 0, pool.getTotalConnections() );
+    }
+
+    @Test
+    public void testConcurrentBorrowing()
+                            throws Exception {
+        final int maxActive = 4;
+        pool = createPool( maxActive, 10000, 0, 0 );
+        final AtomicInteger maxInUse = new AtomicInteger();
+        final AtomicInteger inUse = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool( 16 );
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for ( int i = 0; i < 16; i++ ) {
+            futures.add( executor.submit( new Callable<Void>() {
+                @Override
+                public Void call()
+                                        throws Exception {
+                    for ( int j = 0; j < 500; j++ ) {
+                        Connection conn = pool.getConnection();
+                        int current = inUse.incrementAndGet();
+                        int max = maxInUse.get();
+                        while ( current > max && !maxInUse.compareAndSet( max, current ) ) {
+                            max = maxInUse.get();
+                        }
+                        assertFalse( conn.isClosed() );
+                        inUse.decrementAndGet();
+                        conn.close();
+                    }
+                    return null;
+                }
+            } ) );
+        }
+        for ( Future<Void> future : futures ) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue( maxInUse.get() <= maxActive );
+        assertTrue( pool.getTotalConnections() <= maxActive );
+        assertEquals( 16 * 500, pool.getBorrowCount() );
+        assertEquals( 0, pool.getActiveConnections() );
+        assertEquals( 0, pool.getTimeoutCount() );
+    }
+
+}
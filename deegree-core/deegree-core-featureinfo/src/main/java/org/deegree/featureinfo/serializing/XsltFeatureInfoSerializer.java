@@ -3,17 +3,16 @@ package org.deegree.featureinfo.serializing;
 import static org.deegree.gml.GMLOutputFactory.createGMLStreamWriter;
 import static org.slf4j.LoggerFactory.getLogger;
 
-import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
-import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamWriter;
+import javax.xml.transform.sax.TransformerHandler;
 
 import org.deegree.commons.xml.XsltUtils;
-import org.deegree.commons.xml.stax.IndentingXMLStreamWriter;
+import org.deegree.commons.xml.stax.ContentHandlerXMLStreamWriter;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.gml.GMLStreamWriter;
@@ -41,12 +40,11 @@ public class XsltFeatureInfoSerializer implements FeatureInfoSerializer {
     public void serialize( Map<String, String> nsBindings, FeatureCollection col, OutputStream outputStream ) {
         ClassLoader loader = Thread.currentThread().getContextClassLoader();
         Thread.currentThread().setContextClassLoader( workspace.getModuleClassLoader() );
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
-            XMLStreamWriter out = XMLOutputFactory.newInstance().createXMLStreamWriter( bos );
-            if ( LOG.isDebugEnabled() ) {
-                out = new IndentingXMLStreamWriter( out );
-            }
+            // GML is passed to the XSLT processor as SAX events while it is written
+            TransformerHandler handler = XsltUtils.createTransformerHandler( this.xslt, outputStream );
+            XMLStreamWriter out = new ContentHandlerXMLStreamWriter( handler );
+            out.writeStartDocument();
             GMLStreamWriter writer = createGMLStreamWriter( gmlVersion, out );
             if ( nsBindings == null ) {
                 nsBindings = new HashMap<String, String>();
@@ -56,13 +54,8 @@ public class XsltFeatureInfoSerializer implements FeatureInfoSerializer {
             }
             writer.setNamespaceBindings( nsBindings );
             writer.write( col );
+            out.writeEndDocument();
             writer.close();
-            bos.flush();
-            bos.close();
-            if ( LOG.isDebugEnabled() ) {
-                LOG.debug( "GML before XSLT:\n{}", new String( bos.toByteArray(), "UTF-8" ) );
-            }
-            XsltUtils.transform( bos.toByteArray(), this.xslt, outputStream );
         } catch ( Throwable e ) {
             LOG.warn( "Unable to transform GML for feature info: {}.", e.getLocalizedMessage() );
             LOG.trace( "Stack trace:", e );
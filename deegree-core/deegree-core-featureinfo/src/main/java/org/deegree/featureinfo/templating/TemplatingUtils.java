@@ -44,6 +44,8 @@ package org.deegree.featureinfo.templating;
 import static java.util.Collections.singletonList;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -51,10 +53,16 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.antlr.runtime.ANTLRInputStream;
 import org.antlr.runtime.CharStream;
 import org.antlr.runtime.CommonTokenStream;
+import org.antlr.runtime.RecognitionException;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.featureinfo.FeatureInfoManager;
 import org.deegree.featureinfo.templating.lang.PropertyTemplateCall;
@@ -62,6 +70,10 @@ import org.slf4j.Logger;
 
 /**
  * Utility method to run a template against a feature collection.
+ * <p>
+ * Parsed template definitions are cached and shared between requests. A cached template file is parsed again if its
+ * modification date changes.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: stranger $
@@ -72,37 +84,87 @@ public class TemplatingUtils {
 
     private static final Logger LOG = getLogger( TemplatingUtils.class );
 
+    private static final ConcurrentMap<String, CachedDefinitions> CACHE = new ConcurrentHashMap<String, CachedDefinitions>();
+
+    private static volatile HashMap<String, Object> internalDefs;
+
     public static void runTemplate( OutputStream response, String fiFile, FeatureCollection col, boolean geometries )
                             throws IOException {
-        PrintWriter out = new PrintWriter( new OutputStreamWriter( response, "UTF-8" ) );
+        PrintWriter out = new PrintWriter( new BufferedWriter( new OutputStreamWriter( response, "UTF-8" ) ) );
 
         try {
-            InputStream in;
+            HashMap<String, Object> defs = getDefinitions( fiFile );
+            Map<Object, Set<Object>> visited = new IdentityHashMap<Object, Set<Object>>();
+            new PropertyTemplateCall( "start", singletonList( "*" ), false ).eval( out, defs, col, geometries, visited );
+            out.println();
+        } catch ( Throwable e ) {
             if ( fiFile == null ) {
-                in = FeatureInfoManager.class.getResourceAsStream( "html.gfi" );
+                LOG.error( "Could not load internal template for GFI response." );
             } else {
-                in = new FileInputStream( fiFile );
+                LOG.error( "Could not load template '{}' for GFI response.", fiFile );
+            }
+            LOG.trace( "Stack trace:", e );
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns the parsed definitions of the specified template file.
+     * 
+     * @param fiFile
+     *            template file, can be <code>null</code> (use internal default template)
+     * @return template definitions, never <code>null</code>, must not be modified
+     * @throws IOException
+     *             if the template file could not be read
+     * @throws RecognitionException
+     *             if the template file could not be parsed
+     */
+    public static HashMap<String, Object> getDefinitions( String fiFile )
+                            throws IOException, RecognitionException {
+        if ( fiFile == null ) {
+            HashMap<String, Object> defs = internalDefs;
+            if ( defs == null ) {
+                defs = parse( FeatureInfoManager.class.getResourceAsStream( "html.gfi" ) );
+                internalDefs = defs;
             }
+            return defs;
+        }
+
+        long lastModified = new File( fiFile ).lastModified();
+        CachedDefinitions cached = CACHE.get( fiFile );
+        if ( cached == null || cached.lastModified != lastModified ) {
+            LOG.debug( "Parsing template '{}'.", fiFile );
+            cached = new CachedDefinitions( lastModified, parse( new FileInputStream( fiFile ) ) );
+            CACHE.put( fiFile, cached );
+        }
+        return cached.defs;
+    }
 
+    @SuppressWarnings("unchecked")
+    private static HashMap<String, Object> parse( InputStream in )
+                            throws IOException, RecognitionException {
+        try {
             CharStream input = new ANTLRInputStream( in );
             Templating2Lexer lexer = new Templating2Lexer( input );
             CommonTokenStream cts = new CommonTokenStream( lexer );
             cts.fill();
             Templating2Parser parser = new Templating2Parser( cts );
-            HashMap<String, Object> defs = (HashMap) parser.definitions();
-
-            StringBuilder sb = new StringBuilder();
-            new PropertyTemplateCall( "start", singletonList( "*" ), false ).eval( sb, defs, col, geometries );
-            out.println( sb.toString() );
-        } catch ( Throwable e ) {
-            if ( fiFile == null ) {
-                LOG.error( "Could not load internal template for GFI response." );
-            } else {
-                LOG.error( "Could not load template '{}' for GFI response.", fiFile );
-            }
-            LOG.trace( "Stack trace:", e );
+            return (HashMap) parser.definitions();
         } finally {
-            out.close();
+            in.close();
+        }
+    }
+
+    private static class CachedDefinitions {
+
+        private final long lastModified;
+
+        private final HashMap<String, Object> defs;
+
+        private CachedDefinitions( long lastModified, HashMap<String, Object> defs ) {
+            this.lastModified = lastModified;
+            this.defs = defs;
         }
     }
 
@@ -37,11 +37,14 @@ package org.deegree.featureinfo.templating.lang;
 
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 import static org.deegree.featureinfo.templating.lang.Util.getMatchingObjects;
+import static org.deegree.featureinfo.templating.lang.Util.visit;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.PrintWriter;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
@@ -63,8 +66,6 @@ public class FeatureTemplateCall {
 
     private List<String> patterns;
 
-    private HashSet<Object> visited = new HashSet<Object>();
-
     private boolean negate;
 
     /**
@@ -78,54 +79,56 @@ public class FeatureTemplateCall {
         this.negate = negate;
     }
 
-    private void eval( StringBuilder sb, HashMap<String, Object> defs, Feature f, TemplateDefinition t,
-                       List<Feature> list, boolean geometries ) {
-        if ( visited.contains( f ) ) {
+    private void eval( PrintWriter out, HashMap<String, Object> defs, Feature f, TemplateDefinition t,
+                       List<Feature> list, boolean geometries, Map<Object, Set<Object>> visited ) {
+        if ( !visit( visited, this, f ) ) {
             // TODO add link?
             return;
         }
-        visited.add( f );
         for ( Object o : t.body ) {
             if ( o instanceof String ) {
-                sb.append( o );
+                out.print( o );
             }
             if ( o instanceof MapCall ) {
-                ( (MapCall) o ).eval( sb, defs, f );
+                ( (MapCall) o ).eval( out, defs, f );
             }
             if ( o instanceof FeatureTemplateCall ) {
-                ( (FeatureTemplateCall) o ).eval( sb, defs, f, geometries );
+                ( (FeatureTemplateCall) o ).eval( out, defs, f, geometries, visited );
             }
             if ( o instanceof PropertyTemplateCall ) {
-                ( (PropertyTemplateCall) o ).eval( sb, defs, f, geometries );
+                ( (PropertyTemplateCall) o ).eval( out, defs, f, geometries, visited );
             }
             if ( o instanceof Name ) {
-                ( (Name) o ).eval( sb, f );
+                ( (Name) o ).eval( out, f );
             }
             if ( o instanceof Value ) {
-                ( (Value) o ).eval( sb, f );
+                ( (Value) o ).eval( out, f );
             }
             if ( o instanceof Link ) {
-                ( (Link) o ).eval( sb, f );
+                ( (Link) o ).eval( out, f );
             }
             if ( o instanceof Index ) {
-                ( (Index) o ).eval( sb, f, list );
+                ( (Index) o ).eval( out, f, list );
             }
             if ( o instanceof OddEven ) {
-                ( (OddEven) o ).eval( sb, defs, f, 1 + list.indexOf( f ), geometries );
+                ( (OddEven) o ).eval( out, defs, f, 1 + list.indexOf( f ), geometries, visited );
             }
             if ( o instanceof GMLId ) {
-                ( (GMLId) o ).eval( sb, f, null );
+                ( (GMLId) o ).eval( out, f, null );
             }
         }
     }
 
     /**
-     * @param sb
+     * @param out
      * @param defs
      * @param obj
      * @param geometries
+     * @param visited
+     *            objects that have already been processed by the template calls during the current evaluation
      */
-    public void eval( StringBuilder sb, HashMap<String, Object> defs, Object obj, boolean geometries ) {
+    public void eval( PrintWriter out, HashMap<String, Object> defs, Object obj, boolean geometries,
+                      Map<Object, Set<Object>> visited ) {
         if ( obj instanceof Feature ) {
             LOG.debug( "Feature template call '{}' with featureid '{}'", name, ( (Feature) obj ).getId() );
         } else {
@@ -144,14 +147,14 @@ public class FeatureTemplateCall {
             List<Feature> list = getMatchingObjects( ( (FeatureCollection) obj ).toArray( fs ), patterns, negate,
                                                      geometries );
             for ( Feature feat : list ) {
-                eval( sb, defs, feat, t, list, geometries );
+                eval( out, defs, feat, t, list, geometries, visited );
             }
             return;
         }
         if ( obj instanceof Feature ) {
             List<Feature> feats = getMatchingObjects( new Feature[] { (Feature) obj }, patterns, negate, geometries );
             for ( Feature f : feats ) {
-                eval( sb, defs, f, t, feats, geometries );
+                eval( out, defs, f, t, feats, geometries, visited );
             }
         }
     }
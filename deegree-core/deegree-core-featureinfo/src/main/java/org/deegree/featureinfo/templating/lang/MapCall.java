@@ -38,6 +38,7 @@ package org.deegree.featureinfo.templating.lang;
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 import static org.slf4j.LoggerFactory.getLogger;
 
+import java.io.PrintWriter;
 import java.util.HashMap;
 
 import org.deegree.commons.tom.gml.property.Property;
@@ -70,11 +71,11 @@ public class MapCall {
     }
 
     /**
-     * @param sb
+     * @param out
      * @param defs
      * @param o
      */
-    public void eval( StringBuilder sb, HashMap<String, Object> defs, Object o ) {
+    public void eval( PrintWriter out, HashMap<String, Object> defs, Object o ) {
         Object def = defs.get( name );
         if ( def == null ) {
             LOG.warn( "No map template definition with name '{}'.", name );
@@ -117,10 +118,10 @@ public class MapCall {
 
         if ( !md.map.containsKey( key ) ) {
             LOG.warn( "Map template definition with name '{}' does not contain key '{}'.", name, key );
-            sb.append( key );
+            out.print( key );
             return;
         }
-        sb.append( md.map.get( key ) );
+        out.print( md.map.get( key ) );
     }
 
     /**
@@ -38,7 +38,10 @@ package org.deegree.featureinfo.templating.lang;
 import static java.util.Collections.singletonList;
 import static org.deegree.commons.utils.JavaUtils.generateToString;
 
+import java.io.PrintWriter;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.feature.Feature;
@@ -67,22 +70,24 @@ public class OddEven {
     }
 
     /**
-     * @param sb
+     * @param out
      * @param defs
      * @param obj
      * @param idx
      * @param geometries
+     * @param visited
      */
-    public void eval( StringBuilder sb, HashMap<String, Object> defs, Object obj, int idx, boolean geometries ) {
+    public void eval( PrintWriter out, HashMap<String, Object> defs, Object obj, int idx, boolean geometries,
+                      Map<Object, Set<Object>> visited ) {
         if ( idx % 2 == 0 ^ odd ) {
             return;
         }
 
         if ( obj instanceof Feature ) {
-            new FeatureTemplateCall( name, singletonList( "*" ), false ).eval( sb, defs, obj, geometries );
+            new FeatureTemplateCall( name, singletonList( "*" ), false ).eval( out, defs, obj, geometries, visited );
         }
         if ( obj instanceof Property ) {
-            new PropertyTemplateCall( name, singletonList( "*" ), false ).eval( sb, defs, obj, geometries );
+            new PropertyTemplateCall( name, singletonList( "*" ), false ).eval( out, defs, obj, geometries, visited );
         }
     }
 
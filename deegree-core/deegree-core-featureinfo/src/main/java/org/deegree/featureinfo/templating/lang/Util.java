@@ -38,8 +38,11 @@ package org.deegree.featureinfo.templating.lang;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.tom.gml.property.PropertyType;
@@ -58,6 +61,26 @@ import org.deegree.geometry.Geometry;
  */
 public class Util {
 
+    /**
+     * Marks an object as processed by a template call.
+     * 
+     * @param visited
+     *            objects processed per template call during the current evaluation, must not be <code>null</code>
+     * @param call
+     *            template call, must not be <code>null</code>
+     * @param o
+     *            object to be processed by the call
+     * @return <code>true</code>, if the object has not been processed by the call before, <code>false</code> otherwise
+     */
+    static boolean visit( Map<Object, Set<Object>> visited, Object call, Object o ) {
+        Set<Object> objects = visited.get( call );
+        if ( objects == null ) {
+            objects = new HashSet<Object>();
+            visited.put( call, objects );
+        }
+        return objects.add( o );
+    }
+
     static <T> List<T> getMatchingObjects( T[] os, List<String> patterns, boolean negate, boolean geometries ) {
         if ( !negate && patterns.contains( "*" ) ) {
             return asList( os );
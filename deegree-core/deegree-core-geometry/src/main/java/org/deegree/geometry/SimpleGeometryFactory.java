@@ -58,6 +58,7 @@ import org.deegree.geometry.standard.multi.DefaultMultiGeometry;
 import org.deegree.geometry.standard.multi.DefaultMultiLineString;
 import org.deegree.geometry.standard.multi.DefaultMultiPoint;
 import org.deegree.geometry.standard.multi.DefaultMultiPolygon;
+import org.deegree.geometry.standard.points.PackedPoints;
 import org.deegree.geometry.standard.points.PointsList;
 import org.deegree.geometry.standard.primitive.DefaultLineString;
 import org.deegree.geometry.standard.primitive.DefaultPoint;
@@ -177,6 +178,21 @@ public class SimpleGeometryFactory {
         return inspect( new PointsList( points ) );
     }
 
+    /**
+     * Creates a {@link Points} object from the given coordinate array.
+     * 
+     * @param crs
+     *            coordinate reference system, may be null
+     * @param coordinates
+     *            coordinate values of all points (x0, y0, ..., x1, y1, ...), must not be <code>null</code>
+     * @param coordinateDimension
+     *            number of values per point, must be positive
+     * @return created {@link Points}
+     */
+    public Points createPoints( ICRS crs, double[] coordinates, int coordinateDimension ) {
+        return inspect( new PackedPoints( crs, coordinates, coordinateDimension ) );
+    }
+
     /**
      * Creates a {@link Polygon} surface.
      * 
@@ -71,37 +71,37 @@ public class DCRecord implements MetadataRecord {
 
     public static final String SCHEMA_URL = "http://schemas.opengis.net/csw/2.0.2/record.xsd";
 
-    private final QName root;
+    private QName root;
 
-    private final String[] titles;
+    private String[] titles;
 
-    private final String identifier;
+    private String identifier;
 
-    private final String[] _abstract;
+    private String[] _abstract;
 
-    private final Envelope[] boundingBox;
+    private Envelope[] boundingBox;
 
-    private final String[] formats;
+    private String[] formats;
 
-    private final Date modified;
+    private Date modified;
 
-    private final String[] relations;
+    private String[] relations;
 
-    private final String[] subject;
+    private String[] subject;
 
-    private final String type;
+    private String type;
 
-    private final String[] rights;
+    private String[] rights;
 
-    private final String creator;
+    private String creator;
 
-    private final String contributor;
+    private String contributor;
 
-    private final String publisher;
+    private String publisher;
 
-    private final String language;
+    private String language;
 
-    private final String source;
+    private String source;
 
     // uri, localname, prefix
     private static final QName ows = new QName( OWS_NS, "", "ows" );
@@ -112,6 +112,13 @@ public class DCRecord implements MetadataRecord {
 
     private static final QName dct = new QName( DCT_NS, "", DCT_PREFIX );
 
+    /**
+     * Creates a new {@link DCRecord} instance without properties. Subclasses must override the property accessors.
+     */
+    protected DCRecord() {
+        // nothing to do
+    }
+
     public DCRecord( MetadataRecord record ) {
         this.titles = record.getTitle();
         this.identifier = record.getIdentifier();
@@ -37,6 +37,7 @@ package org.deegree.metadata.iso;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -45,6 +46,7 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -52,6 +54,7 @@ import javax.xml.stream.XMLStreamWriter;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMNode;
 import org.apache.axiom.om.xpath.AXIOMXPath;
+import org.apache.commons.io.IOUtils;
 import org.deegree.commons.tom.datetime.Date;
 import org.deegree.commons.xml.CommonNamespaces;
 import org.deegree.commons.xml.NamespaceBindings;
@@ -112,6 +115,10 @@ public class ISORecord implements MetadataRecord {
 
     private OMElement root;
 
+    private byte[] encodedRecord;
+
+    private volatile ISORecordRepresentations representations;
+
     private ParsedProfileElement pElem;
 
     private static final NamespaceBindings ns = CommonNamespaces.getNamespaceContext();
@@ -246,16 +253,50 @@ public class ISORecord implements MetadataRecord {
         this( root.getXMLStreamReader() );
     }
 
+    /**
+     * Creates a new {@link ISORecord} instance from the given encoded record and pre-serialized representations.
+     * <p>
+     * The record is only parsed when its contents are accessed. Serializing the record using one of the given
+     * representations (or the full ISO representation) does not require parsing.
+     * </p>
+     * 
+     * @param encodedRecord
+     *            encoded XML of the record (full ISO representation), must not be <code>null</code>
+     * @param representations
+     *            pre-serialized representations of the record, can be <code>null</code>
+     */
+    public ISORecord( byte[] encodedRecord, ISORecordRepresentations representations ) {
+        this.encodedRecord = encodedRecord;
+        this.representations = representations;
+    }
+
+    private synchronized OMElement getRoot() {
+        if ( root == null ) {
+            try {
+                InputStream is = ISORecordRepresentations.decode( encodedRecord );
+                XMLStreamReader xmlStream = XMLInputFactory.newInstance().createXMLStreamReader( is );
+                root = new XMLAdapter( xmlStream ).getRootElement();
+            } catch ( Exception e ) {
+                String msg = "Error re-creating ISORecord from encoded XML: " + e.getMessage();
+                LOG.debug( msg, e );
+                throw new IllegalArgumentException( msg, e );
+            }
+            root.declareDefaultNamespace( "http://www.isotc211.org/2005/gmd" );
+            encodedRecord = null;
+        }
+        return root;
+    }
+
     private synchronized ParsedProfileElement getParsedProfileElement() {
         if ( pElem == null ) {
-            pElem = new RecordPropertyParser( root ).parse();
+            pElem = new RecordPropertyParser( getRoot() ).parse();
         }
         return pElem;
     }
 
     @Override
     public QName getName() {
-        return root.getQName();
+        return getRoot().getQName();
     }
 
     @Override
@@ -398,6 +439,7 @@ public class ISORecord implements MetadataRecord {
      */
     public XMLStreamReader getAsXMLStream()
                             throws XMLStreamException {
+        OMElement root = getRoot();
         root.declareDefaultNamespace( "http://www.isotc211.org/2005/gmd" );
         XMLStreamReader xmlStream = root.getXMLStreamReader();
         XMLStreamUtils.skipStartDocument( xmlStream );
@@ -406,11 +448,32 @@ public class ISORecord implements MetadataRecord {
 
     @Override
     public OMElement getAsOMElement() {
-        return root;
+        // the tree may be modified by the caller
+        representations = null;
+        return getRoot();
+    }
+
+    /**
+     * Returns the pre-serialized representations of this record.
+     * 
+     * @return pre-serialized representations, can be <code>null</code> (not available)
+     */
+    public ISORecordRepresentations getRepresentations() {
+        return representations;
     }
 
     public byte[] getAsByteArray()
                             throws FactoryConfigurationError {
+        synchronized ( this ) {
+            if ( root == null ) {
+                try {
+                    return IOUtils.toByteArray( ISORecordRepresentations.decode( encodedRecord ) );
+                } catch ( IOException e ) {
+                    LOG.debug( "Unable to decode record, re-serializing it: " + e.getMessage() );
+                }
+            }
+        }
+        OMElement root = getRoot();
         root.declareDefaultNamespace( "http://www.isotc211.org/2005/gmd" );
         try {
             ByteArrayOutputStream out = new ByteArrayOutputStream( 20000 );
@@ -428,6 +491,32 @@ public class ISORecord implements MetadataRecord {
     @Override
     public void serialize( XMLStreamWriter writer, ReturnableElement returnType )
                             throws XMLStreamException {
+        ISORecordRepresentations representations = this.representations;
+        byte[] encoded = representations != null ? representations.getIso( returnType ) : null;
+        if ( encoded == null && returnType == ReturnableElement.full ) {
+            synchronized ( this ) {
+                encoded = encodedRecord;
+            }
+        }
+        if ( encoded != null ) {
+            ISORecordRepresentations.write( encoded, writer );
+        } else {
+            serializeFromTree( writer, returnType );
+        }
+    }
+
+    /**
+     * Serializes the given element set of this record from the parsed XML tree (ignoring pre-serialized
+     * representations).
+     * 
+     * @param writer
+     *            writer to write to, must not be <code>null</code>
+     * @param returnType
+     *            element set, must not be <code>null</code>
+     * @throws XMLStreamException
+     */
+    void serializeFromTree( XMLStreamWriter writer, ReturnableElement returnType )
+                            throws XMLStreamException {
         switch ( returnType ) {
         case brief:
             toISOBrief( writer );
@@ -436,7 +525,7 @@ public class ISORecord implements MetadataRecord {
             toISOSummary( writer );
             break;
         case full:
-            root.serialize( writer );
+            getRoot().serialize( writer );
             break;
         default:
             toISOSummary( writer );
@@ -455,11 +544,15 @@ public class ISORecord implements MetadataRecord {
         if ( !xpathEN.isEmpty() ) {
             writer = new FilteringXMLStreamWriter( writer, xpathEN );
         }
-        root.serialize( writer );
+        getRoot().serialize( writer );
     }
 
     @Override
     public DCRecord toDublinCore() {
+        ISORecordRepresentations representations = this.representations;
+        if ( representations != null && representations.hasDc() ) {
+            return new SerializedDCRecord( this, representations );
+        }
         return new DCRecord( this );
 
     }
@@ -519,27 +612,27 @@ public class ISORecord implements MetadataRecord {
     }
 
     public String getStringFromXPath( XPath xpath ) {
-        return new XMLAdapter().getNodeAsString( root, xpath, null );
+        return new XMLAdapter().getNodeAsString( getRoot(), xpath, null );
     }
 
     public OMElement getNodeFromXPath( XPath xpath ) {
-        return new XMLAdapter().getElement( root, xpath );
+        return new XMLAdapter().getElement( getRoot(), xpath );
     }
 
     public String[] getStringsFromXPath( XPath xpath ) {
-        return new XMLAdapter().getNodesAsStrings( root, xpath );
+        return new XMLAdapter().getNodesAsStrings( getRoot(), xpath );
     }
 
     private void toISOSummary( XMLStreamWriter writer )
                             throws XMLStreamException {
         writer = new FilteringXMLStreamWriter( writer, summaryFilterElementsXPath );
-        root.serialize( writer );
+        getRoot().serialize( writer );
     }
 
     private void toISOBrief( XMLStreamWriter writer )
                             throws XMLStreamException {
         writer = new FilteringXMLStreamWriter( writer, briefFilterElementsXPath );
-        root.serialize( writer );
+        getRoot().serialize( writer );
     }
 
     @Override
@@ -548,7 +641,7 @@ public class ISORecord implements MetadataRecord {
         Object node;
         try {
             path = getAsXPath( propName );
-            node = path.selectSingleNode( root );
+            node = path.selectSingleNode( getRoot() );
         } catch ( JaxenException e ) {
             String msg = "Could not propName as xPath and locate in in the record: " + propName;
             LOG.debug( msg, e );
@@ -565,6 +658,7 @@ public class ISORecord implements MetadataRecord {
         }
         OMElement el = (OMElement) node;
         el.setText( s );
+        representations = null;
     }
 
     @Override
@@ -573,7 +667,7 @@ public class ISORecord implements MetadataRecord {
         Object rootNode;
         try {
             path = getAsXPath( propName );
-            rootNode = path.selectSingleNode( root );
+            rootNode = path.selectSingleNode( getRoot() );
         } catch ( JaxenException e ) {
             String msg = "Could not propName as xPath and locate in in the record: " + propName;
             LOG.debug( msg, e );
@@ -607,6 +701,7 @@ public class ISORecord implements MetadataRecord {
             om.detach();
         }
         prevSib.insertSiblingAfter( newEl );
+        representations = null;
     }
 
     @Override
@@ -615,7 +710,7 @@ public class ISORecord implements MetadataRecord {
         Object rootNode;
         try {
             path = getAsXPath( propName );
-            rootNode = path.selectSingleNode( root );
+            rootNode = path.selectSingleNode( getRoot() );
         } catch ( JaxenException e ) {
             String msg = "Could not propName as xPath and locate in in the record: " + propName;
             LOG.debug( msg, e );
@@ -632,6 +727,7 @@ public class ISORecord implements MetadataRecord {
         }
         OMElement rootEl = (OMElement) rootNode;
         rootEl.detach();
+        representations = null;
     }
 
     private AXIOMXPath getAsXPath( ValueReference propName )
@@ -94,6 +94,8 @@ public class ISORecordEvaluator implements XPathEvaluator<ISORecord> {
 
     private static final List<QName> QP_LANGUAGE = new ArrayList<QName>();
 
+    private static final List<List<QName>> QP_ALIASES = new ArrayList<List<QName>>();
+
     private static final QName QP_REVISION = new QName( APISO_NS, "RevisionDate" );
 
     private static final QName QP_CREATION = new QName( APISO_NS, "CreationDate" );
@@ -227,6 +229,42 @@ public class ISORecordEvaluator implements XPathEvaluator<ISORecord> {
 
         QP_LANGUAGE.add( new QName( APISO_NS, "Language" ) );
         QP_LANGUAGE.add( new QName( APISO_NS, "language" ) );
+
+        QP_ALIASES.add( QP_TITLE );
+        QP_ALIASES.add( QP_ABSTRACT );
+        QP_ALIASES.add( QP_BBOX );
+        QP_ALIASES.add( QP_TYPE );
+        QP_ALIASES.add( QP_FORMAT );
+        QP_ALIASES.add( QP_SUBJECT );
+        QP_ALIASES.add( QP_ANYTEXT );
+        QP_ALIASES.add( QP_IDENTIFIER );
+        QP_ALIASES.add( QP_MODIFIED );
+        QP_ALIASES.add( QP_CRS );
+        QP_ALIASES.add( QP_LANGUAGE );
+    }
+
+    /**
+     * Determines the queryable property that is referenced by the given {@link ValueReference}.
+     * 
+     * @param valueRef
+     *            value reference, must not be <code>null</code>
+     * @return canonical name of the queryable property (in the APISO namespace, e.g. <code>apiso:Title</code> for
+     *         <code>dc:Title</code>), <code>null</code> if the reference does not denote a queryable property
+     */
+    public static QName getQueryableName( ValueReference valueRef ) {
+        QName name = valueRef.getAsQName();
+        if ( name == null ) {
+            return null;
+        }
+        for ( List<QName> aliases : QP_ALIASES ) {
+            if ( aliases.contains( name ) ) {
+                return aliases.get( 0 );
+            }
+        }
+        if ( APISO_NS.equals( name.getNamespaceURI() ) ) {
+            return name;
+        }
+        return null;
     }
 
     @Override
@@ -0,0 +1,301 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.metadata.iso;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.deegree.commons.xml.stax.XMLStreamUtils;
+import org.deegree.metadata.DCRecord;
+import org.deegree.protocol.csw.CSWConstants.ReturnableElement;
+
+/**
+ * Pre-serialized brief and summary (ISO and Dublin Core) and full (Dublin Core) representations of an
+ * {@link ISORecord}.
+ * <p>
+ * The representations are created once (e.g. when a record is inserted into a metadata store) and can be streamed to
+ * an {@link XMLStreamWriter} later on without building an object model of the record. Each representation is kept as
+ * UTF-8 encoded XML, optionally GZIP-compressed. Compressed representations are detected automatically when decoding.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ISORecordRepresentations {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    private final byte[] isoBrief;
+
+    private final byte[] isoSummary;
+
+    private final byte[] dcBrief;
+
+    private final byte[] dcSummary;
+
+    private final byte[] dcFull;
+
+    /**
+     * Creates a new {@link ISORecordRepresentations} instance from encoded representations.
+     * 
+     * @param isoBrief
+     *            encoded ISO brief representation, can be <code>null</code> (not available)
+     * @param isoSummary
+     *            encoded ISO summary representation, can be <code>null</code> (not available)
+     * @param dcBrief
+     *            encoded Dublin Core brief representation, can be <code>null</code> (not available)
+     * @param dcSummary
+     *            encoded Dublin Core summary representation, can be <code>null</code> (not available)
+     * @param dcFull
+     *            encoded Dublin Core full representation, can be <code>null</code> (not available)
+     */
+    public ISORecordRepresentations( byte[] isoBrief, byte[] isoSummary, byte[] dcBrief, byte[] dcSummary,
+                                     byte[] dcFull ) {
+        this.isoBrief = isoBrief;
+        this.isoSummary = isoSummary;
+        this.dcBrief = dcBrief;
+        this.dcSummary = dcSummary;
+        this.dcFull = dcFull;
+    }
+
+    /**
+     * Serializes the representations of the given record.
+     * 
+     * @param record
+     *            record, must not be <code>null</code>
+     * @param compress
+     *            <code>true</code>, if the representations shall be GZIP-compressed, <code>false</code> otherwise
+     * @return representations of the record, never <code>null</code>
+     * @throws XMLStreamException
+     *             if the serialization fails
+     */
+    public static ISORecordRepresentations create( ISORecord record, boolean compress )
+                            throws XMLStreamException {
+        DCRecord dc = new DCRecord( record );
+        byte[] isoBrief = serialize( record, ReturnableElement.brief, compress );
+        byte[] isoSummary = serialize( record, ReturnableElement.summary, compress );
+        byte[] dcBrief = serialize( dc, ReturnableElement.brief, compress );
+        byte[] dcSummary = serialize( dc, ReturnableElement.summary, compress );
+        byte[] dcFull = serialize( dc, ReturnableElement.full, compress );
+        return new ISORecordRepresentations( isoBrief, isoSummary, dcBrief, dcSummary, dcFull );
+    }
+
+    /**
+     * @return encoded ISO brief representation, can be <code>null</code> (not available)
+     */
+    public byte[] getIsoBrief() {
+        return isoBrief;
+    }
+
+    /**
+     * @return encoded ISO summary representation, can be <code>null</code> (not available)
+     */
+    public byte[] getIsoSummary() {
+        return isoSummary;
+    }
+
+    /**
+     * @return encoded Dublin Core brief representation, can be <code>null</code> (not available)
+     */
+    public byte[] getDcBrief() {
+        return dcBrief;
+    }
+
+    /**
+     * @return encoded Dublin Core summary representation, can be <code>null</code> (not available)
+     */
+    public byte[] getDcSummary() {
+        return dcSummary;
+    }
+
+    /**
+     * @return encoded Dublin Core full representation, can be <code>null</code> (not available)
+     */
+    public byte[] getDcFull() {
+        return dcFull;
+    }
+
+    /**
+     * Returns the encoded ISO representation for the given element set.
+     * 
+     * @param returnType
+     *            element set, must not be <code>null</code>
+     * @return encoded representation, <code>null</code> if not available (the full ISO representation is never
+     *         contained)
+     */
+    byte[] getIso( ReturnableElement returnType ) {
+        switch ( returnType ) {
+        case brief:
+            return isoBrief;
+        case summary:
+            return isoSummary;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns the encoded Dublin Core representation for the given element set.
+     * 
+     * @param returnType
+     *            element set, must not be <code>null</code>
+     * @return encoded representation, <code>null</code> if not available
+     */
+    byte[] getDc( ReturnableElement returnType ) {
+        switch ( returnType ) {
+        case brief:
+            return dcBrief;
+        case summary:
+            return dcSummary;
+        case full:
+            return dcFull;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if all Dublin Core representations are available.
+     * 
+     * @return <code>true</code>, if all Dublin Core representations are available, <code>false</code> otherwise
+     */
+    boolean hasDc() {
+        return dcBrief != null && dcSummary != null && dcFull != null;
+    }
+
+    /**
+     * Copies the root element of the given encoded representation to the given {@link XMLStreamWriter}.
+     * 
+     * @param encoded
+     *            UTF-8 encoded XML (optionally GZIP-compressed), must not be <code>null</code>
+     * @param writer
+     *            writer to write to, must not be <code>null</code>
+     * @throws XMLStreamException
+     */
+    public static void write( byte[] encoded, XMLStreamWriter writer )
+                            throws XMLStreamException {
+        InputStream is;
+        try {
+            is = decode( encoded );
+        } catch ( IOException e ) {
+            throw new XMLStreamException( "Error decoding record representation: " + e.getMessage(), e );
+        }
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader( is );
+        try {
+            XMLStreamUtils.copy( writer, reader );
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Returns an {@link InputStream} for the XML contained in the given encoded representation.
+     * 
+     * @param encoded
+     *            UTF-8 encoded XML (optionally GZIP-compressed), must not be <code>null</code>
+     * @return stream of the (uncompressed) XML, never <code>null</code>
+     * @throws IOException
+     */
+    public static InputStream decode( byte[] encoded )
+                            throws IOException {
+        InputStream is = new ByteArrayInputStream( encoded );
+        if ( isCompressed( encoded ) ) {
+            return new BufferedInputStream( new GZIPInputStream( is ) );
+        }
+        return is;
+    }
+
+    /**
+     * Encodes the given XML bytes.
+     * 
+     * @param xml
+     *            UTF-8 encoded XML, must not be <code>null</code>
+     * @param compress
+     *            <code>true</code>, if the bytes shall be GZIP-compressed, <code>false</code> otherwise
+     * @return encoded bytes, never <code>null</code>
+     */
+    public static byte[] encode( byte[] xml, boolean compress ) {
+        if ( !compress ) {
+            return xml;
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( xml.length / 4 + 64 );
+        try {
+            GZIPOutputStream gzip = new GZIPOutputStream( bos );
+            gzip.write( xml );
+            gzip.close();
+        } catch ( IOException e ) {
+            // cannot happen for in-memory streams
+            throw new RuntimeException( e.getMessage(), e );
+        }
+        return bos.toByteArray();
+    }
+
+    private static boolean isCompressed( byte[] encoded ) {
+        return encoded.length > 1 && ( encoded[0] & 0xff ) == 0x1f && ( encoded[1] & 0xff ) == 0x8b;
+    }
+
+    private static byte[] serialize( ISORecord record, ReturnableElement returnType, boolean compress )
+                            throws XMLStreamException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( 4096 );
+        XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter( bos, "UTF-8" );
+        record.serializeFromTree( writer, returnType );
+        writer.close();
+        return encode( bos.toByteArray(), compress );
+    }
+
+    private static byte[] serialize( DCRecord record, ReturnableElement returnType, boolean compress )
+                            throws XMLStreamException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( 2048 );
+        XMLStreamWriter writer = XML_OUTPUT_FACTORY.createXMLStreamWriter( bos, "UTF-8" );
+        record.serialize( writer, returnType );
+        writer.close();
+        return encode( bos.toByteArray(), compress );
+    }
+}
@@ -0,0 +1,159 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.metadata.iso;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.deegree.commons.tom.datetime.Date;
+import org.deegree.geometry.Envelope;
+import org.deegree.metadata.DCRecord;
+import org.deegree.protocol.csw.CSWConstants.ReturnableElement;
+
+/**
+ * {@link DCRecord} view of an {@link ISORecord} that is serialized from pre-serialized representations.
+ * <p>
+ * Properties are retrieved from the ISO record on demand only, so serializing the record does not require parsing it.
+ * </p>
+ * 
+ * @see ISORecordRepresentations
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class SerializedDCRecord extends DCRecord {
+
+    private final ISORecord record;
+
+    private final ISORecordRepresentations representations;
+
+    SerializedDCRecord( ISORecord record, ISORecordRepresentations representations ) {
+        this.record = record;
+        this.representations = representations;
+    }
+
+    @Override
+    public void serialize( XMLStreamWriter writer, ReturnableElement returnType )
+                            throws XMLStreamException {
+        byte[] encoded = representations.getDc( returnType );
+        if ( encoded == null ) {
+            encoded = representations.getDc( ReturnableElement.brief );
+        }
+        ISORecordRepresentations.write( encoded, writer );
+    }
+
+    @Override
+    public QName getName() {
+        return record.getName();
+    }
+
+    @Override
+    public String[] getAbstract() {
+        return record.getAbstract();
+    }
+
+    @Override
+    public Envelope[] getBoundingBox() {
+        return record.getBoundingBox();
+    }
+
+    @Override
+    public String[] getFormat() {
+        return record.getFormat();
+    }
+
+    @Override
+    public String getIdentifier() {
+        return record.getIdentifier();
+    }
+
+    @Override
+    public Date getModified() {
+        return record.getModified();
+    }
+
+    @Override
+    public String[] getRelation() {
+        return record.getRelation();
+    }
+
+    @Override
+    public String[] getSubject() {
+        return record.getSubject();
+    }
+
+    @Override
+    public String[] getTitle() {
+        return record.getTitle();
+    }
+
+    @Override
+    public String getType() {
+        return record.getType();
+    }
+
+    @Override
+    public String getContributor() {
+        return record.getContributor();
+    }
+
+    @Override
+    public String getLanguage() {
+        return record.getLanguage();
+    }
+
+    @Override
+    public String getPublisher() {
+        return record.getPublisher();
+    }
+
+    @Override
+    public String[] getRights() {
+        return record.getRights();
+    }
+
+    @Override
+    public String getSource() {
+        return record.getSource();
+    }
+
+    @Override
+    public String getCreator() {
+        return record.getCreator();
+    }
+}
@@ -36,8 +36,11 @@
 package org.deegree.metadata.iso;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.net.URL;
@@ -68,6 +71,7 @@ import org.deegree.filter.expression.Literal;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.GeometryFactory;
+import org.deegree.protocol.csw.CSWConstants.ReturnableElement;
 import org.junit.Assert;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -140,6 +144,65 @@ public class ISORecordTest {
         assertEquals( "5E50884F-5549-2A7A-99E3-334234A887C81", record.getIdentifier() );
     }
 
+    @Test
+    public void testSerializeFromRepresentations()
+                            throws Exception {
+        InputStream is = ISORecordTest.class.getResourceAsStream( "datasetRecord.xml" );
+        XMLStreamReader xmlStream = XMLInputFactory.newInstance().createXMLStreamReader( is );
+        ISORecord record = new ISORecord( xmlStream );
+        ISORecordRepresentations representations = ISORecordRepresentations.create( record, true );
+        ISORecord serialized = new ISORecord( record.getAsByteArray(), representations );
+
+        for ( ReturnableElement returnType : ReturnableElement.values() ) {
+            assertEquals( serialize( record, returnType, false ), serialize( serialized, returnType, false ) );
+            assertEquals( serialize( record, returnType, true ), serialize( serialized, returnType, true ) );
+        }
+        assertEquals( "5E50884F-5549-2A7A-99E3-334234A887C81", serialized.getIdentifier() );
+    }
+
+    @Test
+    public void testRepresentationsDiscardedOnUpdate()
+                            throws Exception {
+        InputStream is = ISORecordTest.class.getResourceAsStream( "datasetRecord.xml" );
+        XMLStreamReader xmlStream = XMLInputFactory.newInstance().createXMLStreamReader( is );
+        ISORecord record = new ISORecord( xmlStream );
+        ISORecordRepresentations representations = ISORecordRepresentations.create( record, false );
+        ISORecord serialized = new ISORecord( record.getAsByteArray(), representations );
+
+        serialized.removeNode( new ValueReference( "/gmd:MD_Metadata/gmd:dateStamp", nsContext ) );
+        assertNull( serialized.getRepresentations() );
+        assertFalse( serialize( serialized, ReturnableElement.brief, false ).contains( "dateStamp" ) );
+    }
+
+    private String serialize( ISORecord record, ReturnableElement returnType, boolean dc )
+                            throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter( bos, "UTF-8" );
+        if ( dc ) {
+            record.toDublinCore().serialize( writer, returnType );
+        } else {
+            record.serialize( writer, returnType );
+        }
+        writer.close();
+        return getElementsAndText( bos.toByteArray() );
+    }
+
+    private String getElementsAndText( byte[] xml )
+                            throws XMLStreamException {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader( new ByteArrayInputStream( xml ) );
+        StringBuilder sb = new StringBuilder();
+        while ( reader.hasNext() ) {
+            int event = reader.next();
+            if ( event == XMLStreamReader.START_ELEMENT ) {
+                sb.append( '<' ).append( reader.getName() ).append( '>' );
+            } else if ( event == XMLStreamReader.CHARACTERS ) {
+                sb.append( reader.getText().trim() );
+            }
+        }
+        reader.close();
+        return sb.toString();
+    }
+
     @Test
     public void testInstantiationFromXMLStreamOfBrokenRecord()
                             throws XMLStreamException, FactoryConfigurationError {
@@ -0,0 +1,512 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.protocol.ows.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.deegree.commons.utils.io.StreamBufferStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link OwsHttpClient} that keeps successful responses in a size-bounded directory and revalidates them using HTTP
+ * validators.
+ * <p>
+ * Requests are identified by method, endpoint and (sorted) KVP parameters or request body respectively. Only responses
+ * that carry an <code>ETag</code> or <code>Last-Modified</code> header are stored. If a stored response exists, the
+ * request is sent as a conditional request (<code>If-None-Match</code>/<code>If-Modified-Since</code>) and a
+ * <code>304 Not Modified</code> answer is served from disk. New responses are written to disk while the caller
+ * consumes them, so streaming is not affected; they are only stored if they have been read completely.
+ * </p>
+ * <p>
+ * If the total size of the stored responses exceeds the configured limit, the least recently used ones are removed.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CachingOwsHttpClient implements OwsHttpClient {
+
+    private static final Logger LOG = LoggerFactory.getLogger( CachingOwsHttpClient.class );
+
+    private static final String BODY_SUFFIX = ".body";
+
+    private static final String META_SUFFIX = ".properties";
+
+    private static final String ETAG = "ETag";
+
+    private static final String LAST_MODIFIED = "Last-Modified";
+
+    private static final String CONTENT_TYPE = "Content-Type";
+
+    // number of bytes that are read on close to check if an unfinished response is complete
+    private static final int MAX_DRAIN = 64 * 1024;
+
+    private final OwsHttpClient delegate;
+
+    private final File dir;
+
+    private final long maxBytes;
+
+    /**
+     * Creates a new {@link CachingOwsHttpClient} instance.
+     * 
+     * @param delegate
+     *            client for performing the requests, must not be <code>null</code>
+     * @param dir
+     *            directory for storing responses, must not be <code>null</code>, is created if it does not exist
+     * @param maxBytes
+     *            maximum total size of the stored responses (in bytes)
+     * @throws IOException
+     *             if the directory cannot be created
+     */
+    public CachingOwsHttpClient( OwsHttpClient delegate, File dir, long maxBytes ) throws IOException {
+        this.delegate = delegate;
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        if ( !dir.isDirectory() && !dir.mkdirs() ) {
+            throw new IOException( "Unable to create response cache directory '" + dir + "'." );
+        }
+    }
+
+    @Override
+    public OwsHttpResponse doGet( final URL endPoint, final Map<String, String> params, Map<String, String> headers )
+                            throws IOException {
+        MessageDigest md = getDigest();
+        update( md, "GET" );
+        update( md, endPoint.toString() );
+        if ( params != null ) {
+            for ( Entry<String, String> param : new TreeMap<String, String>( params ).entrySet() ) {
+                update( md, param.getKey() );
+                update( md, param.getValue() );
+            }
+        }
+        return execute( toHex( md.digest() ), endPoint, headers, new Request() {
+            @Override
+            public OwsHttpResponse send( Map<String, String> headers )
+                                    throws IOException {
+                return delegate.doGet( endPoint, params, headers );
+            }
+        } );
+    }
+
+    @Override
+    public OwsHttpResponse doPost( final URL endPoint, final String contentType, final StreamBufferStore body,
+                                   Map<String, String> headers )
+                            throws IOException {
+        MessageDigest md = getDigest();
+        update( md, "POST" );
+        update( md, endPoint.toString() );
+        update( md, contentType );
+        InputStream is = body.getInputStream();
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ( ( read = is.read( buffer ) ) != -1 ) {
+                md.update( buffer, 0, read );
+            }
+        } finally {
+            is.close();
+        }
+        return execute( toHex( md.digest() ), endPoint, headers, new Request() {
+            @Override
+            public OwsHttpResponse send( Map<String, String> headers )
+                                    throws IOException {
+                return delegate.doPost( endPoint, contentType, body, headers );
+            }
+        } );
+    }
+
+    private OwsHttpResponse execute( String key, URL endPoint, Map<String, String> headers, Request request )
+                            throws IOException {
+        File bodyFile = new File( dir, key + BODY_SUFFIX );
+        File metaFile = new File( dir, key + META_SUFFIX );
+
+        Map<String, String> requestHeaders = new HashMap<String, String>();
+        if ( headers != null ) {
+            requestHeaders.putAll( headers );
+        }
+
+        // opened before sending the request, so a concurrent eviction does not matter
+        Properties meta = null;
+        InputStream cached = null;
+        synchronized ( this ) {
+            // metadata and body are read together, so they cannot belong to different stored responses
+            if ( metaFile.isFile() ) {
+                try {
+                    meta = load( metaFile );
+                    cached = new FileInputStream( bodyFile );
+                } catch ( IOException e ) {
+                    LOG.debug( "Ignoring cached response '{}': {}", key, e.getMessage() );
+                    meta = null;
+                }
+            }
+        }
+        if ( meta != null ) {
+            if ( meta.getProperty( ETAG ) != null ) {
+                requestHeaders.put( "If-None-Match", meta.getProperty( ETAG ) );
+            }
+            if ( meta.getProperty( LAST_MODIFIED ) != null ) {
+                requestHeaders.put( "If-Modified-Since", meta.getProperty( LAST_MODIFIED ) );
+            }
+        }
+
+        OwsHttpResponse response;
+        try {
+            response = request.send( requestHeaders );
+        } catch ( IOException e ) {
+            close( cached );
+            throw e;
+        }
+        HttpResponse httpResponse = response.getAsHttpResponse();
+        int status = httpResponse.getStatusLine().getStatusCode();
+
+        if ( status == 304 && cached != null ) {
+            response.close();
+            LOG.debug( "Response for '{}' has not been modified, using cached copy.", endPoint );
+            bodyFile.setLastModified( System.currentTimeMillis() );
+            BasicHttpResponse cachedResponse = new BasicHttpResponse( HttpVersion.HTTP_1_1, 200, "OK" );
+            for ( String name : meta.stringPropertyNames() ) {
+                cachedResponse.setHeader( name, meta.getProperty( name ) );
+            }
+            cachedResponse.setEntity( new InputStreamEntity( cached, bodyFile.length() ) );
+            return new OwsHttpResponseImpl( cachedResponse, null, endPoint.toString() );
+        }
+        close( cached );
+
+        Properties newMeta = new Properties();
+        copyHeader( httpResponse, ETAG, newMeta );
+        copyHeader( httpResponse, LAST_MODIFIED, newMeta );
+        if ( status != 200 || newMeta.isEmpty() ) {
+            return response;
+        }
+        copyHeader( httpResponse, CONTENT_TYPE, newMeta );
+
+        File tmpFile = File.createTempFile( key, ".tmp", dir );
+        InputStream is = new StoringInputStream( response.getAsBinaryStream(), tmpFile, bodyFile, metaFile, newMeta );
+        BasicHttpResponse storingResponse = new BasicHttpResponse( httpResponse.getStatusLine() );
+        storingResponse.setHeaders( httpResponse.getAllHeaders() );
+        storingResponse.setEntity( new InputStreamEntity( is, -1 ) );
+        return new OwsHttpResponseImpl( storingResponse, null, endPoint.toString() );
+    }
+
+    private synchronized void store( File tmpFile, File bodyFile, File metaFile, Properties meta )
+                            throws IOException {
+        // a stored response is only used if its metadata exists, so the metadata is removed before the body is
+        // replaced and the new metadata is moved in last
+        File tmpMetaFile = File.createTempFile( metaFile.getName(), ".tmp", dir );
+        try {
+            OutputStream os = new FileOutputStream( tmpMetaFile );
+            try {
+                meta.store( os, null );
+            } finally {
+                os.close();
+            }
+            if ( metaFile.exists() && !metaFile.delete() ) {
+                throw new IOException( "Unable to replace '" + metaFile + "'." );
+            }
+            if ( bodyFile.exists() && !bodyFile.delete() ) {
+                throw new IOException( "Unable to replace '" + bodyFile + "'." );
+            }
+            if ( !tmpFile.renameTo( bodyFile ) ) {
+                throw new IOException( "Unable to rename '" + tmpFile + "' to '" + bodyFile + "'." );
+            }
+            if ( !tmpMetaFile.renameTo( metaFile ) ) {
+                throw new IOException( "Unable to rename '" + tmpMetaFile + "' to '" + metaFile + "'." );
+            }
+        } finally {
+            tmpMetaFile.delete();
+        }
+        evict();
+    }
+
+    private void evict() {
+        File[] bodyFiles = dir.listFiles();
+        if ( bodyFiles == null ) {
+            return;
+        }
+        long size = 0;
+        for ( File file : bodyFiles ) {
+            if ( file.getName().endsWith( BODY_SUFFIX ) ) {
+                size += file.length();
+            }
+        }
+        if ( size <= maxBytes ) {
+            return;
+        }
+        Arrays.sort( bodyFiles, new Comparator<File>() {
+            @Override
+            public int compare( File f1, File f2 ) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : ( m1 == m2 ? 0 : 1 );
+            }
+        } );
+        for ( File file : bodyFiles ) {
+            if ( size <= maxBytes ) {
+                break;
+            }
+            String name = file.getName();
+            if ( name.endsWith( BODY_SUFFIX ) ) {
+                String key = name.substring( 0, name.length() - BODY_SUFFIX.length() );
+                long length = file.length();
+                new File( dir, key + META_SUFFIX ).delete();
+                if ( file.delete() ) {
+                    size -= length;
+                    LOG.debug( "Evicted cached response '{}'.", key );
+                }
+            }
+        }
+    }
+
+    private static Properties load( File metaFile )
+                            throws IOException {
+        Properties meta = new Properties();
+        InputStream is = new FileInputStream( metaFile );
+        try {
+            meta.load( is );
+        } finally {
+            is.close();
+        }
+        return meta;
+    }
+
+    private static void copyHeader( HttpResponse response, String name, Properties meta ) {
+        Header header = response.getFirstHeader( name );
+        if ( header != null && header.getValue() != null ) {
+            meta.setProperty( name, header.getValue() );
+        }
+    }
+
+    private static void close( InputStream is ) {
+        if ( is != null ) {
+            try {
+                is.close();
+            } catch ( IOException e ) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance( "SHA-1" );
+        } catch ( NoSuchAlgorithmException e ) {
+            throw new RuntimeException( e.getMessage(), e );
+        }
+    }
+
+    private static void update( MessageDigest md, String s ) {
+        try {
+            md.update( ( s == null ? "" : s ).getBytes( "UTF-8" ) );
+            md.update( (byte) 0 );
+        } catch ( UnsupportedEncodingException e ) {
+            throw new RuntimeException( e.getMessage(), e );
+        }
+    }
+
+    private static String toHex( byte[] bytes ) {
+        StringBuilder sb = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes ) {
+            sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) );
+            sb.append( Character.forDigit( b & 0xf, 16 ) );
+        }
+        return sb.toString();
+    }
+
+    private interface Request {
+        OwsHttpResponse send( Map<String, String> headers )
+                                throws IOException;
+    }
+
+    /**
+     * Copies the bytes of the wrapped stream to a temporary file and stores it as a cached response once the stream
+     * has been consumed completely.
+     */
+    private class StoringInputStream extends FilterInputStream {
+
+        private final File tmpFile;
+
+        private final File bodyFile;
+
+        private final File metaFile;
+
+        private final Properties meta;
+
+        private OutputStream os;
+
+        private boolean complete;
+
+        StoringInputStream( InputStream is, File tmpFile, File bodyFile, File metaFile, Properties meta )
+                                throws IOException {
+            super( is );
+            this.tmpFile = tmpFile;
+            this.bodyFile = bodyFile;
+            this.metaFile = metaFile;
+            this.meta = meta;
+            this.os = new FileOutputStream( tmpFile );
+        }
+
+        @Override
+        public int read()
+                                throws IOException {
+            int b = super.read();
+            if ( b == -1 ) {
+                complete = true;
+            } else if ( os != null ) {
+                write( new byte[] { (byte) b }, 0, 1 );
+            }
+            return b;
+        }
+
+        @Override
+        public int read( byte[] b, int off, int len )
+                                throws IOException {
+            int read = super.read( b, off, len );
+            if ( read == -1 ) {
+                complete = true;
+            } else if ( os != null ) {
+                write( b, off, read );
+            }
+            return read;
+        }
+
+        @Override
+        public long skip( long n )
+                                throws IOException {
+            byte[] buffer = new byte[(int) Math.min( n, 8192 )];
+            long skipped = 0;
+            while ( skipped < n ) {
+                int read = read( buffer, 0, (int) Math.min( buffer.length, n - skipped ) );
+                if ( read == -1 ) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close()
+                                throws IOException {
+            try {
+                if ( !complete && os != null ) {
+                    // XML parsers usually stop after the end of the root element
+                    byte[] buffer = new byte[8192];
+                    int drained = 0;
+                    while ( !complete && drained < MAX_DRAIN ) {
+                        int read = read( buffer, 0, buffer.length );
+                        if ( read > 0 ) {
+                            drained += read;
+                        }
+                    }
+                }
+            } catch ( IOException e ) {
+                complete = false;
+            } finally {
+                super.close();
+                finish();
+            }
+        }
+
+        private void write( byte[] b, int off, int len ) {
+            try {
+                os.write( b, off, len );
+            } catch ( IOException e ) {
+                LOG.warn( "Unable to write response to cache: {}", e.getMessage() );
+                discard();
+            }
+        }
+
+        private void discard() {
+            if ( os != null ) {
+                try {
+                    os.close();
+                } catch ( IOException e ) {
+                    // nothing to do
+                }
+                os = null;
+            }
+            tmpFile.delete();
+        }
+
+        private void finish() {
+            if ( os == null ) {
+                return;
+            }
+            if ( !complete ) {
+                discard();
+                return;
+            }
+            try {
+                os.close();
+                os = null;
+                store( tmpFile, bodyFile, metaFile, meta );
+            } catch ( IOException e ) {
+                LOG.warn( "Unable to store response in cache: {}", e.getMessage() );
+                discard();
+            }
+        }
+    }
+}
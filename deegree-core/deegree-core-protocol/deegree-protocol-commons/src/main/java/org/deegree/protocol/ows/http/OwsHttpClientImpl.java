@@ -50,6 +50,7 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.HttpConnectionParams;
@@ -141,6 +142,7 @@ public class OwsHttpClientImpl implements OwsHttpClient {
 
             query = new URI( sb.toString() );
             HttpGet httpGet = new HttpGet( query );
+            setHeaders( httpGet, headers );
             DefaultHttpClient httpClient = getInitializedHttpClient( endPoint );
             LOG.debug( "Performing GET request: " + query );
             HttpResponse httpResponse = httpClient.execute( httpGet );
@@ -166,6 +168,7 @@ public class OwsHttpClientImpl implements OwsHttpClient {
             InputStreamEntity entity = new InputStreamEntity( body.getInputStream(), (long) body.size() );
             entity.setContentType( contentType );
             httpPost.setEntity( entity );
+            setHeaders( httpPost, headers );
             HttpResponse httpResponse = httpClient.execute( httpPost );
             response = new OwsHttpResponseImpl( httpResponse, httpClient.getConnectionManager(), endPoint.toString() );
         } catch ( Throwable e ) {
@@ -175,6 +178,14 @@ public class OwsHttpClientImpl implements OwsHttpClient {
         return response;
     }
 
+    private void setHeaders( HttpRequestBase request, Map<String, String> headers ) {
+        if ( headers != null ) {
+            for ( Entry<String, String> header : headers.entrySet() ) {
+                request.setHeader( header.getKey(), header.getValue() );
+            }
+        }
+    }
+
     private DefaultHttpClient getInitializedHttpClient( URL url ) {
         DefaultHttpClient client = new DefaultHttpClient();
         setTimeouts( client );
@@ -40,6 +40,7 @@ import static org.deegree.commons.xml.stax.XMLStreamUtils.skipStartDocument;
 import static org.deegree.protocol.ows.exception.OWSExceptionReader.isExceptionReport;
 import static org.deegree.protocol.ows.exception.OWSExceptionReader.parseExceptionReport;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collections;
@@ -84,7 +85,9 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
      * Creates a new {@link OwsHttpResponseImpl} instance.
      * 
      * @param httpResponse
-     * @param httpClient
+     * @param connManager
+     *            connection manager to shut down on {@link #close()}, can be <code>null</code> (response is not
+     *            backed by a connection, {@link #close()} just closes the content stream)
      * @param url
      * @throws IllegalStateException
      * @throws IOException
@@ -96,9 +99,11 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
         this.url = url;
         HttpEntity entity = httpResponse.getEntity();
         if ( entity == null ) {
-            // TODO exception
+            // e.g. '304 Not Modified'
+            is = new ByteArrayInputStream( new byte[0] );
+        } else {
+            is = entity.getContent();
         }
-        is = entity.getContent();
     }
 
     @Override
@@ -176,6 +181,14 @@ public class OwsHttpResponseImpl implements OwsHttpResponse {
 
     @Override
     public void close() {
-        connManager.shutdown();
+        if ( connManager != null ) {
+            connManager.shutdown();
+        } else {
+            try {
+                is.close();
+            } catch ( IOException e ) {
+                LOG.debug( "Unable to close response stream: " + e.getMessage() );
+            }
+        }
     }
 }
@@ -0,0 +1,217 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.protocol.ows.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.deegree.commons.utils.io.StreamBufferStore;
+import org.h2.util.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link CachingOwsHttpClient}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CachingOwsHttpClientTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private FakeClient server;
+
+    private URL endPoint;
+
+    @Before
+    public void setup()
+                            throws Exception {
+        server = new FakeClient();
+        endPoint = new URL( "http://localhost/wfs" );
+    }
+
+    @Test
+    public void testNotModifiedIsServedFromCache()
+                            throws Exception {
+        CachingOwsHttpClient client = new CachingOwsHttpClient( server, tmpFolder.getRoot(), 1024 * 1024 );
+        server.respond( 200, "<a>first</a>", "\"1\"" );
+        assertEquals( "<a>first</a>", read( client.doGet( endPoint, params( "b", "a" ), null ) ) );
+        assertNull( server.lastHeaders.get( "If-None-Match" ) );
+
+        server.respond( 304, null, "\"1\"" );
+        assertEquals( "<a>first</a>", read( client.doGet( endPoint, params( "b", "a" ), null ) ) );
+        assertEquals( "\"1\"", server.lastHeaders.get( "If-None-Match" ) );
+    }
+
+    @Test
+    public void testModifiedReplacesCachedResponse()
+                            throws Exception {
+        CachingOwsHttpClient client = new CachingOwsHttpClient( server, tmpFolder.getRoot(), 1024 * 1024 );
+        server.respond( 200, "<a>first</a>", "\"1\"" );
+        read( client.doPost( endPoint, "text/xml", body( "<GetFeature/>" ), null ) );
+
+        server.respond( 200, "<a>second</a>", "\"2\"" );
+        assertEquals( "<a>second</a>", read( client.doPost( endPoint, "text/xml", body( "<GetFeature/>" ), null ) ) );
+        assertEquals( "\"1\"", server.lastHeaders.get( "If-None-Match" ) );
+        // body and metadata, no temporary files
+        assertEquals( 2, tmpFolder.getRoot().list().length );
+
+        server.respond( 304, null, "\"2\"" );
+        assertEquals( "<a>second</a>", read( client.doPost( endPoint, "text/xml", body( "<GetFeature/>" ), null ) ) );
+        assertEquals( "\"2\"", server.lastHeaders.get( "If-None-Match" ) );
+    }
+
+    @Test
+    public void testDifferentRequestsAreNotShared()
+                            throws Exception {
+        CachingOwsHttpClient client = new CachingOwsHttpClient( server, tmpFolder.getRoot(), 1024 * 1024 );
+        server.respond( 200, "<a>first</a>", "\"1\"" );
+        read( client.doPost( endPoint, "text/xml", body( "<GetFeature/>" ), null ) );
+        read( client.doPost( endPoint, "text/xml", body( "<GetFeature maxFeatures='1'/>" ), null ) );
+        assertNull( server.lastHeaders.get( "If-None-Match" ) );
+    }
+
+    @Test
+    public void testResponseWithoutValidatorsIsNotStored()
+                            throws Exception {
+        CachingOwsHttpClient client = new CachingOwsHttpClient( server, tmpFolder.getRoot(), 1024 * 1024 );
+        server.respond( 200, "<a>first</a>", null );
+        read( client.doGet( endPoint, params( "a", "b" ), null ) );
+        read( client.doGet( endPoint, params( "a", "b" ), null ) );
+        assertFalse( server.lastHeaders.containsKey( "If-None-Match" ) );
+        assertEquals( 0, tmpFolder.getRoot().list().length );
+    }
+
+    @Test
+    public void testSizeLimit()
+                            throws Exception {
+        CachingOwsHttpClient client = new CachingOwsHttpClient( server, tmpFolder.getRoot(), 20 );
+        server.respond( 200, "<a>first</a>", "\"1\"" );
+        read( client.doGet( endPoint, params( "a", "1" ), null ) );
+        new File( tmpFolder.getRoot(), tmpFolder.getRoot().list()[0] ).setLastModified( 0 );
+        read( client.doGet( endPoint, params( "a", "2" ), null ) );
+        // only the second response (and its metadata) fits
+        assertEquals( 2, tmpFolder.getRoot().list().length );
+
+        server.respond( 304, null, "\"1\"" );
+        read( client.doGet( endPoint, params( "a", "1" ), null ) );
+        assertNull( server.lastHeaders.get( "If-None-Match" ) );
+        read( client.doGet( endPoint, params( "a", "2" ), null ) );
+        assertEquals( "\"1\"", server.lastHeaders.get( "If-None-Match" ) );
+    }
+
+    private static Map<String, String> params( String key, String value ) {
+        return Collections.singletonMap( key, value );
+    }
+
+    private static StreamBufferStore body( String s )
+                            throws IOException {
+        StreamBufferStore body = new StreamBufferStore();
+        body.write( s.getBytes( "UTF-8" ) );
+        body.close();
+        return body;
+    }
+
+    private static String read( OwsHttpResponse response )
+                            throws IOException {
+        InputStream is = response.getAsBinaryStream();
+        return new String( IOUtils.readBytesAndClose( is, -1 ), "UTF-8" );
+    }
+
+    private static class FakeClient implements OwsHttpClient {
+
+        private int status;
+
+        private String body;
+
+        private String etag;
+
+        private Map<String, String> lastHeaders;
+
+        void respond( int status, String body, String etag ) {
+            this.status = status;
+            this.body = body;
+            this.etag = etag;
+        }
+
+        @Override
+        public OwsHttpResponse doGet( URL endPoint, Map<String, String> params, Map<String, String> headers )
+                                throws IOException {
+            return createResponse( headers );
+        }
+
+        @Override
+        public OwsHttpResponse doPost( URL endPoint, String contentType, StreamBufferStore body,
+                                       Map<String, String> headers )
+                                throws IOException {
+            return createResponse( headers );
+        }
+
+        private OwsHttpResponse createResponse( Map<String, String> headers )
+                                throws IOException {
+            lastHeaders = new HashMap<String, String>( headers );
+            BasicHttpResponse response = new BasicHttpResponse( HttpVersion.HTTP_1_1, status, "" );
+            if ( etag != null ) {
+                response.setHeader( "ETag", etag );
+            }
+            if ( body != null ) {
+                byte[] bytes = body.getBytes( "UTF-8" );
+                response.setEntity( new InputStreamEntity( new ByteArrayInputStream( bytes ), bytes.length ) );
+            }
+            return new OwsHttpResponseImpl( response, mock( ClientConnectionManager.class ), "http://localhost/wfs" );
+        }
+    }
+}
@@ -69,6 +69,7 @@ import org.deegree.gml.GMLVersion;
 import org.deegree.gml.schema.GMLAppSchemaReader;
 import org.deegree.protocol.ows.client.AbstractOWSClient;
 import org.deegree.protocol.ows.exception.OWSExceptionReport;
+import org.deegree.protocol.ows.http.OwsHttpClient;
 import org.deegree.protocol.ows.http.OwsHttpResponse;
 import org.deegree.protocol.wfs.WFSVersion;
 import org.deegree.protocol.wfs.capabilities.WFS100CapabilitiesAdapter;
@@ -144,11 +145,7 @@ public class WFSClient extends AbstractOWSClient<WFSCapabilitiesAdapter> {
      *             if a communication/network problem occured
      */
     public WFSClient( URL capaUrl ) throws OWSExceptionReport, XMLStreamException, IOException {
-        super( capaUrl, null );
-        wfsFts = capaDoc.parseFeatureTypeList();
-        for ( WFSFeatureType wfsFt : wfsFts ) {
-            ftNameTowfsFt.put( wfsFt.getName(), wfsFt );
-        }
+        this( capaUrl, null, null );
     }
 
     /**
@@ -167,7 +164,33 @@ public class WFSClient extends AbstractOWSClient<WFSCapabilitiesAdapter> {
      *             if a communication/network problem occured
      */
     public WFSClient( URL capaUrl, AppSchema schema ) throws OWSExceptionReport, XMLStreamException, IOException {
-        this( capaUrl );
+        this( capaUrl, schema, null );
+    }
+
+    /**
+     * Creates a new {@link WFSClient} instance with options and a custom {@link OwsHttpClient}.
+     * 
+     * @param capaUrl
+     *            url of a WFS capabilities document, usually this is a <code>GetCapabilities</code> request to a WFS
+     *            service, must not be <code>null</code>
+     * @param schema
+     *            application schema that describes the feature types offered by the service, can be <code>null</code>
+     *            (in this case, <code>DescribeFeatureType</code> requests will be performed to determine the schema)
+     * @param httpClient
+     *            client for customizing HTTP communication (e.g. caching), can be <code>null</code>
+     * @throws OWSExceptionReport
+     *             if the server responded with a service exception report
+     * @throws XMLStreamException
+     * @throws IOException
+     *             if a communication/network problem occured
+     */
+    public WFSClient( URL capaUrl, AppSchema schema, OwsHttpClient httpClient ) throws OWSExceptionReport,
+                            XMLStreamException, IOException {
+        super( capaUrl, httpClient );
+        wfsFts = capaDoc.parseFeatureTypeList();
+        for ( WFSFeatureType wfsFt : wfsFts ) {
+            ftNameTowfsFt.put( wfsFt.getName(), wfsFt );
+        }
         this.schema = schema;
     }
 
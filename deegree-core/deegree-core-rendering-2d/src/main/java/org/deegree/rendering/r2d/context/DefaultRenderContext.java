@@ -146,6 +146,16 @@ public class DefaultRenderContext implements RenderContext {
         return false;
     }
 
+    /**
+     * Provides access to the image that is rendered into, e.g. to post-process it instead of writing it to an output
+     * stream.
+     * 
+     * @return the image, never <code>null</code>
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
     @Override
     public void paintImage( BufferedImage img ) {
         graphics.drawImage( img, 0, 0, null );
@@ -0,0 +1,196 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.context;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+import org.deegree.coverage.raster.AbstractRaster;
+import org.deegree.geometry.Geometry;
+import org.deegree.rendering.r2d.RasterRenderer;
+import org.deegree.rendering.r2d.Renderer;
+import org.deegree.rendering.r2d.TextRenderer;
+import org.deegree.rendering.r2d.TileRenderer;
+import org.deegree.rendering.r2d.vectortile.VectorTileEncoder;
+import org.deegree.style.styling.LineStyling;
+import org.deegree.style.styling.PointStyling;
+import org.deegree.style.styling.PolygonStyling;
+import org.deegree.style.styling.RasterStyling;
+import org.deegree.style.styling.Styling;
+import org.deegree.style.styling.TextStyling;
+import org.deegree.tile.Tile;
+import org.slf4j.Logger;
+
+/**
+ * {@link RenderContext} that produces a vector tile instead of an image.
+ * <p>
+ * Styled rendering does not apply to vector tiles: layers that support vector tiles add their features to the
+ * {@link VectorTileEncoder} of this context directly, all other rendering calls (e.g. from raster or tile layers) are
+ * ignored.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class VectorTileRenderContext implements RenderContext {
+
+    private static final Logger LOG = getLogger( VectorTileRenderContext.class );
+
+    private final VectorTileEncoder encoder;
+
+    private final IgnoringRenderer renderer = new IgnoringRenderer();
+
+    private OutputStream out;
+
+    public VectorTileRenderContext( RenderingInfo info ) {
+        this( new VectorTileEncoder( info.getEnvelope() ) );
+    }
+
+    public VectorTileRenderContext( VectorTileEncoder encoder ) {
+        this.encoder = encoder;
+    }
+
+    /**
+     * @return the encoder that collects the features of the tile, never <code>null</code>
+     */
+    public VectorTileEncoder getEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public void setOutput( OutputStream out ) {
+        this.out = out;
+    }
+
+    @Override
+    public Renderer getVectorRenderer() {
+        return renderer;
+    }
+
+    @Override
+    public TextRenderer getTextRenderer() {
+        return renderer;
+    }
+
+    @Override
+    public RasterRenderer getRasterRenderer() {
+        return renderer;
+    }
+
+    @Override
+    public TileRenderer getTileRenderer() {
+        return renderer;
+    }
+
+    @Override
+    public void paintImage( BufferedImage img ) {
+        LOG.debug( "Ignoring image for vector tile output." );
+    }
+
+    @Override
+    public boolean close()
+                            throws IOException {
+        try {
+            if ( out != null ) {
+                encoder.encode( out );
+                return true;
+            }
+        } finally {
+            closeQuietly( out );
+        }
+        return false;
+    }
+
+    @Override
+    public void applyOptions( MapOptions options ) {
+        // rendering options do not apply to vector tiles
+    }
+
+    private static class IgnoringRenderer implements Renderer, TextRenderer, RasterRenderer, TileRenderer {
+
+        @Override
+        public void render( PointStyling styling, Geometry geom ) {
+            LOG.debug( "Ignoring styled geometry for vector tile output." );
+        }
+
+        @Override
+        public void render( LineStyling styling, Geometry geom ) {
+            LOG.debug( "Ignoring styled geometry for vector tile output." );
+        }
+
+        @Override
+        public void render( PolygonStyling styling, Geometry geom ) {
+            LOG.debug( "Ignoring styled geometry for vector tile output." );
+        }
+
+        @Override
+        public void render( Styling styling, Collection<Geometry> geoms ) {
+            LOG.debug( "Ignoring styled geometries for vector tile output." );
+        }
+
+        @Override
+        public void render( Styling styling, Geometry geom ) {
+            LOG.debug( "Ignoring styled geometry for vector tile output." );
+        }
+
+        @Override
+        public void render( TextStyling styling, String text, Geometry geom ) {
+            LOG.debug( "Ignoring label for vector tile output." );
+        }
+
+        @Override
+        public void render( TextStyling styling, String text, Collection<Geometry> geoms ) {
+            LOG.debug( "Ignoring labels for vector tile output." );
+        }
+
+        @Override
+        public void render( RasterStyling styling, AbstractRaster raster ) {
+            LOG.debug( "Ignoring raster for vector tile output." );
+        }
+
+        @Override
+        public void render( Tile tile ) {
+            LOG.debug( "Ignoring tile for vector tile output." );
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.vectortile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Minimal writer for the protocol buffers wire format, just enough to encode vector tiles without depending on a
+ * protobuf runtime.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ProtobufWriter {
+
+    static final int WIRETYPE_VARINT = 0;
+
+    static final int WIRETYPE_FIXED64 = 1;
+
+    static final int WIRETYPE_LENGTH_DELIMITED = 2;
+
+    static final int WIRETYPE_FIXED32 = 5;
+
+    private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    private final ByteArrayOutputStream out;
+
+    ProtobufWriter() {
+        out = new ByteArrayOutputStream();
+    }
+
+    ProtobufWriter( int initialSize ) {
+        out = new ByteArrayOutputStream( initialSize );
+    }
+
+    void writeTag( int field, int wireType ) {
+        writeVarint( ( field << 3 ) | wireType );
+    }
+
+    void writeVarint( long value ) {
+        while ( ( value & ~0x7FL ) != 0 ) {
+            out.write( (int) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        out.write( (int) value );
+    }
+
+    void writeVarintField( int field, long value ) {
+        writeTag( field, WIRETYPE_VARINT );
+        writeVarint( value );
+    }
+
+    void writeSIntField( int field, long value ) {
+        writeTag( field, WIRETYPE_VARINT );
+        writeVarint( ( value << 1 ) ^ ( value >> 63 ) );
+    }
+
+    void writeBoolField( int field, boolean value ) {
+        writeVarintField( field, value ? 1 : 0 );
+    }
+
+    void writeFloatField( int field, float value ) {
+        writeTag( field, WIRETYPE_FIXED32 );
+        int bits = Float.floatToIntBits( value );
+        for ( int i = 0; i < 4; i++ ) {
+            out.write( ( bits >>> ( 8 * i ) ) & 0xFF );
+        }
+    }
+
+    void writeDoubleField( int field, double value ) {
+        writeTag( field, WIRETYPE_FIXED64 );
+        long bits = Double.doubleToLongBits( value );
+        for ( int i = 0; i < 8; i++ ) {
+            out.write( (int) ( bits >>> ( 8 * i ) ) & 0xFF );
+        }
+    }
+
+    void writeStringField( int field, String value ) {
+        writeBytesField( field, value.getBytes( UTF8 ) );
+    }
+
+    void writeBytesField( int field, byte[] value ) {
+        writeTag( field, WIRETYPE_LENGTH_DELIMITED );
+        writeVarint( value.length );
+        out.write( value, 0, value.length );
+    }
+
+    void writeMessageField( int field, ProtobufWriter message ) {
+        writeTag( field, WIRETYPE_LENGTH_DELIMITED );
+        writeVarint( message.size() );
+        writeRaw( message );
+    }
+
+    /**
+     * Appends the already encoded fields of the given writer.
+     */
+    void writeRaw( ProtobufWriter fields ) {
+        try {
+            fields.out.writeTo( out );
+        } catch ( IOException e ) {
+            // cannot happen for in-memory streams
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * Writes the given values as a packed repeated <code>uint32</code> field.
+     */
+    void writePackedField( int field, int[] values, int length ) {
+        ProtobufWriter packed = new ProtobufWriter( length * 2 );
+        for ( int i = 0; i < length; i++ ) {
+            packed.writeVarint( values[i] & 0xFFFFFFFFL );
+        }
+        writeMessageField( field, packed );
+    }
+
+    int size() {
+        return out.size();
+    }
+
+    byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    void writeTo( OutputStream os )
+                            throws IOException {
+        out.writeTo( os );
+    }
+
+}
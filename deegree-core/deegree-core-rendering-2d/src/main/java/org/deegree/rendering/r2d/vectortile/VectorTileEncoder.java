@@ -0,0 +1,670 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.vectortile;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.linearization.GeometryLinearizer;
+import org.deegree.geometry.linearization.NumPointsCriterion;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.slf4j.Logger;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Lineal;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.geom.Polygonal;
+import com.vividsolutions.jts.geom.Puntal;
+import com.vividsolutions.jts.geom.TopologyException;
+
+/**
+ * Encodes features into a single vector tile following the Mapbox Vector Tile specification (version 2).
+ * <p>
+ * Geometries are transformed into the CRS of the tile envelope, clipped to the tile envelope (enlarged by a buffer to
+ * avoid artifacts at tile borders) and quantized to the integer grid of the tile extent, with the origin in the upper
+ * left corner. Attributes are stored using the per-layer key and value dictionaries of the format, so repeated keys and
+ * values are only encoded once. The tile is written using the protobuf wire format directly.
+ * </p>
+ * <p>
+ * Instances are not thread-safe and are meant to be used for a single tile only.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class VectorTileEncoder {
+
+    private static final Logger LOG = getLogger( VectorTileEncoder.class );
+
+    /** Media type of encoded vector tiles. */
+    public static final String MIME_TYPE = "application/vnd.mapbox-vector-tile";
+
+    /** Default extent (number of grid cells along each tile axis). */
+    public static final int DEFAULT_EXTENT = 4096;
+
+    /** Default buffer around the tile (in grid cells). */
+    public static final int DEFAULT_BUFFER = 64;
+
+    static final int GEOM_POINT = 1;
+
+    static final int GEOM_LINESTRING = 2;
+
+    static final int GEOM_POLYGON = 3;
+
+    private static final int CMD_MOVE_TO = 1;
+
+    private static final int CMD_LINE_TO = 2;
+
+    private static final int CMD_CLOSE_PATH = 7;
+
+    private static final GeometryLinearizer LINEARIZER = new GeometryLinearizer();
+
+    private static final GeometryFactory JTS_FAC = new GeometryFactory();
+
+    private final Envelope envelope;
+
+    private final int extent;
+
+    private final double minX;
+
+    private final double maxY;
+
+    private final double scaleX;
+
+    private final double scaleY;
+
+    private final com.vividsolutions.jts.geom.Envelope clipEnv;
+
+    private final com.vividsolutions.jts.geom.Geometry clipGeom;
+
+    private GeometryTransformer transformer;
+
+    private final Map<String, Layer> layers = new LinkedHashMap<String, Layer>();
+
+    /**
+     * Creates a new {@link VectorTileEncoder} with the default extent and buffer.
+     * 
+     * @param envelope
+     *            envelope of the tile, must not be <code>null</code>
+     */
+    public VectorTileEncoder( Envelope envelope ) {
+        this( envelope, DEFAULT_EXTENT, DEFAULT_BUFFER );
+    }
+
+    /**
+     * Creates a new {@link VectorTileEncoder}.
+     * 
+     * @param envelope
+     *            envelope of the tile, must not be <code>null</code>
+     * @param extent
+     *            number of grid cells along each tile axis, must be positive
+     * @param buffer
+     *            number of grid cells to keep around the tile when clipping, must not be negative
+     */
+    public VectorTileEncoder( Envelope envelope, int extent, int buffer ) {
+        if ( extent <= 0 ) {
+            throw new IllegalArgumentException( "Tile extent must be positive." );
+        }
+        this.envelope = envelope;
+        this.extent = extent;
+        this.minX = envelope.getMin().get0();
+        this.maxY = envelope.getMax().get1();
+        this.scaleX = extent / envelope.getSpan0();
+        this.scaleY = extent / envelope.getSpan1();
+        double bufferX = buffer / scaleX;
+        double bufferY = buffer / scaleY;
+        this.clipEnv = new com.vividsolutions.jts.geom.Envelope( minX - bufferX, envelope.getMax().get0() + bufferX,
+                                                                 envelope.getMin().get1() - bufferY, maxY + bufferY );
+        this.clipGeom = JTS_FAC.toGeometry( clipEnv );
+        ICRS crs = envelope.getCoordinateSystem();
+        try {
+            if ( crs != null && !crs.getAlias().equals( "CRS:1" ) ) {
+                transformer = new GeometryTransformer( crs );
+            }
+        } catch ( Throwable e ) {
+            LOG.debug( "Stack trace:", e );
+            LOG.warn( "Unable to set up the transformer for the vector tile, geometries will not be transformed." );
+        }
+    }
+
+    /**
+     * @return the envelope of the tile, never <code>null</code>
+     */
+    public Envelope getEnvelope() {
+        return envelope;
+    }
+
+    /**
+     * @return the number of grid cells along each tile axis
+     */
+    public int getExtent() {
+        return extent;
+    }
+
+    /**
+     * @return <code>true</code>, if no feature has been added to the tile yet
+     */
+    public boolean isEmpty() {
+        return layers.isEmpty();
+    }
+
+    /**
+     * Adds a feature to the specified layer. The first geometry property provides the geometry, all simple valued
+     * properties are encoded as attributes.
+     * 
+     * @param layerName
+     *            name of the tile layer, must not be <code>null</code>
+     * @param feature
+     *            feature to add, must not be <code>null</code>
+     * @return <code>true</code>, if the feature has been added, <code>false</code> if it has no geometry or the
+     *         geometry does not intersect the tile
+     */
+    public boolean addFeature( String layerName, Feature feature ) {
+        Geometry geom = null;
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        for ( Property prop : feature.getProperties() ) {
+            Object value = prop.getValue();
+            if ( value instanceof Geometry ) {
+                if ( geom == null ) {
+                    geom = (Geometry) value;
+                }
+            } else if ( value instanceof PrimitiveValue ) {
+                String key = prop.getName().getLocalPart();
+                if ( !attributes.containsKey( key ) ) {
+                    attributes.put( key, value );
+                }
+            }
+        }
+        if ( geom == null ) {
+            return false;
+        }
+        return addFeature( layerName, geom, attributes, parseId( feature.getId() ) );
+    }
+
+    /**
+     * Adds a geometry with attributes to the specified layer.
+     * 
+     * @param layerName
+     *            name of the tile layer, must not be <code>null</code>
+     * @param geom
+     *            geometry, must not be <code>null</code>
+     * @param attributes
+     *            attributes, can be <code>null</code>, <code>null</code> values are skipped, values that are not
+     *            strings, numbers or booleans are encoded using their string representation
+     * @param id
+     *            numeric id of the feature, can be <code>null</code>
+     * @return <code>true</code>, if the geometry has been added, <code>false</code> if it does not intersect the tile
+     */
+    public boolean addFeature( String layerName, Geometry geom, Map<String, ?> attributes, Long id ) {
+        com.vividsolutions.jts.geom.Geometry jtsGeom = clip( toJTS( geom ) );
+        if ( jtsGeom == null ) {
+            return false;
+        }
+        CommandBuffer commands = new CommandBuffer();
+        int type = encodeGeometry( jtsGeom, commands );
+        if ( type == 0 || commands.size == 0 ) {
+            return false;
+        }
+
+        Layer layer = layers.get( layerName );
+        if ( layer == null ) {
+            layer = new Layer( layerName );
+            layers.put( layerName, layer );
+        }
+
+        ProtobufWriter feature = new ProtobufWriter( commands.size * 2 + 16 );
+        if ( id != null ) {
+            feature.writeVarintField( 1, id );
+        }
+        if ( attributes != null && !attributes.isEmpty() ) {
+            int[] tags = new int[attributes.size() * 2];
+            int numTags = 0;
+            for ( Entry<String, ?> attribute : attributes.entrySet() ) {
+                Object value = normalize( attribute.getValue() );
+                if ( attribute.getKey() == null || value == null ) {
+                    continue;
+                }
+                tags[numTags++] = layer.getKeyIndex( attribute.getKey() );
+                tags[numTags++] = layer.getValueIndex( value );
+            }
+            if ( numTags > 0 ) {
+                feature.writePackedField( 2, tags, numTags );
+            }
+        }
+        feature.writeVarintField( 3, type );
+        feature.writePackedField( 4, commands.data, commands.size );
+        layer.features.writeMessageField( 2, feature );
+        return true;
+    }
+
+    /**
+     * Writes the encoded tile to the given stream. The stream is not closed.
+     * 
+     * @param os
+     *            stream to write to, must not be <code>null</code>
+     * @throws IOException
+     */
+    public void encode( OutputStream os )
+                            throws IOException {
+        ProtobufWriter tile = new ProtobufWriter();
+        for ( Layer layer : layers.values() ) {
+            tile.writeMessageField( 3, layer.encode( extent ) );
+        }
+        tile.writeTo( os );
+    }
+
+    /**
+     * Returns the encoded tile.
+     * 
+     * @return the encoded tile, never <code>null</code> (but empty if no feature has been added)
+     */
+    public byte[] encode() {
+        ProtobufWriter tile = new ProtobufWriter();
+        for ( Layer layer : layers.values() ) {
+            tile.writeMessageField( 3, layer.encode( extent ) );
+        }
+        return tile.toByteArray();
+    }
+
+    private com.vividsolutions.jts.geom.Geometry toJTS( Geometry geom ) {
+        try {
+            if ( transformer != null && geom.getCoordinateSystem() != null
+                 && !transformer.getTargetCRS().equals( geom.getCoordinateSystem() ) ) {
+                geom = transformer.transform( geom );
+            }
+            if ( !( geom instanceof Point ) ) {
+                geom = LINEARIZER.linearize( geom, new NumPointsCriterion( 100 ) );
+            }
+            if ( geom instanceof AbstractDefaultGeometry ) {
+                return ( (AbstractDefaultGeometry) geom ).getJTSGeometry();
+            }
+            LOG.debug( "Skipping geometry of type '{}' for vector tile.", geom.getClass().getSimpleName() );
+        } catch ( Throwable e ) {
+            LOG.debug( "Unable to prepare geometry for vector tile: {}", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+        return null;
+    }
+
+    private com.vividsolutions.jts.geom.Geometry clip( com.vividsolutions.jts.geom.Geometry geom ) {
+        if ( geom == null || geom.isEmpty() ) {
+            return null;
+        }
+        com.vividsolutions.jts.geom.Envelope geomEnv = geom.getEnvelopeInternal();
+        if ( !clipEnv.intersects( geomEnv ) ) {
+            return null;
+        }
+        if ( clipEnv.contains( geomEnv ) ) {
+            return geom;
+        }
+        try {
+            return clipGeom.intersection( geom );
+        } catch ( TopologyException e ) {
+            if ( geom instanceof Polygonal ) {
+                // usually caused by self-intersections, try again with a repaired geometry
+                try {
+                    return clipGeom.intersection( geom.buffer( 0 ) );
+                } catch ( TopologyException e2 ) {
+                    // fall through
+                }
+            }
+            LOG.debug( "Unable to clip geometry for vector tile: {}", e.getLocalizedMessage() );
+            return null;
+        }
+    }
+
+    private int encodeGeometry( com.vividsolutions.jts.geom.Geometry geom, CommandBuffer commands ) {
+        List<com.vividsolutions.jts.geom.Geometry> parts = new ArrayList<com.vividsolutions.jts.geom.Geometry>();
+        int dim = collectParts( geom, parts, -1 );
+        if ( dim == 0 ) {
+            encodePoints( parts, commands );
+            return GEOM_POINT;
+        }
+        if ( dim == 1 ) {
+            for ( com.vividsolutions.jts.geom.Geometry part : parts ) {
+                encodeLine( ( (LineString) part ).getCoordinateSequence(), commands );
+            }
+            return GEOM_LINESTRING;
+        }
+        if ( dim == 2 ) {
+            for ( com.vividsolutions.jts.geom.Geometry part : parts ) {
+                encodePolygon( (Polygon) part, commands );
+            }
+            return GEOM_POLYGON;
+        }
+        return 0;
+    }
+
+    /**
+     * Collects the atomic parts of the highest dimension (clipping may produce collections of mixed dimensions).
+     */
+    private int collectParts( com.vividsolutions.jts.geom.Geometry geom,
+                              List<com.vividsolutions.jts.geom.Geometry> parts, int dim ) {
+        for ( int i = 0; i < geom.getNumGeometries(); i++ ) {
+            com.vividsolutions.jts.geom.Geometry part = geom.getGeometryN( i );
+            if ( part.isEmpty() ) {
+                continue;
+            }
+            if ( part instanceof GeometryCollection ) {
+                dim = collectParts( part, parts, dim );
+                continue;
+            }
+            int partDim = part instanceof Puntal ? 0 : part instanceof Lineal ? 1 : part instanceof Polygonal ? 2 : -1;
+            if ( partDim > dim ) {
+                parts.clear();
+                dim = partDim;
+            }
+            if ( partDim == dim ) {
+                parts.add( part );
+            }
+        }
+        return dim;
+    }
+
+    private void encodePoints( List<com.vividsolutions.jts.geom.Geometry> points, CommandBuffer commands ) {
+        commands.command( CMD_MOVE_TO, points.size() );
+        for ( com.vividsolutions.jts.geom.Geometry point : points ) {
+            Coordinate c = point.getCoordinate();
+            commands.point( quantizeX( c.x ), quantizeY( c.y ) );
+        }
+    }
+
+    private void encodeLine( CoordinateSequence seq, CommandBuffer commands ) {
+        int[] xy = quantize( seq, false );
+        int n = xy.length / 2;
+        if ( n < 2 ) {
+            return;
+        }
+        commands.command( CMD_MOVE_TO, 1 );
+        commands.point( xy[0], xy[1] );
+        commands.command( CMD_LINE_TO, n - 1 );
+        for ( int i = 1; i < n; i++ ) {
+            commands.point( xy[2 * i], xy[2 * i + 1] );
+        }
+    }
+
+    private void encodePolygon( Polygon polygon, CommandBuffer commands ) {
+        if ( !encodeRing( polygon.getExteriorRing().getCoordinateSequence(), true, commands ) ) {
+            return;
+        }
+        for ( int i = 0; i < polygon.getNumInteriorRing(); i++ ) {
+            encodeRing( polygon.getInteriorRingN( i ).getCoordinateSequence(), false, commands );
+        }
+    }
+
+    /**
+     * Exterior rings must have a positive, interior rings a negative area in tile coordinates (y axis pointing down).
+     */
+    private boolean encodeRing( CoordinateSequence seq, boolean exterior, CommandBuffer commands ) {
+        int[] xy = quantize( seq, true );
+        int n = xy.length / 2;
+        if ( n < 3 ) {
+            return false;
+        }
+        long area = 0;
+        for ( int i = 0; i < n; i++ ) {
+            int j = ( i + 1 ) % n;
+            area += (long) xy[2 * i] * xy[2 * j + 1] - (long) xy[2 * j] * xy[2 * i + 1];
+        }
+        if ( area == 0 ) {
+            return false;
+        }
+        boolean reverse = exterior ? area < 0 : area > 0;
+        commands.command( CMD_MOVE_TO, 1 );
+        int first = reverse ? n - 1 : 0;
+        commands.point( xy[2 * first], xy[2 * first + 1] );
+        commands.command( CMD_LINE_TO, n - 1 );
+        for ( int k = 1; k < n; k++ ) {
+            int i = reverse ? n - 1 - k : k;
+            commands.point( xy[2 * i], xy[2 * i + 1] );
+        }
+        commands.command( CMD_CLOSE_PATH, 1 );
+        return true;
+    }
+
+    /**
+     * Quantizes the given coordinates, dropping repeated positions (and the closing position of rings).
+     */
+    private int[] quantize( CoordinateSequence seq, boolean ring ) {
+        int size = seq.size();
+        int[] xy = new int[size * 2];
+        int n = 0;
+        for ( int i = 0; i < size; i++ ) {
+            int x = quantizeX( seq.getX( i ) );
+            int y = quantizeY( seq.getY( i ) );
+            if ( n > 0 && xy[2 * n - 2] == x && xy[2 * n - 1] == y ) {
+                continue;
+            }
+            xy[2 * n] = x;
+            xy[2 * n + 1] = y;
+            n++;
+        }
+        if ( ring && n > 1 && xy[0] == xy[2 * n - 2] && xy[1] == xy[2 * n - 1] ) {
+            n--;
+        }
+        if ( 2 * n == xy.length ) {
+            return xy;
+        }
+        int[] result = new int[2 * n];
+        System.arraycopy( xy, 0, result, 0, result.length );
+        return result;
+    }
+
+    private int quantizeX( double x ) {
+        return (int) Math.round( ( x - minX ) * scaleX );
+    }
+
+    private int quantizeY( double y ) {
+        return (int) Math.round( ( maxY - y ) * scaleY );
+    }
+
+    private static Object normalize( Object value ) {
+        if ( value instanceof PrimitiveValue ) {
+            PrimitiveValue pv = (PrimitiveValue) value;
+            value = pv.getValue();
+            boolean simple = value instanceof Number || value instanceof Boolean || value instanceof String;
+            if ( value != null && !simple ) {
+                return pv.getAsText();
+            }
+        }
+        if ( value == null || value instanceof String || value instanceof Boolean || value instanceof Long
+             || value instanceof Double || value instanceof Float ) {
+            return value;
+        }
+        if ( value instanceof Integer || value instanceof Short || value instanceof Byte ) {
+            return ( (Number) value ).longValue();
+        }
+        if ( value instanceof BigInteger ) {
+            BigInteger bi = (BigInteger) value;
+            return bi.bitLength() < 64 ? (Object) bi.longValue() : bi.toString();
+        }
+        if ( value instanceof BigDecimal ) {
+            BigDecimal bd = (BigDecimal) value;
+            try {
+                return bd.longValueExact();
+            } catch ( ArithmeticException e ) {
+                return bd.doubleValue();
+            }
+        }
+        if ( value instanceof Number ) {
+            return ( (Number) value ).doubleValue();
+        }
+        return value.toString();
+    }
+
+    /**
+     * Derives a numeric feature id from the trailing digits of the given (GML) id.
+     */
+    static Long parseId( String id ) {
+        if ( id == null ) {
+            return null;
+        }
+        int i = id.length();
+        while ( i > 0 && Character.isDigit( id.charAt( i - 1 ) ) ) {
+            i--;
+        }
+        int numDigits = id.length() - i;
+        if ( numDigits == 0 || numDigits > 18 ) {
+            return null;
+        }
+        return Long.valueOf( id.substring( i ) );
+    }
+
+    private static class CommandBuffer {
+
+        private int[] data = new int[32];
+
+        private int size;
+
+        private int cursorX;
+
+        private int cursorY;
+
+        void command( int id, int count ) {
+            add( ( id & 0x7 ) | ( count << 3 ) );
+        }
+
+        void point( int x, int y ) {
+            int dx = x - cursorX;
+            int dy = y - cursorY;
+            add( ( dx << 1 ) ^ ( dx >> 31 ) );
+            add( ( dy << 1 ) ^ ( dy >> 31 ) );
+            cursorX = x;
+            cursorY = y;
+        }
+
+        private void add( int value ) {
+            if ( size == data.length ) {
+                int[] newData = new int[data.length * 2];
+                System.arraycopy( data, 0, newData, 0, size );
+                data = newData;
+            }
+            data[size++] = value;
+        }
+    }
+
+    private static class Layer {
+
+        private final String name;
+
+        private final ProtobufWriter features = new ProtobufWriter();
+
+        private final Map<String, Integer> keys = new LinkedHashMap<String, Integer>();
+
+        private final Map<Object, Integer> values = new LinkedHashMap<Object, Integer>();
+
+        Layer( String name ) {
+            this.name = name;
+        }
+
+        int getKeyIndex( String key ) {
+            Integer idx = keys.get( key );
+            if ( idx == null ) {
+                idx = keys.size();
+                keys.put( key, idx );
+            }
+            return idx;
+        }
+
+        int getValueIndex( Object value ) {
+            Integer idx = values.get( value );
+            if ( idx == null ) {
+                idx = values.size();
+                values.put( value, idx );
+            }
+            return idx;
+        }
+
+        ProtobufWriter encode( int extent ) {
+            ProtobufWriter layer = new ProtobufWriter( features.size() + 64 );
+            layer.writeVarintField( 15, 2 );
+            layer.writeStringField( 1, name );
+            layer.writeRaw( features );
+            for ( String key : keys.keySet() ) {
+                layer.writeStringField( 3, key );
+            }
+            for ( Object value : values.keySet() ) {
+                layer.writeMessageField( 4, encodeValue( value ) );
+            }
+            layer.writeVarintField( 5, extent );
+            return layer;
+        }
+
+        private static ProtobufWriter encodeValue( Object value ) {
+            ProtobufWriter v = new ProtobufWriter( 16 );
+            if ( value instanceof String ) {
+                v.writeStringField( 1, (String) value );
+            } else if ( value instanceof Float ) {
+                v.writeFloatField( 2, (Float) value );
+            } else if ( value instanceof Double ) {
+                v.writeDoubleField( 3, (Double) value );
+            } else if ( value instanceof Long ) {
+                long l = (Long) value;
+                if ( l >= 0 ) {
+                    v.writeVarintField( 5, l );
+                } else {
+                    v.writeSIntField( 6, l );
+                }
+            } else if ( value instanceof Boolean ) {
+                v.writeBoolField( 7, (Boolean) value );
+            }
+            return v;
+        }
+    }
+
+}
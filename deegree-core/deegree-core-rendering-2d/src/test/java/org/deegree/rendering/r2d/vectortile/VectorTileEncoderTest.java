@@ -0,0 +1,213 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.rendering.r2d.vectortile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.junit.Test;
+
+/**
+ * Tests for {@link VectorTileEncoder}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class VectorTileEncoderTest {
+
+    private final Envelope tileEnv = new GeometryFactory().createEnvelope( 0, 0, 4096, 4096, null );
+
+    @Test
+    public void testPolygonWindingAndCommands()
+                            throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder( tileEnv );
+        assertTrue( encoder.addFeature( "test", geom( "POLYGON((0 0,10 0,10 10,0 10,0 0))" ), null, 42L ) );
+
+        Map<Integer, List<Object>> layer = parse( (byte[]) parse( encoder.encode() ).get( 3 ).get( 0 ) );
+        assertEquals( 2L, layer.get( 15 ).get( 0 ) );
+        assertEquals( "test", new String( (byte[]) layer.get( 1 ).get( 0 ), "UTF-8" ) );
+        assertEquals( 4096L, layer.get( 5 ).get( 0 ) );
+
+        Map<Integer, List<Object>> feature = parse( (byte[]) layer.get( 2 ).get( 0 ) );
+        assertEquals( 42L, feature.get( 1 ).get( 0 ) );
+        assertEquals( (long) VectorTileEncoder.GEOM_POLYGON, feature.get( 3 ).get( 0 ) );
+        // exterior ring must be clockwise in tile coordinates (y axis pointing down)
+        int[] expected = new int[] { 9, 0, 8172, 26, 20, 0, 0, 20, 19, 0, 15 };
+        assertArrayEquals( expected, unpack( (byte[]) feature.get( 4 ).get( 0 ) ) );
+    }
+
+    @Test
+    public void testLineIsClippedToBuffer()
+                            throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder( tileEnv );
+        assertTrue( encoder.addFeature( "test", geom( "LINESTRING(-1000 100,5000 100)" ), null, null ) );
+
+        Map<Integer, List<Object>> layer = parse( (byte[]) parse( encoder.encode() ).get( 3 ).get( 0 ) );
+        Map<Integer, List<Object>> feature = parse( (byte[]) layer.get( 2 ).get( 0 ) );
+        assertNull( feature.get( 1 ) );
+        assertEquals( (long) VectorTileEncoder.GEOM_LINESTRING, feature.get( 3 ).get( 0 ) );
+        int[] expected = new int[] { 9, 127, 7992, 10, 8448, 0 };
+        assertArrayEquals( expected, unpack( (byte[]) feature.get( 4 ).get( 0 ) ) );
+    }
+
+    @Test
+    public void testGeometryOutsideTileIsSkipped()
+                            throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder( tileEnv );
+        assertFalse( encoder.addFeature( "test", geom( "POINT(5000 5000)" ), null, null ) );
+        assertTrue( encoder.isEmpty() );
+        assertEquals( 0, encoder.encode().length );
+    }
+
+    @Test
+    public void testAttributeDictionary()
+                            throws Exception {
+        VectorTileEncoder encoder = new VectorTileEncoder( tileEnv );
+        Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+        attributes.put( "name", "a" );
+        attributes.put( "count", 1 );
+        attributes.put( "missing", null );
+        encoder.addFeature( "test", geom( "POINT(1 1)" ), attributes, null );
+        attributes.put( "count", -2.5 );
+        encoder.addFeature( "test", geom( "POINT(2 2)" ), attributes, null );
+
+        Map<Integer, List<Object>> layer = parse( (byte[]) parse( encoder.encode() ).get( 3 ).get( 0 ) );
+        assertEquals( 2, layer.get( 2 ).size() );
+        assertEquals( 2, layer.get( 3 ).size() );
+        assertEquals( 3, layer.get( 4 ).size() );
+        byte[] stringValue = (byte[]) parse( (byte[]) layer.get( 4 ).get( 0 ) ).get( 1 ).get( 0 );
+        assertEquals( "a", new String( stringValue, "UTF-8" ) );
+        assertEquals( 1L, parse( (byte[]) layer.get( 4 ).get( 1 ) ).get( 5 ).get( 0 ) );
+        long bits = (Long) parse( (byte[]) layer.get( 4 ).get( 2 ) ).get( 3 ).get( 0 );
+        assertEquals( -2.5, Double.longBitsToDouble( bits ), 0 );
+
+        int[] tags1 = unpack( (byte[]) parse( (byte[]) layer.get( 2 ).get( 0 ) ).get( 2 ).get( 0 ) );
+        int[] tags2 = unpack( (byte[]) parse( (byte[]) layer.get( 2 ).get( 1 ) ).get( 2 ).get( 0 ) );
+        assertArrayEquals( new int[] { 0, 0, 1, 1 }, tags1 );
+        assertArrayEquals( new int[] { 0, 0, 1, 2 }, tags2 );
+    }
+
+    @Test
+    public void testParseId() {
+        assertEquals( Long.valueOf( 123 ), VectorTileEncoder.parseId( "ROADS_123" ) );
+        assertNull( VectorTileEncoder.parseId( "ROADS_abc" ) );
+        assertNull( VectorTileEncoder.parseId( null ) );
+    }
+
+    private static Geometry geom( String wkt )
+                            throws Exception {
+        return new WKTReader( null ).read( wkt );
+    }
+
+    private static Map<Integer, List<Object>> parse( byte[] bytes ) {
+        Map<Integer, List<Object>> fields = new HashMap<Integer, List<Object>>();
+        int[] pos = new int[1];
+        while ( pos[0] < bytes.length ) {
+            long tag = readVarint( bytes, pos );
+            int field = (int) ( tag >>> 3 );
+            Object value;
+            switch ( (int) ( tag & 0x7 ) ) {
+            case 0:
+                value = readVarint( bytes, pos );
+                break;
+            case 1:
+            case 5:
+                int len = ( tag & 0x7 ) == 1 ? 8 : 4;
+                long bits = 0;
+                for ( int i = 0; i < len; i++ ) {
+                    bits |= ( bytes[pos[0]++] & 0xFFL ) << ( 8 * i );
+                }
+                value = bits;
+                break;
+            case 2:
+                byte[] b = new byte[(int) readVarint( bytes, pos )];
+                System.arraycopy( bytes, pos[0], b, 0, b.length );
+                pos[0] += b.length;
+                value = b;
+                break;
+            default:
+                throw new IllegalArgumentException( "Unexpected wire type in tag " + tag );
+            }
+            List<Object> values = fields.get( field );
+            if ( values == null ) {
+                values = new ArrayList<Object>();
+                fields.put( field, values );
+            }
+            values.add( value );
+        }
+        return fields;
+    }
+
+    private static int[] unpack( byte[] bytes ) {
+        List<Long> values = new ArrayList<Long>();
+        int[] pos = new int[1];
+        while ( pos[0] < bytes.length ) {
+            values.add( readVarint( bytes, pos ) );
+        }
+        int[] result = new int[values.size()];
+        for ( int i = 0; i < result.length; i++ ) {
+            result[i] = values.get( i ).intValue();
+        }
+        return result;
+    }
+
+    private static long readVarint( byte[] bytes, int[] pos ) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            value |= (long) ( b & 0x7F ) << shift;
+            shift += 7;
+        } while ( ( b & 0x80 ) != 0 );
+        return value;
+    }
+
+}
@@ -212,4 +212,37 @@ public interface SQLDialect {
      */
     String getSelectSequenceNextVal( String sequence );
 
+    /**
+     * Returns a variant of the given <code>SELECT</code> statement that only returns the specified page of the result
+     * rows.
+     * <p>
+     * The given statement must contain an <code>ORDER BY</code> clause that defines a stable row order, otherwise the
+     * content of the pages is undefined.
+     * </p>
+     * 
+     * @param select
+     *            SQL <code>SELECT</code> statement (including <code>ORDER BY</code>), must not be <code>null</code>
+     * @param offset
+     *            number of rows to be skipped, zero or positive
+     * @param limit
+     *            maximum number of rows to be returned, -1 for no limit
+     * @return SQL <code>SELECT</code> statement, or <code>null</code> if the dialect does not support paging
+     */
+    String getPagedSelect( String select, int offset, int limit );
+
+    /**
+     * Returns a variant of the given <code>SELECT</code> statement that returns at most the specified number of rows.
+     * <p>
+     * In contrast to {@link #getPagedSelect(String, int, int)}, no row order is required, so this is suitable for
+     * cutting off result sets that are not sorted.
+     * </p>
+     * 
+     * @param select
+     *            SQL <code>SELECT</code> statement, must not be <code>null</code>
+     * @param limit
+     *            maximum number of rows to be returned, zero or positive
+     * @return SQL <code>SELECT</code> statement, never <code>null</code>
+     */
+    String getLimitedSelect( String select, int limit );
+
 }
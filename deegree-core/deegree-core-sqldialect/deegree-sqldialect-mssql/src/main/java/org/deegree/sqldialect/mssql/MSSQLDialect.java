@@ -197,4 +197,15 @@ public class MSSQLDialect implements SQLDialect {
                                                  "Using DB sequences for FIDs is currently not supported on Microsoft SQL Server." );
     }
 
+    @Override
+    public String getPagedSelect( String select, int offset, int limit ) {
+        // OFFSET/FETCH is only available since SQL Server 2012
+        return null;
+    }
+
+    @Override
+    public String getLimitedSelect( String select, int limit ) {
+        return "SELECT TOP " + limit + " * FROM (" + select + ") X";
+    }
+
 }
@@ -267,4 +267,24 @@ public class OracleDialect implements SQLDialect {
         return "SELECT " + sequence + ".NEXTVAL from DUAL";
     }
 
+    @Override
+    public String getPagedSelect( String select, int offset, int limit ) {
+        // row limiting clause is only available since Oracle 12c
+        if ( versionMajor < 12 ) {
+            return null;
+        }
+        StringBuilder sql = new StringBuilder( select );
+        sql.append( " OFFSET " ).append( offset ).append( " ROWS" );
+        if ( limit > -1 ) {
+            sql.append( " FETCH NEXT " ).append( limit ).append( " ROWS ONLY" );
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public String getLimitedSelect( String select, int limit ) {
+        // works with all versions, in contrast to the row limiting clause
+        return "SELECT * FROM (" + select + ") WHERE ROWNUM <= " + limit;
+    }
+
 }
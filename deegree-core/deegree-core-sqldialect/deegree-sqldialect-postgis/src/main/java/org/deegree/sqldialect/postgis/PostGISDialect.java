@@ -256,4 +256,21 @@ public class PostGISDialect implements SQLDialect {
         return "SELECT nextval('" + sequence + "')";
     }
 
+    @Override
+    public String getPagedSelect( String select, int offset, int limit ) {
+        StringBuilder sql = new StringBuilder( select );
+        if ( limit > -1 ) {
+            sql.append( " LIMIT " ).append( limit );
+        }
+        if ( offset > 0 ) {
+            sql.append( " OFFSET " ).append( offset );
+        }
+        return sql.toString();
+    }
+
+    @Override
+    public String getLimitedSelect( String select, int limit ) {
+        return select + " LIMIT " + limit;
+    }
+
 }
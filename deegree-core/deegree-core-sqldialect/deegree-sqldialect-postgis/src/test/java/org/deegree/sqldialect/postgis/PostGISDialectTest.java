@@ -0,0 +1,75 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.sqldialect.postgis;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests for the paging and row limiting support of {@link PostGISDialect}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PostGISDialectTest {
+
+    private static final String SELECT = "SELECT X1.gid FROM ft X1 ORDER BY X1.gid";
+
+    private final PostGISDialect dialect = new PostGISDialect( false );
+
+    @Test
+    public void testGetPagedSelect() {
+        assertEquals( SELECT + " LIMIT 10 OFFSET 20", dialect.getPagedSelect( SELECT, 20, 10 ) );
+    }
+
+    @Test
+    public void testGetPagedSelectNoOffset() {
+        assertEquals( SELECT + " LIMIT 10", dialect.getPagedSelect( SELECT, 0, 10 ) );
+    }
+
+    @Test
+    public void testGetPagedSelectNoLimit() {
+        assertEquals( SELECT + " OFFSET 20", dialect.getPagedSelect( SELECT, 20, -1 ) );
+    }
+
+    @Test
+    public void testGetLimitedSelect() {
+        assertEquals( SELECT + " LIMIT 10", dialect.getLimitedSelect( SELECT, 10 ) );
+    }
+
+}
@@ -97,4 +97,13 @@ public interface ResourceManager<T extends Resource> {
      */
     List<ResourceProvider<T>> getProviders();
 
+    /**
+     * Determines whether resources of this type may be built and initialized on first access if the workspace is
+     * running in lazy mode. Resources that need to be available right after startup (such as services) must return
+     * false here.
+     * 
+     * @return true, if resources of this type may be initialized on first access
+     */
+    boolean supportsLazyInitialization();
+
 }
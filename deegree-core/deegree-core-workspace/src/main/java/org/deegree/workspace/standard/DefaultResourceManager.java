@@ -173,4 +173,9 @@ public class DefaultResourceManager<T extends Resource> implements ResourceManag
         return new ArrayList<ResourceProvider<T>>( nsToProvider.values() );
     }
 
+    @Override
+    public boolean supportsLazyInitialization() {
+        return true;
+    }
+
 }
@@ -57,10 +57,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.deegree.workspace.Destroyable;
 import org.deegree.workspace.ErrorHandler;
@@ -94,6 +98,25 @@ public class DefaultWorkspace implements Workspace {
 
     private static final Logger LOG = getLogger( DefaultWorkspace.class );
 
+    /**
+     * System property to configure the number of threads used to build and initialize resources (defaults to 1,
+     * meaning sequential initialization). Parallel initialization requires that all resource providers and builders of
+     * the workspace can safely be used concurrently.
+     */
+    public static final String INIT_THREADS_PROPERTY = "deegree.workspace.init.threads";
+
+    /**
+     * System property to configure the maximum time in milliseconds a single resource may take to build and initialize
+     * (defaults to 0, meaning no limit).
+     */
+    public static final String INIT_TIMEOUT_PROPERTY = "deegree.workspace.init.timeout";
+
+    /**
+     * System property to enable the lazy mode (defaults to false). In lazy mode, resources are only prepared on startup,
+     * and built and initialized on first access. Once initialized, resources are kept until the workspace is destroyed.
+     */
+    public static final String LAZY_PROPERTY = "deegree.workspace.lazy";
+
     private File directory;
 
     private ClassLoader moduleClassLoader;
@@ -118,14 +141,64 @@ public class DefaultWorkspace implements Workspace {
 
     private boolean startedUp = false;
 
+    private int initThreads;
+
+    private long initTimeout;
+
+    private Map<ResourceIdentifier<? extends Resource>, Long> initTimes;
+
+    private boolean lazy;
+
+    private LazyResourceInitializer lazyInitializer;
+
     public DefaultWorkspace( File directory ) {
         this.directory = directory;
+        this.initThreads = Math.max( 1, Integer.getInteger( INIT_THREADS_PROPERTY, 1 ) );
+        this.initTimeout = Long.getLong( INIT_TIMEOUT_PROPERTY, 0 );
+        this.lazy = Boolean.getBoolean( LAZY_PROPERTY );
+    }
+
+    /**
+     * @param initThreads
+     *            the maximum number of resources to build and initialize concurrently in #initAll, values less than
+     *            one are treated as one
+     */
+    public void setInitThreads( int initThreads ) {
+        this.initThreads = Math.max( 1, initThreads );
+    }
+
+    /**
+     * @param initTimeout
+     *            the maximum time in milliseconds a single resource may take to build and initialize in #initAll, zero
+     *            or less for no limit
+     */
+    public void setInitTimeout( long initTimeout ) {
+        this.initTimeout = initTimeout;
+    }
+
+    /**
+     * @param lazy
+     *            true, if resources should be built and initialized on first access instead of in #initAll. Resources
+     *            of managers that do not support lazy initialization and their dependencies are still initialized in
+     *            #initAll. Lazily initialized resources are kept until the workspace is destroyed.
+     */
+    public void setLazy( boolean lazy ) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * @return the time in milliseconds it took to build and initialize each resource during the last #initAll, never
+     *         <code>null</code> after started up
+     */
+    public Map<ResourceIdentifier<? extends Resource>, Long> getInitializationTimes() {
+        return initTimes;
     }
 
     @Override
     public void initAll() {
         startup();
         errors.clear();
+        initTimes.clear();
         scan();
         PreparedResources prepared = prepare();
 
@@ -138,44 +211,44 @@ public class DefaultWorkspace implements Workspace {
             graph.insertNode( md );
         }
 
-        outer: for ( ResourceMetadata<? extends Resource> md : graph.toSortedList() ) {
-            if ( states.getState( md.getIdentifier() ) == Deactivated ) {
-                continue;
-            }
+        if ( lazy ) {
+            initLazily( prepared );
+            return;
+        }
+        new ResourceInitializer( graph, prepared, states, errors, resources, initTimes, initThreads, initTimeout ).initAll();
+    }
 
-            for ( ResourceIdentifier<? extends Resource> dep : md.getDependencies() ) {
-                if ( states.getState( dep ) != Initialized ) {
-                    states.setState( md.getIdentifier(), Error );
-                    LOG.error( "Dependency {} for resource {} failed to initialize.", dep, md );
-                    continue outer;
-                }
-            }
-            LOG.info( "Building resource {}.", md.getIdentifier() );
-            try {
-                Resource res = prepared.getBuilder( md.getIdentifier() ).build();
-                if ( res == null ) {
-                    errors.registerError( md.getIdentifier(), "Unable to prepare." );
-                    states.setState( md.getIdentifier(), Error );
-                    LOG.error( "Unable to build resource {}.", md.getIdentifier() );
-                    continue;
-                }
-                states.setState( md.getIdentifier(), Built );
-                LOG.info( "Initializing resource {}.", md.getIdentifier() );
-                res.init();
-                states.setState( md.getIdentifier(), Initialized );
-                resources.put( res.getMetadata().getIdentifier(), res );
-            } catch ( Exception ex ) {
-                states.setState( md.getIdentifier(), Error );
-                String msg = "Unable to build resource " + md.getIdentifier() + ": " + ex.getLocalizedMessage();
-                errors.registerError( md.getIdentifier(), msg );
-                LOG.error( msg );
-                LOG.trace( "Stack trace:", ex );
+    private void initLazily( PreparedResources prepared ) {
+        // resources of managers not supporting lazy initialization and their dependencies are initialized right away
+        Set<ResourceMetadata<? extends Resource>> eager = new LinkedHashSet<ResourceMetadata<? extends Resource>>();
+        for ( ResourceMetadata<? extends Resource> md : prepared.getMetadata() ) {
+            ResourceManager<? extends Resource> mgr = resourceManagers.get( md.getIdentifier().getProvider() );
+            if ( mgr == null || !mgr.supportsLazyInitialization() ) {
+                List<ResourceMetadata<? extends Resource>> list = new ArrayList<ResourceMetadata<? extends Resource>>();
+                list.add( md );
+                WorkspaceUtils.collectDependencies( list, graph.getNode( md.getIdentifier() ) );
+                eager.addAll( list );
             }
         }
+        Set<ResourceMetadata<? extends Resource>> lazyResources = new HashSet<ResourceMetadata<? extends Resource>>(
+                                                                                                                   prepared.getMetadata() );
+        lazyResources.removeAll( eager );
+
+        if ( lazyInitializer == null ) {
+            lazyInitializer = new LazyResourceInitializer( this, states, errors, resources, initTimes );
+        }
+        lazyInitializer.register( prepared, lazyResources );
+
+        ResourceGraph eagerGraph = new ResourceGraph( new ArrayList<ResourceMetadata<? extends Resource>>( eager ) );
+        new ResourceInitializer( eagerGraph, prepared, states, errors, resources, initTimes, initThreads, initTimeout ).initAll();
     }
 
     @Override
     public void destroy() {
+        if ( lazyInitializer != null ) {
+            lazyInitializer.shutdown();
+            lazyInitializer = null;
+        }
         List<ResourceMetadata<? extends Resource>> list = graph.toSortedList();
         Collections.reverse( list );
         for ( ResourceMetadata<? extends Resource> md : list ) {
@@ -209,6 +282,7 @@ public class DefaultWorkspace implements Workspace {
         moduleClassLoader = null;
         resourceMetadata = null;
         resources = null;
+        initTimes = null;
         resourceManagers = null;
         wsModules = null;
         initializables.clear();
@@ -280,7 +354,11 @@ public class DefaultWorkspace implements Workspace {
 
     @Override
     public <T extends Resource> T getResource( Class<? extends ResourceProvider<T>> providerClass, String id ) {
-        return (T) resources.get( new DefaultResourceIdentifier( providerClass, id ) );
+        ResourceIdentifier<T> identifier = new DefaultResourceIdentifier( providerClass, id );
+        if ( lazyInitializer != null ) {
+            return (T) lazyInitializer.get( identifier );
+        }
+        return (T) resources.get( identifier );
     }
 
     /**
@@ -313,7 +391,8 @@ public class DefaultWorkspace implements Workspace {
         wsModules = new ArrayList<ModuleInfo>();
         resourceManagers = new HashMap<Class<? extends ResourceProvider<? extends Resource>>, ResourceManager<? extends Resource>>();
         resourceMetadata = new HashMap<ResourceIdentifier<? extends Resource>, ResourceMetadata<? extends Resource>>();
-        resources = new HashMap<ResourceIdentifier<? extends Resource>, Resource>();
+        resources = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Resource>();
+        initTimes = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Long>();
         initializables.clear();
         graph = new ResourceGraph();
         states = new ResourceStates();
@@ -347,7 +426,7 @@ public class DefaultWorkspace implements Workspace {
     }
 
     @Override
-    public <T extends Resource> T init( ResourceIdentifier<T> id, PreparedResources prepared ) {
+    public synchronized <T extends Resource> T init( ResourceIdentifier<T> id, PreparedResources prepared ) {
         if ( states.getState( id ) == Deactivated ) {
             return null;
         }
@@ -487,6 +566,14 @@ public class DefaultWorkspace implements Workspace {
                 list.add( (ResourceIdentifier) id );
             }
         }
+        if ( lazyInitializer != null ) {
+            for ( ResourceIdentifier<?> id : resourceMetadata.keySet() ) {
+                if ( id.getProvider().equals( providerClass ) && !resources.containsKey( id )
+                     && lazyInitializer.isLazy( id ) ) {
+                    list.add( (ResourceIdentifier) id );
+                }
+            }
+        }
         return list;
     }
 
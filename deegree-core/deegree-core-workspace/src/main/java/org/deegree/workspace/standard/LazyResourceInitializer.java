@@ -0,0 +1,236 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.workspace.standard;
+
+import static java.lang.System.currentTimeMillis;
+import static org.deegree.workspace.ResourceStates.ResourceState.Built;
+import static org.deegree.workspace.ResourceStates.ResourceState.Error;
+import static org.deegree.workspace.ResourceStates.ResourceState.Initialized;
+import static org.deegree.workspace.ResourceStates.ResourceState.Prepared;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.deegree.workspace.ErrorHandler;
+import org.deegree.workspace.PreparedResources;
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceIdentifier;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.ResourceStates;
+import org.slf4j.Logger;
+
+/**
+ * Builds and initializes prepared resources on first access. Only one thread builds a specific resource, other threads
+ * requesting the same resource wait for it. Dependencies are initialized before the resource itself.
+ * <p>
+ * Lazy initialization only defers building a resource, once initialized it is kept until the workspace is destroyed.
+ * </p>
+ * 
+ * @since 3.4
+ */
+class LazyResourceInitializer {
+
+    private static final Logger LOG = getLogger( LazyResourceInitializer.class );
+
+    private final DefaultWorkspace workspace;
+
+    private final ResourceStates states;
+
+    private final ErrorHandler errors;
+
+    private final Map<ResourceIdentifier<? extends Resource>, Resource> resources;
+
+    private final Map<ResourceIdentifier<? extends Resource>, Long> timings;
+
+    private final Set<ResourceIdentifier<? extends Resource>> lazyIds = Collections.newSetFromMap( new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Boolean>() );
+
+    // builders obtained during preparation, a builder is only used once
+    private final Map<ResourceIdentifier<? extends Resource>, ResourceBuilder<? extends Resource>> builders = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, ResourceBuilder<? extends Resource>>();
+
+    private final ConcurrentMap<ResourceIdentifier<? extends Resource>, Object> locks = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Object>();
+
+    /**
+     * @param workspace
+     *            never <code>null</code>
+     * @param states
+     *            used to track the resource states, never <code>null</code>
+     * @param errors
+     *            used to register errors, never <code>null</code>
+     * @param resources
+     *            initialized resources are put into this map, must be thread safe, never <code>null</code>
+     * @param timings
+     *            build and initialization times (in milliseconds) are put into this map, must be thread safe, never
+     *            <code>null</code>
+     */
+    LazyResourceInitializer( DefaultWorkspace workspace, ResourceStates states, ErrorHandler errors,
+                             Map<ResourceIdentifier<? extends Resource>, Resource> resources,
+                             Map<ResourceIdentifier<? extends Resource>, Long> timings ) {
+        this.workspace = workspace;
+        this.states = states;
+        this.errors = errors;
+        this.resources = resources;
+        this.timings = timings;
+    }
+
+    /**
+     * Registers the prepared resources for initialization on first access.
+     * 
+     * @param prepared
+     *            never <code>null</code>
+     * @param mds
+     *            the resources to initialize lazily, never <code>null</code>
+     */
+    void register( PreparedResources prepared, Collection<ResourceMetadata<? extends Resource>> mds ) {
+        for ( ResourceMetadata<? extends Resource> md : mds ) {
+            ResourceBuilder<? extends Resource> builder = prepared.getBuilder( md.getIdentifier() );
+            if ( builder != null ) {
+                lazyIds.add( md.getIdentifier() );
+                builders.put( md.getIdentifier(), builder );
+            }
+        }
+        LOG.info( "{} resources will be initialized on first access.", lazyIds.size() );
+    }
+
+    /**
+     * @param id
+     *            never <code>null</code>
+     * @return true, if the resource is managed lazily and has not been initialized yet
+     */
+    boolean isLazy( ResourceIdentifier<? extends Resource> id ) {
+        return lazyIds.contains( id ) && states.getState( id ) == Prepared;
+    }
+
+    /**
+     * Returns the resource, building and initializing it (and its dependencies) if needed.
+     * 
+     * @param id
+     *            never <code>null</code>
+     * @return the resource, or <code>null</code>, if the resource is not available or failed to initialize
+     */
+    Resource get( ResourceIdentifier<? extends Resource> id ) {
+        Resource res = resources.get( id );
+        if ( res != null || !lazyIds.contains( id ) ) {
+            return res;
+        }
+        synchronized ( getLock( id ) ) {
+            res = resources.get( id );
+            if ( res == null && states.getState( id ) == Prepared ) {
+                res = build( id );
+            }
+            return res;
+        }
+    }
+
+    // caller must hold the lock for id
+    private Resource build( ResourceIdentifier<? extends Resource> id ) {
+        ResourceMetadata<? extends Resource> md = workspace.getResourceMetadata( (Class) id.getProvider(), id.getId() );
+        for ( ResourceIdentifier<? extends Resource> dep : md.getDependencies() ) {
+            if ( workspace.getResource( (Class) dep.getProvider(), dep.getId() ) == null ) {
+                states.setState( id, Error );
+                LOG.error( "Dependency {} for resource {} failed to initialize.", dep, id );
+                return null;
+            }
+        }
+        for ( ResourceIdentifier<? extends Resource> dep : md.getSoftDependencies() ) {
+            workspace.getResource( (Class) dep.getProvider(), dep.getId() );
+        }
+
+        LOG.info( "Building resource {} on first access.", id );
+        long start = currentTimeMillis();
+        try {
+            ResourceBuilder<? extends Resource> builder = builders.remove( id );
+            Resource res = builder == null ? null : builder.build();
+            if ( res == null ) {
+                errors.registerError( id, "Unable to prepare." );
+                states.setState( id, Error );
+                LOG.error( "Unable to build resource {}.", id );
+                return null;
+            }
+            states.setState( id, Built );
+            long buildTime = currentTimeMillis() - start;
+            LOG.info( "Initializing resource {}.", id );
+            res.init();
+            long initTime = currentTimeMillis() - start - buildTime;
+            resources.put( id, res );
+            states.setState( id, Initialized );
+            timings.put( id, buildTime + initTime );
+            LOG.info( "Initialized resource {} in {} ms (build: {} ms, init: {} ms).",
+                      new Object[] { id, buildTime + initTime, buildTime, initTime } );
+            return res;
+        } catch ( Exception ex ) {
+            states.setState( id, Error );
+            String msg = "Unable to build resource " + id + ": " + ex.getLocalizedMessage();
+            errors.registerError( id, msg );
+            LOG.error( msg );
+            LOG.trace( "Stack trace:", ex );
+            return null;
+        }
+    }
+
+    private Object getLock( ResourceIdentifier<? extends Resource> id ) {
+        Object lock = locks.get( id );
+        if ( lock == null ) {
+            Object newLock = new Object();
+            lock = locks.putIfAbsent( id, newLock );
+            if ( lock == null ) {
+                lock = newLock;
+            }
+        }
+        return lock;
+    }
+
+    /**
+     * Forgets about the resources that have not been initialized yet. Does not destroy any resources.
+     */
+    void shutdown() {
+        lazyIds.clear();
+        builders.clear();
+        locks.clear();
+    }
+
+}
@@ -0,0 +1,446 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.workspace.standard;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.deegree.workspace.ResourceStates.ResourceState.Built;
+import static org.deegree.workspace.ResourceStates.ResourceState.Deactivated;
+import static org.deegree.workspace.ResourceStates.ResourceState.Error;
+import static org.deegree.workspace.ResourceStates.ResourceState.Initialized;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.workspace.ErrorHandler;
+import org.deegree.workspace.PreparedResources;
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceIdentifier;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.ResourceStates;
+import org.deegree.workspace.graph.ResourceGraph;
+import org.deegree.workspace.graph.ResourceNode;
+import org.slf4j.Logger;
+
+/**
+ * Builds and initializes the resources of a dependency graph using a pool of worker threads. A resource is scheduled
+ * as soon as all of its (hard and soft) dependencies have been processed, so independent resources are initialized
+ * concurrently. With a single thread and no timeout, resources are initialized one after another in the calling
+ * thread.
+ * 
+ * 
+ * @since 3.4
+ */
+class ResourceInitializer {
+
+    private static final Logger LOG = getLogger( ResourceInitializer.class );
+
+    private static final long POLL_INTERVAL = 100;
+
+    private static final int SLOWEST_RESOURCES_REPORTED = 10;
+
+    private final ResourceGraph graph;
+
+    private final PreparedResources prepared;
+
+    private final ResourceStates states;
+
+    private final ErrorHandler errors;
+
+    private final Map<ResourceIdentifier<? extends Resource>, Resource> resources;
+
+    private final Map<ResourceIdentifier<? extends Resource>, Long> timings;
+
+    private final int threads;
+
+    private final long timeout;
+
+    private final Map<ResourceIdentifier<? extends Resource>, Integer> pendingDependencies = new HashMap<ResourceIdentifier<? extends Resource>, Integer>();
+
+    private final Map<ResourceIdentifier<? extends Resource>, List<ResourceMetadata<? extends Resource>>> dependents = new HashMap<ResourceIdentifier<? extends Resource>, List<ResourceMetadata<? extends Resource>>>();
+
+    private final LinkedList<ResourceMetadata<? extends Resource>> ready = new LinkedList<ResourceMetadata<? extends Resource>>();
+
+    private final Map<Future<Resource>, InitTask> running = new HashMap<Future<Resource>, InitTask>();
+
+    private int outstanding;
+
+    /**
+     * @param graph
+     *            the dependency graph, never <code>null</code>
+     * @param prepared
+     *            the prepared resources, never <code>null</code>
+     * @param states
+     *            used to track the resource states, never <code>null</code>
+     * @param errors
+     *            used to register errors, never <code>null</code>
+     * @param resources
+     *            initialized resources are put into this map, must be thread safe, never <code>null</code>
+     * @param timings
+     *            build and initialization times (in milliseconds) are put into this map, never <code>null</code>
+     * @param threads
+     *            the maximum number of resources to build and initialize concurrently, must be greater than zero
+     * @param timeout
+     *            maximum time (in milliseconds) a single resource may take to build and initialize, zero or less for
+     *            no limit
+     */
+    ResourceInitializer( ResourceGraph graph, PreparedResources prepared, ResourceStates states, ErrorHandler errors,
+                         Map<ResourceIdentifier<? extends Resource>, Resource> resources,
+                         Map<ResourceIdentifier<? extends Resource>, Long> timings, int threads, long timeout ) {
+        this.graph = graph;
+        this.prepared = prepared;
+        this.states = states;
+        this.errors = errors;
+        this.resources = resources;
+        this.timings = timings;
+        this.threads = threads;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Builds and initializes all resources of the graph. Returns after all resources have been processed (or failed).
+     */
+    void initAll() {
+        long start = currentTimeMillis();
+        List<ResourceMetadata<? extends Resource>> sorted = graph.toSortedList();
+        collectDependencies( sorted );
+        outstanding = sorted.size();
+
+        ExecutorService executor = null;
+        CompletionService<Resource> completion;
+        if ( threads == 1 && timeout <= 0 ) {
+            // sequential initialization runs in the calling thread, as providers may rely on that
+            LOG.info( "Initializing {} resources sequentially.", outstanding );
+            completion = new ExecutorCompletionService<Resource>( new Executor() {
+                @Override
+                public void execute( Runnable command ) {
+                    command.run();
+                }
+            } );
+        } else {
+            LOG.info( "Using {} thread(s) to initialize {} resources.", threads, outstanding );
+            executor = Executors.newFixedThreadPool( threads, new InitThreadFactory() );
+            completion = new ExecutorCompletionService<Resource>( executor );
+        }
+        try {
+            while ( outstanding > 0 ) {
+                while ( !ready.isEmpty() ) {
+                    schedule( ready.removeFirst(), completion );
+                }
+                if ( outstanding == 0 ) {
+                    break;
+                }
+                if ( running.isEmpty() ) {
+                    // can only happen if the graph was modified concurrently
+                    LOG.warn( "Unable to initialize {} resources, their dependencies could not be resolved.",
+                              outstanding );
+                    break;
+                }
+                Future<Resource> future = timeout > 0 ? completion.poll( POLL_INTERVAL, MILLISECONDS )
+                                                     : completion.take();
+                if ( future != null ) {
+                    InitTask task = running.remove( future );
+                    if ( task != null ) {
+                        completed( task, future );
+                    }
+                }
+                checkTimeouts();
+            }
+        } catch ( InterruptedException e ) {
+            LOG.warn( "Interrupted while initializing resources." );
+            Thread.currentThread().interrupt();
+        } finally {
+            if ( executor != null ) {
+                executor.shutdownNow();
+            }
+        }
+        logTimings( currentTimeMillis() - start );
+    }
+
+    private void collectDependencies( List<ResourceMetadata<? extends Resource>> sorted ) {
+        for ( ResourceMetadata<? extends Resource> md : sorted ) {
+            dependents.put( md.getIdentifier(), new ArrayList<ResourceMetadata<? extends Resource>>() );
+        }
+        for ( ResourceMetadata<? extends Resource> md : sorted ) {
+            ResourceNode<? extends Resource> node = graph.getNode( md.getIdentifier() );
+            Set<ResourceIdentifier<? extends Resource>> deps = new LinkedHashSet<ResourceIdentifier<? extends Resource>>();
+            for ( ResourceNode<? extends Resource> dep : node.getDependencies() ) {
+                deps.add( dep.getMetadata().getIdentifier() );
+            }
+            for ( ResourceNode<? extends Resource> dep : node.getSoftDependencies() ) {
+                deps.add( dep.getMetadata().getIdentifier() );
+            }
+            for ( ResourceIdentifier<? extends Resource> dep : deps ) {
+                dependents.get( dep ).add( md );
+            }
+            pendingDependencies.put( md.getIdentifier(), deps.size() );
+            if ( deps.isEmpty() ) {
+                ready.add( md );
+            }
+        }
+    }
+
+    private void schedule( ResourceMetadata<? extends Resource> md, CompletionService<Resource> completion ) {
+        ResourceIdentifier<? extends Resource> id = md.getIdentifier();
+        if ( states.getState( id ) == Deactivated ) {
+            finished( md );
+            return;
+        }
+        for ( ResourceIdentifier<? extends Resource> dep : md.getDependencies() ) {
+            if ( states.getState( dep ) != Initialized ) {
+                states.setState( id, Error );
+                LOG.error( "Dependency {} for resource {} failed to initialize.", dep, md );
+                finished( md );
+                return;
+            }
+        }
+        ResourceBuilder<? extends Resource> builder;
+        try {
+            builder = prepared.getBuilder( id );
+        } catch ( Exception e ) {
+            failed( id, e.getLocalizedMessage(), e );
+            finished( md );
+            return;
+        }
+        if ( builder == null ) {
+            errors.registerError( id, "Unable to prepare." );
+            states.setState( id, Error );
+            LOG.error( "Unable to build resource {}.", id );
+            finished( md );
+            return;
+        }
+        InitTask task = new InitTask( md, builder );
+        running.put( completion.submit( task ), task );
+    }
+
+    private void completed( InitTask task, Future<Resource> future )
+                            throws InterruptedException {
+        ResourceIdentifier<? extends Resource> id = task.md.getIdentifier();
+        try {
+            Resource res = future.get();
+            if ( res == null ) {
+                errors.registerError( id, "Unable to prepare." );
+                states.setState( id, Error );
+                LOG.error( "Unable to build resource {}.", id );
+            } else {
+                states.setState( id, Initialized );
+                resources.put( res.getMetadata().getIdentifier(), res );
+                timings.put( id, task.buildTime + task.initTime );
+                LOG.info( "Initialized resource {} in {} ms (build: {} ms, init: {} ms).",
+                          new Object[] { id, task.buildTime + task.initTime, task.buildTime, task.initTime } );
+            }
+        } catch ( ExecutionException e ) {
+            failed( id, e.getCause().getLocalizedMessage(), e.getCause() );
+        }
+        finished( task.md );
+    }
+
+    private void checkTimeouts() {
+        if ( timeout <= 0 ) {
+            return;
+        }
+        long now = currentTimeMillis();
+        Iterator<Entry<Future<Resource>, InitTask>> iter = running.entrySet().iterator();
+        while ( iter.hasNext() ) {
+            Entry<Future<Resource>, InitTask> e = iter.next();
+            InitTask task = e.getValue();
+            long started = task.started;
+            if ( started == 0 || now - started <= timeout ) {
+                continue;
+            }
+            synchronized ( task ) {
+                if ( !e.getKey().cancel( true ) ) {
+                    continue;
+                }
+                // a builder that ignores the interrupt must not report its result anymore
+                task.timedOut = true;
+            }
+            iter.remove();
+            timings.put( task.md.getIdentifier(), now - started );
+            failed( task.md.getIdentifier(), "timed out after " + timeout + " ms", null );
+            finished( task.md );
+        }
+    }
+
+    private void failed( ResourceIdentifier<? extends Resource> id, String reason, Throwable t ) {
+        states.setState( id, Error );
+        String msg = "Unable to build resource " + id + ": " + reason;
+        errors.registerError( id, msg );
+        LOG.error( msg );
+        if ( t != null ) {
+            LOG.trace( "Stack trace:", t );
+        }
+    }
+
+    private void finished( ResourceMetadata<? extends Resource> md ) {
+        --outstanding;
+        for ( ResourceMetadata<? extends Resource> dependent : dependents.get( md.getIdentifier() ) ) {
+            int pending = pendingDependencies.get( dependent.getIdentifier() ) - 1;
+            pendingDependencies.put( dependent.getIdentifier(), pending );
+            if ( pending == 0 ) {
+                ready.add( dependent );
+            }
+        }
+    }
+
+    private void logTimings( long total ) {
+        List<Entry<ResourceIdentifier<? extends Resource>, Long>> list = new ArrayList<Entry<ResourceIdentifier<? extends Resource>, Long>>(
+                                                                                                                                            timings.entrySet() );
+        Collections.sort( list, new Comparator<Entry<ResourceIdentifier<? extends Resource>, Long>>() {
+            @Override
+            public int compare( Entry<ResourceIdentifier<? extends Resource>, Long> e1,
+                                Entry<ResourceIdentifier<? extends Resource>, Long> e2 ) {
+                return e2.getValue().compareTo( e1.getValue() );
+            }
+        } );
+        LOG.info( "Building and initializing resources took {} ms.", total );
+        if ( list.isEmpty() ) {
+            return;
+        }
+        LOG.info( "Slowest resources:" );
+        for ( int i = 0; i < Math.min( SLOWEST_RESOURCES_REPORTED, list.size() ); ++i ) {
+            Entry<ResourceIdentifier<? extends Resource>, Long> e = list.get( i );
+            LOG.info( " - {}: {} ms", e.getKey(), e.getValue() );
+        }
+    }
+
+    private class InitTask implements Callable<Resource> {
+
+        private final ResourceMetadata<? extends Resource> md;
+
+        private final ResourceBuilder<? extends Resource> builder;
+
+        private volatile long started;
+
+        private volatile long buildTime;
+
+        private volatile long initTime;
+
+        // guarded by this
+        private boolean timedOut;
+
+        InitTask( ResourceMetadata<? extends Resource> md, ResourceBuilder<? extends Resource> builder ) {
+            this.md = md;
+            this.builder = builder;
+        }
+
+        @Override
+        public Resource call()
+                                throws Exception {
+            ResourceIdentifier<? extends Resource> id = md.getIdentifier();
+            started = currentTimeMillis();
+            LOG.info( "Building resource {}.", id );
+            Resource res = builder.build();
+            buildTime = currentTimeMillis() - started;
+            if ( res == null ) {
+                return null;
+            }
+            synchronized ( this ) {
+                if ( timedOut ) {
+                    discard( res );
+                    return null;
+                }
+                states.setState( id, Built );
+            }
+            LOG.info( "Initializing resource {}.", id );
+            long initStart = currentTimeMillis();
+            res.init();
+            initTime = currentTimeMillis() - initStart;
+            synchronized ( this ) {
+                if ( timedOut ) {
+                    discard( res );
+                    return null;
+                }
+            }
+            return res;
+        }
+
+        private void discard( Resource res ) {
+            // timed out, state has already been set to Error and the result is not used
+            LOG.warn( "Resource {} finished after timeout, shutting it down.", md.getIdentifier() );
+            try {
+                res.destroy();
+            } catch ( Exception e ) {
+                LOG.trace( "Stack trace:", e );
+            }
+        }
+
+    }
+
+    private static class InitThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+
+        @Override
+        public Thread newThread( Runnable r ) {
+            Thread t = new Thread( r, "workspace-init-" + count.incrementAndGet() );
+            t.setDaemon( true );
+            t.setContextClassLoader( contextClassLoader );
+            return t;
+        }
+
+    }
+
+}
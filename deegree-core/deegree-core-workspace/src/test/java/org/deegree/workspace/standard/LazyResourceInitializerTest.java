@@ -0,0 +1,250 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.workspace.standard;
+
+import static org.deegree.workspace.ResourceStates.ResourceState.Initialized;
+import static org.deegree.workspace.ResourceStates.ResourceState.Prepared;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.deegree.workspace.ErrorHandler;
+import org.deegree.workspace.PreparedResources;
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceIdentifier;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.ResourceProvider;
+import org.deegree.workspace.ResourceStates;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the lazy resource initialization.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class LazyResourceInitializerTest {
+
+    private final Map<String, ResourceMetadata<TestResource>> metadata = new HashMap<String, ResourceMetadata<TestResource>>();
+
+    private final Map<ResourceIdentifier<? extends Resource>, AtomicInteger> builds = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, AtomicInteger>();
+
+    private final List<TestResource> destroyed = Collections.synchronizedList( new ArrayList<TestResource>() );
+
+    private final Map<ResourceIdentifier<? extends Resource>, Resource> resources = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Resource>();
+
+    private ResourceStates states;
+
+    private LazyResourceInitializer initializer;
+
+    @Before
+    public void setUp() {
+        states = new ResourceStates();
+        DefaultWorkspace workspace = new DefaultWorkspace( new File( "/tmp" ) ) {
+            @Override
+            public <T extends Resource> ResourceMetadata<T> getResourceMetadata( Class<? extends ResourceProvider<T>> providerClass,
+                                                                                 String id ) {
+                return (ResourceMetadata<T>) metadata.get( id );
+            }
+
+            @Override
+            public <T extends Resource> T getResource( Class<? extends ResourceProvider<T>> providerClass, String id ) {
+                return (T) initializer.get( new DefaultResourceIdentifier<T>( providerClass, id ) );
+            }
+        };
+        Map<ResourceIdentifier<? extends Resource>, Long> timings = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Long>();
+        initializer = new LazyResourceInitializer( workspace, states, new ErrorHandler(), resources, timings );
+    }
+
+    @After
+    public void tearDown() {
+        initializer.shutdown();
+    }
+
+    @Test
+    public void testConcurrentFirstAccessBuildsOnce()
+                            throws Exception {
+        ResourceMetadata<TestResource> dep = metadata( "dep" );
+        final ResourceMetadata<TestResource> md = metadata( "md", "dep" );
+        register();
+
+        int threads = 8;
+        final CountDownLatch start = new CountDownLatch( 1 );
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        List<Future<Resource>> results = new ArrayList<Future<Resource>>();
+        for ( int i = 0; i < threads; ++i ) {
+            results.add( executor.submit( new Callable<Resource>() {
+                @Override
+                public Resource call()
+                                        throws Exception {
+                    start.await();
+                    return initializer.get( md.getIdentifier() );
+                }
+            } ) );
+        }
+        start.countDown();
+        Resource first = results.get( 0 ).get();
+        assertNotNull( first );
+        for ( Future<Resource> result : results ) {
+            assertSame( first, result.get() );
+        }
+        executor.shutdown();
+
+        assertEquals( 1, builds.get( md.getIdentifier() ).get() );
+        assertEquals( 1, builds.get( dep.getIdentifier() ).get() );
+        assertEquals( 1, ( (TestResource) first ).inits.get() );
+        assertEquals( Initialized, states.getState( md.getIdentifier() ) );
+        assertEquals( Initialized, states.getState( dep.getIdentifier() ) );
+    }
+
+    @Test
+    public void testInitializedResourceIsKept() {
+        ResourceMetadata<TestResource> dep = metadata( "dep" );
+        ResourceMetadata<TestResource> md = metadata( "md", "dep" );
+        register();
+
+        Resource res = initializer.get( md.getIdentifier() );
+        assertNotNull( res );
+        assertSame( res, initializer.get( md.getIdentifier() ) );
+        assertSame( res, resources.get( md.getIdentifier() ) );
+        assertEquals( 1, builds.get( md.getIdentifier() ).get() );
+        assertEquals( 1, builds.get( dep.getIdentifier() ).get() );
+        assertEquals( Initialized, states.getState( md.getIdentifier() ) );
+        assertEquals( Initialized, states.getState( dep.getIdentifier() ) );
+        assertTrue( destroyed.isEmpty() );
+    }
+
+    private void register() {
+        PreparedResources prepared = new PreparedResources( null ) {
+            @Override
+            public <T extends Resource> ResourceBuilder<T> getBuilder( ResourceIdentifier<T> id ) {
+                return (ResourceBuilder<T>) metadata.get( id.getId() ).prepare();
+            }
+        };
+        List<ResourceMetadata<? extends Resource>> mds = new ArrayList<ResourceMetadata<? extends Resource>>(
+                                                                                                              metadata.values() );
+        for ( ResourceMetadata<? extends Resource> md : mds ) {
+            states.setState( md.getIdentifier(), Prepared );
+        }
+        initializer.register( prepared, mds );
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ResourceMetadata<TestResource> metadata( String id, final String... deps ) {
+        ResourceIdentifier<TestResource> rid = new DefaultResourceIdentifier( ResourceProvider.class, id );
+        DefaultResourceLocation<TestResource> loc = new DefaultResourceLocation<TestResource>( new File( "/tmp" ),
+                                                                                               rid );
+        final AbstractResourceMetadata<TestResource> md = new AbstractResourceMetadata<TestResource>( null, loc,
+                                                                                                      null ) {
+            @Override
+            public ResourceBuilder<TestResource> prepare() {
+                for ( String dep : deps ) {
+                    this.dependencies.add( new DefaultResourceIdentifier( ResourceProvider.class, dep ) );
+                }
+                final ResourceMetadata<TestResource> self = this;
+                return new ResourceBuilder<TestResource>() {
+                    @Override
+                    public TestResource build() {
+                        builds.get( self.getIdentifier() ).incrementAndGet();
+                        try {
+                            // give concurrent callers a chance to race
+                            Thread.sleep( 20 );
+                        } catch ( InterruptedException e ) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new TestResource( self );
+                    }
+                };
+            }
+        };
+        md.prepare();
+        builds.put( rid, new AtomicInteger() );
+        metadata.put( id, md );
+        return md;
+    }
+
+    private class TestResource implements Resource {
+
+        private final ResourceMetadata<TestResource> md;
+
+        private final AtomicInteger inits = new AtomicInteger();
+
+        TestResource( ResourceMetadata<TestResource> md ) {
+            this.md = md;
+        }
+
+        @Override
+        public ResourceMetadata<TestResource> getMetadata() {
+            return md;
+        }
+
+        @Override
+        public void init() {
+            inits.incrementAndGet();
+        }
+
+        @Override
+        public void destroy() {
+            destroyed.add( this );
+        }
+    }
+
+}
@@ -0,0 +1,271 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.workspace.standard;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.deegree.workspace.ResourceStates.ResourceState.Error;
+import static org.deegree.workspace.ResourceStates.ResourceState.Initialized;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.deegree.workspace.ErrorHandler;
+import org.deegree.workspace.PreparedResources;
+import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceIdentifier;
+import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.ResourceProvider;
+import org.deegree.workspace.ResourceStates;
+import org.deegree.workspace.graph.ResourceGraph;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the parallel resource initialization.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ResourceInitializerTest {
+
+    private final Map<ResourceIdentifier<? extends Resource>, ResourceBuilder<? extends Resource>> builders = new HashMap<ResourceIdentifier<? extends Resource>, ResourceBuilder<? extends Resource>>();
+
+    private final List<ResourceIdentifier<? extends Resource>> initOrder = Collections.synchronizedList( new ArrayList<ResourceIdentifier<? extends Resource>>() );
+
+    private final Map<ResourceIdentifier<? extends Resource>, Resource> resources = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Resource>();
+
+    private final Map<ResourceIdentifier<? extends Resource>, Long> timings = new ConcurrentHashMap<ResourceIdentifier<? extends Resource>, Long>();
+
+    private ResourceGraph graph;
+
+    private ResourceStates states;
+
+    private ErrorHandler errors;
+
+    private PreparedResources prepared;
+
+    @Before
+    public void setUp() {
+        graph = new ResourceGraph();
+        states = new ResourceStates();
+        errors = new ErrorHandler();
+        prepared = new PreparedResources( null ) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T extends Resource> ResourceBuilder<T> getBuilder( ResourceIdentifier<T> id ) {
+                return (ResourceBuilder<T>) builders.get( id );
+            }
+        };
+    }
+
+    @Test
+    public void testDependenciesAreInitializedFirst() {
+        ResourceMetadata<TestResource> md4 = metadata( "md4" );
+        ResourceMetadata<TestResource> md3 = metadata( "md3", "md4" );
+        ResourceMetadata<TestResource> md2 = metadata( "md2", "md4" );
+        ResourceMetadata<TestResource> md1 = metadata( "md1", "md2", "md3" );
+
+        initAll( 4, 0 );
+
+        assertEquals( 4, resources.size() );
+        for ( ResourceMetadata<?> md : new ResourceMetadata<?>[] { md1, md2, md3, md4 } ) {
+            assertEquals( Initialized, states.getState( md.getIdentifier() ) );
+        }
+        assertEquals( 4, initOrder.size() );
+        assertEquals( md4.getIdentifier(), initOrder.get( 0 ) );
+        assertEquals( md1.getIdentifier(), initOrder.get( 3 ) );
+        assertFalse( errors.hasErrors() );
+    }
+
+    @Test
+    public void testFailurePropagatesToDependents() {
+        final ResourceMetadata<TestResource> md3 = metadata( "md3" );
+        ResourceMetadata<TestResource> md2 = metadata( "md2", "md3" );
+        ResourceMetadata<TestResource> md1 = metadata( "md1", "md2" );
+        ResourceMetadata<TestResource> other = metadata( "other" );
+        builders.put( md3.getIdentifier(), new ResourceBuilder<TestResource>() {
+            @Override
+            public TestResource build() {
+                throw new IllegalStateException( "broken" );
+            }
+        } );
+
+        initAll( 2, 0 );
+
+        assertEquals( Error, states.getState( md3.getIdentifier() ) );
+        assertEquals( Error, states.getState( md2.getIdentifier() ) );
+        assertEquals( Error, states.getState( md1.getIdentifier() ) );
+        assertEquals( Initialized, states.getState( other.getIdentifier() ) );
+        assertEquals( 1, resources.size() );
+        assertTrue( errors.hasErrors() );
+        assertFalse( errors.getErrors( md3.getIdentifier() ).isEmpty() );
+    }
+
+    @Test
+    public void testTimedOutResourceStaysInErrorState()
+                            throws InterruptedException {
+        final ResourceMetadata<TestResource> slow = metadata( "slow" );
+        ResourceMetadata<TestResource> dependent = metadata( "dependent", "slow" );
+        final CountDownLatch destroyed = new CountDownLatch( 1 );
+        builders.put( slow.getIdentifier(), new ResourceBuilder<TestResource>() {
+            @Override
+            public TestResource build() {
+                // ignores interrupts, like a builder blocked in uninterruptible I/O
+                long end = System.currentTimeMillis() + 1000;
+                while ( System.currentTimeMillis() < end ) {
+                    try {
+                        Thread.sleep( 50 );
+                    } catch ( InterruptedException e ) {
+                        // keep on building
+                    }
+                }
+                return new TestResource( slow ) {
+                    @Override
+                    public void destroy() {
+                        destroyed.countDown();
+                    }
+                };
+            }
+        } );
+
+        long start = System.currentTimeMillis();
+        initAll( 2, 200 );
+        assertTrue( System.currentTimeMillis() - start < 1000 );
+        assertEquals( Error, states.getState( slow.getIdentifier() ) );
+        assertEquals( Error, states.getState( dependent.getIdentifier() ) );
+
+        // the late result must be discarded and must not overwrite the error state
+        assertTrue( destroyed.await( 5, SECONDS ) );
+        assertEquals( Error, states.getState( slow.getIdentifier() ) );
+        assertNull( resources.get( slow.getIdentifier() ) );
+        assertFalse( initOrder.contains( slow.getIdentifier() ) );
+    }
+
+    @Test
+    public void testSequentialInitializationUsesCallingThread() {
+        final ResourceMetadata<TestResource> md2 = metadata( "md2" );
+        ResourceMetadata<TestResource> md1 = metadata( "md1", "md2" );
+        final List<Thread> buildThreads = Collections.synchronizedList( new ArrayList<Thread>() );
+        builders.put( md2.getIdentifier(), new ResourceBuilder<TestResource>() {
+            @Override
+            public TestResource build() {
+                buildThreads.add( Thread.currentThread() );
+                return new TestResource( md2 );
+            }
+        } );
+
+        initAll( 1, 0 );
+
+        assertEquals( Collections.singletonList( Thread.currentThread() ), buildThreads );
+        assertEquals( 2, initOrder.size() );
+        assertEquals( md2.getIdentifier(), initOrder.get( 0 ) );
+        assertEquals( md1.getIdentifier(), initOrder.get( 1 ) );
+        assertEquals( Initialized, states.getState( md1.getIdentifier() ) );
+    }
+
+    private void initAll( int threads, long timeout ) {
+        new ResourceInitializer( graph, prepared, states, errors, resources, timings, threads, timeout ).initAll();
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ResourceMetadata<TestResource> metadata( String id, final String... deps ) {
+        ResourceIdentifier<TestResource> rid = new DefaultResourceIdentifier( ResourceProvider.class, id );
+        DefaultResourceLocation<TestResource> loc = new DefaultResourceLocation<TestResource>( new File( "/tmp" ),
+                                                                                               rid );
+        final AbstractResourceMetadata<TestResource> md = new AbstractResourceMetadata<TestResource>( null, loc,
+                                                                                                      null ) {
+            @Override
+            public ResourceBuilder<TestResource> prepare() {
+                for ( String dep : deps ) {
+                    this.dependencies.add( new DefaultResourceIdentifier( ResourceProvider.class, dep ) );
+                }
+                return null;
+            }
+        };
+        md.prepare();
+        graph.insertNode( md );
+        builders.put( rid, new ResourceBuilder<TestResource>() {
+            @Override
+            public TestResource build() {
+                return new TestResource( md );
+            }
+        } );
+        return md;
+    }
+
+    private class TestResource implements Resource {
+
+        private final ResourceMetadata<TestResource> md;
+
+        TestResource( ResourceMetadata<TestResource> md ) {
+            this.md = md;
+        }
+
+        @Override
+        public ResourceMetadata<TestResource> getMetadata() {
+            return md;
+        }
+
+        @Override
+        public void init() {
+            initOrder.add( md.getIdentifier() );
+        }
+
+        @Override
+        public void destroy() {
+            // nothing to do
+        }
+    }
+
+}
@@ -0,0 +1,451 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.cache;
+
+import static java.lang.Math.min;
+import static org.deegree.feature.persistence.query.Query.QueryHint.HINT_RESOLUTION;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.deegree.commons.tom.gml.property.Property;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.Feature;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.feature.Features;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.property.GenericProperty;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.primitive.Point;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
+import org.slf4j.Logger;
+
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
+import com.vividsolutions.jts.simplify.DouglasPeuckerSimplifier;
+
+/**
+ * Keeps pre-generalized versions of the geometries of stored features for a fixed set of resolutions.
+ * <p>
+ * For every configured resolution (in units of the storage CRS per pixel), geometries are simplified using the
+ * Douglas-Peucker algorithm with the resolution as distance tolerance, so the deviation from the original geometry
+ * stays below one pixel. Generalized geometries are computed on first access (or in advance using
+ * {@link #precompute(Feature)}) and kept with packed coordinates. Geometries that cannot be reduced are not duplicated.
+ * The generalized geometries of at most a configurable number of features are kept (least recently used ones are
+ * discarded first), and they may be discarded by the garbage collector when memory runs low.
+ * </p>
+ * <p>
+ * The level to use for a query is determined from its {@link Query.QueryHint#HINT_RESOLUTION} hint: the coarsest
+ * configured resolution that does not exceed the requested one is chosen. Queries without the hint (or with a finer
+ * resolution than any configured level) return the original geometries. The hint is given in units of the request
+ * CRS, so it is converted into units of the storage CRS using the bounding box of the query first.
+ * </p>
+ *
+ * @see FeatureStore
+ *
+ * @author last edited by: $Author$
+ *
+ * @version $Revision$, $Date$
+ */
+public class GeneralizedGeometryCache {
+
+    private static final Logger LOG = getLogger( GeneralizedGeometryCache.class );
+
+    private static final GeometryFactory PACKED_FAC = new GeometryFactory(
+                                                                           PackedCoordinateSequenceFactory.DOUBLE_FACTORY );
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    private final double[] resolutions;
+
+    private final Map<String, SoftReference<AtomicReferenceArray<Geometry[]>>> fidToLevels;
+
+    /**
+     * Creates a new {@link GeneralizedGeometryCache} instance that keeps the generalized geometries of a default number
+     * of features.
+     *
+     * @param resolutions
+     *            resolutions of the generalization levels (in units of the storage CRS per pixel), must not be
+     *            <code>null</code>, order does not matter, non-positive values are ignored
+     */
+    public GeneralizedGeometryCache( Collection<Double> resolutions ) {
+        this( resolutions, DEFAULT_MAX_ENTRIES );
+    }
+
+    /**
+     * Creates a new {@link GeneralizedGeometryCache} instance that keeps the generalized geometries of the specified
+     * number of features.
+     *
+     * @param resolutions
+     *            resolutions of the generalization levels (in units of the storage CRS per pixel), must not be
+     *            <code>null</code>, order does not matter, non-positive values are ignored
+     * @param maxEntries
+     *            maximum number of features to keep the generalized geometries for
+     */
+    public GeneralizedGeometryCache( Collection<Double> resolutions, int maxEntries ) {
+        fidToLevels = Collections.synchronizedMap( new CacheMap( maxEntries ) );
+        List<Double> valid = new ArrayList<Double>();
+        for ( Double resolution : resolutions ) {
+            if ( resolution != null && resolution > 0 ) {
+                valid.add( resolution );
+            }
+        }
+        this.resolutions = new double[valid.size()];
+        for ( int i = 0; i < this.resolutions.length; i++ ) {
+            this.resolutions[i] = valid.get( i );
+        }
+        Arrays.sort( this.resolutions );
+    }
+
+    /**
+     * Returns the configured resolutions.
+     *
+     * @return resolutions of the generalization levels in ascending order, never <code>null</code>
+     */
+    public double[] getResolutions() {
+        return resolutions.clone();
+    }
+
+    /**
+     * Determines the generalization level to be used for the given query.
+     *
+     * @param query
+     *            query, must not be <code>null</code>
+     * @param storageCrs
+     *            crs of the stored geometries, may be <code>null</code> (the resolution hint is used as is then)
+     * @return index of the generalization level, or <code>-1</code> if the original geometries have to be used
+     */
+    public int getLevel( Query query, ICRS storageCrs ) {
+        Object hint = query.getHint( HINT_RESOLUTION );
+        if ( !( hint instanceof Number ) ) {
+            return -1;
+        }
+        double resolution = ( (Number) hint ).doubleValue();
+        return getLevel( toStorageResolution( resolution, query.getPrefilterBBoxEnvelope(), storageCrs ) );
+    }
+
+    /**
+     * Converts a resolution in units of the request CRS into units of the storage CRS. The ratio between the spans of
+     * the request bounding box and the same box in the storage CRS is used (the smaller one of both axes, so the
+     * deviation still stays below one pixel).
+     *
+     * @param resolution
+     *            resolution in units of the request CRS per pixel
+     * @param requestEnv
+     *            bounding box of the request, may be <code>null</code>
+     * @param storageCrs
+     *            crs of the stored geometries, may be <code>null</code>
+     * @return resolution in units of the storage CRS per pixel, or <code>-1</code>, if it cannot be determined
+     */
+    static double toStorageResolution( double resolution, Envelope requestEnv, ICRS storageCrs ) {
+        if ( requestEnv == null || storageCrs == null || requestEnv.getCoordinateSystem() == null
+             || storageCrs.equals( requestEnv.getCoordinateSystem() ) ) {
+            return resolution;
+        }
+        if ( requestEnv.getSpan0() <= 0 || requestEnv.getSpan1() <= 0 ) {
+            return -1;
+        }
+        try {
+            Envelope storageEnv = new GeometryTransformer( storageCrs ).transform( requestEnv );
+            double ratio = min( storageEnv.getSpan0() / requestEnv.getSpan0(),
+                                storageEnv.getSpan1() / requestEnv.getSpan1() );
+            return ratio > 0 ? resolution * ratio : -1;
+        } catch ( Exception e ) {
+            LOG.debug( "Unable to transform query bbox into storage crs, not using generalized geometries: {}",
+                       e.getMessage() );
+            LOG.trace( "Stack trace:", e );
+            return -1;
+        }
+    }
+
+    /**
+     * Determines the generalization level to be used for the given resolution.
+     *
+     * @param resolution
+     *            requested resolution (in units of the storage CRS per pixel)
+     * @return index of the generalization level, or <code>-1</code> if the original geometries have to be used
+     */
+    public int getLevel( double resolution ) {
+        int level = -1;
+        for ( int i = 0; i < resolutions.length; i++ ) {
+            if ( resolutions[i] <= resolution ) {
+                level = i;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Returns a view of the given feature that uses the geometries of the specified generalization level.
+     *
+     * @param feature
+     *            original feature, must not be <code>null</code>
+     * @param level
+     *            generalization level, <code>-1</code> for the original geometries
+     * @return feature with generalized geometries, may be the original feature (if no generalization applies)
+     */
+    public Feature generalize( Feature feature, int level ) {
+        if ( level < 0 || level >= resolutions.length ) {
+            return feature;
+        }
+        List<Property> props = feature.getProperties();
+        int numGeoms = countGeometries( props );
+        if ( numGeoms == 0 ) {
+            return feature;
+        }
+
+        Geometry[] geoms = getGeometries( feature, props, numGeoms, level );
+        List<Property> newProps = new ArrayList<Property>( props.size() );
+        boolean changed = false;
+        int i = 0;
+        for ( Property prop : props ) {
+            if ( prop.getValue() instanceof Geometry ) {
+                Geometry geom = geoms[i++];
+                if ( geom != prop.getValue() ) {
+                    newProps.add( new GenericProperty( prop.getType(), prop.getName(), geom ) );
+                    changed = true;
+                    continue;
+                }
+            }
+            newProps.add( prop );
+        }
+        if ( !changed ) {
+            return feature;
+        }
+        return feature.getType().newFeature( feature.getId(), newProps, feature.getExtraProperties() );
+    }
+
+    /**
+     * Returns a {@link FeatureInputStream} that generalizes the features of the given stream according to the
+     * resolution hint of the query.
+     *
+     * @param rs
+     *            stream with the original features, must not be <code>null</code>
+     * @param query
+     *            query that produced the stream, must not be <code>null</code>
+     * @param storageCrs
+     *            crs of the stored geometries, may be <code>null</code> (the resolution hint is used as is then)
+     * @return stream with generalized features, may be the given stream (if no generalization applies)
+     */
+    public FeatureInputStream generalize( FeatureInputStream rs, Query query, ICRS storageCrs ) {
+        int level = getLevel( query, storageCrs );
+        if ( level < 0 ) {
+            return rs;
+        }
+        LOG.debug( "Using generalization level {} (resolution {}).", level, resolutions[level] );
+        return new GeneralizedFeatureInputStream( rs, level );
+    }
+
+    /**
+     * Computes the generalized geometries of the given feature for all levels.
+     *
+     * @param feature
+     *            feature, must not be <code>null</code>
+     */
+    public void precompute( Feature feature ) {
+        List<Property> props = feature.getProperties();
+        int numGeoms = countGeometries( props );
+        if ( numGeoms == 0 || feature.getId() == null ) {
+            return;
+        }
+        for ( int level = 0; level < resolutions.length; level++ ) {
+            getGeometries( feature, props, numGeoms, level );
+        }
+    }
+
+    /**
+     * Removes the generalized geometries of the specified features.
+     *
+     * @param fids
+     *            ids of the features, must not be <code>null</code>
+     */
+    public void invalidate( Collection<String> fids ) {
+        for ( String fid : fids ) {
+            fidToLevels.remove( fid );
+        }
+    }
+
+    /**
+     * Removes all generalized geometries.
+     */
+    public void clear() {
+        fidToLevels.clear();
+    }
+
+    private Geometry[] getGeometries( Feature feature, List<Property> props, int numGeoms, int level ) {
+        String fid = feature.getId();
+        if ( fid == null ) {
+            return generalize( props, numGeoms, resolutions[level] );
+        }
+        AtomicReferenceArray<Geometry[]> levels;
+        synchronized ( fidToLevels ) {
+            SoftReference<AtomicReferenceArray<Geometry[]>> ref = fidToLevels.get( fid );
+            levels = ref != null ? ref.get() : null;
+            if ( levels == null ) {
+                levels = new AtomicReferenceArray<Geometry[]>( resolutions.length );
+                fidToLevels.put( fid, new SoftReference<AtomicReferenceArray<Geometry[]>>( levels ) );
+            }
+        }
+        Geometry[] geoms = levels.get( level );
+        if ( geoms == null || geoms.length != numGeoms ) {
+            geoms = generalize( props, numGeoms, resolutions[level] );
+            levels.set( level, geoms );
+        }
+        return geoms;
+    }
+
+    private Geometry[] generalize( List<Property> props, int numGeoms, double tolerance ) {
+        Geometry[] geoms = new Geometry[numGeoms];
+        int i = 0;
+        for ( Property prop : props ) {
+            if ( prop.getValue() instanceof Geometry ) {
+                geoms[i++] = generalize( (Geometry) prop.getValue(), tolerance );
+            }
+        }
+        return geoms;
+    }
+
+    private Geometry generalize( Geometry geom, double tolerance ) {
+        if ( geom instanceof Point || !( geom instanceof AbstractDefaultGeometry ) ) {
+            return geom;
+        }
+        try {
+            AbstractDefaultGeometry defaultGeom = (AbstractDefaultGeometry) geom;
+            com.vividsolutions.jts.geom.Geometry jtsGeom = defaultGeom.getJTSGeometry();
+            com.vividsolutions.jts.geom.Geometry simplified = DouglasPeuckerSimplifier.simplify( jtsGeom, tolerance );
+            if ( simplified.isEmpty() || simplified.getNumPoints() >= jtsGeom.getNumPoints() ) {
+                return geom;
+            }
+            Geometry result = defaultGeom.createFromJTS( PACKED_FAC.createGeometry( simplified ),
+                                                         geom.getCoordinateSystem() );
+            return result != null ? result : geom;
+        } catch ( Exception e ) {
+            LOG.debug( "Unable to generalize geometry: {}", e.getMessage() );
+            LOG.trace( "Stack trace:", e );
+            return geom;
+        }
+    }
+
+    private static int countGeometries( List<Property> props ) {
+        int numGeoms = 0;
+        for ( Property prop : props ) {
+            if ( prop.getValue() instanceof Geometry ) {
+                numGeoms++;
+            }
+        }
+        return numGeoms;
+    }
+
+    private static class CacheMap extends LinkedHashMap<String, SoftReference<AtomicReferenceArray<Geometry[]>>> {
+
+        private static final long serialVersionUID = -2705425934613245376L;
+
+        private final int maxEntries;
+
+        private CacheMap( int maxEntries ) {
+            super( 16, 0.75f, true );
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry( Entry<String, SoftReference<AtomicReferenceArray<Geometry[]>>> eldest ) {
+            return size() > maxEntries;
+        }
+    }
+
+    private class GeneralizedFeatureInputStream implements FeatureInputStream {
+
+        private final FeatureInputStream rs;
+
+        private final int level;
+
+        GeneralizedFeatureInputStream( FeatureInputStream rs, int level ) {
+            this.rs = rs;
+            this.level = level;
+        }
+
+        @Override
+        public Iterator<Feature> iterator() {
+            final Iterator<Feature> iter = rs.iterator();
+            return new Iterator<Feature>() {
+
+                @Override
+                public boolean hasNext() {
+                    return iter.hasNext();
+                }
+
+                @Override
+                public Feature next() {
+                    return generalize( iter.next(), level );
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            rs.close();
+        }
+
+        @Override
+        public FeatureCollection toCollection() {
+            return Features.toCollection( this );
+        }
+
+        @Override
+        public int count() {
+            return rs.count();
+        }
+    }
+}
@@ -33,28 +33,22 @@
 
  e-mail: info@deegree.org
  ----------------------------------------------------------------------------*/
-
 package org.deegree.feature.persistence.lock;
 
-import static org.deegree.commons.utils.JDBCUtils.close;
-import static org.deegree.commons.utils.JDBCUtils.rollbackQuietly;
-
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
-import org.deegree.commons.jdbc.ResultSetIterator;
 import org.deegree.commons.utils.CloseableIterator;
-import org.deegree.db.ConnectionProvider;
 import org.deegree.feature.Feature;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.protocol.wfs.getfeature.TypeName;
@@ -62,7 +56,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * {@link Lock} implementation that is based on an SQL database.
+ * {@link Lock} implementation that is managed by the in-memory lock table of a {@link DefaultLockManager}.
  * 
  * @see DefaultLockManager
  * 
@@ -81,41 +75,36 @@ class DefaultLock implements Lock {
 
     private final Date acquired;
 
-    private Date expires;
+    private volatile long expires;
+
+    private final Set<String> lockedFids = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
+
+    private final Set<String> failedFids = Collections.newSetFromMap( new ConcurrentHashMap<String, Boolean>() );
 
-    private final int numFailed;
+    private volatile boolean released;
 
-    private int numLocked;
+    // guarded by the monitor of the lock
+    private boolean pending;
 
-    private ConnectionProvider connection;
+    private volatile boolean written;
 
     /**
      * Creates a new {@link DefaultLock} instance.
      * 
      * @param manager
      *            corresponding {@link DefaultLockManager} instance, must not be null
-     * @param jdbcConnId
-     *            id of the JDBC connection, must not be null
      * @param id
      *            lock id, must not be null
      * @param acquired
      *            time that the lock has been acquired, never null
      * @param expires
-     *            time that the lock will expire, never null
-     * @param numLocked
-     *            number of locked features
-     * @param numFailed
-     *            number of features that have been requested to be locked, but which couldn't
+     *            time that the lock will expire (in milliseconds since the epoch)
      */
-    DefaultLock( DefaultLockManager manager, ConnectionProvider connection, String id, Date acquired, Date expires,
-                 int numLocked, int numFailed ) {
+    DefaultLock( DefaultLockManager manager, String id, Date acquired, long expires ) {
         this.manager = manager;
-        this.connection = connection;
         this.id = id;
         this.acquired = acquired;
         this.expires = expires;
-        this.numLocked = numLocked;
-        this.numFailed = numFailed;
     }
 
     @Override
@@ -128,260 +117,161 @@ class DefaultLock implements Lock {
         return acquired.getTime();
     }
 
+    /**
+     * Returns the time that the lock will expire.
+     * 
+     * @return expiry date (in milliseconds since the epoch)
+     */
+    long getExpiryDate() {
+        return expires;
+    }
+
     @Override
     public void setExpiryDate( long expiryDate )
                             throws FeatureStoreException {
-        synchronized ( manager ) {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                conn.setAutoCommit( false );
-                stmt = conn.prepareStatement( "UPDATE LOCKS SET EXPIRES=? WHERE ID=?" );
-                stmt.setTimestamp( 1, new Timestamp( expiryDate ) );
-                stmt.setString( 2, id );
-                if ( stmt.executeUpdate() != 1 ) {
-                    String msg = "Could not reset expiry date for lock with id " + id;
-                    throw new FeatureStoreException( msg );
-                }
-                expires = new Date( expiryDate );
-                conn.commit();
-            } catch ( SQLException e ) {
-                rollbackQuietly( conn );
-                String msg = "Could not reset expiry date for lock with id " + id;
-                LOG.debug( msg, e );
-                throw new FeatureStoreException( msg, e );
-            } finally {
-                close( rs, stmt, conn, LOG );
-            }
+        if ( released ) {
+            String msg = "Could not reset expiry date for lock with id " + id;
+            throw new FeatureStoreException( msg );
         }
+        expires = expiryDate;
+        manager.updateExpiryDate( this );
     }
 
     @Override
     public int getNumLocked() {
-        return numLocked;
+        return lockedFids.size();
     }
 
     @Override
     public int getNumFailedToLock() {
-        return numFailed;
+        return failedFids.size();
     }
 
     @Override
     public CloseableIterator<String> getLockedFeatures()
                             throws FeatureStoreException {
-
-        CloseableIterator<String> fidIter = null;
-        synchronized ( manager ) {
-            manager.releaseExpiredLocks();
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT FID FROM LOCKED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                rs = stmt.executeQuery();
-
-                fidIter = new ResultSetIterator<String>( rs, conn, stmt ) {
-                    @Override
-                    protected String createElement( ResultSet rs )
-                                            throws SQLException {
-                        return rs.getString( 1 );
-                    }
-                };
-            } catch ( SQLException e ) {
-                close( rs, stmt, conn, LOG );
-                String msg = "Could not retrieve ids of locked features: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new FeatureStoreException( msg, e );
-            }
+        if ( isExpired( System.currentTimeMillis() ) ) {
+            return new SnapshotIterator<String>( Collections.<String> emptyList() );
         }
-        return fidIter;
+        return new SnapshotIterator<String>( lockedFids );
     }
 
     @Override
     public CloseableIterator<String> getFailedToLockFeatures()
                             throws FeatureStoreException {
-        CloseableIterator<String> fidIter = null;
-        synchronized ( manager ) {
-            manager.releaseExpiredLocks();
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT FID FROM LOCK_FAILED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                rs = stmt.executeQuery();
-
-                fidIter = new ResultSetIterator<String>( rs, conn, stmt ) {
-                    @Override
-                    protected String createElement( ResultSet rs )
-                                            throws SQLException {
-                        return rs.getString( 1 );
-                    }
-                };
-            } catch ( SQLException e ) {
-                close( rs, stmt, conn, LOG );
-                String msg = "Could not retrieve ids of failed to lock features: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new FeatureStoreException( msg, e );
-            }
+        if ( isExpired( System.currentTimeMillis() ) ) {
+            return new SnapshotIterator<String>( Collections.<String> emptyList() );
         }
-        return fidIter;
+        return new SnapshotIterator<String>( failedFids );
     }
 
     @Override
     public boolean isLocked( String fid )
                             throws FeatureStoreException {
-        boolean isLocked = false;
-        synchronized ( manager ) {
-            manager.releaseExpiredLocks();
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT COUNT(*) FROM LOCKED_FIDS WHERE FID=? AND LOCK_ID=?" );
-                stmt.setString( 1, fid );
-                stmt.setString( 2, id );
-                rs = stmt.executeQuery();
-                rs.next();
-                int count = rs.getInt( 1 );
-                isLocked = count > 0;
-            } catch ( SQLException e ) {
-                String msg = "Could not retrieve active locks: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new RuntimeException( msg, e );
-            } finally {
-                close( rs, stmt, conn, LOG );
-            }
-        }
-        return isLocked;
+        return manager.isLockedBy( fid, this );
     }
 
     @Override
     public void release()
                             throws FeatureStoreException {
-        synchronized ( manager ) {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            try {
-                // delete entries from LOCKED_FIDS table
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                stmt.execute();
-                stmt.close();
-
-                // delete entries from LOCK_FAILED_FIDS table
-                stmt = conn.prepareStatement( "DELETE FROM LOCK_FAILED_FIDS WHERE LOCK_ID=?" );
-                stmt.setString( 1, id );
-                stmt.execute();
-                stmt.close();
-
-                // delete entry from LOCK table
-                stmt = conn.prepareStatement( "DELETE FROM LOCKS WHERE ID=?" );
-                stmt.setString( 1, id );
-                stmt.execute();
-
-                conn.commit();
-            } catch ( SQLException e ) {
-                throw new FeatureStoreException( e.getMessage(), e );
-            } finally {
-                close( null, stmt, conn, LOG );
-            }
-        }
+        manager.release( this );
     }
 
     @Override
     public void release( String fid )
                             throws FeatureStoreException {
-
-        synchronized ( manager ) {
-            if ( isLocked( fid ) ) {
-                Connection conn = null;
-                PreparedStatement stmt = null;
-                ResultSet rs = null;
-                try {
-                    conn = connection.getConnection();
-                    stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE FID=?" );
-                    stmt.setString( 1, fid );
-                    stmt.executeUpdate();
-                    conn.commit();
-                    --numLocked;
-                } catch ( SQLException e ) {
-                    String msg = "Could not release locked feature: " + e.getMessage();
-                    LOG.debug( msg, e );
-                    throw new RuntimeException( msg, e );
-                } finally {
-                    close( rs, stmt, conn, LOG );
-                }
-            }
-        }
+        manager.release( this, Collections.singletonList( fid ) );
     }
 
     @Override
     public void release( QName ftName, Filter filter )
                             throws FeatureStoreException {
 
-        synchronized ( this ) {
-
-            Query query = new Query( new TypeName[] { new TypeName( ftName, null ) }, filter, null, null, null );
-
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                // TODO don't actually fetch the feature collection, but only the fids of the features
-                FeatureCollection fc = manager.getStore().query( query ).toCollection();
-
-                conn = connection.getConnection();
-                conn.setAutoCommit( false );
-
-                // delete entries in LOCKED_FIDS table
-                stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE FID=? AND LOCK_ID=?" );
-
-                for ( Feature feature : fc ) {
-                    String fid = feature.getId();
-                    stmt.setString( 1, fid );
-                    stmt.setString( 2, id );
-                    int deleted = stmt.executeUpdate();
-                    if ( deleted != 1 ) {
-                        LOG.error( "Internal error. Locked fid entry has not actually been removed from LOCKED_FIDS." );
-                    }
-                }
-                conn.commit();
-            } catch ( SQLException e ) {
-                try {
-                    if ( conn != null ) {
-                        conn.rollback();
-                    }
-                } catch ( SQLException e1 ) {
-                    // TODO Auto-generated catch block
-                    e1.printStackTrace();
-                }
-                throw new FeatureStoreException( e.getMessage(), e );
-            } catch ( FilterEvaluationException e ) {
-                LOG.debug( "Stack trace:", e );
-                throw new FeatureStoreException( e );
-            } finally {
-                try {
-                    if ( conn != null ) {
-                        conn.setAutoCommit( true );
-                    }
-                } catch ( SQLException e ) {
-                    e.printStackTrace();
-                }
-                close( rs, stmt, conn, LOG );
+        Query query = new Query( new TypeName[] { new TypeName( ftName, null ) }, filter, null, null, null );
+        List<String> fids = new ArrayList<String>();
+        FeatureInputStream rs = null;
+        try {
+            // TODO don't actually fetch the features, but only the fids of the features
+            rs = manager.getStore().query( query );
+            for ( Feature feature : rs ) {
+                fids.add( feature.getId() );
+            }
+        } catch ( FilterEvaluationException e ) {
+            LOG.debug( "Stack trace:", e );
+            throw new FeatureStoreException( e );
+        } finally {
+            if ( rs != null ) {
+                rs.close();
             }
         }
+        manager.release( this, fids );
+    }
+
+    /**
+     * Returns whether the lock has expired (or has been released).
+     * 
+     * @param now
+     *            current time (in milliseconds since the epoch)
+     * @return <code>true</code>, if the lock has expired, <code>false</code> otherwise
+     */
+    boolean isExpired( long now ) {
+        return released || expires <= now;
+    }
+
+    boolean isReleased() {
+        return released;
+    }
+
+    void setReleased() {
+        released = true;
+    }
+
+    /**
+     * Returns whether the lock is still being acquired, i.e. its features have not been queued for writing to the
+     * lock database yet. Must be called while holding the monitor of the lock.
+     */
+    boolean isPending() {
+        return pending;
+    }
+
+    void setPending( boolean pending ) {
+        this.pending = pending;
+    }
+
+    /**
+     * Returns whether the features of the lock have been written to the lock database (or writing them has been
+     * attempted).
+     */
+    boolean isWritten() {
+        return written;
+    }
+
+    void setWritten() {
+        written = true;
+    }
+
+    Set<String> getLockedFids() {
+        return lockedFids;
+    }
+
+    void addLocked( String fid ) {
+        lockedFids.add( fid );
+    }
+
+    boolean removeLocked( String fid ) {
+        return lockedFids.remove( fid );
+    }
+
+    Set<String> getFailedFids() {
+        return failedFids;
+    }
+
+    void addFailed( String fid ) {
+        failedFids.add( fid );
     }
 
     @Override
     public String toString() {
-        return "{id=" + id + ",acquired=" + acquired + ",expires=" + expires + "}";
+        return "{id=" + id + ",acquired=" + acquired + ",expires=" + new Date( expires ) + "}";
     }
 }
@@ -33,12 +33,13 @@
 
  e-mail: info@deegree.org
  ----------------------------------------------------------------------------*/
-
 package org.deegree.feature.persistence.lock;
 
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
 import static org.deegree.commons.tom.datetime.ISO8601Converter.formatDateTime;
 import static org.deegree.commons.utils.JDBCUtils.close;
+import static org.deegree.commons.utils.JDBCUtils.rollbackQuietly;
 import static org.deegree.feature.i18n.Messages.getMessage;
 
 import java.sql.Connection;
@@ -48,27 +49,52 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import org.deegree.commons.jdbc.ResultSetIterator;
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.tom.datetime.DateTime;
 import org.deegree.commons.utils.CloseableIterator;
 import org.deegree.commons.utils.kvp.InvalidParameterValueException;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.feature.Feature;
-import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.filter.FilterEvaluationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * {@link LockManager} implementation that is based on an SQL database.
+ * {@link LockManager} implementation that keeps the active locks in memory and persists them in an SQL database.
+ * <p>
+ * The lock table is indexed by feature id, so lock checks (e.g. {@link #isFeatureModifiable(String, String)}) don't
+ * involve the database at all. Changes are written to the lock database in batches by a background thread
+ * (write-behind), so they survive a restart of the VM. The only synchronous database access is the creation of the
+ * lock entry (the lock id is generated by the database). Expired locks are ignored immediately and removed by a
+ * periodic sweep.
+ * </p>
+ * <p>
+ * The changes of a lock are queued while holding its monitor, a lock that is released while it is still being
+ * acquired is deleted from the database after its features have been queued. If a change cannot be written, the
+ * feature tables of the lock database are rewritten from the in-memory lock table.
+ * </p>
+ * <p>
+ * Several stores may use the same lock database, every lock row records the id of the store it belongs to. A manager
+ * only loads and rewrites the locks of its own store.
+ * </p>
  * <p>
  * TODO Currently this class is only tested with Derby 10, h2, but it should be easy to make it work with PostGIS,
  * Oracle and other SQL DBs.
@@ -83,23 +109,83 @@ public class DefaultLockManager implements LockManager {
 
     private static final Logger LOG = LoggerFactory.getLogger( DefaultLockManager.class );
 
+    private static final int BATCH_SIZE = 1000;
+
+    private static final long SWEEP_INTERVAL = 30;
+
+    private static final long RESYNC_DELAY = 10;
+
+    // restricts the rows of the feature tables to the locks of a store (given as parameter)
+    private static final String OWN_LOCKS = "LOCK_ID IN (SELECT ID FROM LOCKS WHERE STORE_ID=?)";
+
     private FeatureStore store;
 
     private ConnectionProvider connection;
 
+    private final String storeId;
+
+    private final ConcurrentMap<String, DefaultLock> idToLock = new ConcurrentHashMap<String, DefaultLock>();
+
+    private final ConcurrentMap<String, DefaultLock> fidToLock = new ConcurrentHashMap<String, DefaultLock>();
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final AtomicBoolean resyncScheduled = new AtomicBoolean();
+
     /**
-     * Creates a new {@link DefaultLockManager} for the given {@link FeatureStore}.
+     * Creates a new {@link DefaultLockManager} for the given {@link FeatureStore}. The locks are stored under the id of
+     * the store's resource (stores without metadata share the empty id).
      * 
      * @param store
-     * @param jdbcConnId
+     * @param connection
      * @throws FeatureStoreException
      *             if the initialization of the locking backend fails
      */
     public DefaultLockManager( FeatureStore store, ConnectionProvider connection )
                             throws FeatureStoreException {
+        this( store, connection, getStoreId( store ) );
+    }
+
+    /**
+     * Creates a new {@link DefaultLockManager} for the given {@link FeatureStore}.
+     * 
+     * @param store
+     * @param connection
+     * @param storeId
+     *            identifies the locks of the store in the lock database, must not be <code>null</code>
+     * @throws FeatureStoreException
+     *             if the initialization of the locking backend fails
+     */
+    public DefaultLockManager( FeatureStore store, ConnectionProvider connection, String storeId )
+                            throws FeatureStoreException {
         this.store = store;
         this.connection = connection;
+        this.storeId = storeId;
+        this.executor = new ScheduledThreadPoolExecutor( 1, new ThreadFactory() {
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "lock-manager" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy( false );
         initDatabase();
+        loadLocks();
+        releaseExpiredLocks();
+        executor.scheduleWithFixedDelay( new Runnable() {
+            @Override
+            public void run() {
+                releaseExpiredLocks();
+            }
+        }, SWEEP_INTERVAL, SWEEP_INTERVAL, SECONDS );
+    }
+
+    private static String getStoreId( FeatureStore store ) {
+        if ( store.getMetadata() == null ) {
+            return "";
+        }
+        return store.getMetadata().getIdentifier().getId();
     }
 
     /**
@@ -111,6 +197,24 @@ public class DefaultLockManager implements LockManager {
         return store;
     }
 
+    /**
+     * Stops the expiry sweep and waits until all pending changes have been written to the lock database. Changes after
+     * this call are written synchronously.
+     */
+    public void destroy() {
+        executor.shutdown();
+        try {
+            if ( !executor.awaitTermination( 30, SECONDS ) ) {
+                LOG.warn( "Timeout while writing pending changes to the lock database." );
+            }
+        } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+        }
+        if ( resyncScheduled.get() ) {
+            new ResyncTask().run();
+        }
+    }
+
     private void initDatabase()
                             throws FeatureStoreException {
 
@@ -128,7 +232,8 @@ public class DefaultLockManager implements LockManager {
                 String sql = "CREATE TABLE LOCKS (";
                 sql += "ID INT NOT NULL GENERATED ALWAYS AS IDENTITY PRIMARY KEY,";
                 sql += "ACQUIRED TIMESTAMP NOT NULL,";
-                sql += "EXPIRES TIMESTAMP NOT NULL";
+                sql += "EXPIRES TIMESTAMP NOT NULL,";
+                sql += "STORE_ID VARCHAR(255)";
                 sql += ")";
                 stmt.execute( sql );
             } else {
@@ -136,6 +241,20 @@ public class DefaultLockManager implements LockManager {
             }
             rs.close();
 
+            rs = dbMetaData.getColumns( null, null, "LOCKS", "STORE_ID" );
+            if ( !rs.next() ) {
+                // locks of previous versions cannot be assigned to a store, they would keep their features locked
+                LOG.info( "Adding column 'STORE_ID' to table 'LOCKS', dropping existing locks." );
+                if ( stmt == null ) {
+                    stmt = conn.createStatement();
+                }
+                dropTableContents( conn, stmt, "LOCKED_FIDS" );
+                dropTableContents( conn, stmt, "LOCK_FAILED_FIDS" );
+                stmt.executeUpdate( "DELETE FROM LOCKS" );
+                stmt.execute( "ALTER TABLE LOCKS ADD COLUMN STORE_ID VARCHAR(255)" );
+            }
+            rs.close();
+
             rs = dbMetaData.getTables( null, null, "LOCKED_FIDS", new String[] { "TABLE" } );
             if ( !rs.next() ) {
                 LOG.debug( "Creating table 'LOCKED_FIDS'." );
@@ -176,341 +295,524 @@ public class DefaultLockManager implements LockManager {
         }
     }
 
-    @Override
-    public Lock acquireLock( List<Query> queries, boolean mustLockAll, long expireTimeout )
-                            throws FeatureStoreException, OWSException {
+    private static void dropTableContents( Connection conn, Statement stmt, String table )
+                            throws SQLException {
+        ResultSet rs = conn.getMetaData().getTables( null, null, table, new String[] { "TABLE" } );
+        try {
+            if ( rs.next() ) {
+                stmt.executeUpdate( "DELETE FROM " + table );
+            }
+        } finally {
+            rs.close();
+        }
+    }
 
-        Lock lock = null;
+    private void loadLocks()
+                            throws FeatureStoreException {
 
-        synchronized ( this ) {
-            releaseExpiredLocks();
+        LOG.debug( "Loading active locks from lock database." );
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = connection.getConnection();
+            stmt = conn.prepareStatement( "SELECT ID,ACQUIRED,EXPIRES FROM LOCKS WHERE STORE_ID=?" );
+            stmt.setString( 1, storeId );
+            rs = stmt.executeQuery();
+            while ( rs.next() ) {
+                String lockId = rs.getString( 1 );
+                Date acquired = new Date( rs.getTimestamp( 2 ).getTime() );
+                long expires = rs.getTimestamp( 3 ).getTime();
+                DefaultLock lock = new DefaultLock( this, lockId, acquired, expires );
+                lock.setWritten();
+                idToLock.put( lockId, lock );
+            }
+            rs.close();
+            stmt.close();
+
+            stmt = conn.prepareStatement( "SELECT LOCK_ID,FID FROM LOCKED_FIDS WHERE " + OWN_LOCKS );
+            stmt.setString( 1, storeId );
+            rs = stmt.executeQuery();
+            while ( rs.next() ) {
+                DefaultLock lock = idToLock.get( rs.getString( 1 ) );
+                if ( lock != null ) {
+                    String fid = rs.getString( 2 );
+                    lock.addLocked( fid );
+                    fidToLock.put( fid, lock );
+                }
+            }
+            rs.close();
+            stmt.close();
+
+            stmt = conn.prepareStatement( "SELECT LOCK_ID,FID FROM LOCK_FAILED_FIDS WHERE " + OWN_LOCKS );
+            stmt.setString( 1, storeId );
+            rs = stmt.executeQuery();
+            while ( rs.next() ) {
+                DefaultLock lock = idToLock.get( rs.getString( 1 ) );
+                if ( lock != null ) {
+                    lock.addFailed( rs.getString( 2 ) );
+                }
+            }
+        } catch ( SQLException e ) {
+            String msg = "Could not load active locks: " + e.getMessage();
+            LOG.error( msg, e );
+            throw new FeatureStoreException( msg, e );
+        } finally {
+            close( rs, stmt, conn, LOG );
+        }
+        LOG.debug( "Loaded " + idToLock.size() + " lock(s) on " + fidToLock.size() + " feature(s)." );
+    }
 
-            Connection conn = null;
-            PreparedStatement insertLockstmt = null;
-            PreparedStatement checkStmt = null;
-            PreparedStatement lockedStmt = null;
-            PreparedStatement failedToLockStmt = null;
-            ResultSet rs = null;
+    @Override
+    public Lock acquireLock( List<Query> queries, boolean mustLockAll, long expireTimeout )
+                            throws FeatureStoreException, OWSException {
 
+        Set<String> fids = new LinkedHashSet<String>();
+        for ( Query query : queries ) {
+            FeatureInputStream rs = null;
             try {
-                conn = connection.getConnection();
-                conn.setAutoCommit( false );
-
-                // create entry in LOCKS table
-                insertLockstmt = conn.prepareStatement( "INSERT INTO LOCKS (ACQUIRED,EXPIRES) VALUES (?,?)",
-                                                        Statement.RETURN_GENERATED_KEYS );
-                Date acquired = new Date();
-                Date expires = new Date( acquired.getTime() + expireTimeout );
-                insertLockstmt.setTimestamp( 1, new Timestamp( acquired.getTime() ) );
-                insertLockstmt.setTimestamp( 2, new Timestamp( expires.getTime() ) );
-                insertLockstmt.execute();
-
-                rs = insertLockstmt.getGeneratedKeys();
-                rs.next();
-                int lockId = rs.getInt( 1 );
-                rs.close();
-                rs = null;
-
-                int numLocked = 0;
-                int numFailed = 0;
-
-                for ( Query query : queries ) {
-                    FeatureCollection fc = store.query( query ).toCollection();
-
-                    // create entries in LOCKED_FIDS/LOCK_FAILED_FIDS tables
-                    checkStmt = conn.prepareStatement( "SELECT LOCK_ID FROM LOCKED_FIDS WHERE FID=?" );
-                    lockedStmt = conn.prepareStatement( "INSERT INTO LOCKED_FIDS (LOCK_ID, FID) VALUES (?,?)" );
-                    failedToLockStmt = conn.prepareStatement( "INSERT INTO LOCK_FAILED_FIDS (LOCK_ID, FID) VALUES (?,?)" );
-
-                    for ( Feature feature : fc ) {
-                        String fid = feature.getId();
-                        int currentLockId = -1;
-
-                        // check if feature is locked already
-                        checkStmt.setString( 1, fid );
-                        rs = checkStmt.executeQuery();
-                        if ( rs.next() ) {
-                            currentLockId = rs.getInt( 1 );
-                        }
-                        rs.close();
-
-                        rs = null;
-                        if ( currentLockId != lockId ) {
-                            if ( currentLockId != -1 ) {
-                                if ( mustLockAll ) {
-                                    conn.rollback();
-                                    checkStmt = conn.prepareStatement( "SELECT A.ACQUIRED,A.EXPIRES FROM LOCKS A INNER JOIN LOCKED_FIDS B ON A.ID=B.LOCK_ID WHERE B.FID=?" );
-                                    checkStmt.setString( 1, fid );
-                                    rs = checkStmt.executeQuery();
-                                    rs.next();
-                                    Timestamp acquired2 = rs.getTimestamp( 1 );
-                                    Timestamp expires2 = rs.getTimestamp( 2 );
-                                    rs.close();
-                                    String msg = getMessage( "LOCK_CANNOT_LOCK_ALL", fid,
-                                                             formatDateTime( new DateTime( expires2, null ) ),
-                                                             formatDateTime( new DateTime( acquired2, null ) ) );
-                                    throw new OWSException( msg, NO_APPLICABLE_CODE );
-                                }
-                                failedToLockStmt.setInt( 1, lockId );
-                                failedToLockStmt.setString( 2, fid );
-                                failedToLockStmt.execute();
-                                numFailed++;
-                            } else {
-                                lockedStmt.setInt( 1, lockId );
-                                lockedStmt.setString( 2, fid );
-                                lockedStmt.execute();
-                                numLocked++;
-                            }
-                        }
-                    }
-                }
-                conn.commit();
-                lock = new DefaultLock( this, connection, "" + lockId, acquired, expires, numLocked, numFailed );
-            } catch ( SQLException e ) {
-                try {
-                    if ( conn != null ) {
-                        conn.rollback();
-                    }
-                } catch ( SQLException e1 ) {
-                    LOG.warn( "Error performing rollback on lock db: " + e.getMessage(), e );
+                rs = store.query( query );
+                for ( Feature feature : rs ) {
+                    fids.add( feature.getId() );
                 }
-                throw new FeatureStoreException( e.getMessage(), e );
             } catch ( FilterEvaluationException e ) {
                 LOG.debug( "Stack trace:", e );
                 throw new FeatureStoreException( e );
             } finally {
-                try {
-                    if ( conn != null ) {
-                        conn.setAutoCommit( true );
-                    }
-                } catch ( SQLException e ) {
-                    LOG.warn( "Error resetting auto commit on lock db connection: " + e.getMessage(), e );
-                }
-                close( rs, insertLockstmt, conn, LOG );
-                if ( checkStmt != null ) {
-                    try {
-                        checkStmt.close();
-                    } catch ( SQLException e ) {
-                        LOG.error( "Unable to close Statement: " + e.getMessage() );
-                    }
-                }
-                if ( lockedStmt != null ) {
-                    try {
-                        lockedStmt.close();
-                    } catch ( SQLException e ) {
-                        LOG.error( "Unable to close Statement: " + e.getMessage() );
-                    }
-                }
-                if ( failedToLockStmt != null ) {
-                    try {
-                        failedToLockStmt.close();
-                    } catch ( SQLException e ) {
-                        LOG.error( "Unable to close Statement: " + e.getMessage() );
-                    }
+                if ( rs != null ) {
+                    rs.close();
                 }
             }
         }
+
+        Date acquired = new Date();
+        long expires = acquired.getTime() + expireTimeout;
+        String lockId = insertLock( acquired.getTime(), expires );
+        DefaultLock lock = new DefaultLock( this, lockId, acquired, expires );
+        // releasing the lock does not touch the database until the features have been queued
+        lock.setPending( true );
+        idToLock.put( lockId, lock );
+
+        List<String> failed = new ArrayList<String>();
+        for ( String fid : fids ) {
+            DefaultLock holder = lock( fid, lock, acquired.getTime() );
+            if ( holder == null ) {
+                lock.addLocked( fid );
+            } else if ( mustLockAll ) {
+                release( lock );
+                finishAcquisition( lock, failed );
+                DateTime holderExpires = new DateTime( new Date( holder.getExpiryDate() ), null );
+                DateTime holderAcquired = new DateTime( new Date( holder.getAcquistionDate() ), null );
+                String msg = getMessage( "LOCK_CANNOT_LOCK_ALL", fid, formatDateTime( holderExpires ),
+                                         formatDateTime( holderAcquired ) );
+                throw new OWSException( msg, NO_APPLICABLE_CODE );
+            } else {
+                lock.addFailed( fid );
+                failed.add( fid );
+            }
+        }
+        LOG.debug( "Lock " + lockId + ": locked " + lock.getNumLocked() + " feature(s), failed to lock "
+                   + failed.size() + " feature(s)." );
+        finishAcquisition( lock, failed );
         return lock;
     }
 
-    @Override
-    public CloseableIterator<Lock> getActiveLocks() {
+    /**
+     * Queues the features of a newly acquired lock for writing, or the deletion of the lock, if it has been released
+     * during the acquisition.
+     */
+    private void finishAcquisition( DefaultLock lock, List<String> failed ) {
+        synchronized ( lock ) {
+            lock.setPending( false );
+            if ( lock.isReleased() ) {
+                deleteLock( lock.getId() );
+            } else {
+                writeFids( lock, new ArrayList<String>( lock.getLockedFids() ), failed );
+            }
+        }
+    }
 
-        CloseableIterator<Lock> lockIter = null;
+    /**
+     * Assigns the specified feature to the given lock, unless it is held by another active lock.
+     * 
+     * @return <code>null</code>, if the feature is now locked by the given lock, otherwise the active lock that holds
+     *         the feature
+     */
+    private DefaultLock lock( String fid, DefaultLock lock, long now ) {
+        while ( true ) {
+            DefaultLock holder = fidToLock.putIfAbsent( fid, lock );
+            if ( holder == null || holder == lock ) {
+                return null;
+            }
+            if ( !holder.isExpired( now ) ) {
+                return holder;
+            }
+            release( holder );
+        }
+    }
 
-        synchronized ( this ) {
-            releaseExpiredLocks();
-            Connection conn = null;
-            Statement stmt = null;
-            ResultSet rs = null;
-            final DefaultLockManager manager = this;
-            try {
-                conn = connection.getConnection();
-                LOG.debug( "Using connection: " + conn );
-                stmt = conn.createStatement();
-                rs = stmt.executeQuery( "SELECT ID,ACQUIRED,EXPIRES FROM LOCKS" );
-                lockIter = new ResultSetIterator<Lock>( rs, conn, stmt ) {
-                    @Override
-                    protected Lock createElement( ResultSet rs )
-                                            throws SQLException {
-                        String lockId = rs.getString( 1 );
-                        Timestamp acquired = rs.getTimestamp( 2 );
-                        Timestamp expires = rs.getTimestamp( 3 );
-
-                        Statement stmt = rs.getStatement().getConnection().createStatement();
-                        ResultSet rs2 = stmt.executeQuery( "SELECT COUNT(*) FROM LOCKED_FIDS WHERE LOCK_ID=" + lockId );
-                        rs2.next();
-                        int numLocked = rs2.getInt( 1 );
-                        rs2 = stmt.executeQuery( "SELECT COUNT(*) FROM LOCK_FAILED_FIDS WHERE LOCK_ID=" + lockId );
-                        rs2.next();
-                        int numFailed = rs.getInt( 1 );
-                        stmt.close();
-                        return new DefaultLock( manager, connection, lockId, acquired, expires, numLocked, numFailed );
-                    }
-                };
-            } catch ( SQLException e ) {
-                close( rs, stmt, conn, LOG );
-                String msg = "Could not retrieve active locks: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new RuntimeException( msg, e );
+    @Override
+    public CloseableIterator<Lock> getActiveLocks() {
+        long now = System.currentTimeMillis();
+        List<Lock> locks = new ArrayList<Lock>();
+        for ( DefaultLock lock : idToLock.values() ) {
+            if ( !lock.isExpired( now ) ) {
+                locks.add( lock );
             }
         }
-        return lockIter;
+        return new SnapshotIterator<Lock>( locks );
     }
 
     @Override
     public Lock getLock( String lockId )
                             throws FeatureStoreException {
+        DefaultLock lock = lockId != null ? idToLock.get( lockId ) : null;
+        if ( lock == null || lock.isExpired( System.currentTimeMillis() ) ) {
+            String msg = Messages.getMessage( "LOCK_NO_SUCH_ID", lockId );
+            throw new InvalidParameterValueException( msg, "lockId" );
+        }
+        return lock;
+    }
+
+    @Override
+    public boolean isFeatureLocked( String fid )
+                            throws FeatureStoreException {
+        DefaultLock lock = fidToLock.get( fid );
+        return lock != null && !lock.isExpired( System.currentTimeMillis() );
+    }
 
-        Lock lock = null;
+    @Override
+    public boolean isFeatureModifiable( String fid, String lockId )
+                            throws FeatureStoreException {
+        DefaultLock lock = fidToLock.get( fid );
+        if ( lock == null || lock.isExpired( System.currentTimeMillis() ) ) {
+            return true;
+        }
+        return lock.getId().equals( lockId );
+    }
 
-        int lockIdInt = -1;
-        try {
-            lockIdInt = Integer.parseInt( lockId );
-        } catch ( NumberFormatException e ) {
-            // not a number -> use -1 (which is never used)
+    /**
+     * Returns whether the specified feature is held by the given lock.
+     * 
+     * @param fid
+     *            id of the feature, must not be <code>null</code>
+     * @param lock
+     *            lock, must not be <code>null</code>
+     * @return <code>true</code>, if the feature is held by the lock, <code>false</code> otherwise
+     */
+    boolean isLockedBy( String fid, DefaultLock lock ) {
+        return fidToLock.get( fid ) == lock && !lock.isExpired( System.currentTimeMillis() );
+    }
+
+    /**
+     * Checks for and releases all expired locks.
+     */
+    void releaseExpiredLocks() {
+        long now = System.currentTimeMillis();
+        LOG.debug( "Checking for and removing all locks expired until '" + new Date( now ) + "'" );
+        for ( DefaultLock lock : idToLock.values() ) {
+            if ( lock.isExpired( now ) ) {
+                release( lock );
+            }
         }
+    }
 
-        synchronized ( this ) {
-            releaseExpiredLocks();
-            Connection conn = null;
-            Statement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.createStatement();
-                rs = stmt.executeQuery( "SELECT ACQUIRED,EXPIRES FROM LOCKS WHERE ID=" + lockIdInt + "" );
-                if ( !rs.next() ) {
-                    String msg = Messages.getMessage( "LOCK_NO_SUCH_ID", lockId );
-                    throw new InvalidParameterValueException( msg, "lockId" );
+    /**
+     * Releases the given lock and all features held by it.
+     * 
+     * @param lock
+     *            lock, must not be <code>null</code>
+     */
+    void release( DefaultLock lock ) {
+        synchronized ( lock ) {
+            if ( lock.isReleased() ) {
+                return;
+            }
+            lock.setReleased();
+            idToLock.remove( lock.getId(), lock );
+            for ( String fid : lock.getLockedFids() ) {
+                fidToLock.remove( fid, lock );
+            }
+            // queued while holding the monitor, so it is written before features are locked again
+            if ( !lock.isPending() ) {
+                deleteLock( lock.getId() );
+            }
+        }
+    }
+
+    /**
+     * Releases the specified features from the given lock.
+     * 
+     * @param lock
+     *            lock, must not be <code>null</code>
+     * @param fids
+     *            ids of the features, must not be <code>null</code>
+     */
+    void release( DefaultLock lock, Collection<String> fids ) {
+        synchronized ( lock ) {
+            if ( lock.isReleased() ) {
+                return;
+            }
+            List<String> released = new ArrayList<String>( fids.size() );
+            for ( String fid : fids ) {
+                if ( lock.removeLocked( fid ) ) {
+                    fidToLock.remove( fid, lock );
+                    released.add( fid );
                 }
-                Timestamp acquired = rs.getTimestamp( 1 );
-                Timestamp expires = rs.getTimestamp( 2 );
-                rs = stmt.executeQuery( "SELECT COUNT(*) FROM LOCKED_FIDS WHERE LOCK_ID=" + lockIdInt );
-                rs.next();
-                int numLocked = rs.getInt( 1 );
-                rs = stmt.executeQuery( "SELECT COUNT(*) FROM LOCK_FAILED_FIDS WHERE LOCK_ID=" + lockIdInt );
-                rs.next();
-                int numFailed = rs.getInt( 1 );
-                lock = new DefaultLock( this, connection, lockId, acquired, expires, numLocked, numFailed );
-            } catch ( SQLException e ) {
-                String msg = "Could not retrieve lock with id '" + lockId + "':" + e.getMessage();
-                LOG.debug( msg, e );
-                throw new RuntimeException( msg, e );
-            } finally {
-                close( rs, stmt, conn, LOG );
+            }
+            // features of a pending lock are written later on, from the current state of the lock
+            if ( !released.isEmpty() && !lock.isPending() ) {
+                deleteFids( lock.getId(), released );
             }
         }
-        return lock;
     }
 
-    @Override
-    public boolean isFeatureLocked( String fid )
+    /**
+     * Persists a changed expiry date of the given lock.
+     * 
+     * @param lock
+     *            lock, must not be <code>null</code>
+     */
+    void updateExpiryDate( final DefaultLock lock ) {
+        final long expires = lock.getExpiryDate();
+        submit( new LockDbTask( "update expiry date of lock " + lock.getId() ) {
+            @Override
+            void execute( Connection conn )
+                                    throws SQLException {
+                PreparedStatement stmt = conn.prepareStatement( "UPDATE LOCKS SET EXPIRES=? WHERE ID=?" );
+                try {
+                    stmt.setTimestamp( 1, new Timestamp( expires ) );
+                    stmt.setInt( 2, Integer.parseInt( lock.getId() ) );
+                    stmt.executeUpdate();
+                } finally {
+                    stmt.close();
+                }
+            }
+        } );
+    }
+
+    private String insertLock( long acquired, long expires )
                             throws FeatureStoreException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = connection.getConnection();
+            stmt = conn.prepareStatement( "INSERT INTO LOCKS (ACQUIRED,EXPIRES,STORE_ID) VALUES (?,?,?)",
+                                          Statement.RETURN_GENERATED_KEYS );
+            stmt.setTimestamp( 1, new Timestamp( acquired ) );
+            stmt.setTimestamp( 2, new Timestamp( expires ) );
+            stmt.setString( 3, storeId );
+            stmt.execute();
+            rs = stmt.getGeneratedKeys();
+            rs.next();
+            return "" + rs.getInt( 1 );
+        } catch ( SQLException e ) {
+            LOG.debug( e.getMessage(), e );
+            throw new FeatureStoreException( e.getMessage(), e );
+        } finally {
+            close( rs, stmt, conn, LOG );
+        }
+    }
 
-        boolean isLocked = false;
-        synchronized ( this ) {
-            releaseExpiredLocks();
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
-            try {
-                conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT COUNT(*) FROM LOCKED_FIDS WHERE FID=?" );
-                stmt.setString( 1, fid );
-                rs = stmt.executeQuery();
-                rs.next();
-                int count = rs.getInt( 1 );
-                isLocked = count > 0;
-            } catch ( SQLException e ) {
-                String msg = "Could not retrieve active locks: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new RuntimeException( msg, e );
-            } finally {
-                close( rs, stmt, conn, LOG );
-            }
+    private void writeFids( final DefaultLock lock, final List<String> locked, final List<String> failed ) {
+        if ( locked.isEmpty() && failed.isEmpty() ) {
+            lock.setWritten();
+            return;
         }
-        return isLocked;
+        final String lockId = lock.getId();
+        submit( new LockDbTask( "insert features of lock " + lockId ) {
+            @Override
+            void execute( Connection conn )
+                                    throws SQLException {
+                // from now on, the features of the lock are part of a resynchronization
+                lock.setWritten();
+                int id = Integer.parseInt( lockId );
+                executeBatch( conn, "INSERT INTO LOCKED_FIDS (LOCK_ID, FID) VALUES (?,?)", id, locked );
+                executeBatch( conn, "INSERT INTO LOCK_FAILED_FIDS (LOCK_ID, FID) VALUES (?,?)", id, failed );
+            }
+        } );
     }
 
-    @Override
-    public boolean isFeatureModifiable( String fid, String lockId )
-                            throws FeatureStoreException {
+    private void deleteFids( final String lockId, final List<String> fids ) {
+        submit( new LockDbTask( "release features of lock " + lockId ) {
+            @Override
+            void execute( Connection conn )
+                                    throws SQLException {
+                int id = Integer.parseInt( lockId );
+                executeBatch( conn, "DELETE FROM LOCKED_FIDS WHERE LOCK_ID=? AND FID=?", id, fids );
+            }
+        } );
+    }
+
+    private void deleteLock( final String lockId ) {
+        submit( new LockDbTask( "release lock " + lockId ) {
+            @Override
+            void execute( Connection conn )
+                                    throws SQLException {
+                int id = Integer.parseInt( lockId );
+                String[] sqls = { "DELETE FROM LOCKED_FIDS WHERE LOCK_ID=?",
+                                 "DELETE FROM LOCK_FAILED_FIDS WHERE LOCK_ID=?", "DELETE FROM LOCKS WHERE ID=?" };
+                for ( String sql : sqls ) {
+                    PreparedStatement stmt = conn.prepareStatement( sql );
+                    try {
+                        stmt.setInt( 1, id );
+                        stmt.executeUpdate();
+                    } finally {
+                        stmt.close();
+                    }
+                }
+            }
+        } );
+    }
+
+    /**
+     * Queues the given change for the writer thread, or performs it at once if the manager has been destroyed.
+     */
+    private void submit( LockDbTask task ) {
+        try {
+            executor.execute( task );
+        } catch ( RejectedExecutionException e ) {
+            task.run();
+        }
+    }
 
-        if ( lockId == null ) {
-            return !isFeatureLocked( fid );
+    /**
+     * Schedules the resynchronization of the lock database with the in-memory lock table.
+     */
+    private void scheduleResync() {
+        if ( resyncScheduled.compareAndSet( false, true ) ) {
+            try {
+                executor.schedule( new ResyncTask(), RESYNC_DELAY, SECONDS );
+            } catch ( RejectedExecutionException e ) {
+                // performed by destroy()
+            }
         }
+    }
 
-        int lockIdInt = -1;
+    private static void executeBatch( Connection conn, String sql, int lockId, Collection<String> fids )
+                            throws SQLException {
+        if ( fids.isEmpty() ) {
+            return;
+        }
+        PreparedStatement stmt = conn.prepareStatement( sql );
         try {
-            lockIdInt = Integer.parseInt( lockId );
-        } catch ( NumberFormatException e ) {
-            // not a number -> use -1 (which is never used)
+            int batched = 0;
+            for ( String fid : fids ) {
+                stmt.setInt( 1, lockId );
+                stmt.setString( 2, fid );
+                stmt.addBatch();
+                if ( ++batched == BATCH_SIZE ) {
+                    stmt.executeBatch();
+                    batched = 0;
+                }
+            }
+            if ( batched > 0 ) {
+                stmt.executeBatch();
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    /**
+     * Change of the lock database that is performed by the background thread (in submission order).
+     */
+    private abstract class LockDbTask implements Runnable {
+
+        private final String description;
+
+        LockDbTask( String description ) {
+            this.description = description;
         }
 
-        boolean isModifiable = false;
-        synchronized ( this ) {
-            releaseExpiredLocks();
+        abstract void execute( Connection conn )
+                                throws SQLException;
+
+        @Override
+        public void run() {
             Connection conn = null;
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
             try {
                 conn = connection.getConnection();
-                stmt = conn.prepareStatement( "SELECT COUNT(*) FROM LOCKED_FIDS WHERE FID=? AND LOCK_ID<>?" );
-                stmt.setString( 1, fid );
-                stmt.setInt( 2, lockIdInt );
-                rs = stmt.executeQuery();
-                rs.next();
-                int count = rs.getInt( 1 );
-                isModifiable = count == 0;
-            } catch ( SQLException e ) {
-                String msg = "Could not retrieve active locks: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new RuntimeException( msg, e );
+                conn.setAutoCommit( false );
+                execute( conn );
+                conn.commit();
+            } catch ( Throwable e ) {
+                rollbackQuietly( conn );
+                LOG.error( "Could not " + description + " in lock database, it will be rewritten from the active "
+                           + "locks: " + e.getMessage() );
+                LOG.debug( "Stack trace:", e );
+                scheduleResync();
             } finally {
-                close( rs, stmt, conn, LOG );
+                if ( conn != null ) {
+                    try {
+                        conn.setAutoCommit( true );
+                    } catch ( SQLException e ) {
+                        LOG.warn( "Error resetting auto commit on lock db connection: " + e.getMessage(), e );
+                    }
+                }
+                close( null, null, conn, LOG );
             }
         }
-        return isModifiable;
     }
 
     /**
-     * Checks for and releases all expired locks.
+     * Rewrites the feature tables of the lock database from the in-memory lock table and removes expired locks. Only
+     * the rows of the locks of this store are touched. Locks whose features have not been written yet are skipped, they
+     * are written by their own (queued) task.
      */
-    void releaseExpiredLocks() {
+    private class ResyncTask extends LockDbTask {
 
-        Timestamp now = new Timestamp( new Date().getTime() );
-        LOG.debug( "Checking for and removing all locks expired until '" + now + "'" );
-        synchronized ( this ) {
-            Connection conn = null;
-            PreparedStatement stmt = null;
-            try {
-                conn = connection.getConnection();
+        ResyncTask() {
+            super( "resynchronize active locks" );
+        }
 
-                stmt = conn.prepareStatement( "DELETE FROM LOCKED_FIDS WHERE LOCK_ID IN (SELECT ID FROM LOCKS WHERE EXPIRES <=?)" );
-                stmt.setTimestamp( 1, now );
-                int deleted = stmt.executeUpdate();
-                LOG.debug( "Deleted " + deleted + " row(s) from table LOCKED_FIDS." );
-                stmt.close();
-
-                stmt = conn.prepareStatement( "DELETE FROM LOCK_FAILED_FIDS WHERE LOCK_ID IN (SELECT ID FROM LOCKS WHERE EXPIRES <=?)" );
-                stmt.setTimestamp( 1, now );
-                deleted = stmt.executeUpdate();
-                LOG.debug( "Deleted " + deleted + " row(s) from table LOCK_FAILED_FIDS." );
-                stmt.close();
-
-                stmt = conn.prepareStatement( "DELETE FROM LOCKS WHERE EXPIRES <=?" );
-                stmt.setTimestamp( 1, now );
-                deleted = stmt.executeUpdate();
-                LOG.debug( "Deleted " + deleted + " row(s) from table LOCKS." );
-            } catch ( SQLException e ) {
-                String msg = "Could not determine expired locks: " + e.getMessage();
-                LOG.debug( msg, e );
-                throw new RuntimeException( msg, e );
+        @Override
+        public void run() {
+            // changes that fail from now on need another resynchronization
+            resyncScheduled.set( false );
+            super.run();
+        }
+
+        @Override
+        void execute( Connection conn )
+                                throws SQLException {
+            long now = System.currentTimeMillis();
+            for ( String table : new String[] { "LOCKED_FIDS", "LOCK_FAILED_FIDS" } ) {
+                PreparedStatement stmt = conn.prepareStatement( "DELETE FROM " + table + " WHERE " + OWN_LOCKS );
+                try {
+                    stmt.setString( 1, storeId );
+                    stmt.executeUpdate();
+                } finally {
+                    stmt.close();
+                }
+            }
+            PreparedStatement update = conn.prepareStatement( "UPDATE LOCKS SET EXPIRES=? WHERE ID=?" );
+            try {
+                for ( DefaultLock lock : idToLock.values() ) {
+                    if ( !lock.isWritten() || lock.isExpired( now ) ) {
+                        continue;
+                    }
+                    int id = Integer.parseInt( lock.getId() );
+                    update.setTimestamp( 1, new Timestamp( lock.getExpiryDate() ) );
+                    update.setInt( 2, id );
+                    update.executeUpdate();
+                    List<String> locked = new ArrayList<String>( lock.getLockedFids() );
+                    List<String> failed = new ArrayList<String>( lock.getFailedFids() );
+                    executeBatch( conn, "INSERT INTO LOCKED_FIDS (LOCK_ID, FID) VALUES (?,?)", id, locked );
+                    executeBatch( conn, "INSERT INTO LOCK_FAILED_FIDS (LOCK_ID, FID) VALUES (?,?)", id, failed );
+                }
             } finally {
-                close( null, stmt, conn, LOG );
+                update.close();
+            }
+            PreparedStatement delete = conn.prepareStatement( "DELETE FROM LOCKS WHERE STORE_ID=? AND EXPIRES<?" );
+            try {
+                delete.setString( 1, storeId );
+                delete.setTimestamp( 2, new Timestamp( now ) );
+                delete.executeUpdate();
+            } finally {
+                delete.close();
             }
         }
     }
-
 }
@@ -0,0 +1,100 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.lock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.deegree.commons.utils.CloseableIterator;
+
+/**
+ * {@link CloseableIterator} over a snapshot of the elements of a collection, used for the in-memory lock table.
+ * 
+ * @see DefaultLockManager
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class SnapshotIterator<T> implements CloseableIterator<T> {
+
+    private final Iterator<T> iter;
+
+    /**
+     * Creates a new {@link SnapshotIterator} for the given elements.
+     * 
+     * @param elements
+     *            elements to iterate over, must not be <code>null</code> (will be copied)
+     */
+    SnapshotIterator( Collection<T> elements ) {
+        this.iter = new ArrayList<T>( elements ).iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iter.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return iter.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        // nothing to do
+    }
+
+    @Override
+    public List<T> getAsListAndClose() {
+        return (List<T>) getAsCollectionAndClose( new ArrayList<T>() );
+    }
+
+    @Override
+    public Collection<T> getAsCollectionAndClose( Collection<T> collection ) {
+        while ( iter.hasNext() ) {
+            collection.add( iter.next() );
+        }
+        return collection;
+    }
+}
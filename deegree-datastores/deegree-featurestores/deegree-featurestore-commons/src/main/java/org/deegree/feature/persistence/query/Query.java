@@ -97,6 +97,10 @@ public class Query {
 
     private int maxFeatures = -1;
 
+    private int startIndex = 0;
+
+    private boolean stableOrder;
+
     private final List<ProjectionClause> projections;
 
     /**
@@ -190,6 +194,44 @@ public class Query {
         this.projections = emptyList();
     }
 
+    /**
+     * Creates a new {@link Query} instance that is a copy of the given query, but uses different paging parameters.
+     * 
+     * @param query
+     *            query to copy from, must not be <code>null</code>
+     * @param startIndex
+     *            number of features at the beginning of the result to be skipped, zero or positive
+     * @param maxFeatures
+     *            maximum number of features to be returned, may be -1 if no limit needs to be exercised
+     */
+    public Query( Query query, int startIndex, int maxFeatures ) {
+        this( query, startIndex, maxFeatures, query.stableOrder );
+    }
+
+    /**
+     * Creates a new {@link Query} instance that is a copy of the given query, but uses different paging parameters.
+     * 
+     * @param query
+     *            query to copy from, must not be <code>null</code>
+     * @param startIndex
+     *            number of features at the beginning of the result to be skipped, zero or positive
+     * @param maxFeatures
+     *            maximum number of features to be returned, may be -1 if no limit needs to be exercised
+     * @param stableOrder
+     *            <code>true</code>, if the result is one of several pages requested by a client, so the order of the
+     *            features must be the same for all pages (see {@link #isStableOrderRequired()})
+     */
+    public Query( Query query, int startIndex, int maxFeatures, boolean stableOrder ) {
+        this.typeNames = query.typeNames;
+        this.filter = query.filter;
+        this.sortBy = query.sortBy;
+        this.projections = query.projections;
+        this.hints.putAll( query.hints );
+        this.startIndex = startIndex;
+        this.maxFeatures = maxFeatures;
+        this.stableOrder = stableOrder;
+    }
+
     public Object getHint( QueryHint code ) {
         return hints.get( code );
     }
@@ -272,9 +314,45 @@ public class Query {
     }
 
     /**
+     * Returns the maximum number of features to be returned (after skipping {@link #getStartIndex()} features).
+     * 
      * @return -1, if no limit has been set
      */
     public int getMaxFeatures() {
         return maxFeatures;
     }
+
+    /**
+     * Returns the number of features at the beginning of the result that have to be skipped.
+     * <p>
+     * Note that {@link FeatureStore#queryHits(Query)} ignores the paging parameters.
+     * </p>
+     * 
+     * @return number of features to be skipped, zero if all features are to be returned
+     */
+    public int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * Returns whether the query requests only a page of the result, i.e. a start index or a maximum number of features
+     * has been set.
+     * 
+     * @return <code>true</code>, if only a page of the result is requested, <code>false</code> otherwise
+     */
+    public boolean isPaged() {
+        return startIndex > 0 || maxFeatures > -1;
+    }
+
+    /**
+     * Returns whether the features have to be returned in a stable order, so consecutive pages of the same result do
+     * neither overlap nor miss features. This is the case if features are skipped or if the query has been created
+     * for paging explicitly. Queries that only limit the number of features (e.g. for rendering) don't require a
+     * stable order.
+     * 
+     * @return <code>true</code>, if a stable order is required, <code>false</code> otherwise
+     */
+    public boolean isStableOrderRequired() {
+        return stableOrder || startIndex > 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,391 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.feature.persistence.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.commons.utils.CloseableIterator;
+import org.deegree.commons.utils.kvp.InvalidParameterValueException;
+import org.deegree.db.ConnectionProvider;
+import org.deegree.feature.Feature;
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.query.Query;
+import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.IteratorFeatureInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link DefaultLockManager}, using an in-memory Derby database as lock database.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class DefaultLockManagerTest {
+
+    private static final long TIMEOUT = 60000;
+
+    private final Query query = new Query( new QName( "ft" ), null, -1, -1, -1 );
+
+    private String url;
+
+    private ConnectionProvider connection;
+
+    private FeatureStore store;
+
+    private List<String> queryResult = Collections.emptyList();
+
+    private DefaultLockManager manager;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        url = "jdbc:derby:memory:locks-" + UUID.randomUUID();
+        DriverManager.getConnection( url + ";create=true" ).close();
+        connection = mock( ConnectionProvider.class );
+        when( connection.getConnection() ).thenAnswer( new Answer<Connection>() {
+            @Override
+            public Connection answer( InvocationOnMock invocation )
+                                    throws SQLException {
+                return DriverManager.getConnection( url );
+            }
+        } );
+        store = mock( FeatureStore.class );
+        when( store.query( any( Query.class ) ) ).thenAnswer( new Answer<FeatureInputStream>() {
+            @Override
+            public FeatureInputStream answer( InvocationOnMock invocation ) {
+                List<Feature> features = new ArrayList<Feature>();
+                for ( String fid : queryResult ) {
+                    Feature feature = mock( Feature.class );
+                    when( feature.getId() ).thenReturn( fid );
+                    features.add( feature );
+                }
+                return new IteratorFeatureInputStream( new SnapshotIterator<Feature>( features ) );
+            }
+        } );
+        manager = new DefaultLockManager( store, connection );
+    }
+
+    @After
+    public void tearDown() {
+        manager.destroy();
+        try {
+            DriverManager.getConnection( url + ";drop=true" );
+        } catch ( SQLException e ) {
+            // expected, dropping the database is reported as exception
+        }
+    }
+
+    private Lock acquire( boolean mustLockAll, long timeout, String... fids )
+                            throws Exception {
+        queryResult = Arrays.asList( fids );
+        return manager.acquireLock( Collections.singletonList( query ), mustLockAll, timeout );
+    }
+
+    private DefaultLockManager restart()
+                            throws Exception {
+        manager.destroy();
+        manager = new DefaultLockManager( store, connection );
+        return manager;
+    }
+
+    private static Set<String> toSet( CloseableIterator<String> iter ) {
+        Set<String> set = new TreeSet<String>();
+        try {
+            while ( iter.hasNext() ) {
+                set.add( iter.next() );
+            }
+        } finally {
+            iter.close();
+        }
+        return set;
+    }
+
+    private static Set<String> set( String... values ) {
+        return new TreeSet<String>( Arrays.asList( values ) );
+    }
+
+    private Set<String> queryDb( String sql )
+                            throws SQLException {
+        Set<String> result = new TreeSet<String>();
+        Connection conn = DriverManager.getConnection( url );
+        try {
+            Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery( sql );
+            while ( rs.next() ) {
+                result.add( rs.getString( 1 ) );
+            }
+            rs.close();
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+        return result;
+    }
+
+    @Test
+    public void testAcquireAndRelease()
+                            throws Exception {
+        Lock lock1 = acquire( true, TIMEOUT, "f1", "f2" );
+        assertEquals( 2, lock1.getNumLocked() );
+        assertTrue( manager.isFeatureLocked( "f1" ) );
+        assertTrue( manager.isFeatureModifiable( "f1", lock1.getId() ) );
+        assertFalse( manager.isFeatureModifiable( "f1", "other" ) );
+        assertTrue( manager.isFeatureModifiable( "f3", "other" ) );
+
+        Lock lock2 = acquire( false, TIMEOUT, "f2", "f3" );
+        assertEquals( set( "f3" ), toSet( lock2.getLockedFeatures() ) );
+        assertEquals( set( "f2" ), toSet( lock2.getFailedToLockFeatures() ) );
+        assertTrue( lock1.isLocked( "f2" ) );
+        assertFalse( lock2.isLocked( "f2" ) );
+
+        try {
+            acquire( true, TIMEOUT, "f4", "f1" );
+            fail( "Feature f1 is locked, acquiring a lock on all features must fail." );
+        } catch ( OWSException e ) {
+            // expected
+        }
+        assertFalse( manager.isFeatureLocked( "f4" ) );
+        assertEquals( 2, toSet( getIds( manager.getActiveLocks() ) ).size() );
+
+        lock1.release( "f1" );
+        assertFalse( manager.isFeatureLocked( "f1" ) );
+        assertTrue( manager.isFeatureLocked( "f2" ) );
+        lock1.release();
+        assertFalse( manager.isFeatureLocked( "f2" ) );
+        assertTrue( manager.isFeatureLocked( "f3" ) );
+        assertSame( lock2, manager.getLock( lock2.getId() ) );
+        try {
+            manager.getLock( lock1.getId() );
+            fail( "A released lock must not be returned." );
+        } catch ( InvalidParameterValueException e ) {
+            // expected
+        }
+    }
+
+    private static void assertSame( Lock expected, Lock actual ) {
+        assertTrue( expected == actual );
+    }
+
+    private static CloseableIterator<String> getIds( CloseableIterator<Lock> locks ) {
+        List<String> ids = new ArrayList<String>();
+        try {
+            while ( locks.hasNext() ) {
+                ids.add( locks.next().getId() );
+            }
+        } finally {
+            locks.close();
+        }
+        return new SnapshotIterator<String>( ids );
+    }
+
+    @Test
+    public void testExpiry()
+                            throws Exception {
+        Lock lock = acquire( true, 50, "f1" );
+        assertTrue( manager.isFeatureLocked( "f1" ) );
+        Thread.sleep( 100 );
+        assertFalse( manager.isFeatureLocked( "f1" ) );
+        assertTrue( manager.isFeatureModifiable( "f1", "other" ) );
+        assertTrue( toSet( lock.getLockedFeatures() ).isEmpty() );
+        try {
+            manager.getLock( lock.getId() );
+            fail( "An expired lock must not be returned." );
+        } catch ( InvalidParameterValueException e ) {
+            // expected
+        }
+
+        // the feature of the expired lock can be locked again
+        Lock lock2 = acquire( true, TIMEOUT, "f1" );
+        assertTrue( lock2.isLocked( "f1" ) );
+        manager.releaseExpiredLocks();
+        restart();
+        assertEquals( set( lock2.getId() ), queryDb( "SELECT ID FROM LOCKS" ) );
+        assertEquals( set( "f1" ), queryDb( "SELECT FID FROM LOCKED_FIDS" ) );
+    }
+
+    @Test
+    public void testRestoreFromDatabase()
+                            throws Exception {
+        Lock lock1 = acquire( true, TIMEOUT, "f1", "f2" );
+        Lock lock2 = acquire( false, TIMEOUT, "f2", "f3" );
+        Lock lock3 = acquire( true, TIMEOUT, "f4" );
+        lock1.release( "f1" );
+        lock3.release();
+        long expires = System.currentTimeMillis() + 2 * TIMEOUT;
+        lock2.setExpiryDate( expires );
+
+        restart();
+        assertFalse( manager.isFeatureLocked( "f1" ) );
+        assertFalse( manager.isFeatureLocked( "f4" ) );
+        Lock restored1 = manager.getLock( lock1.getId() );
+        assertEquals( set( "f2" ), toSet( restored1.getLockedFeatures() ) );
+        assertEquals( lock1.getAcquistionDate(), restored1.getAcquistionDate() );
+        DefaultLock restored2 = (DefaultLock) manager.getLock( lock2.getId() );
+        assertEquals( set( "f3" ), toSet( restored2.getLockedFeatures() ) );
+        assertEquals( set( "f2" ), toSet( restored2.getFailedToLockFeatures() ) );
+        assertEquals( expires, restored2.getExpiryDate() );
+        assertTrue( manager.isFeatureModifiable( "f3", lock2.getId() ) );
+        assertFalse( manager.isFeatureModifiable( "f2", lock2.getId() ) );
+        assertEquals( 2, toSet( getIds( manager.getActiveLocks() ) ).size() );
+    }
+
+    @Test
+    public void testFailedAcquisitionLeavesNoRows()
+                            throws Exception {
+        Lock lock = acquire( true, TIMEOUT, "f1" );
+        try {
+            acquire( true, TIMEOUT, "f2", "f3", "f1" );
+            fail( "Feature f1 is locked, acquiring a lock on all features must fail." );
+        } catch ( OWSException e ) {
+            // expected
+        }
+        restart();
+        assertEquals( set( lock.getId() ), queryDb( "SELECT ID FROM LOCKS" ) );
+        assertEquals( set( "f1" ), queryDb( "SELECT FID FROM LOCKED_FIDS" ) );
+        assertTrue( queryDb( "SELECT FID FROM LOCK_FAILED_FIDS" ).isEmpty() );
+    }
+
+    @Test
+    public void testChangesAfterDestroy()
+                            throws Exception {
+        Lock lock = acquire( true, TIMEOUT, "f1", "f2" );
+        manager.destroy();
+        lock.release( "f1" );
+        Lock lock2 = acquire( true, TIMEOUT, "f3" );
+        assertNotNull( lock2 );
+        restart();
+        assertEquals( set( "f2", "f3" ), queryDb( "SELECT FID FROM LOCKED_FIDS" ) );
+    }
+
+    @Test
+    public void testResyncAfterFailedWrite()
+                            throws Exception {
+        Lock lock1 = acquire( true, TIMEOUT, "f1" );
+        // a stale row makes writing the features of the next lock fail (the feature ids are unique)
+        Connection conn = DriverManager.getConnection( url );
+        try {
+            PreparedStatement stmt = conn.prepareStatement( "INSERT INTO LOCKED_FIDS (LOCK_ID, FID) VALUES (?,?)" );
+            stmt.setInt( 1, Integer.parseInt( lock1.getId() ) );
+            stmt.setString( 2, "f2" );
+            stmt.executeUpdate();
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+        Lock lock2 = acquire( true, TIMEOUT, "f2", "f3" );
+
+        // the lock database is rewritten from the in-memory lock table
+        restart();
+        assertEquals( set( "f1" ), queryDb( "SELECT FID FROM LOCKED_FIDS WHERE LOCK_ID=" + lock1.getId() ) );
+        assertEquals( set( "f2", "f3" ), queryDb( "SELECT FID FROM LOCKED_FIDS WHERE LOCK_ID=" + lock2.getId() ) );
+        assertEquals( set( "f2", "f3" ), toSet( manager.getLock( lock2.getId() ).getLockedFeatures() ) );
+    }
+
+    @Test
+    public void testManagersSharingLockDatabase()
+                            throws Exception {
+        Lock lock = acquire( true, TIMEOUT, "f1", "f2" );
+        DefaultLockManager other = new DefaultLockManager( store, connection, "other" );
+        Lock otherLock1;
+        Lock otherLock2;
+        try {
+            queryResult = Arrays.asList( "g1" );
+            otherLock1 = other.acquireLock( Collections.singletonList( query ), true, TIMEOUT );
+            // make writing the features of the next lock fail, so the other manager resynchronizes its locks
+            Connection conn = DriverManager.getConnection( url );
+            try {
+                PreparedStatement stmt = conn.prepareStatement( "INSERT INTO LOCKED_FIDS (LOCK_ID, FID) VALUES (?,?)" );
+                stmt.setInt( 1, Integer.parseInt( otherLock1.getId() ) );
+                stmt.setString( 2, "g2" );
+                stmt.executeUpdate();
+                stmt.close();
+            } finally {
+                conn.close();
+            }
+            queryResult = Arrays.asList( "g2", "g3" );
+            otherLock2 = other.acquireLock( Collections.singletonList( query ), true, TIMEOUT );
+            assertEquals( 2, toSet( getIds( other.getActiveLocks() ) ).size() );
+        } finally {
+            other.destroy();
+        }
+
+        // the resynchronization of the other manager must not touch the locks of this one
+        restart();
+        assertEquals( set( "f1", "f2" ), queryDb( "SELECT FID FROM LOCKED_FIDS WHERE LOCK_ID=" + lock.getId() ) );
+        assertEquals( set( lock.getId() ), toSet( getIds( manager.getActiveLocks() ) ) );
+        assertFalse( manager.isFeatureLocked( "g1" ) );
+
+        other = new DefaultLockManager( store, connection, "other" );
+        try {
+            assertEquals( set( otherLock1.getId(), otherLock2.getId() ), toSet( getIds( other.getActiveLocks() ) ) );
+            assertEquals( set( "g2", "g3" ), toSet( other.getLock( otherLock2.getId() ).getLockedFeatures() ) );
+            assertFalse( other.isFeatureLocked( "f1" ) );
+        } finally {
+            other.destroy();
+        }
+    }
+
+}
@@ -43,22 +43,27 @@ import javax.xml.namespace.QName;
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.db.ConnectionProvider;
+import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.cache.GeneralizedGeometryCache;
 import org.deegree.feature.persistence.lock.DefaultLockManager;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.geometry.Envelope;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@link FeatureStore} implementation that keeps the feature instances in memory.
@@ -73,6 +78,8 @@ import org.deegree.workspace.ResourceMetadata;
  */
 public class MemoryFeatureStore implements FeatureStore {
 
+    private static final Logger LOG = LoggerFactory.getLogger( MemoryFeatureStore.class );
+
     private final AppSchema schema;
 
     private final ICRS storageCRS;
@@ -87,6 +94,8 @@ public class MemoryFeatureStore implements FeatureStore {
 
     private MemoryFeatureStoreMetadata metadata;
 
+    private final GeneralizedGeometryCache generalizedGeometries;
+
     /**
      * Creates a new {@link MemoryFeatureStore} instance for the given {@link AppSchema}.
      * 
@@ -95,13 +104,18 @@ public class MemoryFeatureStore implements FeatureStore {
      * @param storageCRS
      *            crs used for stored geometries, may be <code>null</code> (no transformation on inserts)
      * @param metadata
+     * @param lockConnection
+     * @param generalizedGeometries
+     *            cache for generalized geometries, may be <code>null</code> (no generalization)
      * @throws FeatureStoreException
      */
     MemoryFeatureStore( AppSchema schema, ICRS storageCRS, MemoryFeatureStoreMetadata metadata,
-                        ConnectionProvider lockConnection ) throws FeatureStoreException {
+                        ConnectionProvider lockConnection, GeneralizedGeometryCache generalizedGeometries )
+                            throws FeatureStoreException {
         this.schema = schema;
         this.storageCRS = storageCRS;
         this.metadata = metadata;
+        this.generalizedGeometries = generalizedGeometries;
         this.storedFeatures = new StoredFeatures( schema, storageCRS, null );
         // TODO
         lockManager = new DefaultLockManager( this, lockConnection );
@@ -109,7 +123,7 @@ public class MemoryFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        lockManager.destroy();
     }
 
     @Override
@@ -125,7 +139,14 @@ public class MemoryFeatureStore implements FeatureStore {
     @Override
     public FeatureInputStream query( Query query )
                             throws FilterEvaluationException, FeatureStoreException {
-        return storedFeatures.query( query );
+        FeatureInputStream rs = storedFeatures.query( query );
+        if ( query.isPaged() ) {
+            rs = new PagedFeatureInputStream( rs, query.getStartIndex(), query.getMaxFeatures() );
+        }
+        if ( generalizedGeometries != null ) {
+            rs = generalizedGeometries.generalize( rs, query, storageCRS );
+        }
+        return rs;
     }
 
     @Override
@@ -165,7 +186,7 @@ public class MemoryFeatureStore implements FeatureStore {
     @Override
     public int queryHits( org.deegree.feature.persistence.query.Query query )
                             throws FilterEvaluationException, FeatureStoreException {
-        return query( query ).toCollection().size();
+        return storedFeatures.query( query ).toCollection().size();
     }
 
     @Override
@@ -236,6 +257,10 @@ public class MemoryFeatureStore implements FeatureStore {
             throw new FeatureStoreException( msg );
         }
         if ( newFeatures != null ) {
+            if ( generalizedGeometries != null ) {
+                generalizedGeometries.invalidate( newFeatures.getModifiedIds() );
+            }
+            newFeatures.clearModifiedIds();
             storedFeatures = newFeatures;
         }
         this.activeTransaction = null;
@@ -282,6 +307,27 @@ public class MemoryFeatureStore implements FeatureStore {
         return storageCRS;
     }
 
+    /**
+     * Computes the generalized geometries of all stored features in advance (instead of on first access).
+     */
+    void precomputeGeneralizations() {
+        if ( generalizedGeometries == null ) {
+            return;
+        }
+        long begin = System.currentTimeMillis();
+        int count = 0;
+        for ( FeatureType ft : schema.getFeatureTypes( null, true, false ) ) {
+            FeatureCollection fc = storedFeatures.getFeatures( ft );
+            if ( fc != null ) {
+                for ( Feature feature : fc ) {
+                    generalizedGeometries.precompute( feature );
+                    count++;
+                }
+            }
+        }
+        LOG.info( "Generalized geometries of {} features in {} [ms].", count, System.currentTimeMillis() - begin );
+    }
+
     @Override
     public ResourceMetadata<? extends Resource> getMetadata() {
         return metadata;
@@ -58,16 +58,18 @@ import org.deegree.feature.i18n.Messages;
 import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.cache.GeneralizedGeometryCache;
 import org.deegree.feature.persistence.memory.jaxb.GMLVersionType;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.GMLFeatureCollection;
+import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.GeneralizationLevels;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.GMLSchema;
 import org.deegree.feature.persistence.memory.jaxb.MemoryFeatureStoreConfig.NamespaceHint;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLStreamReader;
 import org.deegree.gml.GMLVersion;
-import org.deegree.gml.schema.GMLAppSchemaReader;
+import org.deegree.gml.schema.AppSchemaCache;
 import org.deegree.workspace.ResourceBuilder;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.Workspace;
@@ -114,16 +116,15 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
                 gmlVersionType = jaxbSchemaURL.getVersion();
             }
 
-            GMLAppSchemaReader decoder = null;
+            GMLVersion gmlVersion = GMLVersion.valueOf( gmlVersionType.name() );
+            Map<String, String> hints = getHintMap( config.getNamespaceHint() );
+            AppSchemaCache schemaCache = AppSchemaCache.forWorkspace( workspace );
             if ( schemaURLs.length == 1 && schemaURLs[0].startsWith( "file:" ) ) {
                 File file = new File( new URL( schemaURLs[0] ).toURI() );
-                decoder = new GMLAppSchemaReader( GMLVersion.valueOf( gmlVersionType.name() ),
-                                                  getHintMap( config.getNamespaceHint() ), file );
+                schema = schemaCache.get( gmlVersion, hints, file );
             } else {
-                decoder = new GMLAppSchemaReader( GMLVersion.valueOf( gmlVersionType.name() ),
-                                                  getHintMap( config.getNamespaceHint() ), schemaURLs );
+                schema = schemaCache.get( gmlVersion, hints, schemaURLs );
             }
-            schema = decoder.extractAppSchema();
             if ( config.getStorageCRS() != null ) {
                 storageCRS = CRSManager.lookup( config.getStorageCRS() );
             }
@@ -135,7 +136,11 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
 
         try {
             ConnectionProvider lockProvider = workspace.getResource( ConnectionProviderProvider.class, "LOCK_DB" );
-            fs = new MemoryFeatureStore( schema, storageCRS, metadata, lockProvider );
+            GeneralizedGeometryCache generalizedGeometries = null;
+            if ( config.getGeneralizationLevels() != null ) {
+                generalizedGeometries = createGeneralizedGeometryCache( config.getGeneralizationLevels() );
+            }
+            fs = new MemoryFeatureStore( schema, storageCRS, metadata, lockProvider, generalizedGeometries );
         } catch ( FeatureStoreException ex ) {
             throw new ResourceInitException( ex.getLocalizedMessage(), ex );
         }
@@ -162,6 +167,9 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
                 }
             }
         }
+        if ( config.getGeneralizationLevels() != null && config.getGeneralizationLevels().isPrecompute() ) {
+            fs.precomputeGeneralizations();
+        }
         return fs;
     }
 
@@ -173,4 +181,11 @@ public class MemoryFeatureStoreBuilder implements ResourceBuilder<FeatureStore>
         return prefixToNs;
     }
 
+    private static GeneralizedGeometryCache createGeneralizedGeometryCache( GeneralizationLevels levels ) {
+        if ( levels.getMaxEntries() != null ) {
+            return new GeneralizedGeometryCache( levels.getResolution(), levels.getMaxEntries().intValue() );
+        }
+        return new GeneralizedGeometryCache( levels.getResolution() );
+    }
+
 }
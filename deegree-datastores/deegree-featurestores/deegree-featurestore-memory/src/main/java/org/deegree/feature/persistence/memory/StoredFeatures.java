@@ -108,6 +108,8 @@ class StoredFeatures {
 
     private final Map<FeatureType, RTree<Feature>> ftToIndex = new HashMap<FeatureType, RTree<Feature>>();
 
+    private final Set<String> modifiedIds = new HashSet<String>();
+
     /**
      * Creates a new {@link StoredFeatures} instance.
      * 
@@ -232,6 +234,23 @@ class StoredFeatures {
         return idToObject.get( id );
     }
 
+    /**
+     * Returns the ids of all features that have been added, removed or updated since the last call to
+     * {@link #clearModifiedIds()}.
+     * 
+     * @return ids of modified features, never <code>null</code>
+     */
+    Set<String> getModifiedIds() {
+        return modifiedIds;
+    }
+
+    /**
+     * Resets the set of modified feature ids.
+     */
+    void clearModifiedIds() {
+        modifiedIds.clear();
+    }
+
     /**
      * Returns the {@link Envelope} for the stored features of the specified type.
      * 
@@ -258,6 +277,7 @@ class StoredFeatures {
         }
         fc.add( feature );
         idToObject.put( feature.getId(), feature );
+        modifiedIds.add( feature.getId() );
         if ( feature.getEnvelope() != null ) {
             RTree<Feature> rTree = ftToIndex.get( ft );
             float[] insertBox = toFloats( feature.getEnvelope() );
@@ -276,6 +296,7 @@ class StoredFeatures {
      */
     void removeFeature( Feature feature ) {
         idToObject.remove( feature.getId() );
+        modifiedIds.add( feature.getId() );
         FeatureType ft = feature.getType();
         RTree<Feature> rTree = ftToIndex.get( ft );
         if ( rTree != null ) {
@@ -299,7 +320,7 @@ class StoredFeatures {
      */
     void updateFeature( Feature feature, List<ParsedPropertyReplacement> replacementProps )
                             throws FeatureStoreException {
-       
+        modifiedIds.add( feature.getId() );
         for ( ParsedPropertyReplacement replacement : replacementProps ) {
             Property prop = replacement.getNewValue();
             UpdateAction updateAction = replacement.getUpdateAction();
@@ -44,6 +44,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.Arrays;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.FactoryConfigurationError;
@@ -53,8 +54,11 @@ import javax.xml.stream.XMLStreamWriter;
 
 import org.deegree.commons.config.ResourceInitException;
 import org.deegree.commons.tom.ReferenceResolvingException;
+import org.deegree.commons.tom.gml.property.Property;
 import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.exceptions.TransformationException;
+import org.deegree.cs.persistence.CRSManager;
 import org.deegree.cs.exceptions.UnknownCRSException;
 import org.deegree.db.ConnectionProvider;
 import org.deegree.db.ConnectionProviderProvider;
@@ -62,13 +66,19 @@ import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
+import org.deegree.feature.persistence.cache.GeneralizedGeometryCache;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.IdFilter;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
 import org.deegree.geometry.primitive.Ring;
+import org.deegree.geometry.standard.AbstractDefaultGeometry;
 import org.deegree.gml.GMLInputFactory;
 import org.deegree.gml.GMLOutputFactory;
 import org.deegree.gml.GMLStreamReader;
@@ -107,22 +117,37 @@ public class MemoryFeatureStoreTest {
 
         workspace = new DefaultWorkspace( new File( "nix" ) );
         workspace.initAll();
+        store = createStore( null );
+    }
+
+    private MemoryFeatureStore createStore( GeneralizedGeometryCache generalizedGeometries )
+                            throws XMLParsingException, XMLStreamException, UnknownCRSException,
+                            FactoryConfigurationError, IOException, FeatureStoreException, ReferenceResolvingException,
+                            ClassCastException, ClassNotFoundException, InstantiationException, IllegalAccessException {
+        return createStore( null, generalizedGeometries );
+    }
+
+    private MemoryFeatureStore createStore( ICRS storageCrs, GeneralizedGeometryCache generalizedGeometries )
+                            throws XMLParsingException, XMLStreamException, UnknownCRSException,
+                            FactoryConfigurationError, IOException, FeatureStoreException, ReferenceResolvingException,
+                            ClassCastException, ClassNotFoundException, InstantiationException, IllegalAccessException {
         String schemaURL = this.getClass().getResource( "/org/deegree/gml/feature/testdata/schema/Philosopher.xsd" ).toString();
         GMLAppSchemaReader adapter = new GMLAppSchemaReader( GML_31, null, schemaURL );
         AppSchema schema = adapter.extractAppSchema();
 
         URL docURL = getClass().getResource( BASE_DIR + "Philosopher_FeatureCollection.xml" );
         ConnectionProvider prov = workspace.getResource( ConnectionProviderProvider.class, "LOCK_DB" );
-        store = new MemoryFeatureStore( schema, null, null, prov );
+        MemoryFeatureStore fs = new MemoryFeatureStore( schema, storageCrs, null, prov, generalizedGeometries );
 
         GMLStreamReader gmlStream = GMLInputFactory.createGMLStreamReader( GML_31, docURL );
         gmlStream.setApplicationSchema( schema );
         FeatureCollection fc = (FeatureCollection) gmlStream.readFeature();
         gmlStream.getIdContext().resolveLocalRefs();
 
-        FeatureStoreTransaction ta = store.acquireTransaction();
+        FeatureStoreTransaction ta = fs.acquireTransaction();
         ta.performInsert( fc, USE_EXISTING ).size();
         ta.commit();
+        return fs;
     }
 
     @After
@@ -174,6 +199,89 @@ public class MemoryFeatureStoreTest {
         Assert.assertEquals( 1, fc.size() );
     }
 
+    @Test
+    public void testQueryCountriesGeneralized()
+                            throws Exception {
+        MemoryFeatureStore generalizing = createStore( new GeneralizedGeometryCache( Arrays.asList( 0.5 ) ) );
+        TypeName[] typeNames = new TypeName[] { new TypeName( QName.valueOf( "{http://www.deegree.org/app}Country" ),
+                                                              null ) };
+
+        FeatureCollection original = generalizing.query( new Query( typeNames, null, null, -1, -1, 0.1 ) ).toCollection();
+        FeatureCollection generalized = generalizing.query( new Query( typeNames, null, null, -1, -1, 1.0 ) ).toCollection();
+        Assert.assertEquals( 4, original.size() );
+        Assert.assertEquals( 4, generalized.size() );
+        Assert.assertTrue( countPoints( generalized ) < countPoints( original ) );
+        Assert.assertEquals( countPoints( store.query( new Query( typeNames, null, null, null, null ) ).toCollection() ),
+                             countPoints( original ) );
+    }
+
+    @Test
+    public void testQueryCountriesGeneralizedWithFewerEntriesThanFeatures()
+                            throws Exception {
+        MemoryFeatureStore unbounded = createStore( new GeneralizedGeometryCache( Arrays.asList( 0.5 ) ) );
+        MemoryFeatureStore bounded = createStore( new GeneralizedGeometryCache( Arrays.asList( 0.5 ), 1 ) );
+        TypeName[] typeNames = new TypeName[] { new TypeName( QName.valueOf( "{http://www.deegree.org/app}Country" ),
+                                                              null ) };
+        Query query = new Query( typeNames, null, null, -1, -1, 1.0 );
+
+        int expected = countPoints( unbounded.query( query ).toCollection() );
+        Assert.assertEquals( expected, countPoints( bounded.query( query ).toCollection() ) );
+        Assert.assertEquals( expected, countPoints( bounded.query( query ).toCollection() ) );
+    }
+
+    @Test
+    public void testQueryCountriesGeneralizedInOtherCrs()
+                            throws Exception {
+        // levels are given in degrees (storage crs), the resolution hint in meters (request crs)
+        GeneralizedGeometryCache cache = new GeneralizedGeometryCache( Arrays.asList( 0.5 ) );
+        MemoryFeatureStore generalizing = createStore( CRSManager.getCRSRef( "EPSG:4326" ), cache );
+        TypeName[] typeNames = new TypeName[] { new TypeName( QName.valueOf( "{http://www.deegree.org/app}Country" ),
+                                                              null ) };
+        ICRS mercator = CRSManager.getCRSRef( "EPSG:3857" );
+        Envelope env = new GeometryFactory().createEnvelope( -2000000, 3000000, 5000000, 12000000, mercator );
+        Filter filter = new OperatorFilter( new BBOX( env ) );
+
+        Query fine = new Query( typeNames, filter, null, -1, -1, 1000 );
+        Query coarse = new Query( typeNames, filter, null, -1, -1, 200000 );
+        Assert.assertEquals( -1, cache.getLevel( fine, generalizing.getStorageCRS() ) );
+        Assert.assertEquals( 0, cache.getLevel( coarse, generalizing.getStorageCRS() ) );
+
+        FeatureCollection original = generalizing.query( fine ).toCollection();
+        FeatureCollection generalized = generalizing.query( coarse ).toCollection();
+        Assert.assertEquals( 4, original.size() );
+        Assert.assertEquals( 4, generalized.size() );
+        Assert.assertEquals( countPoints( store.query( new Query( typeNames, null, null, null, null ) ).toCollection() ),
+                             countPoints( original ) );
+        Assert.assertTrue( countPoints( generalized ) < countPoints( original ) );
+    }
+
+    @Test
+    public void testQueryCountriesPaged()
+                            throws FilterEvaluationException, FeatureStoreException {
+        TypeName[] typeNames = new TypeName[] { new TypeName( QName.valueOf( "{http://www.deegree.org/app}Country" ),
+                                                              null ) };
+        Query query = new Query( typeNames, null, null, null, null );
+        Feature[] all = store.query( query ).toCollection().toArray( new Feature[0] );
+        Feature[] page = store.query( new Query( query, 1, 2 ) ).toCollection().toArray( new Feature[0] );
+        Assert.assertEquals( 2, page.length );
+        Assert.assertEquals( all[1].getId(), page[0].getId() );
+        Assert.assertEquals( all[2].getId(), page[1].getId() );
+        Assert.assertEquals( 1, store.query( new Query( query, 3, 2 ) ).toCollection().size() );
+        Assert.assertEquals( 4, store.queryHits( new Query( query, 3, 2 ) ) );
+    }
+
+    private static int countPoints( FeatureCollection fc ) {
+        int numPoints = 0;
+        for ( Feature f : fc ) {
+            for ( Property prop : f.getProperties() ) {
+                if ( prop.getValue() instanceof AbstractDefaultGeometry ) {
+                    numPoints += ( (AbstractDefaultGeometry) prop.getValue() ).getJTSGeometry().getNumPoints();
+                }
+            }
+        }
+        return numPoints;
+    }
+
     @Test
     public void testQueryPhilosopherById()
                             throws FilterEvaluationException, FeatureStoreException {
@@ -39,12 +39,16 @@ package org.deegree.feature.persistence.remotewfs;
 import static org.deegree.gml.GMLVersion.GML_31;
 import static org.deegree.protocol.wfs.WFSVersion.WFS_110;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.deegree.commons.tom.gml.GMLObject;
 import org.deegree.cs.coordinatesystems.ICRS;
@@ -55,14 +59,18 @@ import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
-import org.deegree.feature.persistence.remotewfs.jaxb.RemoteWFSFeatureStoreConfig;
 import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
+import org.deegree.feature.stream.FilteredFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.projection.PropertyName;
 import org.deegree.filter.sort.SortProperty;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.filter.xml.Filter110XMLEncoder;
 import org.deegree.geometry.Envelope;
 import org.deegree.protocol.ows.exception.OWSExceptionReport;
 import org.deegree.protocol.wfs.client.GetFeatureResponse;
@@ -75,7 +83,10 @@ import org.deegree.protocol.wfs.metadata.WFSFeatureType;
 import org.deegree.protocol.wfs.query.FilterQuery;
 import org.deegree.protocol.wfs.query.StandardPresentationParams;
 import org.deegree.workspace.Resource;
+import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * {@link FeatureStore} implementation that is backed by a (remote) WFS instance.
@@ -90,41 +101,41 @@ import org.deegree.workspace.ResourceMetadata;
  */
 public class RemoteWFSFeatureStore implements FeatureStore {
 
-    // private static final Logger LOG = LoggerFactory.getLogger( RemoteWFSFeatureStore.class );
-    //
-    // private final RemoteWFSFeatureStoreConfig config;
+    private static final Logger LOG = LoggerFactory.getLogger( RemoteWFSFeatureStore.class );
 
-    private WFSClient client;
+    private final WFSClient client;
+
+    private final ResourceMetadata<FeatureStore> metadata;
 
     private AppSchema appSchema;
 
     /**
-     * Creates a new {@link RemoteWFSFeatureStore} for the given capabilities URL.
+     * Creates a new {@link RemoteWFSFeatureStore} that is backed by the given {@link WFSClient}.
      * 
-     * @param config
-     *            config, must not be <code>null</code>
+     * @param client
+     *            client for accessing the remote WFS, must not be <code>null</code>
+     * @param metadata
+     *            resource metadata, must not be <code>null</code>
      */
-    RemoteWFSFeatureStore( RemoteWFSFeatureStoreConfig config ) {
-        // this.config = config;
+    RemoteWFSFeatureStore( WFSClient client, ResourceMetadata<FeatureStore> metadata ) {
+        this.client = client;
+        this.metadata = metadata;
     }
 
-    // @Override
-    // public void init( DeegreeWorkspace workspace )
-    // throws ResourceInitException {
-    // try {
-    // LOG.info( "Connecting to " + config.getCapabilitiesURL() + "..." );
-    // this.client = new WFSClient( new URL( config.getCapabilitiesURL() ) );
-    // this.appSchema = client.getAppSchema();
-    // LOG.info( "Ok." );
-    // } catch ( Exception e ) {
-    // LOG.info( "Error: " + e.getMessage() );
-    // throw new ResourceInitException( "Error connecting to WFS: " + e.getMessage(), e );
-    // }
-    // }
+    @Override
+    public void init() {
+        try {
+            appSchema = client.getAppSchema();
+            LOG.info( "Ok." );
+        } catch ( Exception e ) {
+            LOG.info( "Error: " + e.getMessage() );
+            throw new ResourceInitException( "Error connecting to WFS: " + e.getMessage(), e );
+        }
+    }
 
     @Override
     public void destroy() {
-        // TODO Auto-generated method stub
+        // nothing to do
     }
 
     @Override
@@ -163,9 +174,24 @@ public class RemoteWFSFeatureStore implements FeatureStore {
     public FeatureInputStream query( Query query )
                             throws FeatureStoreException, FilterEvaluationException {
 
-        org.deegree.protocol.wfs.query.Query wfsQuery = toWFSQuery( query );
+        Filter filter = query.getFilter();
+        boolean filterPushed = isExportable( filter );
+        Filter remoteFilter = filter;
+        if ( !filterPushed ) {
+            // only push the bounding box, the remaining constraints are evaluated locally
+            BBOX bbox = query.getPrefilterBBox();
+            remoteFilter = bbox != null ? new OperatorFilter( bbox ) : null;
+            LOG.debug( "Filter cannot be encoded for the remote WFS, evaluating it locally." );
+        }
+        org.deegree.protocol.wfs.query.Query wfsQuery = toWFSQuery( query, remoteFilter );
 
-        StandardPresentationParams presentationParams = new StandardPresentationParams( null, null, ResultType.RESULTS,
+        // WFS 1.1.0 does not support a start index, so skipping has to be performed locally
+        BigInteger count = null;
+        if ( filterPushed && query.getMaxFeatures() > -1 ) {
+            count = BigInteger.valueOf( query.getStartIndex() + query.getMaxFeatures() );
+        }
+        StandardPresentationParams presentationParams = new StandardPresentationParams( null, count,
+                                                                                        ResultType.RESULTS,
                                                                                         GML_31.getMimeType() );
         GetFeature request = new GetFeature( WFS_110.getOGCVersion(), null, presentationParams, null,
                                              Collections.singletonList( wfsQuery ) );
@@ -188,8 +214,12 @@ public class RemoteWFSFeatureStore implements FeatureStore {
 
                 @Override
                 public int count() {
-                    // TODO
-                    return 0;
+                    int i = 0;
+                    for ( Iterator<Feature> iter = iterator(); iter.hasNext(); iter.next() ) {
+                        i++;
+                    }
+                    close();
+                    return i;
                 }
 
                 @Override
@@ -207,6 +237,12 @@ public class RemoteWFSFeatureStore implements FeatureStore {
             throw new FeatureStoreException( "Error performing GetFeature request to remote WFS: " + t.getMessage() );
         }
 
+        if ( !filterPushed && filter != null ) {
+            is = new FilteredFeatureInputStream( is, filter );
+        }
+        if ( query.isPaged() ) {
+            is = new PagedFeatureInputStream( is, query.getStartIndex(), query.getMaxFeatures() );
+        }
         return is;
     }
 
@@ -248,18 +284,21 @@ public class RemoteWFSFeatureStore implements FeatureStore {
     public int queryHits( Query query )
                             throws FeatureStoreException, FilterEvaluationException {
 
-        org.deegree.protocol.wfs.query.Query wfsQuery = toWFSQuery( query );
+        if ( !isExportable( query.getFilter() ) ) {
+            return query( query ).count();
+        }
+        org.deegree.protocol.wfs.query.Query wfsQuery = toWFSQuery( query, query.getFilter() );
 
         StandardPresentationParams presentationParams = new StandardPresentationParams( null, null, ResultType.HITS,
                                                                                         GML_31.getMimeType() );
         GetFeature request = new GetFeature( WFS_110.getOGCVersion(), null, presentationParams, null,
                                              Collections.singletonList( wfsQuery ) );
 
-        int hits = -1;
+        BigInteger hits = null;
         GetFeatureResponse<Feature> response = null;
         try {
             response = client.doGetFeature( request );
-            hits = response.getAsWFSFeatureCollection().getNumberMatched().intValue();
+            hits = response.getAsWFSFeatureCollection().getNumberMatched();
         } catch ( OWSExceptionReport e ) {
             throw new FeatureStoreException( "Remote WFS responded with exception report: " + e.getMessage() );
         } catch ( Throwable t ) {
@@ -273,16 +312,42 @@ public class RemoteWFSFeatureStore implements FeatureStore {
                 }
             }
         }
-        return hits;
+        if ( hits == null ) {
+            LOG.debug( "Remote WFS did not report the number of matched features, counting them." );
+            return query( query ).count();
+        }
+        return hits.intValue();
     }
 
-    private org.deegree.protocol.wfs.query.Query toWFSQuery( Query query ) {
+    /**
+     * Returns whether the given filter can be sent to the remote WFS.
+     * 
+     * @param filter
+     *            filter, can be <code>null</code>
+     * @return <code>true</code>, if the filter is <code>null</code> or can be encoded, <code>false</code> otherwise
+     */
+    private boolean isExportable( Filter filter ) {
+        if ( filter == null ) {
+            return true;
+        }
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter( bos );
+            Filter110XMLEncoder.export( filter, writer );
+            writer.close();
+        } catch ( Throwable t ) {
+            LOG.trace( "Filter cannot be encoded: " + t.getMessage(), t );
+            return false;
+        }
+        return true;
+    }
+
+    private org.deegree.protocol.wfs.query.Query toWFSQuery( Query query, Filter filter ) {
         TypeName[] typeNames = query.getTypeNames();
         String featureVersion = null;
         ICRS srsName = null;
         PropertyName[] projectionClauses = null;
         SortProperty[] sortBy = query.getSortProperties();
-        Filter filter = query.getFilter();
         return new FilterQuery( null, typeNames, featureVersion, srsName, projectionClauses, sortBy, filter );
     }
 
@@ -314,25 +379,8 @@ public class RemoteWFSFeatureStore implements FeatureStore {
         throw new UnsupportedOperationException( "RemoteWFSFeatureStore doesn't implement #getLockManager() (yet)." );
     }
 
-    /*
-     * (non-Javadoc)
-     * 
-     * @see org.deegree.workspace.Resource#getMetadata()
-     */
     @Override
     public ResourceMetadata<? extends Resource> getMetadata() {
-        // TODO Auto-generated method stub
-        return null;
-    }
-
-    /*
-     * (non-Javadoc)
-     * 
-     * @see org.deegree.workspace.Resource#init()
-     */
-    @Override
-    public void init() {
-        // TODO Auto-generated method stub
-
+        return metadata;
     }
 }
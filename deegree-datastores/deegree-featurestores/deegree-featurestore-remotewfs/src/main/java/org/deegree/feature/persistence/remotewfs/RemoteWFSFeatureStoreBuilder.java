@@ -0,0 +1,94 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2009 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.remotewfs;
+
+import java.io.File;
+import java.net.URL;
+
+import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.remotewfs.jaxb.RemoteWFSFeatureStoreConfig;
+import org.deegree.feature.persistence.remotewfs.jaxb.RemoteWFSFeatureStoreConfig.ResponseCache;
+import org.deegree.protocol.ows.http.CachingOwsHttpClient;
+import org.deegree.protocol.ows.http.OwsHttpClient;
+import org.deegree.protocol.ows.http.OwsHttpClientImpl;
+import org.deegree.protocol.wfs.client.WFSClient;
+import org.deegree.workspace.ResourceBuilder;
+import org.deegree.workspace.ResourceInitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builds {@link RemoteWFSFeatureStore}s from jaxb configuration beans.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class RemoteWFSFeatureStoreBuilder implements ResourceBuilder<FeatureStore> {
+
+    private static final Logger LOG = LoggerFactory.getLogger( RemoteWFSFeatureStoreBuilder.class );
+
+    private final RemoteWFSFeatureStoreMetadata metadata;
+
+    private final RemoteWFSFeatureStoreConfig config;
+
+    public RemoteWFSFeatureStoreBuilder( RemoteWFSFeatureStoreMetadata metadata, RemoteWFSFeatureStoreConfig config ) {
+        this.metadata = metadata;
+        this.config = config;
+    }
+
+    @Override
+    public FeatureStore build() {
+        String capaUrl = config.getCapabilitiesURL().trim();
+        try {
+            OwsHttpClient httpClient = new OwsHttpClientImpl();
+            ResponseCache cacheConfig = config.getResponseCache();
+            if ( cacheConfig != null ) {
+                File dir = metadata.getLocation().resolveToFile( cacheConfig.getDirectory().trim() );
+                long maxBytes = cacheConfig.getMaxSizeMB() * 1024L * 1024L;
+                LOG.debug( "Caching responses of remote WFS in '{}' (max. {} MB).", dir,
+                           cacheConfig.getMaxSizeMB() );
+                httpClient = new CachingOwsHttpClient( httpClient, dir, maxBytes );
+            }
+            LOG.info( "Connecting to " + capaUrl + "..." );
+            WFSClient client = new WFSClient( new URL( capaUrl ), null, httpClient );
+            return new RemoteWFSFeatureStore( client, metadata );
+        } catch ( Exception e ) {
+            throw new ResourceInitException( "Error connecting to WFS: " + e.getMessage(), e );
+        }
+    }
+
+}
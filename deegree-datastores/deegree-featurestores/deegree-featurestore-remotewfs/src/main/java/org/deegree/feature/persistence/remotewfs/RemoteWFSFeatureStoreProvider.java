@@ -53,37 +53,16 @@ import org.deegree.workspace.Workspace;
  */
 public class RemoteWFSFeatureStoreProvider extends FeatureStoreProvider {
 
-    // private static final Logger LOG = LoggerFactory.getLogger( RemoteWFSFeatureStoreProvider.class );
-
     private static final String CONFIG_NS = "http://www.deegree.org/datasource/feature/remotewfs";
 
-    // private static final String CONFIG_JAXB_PACKAGE = "org.deegree.feature.persistence.remotewfs.jaxb";
-
-    private static final URL CONFIG_SCHEMA = RemoteWFSFeatureStoreProvider.class.getResource( "/META-INF/schemas/datasource/feature/remotewfs/3.1.0/remotewfs.xsd" );
+    static final String CONFIG_JAXB_PACKAGE = "org.deegree.feature.persistence.remotewfs.jaxb";
 
-    // // @Override
-    // public RemoteWFSFeatureStore create( URL configURL )
-    // throws ResourceInitException {
-    //
-    // RemoteWFSFeatureStore fs = null;
-    // try {
-    // RemoteWFSFeatureStoreConfig config = (RemoteWFSFeatureStoreConfig) unmarshall( CONFIG_JAXB_PACKAGE,
-    // CONFIG_SCHEMA, configURL,
-    // workspace );
-    //
-    // fs = new RemoteWFSFeatureStore( config );
-    // } catch ( JAXBException e ) {
-    // String msg = "Error in feature store configuration file '" + configURL + "': " + e.getMessage();
-    // LOG.error( msg );
-    // throw new ResourceInitException( msg, e );
-    // }
-    // return fs;
-    // }
+    static final URL CONFIG_SCHEMA = RemoteWFSFeatureStoreProvider.class.getResource( "/META-INF/schemas/datasource/feature/remotewfs/3.1.0/remotewfs.xsd" );
 
     @Override
     public ResourceMetadata<FeatureStore> createFromLocation( Workspace workspace,
                                                               ResourceLocation<FeatureStore> location ) {
-        return null;
+        return new RemoteWFSFeatureStoreMetadata( workspace, location, this );
     }
 
     @Override
@@ -80,6 +80,7 @@ import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.cache.FeatureStoreCache;
+import org.deegree.feature.persistence.cache.GeneralizedGeometryCache;
 import org.deegree.feature.persistence.cache.SimpleFeatureStoreCache;
 import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
@@ -90,6 +91,7 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
@@ -161,6 +163,10 @@ public class ShapeFeatureStore implements FeatureStore {
 
     private ResourceMetadata<FeatureStore> metadata;
 
+    private final GeneralizedGeometryCache generalizedGeometries;
+
+    private final boolean precomputeGeneralizations;
+
     /**
      * Creates a new {@link ShapeFeatureStore} instance from the given parameters.
      * 
@@ -185,7 +191,42 @@ public class ShapeFeatureStore implements FeatureStore {
     public ShapeFeatureStore( String shpName, ICRS crs, Charset encoding, String ftNamespace, String localFtName,
                               String ftPrefix, boolean generateAlphanumericIndexes, FeatureStoreCache cache,
                               List<Mapping> mappings, ResourceMetadata<FeatureStore> metadata ) {
+        this( shpName, crs, encoding, ftNamespace, localFtName, ftPrefix, generateAlphanumericIndexes, cache,
+              mappings, metadata, null, false );
+    }
+
+    /**
+     * Creates a new {@link ShapeFeatureStore} instance from the given parameters.
+     * 
+     * @param shpName
+     *            name of the shape file to be loaded, may omit the ".shp" extension, must not be <code>null</code
+     * @param crs
+     *            crs used by the shape file, must not be <code>null</code>
+     * @param encoding
+     *            encoding used in the dbf file, can be <code>null</code> (encoding guess mode)
+     * @param ftNamespace
+     *            namespace to be used for the feature type, must not be <code>null</code>
+     * @param localFtName
+     *            if null, the shape file base name will be used
+     * @param ftPrefix
+     * @param generateAlphanumericIndexes
+     *            whether to copy the dbf into a h2 database for indexing
+     * @param cache
+     *            used for caching retrieved feature instances, can be <code>null</code> (will create a default cache)
+     * @param mappings
+     *            may be null, in which case the original DBF names and 'geometry' will be used
+     * @param generalizedGeometries
+     *            cache for generalized geometries, can be <code>null</code> (no generalization)
+     * @param precomputeGeneralizations
+     *            whether the generalized geometries should be computed on initialization (instead of on first access)
+     */
+    public ShapeFeatureStore( String shpName, ICRS crs, Charset encoding, String ftNamespace, String localFtName,
+                              String ftPrefix, boolean generateAlphanumericIndexes, FeatureStoreCache cache,
+                              List<Mapping> mappings, ResourceMetadata<FeatureStore> metadata,
+                              GeneralizedGeometryCache generalizedGeometries, boolean precomputeGeneralizations ) {
         this.shpName = shpName;
+        this.generalizedGeometries = generalizedGeometries;
+        this.precomputeGeneralizations = precomputeGeneralizations;
         this.crs = crs;
         this.encoding = encoding;
         this.mappings = mappings;
@@ -299,6 +340,9 @@ public class ShapeFeatureStore implements FeatureStore {
                     shp = getSHP( true );
                     shpLastModified = shpFile.lastModified();
                     cache.clear();
+                    if ( generalizedGeometries != null ) {
+                        generalizedGeometries.clear();
+                    }
                 }
             }
             synchronized ( dbfFile ) {
@@ -417,6 +461,14 @@ public class ShapeFeatureStore implements FeatureStore {
             rs = new MemoryFeatureInputStream( Features.sortFc( rs.toCollection(), p.second ) );
         }
 
+        if ( query.isPaged() ) {
+            rs = new PagedFeatureInputStream( rs, query.getStartIndex(), query.getMaxFeatures() );
+        }
+
+        if ( generalizedGeometries != null ) {
+            rs = generalizedGeometries.generalize( rs, query, crs );
+        }
+
         return rs;
     }
 
@@ -501,7 +553,7 @@ public class ShapeFeatureStore implements FeatureStore {
     public int queryHits( Query query )
                             throws FeatureStoreException, FilterEvaluationException {
         // TODO
-        return query( query ).toCollection().size();
+        return query( new Query( query, 0, -1 ) ).count();
     }
 
     @Override
@@ -737,5 +789,24 @@ public class ShapeFeatureStore implements FeatureStore {
             ft = new GenericFeatureType( ftName, Collections.<PropertyType> singletonList( geomProp ), false );
         }
         schema = new GenericAppSchema( new FeatureType[] { ft }, null, null, null, null, null );
+
+        if ( generalizedGeometries != null && precomputeGeneralizations ) {
+            precomputeGeneralizations();
+        }
+    }
+
+    private void precomputeGeneralizations() {
+        long begin = System.currentTimeMillis();
+        List<Pair<Integer, Long>> recNumsAndPos = shp.query( shp.getEnvelope(), null );
+        for ( Pair<Integer, Long> recNumAndPos : recNumsAndPos ) {
+            // only the geometry is relevant for generalization, so don't bother reading the dbf
+            Geometry g = shp.readGeometry( recNumAndPos.second );
+            List<Property> props = Collections.<Property> singletonList( new GenericProperty(
+                                                                                              ft.getDefaultGeometryPropertyDeclaration(),
+                                                                                              g ) );
+            generalizedGeometries.precompute( ft.newFeature( buildFID( recNumAndPos.first ), props, null ) );
+        }
+        LOG.debug( "Generalized geometries of {} records in {} [ms].", recNumsAndPos.size(),
+                   System.currentTimeMillis() - begin );
     }
 }
\ No newline at end of file
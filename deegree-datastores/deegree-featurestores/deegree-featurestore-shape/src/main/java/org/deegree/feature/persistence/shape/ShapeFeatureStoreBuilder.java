@@ -48,8 +48,10 @@ import java.util.List;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.cs.persistence.CRSManager;
 import org.deegree.feature.persistence.FeatureStore;
+import org.deegree.feature.persistence.cache.GeneralizedGeometryCache;
 import org.deegree.feature.persistence.shape.ShapeFeatureStoreProvider.Mapping;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig;
+import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig.GeneralizationLevels;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig.Mapping.GeometryProperty;
 import org.deegree.feature.persistence.shape.jaxb.ShapeFeatureStoreConfig.Mapping.SimpleProperty;
 import org.deegree.workspace.ResourceBuilder;
@@ -128,11 +130,25 @@ public class ShapeFeatureStoreBuilder implements ResourceBuilder<FeatureStore> {
             }
         }
 
+        GeneralizedGeometryCache generalizedGeometries = null;
+        boolean precompute = false;
+        if ( config.getGeneralizationLevels() != null ) {
+            generalizedGeometries = createGeneralizedGeometryCache( config.getGeneralizationLevels() );
+            precompute = config.getGeneralizationLevels().isPrecompute();
+        }
+
         Boolean genIdx = config.isGenerateAlphanumericIndexes();
         return new ShapeFeatureStore( shapeFileName, crs, cs, config.getFeatureTypeNamespace(),
                                       config.getFeatureTypeName(), config.getFeatureTypePrefix(), genIdx == null
                                                                                                   || genIdx, null,
-                                      mappings, metadata );
+                                      mappings, metadata, generalizedGeometries, precompute );
+    }
+
+    private static GeneralizedGeometryCache createGeneralizedGeometryCache( GeneralizationLevels levels ) {
+        if ( levels.getMaxEntries() != null ) {
+            return new GeneralizedGeometryCache( levels.getResolution(), levels.getMaxEntries().intValue() );
+        }
+        return new GeneralizedGeometryCache( levels.getResolution() );
     }
 
 }
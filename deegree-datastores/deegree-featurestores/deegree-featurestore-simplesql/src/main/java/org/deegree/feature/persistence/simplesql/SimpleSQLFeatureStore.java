@@ -43,6 +43,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.TreeMap;
@@ -75,13 +77,19 @@ import org.deegree.feature.stream.CombinedFeatureInputStream;
 import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
 import org.deegree.feature.types.AppSchema;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.GenericAppSchema;
 import org.deegree.feature.types.GenericFeatureType;
 import org.deegree.feature.types.property.GeometryPropertyType;
 import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.Filter;
 import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.spatial.BBOX;
 import org.deegree.geometry.Envelope;
 import org.deegree.geometry.Geometry;
 import org.deegree.geometry.GeometryFactory;
@@ -89,7 +97,11 @@ import org.deegree.geometry.GeometryTransformer;
 import org.deegree.geometry.io.WKBReader;
 import org.deegree.geometry.io.WKTReader;
 import org.deegree.geometry.io.WKTWriter;
-import org.deegree.sqldialect.postgis.PostGISDialect;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.sqldialect.filter.AbstractWhereBuilder;
+import org.deegree.sqldialect.filter.PropertyNameMapper;
+import org.deegree.sqldialect.filter.UnmappableException;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceMetadata;
 import org.slf4j.Logger;
@@ -155,10 +167,6 @@ public class SimpleSQLFeatureStore implements FeatureStore {
         this.connProvider = connProvider;
         this.metadata = metadata;
 
-        sql = sql.trim();
-        if ( sql.endsWith( ";" ) ) {
-            sql = sql.substring( 0, sql.length() - 1 );
-        }
         this.bbox = bbox;
 
         // TODO allow null namespaces / empty prefix
@@ -179,12 +187,21 @@ public class SimpleSQLFeatureStore implements FeatureStore {
             LOG.trace( "Stack trace:", e );
         }
         this.lods = new TreeMap<Integer, String>();
-        this.lods.put( -1, sql );
+        this.lods.put( -1, trimStatement( sql ) );
         for ( Pair<Integer, String> p : lods ) {
-            this.lods.put( p.first, p.second );
+            // statements may be wrapped as subqueries, so trailing semicolons must be removed
+            this.lods.put( p.first, trimStatement( p.second ) );
         }
     }
 
+    private static String trimStatement( String sql ) {
+        sql = sql.trim();
+        if ( sql.endsWith( ";" ) ) {
+            sql = sql.substring( 0, sql.length() - 1 );
+        }
+        return sql;
+    }
+
     public FeatureStoreTransaction acquireTransaction()
                             throws FeatureStoreException {
         throw new FeatureStoreException( "Transactions are not implemented for the simple SQL datastore." );
@@ -286,50 +303,13 @@ public class SimpleSQLFeatureStore implements FeatureStore {
 
             for ( final Query q : queries ) {
 
-                Envelope bbox = q.getPrefilterBBoxEnvelope();
-                if ( bbox == null ) {
-                    bbox = calcEnvelope( ftName );
-                }
-
-                Object scaleHint = q.getHint( HINT_SCALE );
-                int scale = -1;
-                if ( scaleHint != null ) {
-                    scale = (Integer) scaleHint;
-                }
-                String sql = null;
-                for ( Integer i : lods.keySet() ) {
-                    if ( i <= scale ) {
-                        LOG.debug( "Considering use of LOD with scale {}.", i );
-                        sql = lods.get( i );
-                    }
-                }
-
+                MappedFilter mappedFilter = mapFilter( q.getFilter(), featureType, connProvider.getDialect() );
                 conn = connProvider.getConnection();
-
-                if ( q.getMaxFeatures() > 0 && connProvider.getDialect() instanceof PostGISDialect ) {
-                    sql += " limit " + q.getMaxFeatures();
-                }
-
-                stmt = conn.prepareStatement( sql );
-                try {
-                    bbox = transformer.transform( bbox );
-                } catch ( UnknownCRSException e ) {
-                    LOG.info( "Bounding box could not be transformed: '{}'.", e.getLocalizedMessage() );
-                    LOG.trace( "Stack trace:", e );
-                } catch ( TransformationException e ) {
-                    LOG.info( "Bounding box could not be transformed: '{}'.", e.getLocalizedMessage() );
-                    LOG.trace( "Stack trace:", e );
-                }
-                int parameterCount = stmt.getParameterMetaData().getParameterCount();
-                if ( parameterCount == 0 ) {
-                    LOG.info( "No parameter for the bbox was found, requesting without bbox!" );
-                } else if ( parameterCount > 1 ) {
-                    LOG.warn( "Too many parameters specified ({}), cannot go further!", parameterCount );
+                stmt = prepareStatement( conn, q, mappedFilter, false );
+                if ( stmt == null ) {
+                    JDBCUtils.close( conn );
                     return null;
                 }
-                stmt.setString( 1, WKTWriter.write( bbox ) );
-                LOG.debug( "Statement to fetch features was '{}'.",
-                           connProvider.getClass().getSimpleName().equals( "OracleDialect" ) ? sql : stmt );
                 stmt.execute();
 
                 set = new IteratorFeatureInputStream(
@@ -368,8 +348,11 @@ public class SimpleSQLFeatureStore implements FeatureStore {
                                                           }
                                                       } );
 
-                if ( q.getFilter() != null ) {
-                    set = new FilteredFeatureInputStream( set, q.getFilter() );
+                if ( mappedFilter.postFilter != null ) {
+                    set = new FilteredFeatureInputStream( set, mappedFilter.postFilter );
+                }
+                if ( q.isPaged() ) {
+                    set = new PagedFeatureInputStream( set, q.getStartIndex(), q.getMaxFeatures() );
                 }
 
                 list.add( set );
@@ -386,8 +369,180 @@ public class SimpleSQLFeatureStore implements FeatureStore {
 
     public int queryHits( Query query )
                             throws FeatureStoreException, FilterEvaluationException {
-        // TODO SELECT COUNT
-        return query( query ).count();
+        MappedFilter mappedFilter = mapFilter( query.getFilter(), featureType, connProvider.getDialect() );
+        if ( mappedFilter.postFilter != null ) {
+            LOG.debug( "Filter cannot be evaluated by the database completely, counting features in memory." );
+            return query( new Query( query, 0, -1 ) ).count();
+        }
+        ResultSet rs = null;
+        PreparedStatement stmt = null;
+        Connection conn = null;
+        try {
+            conn = connProvider.getConnection();
+            stmt = prepareStatement( conn, query, mappedFilter, true );
+            if ( stmt == null ) {
+                throw new FeatureStoreException( "Data store could not be accessed." );
+            }
+            rs = stmt.executeQuery();
+            rs.next();
+            return rs.getInt( 1 );
+        } catch ( SQLException e ) {
+            LOG.info( "Data store could not be accessed: '{}'.", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+            available = false;
+            throw new FeatureStoreException( "Data store could not be accessed." );
+        } finally {
+            JDBCUtils.close( rs, stmt, conn, LOG );
+        }
+    }
+
+    /**
+     * Prepares the statement for fetching (or counting) the features that match the given query.
+     * <p>
+     * The statement of the LOD that applies to the scale hint of the query is used. If parts of the filter can be
+     * evaluated by the database, it is wrapped into a subquery that is restricted by a corresponding WHERE clause.
+     * </p>
+     * 
+     * @return prepared statement with bound parameters, or <code>null</code> if the configured statement is invalid
+     */
+    private PreparedStatement prepareStatement( Connection conn, Query q, MappedFilter mappedFilter, boolean count )
+                            throws SQLException {
+
+        Envelope bbox = q.getPrefilterBBoxEnvelope();
+        if ( bbox == null ) {
+            bbox = calcEnvelope( ftName );
+        }
+
+        Object scaleHint = q.getHint( HINT_SCALE );
+        int scale = -1;
+        if ( scaleHint != null ) {
+            scale = (Integer) scaleHint;
+        }
+        String sql = null;
+        for ( Integer i : lods.keySet() ) {
+            if ( i <= scale ) {
+                LOG.debug( "Considering use of LOD with scale {}.", i );
+                sql = lods.get( i );
+            }
+        }
+
+        List<SQLArgument> whereArgs = Collections.emptyList();
+        AbstractWhereBuilder wb = mappedFilter.wb;
+        if ( wb != null ) {
+            String alias = wb.getAliasManager().getRootTableAlias();
+            sql = "SELECT * FROM (" + sql + ") " + alias + " WHERE " + wb.getWhere().getSQL();
+            whereArgs = wb.getWhere().getArguments();
+        }
+        SQLDialect dialect = connProvider.getDialect();
+        if ( count ) {
+            sql = "SELECT COUNT(*) FROM (" + sql + ") C";
+        } else if ( q.getMaxFeatures() > 0 && mappedFilter.postFilter == null && dialect != null ) {
+            // skipping is performed in memory (by the paged feature stream)
+            sql = dialect.getLimitedSelect( sql, q.getStartIndex() + q.getMaxFeatures() );
+        }
+
+        PreparedStatement stmt = conn.prepareStatement( sql );
+        try {
+            bbox = transformer.transform( bbox );
+        } catch ( UnknownCRSException e ) {
+            LOG.info( "Bounding box could not be transformed: '{}'.", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        } catch ( TransformationException e ) {
+            LOG.info( "Bounding box could not be transformed: '{}'.", e.getLocalizedMessage() );
+            LOG.trace( "Stack trace:", e );
+        }
+        int parameterCount = stmt.getParameterMetaData().getParameterCount() - whereArgs.size();
+        int i = 1;
+        if ( parameterCount == 0 ) {
+            LOG.info( "No parameter for the bbox was found, requesting without bbox!" );
+        } else if ( parameterCount > 1 ) {
+            LOG.warn( "Too many parameters specified ({}), cannot go further!", parameterCount );
+            JDBCUtils.close( stmt );
+            return null;
+        } else {
+            stmt.setString( i++, WKTWriter.write( bbox ) );
+        }
+        for ( SQLArgument arg : whereArgs ) {
+            arg.setArgument( stmt, i++ );
+        }
+        boolean isOracle = dialect != null && dialect.getClass().getSimpleName().equals( "OracleDialect" );
+        LOG.debug( "Statement to fetch features was '{}'.", isOracle ? sql : stmt );
+        return stmt;
+    }
+
+    /**
+     * Determines which parts of the given filter can be evaluated by the database.
+     * <p>
+     * The conjuncts of the filter are mapped individually: those that only involve simple properties become part of
+     * the WHERE clause, all others (including any spatial constraint) are evaluated in memory afterwards. Bounding box
+     * constraints are passed to the configured statement as well, but the statement may deliver features that don't
+     * actually intersect the box, so the exact check is always performed in memory.
+     * </p>
+     * 
+     * @param filter
+     *            filter of the query, can be <code>null</code>
+     * @param ft
+     *            feature type of the store, must not be <code>null</code>
+     * @param dialect
+     *            dialect of the database, can be <code>null</code> (filter is evaluated in memory)
+     * @return mapped filter, never <code>null</code>
+     */
+    static MappedFilter mapFilter( Filter filter, FeatureType ft, SQLDialect dialect )
+                            throws FilterEvaluationException {
+        if ( filter == null ) {
+            return new MappedFilter( null, null );
+        }
+        if ( !( filter instanceof OperatorFilter ) || dialect == null ) {
+            return new MappedFilter( null, filter );
+        }
+
+        List<Operator> conjuncts = new ArrayList<Operator>();
+        collectConjuncts( ( (OperatorFilter) filter ).getOperator(), conjuncts );
+        PropertyNameMapper mapper = new SimpleSQLPropertyNameMapper( ft, dialect );
+        List<Operator> mapped = new ArrayList<Operator>();
+        List<Operator> unmapped = new ArrayList<Operator>();
+        for ( Operator conjunct : conjuncts ) {
+            if ( conjunct instanceof BBOX ) {
+                unmapped.add( conjunct );
+                continue;
+            }
+            try {
+                dialect.getWhereBuilder( mapper, new OperatorFilter( conjunct ), null, false );
+                mapped.add( conjunct );
+            } catch ( UnmappableException e ) {
+                LOG.debug( "Evaluating filter constraint in memory: {}", e.getMessage() );
+                unmapped.add( conjunct );
+            }
+        }
+
+        AbstractWhereBuilder wb = null;
+        if ( !mapped.isEmpty() ) {
+            try {
+                wb = dialect.getWhereBuilder( mapper, new OperatorFilter( combine( mapped ) ), null, false );
+            } catch ( UnmappableException e ) {
+                // cannot happen, all conjuncts are mappable
+                return new MappedFilter( null, filter );
+            }
+        }
+        Filter postFilter = unmapped.isEmpty() ? null : new OperatorFilter( combine( unmapped ) );
+        return new MappedFilter( wb, postFilter );
+    }
+
+    private static void collectConjuncts( Operator operator, List<Operator> conjuncts ) {
+        if ( operator instanceof And ) {
+            for ( Operator param : ( (And) operator ).getParams() ) {
+                collectConjuncts( param, conjuncts );
+            }
+        } else {
+            conjuncts.add( operator );
+        }
+    }
+
+    private static Operator combine( List<Operator> operators ) {
+        if ( operators.size() == 1 ) {
+            return operators.get( 0 );
+        }
+        return new And( operators.toArray( new Operator[operators.size()] ) );
     }
 
     @Override
@@ -430,4 +585,23 @@ public class SimpleSQLFeatureStore implements FeatureStore {
         // unused
     }
 
+    /**
+     * Result of mapping a query filter to SQL.
+     */
+    static class MappedFilter {
+
+        /** WHERE clause for the database part of the filter, can be <code>null</code> */
+        final AbstractWhereBuilder wb;
+
+        /**
+         * filter to evaluate in memory, can be <code>null</code> (only then the database can count or limit the result)
+         */
+        final Filter postFilter;
+
+        MappedFilter( AbstractWhereBuilder wb, Filter postFilter ) {
+            this.wb = wb;
+            this.postFilter = postFilter;
+        }
+    }
+
 }
@@ -0,0 +1,99 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.simplesql;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.sqldialect.filter.PropertyNameMapper;
+import org.deegree.sqldialect.filter.PropertyNameMapping;
+import org.deegree.sqldialect.filter.TableAliasManager;
+
+/**
+ * {@link PropertyNameMapper} that maps the simple properties of a {@link SimpleSQLFeatureStore} to the columns of the
+ * configured statement (wrapped as a subquery).
+ * <p>
+ * Geometry properties are not mapped, as the statement delivers them as WKB, so spatial constraints are always
+ * evaluated in memory (apart from the bounding box that is passed to the statement).
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class SimpleSQLPropertyNameMapper implements PropertyNameMapper {
+
+    private final FeatureType ft;
+
+    private final SQLDialect dialect;
+
+    SimpleSQLPropertyNameMapper( FeatureType ft, SQLDialect dialect ) {
+        this.ft = ft;
+        this.dialect = dialect;
+    }
+
+    @Override
+    public PropertyNameMapping getMapping( ValueReference propName, TableAliasManager aliasManager ) {
+        if ( propName == null ) {
+            return null;
+        }
+        QName qName = propName.getAsQName();
+        if ( qName == null ) {
+            return null;
+        }
+        for ( PropertyType pt : ft.getPropertyDeclarations() ) {
+            String column = pt.getName().getLocalPart();
+            if ( pt instanceof SimplePropertyType && column.equals( qName.getLocalPart() ) ) {
+                // column names are taken from the result set metadata, so quoting retains their exact spelling
+                String quoted = "\"" + column + "\"";
+                SimplePropertyType spt = (SimplePropertyType) pt;
+                return new PropertyNameMapping( dialect.getPrimitiveConverter( quoted, spt.getPrimitiveType() ),
+                                                null, quoted, aliasManager.getRootTableAlias() );
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public PropertyNameMapping getSpatialMapping( ValueReference propName, TableAliasManager aliasManager ) {
+        return null;
+    }
+
+}
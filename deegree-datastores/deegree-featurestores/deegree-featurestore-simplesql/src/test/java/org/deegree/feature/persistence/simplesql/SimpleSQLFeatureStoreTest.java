@@ -0,0 +1,145 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.simplesql;
+
+import static org.deegree.feature.persistence.simplesql.SimpleSQLFeatureStore.mapFilter;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.feature.persistence.simplesql.SimpleSQLFeatureStore.MappedFilter;
+import org.deegree.feature.types.FeatureType;
+import org.deegree.filter.Filter;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.sqldialect.SQLDialect;
+import org.deegree.sqldialect.postgis.PostGISDialect;
+import org.junit.Test;
+
+/**
+ * Tests for the mapping of query filters in {@link SimpleSQLFeatureStore}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SimpleSQLFeatureStoreTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private final FeatureType ft = SimpleSQLPropertyNameMapperTest.createFeatureType();
+
+    private final SQLDialect dialect = new PostGISDialect( false );
+
+    @Test
+    public void testNoFilter()
+                            throws Exception {
+        MappedFilter mapped = mapFilter( null, ft, dialect );
+        assertNull( mapped.wb );
+        assertNull( mapped.postFilter );
+    }
+
+    @Test
+    public void testSimplePropertyIsMapped()
+                            throws Exception {
+        MappedFilter mapped = mapFilter( new OperatorFilter( isName( "Kant" ) ), ft, dialect );
+        assertNotNull( mapped.wb );
+        assertTrue( mapped.wb.getWhere().getSQL().toString().contains( "\"name\"" ) );
+        assertEquals( 1, mapped.wb.getWhere().getArguments().size() );
+        assertNull( mapped.postFilter );
+    }
+
+    @Test
+    public void testBBoxIsEvaluatedInMemory()
+                            throws Exception {
+        BBOX bbox = bbox();
+        MappedFilter mapped = mapFilter( new OperatorFilter( bbox ), ft, dialect );
+        assertNull( mapped.wb );
+        assertNotNull( mapped.postFilter );
+        assertSame( bbox, ( (OperatorFilter) mapped.postFilter ).getOperator() );
+    }
+
+    @Test
+    public void testConjunctionIsSplit()
+                            throws Exception {
+        BBOX bbox = bbox();
+        MappedFilter mapped = mapFilter( new OperatorFilter( new And( isName( "Kant" ), bbox ) ), ft, dialect );
+        assertNotNull( mapped.wb );
+        assertTrue( mapped.wb.getWhere().getSQL().toString().contains( "\"name\"" ) );
+        assertSame( bbox, ( (OperatorFilter) mapped.postFilter ).getOperator() );
+    }
+
+    @Test
+    public void testUnknownPropertyIsEvaluatedInMemory()
+                            throws Exception {
+        Operator unknown = new PropertyIsEqualTo( new ValueReference( new QName( NS, "unknown" ) ),
+                                                  new Literal<PrimitiveValue>( "Kant" ), true, null );
+        MappedFilter mapped = mapFilter( new OperatorFilter( new And( isName( "Kant" ), unknown ) ), ft, dialect );
+        assertNotNull( mapped.wb );
+        assertSame( unknown, ( (OperatorFilter) mapped.postFilter ).getOperator() );
+    }
+
+    @Test
+    public void testNoDialect()
+                            throws Exception {
+        Filter filter = new OperatorFilter( isName( "Kant" ) );
+        MappedFilter mapped = mapFilter( filter, ft, null );
+        assertNull( mapped.wb );
+        assertSame( filter, mapped.postFilter );
+    }
+
+    private static Operator isName( String name ) {
+        return new PropertyIsEqualTo( new ValueReference( new QName( NS, "name" ) ),
+                                      new Literal<PrimitiveValue>( name ), true, null );
+    }
+
+    private static BBOX bbox() {
+        return new BBOX( new ValueReference( new QName( NS, "geom" ) ),
+                         new GeometryFactory().createEnvelope( 0, 0, 1, 1, null ) );
+    }
+
+}
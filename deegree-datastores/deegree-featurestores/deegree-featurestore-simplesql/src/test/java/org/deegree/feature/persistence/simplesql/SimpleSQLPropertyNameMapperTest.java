@@ -0,0 +1,113 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.simplesql;
+
+import static org.deegree.commons.tom.primitive.BaseType.STRING;
+import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2_OR_3;
+import static org.deegree.feature.types.property.GeometryPropertyType.GeometryType.GEOMETRY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.gml.property.PropertyType;
+import org.deegree.feature.types.GenericFeatureType;
+import org.deegree.feature.types.property.GeometryPropertyType;
+import org.deegree.feature.types.property.SimplePropertyType;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.sqldialect.filter.PropertyNameMapping;
+import org.deegree.sqldialect.filter.TableAliasManager;
+import org.deegree.sqldialect.postgis.PostGISDialect;
+import org.junit.Test;
+
+/**
+ * Tests for {@link SimpleSQLPropertyNameMapper}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SimpleSQLPropertyNameMapperTest {
+
+    private static final String NS = "http://www.deegree.org/app";
+
+    private final SimpleSQLPropertyNameMapper mapper = new SimpleSQLPropertyNameMapper( createFeatureType(),
+                                                                                        new PostGISDialect( false ) );
+
+    @Test
+    public void testSimpleProperty() {
+        TableAliasManager aliasManager = new TableAliasManager();
+        PropertyNameMapping mapping = mapper.getMapping( new ValueReference( new QName( NS, "name" ) ), aliasManager );
+        assertNotNull( mapping );
+        assertEquals( "\"name\"", mapping.getColumn() );
+        assertEquals( aliasManager.getRootTableAlias(), mapping.getTableAlias() );
+        assertTrue( mapping.getJoins() == null || mapping.getJoins().isEmpty() );
+    }
+
+    @Test
+    public void testUnqualifiedProperty() {
+        PropertyNameMapping mapping = mapper.getMapping( new ValueReference( new QName( "name" ) ),
+                                                         new TableAliasManager() );
+        assertNotNull( mapping );
+        assertEquals( "\"name\"", mapping.getColumn() );
+    }
+
+    @Test
+    public void testGeometryPropertyIsNotMapped() {
+        ValueReference geom = new ValueReference( new QName( NS, "geom" ) );
+        assertNull( mapper.getMapping( geom, new TableAliasManager() ) );
+        assertNull( mapper.getSpatialMapping( geom, new TableAliasManager() ) );
+    }
+
+    @Test
+    public void testUnknownPropertyIsNotMapped() {
+        assertNull( mapper.getMapping( new ValueReference( new QName( NS, "unknown" ) ), new TableAliasManager() ) );
+        assertNull( mapper.getMapping( null, new TableAliasManager() ) );
+    }
+
+    static GenericFeatureType createFeatureType() {
+        List<PropertyType> pts = new ArrayList<PropertyType>();
+        pts.add( new SimplePropertyType( new QName( NS, "name" ), 0, 1, STRING, null, null ) );
+        pts.add( new GeometryPropertyType( new QName( NS, "geom" ), 0, 1, null, null, GEOMETRY, DIM_2_OR_3, null ) );
+        return new GenericFeatureType( new QName( NS, "Feature", "app" ), pts, false );
+    }
+
+}
@@ -0,0 +1,285 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.uom.Measure;
+import org.deegree.commons.xml.NamespaceBindings;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.ComparisonOperator;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.comparison.PropertyIsNil;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.LogicalOperator;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.filter.spatial.SpatialOperator;
+import org.deegree.geometry.Geometry;
+
+/**
+ * Structural description of an {@link OperatorFilter} and the sort criteria of a query, used as key for caching the SQL
+ * that is generated for them.
+ * <p>
+ * Two filters have the same shape if they only differ in the geometries of their spatial operators. All other
+ * operands (literals, property names including the bound namespaces, distances, matching options) are part of the
+ * shape, so the generated SQL (and its non-spatial arguments) is the same for all filters of a shape. The geometries
+ * are collected in document order and can be bound as arguments of the cached SQL.
+ * </p>
+ * <p>
+ * Filters that use functions, custom expressions, temporal operators or literals with complex values are not
+ * supported, as the SQL generated for them may depend on more than their structure.
+ * </p>
+ * 
+ * @see SQLFeatureStore
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class FilterShape {
+
+    private static final Pattern PREFIX = Pattern.compile( "([A-Za-z_][\\w.\\-]*):" );
+
+    private final String key;
+
+    private final List<Geometry> geometries;
+
+    private FilterShape( String key, List<Geometry> geometries ) {
+        this.key = key;
+        this.geometries = geometries;
+    }
+
+    /**
+     * Determines the shape of the given filter and sort criteria.
+     * 
+     * @param filter
+     *            filter, can be <code>null</code>
+     * @param sortCrit
+     *            sort criteria, can be <code>null</code>
+     * @return shape, or <code>null</code> if the filter is not supported
+     */
+    static FilterShape create( OperatorFilter filter, SortProperty[] sortCrit ) {
+        StringBuilder sb = new StringBuilder();
+        List<Geometry> geometries = new ArrayList<Geometry>();
+        if ( filter != null && !appendOperator( filter.getOperator(), sb, geometries ) ) {
+            return null;
+        }
+        if ( sortCrit != null ) {
+            for ( SortProperty sortProp : sortCrit ) {
+                sb.append( "|S" ).append( sortProp.getSortOrder() ? 'A' : 'D' );
+                appendValueReference( sortProp.getSortProperty(), sb );
+            }
+        }
+        return new FilterShape( sb.toString(), Collections.unmodifiableList( geometries ) );
+    }
+
+    /**
+     * @return key that identifies the shape, never <code>null</code>
+     */
+    String getKey() {
+        return key;
+    }
+
+    /**
+     * @return geometries of the spatial operators (in document order), never <code>null</code>
+     */
+    List<Geometry> getGeometries() {
+        return geometries;
+    }
+
+    /**
+     * Returns the position of the given object in the list of geometries.
+     * 
+     * @param o
+     *            object, can be <code>null</code>
+     * @return index of the geometry (compared by identity), or <code>-1</code> if it is not a geometry of the filter
+     */
+    int indexOf( Object o ) {
+        for ( int i = 0; i < geometries.size(); i++ ) {
+            if ( geometries.get( i ) == o ) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean appendOperator( Operator op, StringBuilder sb, List<Geometry> geometries ) {
+        switch ( op.getType() ) {
+        case LOGICAL: {
+            LogicalOperator logicalOp = (LogicalOperator) op;
+            sb.append( logicalOp.getSubType() ).append( '(' );
+            for ( Operator param : logicalOp.getParams() ) {
+                if ( !appendOperator( param, sb, geometries ) ) {
+                    return false;
+                }
+                sb.append( ',' );
+            }
+            sb.append( ')' );
+            return true;
+        }
+        case COMPARISON: {
+            ComparisonOperator compOp = (ComparisonOperator) op;
+            sb.append( compOp.getSubType() ).append( '[' ).append( compOp.isMatchCase() );
+            sb.append( ',' ).append( compOp.getMatchAction() );
+            if ( compOp instanceof PropertyIsLike ) {
+                PropertyIsLike like = (PropertyIsLike) compOp;
+                appendText( like.getWildCard(), sb );
+                appendText( like.getSingleChar(), sb );
+                appendText( like.getEscapeChar(), sb );
+            } else if ( compOp instanceof PropertyIsNil ) {
+                appendText( ( (PropertyIsNil) compOp ).getNilReason(), sb );
+            }
+            sb.append( "](" );
+            for ( Expression param : compOp.getParams() ) {
+                if ( !appendExpression( param, sb ) ) {
+                    return false;
+                }
+                sb.append( ',' );
+            }
+            sb.append( ')' );
+            return true;
+        }
+        case SPATIAL: {
+            SpatialOperator spatialOp = (SpatialOperator) op;
+            sb.append( spatialOp.getSubType() ).append( '(' );
+            for ( Object param : spatialOp.getParams() ) {
+                if ( param == null ) {
+                    sb.append( "null" );
+                } else if ( param instanceof Geometry ) {
+                    Geometry geom = (Geometry) param;
+                    for ( Geometry other : geometries ) {
+                        if ( other == geom ) {
+                            // arguments would be ambiguous
+                            return false;
+                        }
+                    }
+                    geometries.add( geom );
+                    ICRS crs = geom.getCoordinateSystem();
+                    sb.append( '?' ).append( geom.getClass().getName() );
+                    appendText( crs != null ? crs.getAlias() : null, sb );
+                } else if ( param instanceof Measure ) {
+                    Measure measure = (Measure) param;
+                    sb.append( 'M' );
+                    appendText( measure.getValue().toString(), sb );
+                    appendText( measure.getUomUri(), sb );
+                } else if ( param instanceof Expression ) {
+                    if ( !appendExpression( (Expression) param, sb ) ) {
+                        return false;
+                    }
+                } else {
+                    return false;
+                }
+                sb.append( ',' );
+            }
+            sb.append( ')' );
+            return true;
+        }
+        default:
+            return false;
+        }
+    }
+
+    private static boolean appendExpression( Expression expr, StringBuilder sb ) {
+        switch ( expr.getType() ) {
+        case VALUE_REFERENCE:
+            appendValueReference( (ValueReference) expr, sb );
+            return true;
+        case LITERAL: {
+            TypedObjectNode value = ( (Literal<?>) expr ).getValue();
+            if ( value == null ) {
+                sb.append( "L-" );
+                return true;
+            }
+            if ( !( value instanceof PrimitiveValue ) ) {
+                return false;
+            }
+            PrimitiveValue pv = (PrimitiveValue) value;
+            sb.append( 'L' ).append( pv.getType().getBaseType() );
+            appendText( pv.getAsText(), sb );
+            return true;
+        }
+        case ADD:
+        case SUB:
+        case MUL:
+        case DIV: {
+            sb.append( expr.getType() ).append( '(' );
+            for ( Expression param : expr.getParams() ) {
+                if ( !appendExpression( param, sb ) ) {
+                    return false;
+                }
+                sb.append( ',' );
+            }
+            sb.append( ')' );
+            return true;
+        }
+        default:
+            return false;
+        }
+    }
+
+    private static void appendValueReference( ValueReference propName, StringBuilder sb ) {
+        String text = propName.getAsText();
+        sb.append( 'P' );
+        appendText( text, sb );
+        NamespaceBindings nsContext = propName.getNsContext();
+        if ( nsContext != null ) {
+            Matcher m = PREFIX.matcher( text );
+            while ( m.find() ) {
+                appendText( nsContext.getNamespaceURI( m.group( 1 ) ), sb );
+            }
+        }
+    }
+
+    // length prefix, so arbitrary text cannot be mistaken for structure
+    private static void appendText( String text, StringBuilder sb ) {
+        if ( text == null ) {
+            sb.append( "-;" );
+        } else {
+            sb.append( text.length() ).append( ':' ).append( text ).append( ';' );
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.utils.GeometryParticleConverter;
+import org.deegree.sqldialect.filter.expression.SQLArgument;
+
+/**
+ * Cached SELECT statement for the queries of a {@link FilterShape}.
+ * <p>
+ * Contains the generated SQL and everything that is needed to bind its arguments for another filter of the same shape:
+ * non-spatial arguments are reused, geometry arguments are taken from the filter. The SQL is not paged, so the same
+ * template serves all pages of a query.
+ * </p>
+ * 
+ * @see SQLFeatureStore
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+final class QueryTemplate {
+
+    private final String sql;
+
+    private final String ftTableAlias;
+
+    private final boolean pageableInDb;
+
+    private final boolean ordered;
+
+    // non-spatial arguments, null for geometry arguments
+    private final SQLArgument[] args;
+
+    // index of the filter geometry for geometry arguments
+    private final int[] geometryIndexes;
+
+    private final GeometryParticleConverter[] converters;
+
+    private QueryTemplate( String sql, String ftTableAlias, boolean pageableInDb, boolean ordered, SQLArgument[] args,
+                           int[] geometryIndexes, GeometryParticleConverter[] converters ) {
+        this.sql = sql;
+        this.ftTableAlias = ftTableAlias;
+        this.pageableInDb = pageableInDb;
+        this.ordered = ordered;
+        this.args = args;
+        this.geometryIndexes = geometryIndexes;
+        this.converters = converters;
+    }
+
+    /**
+     * Creates a new {@link QueryTemplate} for the given SQL.
+     * 
+     * @param sql
+     *            generated SQL without paging, must not be <code>null</code>
+     * @param ftTableAlias
+     *            alias of the feature type table, must not be <code>null</code>
+     * @param pageableInDb
+     *            <code>true</code>, if every row corresponds to a feature, so the database can perform the paging
+     * @param ordered
+     *            <code>true</code>, if the SQL has an ORDER BY clause
+     * @param arguments
+     *            arguments of the SQL, must not be <code>null</code>
+     * @param shape
+     *            shape of the filter that the SQL has been generated for, must not be <code>null</code>
+     * @return template, or <code>null</code> if a geometry argument does not stem from the filter
+     */
+    static QueryTemplate create( String sql, String ftTableAlias, boolean pageableInDb, boolean ordered,
+                                 List<SQLArgument> arguments, FilterShape shape ) {
+        int n = arguments.size();
+        SQLArgument[] args = new SQLArgument[n];
+        int[] geometryIndexes = new int[n];
+        GeometryParticleConverter[] converters = new GeometryParticleConverter[n];
+        for ( int i = 0; i < n; i++ ) {
+            SQLArgument arg = arguments.get( i );
+            if ( arg.getValue() instanceof Geometry ) {
+                geometryIndexes[i] = shape.indexOf( arg.getValue() );
+                if ( geometryIndexes[i] < 0 || !( arg.getConverter() instanceof GeometryParticleConverter ) ) {
+                    return null;
+                }
+                converters[i] = (GeometryParticleConverter) arg.getConverter();
+            } else {
+                args[i] = arg;
+                geometryIndexes[i] = -1;
+            }
+        }
+        return new QueryTemplate( sql, ftTableAlias, pageableInDb, ordered, args, geometryIndexes, converters );
+    }
+
+    /**
+     * @return SQL of the SELECT statement, never <code>null</code>
+     */
+    String getSql() {
+        return sql;
+    }
+
+    /**
+     * @return alias of the feature type table, never <code>null</code>
+     */
+    String getFtTableAlias() {
+        return ftTableAlias;
+    }
+
+    /**
+     * @return <code>true</code>, if the database can perform the paging of the query
+     */
+    boolean isPageableInDb() {
+        return pageableInDb;
+    }
+
+    /**
+     * @return <code>true</code>, if the SQL has an ORDER BY clause
+     */
+    boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Binds the arguments for the given filter shape.
+     * 
+     * @param stmt
+     *            statement prepared from {@link #getSql()}, must not be <code>null</code>
+     * @param shape
+     *            shape of the filter, must have the key of the shape that the template has been created for
+     * @throws SQLException
+     */
+    void setArguments( PreparedStatement stmt, FilterShape shape )
+                            throws SQLException {
+        List<Geometry> geometries = shape.getGeometries();
+        for ( int i = 0; i < args.length; i++ ) {
+            if ( args[i] != null ) {
+                args[i].setArgument( stmt, i + 1 );
+            } else {
+                new SQLArgument( geometries.get( geometryIndexes[i] ), converters[i] ).setArgument( stmt, i + 1 );
+            }
+        }
+    }
+
+}
@@ -42,6 +42,7 @@ import static org.deegree.commons.xml.CommonNamespaces.XSINS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 import java.lang.reflect.Constructor;
+import java.math.BigInteger;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -49,12 +50,15 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import javax.xml.namespace.QName;
 
@@ -113,6 +117,8 @@ import org.deegree.feature.stream.FeatureInputStream;
 import org.deegree.feature.stream.FilteredFeatureInputStream;
 import org.deegree.feature.stream.IteratorFeatureInputStream;
 import org.deegree.feature.stream.MemoryFeatureInputStream;
+import org.deegree.feature.stream.PagedFeatureInputStream;
+import org.deegree.feature.stream.ParallelFeatureInputStream;
 import org.deegree.feature.types.FeatureType;
 import org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension;
 import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
@@ -161,6 +167,8 @@ public class SQLFeatureStore implements FeatureStore {
 
     private static final int DEFAULT_CACHE_SIZE = 10000;
 
+    private static final int QUERY_TEMPLATE_CACHE_SIZE = 256;
+
     private final SQLFeatureStoreJAXB config;
 
     private final URL configURL;
@@ -189,6 +197,11 @@ public class SQLFeatureStore implements FeatureStore {
 
     private int fetchSize;
 
+    private final int maxParallelQueries;
+
+    // evaluates the queries of a multi-type query in parallel, null if queries are not evaluated in parallel
+    private final ExecutorService queryExecutor;
+
     private Boolean readAutoCommit;
 
     private final List<FeatureInspector> inspectors = new ArrayList<FeatureInspector>();
@@ -201,6 +214,9 @@ public class SQLFeatureStore implements FeatureStore {
 
     private ConnectionProvider connProvider;
 
+    // generated SELECT statements, keyed by feature type, filter shape and paging
+    private final Map<String, QueryTemplate> queryTemplates;
+
     /**
      * Creates a new {@link SQLFeatureStore} for the given configuration.
      * 
@@ -221,6 +237,10 @@ public class SQLFeatureStore implements FeatureStore {
         fetchSize = config.getJDBCConnId().getFetchSize() != null ? config.getJDBCConnId().getFetchSize().intValue()
                                                                  : DEFAULT_FETCH_SIZE;
         LOG.debug( "Fetch size: " + fetchSize );
+        BigInteger parallelQueries = config.getJDBCConnId().getMaxParallelQueries();
+        maxParallelQueries = parallelQueries != null ? parallelQueries.intValue() : 1;
+        LOG.debug( "Max parallel queries: " + maxParallelQueries );
+        queryExecutor = maxParallelQueries > 1 ? ParallelFeatureInputStream.createExecutor( maxParallelQueries ) : null;
         readAutoCommit = config.getJDBCConnId().isReadAutoCommit() != null ? config.getJDBCConnId().isReadAutoCommit()
                                                                           : !dialect.requiresTransactionForCursorMode();
         LOG.debug( "Read auto commit: " + readAutoCommit );
@@ -230,6 +250,14 @@ public class SQLFeatureStore implements FeatureStore {
         } else {
             cache = null;
         }
+        queryTemplates = Collections.synchronizedMap( new LinkedHashMap<String, QueryTemplate>( 16, 0.75f, true ) {
+            private static final long serialVersionUID = 5150208307404306429L;
+
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<String, QueryTemplate> eldest ) {
+                return size() > QUERY_TEMPLATE_CACHE_SIZE;
+            }
+        } );
     }
 
     private void initConverters() {
@@ -599,7 +627,12 @@ public class SQLFeatureStore implements FeatureStore {
 
     @Override
     public void destroy() {
-        // nothing to do
+        if ( lockManager != null ) {
+            lockManager.destroy();
+        }
+        if ( queryExecutor != null ) {
+            queryExecutor.shutdown();
+        }
     }
 
     @Override
@@ -663,7 +696,7 @@ public class SQLFeatureStore implements FeatureStore {
             if ( wb.getPostFilter() != null ) {
                 conn.close();
                 LOG.debug( "Filter not fully mappable to WHERE clause. Need to iterate over all features to determine count." );
-                hits = queryByOperatorFilter( query, ftName, filter ).count();
+                hits = queryByOperatorFilter( new Query( query, 0, -1 ), ftName, filter ).count();
             } else {
                 StringBuilder sql = new StringBuilder( "SELECT " );
                 if ( wb.getWhere() == null ) {
@@ -887,6 +920,9 @@ public class SQLFeatureStore implements FeatureStore {
                 throw new FilterEvaluationException( msg );
             }
             result = queryByIdFilter( (IdFilter) filter, query.getSortProperties() );
+            if ( query.isPaged() ) {
+                result = new PagedFeatureInputStream( result, query.getStartIndex(), query.getMaxFeatures() );
+            }
         }
         return result;
     }
@@ -899,11 +935,12 @@ public class SQLFeatureStore implements FeatureStore {
         boolean wmsStyleQuery = false;
         Envelope env = queries[0].getPrefilterBBoxEnvelope();
         if ( getSchema().getBlobMapping() != null && queries[0].getFilter() == null
-             && queries[0].getSortProperties().length == 0 ) {
+             && queries[0].getSortProperties().length == 0 && queries[0].getStartIndex() == 0 ) {
             wmsStyleQuery = true;
             for ( int i = 1; i < queries.length; i++ ) {
                 Envelope queryBBox = queries[i].getPrefilterBBoxEnvelope();
-                if ( queryBBox != env && queries[i].getFilter() != null && queries[i].getSortProperties() != null ) {
+                if ( queries[i].getStartIndex() > 0
+                     || ( queryBBox != env && queries[i].getFilter() != null && queries[i].getSortProperties() != null ) ) {
                     wmsStyleQuery = false;
                     break;
                 }
@@ -914,6 +951,22 @@ public class SQLFeatureStore implements FeatureStore {
             return queryMultipleFts( queries, env );
         }
 
+        if ( maxParallelQueries > 1 && queries.length > 1 ) {
+            // every query uses a connection of its own
+            List<Callable<FeatureInputStream>> sources = new ArrayList<Callable<FeatureInputStream>>( queries.length );
+            for ( final Query query : queries ) {
+                sources.add( new Callable<FeatureInputStream>() {
+                    @Override
+                    public FeatureInputStream call()
+                                            throws Exception {
+                        return query( query );
+                    }
+                } );
+            }
+            return new ParallelFeatureInputStream( queryExecutor, sources, maxParallelQueries,
+                                                   Math.max( 1, fetchSize ) );
+        }
+
         Iterator<FeatureInputStream> rsIter = new Iterator<FeatureInputStream>() {
             int i = 0;
 
@@ -1249,12 +1302,17 @@ public class SQLFeatureStore implements FeatureStore {
         LOG.debug( "Performing query by operator filter" );
 
         if ( getSchema().getBlobMapping() != null ) {
-            return queryByOperatorFilterBlob( query, ftName, filter );
+            FeatureInputStream result = queryByOperatorFilterBlob( query, ftName, filter );
+            if ( query.isPaged() ) {
+                result = new PagedFeatureInputStream( result, query.getStartIndex(), query.getMaxFeatures() );
+            }
+            return result;
         }
 
         AbstractWhereBuilder wb = null;
         Connection conn = null;
         FeatureInputStream result = null;
+        boolean pagedInDb = false;
         PreparedStatement stmt = null;
         ResultSet rs = null;
 
@@ -1265,6 +1323,17 @@ public class SQLFeatureStore implements FeatureStore {
             throw new FeatureStoreException( msg );
         }
 
+        FilterShape shape = FilterShape.create( filter, query.getSortProperties() );
+        String templateKey = null;
+        QueryTemplate template = null;
+        if ( shape != null ) {
+            templateKey = getTemplateKey( ftName, shape, query );
+            template = queryTemplates.get( templateKey );
+        }
+        if ( template != null ) {
+            return queryByTemplate( query, ft, ftMapping, template, shape );
+        }
+
         try {
             conn = getConnection();
 
@@ -1292,8 +1361,10 @@ public class SQLFeatureStore implements FeatureStore {
             sql.append( ' ' );
             sql.append( ftTableAlias );
 
+            boolean joined = false;
             for ( PropertyNameMapping mappedPropName : wb.getMappedPropertyNames() ) {
                 for ( Join join : mappedPropName.getJoins() ) {
+                    joined = true;
                     sql.append( " LEFT OUTER JOIN " );
                     sql.append( join.getToTable() );
                     sql.append( ' ' );
@@ -1316,21 +1387,45 @@ public class SQLFeatureStore implements FeatureStore {
                 sql.append( wb.getOrderBy().getSQL() );
             }
 
-            LOG.debug( "SQL: {}", sql );
+            // paging can only be performed by the database if every row corresponds to a feature of the result
+            boolean pageableInDb = !joined && wb.getPostFilter() == null && wb.getPostSortCriteria() == null;
+            if ( query.isPaged() && pageableInDb && query.isStableOrderRequired() ) {
+                // fid columns as (additional) sort criteria guarantee a stable order of the pages
+                sql.append( wb.getOrderBy() != null ? "," : " ORDER BY " );
+                boolean first = true;
+                for ( Pair<SQLIdentifier, BaseType> fidCol : ftMapping.getFidMapping().getColumns() ) {
+                    if ( !first ) {
+                        sql.append( ',' );
+                    }
+                    sql.append( ftTableAlias ).append( '.' ).append( fidCol.first );
+                    first = false;
+                }
+            }
+            String select = sql.toString();
+            String executedSelect = select;
+            if ( query.isPaged() && pageableInDb ) {
+                String pagedSelect = getPagedSelect( select, query, wb.getOrderBy() != null );
+                if ( pagedSelect != null ) {
+                    executedSelect = pagedSelect;
+                    pagedInDb = true;
+                }
+            }
+
+            LOG.debug( "SQL: {}", executedSelect );
             long begin = System.currentTimeMillis();
-            stmt = conn.prepareStatement( sql.toString() );
+            stmt = conn.prepareStatement( executedSelect );
             LOG.debug( "Preparing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
-            int i = 1;
+            List<SQLArgument> args = new ArrayList<SQLArgument>();
             if ( wb.getWhere() != null ) {
-                for ( SQLArgument o : wb.getWhere().getArguments() ) {
-                    o.setArgument( stmt, i++ );
-                }
+                args.addAll( wb.getWhere().getArguments() );
             }
             if ( wb.getOrderBy() != null ) {
-                for ( SQLArgument o : wb.getOrderBy().getArguments() ) {
-                    o.setArgument( stmt, i++ );
-                }
+                args.addAll( wb.getOrderBy().getArguments() );
+            }
+            int i = 1;
+            for ( SQLArgument o : args ) {
+                o.setArgument( stmt, i++ );
             }
 
             begin = System.currentTimeMillis();
@@ -1339,6 +1434,14 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
 
             result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+
+            if ( shape != null && wb.getPostFilter() == null && wb.getPostSortCriteria() == null ) {
+                // the template contains the unpaged SQL, paging is applied for each query
+                template = QueryTemplate.create( select, ftTableAlias, !joined, wb.getOrderBy() != null, args, shape );
+                if ( template != null ) {
+                    queryTemplates.put( templateKey, template );
+                }
+            }
         } catch ( Exception e ) {
             close( rs, stmt, conn, LOG );
             String msg = "Error performing query by operator filter: " + e.getMessage();
@@ -1354,6 +1457,93 @@ public class SQLFeatureStore implements FeatureStore {
             LOG.debug( "Applying in-memory post-sorting." );
             result = new MemoryFeatureInputStream( Features.sortFc( result.toCollection(), wb.getPostSortCriteria() ) );
         }
+        if ( query.isPaged() && !pagedInDb ) {
+            LOG.debug( "Applying in-memory paging." );
+            result = new PagedFeatureInputStream( result, query.getStartIndex(), query.getMaxFeatures() );
+        }
+        return result;
+    }
+
+    private String getTemplateKey( QName ftName, FilterShape shape, Query query ) {
+        StringBuilder sb = new StringBuilder( ftName.toString() );
+        sb.append( '|' ).append( shape.getKey() );
+        // the SQL for a stable order contains the fid columns as additional sort criteria
+        if ( query.isPaged() && query.isStableOrderRequired() ) {
+            sb.append( "|S" );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the SELECT that performs the paging of the query in the database.
+     * 
+     * @param select
+     *            unpaged SELECT, must contain the sort criteria for a stable order if required by the query, must not
+     *            be <code>null</code>
+     * @param query
+     *            paged query, must not be <code>null</code>
+     * @param ordered
+     *            <code>true</code>, if the SELECT has an ORDER BY clause
+     * @return paged SELECT, or <code>null</code> if the dialect does not support paging
+     */
+    private String getPagedSelect( String select, Query query, boolean ordered ) {
+        if ( query.isStableOrderRequired() ) {
+            return dialect.getPagedSelect( select, query.getStartIndex(), query.getMaxFeatures() );
+        }
+        if ( !ordered ) {
+            // only the number of features is limited (e.g. for rendering), sorting is not necessary
+            return dialect.getLimitedSelect( select, query.getMaxFeatures() );
+        }
+        return dialect.getPagedSelect( select, 0, query.getMaxFeatures() );
+    }
+
+    /**
+     * Performs a query using the cached SQL of a previous query with a filter of the same shape (skips the analysis of
+     * the filter and the generation of the SQL).
+     */
+    private FeatureInputStream queryByTemplate( Query query, FeatureType ft, FeatureTypeMapping ftMapping,
+                                                QueryTemplate template, FilterShape shape )
+                            throws FeatureStoreException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        FeatureInputStream result = null;
+        boolean pagedInDb = false;
+        try {
+            conn = getConnection();
+            FeatureBuilder builder = new FeatureBuilderRelational( this, ft, ftMapping, conn,
+                                                                   template.getFtTableAlias(), escalationPolicy );
+            // initializes the column mapping of the builder
+            builder.getInitialSelectColumns();
+
+            String select = template.getSql();
+            if ( query.isPaged() && template.isPageableInDb() ) {
+                String pagedSelect = getPagedSelect( select, query, template.isOrdered() );
+                if ( pagedSelect != null ) {
+                    select = pagedSelect;
+                    pagedInDb = true;
+                }
+            }
+
+            LOG.debug( "SQL (cached): {}", select );
+            long begin = System.currentTimeMillis();
+            stmt = conn.prepareStatement( select );
+            template.setArguments( stmt, shape );
+            stmt.setFetchSize( fetchSize );
+            rs = stmt.executeQuery();
+            LOG.debug( "Executing SELECT took {} [ms] ", System.currentTimeMillis() - begin );
+
+            result = new IteratorFeatureInputStream( new FeatureResultSetIterator( builder, rs, conn, stmt ) );
+        } catch ( Exception e ) {
+            close( rs, stmt, conn, LOG );
+            String msg = "Error performing query by operator filter: " + e.getMessage();
+            LOG.error( msg, e );
+            throw new FeatureStoreException( msg, e );
+        }
+        if ( query.isPaged() && !pagedInDb ) {
+            LOG.debug( "Applying in-memory paging." );
+            result = new PagedFeatureInputStream( result, query.getStartIndex(), query.getMaxFeatures() );
+        }
         return result;
     }
 
@@ -36,6 +36,7 @@
 package org.deegree.feature.persistence.sql;
 
 import static org.deegree.feature.Features.findFeaturesAndGeometries;
+import static org.deegree.feature.i18n.Messages.getMessage;
 import static org.deegree.feature.types.property.GeometryPropertyType.CoordinateDimension.DIM_2;
 
 import java.io.ByteArrayOutputStream;
@@ -67,6 +68,8 @@ import org.deegree.commons.tom.sql.ParticleConverter;
 import org.deegree.commons.tom.sql.SQLValueMangler;
 import org.deegree.commons.utils.JDBCUtils;
 import org.deegree.commons.utils.Pair;
+import org.deegree.commons.utils.kvp.InvalidParameterValueException;
+import org.deegree.commons.utils.kvp.MissingParameterException;
 import org.deegree.cs.coordinatesystems.ICRS;
 import org.deegree.feature.Feature;
 import org.deegree.feature.FeatureCollection;
@@ -76,6 +79,7 @@ import org.deegree.feature.persistence.FeatureStore;
 import org.deegree.feature.persistence.FeatureStoreException;
 import org.deegree.feature.persistence.FeatureStoreTransaction;
 import org.deegree.feature.persistence.lock.Lock;
+import org.deegree.feature.persistence.lock.LockManager;
 import org.deegree.feature.persistence.query.Query;
 import org.deegree.feature.persistence.sql.blob.BlobCodec;
 import org.deegree.feature.persistence.sql.blob.BlobMapping;
@@ -267,6 +271,7 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
     @Override
     public int performDelete( IdFilter filter, Lock lock )
                             throws FeatureStoreException {
+        checkModifiable( filter, lock, "TA_DELETE_LOCKED_NO_LOCK_ID", "TA_DELETE_LOCKED_WRONG_LOCK_ID" );
         int deleted = 0;
         if ( blobMapping != null ) {
             deleted = performDeleteBlob( filter, lock );
@@ -282,6 +287,36 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         return deleted;
     }
 
+    /**
+     * Ensures that none of the selected features is locked by a different lock than the given one.
+     * 
+     * @param filter
+     *            selected features, must not be <code>null</code>
+     * @param lock
+     *            lock of the transaction, may be <code>null</code>
+     * @param noLockIdMsg
+     *            message key for features that are locked while no lock has been specified
+     * @param wrongLockIdMsg
+     *            message key for features that are locked by a different lock
+     * @throws FeatureStoreException
+     */
+    private void checkModifiable( IdFilter filter, Lock lock, String noLockIdMsg, String wrongLockIdMsg )
+                            throws FeatureStoreException {
+        LockManager lockManager = fs.getLockManager();
+        if ( lockManager == null ) {
+            return;
+        }
+        String lockId = lock != null ? lock.getId() : null;
+        for ( ResourceId id : filter.getSelectedIds() ) {
+            if ( !lockManager.isFeatureModifiable( id.getRid(), lockId ) ) {
+                if ( lockId == null ) {
+                    throw new MissingParameterException( getMessage( noLockIdMsg, id.getRid() ), "lockId" );
+                }
+                throw new InvalidParameterValueException( getMessage( wrongLockIdMsg, id.getRid(), lockId ), "lockId" );
+            }
+        }
+    }
+
     private int performDeleteBlob( IdFilter filter, Lock lock )
                             throws FeatureStoreException {
         int deleted = 0;
@@ -765,6 +800,9 @@ public class SQLFeatureStoreTransaction implements FeatureStoreTransaction {
         } catch ( Exception e ) {
             LOG.debug( e.getMessage(), e );
         }
+        if ( idFilter != null ) {
+            checkModifiable( idFilter, lock, "TA_UPDATE_LOCKED_NO_LOCK_ID", "TA_UPDATE_LOCKED_WRONG_LOCK_ID" );
+        }
         bboxTracker.update( ftName );
         return performUpdate( ftName, replacementProps, idFilter );
     }
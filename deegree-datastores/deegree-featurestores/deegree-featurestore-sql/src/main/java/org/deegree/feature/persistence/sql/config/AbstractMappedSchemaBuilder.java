@@ -122,7 +122,7 @@ public abstract class AbstractMappedSchemaBuilder {
             BLOBMapping blobConf = config.getBLOBMapping();
             List<FeatureTypeMappingJAXB> ftMappingConfs = config.getFeatureTypeMapping();
             builder = new MappedSchemaBuilderGML( configURL, gmlSchemas, storageCRS, nsHints, blobConf, ftMappingConfs,
-                                                  deleteCascadingByDB );
+                                                  deleteCascadingByDB, workspace );
         }
 
         return builder.getMappedSchema();
@@ -108,10 +108,11 @@ import org.deegree.feature.types.property.GeometryPropertyType.GeometryType;
 import org.deegree.feature.types.property.ObjectPropertyType;
 import org.deegree.filter.expression.ValueReference;
 import org.deegree.gml.GMLVersion;
-import org.deegree.gml.schema.GMLAppSchemaReader;
+import org.deegree.gml.schema.AppSchemaCache;
 import org.deegree.gml.schema.GMLSchemaInfoSet;
 import org.deegree.sqldialect.filter.DBField;
 import org.deegree.sqldialect.filter.MappingExpression;
+import org.deegree.workspace.Workspace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -150,10 +151,11 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
 
     public MappedSchemaBuilderGML( String configURL, List<String> gmlSchemas, StorageCRS storageCRS,
                                    List<NamespaceHint> nsHints, BLOBMapping blobConf,
-                                   List<FeatureTypeMappingJAXB> ftMappingConfs, boolean deleteCascadingByDB )
+                                   List<FeatureTypeMappingJAXB> ftMappingConfs, boolean deleteCascadingByDB,
+                                   Workspace workspace )
                             throws FeatureStoreException {
 
-        gmlSchema = buildGMLSchema( configURL, gmlSchemas );
+        gmlSchema = buildGMLSchema( configURL, gmlSchemas, workspace );
 
         CRSRef crs = CRSManager.getCRSRef( storageCRS.getValue() );
         CoordinateDimension dim = crs.getDimension() == 3 ? DIM_2 : DIM_3;
@@ -274,7 +276,7 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
                                     gmlSchema.getGeometryToSuperType() );
     }
 
-    private AppSchema buildGMLSchema( String configURL, List<String> gmlSchemas )
+    private AppSchema buildGMLSchema( String configURL, List<String> gmlSchemas, Workspace workspace )
                             throws FeatureStoreException {
 
         LOG.debug( "Building application schema from GML schema files." );
@@ -289,14 +291,13 @@ public class MappedSchemaBuilderGML extends AbstractMappedSchemaBuilder {
                 schemaURLs[i++] = resolver.resolve( gmlSchema.trim() ).toString();
             }
 
-            GMLAppSchemaReader decoder = null;
+            AppSchemaCache schemaCache = AppSchemaCache.forWorkspace( workspace );
             if ( schemaURLs.length == 1 && schemaURLs[0].startsWith( "file:" ) ) {
                 File file = new File( new URL( schemaURLs[0] ).toURI() );
-                decoder = new GMLAppSchemaReader( null, null, file );
+                appSchema = schemaCache.get( null, null, file );
             } else {
-                decoder = new GMLAppSchemaReader( null, null, schemaURLs );
+                appSchema = schemaCache.get( null, null, schemaURLs );
             }
-            appSchema = decoder.extractAppSchema();
         } catch ( Throwable t ) {
             t.printStackTrace();
             String msg = "Error building GML application schema: " + t.getMessage();
@@ -0,0 +1,143 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.feature.persistence.sql;
+
+import static org.deegree.filter.MatchAction.ANY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.filter.Expression;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.expression.Function;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
+import org.deegree.filter.sort.SortProperty;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.filter.spatial.Intersects;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.junit.Test;
+
+/**
+ * Tests for {@link FilterShape}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class FilterShapeTest {
+
+    private static final String APP_NS = "http://www.deegree.org/app";
+
+    private final GeometryFactory fac = new GeometryFactory();
+
+    private OperatorFilter bboxAndName( Envelope bbox, String name, String ns ) {
+        ValueReference geomProp = new ValueReference( new QName( ns, "geometry", "app" ) );
+        ValueReference nameProp = new ValueReference( new QName( ns, "name", "app" ) );
+        PropertyIsEqualTo equals = new PropertyIsEqualTo( nameProp, new Literal<PrimitiveValue>( name ), true, ANY );
+        return new OperatorFilter( new And( new BBOX( geomProp, bbox ), equals ) );
+    }
+
+    @Test
+    public void testGeometriesAreNotPartOfTheShape() {
+        Envelope bbox1 = fac.createEnvelope( 0, 0, 1, 1, null );
+        Envelope bbox2 = fac.createEnvelope( 5, 5, 10, 10, null );
+        FilterShape shape1 = FilterShape.create( bboxAndName( bbox1, "Bonn", APP_NS ), null );
+        FilterShape shape2 = FilterShape.create( bboxAndName( bbox2, "Bonn", APP_NS ), null );
+        assertEquals( shape1.getKey(), shape2.getKey() );
+        assertEquals( 1, shape2.getGeometries().size() );
+        assertSame( bbox2, shape2.getGeometries().get( 0 ) );
+        assertEquals( 0, shape2.indexOf( bbox2 ) );
+        assertEquals( -1, shape2.indexOf( bbox1 ) );
+    }
+
+    @Test
+    public void testLiteralsArePartOfTheShape() {
+        Envelope bbox = fac.createEnvelope( 0, 0, 1, 1, null );
+        FilterShape shape1 = FilterShape.create( bboxAndName( bbox, "Bonn", APP_NS ), null );
+        FilterShape shape2 = FilterShape.create( bboxAndName( bbox, "Bern", APP_NS ), null );
+        assertFalse( shape1.getKey().equals( shape2.getKey() ) );
+    }
+
+    @Test
+    public void testNamespacesArePartOfTheShape() {
+        Envelope bbox = fac.createEnvelope( 0, 0, 1, 1, null );
+        FilterShape shape1 = FilterShape.create( bboxAndName( bbox, "Bonn", APP_NS ), null );
+        FilterShape shape2 = FilterShape.create( bboxAndName( bbox, "Bonn", "http://www.example.org/app" ), null );
+        assertFalse( shape1.getKey().equals( shape2.getKey() ) );
+    }
+
+    @Test
+    public void testSortCriteriaArePartOfTheShape() {
+        ValueReference nameProp = new ValueReference( new QName( APP_NS, "name", "app" ) );
+        FilterShape ascending = FilterShape.create( null, new SortProperty[] { new SortProperty( nameProp, true ) } );
+        FilterShape descending = FilterShape.create( null, new SortProperty[] { new SortProperty( nameProp, false ) } );
+        assertEquals( "", FilterShape.create( null, null ).getKey() );
+        assertFalse( ascending.getKey().equals( descending.getKey() ) );
+    }
+
+    @Test
+    public void testFunctionsAreNotSupported() {
+        ValueReference nameProp = new ValueReference( new QName( APP_NS, "name", "app" ) );
+        Function function = new Function( "strToLowerCase", Collections.<Expression> singletonList( nameProp ) );
+        Literal<PrimitiveValue> literal = new Literal<PrimitiveValue>( "bonn" );
+        OperatorFilter filter = new OperatorFilter( new PropertyIsEqualTo( function, literal, true, ANY ) );
+        assertNull( FilterShape.create( filter, null ) );
+    }
+
+    @Test
+    public void testSameGeometryTwiceIsNotSupported() {
+        ValueReference geomProp = new ValueReference( new QName( APP_NS, "geometry", "app" ) );
+        Envelope bbox = fac.createEnvelope( 0, 0, 1, 1, null );
+        OperatorFilter filter = new OperatorFilter( new And( new BBOX( geomProp, bbox ), new Intersects( geomProp,
+                                                                                                           bbox ) ) );
+        assertNull( FilterShape.create( filter, null ) );
+        Envelope bbox2 = fac.createEnvelope( 0, 0, 1, 1, null );
+        filter = new OperatorFilter( new And( new BBOX( geomProp, bbox ), new Intersects( geomProp, bbox2 ) ) );
+        assertNotNull( FilterShape.create( filter, null ) );
+    }
+
+}
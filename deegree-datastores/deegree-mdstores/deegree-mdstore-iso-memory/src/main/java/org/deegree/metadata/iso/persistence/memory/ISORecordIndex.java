@@ -0,0 +1,537 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.metadata.iso.persistence.memory;
+
+import static org.deegree.protocol.csw.CSWConstants.APISO_NS;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import javax.xml.namespace.QName;
+
+import org.deegree.commons.index.RTree;
+import org.deegree.commons.tom.TypedObjectNode;
+import org.deegree.commons.tom.primitive.PrimitiveValue;
+import org.deegree.commons.utils.Pair;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.filter.Expression;
+import org.deegree.filter.Filter;
+import org.deegree.filter.FilterEvaluationException;
+import org.deegree.filter.IdFilter;
+import org.deegree.filter.MatchAction;
+import org.deegree.filter.Operator;
+import org.deegree.filter.OperatorFilter;
+import org.deegree.filter.ResourceId;
+import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.comparison.PropertyIsLike;
+import org.deegree.filter.expression.Literal;
+import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.LogicalOperator;
+import org.deegree.filter.spatial.BBOX;
+import org.deegree.filter.spatial.SpatialOperator;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.metadata.iso.ISORecord;
+import org.deegree.metadata.iso.ISORecordEvaluator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory indexes over the queryable properties of the {@link ISORecord}s kept by {@link StoredISORecords}.
+ * <p>
+ * Maintains a tokenized inverted index for the full text queryables (<code>AnyText</code>, <code>Title</code>,
+ * <code>Subject</code>), hash indexes for queryables that are usually compared for equality (identifiers, type,
+ * format, language, ...) and an {@link RTree} over the record bounding boxes. The indexes are used to select candidate
+ * records for a {@link Filter}: the candidates are a superset of the matching records, so the filter still has to be
+ * evaluated against each candidate.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class ISORecordIndex {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ISORecordIndex.class );
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile( "[^\\p{L}\\p{N}]+" );
+
+    private static final QName[] TEXT_QUERYABLES = { new QName( APISO_NS, "AnyText" ), new QName( APISO_NS, "Title" ),
+                                                    new QName( APISO_NS, "Subject" ) };
+
+    private static final QName[] EQUALITY_QUERYABLES = { new QName( APISO_NS, "Identifier" ),
+                                                        new QName( APISO_NS, "Type" ),
+                                                        new QName( APISO_NS, "Format" ),
+                                                        new QName( APISO_NS, "Language" ),
+                                                        new QName( APISO_NS, "ResourceIdentifier" ),
+                                                        new QName( APISO_NS, "ParentIdentifier" ),
+                                                        new QName( APISO_NS, "TopicCategory" ),
+                                                        new QName( APISO_NS, "ServiceType" ),
+                                                        new QName( APISO_NS, "OrganisationName" ) };
+
+    private static final QName BBOX_QUERYABLE = new QName( APISO_NS, "BoundingBox" );
+
+    private static final float[] MAX_ENVELOPE = new float[] { -Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE,
+                                                             Float.MAX_VALUE };
+
+    private final ISORecordEvaluator evaluator = new ISORecordEvaluator();
+
+    private final Map<QName, TreeMap<String, Set<String>>> textIndexes = new HashMap<QName, TreeMap<String, Set<String>>>();
+
+    private final Map<QName, Map<String, Set<String>>> equalityIndexes = new HashMap<QName, Map<String, Set<String>>>();
+
+    // keeps the index entries of each record, so they can be removed without re-evaluating the record
+    private final Map<String, List<Pair<Map<String, Set<String>>, String>>> idToEntries = new HashMap<String, List<Pair<Map<String, Set<String>>, String>>>();
+
+    private final Map<String, float[]> idToBox = new LinkedHashMap<String, float[]>();
+
+    // records with bounding boxes that are not in the index crs, always candidates for spatial operators
+    private final Set<String> unindexedBoxes = new HashSet<String>();
+
+    private ICRS indexCrs;
+
+    private RTree<String> rtree;
+
+    /**
+     * Creates a new empty {@link ISORecordIndex}.
+     */
+    ISORecordIndex() {
+        for ( QName name : TEXT_QUERYABLES ) {
+            textIndexes.put( name, new TreeMap<String, Set<String>>() );
+        }
+        for ( QName name : EQUALITY_QUERYABLES ) {
+            equalityIndexes.put( name, new HashMap<String, Set<String>>() );
+        }
+    }
+
+    /**
+     * Adds the given record to the indexes.
+     * 
+     * @param identifier
+     *            identifier of the record, never <code>null</code>
+     * @param record
+     *            record to add, never <code>null</code>
+     */
+    synchronized void add( String identifier, ISORecord record ) {
+        remove( identifier );
+        List<Pair<Map<String, Set<String>>, String>> entries = new ArrayList<Pair<Map<String, Set<String>>, String>>();
+        for ( QName name : TEXT_QUERYABLES ) {
+            Map<String, Set<String>> index = textIndexes.get( name );
+            for ( String value : getValues( record, name ) ) {
+                for ( String token : tokenize( value ) ) {
+                    addEntry( index, token, identifier, entries );
+                }
+            }
+        }
+        for ( QName name : EQUALITY_QUERYABLES ) {
+            Map<String, Set<String>> index = equalityIndexes.get( name );
+            for ( String value : getValues( record, name ) ) {
+                addEntry( index, value.toLowerCase(), identifier, entries );
+            }
+        }
+        idToEntries.put( identifier, entries );
+        addBox( identifier, record );
+    }
+
+    /**
+     * Removes the record with the given identifier from the indexes.
+     * 
+     * @param identifier
+     *            identifier of the record, never <code>null</code>
+     */
+    synchronized void remove( String identifier ) {
+        List<Pair<Map<String, Set<String>>, String>> entries = idToEntries.remove( identifier );
+        if ( entries != null ) {
+            for ( Pair<Map<String, Set<String>>, String> entry : entries ) {
+                Set<String> ids = entry.first.get( entry.second );
+                if ( ids != null ) {
+                    ids.remove( identifier );
+                    if ( ids.isEmpty() ) {
+                        entry.first.remove( entry.second );
+                    }
+                }
+            }
+        }
+        if ( idToBox.remove( identifier ) != null ) {
+            rtree = null;
+        }
+        unindexedBoxes.remove( identifier );
+    }
+
+    /**
+     * Determines the identifiers of the records that may match the given filter.
+     * 
+     * @param filter
+     *            filter, never <code>null</code>
+     * @return identifiers of all records that may match the filter (superset of the matching records), or
+     *         <code>null</code> if the indexes cannot restrict the candidates (all records have to be evaluated)
+     */
+    synchronized Set<String> getCandidates( Filter filter ) {
+        switch ( filter.getType() ) {
+        case ID_FILTER:
+            Set<String> ids = new HashSet<String>();
+            for ( ResourceId id : ( (IdFilter) filter ).getSelectedIds() ) {
+                ids.add( id.getRid() );
+            }
+            return ids;
+        case OPERATOR_FILTER:
+            return getCandidates( ( (OperatorFilter) filter ).getOperator() );
+        }
+        return null;
+    }
+
+    private Set<String> getCandidates( Operator operator ) {
+        switch ( operator.getType() ) {
+        case LOGICAL:
+            return getCandidates( (LogicalOperator) operator );
+        case COMPARISON:
+            if ( operator instanceof PropertyIsEqualTo ) {
+                return getCandidates( (PropertyIsEqualTo) operator );
+            }
+            if ( operator instanceof PropertyIsLike ) {
+                return getCandidates( (PropertyIsLike) operator );
+            }
+            return null;
+        case SPATIAL:
+            return getCandidates( (SpatialOperator) operator );
+        }
+        return null;
+    }
+
+    private Set<String> getCandidates( LogicalOperator operator ) {
+        switch ( operator.getSubType() ) {
+        case AND:
+            Set<String> intersection = null;
+            for ( Operator param : operator.getParams() ) {
+                Set<String> candidates = getCandidates( param );
+                if ( candidates != null ) {
+                    intersection = intersect( intersection, candidates );
+                }
+            }
+            return intersection;
+        case OR:
+            Set<String> union = new HashSet<String>();
+            for ( Operator param : operator.getParams() ) {
+                Set<String> candidates = getCandidates( param );
+                if ( candidates == null ) {
+                    return null;
+                }
+                union.addAll( candidates );
+            }
+            return union;
+        default:
+            return null;
+        }
+    }
+
+    private Set<String> getCandidates( PropertyIsEqualTo operator ) {
+        if ( operator.getMatchAction() != null && operator.getMatchAction() != MatchAction.ANY ) {
+            return null;
+        }
+        Expression param1 = operator.getParameter1();
+        Expression param2 = operator.getParameter2();
+        if ( param2 instanceof ValueReference ) {
+            param1 = operator.getParameter2();
+            param2 = operator.getParameter1();
+        }
+        QName name = getQueryableName( param1 );
+        String value = getLiteralValue( param2 );
+        if ( name == null || value == null ) {
+            return null;
+        }
+        Map<String, Set<String>> equalityIndex = equalityIndexes.get( name );
+        if ( equalityIndex != null ) {
+            return copy( equalityIndex.get( value.toLowerCase() ) );
+        }
+        TreeMap<String, Set<String>> textIndex = textIndexes.get( name );
+        if ( textIndex != null ) {
+            List<String> tokens = tokenize( value );
+            if ( tokens.isEmpty() ) {
+                return null;
+            }
+            Set<String> candidates = null;
+            for ( String token : tokens ) {
+                candidates = intersect( candidates, copy( textIndex.get( token ) ) );
+            }
+            return candidates;
+        }
+        return null;
+    }
+
+    private Set<String> getCandidates( PropertyIsLike operator ) {
+        TreeMap<String, Set<String>> textIndex = textIndexes.get( getQueryableName( operator.getExpression() ) );
+        String pattern = getLiteralValue( operator.getPattern() );
+        String wildCard = operator.getWildCard();
+        String singleChar = operator.getSingleChar();
+        String escapeChar = operator.getEscapeChar();
+        if ( textIndex == null || pattern == null || !isSeparator( wildCard ) || !isSeparator( singleChar )
+             || ( escapeChar != null && pattern.contains( escapeChar ) ) ) {
+            return null;
+        }
+
+        Set<String> candidates = null;
+        int segmentStart = 0;
+        for ( int i = 0; i <= pattern.length(); i++ ) {
+            boolean end = i == pattern.length();
+            if ( end || pattern.charAt( i ) == wildCard.charAt( 0 ) || pattern.charAt( i ) == singleChar.charAt( 0 ) ) {
+                if ( i > segmentStart ) {
+                    boolean openStart = segmentStart > 0;
+                    boolean openEnd = !end;
+                    Set<String> segmentCandidates = getCandidates( textIndex, pattern.substring( segmentStart, i ),
+                                                                   openStart, openEnd );
+                    if ( segmentCandidates != null ) {
+                        candidates = intersect( candidates, segmentCandidates );
+                    }
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return candidates;
+    }
+
+    private Set<String> getCandidates( TreeMap<String, Set<String>> textIndex, String segment, boolean openStart,
+                                       boolean openEnd ) {
+        List<String> tokens = tokenize( segment );
+        if ( tokens.isEmpty() ) {
+            return null;
+        }
+        // the first/last token may only be a part of a token of the record if it touches a wildcard
+        String[] parts = TOKEN_SEPARATOR.split( segment, -1 );
+        openStart = openStart && parts[0].length() > 0;
+        openEnd = openEnd && parts[parts.length - 1].length() > 0;
+
+        Set<String> candidates = null;
+        for ( int i = 0; i < tokens.size(); i++ ) {
+            String token = tokens.get( i );
+            boolean open1 = i == 0 && openStart;
+            boolean open2 = i == tokens.size() - 1 && openEnd;
+            Set<String> tokenCandidates = new HashSet<String>();
+            if ( !open1 && !open2 ) {
+                addAll( tokenCandidates, textIndex.get( token ) );
+            } else if ( !open1 ) {
+                for ( Set<String> ids : getPrefixMap( textIndex, token ).values() ) {
+                    tokenCandidates.addAll( ids );
+                }
+            } else {
+                for ( Map.Entry<String, Set<String>> entry : textIndex.entrySet() ) {
+                    String key = entry.getKey();
+                    if ( open2 ? key.contains( token ) : key.endsWith( token ) ) {
+                        tokenCandidates.addAll( entry.getValue() );
+                    }
+                }
+            }
+            candidates = intersect( candidates, tokenCandidates );
+        }
+        return candidates;
+    }
+
+    private Set<String> getCandidates( SpatialOperator operator ) {
+        Envelope env = null;
+        switch ( operator.getSubType() ) {
+        case BBOX:
+            env = ( (BBOX) operator ).getBoundingBox();
+            break;
+        case CONTAINS:
+        case CROSSES:
+        case EQUALS:
+        case INTERSECTS:
+        case OVERLAPS:
+        case TOUCHES:
+        case WITHIN:
+            Object[] params = operator.getParams();
+            if ( params.length > 1 && params[1] instanceof Geometry ) {
+                env = ( (Geometry) params[1] ).getEnvelope();
+            }
+            break;
+        default:
+            return null;
+        }
+        Expression propName = operator.getParam1();
+        if ( env == null || ( propName != null && !BBOX_QUERYABLE.equals( getQueryableName( propName ) ) ) ) {
+            return null;
+        }
+        if ( indexCrs == null ) {
+            // no indexed boxes
+            return new HashSet<String>( unindexedBoxes );
+        }
+        if ( env.getCoordinateSystem() != null && !indexCrs.equals( env.getCoordinateSystem() ) ) {
+            // evaluation requires transformation of the literal
+            return null;
+        }
+        if ( rtree == null ) {
+            rtree = buildRTree();
+        }
+        Set<String> candidates = new HashSet<String>( rtree.query( toFloats( env ) ) );
+        candidates.addAll( unindexedBoxes );
+        return candidates;
+    }
+
+    private RTree<String> buildRTree() {
+        LOG.debug( "Building r-tree over {} record bounding boxes.", idToBox.size() );
+        List<Pair<float[], String>> boxes = new ArrayList<Pair<float[], String>>( idToBox.size() );
+        for ( Map.Entry<String, float[]> entry : idToBox.entrySet() ) {
+            boxes.add( new Pair<float[], String>( entry.getValue(), entry.getKey() ) );
+        }
+        RTree<String> tree = new RTree<String>( MAX_ENVELOPE, 16 );
+        if ( !boxes.isEmpty() ) {
+            tree.insertBulk( boxes );
+        }
+        return tree;
+    }
+
+    private void addBox( String identifier, ISORecord record ) {
+        TypedObjectNode[] values;
+        try {
+            values = evaluator.eval( record, new ValueReference( BBOX_QUERYABLE ) );
+        } catch ( FilterEvaluationException e ) {
+            LOG.debug( "Unable to index bounding box of record {}: {}", identifier, e.getMessage() );
+            unindexedBoxes.add( identifier );
+            return;
+        }
+        if ( values.length == 0 ) {
+            return;
+        }
+        if ( values.length > 1 || !( values[0] instanceof Envelope ) ) {
+            unindexedBoxes.add( identifier );
+            return;
+        }
+        Envelope env = (Envelope) values[0];
+        if ( indexCrs == null ) {
+            indexCrs = env.getCoordinateSystem();
+        }
+        if ( indexCrs == null || !indexCrs.equals( env.getCoordinateSystem() ) ) {
+            unindexedBoxes.add( identifier );
+            return;
+        }
+        idToBox.put( identifier, toFloats( env ) );
+        rtree = null;
+    }
+
+    private List<String> getValues( ISORecord record, QName name ) {
+        List<String> values = new ArrayList<String>();
+        try {
+            for ( TypedObjectNode value : evaluator.eval( record, new ValueReference( name ) ) ) {
+                if ( value != null ) {
+                    values.add( value.toString() );
+                }
+            }
+        } catch ( FilterEvaluationException e ) {
+            LOG.debug( "Unable to index {} of record {}: {}", new Object[] { name, record.getIdentifier(),
+                                                                             e.getMessage() } );
+        }
+        return values;
+    }
+
+    private static void addEntry( Map<String, Set<String>> index, String key, String identifier,
+                                  List<Pair<Map<String, Set<String>>, String>> entries ) {
+        Set<String> ids = index.get( key );
+        if ( ids == null ) {
+            ids = new HashSet<String>();
+            index.put( key, ids );
+        }
+        if ( ids.add( identifier ) ) {
+            entries.add( new Pair<Map<String, Set<String>>, String>( index, key ) );
+        }
+    }
+
+    private static QName getQueryableName( Expression expr ) {
+        if ( !( expr instanceof ValueReference ) ) {
+            return null;
+        }
+        return ISORecordEvaluator.getQueryableName( (ValueReference) expr );
+    }
+
+    private static String getLiteralValue( Expression expr ) {
+        if ( expr instanceof Literal<?> ) {
+            TypedObjectNode value = ( (Literal<?>) expr ).getValue();
+            if ( value instanceof PrimitiveValue ) {
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    private static List<String> tokenize( String value ) {
+        List<String> tokens = new ArrayList<String>();
+        for ( String token : TOKEN_SEPARATOR.split( value.toLowerCase() ) ) {
+            if ( token.length() > 0 ) {
+                tokens.add( token );
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isSeparator( String wildCard ) {
+        return wildCard != null && wildCard.length() == 1 && !Character.isLetterOrDigit( wildCard.charAt( 0 ) );
+    }
+
+    private static SortedMap<String, Set<String>> getPrefixMap( TreeMap<String, Set<String>> index, String prefix ) {
+        return index.subMap( prefix, prefix + Character.MAX_VALUE );
+    }
+
+    private static float[] toFloats( Envelope env ) {
+        // round outwards, so the float box always contains the original box
+        return new float[] { Math.nextAfter( (float) env.getMin().get0(), Double.NEGATIVE_INFINITY ),
+                            Math.nextAfter( (float) env.getMin().get1(), Double.NEGATIVE_INFINITY ),
+                            Math.nextUp( (float) env.getMax().get0() ), Math.nextUp( (float) env.getMax().get1() ) };
+    }
+
+    private static Set<String> intersect( Set<String> candidates, Set<String> others ) {
+        if ( candidates == null ) {
+            return others;
+        }
+        candidates.retainAll( others );
+        return candidates;
+    }
+
+    private static Set<String> copy( Set<String> ids ) {
+        return ids == null ? new HashSet<String>() : new HashSet<String>( ids );
+    }
+
+    private static void addAll( Set<String> candidates, Set<String> ids ) {
+        if ( ids != null ) {
+            candidates.addAll( ids );
+        }
+    }
+}
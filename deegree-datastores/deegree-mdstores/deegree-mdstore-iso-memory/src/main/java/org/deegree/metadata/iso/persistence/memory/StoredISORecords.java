@@ -42,6 +42,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.axiom.om.OMElement;
 import org.deegree.commons.xml.XMLAdapter;
@@ -71,6 +72,8 @@ public class StoredISORecords {
 
     private final LinkedHashMap<String, ISORecord> identifierToRecord = new LinkedHashMap<String, ISORecord>();
 
+    private final ISORecordIndex index = new ISORecordIndex();
+
     /**
      * Creates an empty store.
      */
@@ -128,6 +131,7 @@ public class StoredISORecords {
         if ( identifierToRecord.containsKey( identifier ) ) {
             identifierToRecord.remove( identifier );
             identifierToFile.remove( identifier );
+            index.remove( identifier );
             return true;
         }
         return false;
@@ -157,6 +161,7 @@ public class StoredISORecords {
             if ( identifierToRecord.containsKey( identifier ) ) {
                 LOG.debug( "Overwrite record with fileIdentifier {}.", identifier );
             }
+            index.add( identifier, record );
             identifierToRecord.put( identifier, record );
             identifierToFile.put( identifier, file );
             return identifier;
@@ -208,10 +213,11 @@ public class StoredISORecords {
         if ( filter == null ) {
             return applyNullFilter( startPosition, maxRecords );
         }
+        Set<String> candidates = index.getCandidates( filter );
         List<ISORecord> result = new ArrayList<ISORecord>( maxRecords );
         int matched = 1;
         for ( ISORecord record : identifierToRecord.values() ) {
-            if ( record.eval( filter ) ) {
+            if ( isCandidate( record, candidates ) && record.eval( filter ) ) {
                 if ( matched >= startPosition ) {
                     result.add( record );
                 }
@@ -262,8 +268,9 @@ public class StoredISORecords {
         if ( filter == null ) {
             result.addAll( identifierToRecord.values() );
         } else {
+            Set<String> candidates = index.getCandidates( filter );
             for ( ISORecord record : identifierToRecord.values() ) {
-                if ( record.eval( filter ) ) {
+                if ( isCandidate( record, candidates ) && record.eval( filter ) ) {
                     result.add( record );
                 }
             }
@@ -271,6 +278,10 @@ public class StoredISORecords {
         return result;
     }
 
+    private boolean isCandidate( ISORecord record, Set<String> candidates ) {
+        return candidates == null || candidates.contains( record.getIdentifier() );
+    }
+
     /**
      * @param record
      *            never <code>null</code>
@@ -54,10 +54,13 @@ import org.deegree.filter.Operator;
 import org.deegree.filter.OperatorFilter;
 import org.deegree.filter.comparison.PropertyIsBetween;
 import org.deegree.filter.comparison.PropertyIsEqualTo;
+import org.deegree.filter.comparison.PropertyIsLike;
 import org.deegree.filter.expression.Literal;
 import org.deegree.filter.expression.ValueReference;
+import org.deegree.filter.logical.And;
 import org.deegree.filter.logical.Or;
 import org.deegree.filter.spatial.BBOX;
+import org.deegree.geometry.Envelope;
 import org.deegree.geometry.GeometryFactory;
 import org.deegree.metadata.iso.ISORecord;
 import org.deegree.metadata.persistence.MetadataQuery;
@@ -300,6 +303,57 @@ public class StoredISORecordsTest {
         assertEquals( 4, allRecords.getRemaining() );
     }
 
+    @Test
+    public void testGetRecordsWithIndexedFiltersMatchesFullScan()
+                            throws Exception {
+        StoredISORecords storedIsoRecords = getStoredIsoRecords();
+        List<ISORecord> allRecords = storedIsoRecords.getRecords( (Filter) null );
+
+        Operator subjectLike = new PropertyIsLike( new ValueReference( "Subject", nsContext ),
+                                                   new Literal<PrimitiveValue>( "%KONOS%" ), "%", "_", "?", false,
+                                                   null );
+        Operator anyTextLike = new PropertyIsLike( new ValueReference( "apiso:AnyText", nsContext ),
+                                                   new Literal<PrimitiveValue>( "sp_t 2%" ), "%", "_", "?", false,
+                                                   null );
+        Operator subjectEqual = new PropertyIsEqualTo( new ValueReference( "Subject", nsContext ),
+                                                       new Literal<PrimitiveValue>( "SPOT 2" ), true, null );
+        Envelope env = new GeometryFactory().createEnvelope( 10, 45.22, 11., 45.5, CRSUtils.EPSG_4326 );
+        Operator bbox = new BBOX( new ValueReference( "apiso:BoundingBox", nsContext ), env );
+
+        Operator[] operators = { subjectLike, anyTextLike, subjectEqual, bbox, new And( subjectEqual, bbox ),
+                                new Or( subjectLike, subjectEqual ) };
+        for ( Operator operator : operators ) {
+            Filter filter = new OperatorFilter( operator );
+            int expected = 0;
+            for ( ISORecord record : allRecords ) {
+                if ( record.eval( filter ) ) {
+                    expected++;
+                }
+            }
+            assertEquals( expected, storedIsoRecords.getRecords( filter ).size() );
+        }
+    }
+
+    @Test
+    public void testGetRecordsWithIndexedFilterAfterDelete()
+                            throws Exception {
+        StoredISORecords storedRecords = new StoredISORecords();
+        storedRecords.insertRecord( getRecord( "2.xml" ), null );
+        ISORecord record = getRecord( "3.xml" );
+        storedRecords.insertRecord( record, null );
+
+        Literal<PrimitiveValue> literal = new Literal<PrimitiveValue>( "IKONOS 2" );
+        Operator operator = new PropertyIsEqualTo( new ValueReference( "Subject", nsContext ), literal, true, null );
+        Filter filter = new OperatorFilter( operator );
+        assertEquals( 1, storedRecords.getRecords( filter ).size() );
+
+        storedRecords.deleteRecord( record.getIdentifier() );
+        assertTrue( storedRecords.getRecords( filter ).isEmpty() );
+
+        storedRecords.insertRecord( record, null );
+        assertEquals( 1, storedRecords.getRecords( filter ).size() );
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testGetRecordsWithNullQuery()
                             throws Exception {
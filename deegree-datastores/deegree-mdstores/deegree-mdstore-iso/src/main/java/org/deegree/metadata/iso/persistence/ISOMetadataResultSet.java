@@ -38,12 +38,15 @@ package org.deegree.metadata.iso.persistence;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import javax.xml.stream.XMLStreamReader;
 
 import org.deegree.metadata.iso.ISORecord;
+import org.deegree.metadata.iso.ISORecordRepresentations;
 import org.deegree.metadata.persistence.MetadataResultSet;
 import org.deegree.metadata.persistence.XMLMetadataResultSet;
+import org.deegree.protocol.csw.MetadataStoreException;
 
 /**
  * {@link MetadataResultSet} for the {@link ISOMetadataStore}.
@@ -55,12 +58,54 @@ import org.deegree.metadata.persistence.XMLMetadataResultSet;
  */
 class ISOMetadataResultSet extends XMLMetadataResultSet<ISORecord> {
 
-    public ISOMetadataResultSet( ResultSet rs, Connection conn, PreparedStatement stmt ) {
+    private final ResultSet rs;
+
+    private final boolean withRepresentations;
+
+    /**
+     * Creates a new {@link ISOMetadataResultSet} instance.
+     * 
+     * @param rs
+     *            result set, must not be <code>null</code>
+     * @param conn
+     *            connection, must not be <code>null</code>
+     * @param stmt
+     *            statement, must not be <code>null</code>
+     * @param withRepresentations
+     *            <code>true</code>, if the result set contains the columns of the pre-serialized representations (in
+     *            this case, records are not parsed unless their contents are accessed), <code>false</code> otherwise
+     */
+    public ISOMetadataResultSet( ResultSet rs, Connection conn, PreparedStatement stmt, boolean withRepresentations ) {
         super( rs, conn, stmt );
+        this.rs = rs;
+        this.withRepresentations = withRepresentations;
+    }
+
+    @Override
+    public ISORecord getRecord()
+                            throws MetadataStoreException {
+        if ( !withRepresentations ) {
+            return super.getRecord();
+        }
+        try {
+            byte[] full = rs.getBytes( 1 );
+            byte[] isoBrief = rs.getBytes( 2 );
+            byte[] isoSummary = rs.getBytes( 3 );
+            byte[] dcBrief = rs.getBytes( 4 );
+            byte[] dcSummary = rs.getBytes( 5 );
+            byte[] dcFull = rs.getBytes( 6 );
+            ISORecordRepresentations representations = null;
+            if ( isoBrief != null || isoSummary != null || dcBrief != null || dcSummary != null || dcFull != null ) {
+                representations = new ISORecordRepresentations( isoBrief, isoSummary, dcBrief, dcSummary, dcFull );
+            }
+            return new ISORecord( full, representations );
+        } catch ( SQLException e ) {
+            throw new MetadataStoreException( "Error re-creating MetadataRecord from result set: " + e.getMessage() );
+        }
     }
 
     @Override
     protected ISORecord getRecord( XMLStreamReader xmlReader ) {
         return new ISORecord( xmlReader );
     }
-}
\ No newline at end of file
+}
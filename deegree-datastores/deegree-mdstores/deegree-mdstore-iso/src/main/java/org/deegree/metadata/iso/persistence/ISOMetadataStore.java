@@ -221,7 +221,7 @@ public class ISOMetadataStore implements MetadataStore<ISORecord> {
         String operationName = "getRecords";
         LOG.debug( Messages.getMessage( "INFO_EXEC", operationName ) );
 
-        QueryHelper exe = new QueryHelper( dialect, getQueryables() );
+        QueryHelper exe = new QueryHelper( dialect, getQueryables(), config.getPrecomputedRepresentations() );
         return exe.execute( query, getConnection() );
     }
 
@@ -235,7 +235,8 @@ public class ISOMetadataStore implements MetadataStore<ISORecord> {
         String resultTypeName = "hits";
         LOG.debug( Messages.getMessage( "INFO_EXEC", "do " + resultTypeName + " on getRecords" ) );
         try {
-            return new QueryHelper( dialect, getQueryables() ).executeCounting( query, getConnection() );
+            QueryHelper qh = new QueryHelper( dialect, getQueryables(), config.getPrecomputedRepresentations() );
+            return qh.executeCounting( query, getConnection() );
         } catch ( Throwable t ) {
             LOG.debug( t.getMessage(), t );
             String msg = Messages.getMessage( "ERROR_REQUEST_TYPE", ResultType.results.name(), t.getMessage() );
@@ -248,7 +249,7 @@ public class ISOMetadataStore implements MetadataStore<ISORecord> {
     public MetadataResultSet<ISORecord> getRecordById( List<String> idList, QName[] recordTypeNames )
                             throws MetadataStoreException {
         LOG.debug( Messages.getMessage( "INFO_EXEC", "getRecordsById" ) );
-        QueryHelper qh = new QueryHelper( dialect, getQueryables() );
+        QueryHelper qh = new QueryHelper( dialect, getQueryables(), config.getPrecomputedRepresentations() );
         return qh.executeGetRecordById( idList, getConnection() );
     }
 
@@ -258,7 +259,8 @@ public class ISOMetadataStore implements MetadataStore<ISORecord> {
         ISOMetadataStoreTransaction ta = null;
         Connection conn = getConnection();
         try {
-            ta = new ISOMetadataStoreTransaction( conn, dialect, inspectorChain, getQueryables(), config.getAnyText() );
+            ta = new ISOMetadataStoreTransaction( conn, dialect, inspectorChain, getQueryables(), config.getAnyText(),
+                                                  config.getPrecomputedRepresentations() );
         } catch ( Throwable e ) {
             LOG.error( "error " + e.getMessage(), e );
             throw new MetadataStoreException( e.getMessage() );
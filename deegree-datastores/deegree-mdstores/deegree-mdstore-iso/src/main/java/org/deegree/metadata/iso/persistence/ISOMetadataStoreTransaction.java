@@ -20,6 +20,7 @@ import org.deegree.metadata.persistence.MetadataQuery;
 import org.deegree.metadata.persistence.MetadataStoreTransaction;
 import org.deegree.metadata.persistence.inspectors.RecordInspector;
 import org.deegree.metadata.persistence.iso19115.jaxb.ISOMetadataStoreConfig.AnyText;
+import org.deegree.metadata.persistence.iso19115.jaxb.ISOMetadataStoreConfig.PrecomputedRepresentations;
 import org.deegree.metadata.persistence.transaction.DeleteOperation;
 import org.deegree.metadata.persistence.transaction.InsertOperation;
 import org.deegree.metadata.persistence.transaction.MetadataProperty;
@@ -53,13 +54,17 @@ public class ISOMetadataStoreTransaction implements MetadataStoreTransaction {
 
     private final List<Queryable> queryables;
 
+    private final PrecomputedRepresentations representationsConfig;
+
     ISOMetadataStoreTransaction( Connection conn, SQLDialect dialect, List<RecordInspector<ISORecord>> inspectors,
-                                 List<Queryable> queryables, AnyText anyText ) throws SQLException {
+                                 List<Queryable> queryables, AnyText anyText,
+                                 PrecomputedRepresentations representationsConfig ) throws SQLException {
         this.conn = conn;
         this.dialect = dialect;
         this.queryables = queryables;
         this.anyTextConfig = anyText;
         this.inspectors = inspectors;
+        this.representationsConfig = representationsConfig;
     }
 
     @Override
@@ -87,7 +92,7 @@ public class ISOMetadataStoreTransaction implements MetadataStoreTransaction {
             AbstractWhereBuilder builder = dialect.getWhereBuilder( mapping, (OperatorFilter) delete.getConstraint(),
                                                                     null, false );
 
-            TransactionHelper transactionHelper = new TransactionHelper( dialect, queryables, anyTextConfig );
+            TransactionHelper transactionHelper = new TransactionHelper( dialect, queryables, anyTextConfig, representationsConfig );
             return transactionHelper.executeDelete( conn, builder );
 
         } catch ( Exception e ) {
@@ -107,7 +112,7 @@ public class ISOMetadataStoreTransaction implements MetadataStoreTransaction {
                 }
                 if ( record != null ) {
                     ISORecord rec = new ISORecord( record.getAsOMElement() );
-                    TransactionHelper transactionHelper = new TransactionHelper( dialect, queryables, anyTextConfig );
+                    TransactionHelper transactionHelper = new TransactionHelper( dialect, queryables, anyTextConfig, representationsConfig );
                     transactionHelper.executeInsert( conn, rec );
                     identifierList.add( rec.getIdentifier() );
                 }
@@ -122,7 +127,7 @@ public class ISOMetadataStoreTransaction implements MetadataStoreTransaction {
     @Override
     public int performUpdate( UpdateOperation update )
                             throws MetadataStoreException, MetadataInspectorException {
-        TransactionHelper generateQP = new TransactionHelper( dialect, queryables, anyTextConfig );
+        TransactionHelper generateQP = new TransactionHelper( dialect, queryables, anyTextConfig, representationsConfig );
         int result = 0;
 
         if ( update.getRecord() != null && update.getConstraint() == null ) {
@@ -136,7 +141,7 @@ public class ISOMetadataStoreTransaction implements MetadataStoreTransaction {
             return 1;
         }
 
-        QueryHelper qh = new QueryHelper( dialect, queryables );
+        QueryHelper qh = new QueryHelper( dialect, queryables, representationsConfig );
         try {
             MetadataQuery query = new MetadataQuery( null, null, (OperatorFilter) update.getConstraint(), null, 1,
                                                      Integer.MIN_VALUE );
@@ -236,6 +236,31 @@ public class ISOPropertyNameMapper implements PropertyNameMapper {
          */
         recordfull,
 
+        /**
+         * the pre-serialized ISO brief representation of the record
+         */
+        recordbrief,
+
+        /**
+         * the pre-serialized ISO summary representation of the record
+         */
+        recordsummary,
+
+        /**
+         * the pre-serialized Dublin Core brief representation of the record
+         */
+        recorddcbrief,
+
+        /**
+         * the pre-serialized Dublin Core summary representation of the record
+         */
+        recorddcsummary,
+
+        /**
+         * the pre-serialized Dublin Core full representation of the record
+         */
+        recorddcfull,
+
         /**
          * the foreign key from sub idx to idx_main
          */
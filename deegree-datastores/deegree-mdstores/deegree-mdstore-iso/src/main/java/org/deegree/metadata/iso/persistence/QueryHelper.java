@@ -50,6 +50,7 @@ import org.deegree.filter.OperatorFilter;
 import org.deegree.metadata.i18n.Messages;
 import org.deegree.metadata.iso.persistence.queryable.Queryable;
 import org.deegree.metadata.persistence.MetadataQuery;
+import org.deegree.metadata.persistence.iso19115.jaxb.ISOMetadataStoreConfig.PrecomputedRepresentations;
 import org.deegree.protocol.csw.CSWConstants.ResultType;
 import org.deegree.protocol.csw.MetadataStoreException;
 import org.deegree.sqldialect.SQLDialect;
@@ -74,8 +75,8 @@ class QueryHelper extends SqlHelper {
     /** Used to limit the fetch size for SELECT statements that potentially return a lot of rows. */
     public static final int DEFAULT_FETCH_SIZE = 100;
 
-    QueryHelper( SQLDialect dialect, List<Queryable> queryables ) {
-        super( dialect, queryables );
+    QueryHelper( SQLDialect dialect, List<Queryable> queryables, PrecomputedRepresentations representationsConfig ) {
+        super( dialect, queryables, representationsConfig );
     }
 
     ISOMetadataResultSet execute( MetadataQuery query, Connection conn )
@@ -143,7 +144,7 @@ class QueryHelper extends SqlHelper {
             }
 
             StringBuilder outerSelect = new StringBuilder( "SELECT " );
-            outerSelect.append( recordColumn );
+            appendRecordColumns( outerSelect );
             outerSelect.append( " FROM " );
             outerSelect.append( ISOPropertyNameMapper.DatabaseTables.idxtb_main );
             outerSelect.append( " A INNER JOIN (" );
@@ -192,7 +193,7 @@ class QueryHelper extends SqlHelper {
 
             preparedStatement.setFetchSize( DEFAULT_FETCH_SIZE );
             rs = preparedStatement.executeQuery();
-            return new ISOMetadataResultSet( rs, conn, preparedStatement );
+            return new ISOMetadataResultSet( rs, conn, preparedStatement, representationsConfig != null );
         } catch ( SQLException e ) {
             JDBCUtils.close( rs, preparedStatement, null, LOG );
             String msg = Messages.getMessage( "ERROR_SQL", preparedStatement.toString(), e.getMessage() );
@@ -258,7 +259,8 @@ class QueryHelper extends SqlHelper {
             int size = idList.size();
 
             StringBuilder select = new StringBuilder();
-            select.append( "SELECT " ).append( recordColumn );
+            select.append( "SELECT " );
+            appendRecordColumns( select );
             select.append( " FROM " ).append( mainTable );
             select.append( " WHERE " );
             for ( int iter = 0; iter < size; iter++ ) {
@@ -292,7 +294,7 @@ class QueryHelper extends SqlHelper {
             // ISOMetadataResultSet and both will be closed by
             // org.deegree.metadata.persistence.XMLMetadataResultSet#close().
         }
-        return new ISOMetadataResultSet( rs, conn, stmt );
+        return new ISOMetadataResultSet( rs, conn, stmt, representationsConfig != null );
     }
 
     private AbstractWhereBuilder getWhereBuilder( MetadataQuery query, Connection conn )
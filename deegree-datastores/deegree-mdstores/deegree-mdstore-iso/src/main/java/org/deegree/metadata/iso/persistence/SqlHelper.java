@@ -38,6 +38,7 @@ package org.deegree.metadata.iso.persistence;
 import java.util.List;
 
 import org.deegree.metadata.iso.persistence.queryable.Queryable;
+import org.deegree.metadata.persistence.iso19115.jaxb.ISOMetadataStoreConfig.PrecomputedRepresentations;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
 import org.deegree.sqldialect.filter.Join;
@@ -75,9 +76,21 @@ abstract class SqlHelper {
 
     protected final List<Queryable> queryables;
 
-    SqlHelper( SQLDialect dialect, List<Queryable> queryables ) {
+    /** Columns of the pre-serialized representations, in the order expected by {@link ISOMetadataResultSet}. */
+    protected final String[] representationColumns;
+
+    /** Configuration of the pre-serialized representations, <code>null</code> if not used. */
+    protected final PrecomputedRepresentations representationsConfig;
+
+    SqlHelper( SQLDialect dialect, List<Queryable> queryables, PrecomputedRepresentations representationsConfig ) {
         this.dialect = dialect;
         this.queryables = queryables;
+        this.representationsConfig = representationsConfig;
+        representationColumns = new String[] { ISOPropertyNameMapper.CommonColumnNames.recordbrief.name(),
+                                              ISOPropertyNameMapper.CommonColumnNames.recordsummary.name(),
+                                              ISOPropertyNameMapper.CommonColumnNames.recorddcbrief.name(),
+                                              ISOPropertyNameMapper.CommonColumnNames.recorddcsummary.name(),
+                                              ISOPropertyNameMapper.CommonColumnNames.recorddcfull.name() };
         idColumn = ISOPropertyNameMapper.CommonColumnNames.id.name();
         fk_main = ISOPropertyNameMapper.CommonColumnNames.fk_main.name();
         recordColumn = ISOPropertyNameMapper.CommonColumnNames.recordfull.name();
@@ -89,6 +102,22 @@ abstract class SqlHelper {
         constraintTable = ISOPropertyNameMapper.DatabaseTables.idxtb_constraint.name();
     }
 
+    /**
+     * Appends the column(s) that contain the record (and its pre-serialized representations, if configured) to the
+     * given SELECT list.
+     * 
+     * @param sql
+     *            SELECT list to append to, must not be <code>null</code>
+     */
+    protected void appendRecordColumns( StringBuilder sql ) {
+        sql.append( recordColumn );
+        if ( representationsConfig != null ) {
+            for ( String column : representationColumns ) {
+                sql.append( ',' ).append( column );
+            }
+        }
+    }
+
     protected StringBuilder getPreparedStatementDatasetIDs( AbstractWhereBuilder builder ) {
 
         StringBuilder getDatasetIDs = new StringBuilder( 300 );
@@ -65,6 +65,7 @@ import org.deegree.geometry.GeometryFactory;
 import org.deegree.geometry.utils.GeometryParticleConverter;
 import org.deegree.metadata.i18n.Messages;
 import org.deegree.metadata.iso.ISORecord;
+import org.deegree.metadata.iso.ISORecordRepresentations;
 import org.deegree.metadata.iso.parsing.QueryableProperties;
 import org.deegree.metadata.iso.persistence.queryable.Queryable;
 import org.deegree.metadata.iso.types.BoundingBox;
@@ -74,6 +75,7 @@ import org.deegree.metadata.iso.types.Format;
 import org.deegree.metadata.iso.types.Keyword;
 import org.deegree.metadata.iso.types.OperatesOnData;
 import org.deegree.metadata.persistence.iso19115.jaxb.ISOMetadataStoreConfig.AnyText;
+import org.deegree.metadata.persistence.iso19115.jaxb.ISOMetadataStoreConfig.PrecomputedRepresentations;
 import org.deegree.protocol.csw.MetadataStoreException;
 import org.deegree.sqldialect.SQLDialect;
 import org.deegree.sqldialect.filter.AbstractWhereBuilder;
@@ -96,8 +98,9 @@ class TransactionHelper extends SqlHelper {
 
     private AnyText anyTextConfig;
 
-    TransactionHelper( SQLDialect dialect, List<Queryable> queryables, AnyText anyTextConfig ) {
-        super( dialect, queryables );
+    TransactionHelper( SQLDialect dialect, List<Queryable> queryables, AnyText anyTextConfig,
+                       PrecomputedRepresentations representationsConfig ) {
+        super( dialect, queryables, representationsConfig );
         this.anyTextConfig = anyTextConfig;
 
     }
@@ -126,6 +129,7 @@ class TransactionHelper extends SqlHelper {
 
             ir.addPreparedArgument( idColumn, internalId );
             ir.addPreparedArgument( recordColumn, rec.getAsByteArray() );
+            appendRepresentations( rec, ir );
             ir.addPreparedArgument( "fileidentifier", rec.getIdentifier() );
             ir.addPreparedArgument( "version", null );
             ir.addPreparedArgument( "status", null );
@@ -244,6 +248,7 @@ class TransactionHelper extends SqlHelper {
                 ur.addPreparedArgument( "version", null );
                 ur.addPreparedArgument( "status", null );
                 ur.addPreparedArgument( recordColumn, rec.getAsByteArray() );
+                appendRepresentations( rec, ur );
 
                 appendValues( rec, ur );
 
@@ -263,6 +268,9 @@ class TransactionHelper extends SqlHelper {
         } catch ( FactoryConfigurationError e ) {
             LOG.debug( "error: " + e.getMessage(), e );
             throw new MetadataStoreException( e.getMessage() );
+        } catch ( XMLStreamException e ) {
+            LOG.debug( "error: " + e.getMessage(), e );
+            throw new MetadataStoreException( e.getMessage() );
         } finally {
             JDBCUtils.close( rs, stmt, null, LOG );
         }
@@ -287,6 +295,20 @@ class TransactionHelper extends SqlHelper {
         deleteExistingRows( conn, requestedId, constraintTable );
     }
 
+    private void appendRepresentations( ISORecord rec, TransactionRow tr )
+                            throws XMLStreamException {
+        if ( representationsConfig == null ) {
+            return;
+        }
+        ISORecordRepresentations representations = ISORecordRepresentations.create( rec,
+                                                                                    representationsConfig.isCompress() );
+        tr.addPreparedArgument( representationColumns[0], representations.getIsoBrief() );
+        tr.addPreparedArgument( representationColumns[1], representations.getIsoSummary() );
+        tr.addPreparedArgument( representationColumns[2], representations.getDcBrief() );
+        tr.addPreparedArgument( representationColumns[3], representations.getDcSummary() );
+        tr.addPreparedArgument( representationColumns[4], representations.getDcFull() );
+    }
+
     private void appendValues( ISORecord rec, TransactionRow tr )
                             throws SQLException {
         tr.addPreparedArgument( "abstract", concatenate( Arrays.asList( rec.getAbstract() ) ) );
@@ -47,6 +47,10 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
 import javax.imageio.ImageIO;
 
@@ -56,6 +60,7 @@ import net.sf.ehcache.Element;
 import org.apache.commons.io.IOUtils;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.CacheableTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 import org.slf4j.Logger;
@@ -69,7 +74,7 @@ import org.slf4j.Logger;
  * 
  * @version $Revision: 31882 $, $Date: 2011-09-15 02:05:04 +0200 (Thu, 15 Sep 2011) $
  */
-public class CachedTile implements Tile {
+public class CachedTile implements CacheableTile {
 
     private static final Logger LOG = getLogger( CachedTile.class );
 
@@ -79,7 +84,7 @@ public class CachedTile implements Tile {
 
     private final String key;
 
-    private byte[] data;
+    private CacheEntry entry;
 
     public CachedTile( Tile tile, Cache cache, String key ) {
         this.tile = tile;
@@ -91,7 +96,7 @@ public class CachedTile implements Tile {
     public BufferedImage getAsImage()
                             throws TileIOException {
         try {
-            return ImageIO.read( new ByteArrayInputStream( getData() ) );
+            return ImageIO.read( new ByteArrayInputStream( getEntry( true ).data ) );
         } catch ( IOException e ) {
             String msg = "Error decoding image from byte array: " + e.getMessage();
             LOG.trace( msg, e );
@@ -101,7 +106,7 @@ public class CachedTile implements Tile {
 
     @Override
     public InputStream getAsStream() {
-        return new ByteArrayInputStream( getData() );
+        return new ByteArrayInputStream( getEntry( true ).data );
     }
 
     @Override
@@ -109,16 +114,49 @@ public class CachedTile implements Tile {
         return tile.getEnvelope();
     }
 
+    @Override
+    public String getETag() {
+        CacheEntry cached = getEntry( false );
+        if ( cached != null ) {
+            return cached.etag;
+        }
+        // not cached yet, avoid fetching the tile if the original tile can provide the etag
+        if ( tile instanceof CacheableTile ) {
+            String etag = ( (CacheableTile) tile ).getETag();
+            if ( etag != null ) {
+                return etag;
+            }
+        }
+        return getEntry( true ).etag;
+    }
+
+    @Override
+    public long getLastModified() {
+        if ( tile instanceof CacheableTile ) {
+            return ( (CacheableTile) tile ).getLastModified();
+        }
+        return -1;
+    }
+
     @Override
     public FeatureCollection getFeatures( int i, int j, int limit )
                             throws UnsupportedOperationException {
         return tile.getFeatures( i, j, limit );
     }
 
-    private synchronized byte[] getData() {
-        if ( data == null ) {
+    /**
+     * @param load
+     *            <code>true</code>, if the tile should be fetched from the original tile store if it is not cached
+     * @return the cached data and etag, can be <code>null</code> if load is <code>false</code>
+     */
+    private synchronized CacheEntry getEntry( boolean load ) {
+        if ( entry == null ) {
             Element elem = cache.get( key );
-            if ( elem == null ) {
+            // entries of older versions contain the data only
+            if ( elem != null && elem.getValue() instanceof CacheEntry ) {
+                entry = (CacheEntry) elem.getValue();
+            } else if ( load ) {
+                byte[] data;
                 try {
                     InputStream is = tile.getAsStream();
                     if ( is == null ) {
@@ -126,15 +164,48 @@ public class CachedTile implements Tile {
                     } else {
                         data = IOUtils.toByteArray( is );
                     }
-                    cache.put( new Element( key, data ) );
                 } catch ( IOException e ) {
                     LOG.trace( e.getMessage(), e );
                     throw new TileIOException( e.getMessage(), e );
                 }
-            } else {
-                data = (byte[]) elem.getValue();
+                entry = new CacheEntry( data, createETag( data ) );
+                cache.put( new Element( key, entry ) );
             }
         }
-        return data;
+        return entry;
+    }
+
+    private String createETag( byte[] data ) {
+        if ( tile instanceof CacheableTile ) {
+            String etag = ( (CacheableTile) tile ).getETag();
+            if ( etag != null ) {
+                return etag;
+            }
+        }
+        // content hash, computed once when the tile is put into the cache
+        try {
+            MessageDigest md5 = MessageDigest.getInstance( "MD5" );
+            return new BigInteger( 1, md5.digest( data ) ).toString( 16 );
+        } catch ( NoSuchAlgorithmException e ) {
+            LOG.trace( e.getMessage(), e );
+            return null;
+        }
+    }
+
+    /**
+     * The value of the cache elements.
+     */
+    private static class CacheEntry implements Serializable {
+
+        private static final long serialVersionUID = -4046185322302424917L;
+
+        private final byte[] data;
+
+        private final String etag;
+
+        CacheEntry( byte[] data, String etag ) {
+            this.data = data;
+            this.etag = etag;
+        }
     }
 }
@@ -48,6 +48,8 @@ import javax.imageio.ImageIO;
 
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.CacheableTile;
+import org.deegree.tile.FileBackedTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 
@@ -59,7 +61,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @version $Revision$, $Date$
  */
-class FileSystemTile implements Tile {
+class FileSystemTile implements CacheableTile, FileBackedTile {
 
     private final Envelope bbox;
 
@@ -107,6 +109,36 @@ class FileSystemTile implements Tile {
         return bbox;
     }
 
+    @Override
+    public String getETag() {
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 ) {
+            return null;
+        }
+        return Long.toHexString( lastModified ) + "-" + Long.toHexString( file.length() );
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = file.lastModified();
+        return lastModified == 0 ? -1 : lastModified;
+    }
+
+    @Override
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public long getOffset() {
+        return 0;
+    }
+
+    @Override
+    public long getLength() {
+        return file.length();
+    }
+
     @Override
     public FeatureCollection getFeatures( int i, int j, int limit )
                             throws UnsupportedOperationException {
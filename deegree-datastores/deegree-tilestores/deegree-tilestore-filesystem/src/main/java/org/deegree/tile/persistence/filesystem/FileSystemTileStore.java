@@ -35,10 +35,12 @@ package org.deegree.tile.persistence.filesystem;
 
 import java.util.Map;
 
+import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
 import org.deegree.tile.persistence.GenericTileStore;
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.TileStoreTransaction;
+import org.deegree.tile.persistence.filesystem.packed.PackedTileDataLevel;
 import org.deegree.workspace.ResourceMetadata;
 
 /**
@@ -68,4 +70,16 @@ public class FileSystemTileStore extends GenericTileStore {
     public TileStoreTransaction acquireTransaction( String id ) {
         return new FileSystemTileStoreTransaction( id, this );
     }
+
+    @Override
+    public void destroy() {
+        for ( String id : getTileDataSetIds() ) {
+            for ( TileDataLevel level : getTileDataSet( id ).getTileDataLevels() ) {
+                if ( level instanceof PackedTileDataLevel ) {
+                    // closing is idempotent, all levels of a data set share the same container
+                    ( (PackedTileDataLevel) level ).getContainer().close();
+                }
+            }
+        }
+    }
 }
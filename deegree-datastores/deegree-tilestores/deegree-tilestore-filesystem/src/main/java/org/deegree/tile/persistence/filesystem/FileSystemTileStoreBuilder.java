@@ -43,6 +43,8 @@ import org.deegree.tile.TileMatrixSet;
 import org.deegree.tile.persistence.TileStore;
 import org.deegree.tile.persistence.filesystem.jaxb.FileSystemTileStoreJAXB;
 import org.deegree.tile.persistence.filesystem.layout.TileCacheDiskLayout;
+import org.deegree.tile.persistence.filesystem.packed.PackedTileContainer;
+import org.deegree.tile.persistence.filesystem.packed.PackedTileDataLevel;
 import org.deegree.tile.tilematrixset.TileMatrixSetProvider;
 import org.deegree.workspace.ResourceBuilder;
 import org.deegree.workspace.ResourceInitException;
@@ -61,6 +63,8 @@ public class FileSystemTileStoreBuilder implements ResourceBuilder<TileStore> {
 
     private static final Logger LOG = getLogger( FileSystemTileStoreBuilder.class );
 
+    private static final String VECTOR_TILE_FORMAT = "application/vnd.mapbox-vector-tile";
+
     private FileSystemTileStoreJAXB config;
 
     private ResourceMetadata<TileStore> metadata;
@@ -82,16 +86,18 @@ public class FileSystemTileStoreBuilder implements ResourceBuilder<TileStore> {
             for ( FileSystemTileStoreJAXB.TileDataSet tds : config.getTileDataSet() ) {
                 String id = tds.getIdentifier();
                 String tmsId = tds.getTileMatrixSetId();
-                org.deegree.tile.persistence.filesystem.jaxb.FileSystemTileStoreJAXB.TileDataSet.TileCacheDiskLayout lay = tds.getTileCacheDiskLayout();
+                TileMatrixSet tms = workspace.getResource( TileMatrixSetProvider.class, tmsId );
 
-                File baseDir = new File( lay.getLayerDirectory() );
-                if ( !baseDir.isAbsolute() ) {
-                    baseDir = metadata.getLocation().resolveToFile( lay.getLayerDirectory() );
+                if ( tds.getPackedLayout() != null ) {
+                    map.put( id, buildPacked( tds.getPackedLayout(), tms ) );
+                    continue;
                 }
 
-                TileCacheDiskLayout layout = new TileCacheDiskLayout( baseDir, lay.getFileType() );
+                org.deegree.tile.persistence.filesystem.jaxb.FileSystemTileStoreJAXB.TileDataSet.TileCacheDiskLayout lay = tds.getTileCacheDiskLayout();
 
-                TileMatrixSet tms = workspace.getResource( TileMatrixSetProvider.class, tmsId );
+                File baseDir = resolveDir( lay.getLayerDirectory() );
+
+                TileCacheDiskLayout layout = new TileCacheDiskLayout( baseDir, lay.getFileType() );
 
                 List<TileDataLevel> list = new ArrayList<TileDataLevel>( tms.getTileMatrices().size() );
 
@@ -99,7 +105,7 @@ public class FileSystemTileStoreBuilder implements ResourceBuilder<TileStore> {
                     list.add( new FileSystemTileDataLevel( tm, layout ) );
                 }
 
-                String format = "image/" + layout.getFileType();
+                String format = getFormat( layout.getFileType() );
 
                 DefaultTileDataSet dataset = new DefaultTileDataSet( list, tms, format );
                 layout.setTileMatrixSet( dataset );
@@ -114,4 +120,35 @@ public class FileSystemTileStoreBuilder implements ResourceBuilder<TileStore> {
         }
     }
 
+    private TileDataSet buildPacked( FileSystemTileStoreJAXB.TileDataSet.PackedLayout lay, TileMatrixSet tms ) {
+        int maxOpenFiles = PackedTileContainer.DEFAULT_MAX_OPEN_FILES;
+        if ( lay.getMaxOpenFiles() != null ) {
+            maxOpenFiles = lay.getMaxOpenFiles();
+        }
+        File baseDir = resolveDir( lay.getLayerDirectory() );
+        PackedTileContainer container = new PackedTileContainer( baseDir, lay.getFileType(), maxOpenFiles );
+
+        List<TileDataLevel> list = new ArrayList<TileDataLevel>( tms.getTileMatrices().size() );
+        int level = 0;
+        for ( TileMatrix tm : tms.getTileMatrices() ) {
+            list.add( new PackedTileDataLevel( tm, level++, container ) );
+        }
+        return new DefaultTileDataSet( list, tms, getFormat( lay.getFileType() ) );
+    }
+
+    private File resolveDir( String dir ) {
+        File baseDir = new File( dir );
+        if ( !baseDir.isAbsolute() ) {
+            baseDir = metadata.getLocation().resolveToFile( dir );
+        }
+        return baseDir;
+    }
+
+    private static String getFormat( String fileType ) {
+        if ( "pbf".equalsIgnoreCase( fileType ) || "mvt".equalsIgnoreCase( fileType ) ) {
+            return VECTOR_TILE_FORMAT;
+        }
+        return "image/" + fileType;
+    }
+
 }
@@ -35,16 +35,22 @@
  ----------------------------------------------------------------------------*/
 package org.deegree.tile.persistence.filesystem;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 import javax.imageio.ImageIO;
 
 import org.apache.commons.io.IOUtils;
 import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileIOException;
 import org.deegree.tile.persistence.AbstractTileStoreTransaction;
+import org.deegree.tile.persistence.filesystem.packed.PackedTileContainer;
+import org.deegree.tile.persistence.filesystem.packed.PackedTileDataLevel;
 
 /**
  * {@link org.deegree.tile.persistence.TileStoreTransaction} for the {@link FileSystemTileStore}.
@@ -72,7 +78,12 @@ class FileSystemTileStoreTransaction extends AbstractTileStoreTransaction {
     @Override
     public void put( String matrixId, Tile tile, long x, long y )
                             throws TileIOException {
-        DiskLayout layout = ( (FileSystemTileDataLevel) this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId ) ).getLayout();
+        TileDataLevel level = this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId );
+        if ( level instanceof PackedTileDataLevel ) {
+            put( (PackedTileDataLevel) level, tile, x, y );
+            return;
+        }
+        DiskLayout layout = ( (FileSystemTileDataLevel) level ).getLayout();
         FileOutputStream fos = null;
         try {
             File file = layout.resolve( matrixId, x, y );
@@ -82,7 +93,7 @@ class FileSystemTileStoreTransaction extends AbstractTileStoreTransaction {
                 }
             }
             fos = new FileOutputStream( file );
-            ImageIO.write( tile.getAsImage(), layout.getFileType(), fos );
+            write( tile, layout.getFileType(), fos );
         } catch ( IOException e ) {
             throw new TileIOException( "Error retrieving image: " + e.getMessage(), e );
         } finally {
@@ -90,10 +101,47 @@ class FileSystemTileStoreTransaction extends AbstractTileStoreTransaction {
         }
     }
 
+    private void put( PackedTileDataLevel level, Tile tile, long x, long y )
+                            throws TileIOException {
+        PackedTileContainer container = level.getContainer();
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            write( tile, container.getFileType(), bos );
+            container.write( level.getLevel(), x, y, bos.toByteArray() );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error storing tile: " + e.getMessage(), e );
+        }
+    }
+
+    private static void write( Tile tile, String fileType, OutputStream os )
+                            throws IOException, TileIOException {
+        if ( ImageIO.getImageWritersByFormatName( fileType ).hasNext() ) {
+            ImageIO.write( tile.getAsImage(), fileType, os );
+        } else {
+            // non-image tiles (e.g. vector tiles) are stored as they are
+            InputStream in = tile.getAsStream();
+            try {
+                IOUtils.copy( in, os );
+            } finally {
+                IOUtils.closeQuietly( in );
+            }
+        }
+    }
+
     @Override
     public void delete( String matrixId, long x, long y )
                             throws TileIOException {
-        DiskLayout layout = ( (FileSystemTileDataLevel) this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId ) ).getLayout();
+        TileDataLevel level = this.store.getTileDataSet( this.tileMatrixSet ).getTileDataLevel( matrixId );
+        if ( level instanceof PackedTileDataLevel ) {
+            PackedTileDataLevel packed = (PackedTileDataLevel) level;
+            try {
+                packed.getContainer().delete( packed.getLevel(), x, y );
+            } catch ( IOException e ) {
+                throw new TileIOException( "Error deleting tile: " + e.getMessage(), e );
+            }
+            return;
+        }
+        DiskLayout layout = ( (FileSystemTileDataLevel) level ).getLayout();
         File file = layout.resolve( matrixId, x, y );
         if ( file.exists() ) {
             if ( !file.delete() ) {
@@ -0,0 +1,172 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem.packed;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.tile.CacheableTile;
+import org.deegree.tile.FileBackedTile;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileIOException;
+
+/**
+ * A {@link Tile} that is stored in a {@link PackedTileContainer}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class PackedTile implements CacheableTile, FileBackedTile {
+
+    private final Envelope bbox;
+
+    private final PackedTileContainer container;
+
+    private final int level;
+
+    private final long x;
+
+    private final long y;
+
+    private long[] location;
+
+    PackedTile( Envelope bbox, PackedTileContainer container, int level, long x, long y ) {
+        this.bbox = bbox;
+        this.container = container;
+        this.level = level;
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public BufferedImage getAsImage()
+                            throws TileIOException {
+        try {
+            return ImageIO.read( getAsStream() );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error decoding tile from bundle '" + container.resolve( level, x, y ) + "': "
+                                       + e.getMessage(), e );
+        }
+    }
+
+    @Override
+    public InputStream getAsStream()
+                            throws TileIOException {
+        byte[] data;
+        try {
+            data = container.read( level, x, y );
+        } catch ( IOException e ) {
+            throw new TileIOException( "Error reading tile from bundle '" + container.resolve( level, x, y ) + "': "
+                                       + e.getMessage(), e );
+        }
+        if ( data == null ) {
+            throw new TileIOException( "Tile " + x + "/" + y + " does not exist in bundle '"
+                                       + container.resolve( level, x, y ) + "'." );
+        }
+        return new ByteArrayInputStream( data );
+    }
+
+    @Override
+    public Envelope getEnvelope() {
+        return bbox;
+    }
+
+    @Override
+    public String getETag() {
+        long[] loc = getLocation();
+        if ( loc == null ) {
+            return null;
+        }
+        // tiles are never overwritten in place, so the position identifies the version of the tile
+        return Long.toHexString( loc[0] ) + "-" + Long.toHexString( loc[1] ) + "-"
+               + Long.toHexString( getFile().lastModified() );
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = getFile().lastModified();
+        return lastModified == 0 ? -1 : lastModified;
+    }
+
+    @Override
+    public File getFile() {
+        return container.resolve( level, x, y );
+    }
+
+    @Override
+    public long getOffset() {
+        long[] loc = getLocation();
+        return loc == null ? 0 : loc[0];
+    }
+
+    @Override
+    public long getLength() {
+        long[] loc = getLocation();
+        return loc == null ? 0 : loc[1];
+    }
+
+    private synchronized long[] getLocation() {
+        if ( location == null ) {
+            try {
+                location = container.locate( level, x, y );
+            } catch ( IOException e ) {
+                throw new TileIOException( "Error accessing bundle '" + container.resolve( level, x, y ) + "': "
+                                           + e.getMessage(), e );
+            }
+        }
+        return location;
+    }
+
+    @Override
+    public FeatureCollection getFeatures( int i, int j, int limit )
+                            throws UnsupportedOperationException {
+        throw new UnsupportedOperationException( "Feature retrieval is not supported by the FileSystemTileStore." );
+    }
+}
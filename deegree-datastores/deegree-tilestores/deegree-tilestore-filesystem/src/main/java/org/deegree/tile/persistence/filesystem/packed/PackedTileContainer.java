@@ -0,0 +1,356 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem.packed;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+
+/**
+ * Stores the tiles of a tile data set in a small number of large container files (bundles) instead of one file per
+ * tile.
+ * <p>
+ * Every tile matrix (level) is a directory, which contains a bundle file for each block of 128 x 128 tiles that has
+ * been written to:
+ * </p>
+ * <p>
+ * Structure: <code>layerdir/zz/RrrrrCcccc.bundle</code>, where <i>zz</i> is the index of the tile matrix (2 digits)
+ * and <i>rrrr</i>/<i>cccc</i> are the row/column of the bundle (hexadecimal, at least 4 digits).
+ * </p>
+ * <p>
+ * Opened bundles are kept in a bounded LRU cache, so serving a tile usually requires a single positional read without
+ * opening any file.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedTileContainer {
+
+    private static final Logger LOG = getLogger( PackedTileContainer.class );
+
+    /** Default maximum number of simultaneously opened bundle files. */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    private final File layerDir;
+
+    private final String fileType;
+
+    private final Map<File, TileBundle> openBundles;
+
+    /**
+     * Creates a new {@link PackedTileContainer} instance.
+     * 
+     * @param layerDir
+     *            layer directory, must not be <code>null</code>
+     * @param fileType
+     *            file type of the tiles (e.g. png), must not be <code>null</code>
+     * @param maxOpenFiles
+     *            maximum number of bundle files to keep open
+     */
+    public PackedTileContainer( File layerDir, String fileType, final int maxOpenFiles ) {
+        this.layerDir = layerDir;
+        this.fileType = fileType;
+        this.openBundles = new LinkedHashMap<File, TileBundle>( 16, 0.75f, true ) {
+
+            private static final long serialVersionUID = -3380520484127421924L;
+
+            @Override
+            protected boolean removeEldestEntry( Entry<File, TileBundle> eldest ) {
+                if ( size() <= maxOpenFiles ) {
+                    return false;
+                }
+                // bundles that are currently in use stay open, the cache shrinks again with the next insertions
+                Iterator<TileBundle> iter = values().iterator();
+                while ( iter.hasNext() && size() > maxOpenFiles ) {
+                    TileBundle bundle = iter.next();
+                    if ( !bundle.isInUse() ) {
+                        iter.remove();
+                        evict( bundle );
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the layer directory.
+     * 
+     * @return layer directory, never <code>null</code>
+     */
+    public File getLayerDirectory() {
+        return layerDir;
+    }
+
+    /**
+     * Returns the file type of the tiles.
+     * 
+     * @return file type (without '.'), never <code>null</code>
+     */
+    public String getFileType() {
+        return fileType;
+    }
+
+    /**
+     * Returns the bundle file that contains the specified tile.
+     * 
+     * @param level
+     *            index of the tile matrix in the tile matrix set
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return bundle file, never <code>null</code>
+     */
+    public File resolve( int level, long x, long y ) {
+        String name = String.format( "%02d%sR%04xC%04x.bundle", level, File.separator, y / TileBundle.SIZE,
+                                     x / TileBundle.SIZE );
+        return new File( layerDir, name );
+    }
+
+    /**
+     * Returns whether the specified tile exists.
+     * 
+     * @param level
+     *            index of the tile matrix in the tile matrix set
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return <code>true</code>, if the tile exists, <code>false</code> otherwise
+     * @throws IOException
+     *             if the bundle file cannot be accessed
+     */
+    public boolean contains( int level, long x, long y )
+                            throws IOException {
+        TileBundle bundle = acquire( resolve( level, x, y ), false );
+        if ( bundle == null ) {
+            return false;
+        }
+        try {
+            return bundle.contains( (int) ( x % TileBundle.SIZE ), (int) ( y % TileBundle.SIZE ) );
+        } finally {
+            bundle.release();
+        }
+    }
+
+    /**
+     * Returns the location of the specified tile in its bundle file (see {@link #resolve(int, long, long)}).
+     * 
+     * @param level
+     *            index of the tile matrix in the tile matrix set
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return offset and length of the encoded tile, or <code>null</code> if the tile does not exist
+     * @throws IOException
+     *             if the bundle file cannot be accessed
+     */
+    public long[] locate( int level, long x, long y )
+                            throws IOException {
+        TileBundle bundle = acquire( resolve( level, x, y ), false );
+        if ( bundle == null ) {
+            return null;
+        }
+        try {
+            return bundle.locate( (int) ( x % TileBundle.SIZE ), (int) ( y % TileBundle.SIZE ) );
+        } finally {
+            bundle.release();
+        }
+    }
+
+    /**
+     * Reads the specified tile.
+     * 
+     * @param level
+     *            index of the tile matrix in the tile matrix set
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return encoded tile, or <code>null</code> if the tile does not exist
+     * @throws IOException
+     *             if the bundle file cannot be read
+     */
+    public byte[] read( int level, long x, long y )
+                            throws IOException {
+        TileBundle bundle = acquire( resolve( level, x, y ), false );
+        if ( bundle == null ) {
+            return null;
+        }
+        try {
+            return bundle.read( (int) ( x % TileBundle.SIZE ), (int) ( y % TileBundle.SIZE ) );
+        } finally {
+            bundle.release();
+        }
+    }
+
+    /**
+     * Stores the specified tile. The data is appended to the bundle file, a previously stored version of the tile is
+     * replaced.
+     * 
+     * @param level
+     *            index of the tile matrix in the tile matrix set
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @param data
+     *            encoded tile, must not be <code>null</code>
+     * @throws IOException
+     *             if the bundle file cannot be written
+     */
+    public void write( int level, long x, long y, byte[] data )
+                            throws IOException {
+        if ( data.length == 0 ) {
+            delete( level, x, y );
+            return;
+        }
+        TileBundle bundle = acquire( resolve( level, x, y ), true );
+        try {
+            bundle.write( (int) ( x % TileBundle.SIZE ), (int) ( y % TileBundle.SIZE ), data );
+        } finally {
+            bundle.release();
+        }
+    }
+
+    /**
+     * Removes the specified tile.
+     * 
+     * @param level
+     *            index of the tile matrix in the tile matrix set
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @throws IOException
+     *             if the bundle file cannot be written
+     */
+    public void delete( int level, long x, long y )
+                            throws IOException {
+        File file = resolve( level, x, y );
+        if ( !file.exists() ) {
+            return;
+        }
+        TileBundle bundle = acquire( file, true );
+        try {
+            bundle.delete( (int) ( x % TileBundle.SIZE ), (int) ( y % TileBundle.SIZE ) );
+        } finally {
+            bundle.release();
+        }
+    }
+
+    /**
+     * Writes pending changes of all opened bundles to disk.
+     */
+    public void flush() {
+        for ( TileBundle bundle : getOpenBundles() ) {
+            bundle.flush();
+        }
+    }
+
+    /**
+     * Closes all opened bundle files.
+     */
+    public void close() {
+        List<TileBundle> bundles;
+        synchronized ( openBundles ) {
+            bundles = new ArrayList<TileBundle>( openBundles.values() );
+            openBundles.clear();
+        }
+        for ( TileBundle bundle : bundles ) {
+            evict( bundle );
+        }
+    }
+
+    private List<TileBundle> getOpenBundles() {
+        synchronized ( openBundles ) {
+            return new ArrayList<TileBundle>( openBundles.values() );
+        }
+    }
+
+    private TileBundle acquire( File file, boolean writable )
+                            throws IOException {
+        synchronized ( openBundles ) {
+            TileBundle bundle = openBundles.get( file );
+            if ( bundle != null && writable && !bundle.isWritable() ) {
+                // reopen for writing, readers still using the read-only instance are not affected
+                openBundles.remove( file );
+                evict( bundle );
+                bundle = null;
+            }
+            if ( bundle == null ) {
+                bundle = TileBundle.open( file, writable );
+                if ( bundle == null ) {
+                    return null;
+                }
+                LOG.debug( "Opened tile bundle {} ({}).", file, writable ? "rw" : "r" );
+                // acquire before caching, so the new bundle is not evicted right away
+                bundle.acquire();
+                openBundles.put( file, bundle );
+                return bundle;
+            }
+            bundle.acquire();
+            return bundle;
+        }
+    }
+
+    private void evict( TileBundle bundle ) {
+        try {
+            bundle.evict();
+        } catch ( IOException e ) {
+            LOG.warn( "Unable to close tile bundle {}: {}", bundle.getFile(), e.getMessage() );
+        }
+    }
+}
@@ -0,0 +1,125 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem.packed;
+
+import static org.deegree.tile.Tiles.calcTileEnvelope;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileMatrix;
+import org.slf4j.Logger;
+
+/**
+ * {@link TileDataLevel} implementation for tiles that are stored in a {@link PackedTileContainer}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedTileDataLevel implements TileDataLevel {
+
+    private static final Logger LOG = getLogger( PackedTileDataLevel.class );
+
+    private final TileMatrix metadata;
+
+    private final int level;
+
+    private final PackedTileContainer container;
+
+    /**
+     * Creates a new {@link PackedTileDataLevel} instance.
+     * 
+     * @param metadata
+     *            tile matrix, must not be <code>null</code>
+     * @param level
+     *            index of the tile matrix in the tile matrix set
+     * @param container
+     *            container that stores the tiles, must not be <code>null</code>
+     */
+    public PackedTileDataLevel( TileMatrix metadata, int level, PackedTileContainer container ) {
+        this.metadata = metadata;
+        this.level = level;
+        this.container = container;
+    }
+
+    @Override
+    public TileMatrix getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public Tile getTile( long x, long y ) {
+        if ( metadata.getNumTilesX() <= x || metadata.getNumTilesY() <= y || x < 0 || y < 0 ) {
+            return null;
+        }
+        try {
+            if ( !container.contains( level, x, y ) ) {
+                return null;
+            }
+        } catch ( IOException e ) {
+            LOG.warn( "Unable to access tile bundle {}: {}", container.resolve( level, x, y ), e.getMessage() );
+            return null;
+        }
+        return new PackedTile( calcTileEnvelope( metadata, x, y ), container, level, x, y );
+    }
+
+    /**
+     * Returns the index of the tile matrix in the tile matrix set.
+     * 
+     * @return index of the tile matrix
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns the container that stores the tiles.
+     * 
+     * @return container, never <code>null</code>
+     */
+    public PackedTileContainer getContainer() {
+        return container;
+    }
+}
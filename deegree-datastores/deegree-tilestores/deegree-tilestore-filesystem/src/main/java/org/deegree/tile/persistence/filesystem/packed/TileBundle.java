@@ -0,0 +1,334 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem.packed;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A single container file that stores a block of {@link #SIZE} x {@link #SIZE} tiles of one tile matrix.
+ * <p>
+ * File structure:
+ * <ul>
+ * <li>header (16 bytes): magic number, format version, bundle size, reserved</li>
+ * <li>tile directory: one entry (offset: 8 bytes, length: 4 bytes) per tile, row by row; length 0 denotes a missing
+ * tile</li>
+ * <li>tile data: encoded tiles, appended in the order they have been written</li>
+ * </ul>
+ * The tile directory is memory-mapped, tile data is read using positional reads, so concurrent reads don't need any
+ * locking. Writes always append to the end of the file, replaced tiles leave their old data behind as garbage.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class TileBundle {
+
+    /** Number of tile columns/rows per bundle. */
+    static final int SIZE = 128;
+
+    private static final int MAGIC = 0x64545042; // 'dTPB'
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_LENGTH = 16;
+
+    private static final int ENTRY_LENGTH = 12;
+
+    private static final int DIRECTORY_LENGTH = SIZE * SIZE * ENTRY_LENGTH;
+
+    private static final long DATA_START = HEADER_LENGTH + DIRECTORY_LENGTH;
+
+    private final File file;
+
+    private final RandomAccessFile raf;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer directory;
+
+    private final boolean writable;
+
+    private long end;
+
+    private int refs;
+
+    private boolean evicted;
+
+    private TileBundle( File file, RandomAccessFile raf, boolean writable ) throws IOException {
+        this.file = file;
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.writable = writable;
+        this.end = channel.size();
+        this.directory = channel.map( writable ? READ_WRITE : READ_ONLY, HEADER_LENGTH, DIRECTORY_LENGTH );
+    }
+
+    /**
+     * Opens the given bundle file.
+     * 
+     * @param file
+     *            bundle file, must not be <code>null</code>
+     * @param writable
+     *            <code>true</code>, if the bundle is to be opened for writing (and created if it does not exist)
+     * @return the opened bundle, or <code>null</code> if the file does not exist and <code>writable</code> is
+     *         <code>false</code>
+     * @throws IOException
+     *             if the file cannot be opened or is not a bundle file
+     */
+    static TileBundle open( File file, boolean writable )
+                            throws IOException {
+        if ( !file.exists() ) {
+            if ( !writable ) {
+                return null;
+            }
+            create( file );
+        }
+        RandomAccessFile raf = new RandomAccessFile( file, writable ? "rw" : "r" );
+        try {
+            if ( raf.length() < DATA_START || raf.readInt() != MAGIC ) {
+                throw new IOException( "File '" + file + "' is not a tile bundle file." );
+            }
+            int version = raf.readInt();
+            int size = raf.readInt();
+            if ( version != VERSION || size != SIZE ) {
+                throw new IOException( "Unsupported tile bundle file '" + file + "' (version " + version + ", size "
+                                       + size + ")." );
+            }
+            return new TileBundle( file, raf, writable );
+        } catch ( IOException e ) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static void create( File file )
+                            throws IOException {
+        File parent = file.getParentFile();
+        if ( parent != null && !parent.exists() && !parent.mkdirs() && !parent.exists() ) {
+            throw new IOException( "Unable to create directory " + parent );
+        }
+        File tmp = new File( file.getPath() + ".tmp" );
+        RandomAccessFile raf = new RandomAccessFile( tmp, "rw" );
+        try {
+            raf.writeInt( MAGIC );
+            raf.writeInt( VERSION );
+            raf.writeInt( SIZE );
+            raf.writeInt( 0 );
+            // sparse on most file systems, reads as zeroes (no tiles)
+            raf.setLength( DATA_START );
+        } finally {
+            raf.close();
+        }
+        if ( !tmp.renameTo( file ) && !file.exists() ) {
+            throw new IOException( "Unable to create tile bundle file " + file );
+        }
+        tmp.delete();
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    boolean isWritable() {
+        return writable;
+    }
+
+    /**
+     * Returns whether the bundle contains the specified tile.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @return <code>true</code>, if the tile exists, <code>false</code> otherwise
+     */
+    synchronized boolean contains( int col, int row ) {
+        return directory.getInt( entry( col, row ) + 8 ) > 0;
+    }
+
+    /**
+     * Returns the location of the specified tile in the bundle file.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @return offset and length of the encoded tile, or <code>null</code> if the tile does not exist
+     */
+    synchronized long[] locate( int col, int row ) {
+        int entry = entry( col, row );
+        int length = directory.getInt( entry + 8 );
+        if ( length <= 0 ) {
+            return null;
+        }
+        return new long[] { directory.getLong( entry ), length };
+    }
+
+    /**
+     * Reads the encoded data of the specified tile.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @return encoded tile, or <code>null</code> if the tile does not exist
+     * @throws IOException
+     */
+    byte[] read( int col, int row )
+                            throws IOException {
+        long offset;
+        int length;
+        synchronized ( this ) {
+            int entry = entry( col, row );
+            offset = directory.getLong( entry );
+            length = directory.getInt( entry + 8 );
+        }
+        if ( length <= 0 ) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.allocate( length );
+        while ( buf.hasRemaining() ) {
+            if ( channel.read( buf, offset + buf.position() ) < 0 ) {
+                throw new EOFException( "Unexpected end of tile bundle file " + file );
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * Appends the encoded data of the specified tile and updates the tile directory.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     * @param data
+     *            encoded tile, must not be <code>null</code> or empty
+     * @throws IOException
+     */
+    synchronized void write( int col, int row, byte[] data )
+                            throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap( data );
+        long offset = end;
+        while ( buf.hasRemaining() ) {
+            channel.write( buf, offset + buf.position() );
+        }
+        end += data.length;
+        int entry = entry( col, row );
+        directory.putLong( entry, offset );
+        directory.putInt( entry + 8, data.length );
+    }
+
+    /**
+     * Removes the specified tile from the tile directory.
+     * 
+     * @param col
+     *            column of the tile within the bundle
+     * @param row
+     *            row of the tile within the bundle
+     */
+    synchronized void delete( int col, int row ) {
+        int entry = entry( col, row );
+        directory.putLong( entry, 0 );
+        directory.putInt( entry + 8, 0 );
+    }
+
+    /**
+     * Writes pending changes of the tile directory to disk.
+     */
+    synchronized void flush() {
+        if ( writable ) {
+            directory.force();
+        }
+    }
+
+    synchronized boolean isInUse() {
+        return refs > 0;
+    }
+
+    synchronized void acquire() {
+        refs++;
+    }
+
+    /**
+     * Releases a reference obtained by {@link #acquire()}, the file is closed if the bundle has been evicted and this
+     * has been the last reference.
+     */
+    synchronized void release()
+                            throws IOException {
+        refs--;
+        if ( evicted && refs == 0 ) {
+            close();
+        }
+    }
+
+    /**
+     * Marks the bundle as evicted from the bundle cache, the file is closed as soon as there are no more references.
+     */
+    synchronized void evict()
+                            throws IOException {
+        evicted = true;
+        if ( refs == 0 ) {
+            close();
+        }
+    }
+
+    private void close()
+                            throws IOException {
+        flush();
+        raf.close();
+    }
+
+    private static int entry( int col, int row ) {
+        return ( row * SIZE + col ) * ENTRY_LENGTH;
+    }
+}
@@ -0,0 +1,171 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem.packed;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.persistence.filesystem.layout.TileCacheDiskLayout;
+import org.slf4j.Logger;
+
+/**
+ * Copies the tiles of a {@link TileCacheDiskLayout} directory into a {@link PackedTileContainer}.
+ * <p>
+ * The tile directory tree is traversed directly, so only existing tiles are visited (instead of all tile indexes of
+ * the tile matrices). Tiles that already exist in the target container are replaced.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileCacheConverter {
+
+    private static final Logger LOG = getLogger( TileCacheConverter.class );
+
+    private final File layerDir;
+
+    private final String fileType;
+
+    private final List<TileMatrix> tileMatrices;
+
+    private long numTiles;
+
+    /**
+     * Creates a new {@link TileCacheConverter} instance.
+     * 
+     * @param layerDir
+     *            layer directory of the tile cache layout, must not be <code>null</code>
+     * @param fileType
+     *            suffix of the tile files (without '.'), must not be <code>null</code>
+     * @param tileMatrices
+     *            tile matrices of the tile matrix set (in the order of the set), must not be <code>null</code>
+     */
+    public TileCacheConverter( File layerDir, String fileType, List<TileMatrix> tileMatrices ) {
+        this.layerDir = layerDir;
+        this.fileType = fileType;
+        this.tileMatrices = tileMatrices;
+    }
+
+    /**
+     * Copies all tiles into the given container.
+     * 
+     * @param target
+     *            target container, must not be <code>null</code>
+     * @return number of copied tiles
+     * @throws IOException
+     *             if reading a tile file or writing to the container fails
+     */
+    public long convert( PackedTileContainer target )
+                            throws IOException {
+        numTiles = 0;
+        String[] levelDirs = layerDir.list();
+        if ( levelDirs == null ) {
+            throw new IOException( "Directory '" + layerDir + "' does not exist." );
+        }
+        Arrays.sort( levelDirs );
+        for ( String levelDir : levelDirs ) {
+            int level;
+            try {
+                level = Integer.parseInt( levelDir );
+            } catch ( NumberFormatException e ) {
+                LOG.warn( "Skipping '{}': not a tile matrix directory.", levelDir );
+                continue;
+            }
+            if ( level < 0 || level >= tileMatrices.size() ) {
+                LOG.warn( "Skipping '{}': tile matrix set has no tile matrix with index {}.", levelDir, level );
+                continue;
+            }
+            long before = numTiles;
+            convert( new File( layerDir, levelDir ), level, new long[6], 0, target );
+            target.flush();
+            LOG.info( "Converted {} tiles of tile matrix '{}'.", numTiles - before,
+                      tileMatrices.get( level ).getIdentifier() );
+        }
+        return numTiles;
+    }
+
+    private void convert( File dir, int level, long[] parts, int depth, PackedTileContainer target )
+                            throws IOException {
+        String[] names = dir.list();
+        if ( names == null ) {
+            return;
+        }
+        for ( String name : names ) {
+            String part = name;
+            if ( depth == 5 ) {
+                if ( !name.endsWith( "." + fileType ) ) {
+                    continue;
+                }
+                part = name.substring( 0, name.length() - fileType.length() - 1 );
+            }
+            try {
+                parts[depth] = Long.parseLong( part );
+            } catch ( NumberFormatException e ) {
+                continue;
+            }
+            File file = new File( dir, name );
+            if ( depth < 5 ) {
+                convert( file, level, parts, depth + 1, target );
+                continue;
+            }
+            TileMatrix matrix = tileMatrices.get( level );
+            long x = ( parts[0] * 1000 + parts[1] ) * 1000 + parts[2];
+            // TileCache's y-axis is inverted
+            long y = matrix.getNumTilesY() - 1 - ( ( parts[3] * 1000 + parts[4] ) * 1000 + parts[5] );
+            if ( x >= matrix.getNumTilesX() || y < 0 ) {
+                LOG.warn( "Skipping '{}': tile index out of range.", file );
+                continue;
+            }
+            target.write( level, x, y, FileUtils.readFileToByteArray( file ) );
+            if ( ++numTiles % 10000 == 0 ) {
+                LOG.info( "Converted {} tiles.", numTiles );
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tile.persistence.filesystem.packed;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Basic tests for {@link PackedTileContainer}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class PackedTileContainerTest {
+
+    private File dir;
+
+    private PackedTileContainer container;
+
+    @Before
+    public void setup()
+                            throws IOException {
+        dir = File.createTempFile( "packedtiles", "" );
+        dir.delete();
+        dir.mkdir();
+        container = new PackedTileContainer( dir, "png", 2 );
+    }
+
+    @After
+    public void tearDown()
+                            throws IOException {
+        container.close();
+        FileUtils.deleteDirectory( dir );
+    }
+
+    @Test
+    public void testResolve() {
+        File file = container.resolve( 3, 200, 1000 );
+        String path = file.getPath().substring( dir.getPath().length() ).replace( File.separatorChar, '/' );
+        assertEquals( "/03/R0007C0001.bundle", path );
+    }
+
+    @Test
+    public void testReadMissing()
+                            throws IOException {
+        assertNull( container.read( 0, 0, 0 ) );
+        assertFalse( container.contains( 0, 0, 0 ) );
+        assertFalse( container.resolve( 0, 0, 0 ).exists() );
+    }
+
+    @Test
+    public void testWriteRead()
+                            throws IOException {
+        container.write( 0, 5, 7, new byte[] { 1, 2, 3 } );
+        container.write( 0, 6, 7, new byte[] { 4 } );
+        assertArrayEquals( new byte[] { 1, 2, 3 }, container.read( 0, 5, 7 ) );
+        assertArrayEquals( new byte[] { 4 }, container.read( 0, 6, 7 ) );
+        assertTrue( container.contains( 0, 5, 7 ) );
+        assertNull( container.read( 0, 7, 5 ) );
+    }
+
+    @Test
+    public void testReplace()
+                            throws IOException {
+        container.write( 1, 0, 0, new byte[] { 1, 2, 3 } );
+        container.write( 1, 0, 0, new byte[] { 9, 8 } );
+        assertArrayEquals( new byte[] { 9, 8 }, container.read( 1, 0, 0 ) );
+    }
+
+    @Test
+    public void testDelete()
+                            throws IOException {
+        container.write( 1, 127, 127, new byte[] { 1 } );
+        container.delete( 1, 127, 127 );
+        assertNull( container.read( 1, 127, 127 ) );
+        container.delete( 1, 1000, 1000 );
+    }
+
+    @Test
+    public void testReopen()
+                            throws IOException {
+        // more bundles than open files
+        for ( int i = 0; i < 5; i++ ) {
+            container.write( 2, i * 128, 0, new byte[] { (byte) i } );
+        }
+        container.close();
+        PackedTileContainer reopened = new PackedTileContainer( dir, "png", 2 );
+        try {
+            for ( int i = 0; i < 5; i++ ) {
+                assertArrayEquals( new byte[] { (byte) i }, reopened.read( 2, i * 128, 0 ) );
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    public void testReadThenWrite()
+                            throws IOException {
+        container.write( 0, 0, 0, new byte[] { 1 } );
+        container.close();
+        assertArrayEquals( new byte[] { 1 }, container.read( 0, 0, 0 ) );
+        // bundle has been opened read-only
+        container.write( 0, 1, 0, new byte[] { 2 } );
+        assertArrayEquals( new byte[] { 1 }, container.read( 0, 0, 0 ) );
+        assertArrayEquals( new byte[] { 2 }, container.read( 0, 1, 0 ) );
+    }
+}
@@ -44,6 +44,7 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Hashtable;
@@ -54,6 +55,7 @@ import javax.imageio.ImageReader;
 import org.apache.commons.pool.impl.GenericObjectPool;
 import org.deegree.feature.FeatureCollection;
 import org.deegree.geometry.Envelope;
+import org.deegree.tile.CacheableTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileIOException;
 
@@ -66,7 +68,7 @@ import org.deegree.tile.TileIOException;
  * 
  * @version $Revision: 31882 $, $Date: 2011-09-15 02:05:04 +0200 (Thu, 15 Sep 2011) $
  */
-public class GeoTIFFTile implements Tile {
+public class GeoTIFFTile implements CacheableTile {
 
     // private static final Logger LOG = getLogger( GeoTIFFTile.class );
 
@@ -78,9 +80,12 @@ public class GeoTIFFTile implements Tile {
 
     private final GenericObjectPool readerPool;
 
-    public GeoTIFFTile( GenericObjectPool readerPool, int imageIndex, int x, int y, Envelope envelope, int sizeX,
-                        int sizeY ) {
+    private final File file;
+
+    public GeoTIFFTile( GenericObjectPool readerPool, File file, int imageIndex, int x, int y, Envelope envelope,
+                        int sizeX, int sizeY ) {
         this.readerPool = readerPool;
+        this.file = file;
         this.imageIndex = imageIndex;
         this.x = x;
         this.y = y;
@@ -141,6 +146,21 @@ public class GeoTIFFTile implements Tile {
         return envelope;
     }
 
+    @Override
+    public String getETag() {
+        long lastModified = file.lastModified();
+        if ( lastModified == 0 ) {
+            return null;
+        }
+        return Long.toHexString( lastModified ) + "-" + imageIndex + "-" + x + "-" + y;
+    }
+
+    @Override
+    public long getLastModified() {
+        long lastModified = file.lastModified();
+        return lastModified == 0 ? -1 : lastModified;
+    }
+
     @Override
     public FeatureCollection getFeatures( int i, int j, int limit )
                             throws UnsupportedOperationException {
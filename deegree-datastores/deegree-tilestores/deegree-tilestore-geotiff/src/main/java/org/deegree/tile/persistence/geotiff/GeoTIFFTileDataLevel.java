@@ -68,11 +68,14 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
 
     private GenericObjectPool readerPool;
 
+    private final File file;
+
     private final int xoff, yoff, numx, numy;
 
     public GeoTIFFTileDataLevel( TileMatrix metadata, File file, int imageIndex, int xoff, int yoff, int numx, int numy ) {
         this.metadata = metadata;
         this.imageIndex = imageIndex;
+        this.file = file;
         ImageReaderFactory fac = new ImageReaderFactory( file );
         this.readerPool = new GenericObjectPool( fac );
         this.xoff = xoff;
@@ -107,7 +110,7 @@ public class GeoTIFFTileDataLevel implements TileDataLevel {
         double minx = width * x + env.getMin().get0();
         double miny = env.getMax().get1() - height * y;
         Envelope envelope = fac.createEnvelope( minx, miny, minx + width, miny - height, env.getCoordinateSystem() );
-        return new GeoTIFFTile( readerPool, imageIndex, (int) x, (int) y, envelope, (int) metadata.getTilePixelsX(),
-                                (int) metadata.getTilePixelsY() );
+        return new GeoTIFFTile( readerPool, file, imageIndex, (int) x, (int) y, envelope,
+                                (int) metadata.getTilePixelsX(), (int) metadata.getTilePixelsY() );
     }
 }
@@ -57,6 +57,8 @@ import org.deegree.filter.FilterEvaluationException;
 import org.deegree.filter.XPathEvaluator;
 import org.deegree.layer.LayerData;
 import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.rendering.r2d.context.VectorTileRenderContext;
+import org.deegree.rendering.r2d.vectortile.VectorTileEncoder;
 import org.deegree.style.se.unevaluated.Style;
 import org.slf4j.Logger;
 
@@ -81,11 +83,15 @@ public class FeatureLayerData implements LayerData {
 
     private final FeatureStore featureStore;
 
-    public FeatureLayerData( List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style, QName ftName ) {
+    private final String layerName;
+
+    public FeatureLayerData( List<Query> queries, FeatureStore featureStore, int maxFeatures, Style style, QName ftName,
+                             String layerName ) {
         this.queries = queries;
         this.featureStore = featureStore;
         this.maxFeatures = maxFeatures;
         this.style = style;
+        this.layerName = layerName;
         Map<String, QName> bindings = new HashMap<String, QName>();
         Set<QName> validNames = AppSchemas.collectProperyNames( featureStore.getSchema(), ftName );
         for ( QName name : validNames ) {
@@ -102,6 +108,10 @@ public class FeatureLayerData implements LayerData {
             features = featureStore.query( queries.toArray( new Query[queries.size()] ) );
             features = new ThreadedFeatureInputStream( features, 100, 20 );
 
+            if ( context instanceof VectorTileRenderContext ) {
+                encodeFeatureStream( features, ( (VectorTileRenderContext) context ).getEncoder() );
+                return;
+            }
             FeatureStreamRenderer renderer = new FeatureStreamRenderer( context, maxFeatures, evaluator );
             renderer.renderFeatureStream( features, style );
         } catch ( FilterEvaluationException e ) {
@@ -117,6 +127,19 @@ public class FeatureLayerData implements LayerData {
         }
     }
 
+    /**
+     * Vector tiles are styled on the client, so the features are added to the tile as they are.
+     */
+    private void encodeFeatureStream( FeatureInputStream features, VectorTileEncoder encoder ) {
+        int cnt = 0;
+        for ( Feature f : features ) {
+            if ( encoder.addFeature( layerName, f ) && maxFeatures > 0 && ++cnt == maxFeatures ) {
+                LOG.debug( "Reached max features of {} for layer '{}', stopping.", maxFeatures, layerName );
+                break;
+            }
+        }
+    }
+
     private static FeatureCollection clearDuplicates( FeatureInputStream rs ) {
         FeatureCollection col = null;
         try {
@@ -0,0 +1,250 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.layer.persistence.feature;
+
+import static org.deegree.commons.utils.MapUtils.DEFAULT_PIXEL_SIZE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.layer.Layer;
+import org.deegree.layer.LayerData;
+import org.deegree.layer.LayerQuery;
+import org.deegree.rendering.r2d.context.MapOptionsMaps;
+import org.deegree.rendering.r2d.context.VectorTileRenderContext;
+import org.deegree.rendering.r2d.vectortile.VectorTileEncoder;
+import org.deegree.style.StyleRef;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.Tiles;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.slf4j.Logger;
+
+/**
+ * Pre-generates vector tiles from {@link FeatureLayer}s and stores them in a {@link TileStore}.
+ * <p>
+ * The target is usually a file system tile store with file type <code>pbf</code>, which can then be served by the
+ * WMTS without querying the feature stores again. Every tile contains one vector tile layer per feature layer (named
+ * after the layer), the default styles of the layers are used to determine the queried features. Tiles without any
+ * features are not written.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class VectorTileSeeder {
+
+    private static final Logger LOG = getLogger( VectorTileSeeder.class );
+
+    private final List<Layer> layers;
+
+    private final int extent;
+
+    private final int buffer;
+
+    /**
+     * Creates a new {@link VectorTileSeeder} with the default extent and buffer of the {@link VectorTileEncoder}.
+     * 
+     * @param layers
+     *            layers to include in the tiles, must not be <code>null</code>, layers that are not feature layers
+     *            do not contribute to the tiles
+     */
+    public VectorTileSeeder( List<? extends Layer> layers ) {
+        this( layers, VectorTileEncoder.DEFAULT_EXTENT, VectorTileEncoder.DEFAULT_BUFFER );
+    }
+
+    /**
+     * Creates a new {@link VectorTileSeeder}.
+     * 
+     * @param layers
+     *            layers to include in the tiles, must not be <code>null</code>, layers that are not feature layers
+     *            do not contribute to the tiles
+     * @param extent
+     *            number of grid cells along each tile axis, must be positive
+     * @param buffer
+     *            number of grid cells to keep around each tile, must not be negative
+     */
+    public VectorTileSeeder( List<? extends Layer> layers, int extent, int buffer ) {
+        this.layers = new ArrayList<Layer>( layers );
+        this.extent = extent;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Generates and stores the vector tiles of all tile matrices of the specified tile data set.
+     * 
+     * @param store
+     *            tile store to write to, must not be <code>null</code>
+     * @param tileDataSet
+     *            id of the tile data set, must not be <code>null</code>
+     * @param bbox
+     *            area to seed (in the CRS of the tile matrix set), can be <code>null</code> (seed everything)
+     * @return number of written tiles
+     * @throws TileIOException
+     *             if writing a tile failed
+     * @throws OWSException
+     *             if querying a layer failed
+     */
+    public long seed( TileStore store, String tileDataSet, Envelope bbox )
+                            throws TileIOException, OWSException {
+        TileDataSet tds = store.getTileDataSet( tileDataSet );
+        if ( tds == null ) {
+            throw new IllegalArgumentException( "No tile data set with id '" + tileDataSet + "'." );
+        }
+        if ( bbox == null ) {
+            bbox = tds.getTileMatrixSet().getSpatialMetadata().getEnvelope();
+        }
+        TileStoreTransaction ta = store.acquireTransaction( tileDataSet );
+        long written = 0;
+        for ( TileDataLevel level : tds.getTileDataLevels() ) {
+            long[] range = Tiles.getTileIndexRange( level, bbox );
+            if ( range == null ) {
+                continue;
+            }
+            TileMatrix matrix = level.getMetadata();
+            long levelWritten = 0;
+            for ( long x = range[0]; x <= range[2]; ++x ) {
+                for ( long y = range[1]; y <= range[3]; ++y ) {
+                    byte[] bytes = encodeTile( matrix, x, y );
+                    if ( bytes.length > 0 ) {
+                        Envelope env = Tiles.calcTileEnvelope( matrix, x, y );
+                        ta.put( matrix.getIdentifier(), new EncodedTile( bytes, env ), x, y );
+                        ++levelWritten;
+                    }
+                }
+            }
+            LOG.debug( "Wrote {} vector tiles for tile matrix '{}'.", levelWritten, matrix.getIdentifier() );
+            written += levelWritten;
+        }
+        return written;
+    }
+
+    /**
+     * Generates a single vector tile.
+     * 
+     * @param matrix
+     *            tile matrix, must not be <code>null</code>
+     * @param x
+     *            column index of the tile
+     * @param y
+     *            row index of the tile
+     * @return the encoded tile, empty if no feature intersects the tile
+     * @throws OWSException
+     *             if querying a layer failed
+     */
+    public byte[] encodeTile( TileMatrix matrix, long x, long y )
+                            throws OWSException {
+        Envelope env = Tiles.calcTileEnvelope( matrix, x, y );
+        int width = (int) matrix.getTilePixelsX();
+        int height = (int) matrix.getTilePixelsY();
+        double bufferX = env.getSpan0() * buffer / extent;
+        double bufferY = env.getSpan1() * buffer / extent;
+        Envelope queryBox = new GeometryFactory().createEnvelope( env.getMin().get0() - bufferX,
+                                                                  env.getMin().get1() - bufferY,
+                                                                  env.getMax().get0() + bufferX,
+                                                                  env.getMax().get1() + bufferY,
+                                                                  env.getCoordinateSystem() );
+
+        VectorTileRenderContext ctx = new VectorTileRenderContext( new VectorTileEncoder( env, extent, buffer ) );
+        List<String> headers = new ArrayList<String>();
+        for ( Layer layer : layers ) {
+            LayerQuery query = new LayerQuery( env, width, height, new StyleRef( "default" ), null,
+                                               new HashMap<String, String>(),
+                                               Collections.<String, List<?>> emptyMap(), DEFAULT_PIXEL_SIZE,
+                                               new MapOptionsMaps(), queryBox );
+            LayerData data = layer.mapQuery( query, headers );
+            if ( data != null ) {
+                data.render( ctx );
+            }
+        }
+        for ( String header : headers ) {
+            LOG.debug( "Warning while generating vector tile {}/{}/{}: {}",
+                       new Object[] { matrix.getIdentifier(), x, y, header } );
+        }
+        return ctx.getEncoder().encode();
+    }
+
+    private static class EncodedTile implements Tile {
+
+        private final byte[] bytes;
+
+        private final Envelope envelope;
+
+        EncodedTile( byte[] bytes, Envelope envelope ) {
+            this.bytes = bytes;
+            this.envelope = envelope;
+        }
+
+        @Override
+        public BufferedImage getAsImage()
+                                throws TileIOException {
+            throw new TileIOException( "Vector tiles cannot be converted to images." );
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            return new ByteArrayInputStream( bytes );
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return envelope;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit )
+                                throws UnsupportedOperationException {
+            throw new UnsupportedOperationException( "Feature retrieval is not supported for encoded vector tiles." );
+        }
+    }
+
+}
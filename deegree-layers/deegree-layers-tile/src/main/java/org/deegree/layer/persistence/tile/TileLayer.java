@@ -75,6 +75,8 @@ public class TileLayer extends AbstractLayer {
     // maps crs to tile matrix set ids
     private Map<ICRS, String> coordinateSystems = new LinkedHashMap<ICRS, String>();
 
+    private int cacheMaxAge = -1;
+
     public TileLayer( LayerMetadata md, List<TileDataSet> datasets ) {
         super( md );
         for ( TileDataSet tds : datasets ) {
@@ -122,4 +124,19 @@ public class TileLayer extends AbstractLayer {
         return tileDataSets.values();
     }
 
+    /**
+     * @return the number of seconds clients may cache tiles of this layer, -1 if not configured
+     */
+    public int getCacheMaxAge() {
+        return cacheMaxAge;
+    }
+
+    /**
+     * @param cacheMaxAge
+     *            the number of seconds clients may cache tiles of this layer, -1 if not configured
+     */
+    public void setCacheMaxAge( int cacheMaxAge ) {
+        this.cacheMaxAge = cacheMaxAge;
+    }
+
 }
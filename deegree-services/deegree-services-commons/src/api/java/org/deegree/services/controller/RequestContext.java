@@ -70,6 +70,8 @@ public class RequestContext {
 
     private final String requestedEndpointUrl;
 
+    private final String remoteAddress;
+
     /**
      * @param request
      *            request for which the context will be created, must not be <code>null</code>
@@ -87,6 +89,7 @@ public class RequestContext {
         this.credentials = credentials;
         pathInfo = request.getPathInfo();
         requestedEndpointUrl = request.getRequestURL().toString();
+        remoteAddress = request.getRemoteAddr();
         webappBaseUrl = deriveWebappBaseUrl( requestedEndpointUrl, request );
         if ( LOG.isDebugEnabled() ) {
             LOG.debug( "Request URL: " + requestedEndpointUrl );
@@ -153,6 +156,15 @@ public class RequestContext {
         return credentials;
     }
 
+    /**
+     * Returns the IP address of the client that sent the request.
+     * 
+     * @return the IP address, can be <code>null</code>
+     */
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
     @Override
     public String toString() {
         return "{credentials=" + credentials + ",requestURL=" + requestedEndpointUrl + "}";
@@ -224,4 +224,10 @@ public class OwsManager extends DefaultResourceManager<OWS> {
         return getSingleConfiguredService() != null;
     }
 
+    @Override
+    public boolean supportsLazyInitialization() {
+        // services need to be available right after startup
+        return false;
+    }
+
 }
@@ -0,0 +1,146 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.controller.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A serialized capabilities document, kept both raw and gzip compressed, along with its entity tag.
+ * 
+ * @see CapabilitiesCache
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CachedCapabilities {
+
+    private final String contentType;
+
+    private final Map<String, String> headers;
+
+    private final byte[] content;
+
+    private final byte[] gzippedContent;
+
+    private final String etag;
+
+    /**
+     * @param contentType
+     *            content type of the document, must not be <code>null</code>
+     * @param headers
+     *            additional response headers, may be empty, but must not be <code>null</code>
+     * @param content
+     *            serialized document, must not be <code>null</code>
+     * @throws IOException
+     *             if compressing the document fails
+     */
+    public CachedCapabilities( String contentType, Map<String, String> headers, byte[] content ) throws IOException {
+        this.contentType = contentType;
+        this.headers = Collections.unmodifiableMap( new LinkedHashMap<String, String>( headers ) );
+        this.content = content;
+        this.gzippedContent = gzip( content );
+        this.etag = "\"" + md5( content ) + "\"";
+    }
+
+    private static byte[] gzip( byte[] content )
+                            throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream( content.length / 4 + 64 );
+        GZIPOutputStream gos = new GZIPOutputStream( bos );
+        gos.write( content );
+        gos.close();
+        return bos.toByteArray();
+    }
+
+    private static String md5( byte[] content ) {
+        try {
+            byte[] digest = MessageDigest.getInstance( "MD5" ).digest( content );
+            StringBuilder sb = new StringBuilder( digest.length * 2 );
+            for ( byte b : digest ) {
+                sb.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) );
+                sb.append( Character.forDigit( b & 0xf, 16 ) );
+            }
+            return sb.toString();
+        } catch ( NoSuchAlgorithmException e ) {
+            // MD5 is guaranteed to be available
+            throw new IllegalStateException( e );
+        }
+    }
+
+    /**
+     * @return the content type, never <code>null</code>
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return additional response headers, may be empty, but never <code>null</code>
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the uncompressed document, never <code>null</code>
+     */
+    public byte[] getContent() {
+        return content;
+    }
+
+    /**
+     * @return the gzip compressed document, never <code>null</code>
+     */
+    public byte[] getGzippedContent() {
+        return gzippedContent;
+    }
+
+    /**
+     * @return the (strong, quoted) entity tag, never <code>null</code>
+     */
+    public String getETag() {
+        return etag;
+    }
+
+}
@@ -0,0 +1,280 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.controller.utils;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.deegree.workspace.Workspace;
+import org.slf4j.Logger;
+
+/**
+ * Bounded cache for serialized capabilities documents, including support for conditional (<code>If-None-Match</code>)
+ * and gzip compressed responses.
+ * <p>
+ * Each service keeps its own cache instance, so entries are discarded when the service is reinitialized (e.g. on
+ * workspace reload). Changes that are not connected to a service restart (e.g. transactions modifying feature type
+ * extents) must call {@link #invalidateAll(Workspace)}, which invalidates all cache instances of the workspace.
+ * </p>
+ * <p>
+ * To avoid caching documents that have been generated concurrently to an invalidation, callers obtain the current
+ * generation before the lookup and pass it to {@link #put(String, long, CachedCapabilities)}:
+ * 
+ * <pre>
+ * long generation = cache.getGeneration();
+ * CachedCapabilities caps = cache.get( key );
+ * if ( caps == null ) {
+ *     caps = cache.put( key, generation, export() );
+ * }
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CapabilitiesCache {
+
+    private static final Logger LOG = getLogger( CapabilitiesCache.class );
+
+    private static final int DEFAULT_MAX_ENTRIES = 32;
+
+    private final Map<String, CachedCapabilities> cache;
+
+    private final CapabilitiesGeneration generations;
+
+    private long generation;
+
+    /**
+     * @param workspace
+     *            workspace of the service, may be <code>null</code> (the cache can not be invalidated then)
+     */
+    public CapabilitiesCache( Workspace workspace ) {
+        this( workspace, DEFAULT_MAX_ENTRIES );
+    }
+
+    /**
+     * @param workspace
+     *            workspace of the service, may be <code>null</code> (the cache can not be invalidated then)
+     * @param maxEntries
+     *            maximum number of documents to keep, least recently used ones are discarded first
+     */
+    public CapabilitiesCache( Workspace workspace, final int maxEntries ) {
+        generations = CapabilitiesGeneration.forWorkspace( workspace );
+        generation = generations.get();
+        cache = Collections.synchronizedMap( new LinkedHashMap<String, CachedCapabilities>( 16, 0.75f, true ) {
+            private static final long serialVersionUID = -8155744398612419433L;
+
+            @Override
+            protected boolean removeEldestEntry( Entry<String, CachedCapabilities> eldest ) {
+                return size() > maxEntries;
+            }
+        } );
+    }
+
+    /**
+     * Invalidates the contents of all capabilities caches of the given workspace.
+     * 
+     * @param workspace
+     *            may be <code>null</code> (nothing is invalidated then)
+     */
+    public static void invalidateAll( Workspace workspace ) {
+        if ( workspace != null ) {
+            CapabilitiesGeneration.forWorkspace( workspace ).increment();
+        }
+    }
+
+    /**
+     * @return the current generation, to be obtained before the lookup of a document and passed to
+     *         {@link #put(String, long, CachedCapabilities)}
+     */
+    public long getGeneration() {
+        return generations.get();
+    }
+
+    /**
+     * Builds a cache key from the given request properties.
+     * 
+     * @param parts
+     *            properties that influence the document, e.g. version, language, service url and update sequence, may
+     *            contain <code>null</code> values
+     * @return the key, never <code>null</code>
+     */
+    public static String createKey( Object... parts ) {
+        StringBuilder sb = new StringBuilder();
+        for ( Object part : parts ) {
+            sb.append( part ).append( '|' );
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param key
+     *            must not be <code>null</code>
+     * @return the cached document, or <code>null</code>, if there is none (or the cache has been invalidated)
+     */
+    public CachedCapabilities get( String key ) {
+        synchronized ( cache ) {
+            if ( !isCurrent() ) {
+                return null;
+            }
+            return cache.get( key );
+        }
+    }
+
+    /**
+     * @param key
+     *            must not be <code>null</code>
+     * @param generation
+     *            the generation obtained (using {@link #getGeneration()}) before the document has been looked up
+     * @param caps
+     *            must not be <code>null</code>
+     * @return the document, never <code>null</code>
+     */
+    public CachedCapabilities put( String key, long generation, CachedCapabilities caps ) {
+        synchronized ( cache ) {
+            // don't cache documents that may have been generated before an invalidation
+            if ( isCurrent() && generation == this.generation ) {
+                cache.put( key, caps );
+            }
+        }
+        return caps;
+    }
+
+    // caller must synchronize on cache
+    private boolean isCurrent() {
+        long current = generations.get();
+        if ( generation == current ) {
+            return true;
+        }
+        LOG.debug( "Capabilities cache has been invalidated." );
+        cache.clear();
+        generation = current;
+        return false;
+    }
+
+    /**
+     * Discards all documents of this cache.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Writes the given document to the response. Responds with <code>304 Not Modified</code> if the request's
+     * <code>If-None-Match</code> header matches the document's entity tag, and sends the compressed document if the
+     * client accepts gzip encoding.
+     * 
+     * @param request
+     *            may be <code>null</code> (no conditional request or compression support then)
+     * @param response
+     *            must not be <code>null</code>
+     * @param caps
+     *            must not be <code>null</code>
+     * @throws IOException
+     */
+    public static void send( HttpServletRequest request, HttpServletResponse response, CachedCapabilities caps )
+                            throws IOException {
+        response.setHeader( "ETag", caps.getETag() );
+        response.setHeader( "Vary", "Accept-Encoding" );
+        if ( request != null && matches( request.getHeader( "If-None-Match" ), caps.getETag() ) ) {
+            response.setStatus( SC_NOT_MODIFIED );
+            return;
+        }
+        if ( caps.getContentType().contains( "xml" ) ) {
+            response.setCharacterEncoding( "UTF-8" );
+        }
+        response.setContentType( caps.getContentType() );
+        for ( Entry<String, String> header : caps.getHeaders().entrySet() ) {
+            response.setHeader( header.getKey(), header.getValue() );
+        }
+        byte[] content = caps.getContent();
+        if ( request != null && acceptsGzip( request.getHeader( "Accept-Encoding" ) ) ) {
+            response.setHeader( "Content-Encoding", "gzip" );
+            content = caps.getGzippedContent();
+        }
+        response.setContentLength( content.length );
+        response.getOutputStream().write( content );
+    }
+
+    static boolean matches( String ifNoneMatch, String etag ) {
+        if ( ifNoneMatch == null ) {
+            return false;
+        }
+        for ( String candidate : ifNoneMatch.split( "," ) ) {
+            candidate = candidate.trim();
+            if ( candidate.startsWith( "W/" ) ) {
+                candidate = candidate.substring( 2 );
+            }
+            if ( candidate.equals( "*" ) || candidate.equals( etag ) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean acceptsGzip( String acceptEncoding ) {
+        if ( acceptEncoding == null ) {
+            return false;
+        }
+        for ( String coding : acceptEncoding.split( "," ) ) {
+            String[] parts = coding.trim().split( ";" );
+            if ( !parts[0].trim().equalsIgnoreCase( "gzip" ) ) {
+                continue;
+            }
+            for ( int i = 1; i < parts.length; ++i ) {
+                String param = parts[i].trim().replace( " ", "" );
+                if ( param.matches( "q=0(\\.0*)?" ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,94 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.controller.utils;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.deegree.workspace.Initializable;
+import org.deegree.workspace.Workspace;
+
+/**
+ * Workspace-scoped generation counter of the {@link CapabilitiesCache}s. Incrementing it invalidates the cached
+ * capabilities documents of all services of the workspace, but not those of other workspaces.
+ * 
+ * @see CapabilitiesCache#invalidateAll(Workspace)
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CapabilitiesGeneration implements Initializable {
+
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Returns the {@link CapabilitiesGeneration} of the given workspace.
+     * 
+     * @param workspace
+     *            workspace, may be <code>null</code>
+     * @return generation of the workspace, or a new (unshared) one if the workspace doesn't provide one, never
+     *         <code>null</code>
+     */
+    public static CapabilitiesGeneration forWorkspace( Workspace workspace ) {
+        CapabilitiesGeneration generation = null;
+        if ( workspace != null ) {
+            generation = workspace.getInitializable( CapabilitiesGeneration.class );
+        }
+        return generation != null ? generation : new CapabilitiesGeneration();
+    }
+
+    @Override
+    public void init( Workspace workspace ) {
+        // nothing to do, services and their caches are recreated on workspace startup as well
+    }
+
+    /**
+     * @return the current generation
+     */
+    public long get() {
+        return generation.get();
+    }
+
+    /**
+     * Starts a new generation.
+     */
+    public void increment() {
+        generation.incrementAndGet();
+    }
+
+}
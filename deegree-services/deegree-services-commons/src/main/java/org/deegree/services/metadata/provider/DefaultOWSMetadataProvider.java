@@ -52,9 +52,11 @@ import org.apache.axiom.om.OMElement;
 import org.deegree.commons.ows.metadata.DatasetMetadata;
 import org.deegree.commons.ows.metadata.ServiceIdentification;
 import org.deegree.commons.ows.metadata.ServiceProvider;
+import org.deegree.services.controller.utils.CapabilitiesCache;
 import org.deegree.services.metadata.OWSMetadataProvider;
 import org.deegree.workspace.Resource;
 import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.Workspace;
 
 /**
  * {@link OWSMetadataProvider} implementation that is a simple bean providing the metadata.
@@ -80,14 +82,17 @@ public class DefaultOWSMetadataProvider implements OWSMetadataProvider {
 
     private ResourceMetadata<OWSMetadataProvider> metadata;
 
+    private final Workspace workspace;
+
     public DefaultOWSMetadataProvider( ServiceIdentification si, ServiceProvider sp,
                                        Map<String, List<OMElement>> extendedCapabilities,
                                        List<DatasetMetadata> datasetMetadata, Map<String, String> authorities,
-                                       ResourceMetadata<OWSMetadataProvider> metadata ) {
+                                       ResourceMetadata<OWSMetadataProvider> metadata, Workspace workspace ) {
         this.serviceIdentification = si;
         this.serviceProvider = sp;
         this.extendedCapabilities = extendedCapabilities;
         this.metadata = metadata;
+        this.workspace = workspace;
         if ( datasetMetadata != null ) {
             this.datasetMetadata = datasetMetadata;
         } else {
@@ -101,12 +106,13 @@ public class DefaultOWSMetadataProvider implements OWSMetadataProvider {
 
     @Override
     public void init() {
-        // nothing to init
+        // services may have cached capabilities documents using the previous metadata
+        CapabilitiesCache.invalidateAll( workspace );
     }
 
     @Override
     public void destroy() {
-        // nothing to release
+        CapabilitiesCache.invalidateAll( workspace );
     }
 
     @Override
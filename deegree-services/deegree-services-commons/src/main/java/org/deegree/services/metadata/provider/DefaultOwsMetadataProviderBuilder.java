@@ -61,6 +61,7 @@ import org.deegree.services.metadata.OWSMetadataProvider;
 import org.deegree.workspace.ResourceBuilder;
 import org.deegree.workspace.ResourceInitException;
 import org.deegree.workspace.ResourceMetadata;
+import org.deegree.workspace.Workspace;
 
 /**
  * This class is responsible for building web service metadata providers.
@@ -75,10 +76,13 @@ public class DefaultOwsMetadataProviderBuilder implements ResourceBuilder<OWSMet
 
     private ResourceMetadata<OWSMetadataProvider> metadata;
 
+    private Workspace workspace;
+
     public DefaultOwsMetadataProviderBuilder( JAXBElement<DeegreeServicesMetadataType> md,
-                                              ResourceMetadata<OWSMetadataProvider> metadata ) {
+                                              ResourceMetadata<OWSMetadataProvider> metadata, Workspace workspace ) {
         this.md = md;
         this.metadata = metadata;
+        this.workspace = workspace;
     }
 
     @Override
@@ -115,7 +119,7 @@ public class DefaultOwsMetadataProviderBuilder implements ResourceBuilder<OWSMet
                 }
             }
             return new DefaultOWSMetadataProvider( smd.first, smd.second, extendedCapabilities, datasets, authorities,
-                                                   metadata );
+                                                   metadata, workspace );
         } catch ( Exception e ) {
             throw new ResourceInitException( "Unable to read service metadata config: " + e.getLocalizedMessage(), e );
         }
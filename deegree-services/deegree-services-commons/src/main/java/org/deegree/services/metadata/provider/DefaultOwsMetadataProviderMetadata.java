@@ -61,7 +61,7 @@ public class DefaultOwsMetadataProviderMetadata extends AbstractResourceMetadata
             md = (JAXBElement<DeegreeServicesMetadataType>) unmarshall( "org.deegree.services.jaxb.metadata",
                                                                         provider.getSchema(), location.getAsStream(),
                                                                         workspace );
-            return new DefaultOwsMetadataProviderBuilder( md, this );
+            return new DefaultOwsMetadataProviderBuilder( md, this, workspace );
         } catch ( Exception e ) {
             throw new ResourceInitException( "Unable to read service metadata config: " + e.getLocalizedMessage(), e );
         }
@@ -0,0 +1,221 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.controller.utils;
+
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.deegree.workspace.Workspace;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CapabilitiesCache}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class CapabilitiesCacheTest {
+
+    private static final byte[] DOC = "<Capabilities version=\"1.3.0\"/>".getBytes();
+
+    private final Workspace workspace = mockWorkspace();
+
+    @Test
+    public void testGetPut()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( workspace );
+        String key = CapabilitiesCache.createKey( "1.3.0", null, "http://localhost/services" );
+        assertNull( cache.get( key ) );
+        cache.put( key, cache.getGeneration(), createCaps() );
+        assertNotNull( cache.get( key ) );
+        assertNull( cache.get( CapabilitiesCache.createKey( "1.1.1", null, "http://localhost/services" ) ) );
+    }
+
+    @Test
+    public void testInvalidateAll()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( workspace );
+        cache.put( "key", cache.getGeneration(), createCaps() );
+        CapabilitiesCache.invalidateAll( workspace );
+        assertNull( cache.get( "key" ) );
+    }
+
+    @Test
+    public void testInvalidateAllKeepsOtherWorkspaces()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( workspace );
+        cache.put( "key", cache.getGeneration(), createCaps() );
+        CapabilitiesCache.invalidateAll( mockWorkspace() );
+        assertNotNull( cache.get( "key" ) );
+    }
+
+    @Test
+    public void testDocumentGeneratedBeforeInvalidationIsNotCached()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( workspace );
+        long generation = cache.getGeneration();
+        assertNull( cache.get( "key" ) );
+        // invalidated while the document is being generated, and a lookup by another request in the meantime
+        CapabilitiesCache.invalidateAll( workspace );
+        assertNull( cache.get( "other" ) );
+        CachedCapabilities caps = createCaps();
+        assertSame( caps, cache.put( "key", generation, caps ) );
+        assertNull( cache.get( "key" ) );
+    }
+
+    @Test
+    public void testMaxEntries()
+                            throws IOException {
+        CapabilitiesCache cache = new CapabilitiesCache( workspace, 2 );
+        cache.put( "a", cache.getGeneration(), createCaps() );
+        cache.put( "b", cache.getGeneration(), createCaps() );
+        cache.get( "a" );
+        cache.put( "c", cache.getGeneration(), createCaps() );
+        assertNotNull( cache.get( "a" ) );
+        assertNull( cache.get( "b" ) );
+        assertNotNull( cache.get( "c" ) );
+    }
+
+    @Test
+    public void testSendNotModified()
+                            throws IOException {
+        CachedCapabilities caps = createCaps();
+        HttpServletRequest request = mockRequest( caps.getETag(), null );
+        HttpServletResponse response = mock( HttpServletResponse.class );
+        CapabilitiesCache.send( request, response, caps );
+        verify( response ).setStatus( SC_NOT_MODIFIED );
+        verify( response, never() ).getOutputStream();
+    }
+
+    @Test
+    public void testSendPlain()
+                            throws IOException {
+        CachedCapabilities caps = createCaps();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpServletResponse response = mockResponse( bos );
+        CapabilitiesCache.send( mockRequest( "\"other\"", null ), response, caps );
+        verify( response ).setHeader( "ETag", caps.getETag() );
+        verify( response ).setContentType( "text/xml" );
+        assertArrayEquals( DOC, bos.toByteArray() );
+    }
+
+    @Test
+    public void testSendGzipped()
+                            throws IOException {
+        CachedCapabilities caps = createCaps();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        HttpServletResponse response = mockResponse( bos );
+        CapabilitiesCache.send( mockRequest( null, "deflate, gzip" ), response, caps );
+        verify( response ).setHeader( "Content-Encoding", "gzip" );
+        byte[] unzipped = IOUtils.toByteArray( new GZIPInputStream( new ByteArrayInputStream( bos.toByteArray() ) ) );
+        assertArrayEquals( DOC, unzipped );
+    }
+
+    @Test
+    public void testMatches() {
+        assertTrue( CapabilitiesCache.matches( "\"a\", \"b\"", "\"b\"" ) );
+        assertTrue( CapabilitiesCache.matches( "W/\"b\"", "\"b\"" ) );
+        assertTrue( CapabilitiesCache.matches( "*", "\"b\"" ) );
+        assertFalse( CapabilitiesCache.matches( "\"a\"", "\"b\"" ) );
+        assertFalse( CapabilitiesCache.matches( null, "\"b\"" ) );
+    }
+
+    @Test
+    public void testAcceptsGzip() {
+        assertTrue( CapabilitiesCache.acceptsGzip( "gzip" ) );
+        assertTrue( CapabilitiesCache.acceptsGzip( "deflate, GZIP;q=0.5" ) );
+        assertFalse( CapabilitiesCache.acceptsGzip( "gzip;q=0" ) );
+        assertFalse( CapabilitiesCache.acceptsGzip( "deflate" ) );
+        assertFalse( CapabilitiesCache.acceptsGzip( null ) );
+    }
+
+    private CachedCapabilities createCaps()
+                            throws IOException {
+        CachedCapabilities caps = new CachedCapabilities( "text/xml", Collections.<String, String> emptyMap(), DOC );
+        assertEquals( 34, caps.getETag().length() );
+        return caps;
+    }
+
+    private static Workspace mockWorkspace() {
+        Workspace workspace = mock( Workspace.class );
+        when( workspace.getInitializable( CapabilitiesGeneration.class ) ).thenReturn( new CapabilitiesGeneration() );
+        return workspace;
+    }
+
+    private HttpServletRequest mockRequest( String ifNoneMatch, String acceptEncoding ) {
+        HttpServletRequest request = mock( HttpServletRequest.class );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( ifNoneMatch );
+        when( request.getHeader( "Accept-Encoding" ) ).thenReturn( acceptEncoding );
+        return request;
+    }
+
+    private HttpServletResponse mockResponse( final ByteArrayOutputStream bos )
+                            throws IOException {
+        HttpServletResponse response = mock( HttpServletResponse.class );
+        when( response.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b )
+                                    throws IOException {
+                bos.write( b );
+            }
+        } );
+        return response;
+    }
+
+}
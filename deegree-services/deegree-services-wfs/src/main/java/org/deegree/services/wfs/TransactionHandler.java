@@ -256,6 +256,10 @@ class TransactionHandler {
                 LOG.debug( "Committing feature store transaction:" + ta );
                 ta.commit();
             }
+            if ( !acquiredTransactions.isEmpty() ) {
+                // feature type extents may have changed
+                master.invalidateCapabilities();
+            }
         } catch ( MissingParameterException e ) {
             // needed for CITE compliance (wfs:wfs-1.1.0-Transaction-tc12.1)
             LOG.debug( "Error occured during transaction, performing rollback." );
@@ -48,6 +48,7 @@ import static org.deegree.protocol.wfs.WFSConstants.VERSION_100;
 import static org.deegree.protocol.wfs.WFSConstants.VERSION_110;
 import static org.deegree.protocol.wfs.WFSConstants.VERSION_200;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -67,6 +68,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
@@ -89,6 +91,7 @@ import org.deegree.commons.utils.kvp.KVPUtils;
 import org.deegree.commons.utils.kvp.MissingParameterException;
 import org.deegree.commons.xml.XMLAdapter;
 import org.deegree.commons.xml.XMLParsingException;
+import org.deegree.commons.xml.stax.IndentingXMLStreamWriter;
 import org.deegree.commons.xml.stax.SchemaLocationXMLStreamWriter;
 import org.deegree.commons.xml.stax.XMLStreamUtils;
 import org.deegree.cs.CRSUtils;
@@ -141,6 +144,8 @@ import org.deegree.services.controller.AbstractOWS;
 import org.deegree.services.controller.ImplementationMetadata;
 import org.deegree.services.controller.OGCFrontController;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
+import org.deegree.services.controller.utils.CachedCapabilities;
+import org.deegree.services.controller.utils.CapabilitiesCache;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.i18n.Messages;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
@@ -223,6 +228,8 @@ public class WebFeatureService extends AbstractOWS {
 
     private OWSMetadataProvider mdProvider;
 
+    private final CapabilitiesCache capabilitiesCache = new CapabilitiesCache( workspace );
+
     public WebFeatureService( ResourceMetadata<OWS> metadata, Workspace workspace, Object jaxbConfig ) {
         super( metadata, workspace, jaxbConfig );
     }
@@ -489,7 +496,8 @@ public class WebFeatureService extends AbstractOWS {
                 }
             }
             provider = new DefaultOWSMetadataProvider( serviceId, serviceProvider, wfsVersionToExtendedCaps,
-                                                       ftMetadata, Collections.<String, String> emptyMap(), null );
+                                                       ftMetadata, Collections.<String, String> emptyMap(), null,
+                                                       workspace );
         }
         return provider;
     }
@@ -572,7 +580,7 @@ public class WebFeatureService extends AbstractOWS {
                 break;
             case GetCapabilities:
                 GetCapabilities getCapabilities = GetCapabilitiesKVPParser.parse( kvpParamsUC );
-                doGetCapabilities( getCapabilities, response );
+                doGetCapabilities( getCapabilities, request, response );
                 break;
             case GetFeature:
                 GetFeature getFeature = GetFeatureKVPAdapter.parse( kvpParamsUC, nsMap );
@@ -704,7 +712,7 @@ public class WebFeatureService extends AbstractOWS {
                 GetCapabilitiesXMLAdapter getCapabilitiesAdapter = new GetCapabilitiesXMLAdapter();
                 getCapabilitiesAdapter.setRootElement( new XMLAdapter( xmlStream ).getRootElement() );
                 GetCapabilities wfsRequest = getCapabilitiesAdapter.parse( requestVersion );
-                doGetCapabilities( wfsRequest, response );
+                doGetCapabilities( wfsRequest, request, response );
                 break;
             case GetFeature:
                 GetFeatureXMLAdapter getFeatureAdapter = new GetFeatureXMLAdapter();
@@ -802,7 +810,8 @@ public class WebFeatureService extends AbstractOWS {
         return requestType;
     }
 
-    private void doGetCapabilities( GetCapabilities request, HttpResponseBuffer response )
+    private void doGetCapabilities( GetCapabilities request, HttpServletRequest httpRequest,
+                                    HttpResponseBuffer response )
                             throws XMLStreamException, IOException, OWSException {
 
         LOG.debug( "doGetCapabilities: " + request );
@@ -823,6 +832,29 @@ public class WebFeatureService extends AbstractOWS {
             sectionsUC = null;
         }
 
+        String key = CapabilitiesCache.createKey( negotiatedVersion,
+                                                  sectionsUC == null ? null : new TreeSet<String>( sectionsUC ),
+                                                  request.getAcceptLanguages(), request.getUpdateSequence(),
+                                                  OGCFrontController.getHttpGetURL(),
+                                                  OGCFrontController.getHttpPostURL() );
+        long generation = capabilitiesCache.getGeneration();
+        CachedCapabilities caps = capabilitiesCache.get( key );
+        if ( caps == null ) {
+            caps = capabilitiesCache.put( key, generation, exportCapabilities( negotiatedVersion, sectionsUC ) );
+        }
+        CapabilitiesCache.send( httpRequest, response, caps );
+    }
+
+    /**
+     * Invalidates the cached capabilities documents of all services of the workspace, e.g. after feature type extents
+     * have been modified.
+     */
+    void invalidateCapabilities() {
+        CapabilitiesCache.invalidateAll( workspace );
+    }
+
+    private CachedCapabilities exportCapabilities( Version negotiatedVersion, Set<String> sectionsUC )
+                            throws XMLStreamException, IOException {
         // sort the information on the served feature types
         Comparator<FeatureType> comp = new Comparator<FeatureType>() {
             @Override
@@ -844,12 +876,16 @@ public class WebFeatureService extends AbstractOWS {
             }
         }
 
-        XMLStreamWriter xmlWriter = getXMLResponseWriter( response, "text/xml", null );
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLOutputFactory factory = XMLOutputFactory.newInstance();
+        XMLStreamWriter xmlWriter = new IndentingXMLStreamWriter( factory.createXMLStreamWriter( bos, "UTF-8" ) );
+        xmlWriter.writeStartDocument( "UTF-8", "1.0" );
         GetCapabilitiesHandler adapter = new GetCapabilitiesHandler( this, service, negotiatedVersion, xmlWriter,
                                                                      sortedFts, sectionsUC, enableTransactions,
                                                                      queryCRS, mdProvider );
         adapter.export();
-        xmlWriter.flush();
+        xmlWriter.close();
+        return new CachedCapabilities( "text/xml", Collections.<String, String> emptyMap(), bos.toByteArray() );
     }
 
     /**
@@ -240,9 +240,13 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
 
         int startIndex = 0;
-        if ( request.getPresentationParams().getStartIndex() != null ) {
+        // the client pages through the result, so the features must be returned in a stable order
+        boolean paging = request.getPresentationParams().getStartIndex() != null;
+        if ( paging ) {
             startIndex = request.getPresentationParams().getStartIndex().intValue();
         }
+        // clients that page through the result need the total number to navigate, only determine it for them
+        boolean countMatched = lock == null && ( paging || request.getPresentationParams().getCount() != null );
 
         GMLStreamWriter gmlStream = createGMLStreamWriter( gmlVersion, xmlStream );
         gmlStream.setProjections( analyzer.getProjections() );
@@ -261,10 +265,10 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 
         if ( options.isDisableStreaming() ) {
             writeFeatureMembersCached( request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
-                                       startIndex, memberElementName, lock );
+                                       startIndex, paging, countMatched, memberElementName, lock );
         } else {
             writeFeatureMembersStream( request.getVersion(), gmlStream, analyzer, gmlVersion, returnMaxFeatures,
-                                       startIndex, memberElementName, lock );
+                                       startIndex, paging, countMatched, memberElementName, lock );
         }
 
         if ( !additionalObjects.getAdditionalRefs().isEmpty() ) {
@@ -392,14 +396,18 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 
     private void writeFeatureMembersStream( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
                                             GMLVersion outputFormat, int maxFeatures, int startIndex,
-                                            QName featureMemberEl, Lock lock )
+                                            boolean paging, boolean countMatched, QName featureMemberEl, Lock lock )
                             throws XMLStreamException, UnknownCRSException, TransformationException,
                             FeatureStoreException, FilterEvaluationException, FactoryConfigurationError {
 
         XMLStreamWriter xmlStream = gmlStream.getXMLStream();
 
         if ( wfsVersion.equals( VERSION_200 ) ) {
-            xmlStream.writeAttribute( "numberMatched", "unknown" );
+            if ( countMatched ) {
+                xmlStream.writeAttribute( "numberMatched", "" + countMatches( analyzer ) );
+            } else {
+                xmlStream.writeAttribute( "numberMatched", "unknown" );
+            }
             xmlStream.writeAttribute( "numberReturned", "0" );
             xmlStream.writeComment( "NOTE: numberReturned attribute should be 'unknown' as well, but this would not validate against the current version of the WFS 2.0 schema (change upcoming). See change request (CR 144): https://portal.opengeospatial.org/files?artifact_id=43925." );
         }
@@ -416,10 +424,14 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve and write result features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        if ( isPagedByStore( analyzer, lock ) ) {
+            featuresSkipped = startIndex;
+        }
         GmlXlinkOptions resolveState = gmlStream.getReferenceResolveStrategy().getResolveOptions();
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
-            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            Query[] queries = getPagedQueries( analyzer, fsToQueries.getValue(), lock, maxFeatures, startIndex,
+                                               paging );
             FeatureInputStream rs = fs.query( queries );
             try {
                 for ( Feature member : rs ) {
@@ -446,7 +458,7 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 
     private void writeFeatureMembersCached( Version wfsVersion, GMLStreamWriter gmlStream, QueryAnalyzer analyzer,
                                             GMLVersion outputFormat, int maxFeatures, int startIndex,
-                                            QName featureMemberEl, Lock lock )
+                                            boolean paging, boolean countMatched, QName featureMemberEl, Lock lock )
                             throws XMLStreamException, UnknownCRSException, TransformationException,
                             FeatureStoreException, FilterEvaluationException, FactoryConfigurationError {
 
@@ -456,9 +468,13 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         // retrieve maxfeatures features
         int featuresAdded = 0;
         int featuresSkipped = 0;
+        if ( isPagedByStore( analyzer, lock ) ) {
+            featuresSkipped = startIndex;
+        }
         for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
             FeatureStore fs = fsToQueries.getKey();
-            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            Query[] queries = getPagedQueries( analyzer, fsToQueries.getValue(), lock, maxFeatures, startIndex,
+                                               paging );
             FeatureInputStream rs = fs.query( queries );
             try {
                 for ( Feature feature : rs ) {
@@ -484,7 +500,11 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
 
         XMLStreamWriter xmlStream = gmlStream.getXMLStream();
         if ( wfsVersion.equals( VERSION_200 ) ) {
-            xmlStream.writeAttribute( "numberMatched", "" + allFeatures.size() );
+            int numberMatched = allFeatures.size();
+            if ( countMatched ) {
+                numberMatched = countMatches( analyzer );
+            }
+            xmlStream.writeAttribute( "numberMatched", "" + numberMatched );
             xmlStream.writeAttribute( "numberReturned", "" + allFeatures.size() );
         } else if ( !wfsVersion.equals( VERSION_100 ) && options.getResponseContainerEl() == null ) {
             xmlStream.writeAttribute( "numberOfFeatures", "" + allFeatures.size() );
@@ -501,6 +521,54 @@ public class GmlGetFeatureHandler extends AbstractGmlRequestHandler {
         }
     }
 
+    /**
+     * Returns whether the requested page can be determined completely by the feature store, i.e. there is only a single
+     * query and the features do not need to be checked against a lock.
+     */
+    private boolean isPagedByStore( QueryAnalyzer analyzer, Lock lock ) {
+        if ( lock != null || analyzer.getQueries().size() != 1 ) {
+            return false;
+        }
+        return analyzer.getQueries().values().iterator().next().size() == 1;
+    }
+
+    /**
+     * Returns the queries to be passed to the feature store, including the paging parameters that the store can apply.
+     * <p>
+     * If the page can be determined by the store, start index and maximum number of features are passed as is, so only
+     * the features of the requested page are fetched. Otherwise (multiple queries), the number of features per query
+     * is limited to <code>startIndex + maxFeatures</code> and skipping is performed while iterating over the combined
+     * result. If the client pages through the result, the queries require a stable order of the features.
+     * </p>
+     */
+    private Query[] getPagedQueries( QueryAnalyzer analyzer, List<Query> queries, Lock lock, int maxFeatures,
+                                     int startIndex, boolean paging ) {
+        Query[] pagedQueries = new Query[queries.size()];
+        for ( int i = 0; i < pagedQueries.length; i++ ) {
+            Query query = queries.get( i );
+            if ( isPagedByStore( analyzer, lock ) ) {
+                query = new Query( query, startIndex, maxFeatures, paging );
+            } else if ( lock == null && maxFeatures > -1 ) {
+                query = new Query( query, 0, startIndex + maxFeatures, paging );
+            }
+            pagedQueries[i] = query;
+        }
+        return pagedQueries;
+    }
+
+    private int countMatches( QueryAnalyzer analyzer )
+                            throws FeatureStoreException, FilterEvaluationException {
+        int numberMatched = 0;
+        for ( Map.Entry<FeatureStore, List<Query>> fsToQueries : analyzer.getQueries().entrySet() ) {
+            FeatureStore fs = fsToQueries.getKey();
+            Query[] queries = fsToQueries.getValue().toArray( new Query[fsToQueries.getValue().size()] );
+            for ( int hits : fs.queryHits( queries ) ) {
+                numberMatched += hits;
+            }
+        }
+        return numberMatched;
+    }
+
     private void writeBoundedBy( Version wfsVersion, GMLStreamWriter gmlStream, GMLVersion outputFormat, Envelope env )
                             throws XMLStreamException, UnknownCRSException, TransformationException {
 
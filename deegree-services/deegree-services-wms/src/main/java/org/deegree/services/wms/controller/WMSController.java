@@ -100,6 +100,8 @@ import org.deegree.protocol.wms.ops.GetLegendGraphic;
 import org.deegree.rendering.r2d.context.DefaultRenderContext;
 import org.deegree.rendering.r2d.context.RenderContext;
 import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.rendering.r2d.context.VectorTileRenderContext;
+import org.deegree.rendering.r2d.vectortile.VectorTileEncoder;
 import org.deegree.services.OWS;
 import org.deegree.services.OWSProvider;
 import org.deegree.services.OwsManager;
@@ -107,6 +109,8 @@ import org.deegree.services.controller.AbstractOWS;
 import org.deegree.services.controller.ImplementationMetadata;
 import org.deegree.services.controller.OGCFrontController;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
+import org.deegree.services.controller.utils.CachedCapabilities;
+import org.deegree.services.controller.utils.CapabilitiesCache;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.jaxb.controller.DeegreeServiceControllerType;
 import org.deegree.services.jaxb.metadata.DeegreeServicesMetadataType;
@@ -159,6 +163,8 @@ public class WMSController extends AbstractOWS {
 
     private FeatureInfoManager featureInfoManager;
 
+    private final CapabilitiesCache capabilitiesCache = new CapabilitiesCache( workspace );
+
     public WMSController( ResourceMetadata<OWS> metadata, Workspace workspace, Object jaxbConfig ) {
         super( metadata, workspace, jaxbConfig );
         featureInfoManager = new FeatureInfoManager( true );
@@ -212,6 +218,7 @@ public class WMSController extends AbstractOWS {
             supportedImageFormats.add( "image/jpeg" );
             supportedImageFormats.add( "image/tiff" );
             supportedImageFormats.add( "image/x-ms-bmp" );
+            supportedImageFormats.add( VectorTileEncoder.MIME_TYPE );
 
             if ( conf.getFeatureInfoFormats() != null ) {
                 for ( GetFeatureInfoFormat t : conf.getFeatureInfoFormats().getGetFeatureInfoFormat() ) {
@@ -302,7 +309,7 @@ public class WMSController extends AbstractOWS {
         }
 
         try {
-            handleRequest( req, response, map, version );
+            handleRequest( req, request, response, map, version );
         } catch ( OWSException e ) {
             if ( controllers.get( version ) == null ) {
                 // happens if non capabilities request is made with unsupported version
@@ -316,8 +323,8 @@ public class WMSController extends AbstractOWS {
         }
     }
 
-    private void handleRequest( WMSRequestType req, HttpResponseBuffer response, Map<String, String> map,
-                                Version version )
+    private void handleRequest( WMSRequestType req, HttpServletRequest request, HttpResponseBuffer response,
+                                Map<String, String> map, Version version )
                             throws IOException, OWSException {
         try {
             switch ( req ) {
@@ -337,7 +344,7 @@ public class WMSController extends AbstractOWS {
                                         OPERATION_NOT_SUPPORTED );
             case capabilities:
             case GetCapabilities:
-                getCapabilities( map, response );
+                getCapabilities( map, request, response );
                 break;
             case GetFeatureInfo:
                 getFeatureInfo( map, response, version );
@@ -392,11 +399,12 @@ public class WMSController extends AbstractOWS {
                             throws OWSException, IOException {
         GetLegendGraphic glg = new GetLegendGraphic( map );
 
-        if ( !supportedImageFormats.contains( glg.getFormat() ) ) {
-            throw new OWSException( get( "WMS.UNSUPPORTED_IMAGE_FORMAT", glg.getFormat() ), OWSException.INVALID_FORMAT );
+        String format = glg.getFormat();
+        if ( !supportedImageFormats.contains( format ) || VectorTileEncoder.MIME_TYPE.equals( format ) ) {
+            throw new OWSException( get( "WMS.UNSUPPORTED_IMAGE_FORMAT", format ), OWSException.INVALID_FORMAT );
         }
         BufferedImage img = service.getLegend( glg );
-        sendImage( img, response, glg.getFormat() );
+        sendImage( img, response, format );
     }
 
     private void getFeatureInfo( Map<String, String> map, HttpResponseBuffer response, Version version )
@@ -495,7 +503,12 @@ public class WMSController extends AbstractOWS {
 
         RenderingInfo info = new RenderingInfo( gm2.getFormat(), gm2.getWidth(), gm2.getHeight(), gm2.getTransparent(),
                                                 gm2.getBgColor(), gm2.getBoundingBox(), gm2.getPixelSize(), map );
-        RenderContext ctx = new DefaultRenderContext( info );
+        RenderContext ctx;
+        if ( VectorTileEncoder.MIME_TYPE.equals( gm2.getFormat() ) ) {
+            ctx = new VectorTileRenderContext( info );
+        } else {
+            ctx = new DefaultRenderContext( info );
+        }
         ctx.setOutput( response.getOutputStream() );
         LinkedList<String> headers = new LinkedList<String>();
         service.getMap( gm2, headers, ctx );
@@ -566,7 +579,7 @@ public class WMSController extends AbstractOWS {
         }
     }
 
-    protected void getCapabilities( Map<String, String> map, HttpResponseBuffer response )
+    protected void getCapabilities( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, IOException {
 
         String version = map.get( "VERSION" );
@@ -587,8 +600,8 @@ public class WMSController extends AbstractOWS {
         String configId = getMetadata().getIdentifier().getId();
         OWSMetadataProvider metadata = workspace.getResource( OWSMetadataProviderProvider.class, configId + "_metadata" );
 
-        controllers.get( myVersion ).getCapabilities( getUrl, postUrl, updateSequence, service, response,
-                                                      identification, provider, map, this, metadata );
+        WMSControllerBase controller = controllers.get( myVersion );
+        controller.checkUpdateSequence( updateSequence, service );
 
         if ( metadata != null ) {
             identification = metadata.getServiceIdentification();
@@ -596,6 +609,18 @@ public class WMSController extends AbstractOWS {
             extendedCaps = metadata.getExtendedCapabilities();
         }
 
+        // the metadata provider invalidates the cache when it is reinitialized independently of this service
+        String key = CapabilitiesCache.createKey( myVersion, map.get( "LANGUAGE" ), getUrl, postUrl,
+                                                  service.updateSequence );
+        long generation = capabilitiesCache.getGeneration();
+        CachedCapabilities caps = capabilitiesCache.get( key );
+        if ( caps == null ) {
+            caps = capabilitiesCache.put( key, generation,
+                                          controller.exportCapabilities( getUrl, postUrl, service, identification,
+                                                                         provider, this, metadata ) );
+        }
+        CapabilitiesCache.send( request, response, caps );
+
         response.flushBuffer(); // TODO remove this to enable validation, enable validation on a DTD basis...
     }
 
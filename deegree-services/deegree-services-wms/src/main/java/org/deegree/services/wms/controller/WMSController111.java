@@ -39,7 +39,7 @@ package org.deegree.services.wms.controller;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_SRS;
 import static org.deegree.services.i18n.Messages.get;
 
-import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -114,18 +114,21 @@ public class WMSController111 extends WMSControllerBase {
     }
 
     @Override
-    protected void exportCapas( String getUrl, String postUrl, MapService service, HttpResponseBuffer response,
+    protected void exportCapas( String getUrl, String postUrl, MapService service, XMLStreamWriter xmlWriter,
                                 ServiceIdentification identification, ServiceProvider provider,
                                 WMSController controller, OWSMetadataProvider metadata )
-                            throws IOException {
-        response.setContentType( "application/vnd.ogc.wms_xml" );
-        response.addHeader( "Content-Disposition", "inline; filename=\"capabilities.xml\"" );
-        try {
-            XMLStreamWriter xmlWriter = response.getXMLWriter();
-            new Capabilities111XMLAdapter( identification, provider, getUrl, postUrl, service, controller ).export( xmlWriter );
-        } catch ( XMLStreamException e ) {
-            throw new IOException( e );
-        }
+                            throws XMLStreamException {
+        new Capabilities111XMLAdapter( identification, provider, getUrl, postUrl, service, controller ).export( xmlWriter );
+    }
+
+    @Override
+    protected String getCapabilitiesContentType() {
+        return "application/vnd.ogc.wms_xml";
+    }
+
+    @Override
+    protected Map<String, String> getCapabilitiesHeaders() {
+        return Collections.singletonMap( "Content-Disposition", "inline; filename=\"capabilities.xml\"" );
     }
 
 }
@@ -38,8 +38,6 @@ package org.deegree.services.wms.controller;
 
 import static org.deegree.services.i18n.Messages.get;
 
-import java.io.IOException;
-
 import javax.servlet.ServletException;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
@@ -119,17 +117,16 @@ public class WMSController130 extends WMSControllerBase {
     }
 
     @Override
-    protected void exportCapas( String getUrl, String postUrl, MapService service, HttpResponseBuffer response,
+    protected void exportCapas( String getUrl, String postUrl, MapService service, XMLStreamWriter xmlWriter,
                                 ServiceIdentification identification, ServiceProvider provider,
                                 WMSController controller, OWSMetadataProvider metadata )
-                            throws IOException {
-        response.setContentType( "text/xml" );
-        try {
-            XMLStreamWriter xmlWriter = response.getXMLWriter();
-            new Capabilities130XMLAdapter( identification, provider, metadata, getUrl, postUrl, service, controller ).export( xmlWriter );
-        } catch ( XMLStreamException e ) {
-            throw new IOException( e );
-        }
+                            throws XMLStreamException {
+        new Capabilities130XMLAdapter( identification, provider, metadata, getUrl, postUrl, service, controller ).export( xmlWriter );
+    }
+
+    @Override
+    protected String getCapabilitiesContentType() {
+        return "text/xml";
     }
 
 }
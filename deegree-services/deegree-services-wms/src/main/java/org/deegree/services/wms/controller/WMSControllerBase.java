@@ -40,7 +40,6 @@ import static java.awt.Color.decode;
 import static java.awt.Color.white;
 import static java.lang.Integer.parseInt;
 import static java.util.Arrays.asList;
-import static javax.xml.stream.XMLOutputFactory.IS_REPAIRING_NAMESPACES;
 import static org.deegree.commons.utils.math.MathUtils.round;
 import static org.deegree.services.i18n.Messages.get;
 import static org.deegree.style.utils.ImageUtils.prepareImage;
@@ -49,18 +48,25 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.font.TextLayout;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.ows.metadata.ServiceIdentification;
 import org.deegree.commons.ows.metadata.ServiceProvider;
+import org.deegree.commons.xml.stax.IndentingXMLStreamWriter;
 import org.deegree.protocol.wms.WMSConstants.WMSRequestType;
 import org.deegree.services.controller.exception.serializer.XMLExceptionSerializer;
+import org.deegree.services.controller.utils.CachedCapabilities;
+import org.deegree.services.controller.utils.CapabilitiesCache;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.metadata.OWSMetadataProvider;
 import org.deegree.services.wms.MapService;
@@ -181,8 +187,22 @@ public abstract class WMSControllerBase implements Controller {
                                  ServiceProvider provider, Map<String, String> customParameters,
                                  WMSController controller, OWSMetadataProvider metadata )
                             throws OWSException, IOException {
-        getUrl = getUrl.substring( 0, getUrl.length() - 1 );
-        postUrl = postUrl.substring( 0, getUrl.length() - 1 );
+        checkUpdateSequence( updateSequence, service );
+        CachedCapabilities caps = exportCapabilities( getUrl, postUrl, service, identification, provider, controller,
+                                                      metadata );
+        CapabilitiesCache.send( null, response, caps );
+    }
+
+    /**
+     * @param updateSequence
+     *            the requested update sequence, may be <code>null</code>
+     * @param service
+     *            never <code>null</code>
+     * @throws OWSException
+     *             if the requested update sequence is invalid or current
+     */
+    void checkUpdateSequence( String updateSequence, MapService service )
+                            throws OWSException {
         if ( updateSequence != null && updateSequence.trim().length() > 0 ) {
             try {
                 int seq = parseInt( updateSequence );
@@ -198,16 +218,49 @@ public abstract class WMSControllerBase implements Controller {
                                         OWSException.INVALID_UPDATE_SEQUENCE );
             }
         }
+    }
 
-        XMLOutputFactory factory = XMLOutputFactory.newInstance();
-        factory.setProperty( IS_REPAIRING_NAMESPACES, true );
-        exportCapas( getUrl, postUrl, service, response, identification, provider, controller, metadata );
+    /**
+     * Serializes the capabilities document, so it can be cached.
+     * 
+     * @return the serialized document, never <code>null</code>
+     * @throws IOException
+     */
+    CachedCapabilities exportCapabilities( String getUrl, String postUrl, MapService service,
+                                           ServiceIdentification identification, ServiceProvider provider,
+                                           WMSController controller, OWSMetadataProvider metadata )
+                            throws IOException {
+        getUrl = getUrl.substring( 0, getUrl.length() - 1 );
+        postUrl = postUrl.substring( 0, getUrl.length() - 1 );
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try {
+            XMLOutputFactory factory = XMLOutputFactory.newInstance();
+            XMLStreamWriter xmlWriter = new IndentingXMLStreamWriter( factory.createXMLStreamWriter( bos, "UTF-8" ) );
+            xmlWriter.writeStartDocument( "UTF-8", "1.0" );
+            exportCapas( getUrl, postUrl, service, xmlWriter, identification, provider, controller, metadata );
+            xmlWriter.close();
+        } catch ( XMLStreamException e ) {
+            throw new IOException( e );
+        }
+        return new CachedCapabilities( getCapabilitiesContentType(), getCapabilitiesHeaders(), bos.toByteArray() );
     }
 
-    protected abstract void exportCapas( String getUrl, String postUrl, MapService service,
-                                         HttpResponseBuffer response, ServiceIdentification identification,
-                                         ServiceProvider provider, WMSController controller,
-                                         OWSMetadataProvider metadata )
-                            throws IOException;
+    protected abstract void exportCapas( String getUrl, String postUrl, MapService service, XMLStreamWriter xmlWriter,
+                                         ServiceIdentification identification, ServiceProvider provider,
+                                         WMSController controller, OWSMetadataProvider metadata )
+                            throws XMLStreamException;
+
+    /**
+     * @return the mime type of the capabilities document, never <code>null</code>
+     */
+    protected abstract String getCapabilitiesContentType();
+
+    /**
+     * @return additional headers to send along with the capabilities document, never <code>null</code>
+     */
+    protected Map<String, String> getCapabilitiesHeaders() {
+        return Collections.emptyMap();
+    }
 
 }
@@ -0,0 +1,138 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.seeding;
+
+import static org.apache.commons.io.IOUtils.closeQuietly;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records finished metatiles in a file, so an interrupted {@link TileSeeder} run can be resumed.
+ * <p>
+ * The first line of the file identifies the seeding run (see {@link TileSeeder#getRunFingerprint}), a checkpoint file
+ * of a run with other themes, area or rendering parameters is rejected. It is followed by one line per finished
+ * metatile. Lines are appended and flushed as soon as a metatile has been stored completely, so the file stays usable
+ * if the process is killed.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+class SeedingCheckpoint {
+
+    private static final String RUN_PREFIX = "# run ";
+
+    private final Set<String> finished = Collections.synchronizedSet( new HashSet<String>() );
+
+    private final Writer writer;
+
+    /**
+     * @param file
+     *            checkpoint file, is created if it does not exist, must not be <code>null</code>
+     * @param run
+     *            fingerprint of the seeding run, must not be <code>null</code>
+     * @throws IOException
+     *             if the file cannot be accessed or belongs to a different seeding run
+     */
+    SeedingCheckpoint( File file, String run ) throws IOException {
+        boolean exists = file.exists() && file.length() > 0;
+        if ( exists ) {
+            BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+            try {
+                String line = reader.readLine();
+                if ( line == null || !line.trim().equals( RUN_PREFIX + run ) ) {
+                    throw new IOException( "The checkpoint file '" + file
+                                           + "' has been written by a seeding run with other themes, area or "
+                                           + "parameters. Delete it or use another checkpoint file." );
+                }
+                while ( ( line = reader.readLine() ) != null ) {
+                    line = line.trim();
+                    if ( !line.isEmpty() ) {
+                        finished.add( line );
+                    }
+                }
+            } finally {
+                closeQuietly( reader );
+            }
+        }
+        writer = new OutputStreamWriter( new FileOutputStream( file, true ), "UTF-8" );
+        if ( !exists ) {
+            writer.write( RUN_PREFIX + run );
+            writer.write( '\n' );
+            writer.flush();
+        }
+    }
+
+    static String getKey( String tileMatrix, int metatileSize, long metaX, long metaY ) {
+        return tileMatrix + "/" + metatileSize + "/" + metaX + "/" + metaY;
+    }
+
+    /**
+     * @return number of metatiles recorded as finished
+     */
+    int size() {
+        return finished.size();
+    }
+
+    boolean isFinished( String key ) {
+        return finished.contains( key );
+    }
+
+    synchronized void markFinished( String key )
+                            throws IOException {
+        if ( finished.add( key ) ) {
+            writer.write( key );
+            writer.write( '\n' );
+            writer.flush();
+        }
+    }
+
+    synchronized void close() {
+        closeQuietly( writer );
+    }
+
+}
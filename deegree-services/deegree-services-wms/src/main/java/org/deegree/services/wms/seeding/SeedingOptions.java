@@ -0,0 +1,263 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.seeding;
+
+import java.awt.Color;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.deegree.geometry.Geometry;
+
+/**
+ * Parameters of a {@link TileSeeder} run.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SeedingOptions {
+
+    private List<String> themes = new ArrayList<String>();
+
+    private List<String> styles;
+
+    private List<String> tileMatrices;
+
+    private Geometry area;
+
+    private int metatileSize = 8;
+
+    private int buffer = 0;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private File checkpointFile;
+
+    private boolean skipEmpty = true;
+
+    private boolean skipUniform = false;
+
+    private boolean transparent = true;
+
+    private Color bgColor = Color.WHITE;
+
+    /**
+     * @return names of the WMS themes to render, never <code>null</code>
+     */
+    public List<String> getThemes() {
+        return themes;
+    }
+
+    /**
+     * @param themes
+     *            names of the WMS themes to render (bottom to top), must not be <code>null</code>
+     */
+    public void setThemes( List<String> themes ) {
+        this.themes = themes;
+    }
+
+    /**
+     * @return names of the styles (one per theme), or <code>null</code> (default styles)
+     */
+    public List<String> getStyles() {
+        return styles;
+    }
+
+    /**
+     * @param styles
+     *            names of the styles (one per theme), can be <code>null</code> (default styles)
+     */
+    public void setStyles( List<String> styles ) {
+        this.styles = styles;
+    }
+
+    /**
+     * @return identifiers of the tile matrices to seed, or <code>null</code> (all)
+     */
+    public List<String> getTileMatrices() {
+        return tileMatrices;
+    }
+
+    /**
+     * @param tileMatrices
+     *            identifiers of the tile matrices to seed, can be <code>null</code> (all)
+     */
+    public void setTileMatrices( List<String> tileMatrices ) {
+        this.tileMatrices = tileMatrices;
+    }
+
+    /**
+     * @return area to seed, or <code>null</code> (extent of the tile matrix set)
+     */
+    public Geometry getArea() {
+        return area;
+    }
+
+    /**
+     * @param area
+     *            area to seed (an envelope or a polygon), can be <code>null</code> (extent of the tile matrix set),
+     *            geometries in a different CRS are transformed to the CRS of the tile matrix set
+     */
+    public void setArea( Geometry area ) {
+        this.area = area;
+    }
+
+    /**
+     * @return number of tiles along each axis of a metatile
+     */
+    public int getMetatileSize() {
+        return metatileSize;
+    }
+
+    /**
+     * @param metatileSize
+     *            number of tiles along each axis of a metatile (rendered by a single GetMap), must be positive
+     */
+    public void setMetatileSize( int metatileSize ) {
+        this.metatileSize = metatileSize;
+    }
+
+    /**
+     * @return number of pixels rendered around each metatile
+     */
+    public int getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @param buffer
+     *            number of pixels rendered around each metatile (and discarded), avoids cut off labels and symbols at
+     *            metatile borders, must not be negative
+     */
+    public void setBuffer( int buffer ) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return number of worker threads
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @param threads
+     *            number of worker threads, must be positive
+     */
+    public void setThreads( int threads ) {
+        this.threads = threads;
+    }
+
+    /**
+     * @return file for recording the progress, or <code>null</code>
+     */
+    public File getCheckpointFile() {
+        return checkpointFile;
+    }
+
+    /**
+     * @param checkpointFile
+     *            file for recording the progress, can be <code>null</code>; if the file exists, metatiles that are
+     *            recorded as finished are skipped, so an interrupted run can be resumed (the file must be deleted if
+     *            the other options change)
+     */
+    public void setCheckpointFile( File checkpointFile ) {
+        this.checkpointFile = checkpointFile;
+    }
+
+    /**
+     * @return <code>true</code>, if tiles without any content are not stored
+     */
+    public boolean isSkipEmpty() {
+        return skipEmpty;
+    }
+
+    /**
+     * @param skipEmpty
+     *            <code>true</code>, if tiles without any content (fully transparent or background color only) should
+     *            not be stored
+     */
+    public void setSkipEmpty( boolean skipEmpty ) {
+        this.skipEmpty = skipEmpty;
+    }
+
+    /**
+     * @return <code>true</code>, if tiles that consist of a single color are not stored
+     */
+    public boolean isSkipUniform() {
+        return skipUniform;
+    }
+
+    /**
+     * @param skipUniform
+     *            <code>true</code>, if tiles that consist of a single color should not be stored
+     */
+    public void setSkipUniform( boolean skipUniform ) {
+        this.skipUniform = skipUniform;
+    }
+
+    /**
+     * @return <code>true</code>, if the tiles are rendered with a transparent background
+     */
+    public boolean isTransparent() {
+        return transparent;
+    }
+
+    /**
+     * @param transparent
+     *            <code>true</code>, if the tiles should be rendered with a transparent background
+     */
+    public void setTransparent( boolean transparent ) {
+        this.transparent = transparent;
+    }
+
+    /**
+     * @return background color for non-transparent tiles, never <code>null</code>
+     */
+    public Color getBgColor() {
+        return bgColor;
+    }
+
+    /**
+     * @param bgColor
+     *            background color for non-transparent tiles, must not be <code>null</code>
+     */
+    public void setBgColor( Color bgColor ) {
+        this.bgColor = bgColor;
+    }
+
+}
@@ -0,0 +1,237 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.seeding;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and throughput figures of a {@link TileSeeder} run.
+ * <p>
+ * All figures may be queried while the run is in progress.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class SeedingStatistics {
+
+    private final long totalMetatiles;
+
+    private final long startTime = currentTimeMillis();
+
+    private volatile long endTime = -1;
+
+    private final AtomicLong metatilesRendered = new AtomicLong();
+
+    private final AtomicLong metatilesResumed = new AtomicLong();
+
+    private final AtomicLong metatilesOutside = new AtomicLong();
+
+    private final AtomicLong tilesWritten = new AtomicLong();
+
+    private final AtomicLong tilesEmpty = new AtomicLong();
+
+    private final AtomicLong tilesUniform = new AtomicLong();
+
+    private final AtomicLong tilesOutside = new AtomicLong();
+
+    private final AtomicLong renderNanos = new AtomicLong();
+
+    private final AtomicLong writeNanos = new AtomicLong();
+
+    SeedingStatistics( long totalMetatiles ) {
+        this.totalMetatiles = totalMetatiles;
+    }
+
+    void metatileRendered( long startNanos ) {
+        renderNanos.addAndGet( nanoTime() - startNanos );
+    }
+
+    void metatileFinished() {
+        metatilesRendered.incrementAndGet();
+    }
+
+    void metatileResumed() {
+        metatilesResumed.incrementAndGet();
+    }
+
+    void metatileOutside( long numTiles ) {
+        metatilesOutside.incrementAndGet();
+        tilesOutside.addAndGet( numTiles );
+    }
+
+    void tileWritten( long startNanos ) {
+        tilesWritten.incrementAndGet();
+        writeNanos.addAndGet( nanoTime() - startNanos );
+    }
+
+    void tileEmpty() {
+        tilesEmpty.incrementAndGet();
+    }
+
+    void tileUniform() {
+        tilesUniform.incrementAndGet();
+    }
+
+    void tileOutside() {
+        tilesOutside.incrementAndGet();
+    }
+
+    void finish() {
+        endTime = currentTimeMillis();
+    }
+
+    /**
+     * @return number of metatiles in the seeding area
+     */
+    public long getTotalMetatiles() {
+        return totalMetatiles;
+    }
+
+    /**
+     * @return number of metatiles that have been rendered
+     */
+    public long getMetatilesRendered() {
+        return metatilesRendered.get();
+    }
+
+    /**
+     * @return number of metatiles that have been skipped, because the checkpoint file recorded them as finished
+     */
+    public long getMetatilesResumed() {
+        return metatilesResumed.get();
+    }
+
+    /**
+     * @return number of metatiles that have been skipped, because they do not intersect the seeding area
+     */
+    public long getMetatilesOutside() {
+        return metatilesOutside.get();
+    }
+
+    /**
+     * @return number of tiles that have been stored
+     */
+    public long getTilesWritten() {
+        return tilesWritten.get();
+    }
+
+    /**
+     * @return number of tiles that have not been stored, because they are empty
+     */
+    public long getTilesEmpty() {
+        return tilesEmpty.get();
+    }
+
+    /**
+     * @return number of tiles that have not been stored, because they consist of a single color
+     */
+    public long getTilesUniform() {
+        return tilesUniform.get();
+    }
+
+    /**
+     * @return number of tiles that have not been stored, because they do not intersect the seeding area
+     */
+    public long getTilesOutside() {
+        return tilesOutside.get();
+    }
+
+    /**
+     * @return fraction of the metatiles that have been processed, between <code>0</code> and <code>1</code>
+     */
+    public double getProgress() {
+        if ( totalMetatiles == 0 ) {
+            return 1;
+        }
+        long done = metatilesRendered.get() + metatilesResumed.get() + metatilesOutside.get();
+        return Math.min( 1, (double) done / totalMetatiles );
+    }
+
+    /**
+     * @return milliseconds since the start of the run (or the duration of the run, if it has finished)
+     */
+    public long getElapsedMillis() {
+        long end = endTime;
+        return ( end < 0 ? currentTimeMillis() : end ) - startTime;
+    }
+
+    /**
+     * @return number of stored tiles per second
+     */
+    public double getTilesPerSecond() {
+        long elapsed = getElapsedMillis();
+        return elapsed == 0 ? 0 : tilesWritten.get() * 1000.0 / elapsed;
+    }
+
+    /**
+     * @return average rendering time of a metatile in milliseconds
+     */
+    public double getAverageRenderMillis() {
+        long rendered = metatilesRendered.get();
+        return rendered == 0 ? 0 : renderNanos.get() / 1000000.0 / rendered;
+    }
+
+    /**
+     * @return average time for storing a tile in milliseconds
+     */
+    public double getAverageWriteMillis() {
+        long written = tilesWritten.get();
+        return written == 0 ? 0 : writeNanos.get() / 1000000.0 / written;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append( String.format( "%.1f%% of %d metatiles", getProgress() * 100, totalMetatiles ) );
+        sb.append( " (rendered: " ).append( metatilesRendered.get() );
+        sb.append( ", resumed: " ).append( metatilesResumed.get() );
+        sb.append( ", outside: " ).append( metatilesOutside.get() ).append( ")" );
+        sb.append( ", tiles written: " ).append( tilesWritten.get() );
+        sb.append( ", empty: " ).append( tilesEmpty.get() );
+        sb.append( ", uniform: " ).append( tilesUniform.get() );
+        sb.append( ", outside: " ).append( tilesOutside.get() );
+        sb.append( String.format( ", %.1f tiles/s, %.1f ms/metatile, %.1f ms/tile write", getTilesPerSecond(),
+                                  getAverageRenderMillis(), getAverageWriteMillis() ) );
+        sb.append( ", elapsed: " ).append( getElapsedMillis() / 1000 ).append( " s" );
+        return sb.toString();
+    }
+
+}
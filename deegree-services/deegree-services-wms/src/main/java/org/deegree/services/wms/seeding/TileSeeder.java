@@ -0,0 +1,564 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.seeding;
+
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.imageio.ImageIO;
+
+import org.deegree.commons.ows.exception.OWSException;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.feature.FeatureCollection;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.GeometryTransformer;
+import org.deegree.geometry.io.WKTWriter;
+import org.deegree.layer.LayerRef;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.rendering.r2d.context.DefaultRenderContext;
+import org.deegree.rendering.r2d.context.RenderingInfo;
+import org.deegree.services.wms.MapService;
+import org.deegree.style.StyleRef;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileIOException;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.Tiles;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.slf4j.Logger;
+
+/**
+ * Pre-generates the tiles of a {@link TileStore} (e.g. a file system tile store) from WMS themes.
+ * <p>
+ * Tiles are rendered in metatiles: a block of n x n tiles is rendered by a single GetMap request through the
+ * {@link MapService} and then cut into the single tiles, which saves most of the per-request overhead (feature store
+ * queries, style evaluation) and avoids labels being cut at tile borders. Metatiles are processed in parallel by a
+ * configurable number of worker threads. Finished metatiles can be recorded in a checkpoint file, so an interrupted
+ * run can be resumed. See {@link SeedingOptions} for the available parameters.
+ * </p>
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileSeeder {
+
+    private static final Logger LOG = getLogger( TileSeeder.class );
+
+    private static final long PROGRESS_INTERVAL = 10000;
+
+    private static final GeometryFactory GEOM_FAC = new GeometryFactory();
+
+    private final MapService service;
+
+    private final TileStore store;
+
+    private final String tileDataSetId;
+
+    private final SeedingOptions options;
+
+    private final AtomicLong lastProgress = new AtomicLong( currentTimeMillis() );
+
+    /**
+     * Creates a new {@link TileSeeder} instance.
+     * 
+     * @param service
+     *            map service that renders the themes, must not be <code>null</code>
+     * @param store
+     *            tile store to write to, must not be <code>null</code>
+     * @param tileDataSetId
+     *            id of the tile data set to seed, must not be <code>null</code>
+     * @param options
+     *            seeding options, must not be <code>null</code>
+     */
+    public TileSeeder( MapService service, TileStore store, String tileDataSetId, SeedingOptions options ) {
+        this.service = service;
+        this.store = store;
+        this.tileDataSetId = tileDataSetId;
+        this.options = options;
+    }
+
+    /**
+     * Performs the seeding. Blocks until all tiles have been written (or an error occurred).
+     * 
+     * @return statistics of the run, never <code>null</code>
+     * @throws TileIOException
+     *             if rendering or storing a tile failed
+     * @throws IOException
+     *             if the checkpoint file cannot be accessed
+     * @throws InterruptedException
+     *             if the calling thread has been interrupted while waiting for the workers
+     */
+    public SeedingStatistics seed()
+                            throws TileIOException, IOException, InterruptedException {
+        TileDataSet tds = store.getTileDataSet( tileDataSetId );
+        if ( tds == null ) {
+            throw new IllegalArgumentException( "No tile data set with id '" + tileDataSetId + "'." );
+        }
+        checkOptions();
+        List<TileDataLevel> levels = getLevels( tds );
+        Geometry area = getArea( tds );
+        int n = options.getMetatileSize();
+
+        long total = 0;
+        List<long[]> ranges = new ArrayList<long[]>( levels.size() );
+        for ( TileDataLevel level : levels ) {
+            long[] range = Tiles.getTileIndexRange( level, area.getEnvelope() );
+            ranges.add( range );
+            if ( range != null ) {
+                total += ( range[2] / n - range[0] / n + 1 ) * ( range[3] / n - range[1] / n + 1 );
+            }
+        }
+
+        SeedingStatistics stats = new SeedingStatistics( total );
+        SeedingCheckpoint checkpoint = null;
+        if ( options.getCheckpointFile() != null ) {
+            String run = getRunFingerprint( tileDataSetId, tds.getNativeImageFormat(), area, options );
+            checkpoint = new SeedingCheckpoint( options.getCheckpointFile(), run );
+            LOG.info( "Resuming from checkpoint file '{}' ({} metatiles finished).", options.getCheckpointFile(),
+                      checkpoint.size() );
+        }
+        LOG.info( "Seeding {} metatiles of tile data set '{}' with {} threads.",
+                  new Object[] { total, tileDataSetId, options.getThreads() } );
+
+        TileStoreTransaction ta = store.acquireTransaction( tileDataSetId );
+        String format = tds.getNativeImageFormat();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        ThreadPoolExecutor executor = createExecutor();
+        try {
+            for ( int i = 0; i < levels.size() && failure.get() == null; i++ ) {
+                long[] range = ranges.get( i );
+                if ( range == null ) {
+                    continue;
+                }
+                TileMatrix matrix = levels.get( i ).getMetadata();
+                for ( long metaY = range[1] / n; metaY <= range[3] / n && failure.get() == null; metaY++ ) {
+                    for ( long metaX = range[0] / n; metaX <= range[2] / n && failure.get() == null; metaX++ ) {
+                        long x0 = Math.max( range[0], metaX * n );
+                        long y0 = Math.max( range[1], metaY * n );
+                        long x1 = Math.min( range[2], metaX * n + n - 1 );
+                        long y1 = Math.min( range[3], metaY * n + n - 1 );
+                        String key = SeedingCheckpoint.getKey( matrix.getIdentifier(), n, metaX, metaY );
+                        if ( checkpoint != null && checkpoint.isFinished( key ) ) {
+                            stats.metatileResumed();
+                            continue;
+                        }
+                        Metatile metatile = new Metatile( matrix, x0, y0, x1, y1, key );
+                        if ( !area.intersects( metatile.getEnvelope( 0 ) ) ) {
+                            stats.metatileOutside( metatile.getNumTiles() );
+                            continue;
+                        }
+                        executor.execute( new MetatileTask( metatile, ta, format, area, stats, checkpoint, failure ) );
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+            while ( !executor.awaitTermination( PROGRESS_INTERVAL, MILLISECONDS ) ) {
+                LOG.info( "Waiting for workers: {}", stats );
+            }
+            if ( checkpoint != null ) {
+                checkpoint.close();
+            }
+            stats.finish();
+        }
+
+        Throwable t = failure.get();
+        if ( t != null ) {
+            LOG.error( "Seeding failed: {}", stats );
+            if ( t instanceof TileIOException ) {
+                throw (TileIOException) t;
+            }
+            throw new TileIOException( "Seeding failed: " + t.getMessage(), t );
+        }
+        LOG.info( "Seeding finished: {}", stats );
+        return stats;
+    }
+
+    private void checkOptions() {
+        if ( options.getThemes() == null || options.getThemes().isEmpty() ) {
+            throw new IllegalArgumentException( "No themes to render specified." );
+        }
+        for ( String theme : options.getThemes() ) {
+            if ( !service.hasTheme( theme ) ) {
+                throw new IllegalArgumentException( "The theme '" + theme + "' is not defined." );
+            }
+        }
+        if ( options.getStyles() != null && options.getStyles().size() != options.getThemes().size() ) {
+            throw new IllegalArgumentException( "The number of styles does not match the number of themes." );
+        }
+        if ( options.getMetatileSize() < 1 || options.getThreads() < 1 || options.getBuffer() < 0 ) {
+            throw new IllegalArgumentException( "Invalid metatile size, number of threads or buffer." );
+        }
+    }
+
+    private List<TileDataLevel> getLevels( TileDataSet tds ) {
+        if ( options.getTileMatrices() == null ) {
+            return tds.getTileDataLevels();
+        }
+        List<TileDataLevel> levels = new ArrayList<TileDataLevel>();
+        for ( String id : options.getTileMatrices() ) {
+            TileDataLevel level = tds.getTileDataLevel( id );
+            if ( level == null ) {
+                throw new IllegalArgumentException( "No tile matrix with id '" + id + "' in tile data set '"
+                                                    + tileDataSetId + "'." );
+            }
+            levels.add( level );
+        }
+        return levels;
+    }
+
+    private Geometry getArea( TileDataSet tds )
+                            throws TileIOException {
+        Envelope tmsEnvelope = tds.getTileMatrixSet().getSpatialMetadata().getEnvelope();
+        Geometry area = options.getArea();
+        if ( area == null ) {
+            return tmsEnvelope;
+        }
+        ICRS crs = tmsEnvelope.getCoordinateSystem();
+        if ( crs != null && area.getCoordinateSystem() != null && !crs.equals( area.getCoordinateSystem() ) ) {
+            try {
+                area = new GeometryTransformer( crs ).transform( area );
+            } catch ( Exception e ) {
+                throw new TileIOException( "Unable to transform the seeding area: " + e.getMessage(), e );
+            }
+        }
+        return area;
+    }
+
+    /**
+     * Identifies a seeding run by everything that determines the content of the tiles, except the tile matrices (the
+     * checkpoint keys contain the tile matrix identifier, so a run can be continued with other tile matrices).
+     * 
+     * @return hex encoded MD5 hash, never <code>null</code>
+     */
+    static String getRunFingerprint( String tileDataSetId, String format, Geometry area, SeedingOptions options ) {
+        StringBuilder sb = new StringBuilder();
+        sb.append( tileDataSetId ).append( '|' ).append( format );
+        sb.append( '|' ).append( options.getThemes() ).append( '|' ).append( options.getStyles() );
+        sb.append( '|' ).append( options.getMetatileSize() ).append( '|' ).append( options.getBuffer() );
+        sb.append( '|' ).append( options.isTransparent() ).append( '|' ).append( options.getBgColor().getRGB() );
+        sb.append( '|' ).append( options.isSkipEmpty() ).append( '|' ).append( options.isSkipUniform() );
+        sb.append( '|' ).append( WKTWriter.write( area ) );
+        try {
+            byte[] digest = MessageDigest.getInstance( "MD5" ).digest( sb.toString().getBytes( "UTF-8" ) );
+            StringBuilder hex = new StringBuilder( digest.length * 2 );
+            for ( byte b : digest ) {
+                hex.append( Character.forDigit( ( b >> 4 ) & 0xf, 16 ) );
+                hex.append( Character.forDigit( b & 0xf, 16 ) );
+            }
+            return hex.toString();
+        } catch ( Exception e ) {
+            // MD5 and UTF-8 are guaranteed to be available
+            throw new IllegalStateException( e );
+        }
+    }
+
+    private ThreadPoolExecutor createExecutor() {
+        int threads = options.getThreads();
+        ThreadFactory factory = new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "tile-seeder-" + count.incrementAndGet() );
+                t.setDaemon( true );
+                return t;
+            }
+        };
+        // bounded queue: the submitting thread renders itself instead of queuing up the complete pyramid
+        ArrayBlockingQueue<Runnable> queue = new ArrayBlockingQueue<Runnable>( threads * 2 );
+        return new ThreadPoolExecutor( threads, threads, 0, MILLISECONDS, queue, factory, new CallerRunsPolicy() );
+    }
+
+    private BufferedImage render( Metatile metatile, String format )
+                            throws OWSException, IOException {
+        int buffer = options.getBuffer();
+        int width = metatile.getWidth() + 2 * buffer;
+        int height = metatile.getHeight() + 2 * buffer;
+        Envelope env = metatile.getEnvelope( buffer );
+
+        List<LayerRef> layers = new ArrayList<LayerRef>();
+        List<StyleRef> styles = new ArrayList<StyleRef>();
+        for ( int i = 0; i < options.getThemes().size(); i++ ) {
+            layers.add( new LayerRef( options.getThemes().get( i ) ) );
+            styles.add( new StyleRef( options.getStyles() == null ? "default" : options.getStyles().get( i ) ) );
+        }
+        GetMap gm = new GetMap( layers, styles, width, height, env, service.getExtensions() );
+        RenderingInfo info = new RenderingInfo( format, width, height, options.isTransparent(), options.getBgColor(),
+                                                env, gm.getPixelSize(), new HashMap<String, String>() );
+        DefaultRenderContext ctx = new DefaultRenderContext( info );
+        List<String> headers = new ArrayList<String>();
+        service.getMap( gm, headers, ctx );
+        ctx.close();
+        for ( String header : headers ) {
+            LOG.debug( "Warning while rendering metatile {}: {}", metatile.key, header );
+        }
+        return ctx.getImage();
+    }
+
+    private void seed( Metatile metatile, TileStoreTransaction ta, String format, Geometry area,
+                       SeedingStatistics stats )
+                            throws OWSException, IOException {
+        long start = nanoTime();
+        BufferedImage image = render( metatile, format );
+        stats.metatileRendered( start );
+
+        TileMatrix matrix = metatile.matrix;
+        int tileWidth = (int) matrix.getTilePixelsX();
+        int tileHeight = (int) matrix.getTilePixelsY();
+        int buffer = options.getBuffer();
+        int emptyRgb = options.isTransparent() ? 0 : options.getBgColor().getRGB();
+        for ( long y = metatile.y0; y <= metatile.y1; y++ ) {
+            for ( long x = metatile.x0; x <= metatile.x1; x++ ) {
+                Envelope tileEnv = Tiles.calcTileEnvelope( matrix, x, y );
+                if ( area != null && !area.intersects( tileEnv ) ) {
+                    stats.tileOutside();
+                    continue;
+                }
+                BufferedImage tile = image.getSubimage( buffer + (int) ( x - metatile.x0 ) * tileWidth,
+                                                        buffer + (int) ( y - metatile.y0 ) * tileHeight, tileWidth,
+                                                        tileHeight );
+                if ( options.isSkipEmpty() || options.isSkipUniform() ) {
+                    Integer rgb = getUniformColor( tile );
+                    if ( rgb != null ) {
+                        boolean empty = options.isTransparent() ? ( rgb >>> 24 ) == 0 : rgb == emptyRgb;
+                        if ( empty && options.isSkipEmpty() ) {
+                            stats.tileEmpty();
+                            continue;
+                        }
+                        if ( options.isSkipUniform() ) {
+                            stats.tileUniform();
+                            continue;
+                        }
+                    }
+                }
+                long writeStart = nanoTime();
+                ta.put( matrix.getIdentifier(), new RenderedTile( tile, tileEnv, format ), x, y );
+                stats.tileWritten( writeStart );
+            }
+        }
+    }
+
+    /**
+     * Returns the single ARGB color of the given image.
+     * 
+     * @return the color, or <code>null</code> if the image contains different colors
+     */
+    static Integer getUniformColor( BufferedImage img ) {
+        int width = img.getWidth();
+        int[] row = new int[width];
+        int first = img.getRGB( 0, 0 );
+        boolean transparent = ( first >>> 24 ) == 0;
+        for ( int y = 0; y < img.getHeight(); y++ ) {
+            img.getRGB( 0, y, width, 1, row, 0, width );
+            for ( int x = 0; x < width; x++ ) {
+                // the color of fully transparent pixels does not matter
+                if ( row[x] != first && !( transparent && ( row[x] >>> 24 ) == 0 ) ) {
+                    return null;
+                }
+            }
+        }
+        return transparent ? 0 : first;
+    }
+
+    private void logProgress( SeedingStatistics stats ) {
+        long last = lastProgress.get();
+        long now = currentTimeMillis();
+        if ( now - last >= PROGRESS_INTERVAL && lastProgress.compareAndSet( last, now ) ) {
+            LOG.info( "Seeding progress: {}", stats );
+        }
+    }
+
+    private class MetatileTask implements Runnable {
+
+        private final Metatile metatile;
+
+        private final TileStoreTransaction ta;
+
+        private final String format;
+
+        private final Geometry area;
+
+        private final SeedingStatistics stats;
+
+        private final SeedingCheckpoint checkpoint;
+
+        private final AtomicReference<Throwable> failure;
+
+        MetatileTask( Metatile metatile, TileStoreTransaction ta, String format, Geometry area,
+                      SeedingStatistics stats, SeedingCheckpoint checkpoint, AtomicReference<Throwable> failure ) {
+            this.metatile = metatile;
+            this.ta = ta;
+            this.format = format;
+            this.area = area;
+            this.stats = stats;
+            this.checkpoint = checkpoint;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            if ( failure.get() != null ) {
+                return;
+            }
+            try {
+                seed( metatile, ta, format, area, stats );
+                if ( checkpoint != null ) {
+                    checkpoint.markFinished( metatile.key );
+                }
+                stats.metatileFinished();
+                logProgress( stats );
+            } catch ( Throwable t ) {
+                LOG.debug( "Stack trace:", t );
+                LOG.error( "Seeding of metatile {} failed: {}", metatile.key, t.getMessage() );
+                failure.compareAndSet( null, t );
+            }
+        }
+    }
+
+    private static class Metatile {
+
+        private final TileMatrix matrix;
+
+        private final long x0, y0, x1, y1;
+
+        private final String key;
+
+        Metatile( TileMatrix matrix, long x0, long y0, long x1, long y1, String key ) {
+            this.matrix = matrix;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+            this.key = key;
+        }
+
+        long getNumTiles() {
+            return ( x1 - x0 + 1 ) * ( y1 - y0 + 1 );
+        }
+
+        int getWidth() {
+            return (int) ( ( x1 - x0 + 1 ) * matrix.getTilePixelsX() );
+        }
+
+        int getHeight() {
+            return (int) ( ( y1 - y0 + 1 ) * matrix.getTilePixelsY() );
+        }
+
+        Envelope getEnvelope( int bufferPixels ) {
+            Envelope upperLeft = Tiles.calcTileEnvelope( matrix, x0, y0 );
+            Envelope lowerRight = Tiles.calcTileEnvelope( matrix, x1, y1 );
+            double bufferX = bufferPixels * matrix.getTileWidth() / matrix.getTilePixelsX();
+            double bufferY = bufferPixels * matrix.getTileHeight() / matrix.getTilePixelsY();
+            return GEOM_FAC.createEnvelope( upperLeft.getMin().get0() - bufferX, lowerRight.getMin().get1() - bufferY,
+                                            lowerRight.getMax().get0() + bufferX, upperLeft.getMax().get1() + bufferY,
+                                            upperLeft.getCoordinateSystem() );
+        }
+    }
+
+    private static class RenderedTile implements Tile {
+
+        private final BufferedImage image;
+
+        private final Envelope envelope;
+
+        private final String format;
+
+        RenderedTile( BufferedImage image, Envelope envelope, String format ) {
+            this.image = image;
+            this.envelope = envelope;
+            this.format = format;
+        }
+
+        @Override
+        public BufferedImage getAsImage()
+                                throws TileIOException {
+            return image;
+        }
+
+        @Override
+        public InputStream getAsStream()
+                                throws TileIOException {
+            String formatName = format.substring( format.indexOf( '/' ) + 1 );
+            if ( formatName.indexOf( ';' ) != -1 ) {
+                formatName = formatName.substring( 0, formatName.indexOf( ';' ) );
+            }
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            try {
+                ImageIO.write( image, formatName, bos );
+            } catch ( IOException e ) {
+                throw new TileIOException( "Error encoding tile: " + e.getMessage(), e );
+            }
+            return new ByteArrayInputStream( bos.toByteArray() );
+        }
+
+        @Override
+        public Envelope getEnvelope() {
+            return envelope;
+        }
+
+        @Override
+        public FeatureCollection getFeatures( int i, int j, int limit )
+                                throws UnsupportedOperationException {
+            throw new UnsupportedOperationException( "Feature retrieval is not supported for seeded tiles." );
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wms.seeding;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Envelope;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.metadata.SpatialMetadata;
+import org.deegree.protocol.wms.ops.GetMap;
+import org.deegree.rendering.r2d.context.RenderContext;
+import org.deegree.services.wms.MapService;
+import org.deegree.tile.Tile;
+import org.deegree.tile.TileDataLevel;
+import org.deegree.tile.TileDataSet;
+import org.deegree.tile.TileMatrix;
+import org.deegree.tile.TileMatrixSet;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Tests for {@link TileSeeder}, using a map service which renders every tile of a metatile in its own color.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileSeederTest {
+
+    private static final int TILE_SIZE = 16;
+
+    // 4 x 4 tiles of 16 x 16 pixels with a resolution of 1
+    private static final double EXTENT = 64;
+
+    private static final Color BUFFER_COLOR = Color.RED;
+
+    private final GeometryFactory fac = new GeometryFactory();
+
+    private final List<GetMap> requests = Collections.synchronizedList( new ArrayList<GetMap>() );
+
+    private final Map<String, Tile> tiles = new ConcurrentHashMap<String, Tile>();
+
+    private ICRS crs;
+
+    private MapService service;
+
+    private TileStore store;
+
+    private File checkpointFile;
+
+    @Before
+    public void setUp()
+                            throws Exception {
+        crs = CRSManager.getCRSRef( "EPSG:25832" );
+        Envelope env = fac.createEnvelope( 0, 0, EXTENT, EXTENT, crs );
+        SpatialMetadata smd = new SpatialMetadata( env, Collections.singletonList( crs ) );
+        final TileMatrix matrix = new TileMatrix( "0", smd, TILE_SIZE, TILE_SIZE, 1, 4, 4 );
+        TileMatrixSet tms = new TileMatrixSet( "tms", null, Collections.singletonList( matrix ), smd, null );
+
+        TileDataLevel level = mock( TileDataLevel.class );
+        when( level.getMetadata() ).thenReturn( matrix );
+        TileDataSet tds = mock( TileDataSet.class );
+        when( tds.getTileDataLevels() ).thenReturn( Collections.singletonList( level ) );
+        when( tds.getTileDataLevel( "0" ) ).thenReturn( level );
+        when( tds.getTileMatrixSet() ).thenReturn( tms );
+        when( tds.getNativeImageFormat() ).thenReturn( "image/png" );
+
+        TileStoreTransaction ta = mock( TileStoreTransaction.class );
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( InvocationOnMock invocation ) {
+                Object[] args = invocation.getArguments();
+                tiles.put( args[2] + "/" + args[3], (Tile) args[1] );
+                return null;
+            }
+        } ).when( ta ).put( anyString(), any( Tile.class ), anyLong(), anyLong() );
+        store = mock( TileStore.class );
+        when( store.getTileDataSet( "tds" ) ).thenReturn( tds );
+        when( store.acquireTransaction( "tds" ) ).thenReturn( ta );
+
+        service = mock( MapService.class );
+        when( service.hasTheme( "theme" ) ).thenReturn( true );
+        doAnswer( new Answer<Void>() {
+            @Override
+            public Void answer( InvocationOnMock invocation ) {
+                GetMap gm = (GetMap) invocation.getArguments()[0];
+                requests.add( gm );
+                ( (RenderContext) invocation.getArguments()[2] ).paintImage( paintMetatile( gm ) );
+                return null;
+            }
+        } ).when( service ).getMap( any( GetMap.class ), anyListOf( String.class ), any( RenderContext.class ) );
+
+        checkpointFile = File.createTempFile( "seeding", ".checkpoint" );
+        checkpointFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        checkpointFile.delete();
+    }
+
+    /**
+     * Paints the buffer in {@link #BUFFER_COLOR} and every tile in {@link #getTileColor(long, long)}, derived from the
+     * bbox of the request.
+     */
+    private BufferedImage paintMetatile( GetMap gm ) {
+        BufferedImage img = new BufferedImage( gm.getWidth(), gm.getHeight(), BufferedImage.TYPE_INT_ARGB );
+        Graphics2D g = img.createGraphics();
+        g.setColor( BUFFER_COLOR );
+        g.fillRect( 0, 0, gm.getWidth(), gm.getHeight() );
+        double minX = gm.getBoundingBox().getMin().get0();
+        double maxY = gm.getBoundingBox().getMax().get1();
+        for ( int x = 0; x < EXTENT / TILE_SIZE; x++ ) {
+            for ( int y = 0; y < EXTENT / TILE_SIZE; y++ ) {
+                int px = (int) Math.round( x * TILE_SIZE - minX );
+                int py = (int) Math.round( maxY - ( EXTENT - y * TILE_SIZE ) );
+                if ( px >= 0 && py >= 0 && px + TILE_SIZE <= gm.getWidth() && py + TILE_SIZE <= gm.getHeight() ) {
+                    g.setColor( getTileColor( x, y ) );
+                    g.fillRect( px, py, TILE_SIZE, TILE_SIZE );
+                }
+            }
+        }
+        g.dispose();
+        return img;
+    }
+
+    private static Color getTileColor( long x, long y ) {
+        return new Color( 0, 100 + (int) x * 40, 100 + (int) y * 40 );
+    }
+
+    private SeedingOptions createOptions() {
+        SeedingOptions options = new SeedingOptions();
+        options.setThemes( Collections.singletonList( "theme" ) );
+        options.setMetatileSize( 2 );
+        options.setThreads( 2 );
+        options.setSkipEmpty( false );
+        return options;
+    }
+
+    private SeedingStatistics seed( SeedingOptions options )
+                            throws Exception {
+        return new TileSeeder( service, store, "tds", options ).seed();
+    }
+
+    private void assertTile( long x, long y )
+                            throws Exception {
+        Tile tile = tiles.get( x + "/" + y );
+        if ( tile == null ) {
+            fail( "Tile " + x + "/" + y + " has not been written." );
+        }
+        BufferedImage img = tile.getAsImage();
+        assertEquals( TILE_SIZE, img.getWidth() );
+        assertEquals( TILE_SIZE, img.getHeight() );
+        Integer rgb = TileSeeder.getUniformColor( img );
+        assertEquals( "Color of tile " + x + "/" + y, (Integer) getTileColor( x, y ).getRGB(), rgb );
+    }
+
+    @Test
+    public void testMetatileCuttingWithBuffer()
+                            throws Exception {
+        SeedingOptions options = createOptions();
+        options.setBuffer( 5 );
+        SeedingStatistics stats = seed( options );
+
+        assertEquals( 4, requests.size() );
+        for ( GetMap gm : requests ) {
+            assertEquals( 2 * TILE_SIZE + 10, gm.getWidth() );
+            assertEquals( 2 * TILE_SIZE + 10, gm.getHeight() );
+            assertEquals( 2 * TILE_SIZE + 10, gm.getBoundingBox().getSpan0(), 1e-9 );
+        }
+        assertEquals( 16, tiles.size() );
+        for ( long x = 0; x < 4; x++ ) {
+            for ( long y = 0; y < 4; y++ ) {
+                assertTile( x, y );
+            }
+        }
+        assertEquals( 4, stats.getMetatilesRendered() );
+        assertEquals( 16, stats.getTilesWritten() );
+    }
+
+    @Test
+    public void testAreaClipping()
+                            throws Exception {
+        SeedingOptions options = createOptions();
+        // covers the inner 2 x 2 tiles
+        options.setArea( fac.createEnvelope( 20, 20, 44, 44, crs ) );
+        SeedingStatistics stats = seed( options );
+
+        assertEquals( 4, tiles.size() );
+        assertTile( 1, 1 );
+        assertTile( 1, 2 );
+        assertTile( 2, 1 );
+        assertTile( 2, 2 );
+        assertEquals( 4, stats.getTilesWritten() );
+    }
+
+    @Test
+    public void testSkipUniform()
+                            throws Exception {
+        SeedingOptions options = createOptions();
+        options.setSkipUniform( true );
+        SeedingStatistics stats = seed( options );
+        assertEquals( 0, tiles.size() );
+        assertEquals( 16, stats.getTilesUniform() );
+    }
+
+    @Test
+    public void testCheckpointResume()
+                            throws Exception {
+        SeedingOptions options = createOptions();
+        options.setCheckpointFile( checkpointFile );
+        Envelope area = fac.createEnvelope( 0, 0, EXTENT, EXTENT, crs );
+        String run = TileSeeder.getRunFingerprint( "tds", "image/png", area, options );
+        // a previous run finished the upper left metatile
+        Writer writer = new OutputStreamWriter( new FileOutputStream( checkpointFile ), "UTF-8" );
+        writer.write( "# run " + run + "\n" + SeedingCheckpoint.getKey( "0", 2, 0, 0 ) + "\n" );
+        writer.close();
+
+        SeedingStatistics stats = seed( options );
+        assertEquals( 1, stats.getMetatilesResumed() );
+        assertEquals( 3, stats.getMetatilesRendered() );
+        assertEquals( 12, tiles.size() );
+        assertNull( tiles.get( "0/0" ) );
+        assertTile( 3, 3 );
+
+        // all metatiles are finished now
+        requests.clear();
+        stats = seed( options );
+        assertEquals( 4, stats.getMetatilesResumed() );
+        assertTrue( requests.isEmpty() );
+    }
+
+    @Test
+    public void testCheckpointOfOtherRunIsRejected()
+                            throws Exception {
+        SeedingOptions options = createOptions();
+        options.setCheckpointFile( checkpointFile );
+        seed( options );
+
+        options.setArea( fac.createEnvelope( 20, 20, 44, 44, crs ) );
+        try {
+            seed( options );
+            fail( "A checkpoint file of a run with another area must not be used." );
+        } catch ( IOException e ) {
+            // expected
+        }
+        options.setArea( null );
+        options.setBuffer( 5 );
+        try {
+            seed( options );
+            fail( "A checkpoint file of a run with another buffer must not be used." );
+        } catch ( IOException e ) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testGetUniformColor() {
+        BufferedImage img = new BufferedImage( 4, 4, BufferedImage.TYPE_INT_ARGB );
+        // fully transparent pixels with different colors count as one color
+        img.setRGB( 0, 0, 0x00ff0000 );
+        img.setRGB( 1, 0, 0x0000ff00 );
+        assertEquals( (Integer) 0, TileSeeder.getUniformColor( img ) );
+
+        Graphics2D g = img.createGraphics();
+        g.setColor( Color.BLUE );
+        g.fillRect( 0, 0, 4, 4 );
+        g.dispose();
+        assertEquals( (Integer) Color.BLUE.getRGB(), TileSeeder.getUniformColor( img ) );
+
+        img.setRGB( 3, 3, Color.GREEN.getRGB() );
+        assertNull( TileSeeder.getUniformColor( img ) );
+
+        // a half transparent pixel differs from a fully transparent one
+        img = new BufferedImage( 4, 4, BufferedImage.TYPE_INT_ARGB );
+        img.setRGB( 2, 2, 0x80ff0000 );
+        assertNull( TileSeeder.getUniformColor( img ) );
+    }
+
+}
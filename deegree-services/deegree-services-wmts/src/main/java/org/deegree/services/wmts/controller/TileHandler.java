@@ -41,17 +41,25 @@
 
 package org.deegree.services.wmts.controller;
 
+import static javax.servlet.http.HttpServletResponse.SC_NOT_MODIFIED;
 import static org.apache.commons.io.IOUtils.closeQuietly;
 import static org.apache.commons.io.IOUtils.copy;
 import static org.deegree.commons.ows.exception.OWSException.INVALID_PARAMETER_VALUE;
 import static org.deegree.commons.ows.exception.OWSException.NO_APPLICABLE_CODE;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.layer.Layer;
@@ -60,12 +68,21 @@ import org.deegree.protocol.wmts.ops.GetTile;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.theme.Theme;
 import org.deegree.theme.Themes;
+import org.deegree.tile.CacheableTile;
+import org.deegree.tile.FileBackedTile;
 import org.deegree.tile.Tile;
 import org.deegree.tile.TileDataLevel;
 import org.deegree.tile.TileDataSet;
 
 /**
  * Responsible for handling GetTile requests.
+ * <p>
+ * Tiles that provide validators ({@link CacheableTile}) are sent with <code>ETag</code> and <code>Last-Modified</code>
+ * headers, conditional requests (<code>If-None-Match</code>, <code>If-Modified-Since</code>) are answered with
+ * <code>304 Not Modified</code> without accessing the tile data. Tiles that are stored in files
+ * ({@link FileBackedTile}) are transferred using sendfile (if supported by the servlet container) or file channel
+ * transfers.
+ * </p>
  * 
  * @author <a href="mailto:schmitz@occamlabs.de">Andreas Schmitz</a>
  * @author last edited by: $Author: mschneider $
@@ -88,13 +105,13 @@ class TileHandler {
         }
     }
 
-    void getTile( Map<String, String> map, HttpResponseBuffer response )
+    void getTile( Map<String, String> map, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         GetTile op = new GetTile( map );
-        getTile( op, response );
+        getTile( op, request, response );
     }
 
-    private void getTile( GetTile op, HttpResponseBuffer response )
+    private void getTile( GetTile op, HttpServletRequest request, HttpResponseBuffer response )
                             throws OWSException, ServletException {
         TileLayer layer = layers.get( op.getLayer() );
         if ( layer == null ) {
@@ -128,6 +145,17 @@ class TileHandler {
 
         InputStream in = null;
         try {
+            if ( layer.getCacheMaxAge() >= 0 ) {
+                response.setHeader( "Cache-Control", "max-age=" + layer.getCacheMaxAge() );
+            }
+            if ( t instanceof CacheableTile && !writeValidators( (CacheableTile) t, request, response ) ) {
+                response.setStatus( SC_NOT_MODIFIED );
+                return;
+            }
+            response.setContentType( format );
+            if ( t instanceof FileBackedTile && sendFile( (FileBackedTile) t, request, response ) ) {
+                return;
+            }
             in = t.getAsStream();
             if ( in == null ) {
                 throw new OWSException( "Tile yielded no data.", NO_APPLICABLE_CODE );
@@ -140,4 +168,91 @@ class TileHandler {
         }
     }
 
+    /**
+     * Sets the validator headers of the tile.
+     * 
+     * @return <code>false</code>, if the client already has the current version of the tile (according to the
+     *         conditional request headers), <code>true</code> otherwise
+     */
+    static boolean writeValidators( CacheableTile tile, HttpServletRequest request, HttpResponseBuffer response ) {
+        String etag = tile.getETag();
+        long lastModified = tile.getLastModified();
+        if ( etag != null ) {
+            response.setHeader( "ETag", "\"" + etag + "\"" );
+        }
+        if ( lastModified >= 0 ) {
+            response.setDateHeader( "Last-Modified", lastModified );
+        }
+
+        String ifNoneMatch = request.getHeader( "If-None-Match" );
+        if ( ifNoneMatch != null ) {
+            // If-Modified-Since must be ignored if If-None-Match is present
+            if ( etag == null ) {
+                return true;
+            }
+            for ( String tag : ifNoneMatch.split( "," ) ) {
+                tag = tag.trim();
+                if ( tag.startsWith( "W/" ) ) {
+                    tag = tag.substring( 2 );
+                }
+                if ( tag.equals( "*" ) || tag.equals( "\"" + etag + "\"" ) ) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if ( lastModified < 0 ) {
+            return true;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader( "If-Modified-Since" );
+        } catch ( IllegalArgumentException e ) {
+            return true;
+        }
+        // HTTP dates have a resolution of one second
+        return ifModifiedSince < 0 || lastModified / 1000 > ifModifiedSince / 1000;
+    }
+
+    /**
+     * Transfers the tile directly from its file, without buffering the response.
+     * 
+     * @return <code>true</code>, if the tile has been sent, <code>false</code> if it has to be sent as stream
+     */
+    static boolean sendFile( FileBackedTile tile, HttpServletRequest request, HttpResponseBuffer response )
+                            throws IOException {
+        File file = tile.getFile();
+        long offset = tile.getOffset();
+        long length = tile.getLength();
+        if ( length <= 0 || length > Integer.MAX_VALUE || !file.isFile() ) {
+            return false;
+        }
+        response.disableBuffering();
+        response.setContentLength( (int) length );
+        if ( Boolean.TRUE.equals( request.getAttribute( "org.apache.tomcat.sendfile.support" ) ) ) {
+            // the container sends the file after the request has been processed
+            request.setAttribute( "org.apache.tomcat.sendfile.filename", file.getCanonicalPath() );
+            request.setAttribute( "org.apache.tomcat.sendfile.start", offset );
+            request.setAttribute( "org.apache.tomcat.sendfile.end", offset + length );
+            return true;
+        }
+        FileInputStream in = new FileInputStream( file );
+        try {
+            FileChannel channel = in.getChannel();
+            WritableByteChannel out = Channels.newChannel( response.getOutputStream() );
+            long position = offset;
+            long end = offset + length;
+            while ( position < end ) {
+                long transferred = channel.transferTo( position, end - position, out );
+                if ( transferred <= 0 ) {
+                    throw new IOException( "Unexpected end of tile file " + file );
+                }
+                position += transferred;
+            }
+        } finally {
+            closeQuietly( in );
+        }
+        return true;
+    }
+
 }
@@ -47,6 +47,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.util.Map;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 
 import org.deegree.commons.ows.exception.OWSException;
 import org.deegree.commons.tom.ows.Version;
@@ -86,7 +87,8 @@ class WmtsRequestDispatcher {
         tileHandler = new TileHandler( builder.getThemes() );
     }
 
-    void handleRequest( WMTSRequestType req, HttpResponseBuffer response, Map<String, String> map, Version version )
+    void handleRequest( WMTSRequestType req, HttpServletRequest request, HttpResponseBuffer response,
+                        Map<String, String> map, Version version )
                             throws OWSException, ServletException {
         switch ( req ) {
         case GetCapabilities:
@@ -109,7 +111,7 @@ class WmtsRequestDispatcher {
             }
             break;
         case GetTile:
-            tileHandler.getTile( map, response );
+            tileHandler.getTile( map, request, response );
             break;
         }
     }
@@ -0,0 +1,217 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2012 by:
+ - Department of Geography, University of Bonn -
+ and
+ - lat/lon GmbH -
+ and
+ - Occam Labs UG (haftungsbeschränkt) -
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ Occam Labs UG (haftungsbeschränkt)
+ Godesberger Allee 139, 53175 Bonn
+ Germany
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+
+package org.deegree.services.wmts.controller;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.deegree.services.controller.utils.HttpResponseBuffer;
+import org.deegree.tile.CacheableTile;
+import org.deegree.tile.FileBackedTile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the validator and sendfile handling of {@link TileHandler}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class TileHandlerTest {
+
+    private static final long LAST_MODIFIED = 1356998400500L;
+
+    private HttpServletRequest request;
+
+    private HttpServletResponse wrappee;
+
+    private HttpResponseBuffer response;
+
+    private File file;
+
+    @Before
+    public void setUp()
+                            throws IOException {
+        request = mock( HttpServletRequest.class );
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( -1L );
+        wrappee = mock( HttpServletResponse.class );
+        response = new HttpResponseBuffer( wrappee );
+        file = File.createTempFile( "tile", ".bin" );
+        FileOutputStream out = new FileOutputStream( file );
+        out.write( new byte[] { 0, 1, 2, 3, 4, 5, 6, 7 } );
+        out.close();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static CacheableTile createTile( String etag, long lastModified ) {
+        CacheableTile tile = mock( CacheableTile.class );
+        when( tile.getETag() ).thenReturn( etag );
+        when( tile.getLastModified() ).thenReturn( lastModified );
+        return tile;
+    }
+
+    private FileBackedTile createFileTile( long offset, long length ) {
+        FileBackedTile tile = mock( FileBackedTile.class );
+        when( tile.getFile() ).thenReturn( file );
+        when( tile.getOffset() ).thenReturn( offset );
+        when( tile.getLength() ).thenReturn( length );
+        return tile;
+    }
+
+    @Test
+    public void testValidatorHeaders() {
+        assertTrue( TileHandler.writeValidators( createTile( "abc", LAST_MODIFIED ), request, response ) );
+        verify( wrappee ).setHeader( "ETag", "\"abc\"" );
+        verify( wrappee ).setDateHeader( "Last-Modified", LAST_MODIFIED );
+    }
+
+    @Test
+    public void testNoValidators() {
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "*" );
+        assertTrue( TileHandler.writeValidators( createTile( null, -1 ), request, response ) );
+        verify( wrappee, never() ).setHeader( anyString(), anyString() );
+    }
+
+    @Test
+    public void testIfNoneMatch() {
+        CacheableTile tile = createTile( "abc", LAST_MODIFIED );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"abc\"" );
+        assertFalse( TileHandler.writeValidators( tile, request, response ) );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"xyz\", W/\"abc\"" );
+        assertFalse( TileHandler.writeValidators( tile, request, response ) );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "*" );
+        assertFalse( TileHandler.writeValidators( tile, request, response ) );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"xyz\"" );
+        assertTrue( TileHandler.writeValidators( tile, request, response ) );
+    }
+
+    @Test
+    public void testIfNoneMatchOverridesIfModifiedSince() {
+        CacheableTile tile = createTile( "abc", LAST_MODIFIED );
+        when( request.getHeader( "If-None-Match" ) ).thenReturn( "\"xyz\"" );
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( LAST_MODIFIED );
+        assertTrue( TileHandler.writeValidators( tile, request, response ) );
+    }
+
+    @Test
+    public void testIfModifiedSince() {
+        CacheableTile tile = createTile( "abc", LAST_MODIFIED );
+        // HTTP dates have no milliseconds
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( LAST_MODIFIED - 500 );
+        assertFalse( TileHandler.writeValidators( tile, request, response ) );
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( LAST_MODIFIED + 60000 );
+        assertFalse( TileHandler.writeValidators( tile, request, response ) );
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( LAST_MODIFIED - 1500 );
+        assertTrue( TileHandler.writeValidators( tile, request, response ) );
+    }
+
+    @Test
+    public void testIfModifiedSinceWithoutLastModified() {
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenReturn( LAST_MODIFIED );
+        assertTrue( TileHandler.writeValidators( createTile( "abc", -1 ), request, response ) );
+    }
+
+    @Test
+    public void testInvalidIfModifiedSince() {
+        when( request.getDateHeader( "If-Modified-Since" ) ).thenThrow( new IllegalArgumentException() );
+        assertTrue( TileHandler.writeValidators( createTile( "abc", LAST_MODIFIED ), request, response ) );
+    }
+
+    @Test
+    public void testSendFileAttributes()
+                            throws IOException {
+        when( request.getAttribute( "org.apache.tomcat.sendfile.support" ) ).thenReturn( Boolean.TRUE );
+        assertTrue( TileHandler.sendFile( createFileTile( 2, 3 ), request, response ) );
+        verify( wrappee ).setContentLength( 3 );
+        verify( request ).setAttribute( "org.apache.tomcat.sendfile.filename", file.getCanonicalPath() );
+        verify( request ).setAttribute( "org.apache.tomcat.sendfile.start", 2L );
+        verify( request ).setAttribute( "org.apache.tomcat.sendfile.end", 5L );
+        verify( wrappee, never() ).getOutputStream();
+    }
+
+    @Test
+    public void testSendFileTransfer()
+                            throws IOException {
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        when( wrappee.getOutputStream() ).thenReturn( new ServletOutputStream() {
+            @Override
+            public void write( int b ) {
+                bos.write( b );
+            }
+        } );
+        assertTrue( TileHandler.sendFile( createFileTile( 2, 3 ), request, response ) );
+        verify( wrappee ).setContentLength( 3 );
+        assertArrayEquals( new byte[] { 2, 3, 4 }, bos.toByteArray() );
+    }
+
+    @Test
+    public void testSendFileNotPossible()
+                            throws IOException {
+        assertFalse( TileHandler.sendFile( createFileTile( 0, 0 ), request, response ) );
+        file.delete();
+        assertFalse( TileHandler.sendFile( createFileTile( 0, 8 ), request, response ) );
+        verify( wrappee, never() ).setContentLength( 8 );
+    }
+
+}
@@ -50,8 +50,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.stream.XMLOutputFactory;
@@ -65,7 +63,9 @@ import org.deegree.process.jaxb.java.ComplexOutputDefinition;
 import org.deegree.process.jaxb.java.LiteralOutputDefinition;
 import org.deegree.process.jaxb.java.ProcessDefinition;
 import org.deegree.process.jaxb.java.ProcessletOutputDefinition;
+import org.deegree.services.controller.Credentials;
 import org.deegree.services.controller.OGCFrontController;
+import org.deegree.services.controller.RequestContext;
 import org.deegree.services.controller.utils.HttpResponseBuffer;
 import org.deegree.services.wps.execute.ExecuteRequest;
 import org.deegree.services.wps.execute.ExecuteResponse;
@@ -101,7 +101,7 @@ public class ExecutionManager {
 
     private final StorageManager storageManager;
 
-    private final ExecutorService exec;
+    private final ProcessScheduler scheduler;
 
     // number of executions to keep track of
     private final int maxEntries;
@@ -109,7 +109,7 @@ public class ExecutionManager {
     // list of all processes that have been run or are currently running
     private ConcurrentLinkedQueue<ProcessExecution> processStateList = new ConcurrentLinkedQueue<ProcessExecution>();
 
-    // key: response document of the process (currently running), value: status object
+    // key: response document of the process (currently queued or running), value: status object
     private Map<ResponseDocumentStorage, ProcessExecution> responseDocumentIdToState = new ConcurrentHashMap<ResponseDocumentStorage, ProcessExecution>();
 
     /**
@@ -122,11 +122,13 @@ public class ExecutionManager {
      *            outputs)
      * @param maxExecutions
      *            number of executions to keep track of
+     * @param scheduler
+     *            used for performing the process executions
      */
-    ExecutionManager( WPService master, StorageManager storageManager, int maxExecutions ) {
+    ExecutionManager( WPService master, StorageManager storageManager, int maxExecutions, ProcessScheduler scheduler ) {
         this.storageManager = storageManager;
-        this.exec = Executors.newCachedThreadPool();
         this.maxEntries = maxExecutions;
+        this.scheduler = scheduler;
     }
 
     /**
@@ -159,9 +161,9 @@ public class ExecutionManager {
     }
 
     /**
-     * Returns a collection of information on all running processes.
+     * Returns a collection of information on all pending (queued or running) asynchronous processes.
      * 
-     * @return information on all running processes. The returned result should not be modified.
+     * @return information on all pending processes. The returned result should not be modified.
      */
     public Collection<ProcessExecution> getRunningProcesses() {
         return responseDocumentIdToState.values();
@@ -211,7 +213,7 @@ public class ExecutionManager {
         ProcessletOutputs outputParams = new ProcessletOutputs( processDef, Collections.singletonList( outputParam ) );
 
         ProcessExecution state = createProcessletExecution( request, null, null, null, outputParams );
-        executeProcess( process.getProcesslet(), inputs, outputParams, state );
+        executeSynchronously( process, inputs, outputParams, state );
         if ( state.getExecutionState() == FAILED ) {
             OWSException e = state.getFailedException();
             if ( e == null ) {
@@ -305,10 +307,22 @@ public class ExecutionManager {
 
             state = createProcessletExecution( request, responseStorage, serviceInstance, outputParams, outputs );
 
+            // register the storage location of the response document, so the status can be requested while queued
+            responseDocumentIdToState.put( responseStorage, state );
+
             // submit the process for asynchronous execution
             ProcessWorker worker = new ProcessWorker( process.getProcesslet(), outputs, state, outputParams,
                                                       responseStorage, request, serviceInstance );
-            exec.execute( worker );
+            try {
+                int queued = scheduler.submit( request.getProcessId(), getClientId(), worker );
+                if ( queued > 0 ) {
+                    state.setAccepted( "Process execution accepted, queue position: " + queued );
+                }
+            } catch ( ServerBusyException e ) {
+                responseDocumentIdToState.remove( responseStorage );
+                state.setFailed( e );
+                throw e;
+            }
         } else {
             // response is directly returned in the HTTP response stream (-> synchronous process execution)
             LOG.debug( "Return response document in response stream (synchronous execution)" );
@@ -319,7 +333,7 @@ public class ExecutionManager {
             }
 
             state = createProcessletExecution( request, responseStorage, serviceInstance, outputParams, outputs );
-            executeProcess( process.getProcesslet(), inputs, outputs, state );
+            executeSynchronously( process, inputs, outputs, state );
         }
 
         // write ExecuteResponse document
@@ -338,6 +352,27 @@ public class ExecutionManager {
         }
     }
 
+    /**
+     * Stops the execution of queued processes and releases the worker threads. Queued asynchronous executions are
+     * marked as failed, so clients polling their status do not wait forever.
+     */
+    void shutdown() {
+        for ( Runnable discarded : scheduler.shutdown() ) {
+            if ( discarded instanceof ProcessWorker ) {
+                ( (ProcessWorker) discarded ).discard();
+            }
+        }
+    }
+
+    /**
+     * Returns the {@link ProcessScheduler} that performs the process executions.
+     * 
+     * @return the scheduler, never <code>null</code>
+     */
+    public ProcessScheduler getScheduler() {
+        return scheduler;
+    }
+
     /**
      * @param response
      * @param location
@@ -419,6 +454,38 @@ public class ExecutionManager {
         return processOutput;
     }
 
+    private void executeSynchronously( final WPSProcess process, final ProcessletInputs inputs,
+                                       final ProcessletOutputs outputs, final ProcessExecution state )
+                            throws ServerBusyException {
+        scheduler.run( state.getProcessId(), getClientId(), new Runnable() {
+            @SuppressWarnings("synthetic-access")
+            @Override
+            public void run() {
+                executeProcess( process.getProcesslet(), inputs, outputs, state );
+            }
+        } );
+    }
+
+    /**
+     * Determines the identifier of the client that issued the current request (used for sharing the execution pools
+     * fairly between clients).
+     * 
+     * @return authenticated user or remote address of the client, never <code>null</code>
+     */
+    private String getClientId() {
+        RequestContext context = OGCFrontController.getContext();
+        if ( context != null ) {
+            Credentials credentials = context.getCredentials();
+            if ( credentials != null && credentials.getUser() != null ) {
+                return credentials.getUser();
+            }
+            if ( context.getRemoteAddress() != null ) {
+                return context.getRemoteAddress();
+            }
+        }
+        return "unknown";
+    }
+
     private void executeProcess( Processlet process, ProcessletInputs inputs, ProcessletOutputs outputs,
                                  ProcessExecution state ) {
         try {
@@ -496,35 +563,50 @@ public class ExecutionManager {
         @SuppressWarnings("synthetic-access")
         @Override
         public void run() {
-
-            // register the storage location of the response document from the lookup map
-            responseDocumentIdToState.put( responseStorage, state );
-
             try {
                 executeProcess( process, request.getDataInputs(), outputs, state );
-
-                LOG.debug( "Storing final response document at " + responseStorage );
-
-                // write final ExecuteResponse document
-                try {
-                    ExecuteResponse executeResponse = new ExecuteResponse( responseStorage, serviceInstance, state,
-                                                                           outputParams, outputs, request );
-
-                    XMLOutputFactory factory = XMLOutputFactory.newInstance();
-                    factory.setProperty( "javax.xml.stream.isRepairingNamespaces", Boolean.TRUE );
-                    XMLStreamWriter writer = factory.createXMLStreamWriter( new OutputStreamWriter(
-                                                                                                    responseStorage.getOutputStream(),
-                                                                                                    "UTF-8" ) );
-                    ExecuteResponseXMLWriter.export100( writer, executeResponse );
-                    writer.flush();
-                } catch ( Exception e ) {
-                    String msg = "Generating ExecuteResponse document failed: " + e.getMessage();
-                    LOG.error( msg, e );
-                }
+                storeResponse();
             } finally {
                 // deregister the storage location of the response document
                 responseDocumentIdToState.remove( responseStorage );
             }
         }
+
+        /**
+         * Marks the (queued) execution as failed, because it will never be started.
+         */
+        @SuppressWarnings("synthetic-access")
+        void discard() {
+            LOG.debug( "Discarding queued execution of process '" + request.getProcessId() + "'." );
+            try {
+                state.setFailed( new ServerBusyException( "Server has been shut down before the process execution "
+                                                          + "was started. Please resubmit the request.", 1 ) );
+                storeResponse();
+            } finally {
+                responseDocumentIdToState.remove( responseStorage );
+            }
+        }
+
+        @SuppressWarnings("synthetic-access")
+        private void storeResponse() {
+            LOG.debug( "Storing final response document at " + responseStorage );
+
+            // write final ExecuteResponse document
+            try {
+                ExecuteResponse executeResponse = new ExecuteResponse( responseStorage, serviceInstance, state,
+                                                                       outputParams, outputs, request );
+
+                XMLOutputFactory factory = XMLOutputFactory.newInstance();
+                factory.setProperty( "javax.xml.stream.isRepairingNamespaces", Boolean.TRUE );
+                XMLStreamWriter writer = factory.createXMLStreamWriter( new OutputStreamWriter(
+                                                                                                responseStorage.getOutputStream(),
+                                                                                                "UTF-8" ) );
+                ExecuteResponseXMLWriter.export100( writer, executeResponse );
+                writer.flush();
+            } catch ( Exception e ) {
+                String msg = "Generating ExecuteResponse document failed: " + e.getMessage();
+                LOG.error( msg, e );
+            }
+        }
     }
 }
@@ -0,0 +1,497 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wps;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes processes with a bounded number of worker threads and a bounded, prioritized queue.
+ * <p>
+ * If all workers are busy, executions are queued. Queued executions are started in the order of their priority. For
+ * executions of equal priority, the execution of the client with the least running executions in this pool is started
+ * first, then the one of the client that has waited longest since its last start (round robin), so a single client
+ * cannot monopolize the pool by submitting many requests.
+ * Executions are rejected (with a {@link ServerBusyException}) if the queue is full or the client has too many queued
+ * executions.
+ * </p>
+ * <p>
+ * Asynchronous executions are performed by the worker threads of the pool, synchronous ones are performed by the
+ * calling thread (after it has been granted a slot in the pool).
+ * </p>
+ * 
+ * @see ProcessScheduler
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ExecutionPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger( ExecutionPool.class );
+
+    private final String name;
+
+    private final int maxThreads;
+
+    private final int maxQueued;
+
+    private final int maxQueuedPerClient;
+
+    private final ExecutorService workers;
+
+    // guarded by this
+    private final List<QueuedExecution> queue = new ArrayList<QueuedExecution>();
+
+    // guarded by this
+    private final Map<String, Integer> clientToRunning = new HashMap<String, Integer>();
+
+    // guarded by this
+    private final Map<String, Integer> clientToQueued = new HashMap<String, Integer>();
+
+    // guarded by this, value: sequence number of the last start of an execution of the client
+    private final Map<String, Long> clientToLastStart = new HashMap<String, Long>();
+
+    // guarded by this
+    private int running;
+
+    // guarded by this
+    private boolean shutdown;
+
+    // guarded by this
+    private long sequence;
+
+    // guarded by this (metrics)
+    private long accepted, rejected, completed, queuedTotal, totalWaitTime, maxWaitTime, totalRunTime;
+
+    /**
+     * Creates a new {@link ExecutionPool} instance.
+     * 
+     * @param name
+     *            name of the pool (used for logging and thread names), must not be <code>null</code>
+     * @param maxThreads
+     *            maximum number of concurrent executions, must be positive
+     * @param maxQueued
+     *            maximum number of queued executions, zero disables queueing
+     * @param maxQueuedPerClient
+     *            maximum number of queued executions per client, zero or less for no limit
+     */
+    public ExecutionPool( final String name, int maxThreads, int maxQueued, int maxQueuedPerClient ) {
+        if ( maxThreads < 1 ) {
+            throw new IllegalArgumentException( "Number of threads of execution pool '" + name
+                                                + "' must be positive." );
+        }
+        this.name = name;
+        this.maxThreads = maxThreads;
+        this.maxQueued = Math.max( 0, maxQueued );
+        this.maxQueuedPerClient = maxQueuedPerClient;
+        this.workers = Executors.newFixedThreadPool( maxThreads, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger( 1 );
+
+            @Override
+            public Thread newThread( Runnable r ) {
+                Thread t = new Thread( r, "wps-" + name + "-" + threadNumber.getAndIncrement() );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+    }
+
+    /**
+     * Submits the given execution for asynchronous processing by a worker thread.
+     * 
+     * @param execution
+     *            execution to perform, must not be <code>null</code>
+     * @param client
+     *            identifier of the requesting client, must not be <code>null</code>
+     * @param priority
+     *            priority of the execution, higher values are started first
+     * @return number of executions that are queued in front of the submitted one, <code>0</code> if it has been started
+     *         immediately
+     * @throws ServerBusyException
+     *             if the execution has been rejected
+     */
+    public int submit( Runnable execution, String client, int priority )
+                            throws ServerBusyException {
+        QueuedExecution queued = new QueuedExecution( execution, client, priority, false );
+        synchronized ( this ) {
+            return admit( queued );
+        }
+    }
+
+    /**
+     * Performs the given execution in the calling thread, waiting for a free slot in the pool if necessary.
+     * 
+     * @param execution
+     *            execution to perform, must not be <code>null</code>
+     * @param client
+     *            identifier of the requesting client, must not be <code>null</code>
+     * @param priority
+     *            priority of the execution, higher values are started first
+     * @throws ServerBusyException
+     *             if the execution has been rejected (or the calling thread has been interrupted while waiting)
+     */
+    public void run( Runnable execution, String client, int priority )
+                            throws ServerBusyException {
+        QueuedExecution queued = new QueuedExecution( execution, client, priority, true );
+        synchronized ( this ) {
+            admit( queued );
+            try {
+                while ( !queued.started && !shutdown ) {
+                    wait();
+                }
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                if ( !queued.started ) {
+                    queue.remove( queued );
+                    decrement( clientToQueued, client );
+                    rejected++;
+                    throw new ServerBusyException( "Interrupted while waiting for execution slot.", getRetryAfter() );
+                }
+            }
+            if ( !queued.started ) {
+                throw new ServerBusyException( "Server is shutting down.", getRetryAfter() );
+            }
+        }
+        perform( queued );
+    }
+
+    private int admit( QueuedExecution queued )
+                            throws ServerBusyException {
+        if ( shutdown ) {
+            rejected++;
+            throw new ServerBusyException( "Server is shutting down.", getRetryAfter() );
+        }
+        if ( running < maxThreads && queue.isEmpty() ) {
+            accepted++;
+            start( queued );
+            return 0;
+        }
+        if ( queue.size() >= maxQueued ) {
+            rejected++;
+            LOG.debug( "Rejecting execution in pool '{}': queue is full ({} queued).", name, queue.size() );
+            throw new ServerBusyException( "Server is busy: too many executions are queued. Please retry later.",
+                                           getRetryAfter() );
+        }
+        if ( maxQueuedPerClient > 0 && count( clientToQueued, queued.client ) >= maxQueuedPerClient ) {
+            rejected++;
+            LOG.debug( "Rejecting execution in pool '{}': client '{}' has too many queued executions.", name,
+                       queued.client );
+            throw new ServerBusyException( "Server is busy: too many executions of this client are queued. "
+                                           + "Please retry later.", getRetryAfter() );
+        }
+        accepted++;
+        queuedTotal++;
+        queue.add( queued );
+        increment( clientToQueued, queued.client );
+        return queue.size();
+    }
+
+    // must be called while holding the lock
+    private void start( QueuedExecution queued ) {
+        running++;
+        increment( clientToRunning, queued.client );
+        clientToLastStart.put( queued.client, sequence++ );
+        queued.started = true;
+        if ( queued.synchronous ) {
+            notifyAll();
+        } else {
+            final QueuedExecution execution = queued;
+            workers.execute( new Runnable() {
+                @Override
+                public void run() {
+                    perform( execution );
+                }
+            } );
+        }
+    }
+
+    private void perform( QueuedExecution queued ) {
+        long start = System.currentTimeMillis();
+        try {
+            queued.execution.run();
+        } finally {
+            finished( queued, start );
+        }
+    }
+
+    private synchronized void finished( QueuedExecution queued, long start ) {
+        long now = System.currentTimeMillis();
+        long waitTime = start - queued.submitted;
+        completed++;
+        totalWaitTime += waitTime;
+        maxWaitTime = Math.max( maxWaitTime, waitTime );
+        totalRunTime += now - start;
+        LOG.debug( "Execution in pool '{}' finished: waited {} ms, ran {} ms.", new Object[] { name, waitTime,
+                                                                                              now - start } );
+        running--;
+        decrement( clientToRunning, queued.client );
+        if ( !clientToRunning.containsKey( queued.client ) && !clientToQueued.containsKey( queued.client ) ) {
+            clientToLastStart.remove( queued.client );
+        }
+        while ( running < maxThreads && !queue.isEmpty() ) {
+            QueuedExecution next = pollNext();
+            decrement( clientToQueued, next.client );
+            start( next );
+        }
+    }
+
+    private QueuedExecution pollNext() {
+        QueuedExecution next = null;
+        for ( QueuedExecution candidate : queue ) {
+            if ( next == null || isBefore( candidate, next ) ) {
+                next = candidate;
+            }
+        }
+        queue.remove( next );
+        return next;
+    }
+
+    private boolean isBefore( QueuedExecution a, QueuedExecution b ) {
+        if ( a.priority != b.priority ) {
+            return a.priority > b.priority;
+        }
+        int runningA = count( clientToRunning, a.client );
+        int runningB = count( clientToRunning, b.client );
+        if ( runningA != runningB ) {
+            return runningA < runningB;
+        }
+        return getLastStart( a.client ) < getLastStart( b.client );
+    }
+
+    private long getLastStart( String client ) {
+        Long lastStart = clientToLastStart.get( client );
+        return lastStart == null ? -1 : lastStart;
+    }
+
+    // must be called while holding the lock
+    private int getRetryAfter() {
+        long avgRunTime = completed == 0 ? 1000 : totalRunTime / completed;
+        long estimate = avgRunTime * ( queue.size() / maxThreads + 1 ) / 1000;
+        return (int) Math.max( 1, Math.min( estimate, 3600 ) );
+    }
+
+    private static int count( Map<String, Integer> counts, String client ) {
+        Integer count = counts.get( client );
+        return count == null ? 0 : count;
+    }
+
+    private static void increment( Map<String, Integer> counts, String client ) {
+        counts.put( client, count( counts, client ) + 1 );
+    }
+
+    private static void decrement( Map<String, Integer> counts, String client ) {
+        int count = count( counts, client ) - 1;
+        if ( count > 0 ) {
+            counts.put( client, count );
+        } else {
+            counts.remove( client );
+        }
+    }
+
+    /**
+     * Returns the name of the pool.
+     * 
+     * @return name of the pool, never <code>null</code>
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of concurrent executions.
+     * 
+     * @return maximum number of concurrent executions
+     */
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Returns the number of currently running executions.
+     * 
+     * @return number of running executions
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the number of currently queued executions.
+     * 
+     * @return number of queued executions
+     */
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the saturation of the pool.
+     * 
+     * @return ratio of running executions to worker threads (<code>1.0</code> if all threads are busy)
+     */
+    public synchronized double getSaturation() {
+        return (double) running / maxThreads;
+    }
+
+    /**
+     * Returns the number of accepted executions.
+     * 
+     * @return number of accepted executions (started immediately or queued)
+     */
+    public synchronized long getAccepted() {
+        return accepted;
+    }
+
+    /**
+     * Returns the number of executions that had to be queued, because all worker threads were busy.
+     * 
+     * @return number of queued executions (since the pool has been created)
+     */
+    public synchronized long getQueuedTotal() {
+        return queuedTotal;
+    }
+
+    /**
+     * Returns the number of rejected executions.
+     * 
+     * @return number of rejected executions
+     */
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the number of completed executions.
+     * 
+     * @return number of completed executions (successful or failed)
+     */
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Returns the average time that completed executions spent in the queue.
+     * 
+     * @return average queue wait time in milliseconds
+     */
+    public synchronized long getAverageWaitTime() {
+        return completed == 0 ? 0 : totalWaitTime / completed;
+    }
+
+    /**
+     * Returns the maximum time that a completed execution spent in the queue.
+     * 
+     * @return maximum queue wait time in milliseconds
+     */
+    public synchronized long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * Returns the average run time of completed executions.
+     * 
+     * @return average run time in milliseconds
+     */
+    public synchronized long getAverageRunTime() {
+        return completed == 0 ? 0 : totalRunTime / completed;
+    }
+
+    /**
+     * Stops the worker threads. Queued executions are discarded, running executions are not interrupted.
+     * <p>
+     * Callers waiting for a slot for a synchronous execution are woken up and receive a {@link ServerBusyException}.
+     * Queued asynchronous executions are returned, so the caller can mark them as failed.
+     * </p>
+     * 
+     * @return queued asynchronous executions that have been discarded, never <code>null</code>
+     */
+    public synchronized List<Runnable> shutdown() {
+        List<Runnable> discarded = new ArrayList<Runnable>();
+        if ( !queue.isEmpty() ) {
+            LOG.warn( "Discarding {} queued executions of pool '{}'.", queue.size(), name );
+            for ( QueuedExecution queued : queue ) {
+                if ( !queued.synchronous ) {
+                    discarded.add( queued.execution );
+                }
+            }
+            queue.clear();
+            clientToQueued.clear();
+        }
+        shutdown = true;
+        notifyAll();
+        workers.shutdown();
+        return discarded;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (threads: " + maxThreads + ", queue: " + maxQueued + ")";
+    }
+
+    private static class QueuedExecution {
+
+        private final Runnable execution;
+
+        private final String client;
+
+        private final int priority;
+
+        private final boolean synchronous;
+
+        private final long submitted = System.currentTimeMillis();
+
+        // guarded by the pool
+        private boolean started;
+
+        QueuedExecution( Runnable execution, String client, int priority, boolean synchronous ) {
+            this.execution = execution;
+            this.client = client;
+            this.priority = priority;
+            this.synchronous = synchronous;
+        }
+    }
+}
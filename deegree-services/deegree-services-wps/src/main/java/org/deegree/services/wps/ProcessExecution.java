@@ -76,23 +76,23 @@ public class ProcessExecution implements ProcessletExecutionInfo {
 
     private final ProcessletOutputs outputs;
 
-    private ExecutionState processState;
+    private volatile ExecutionState processState;
 
-    private String acceptedMessage;
+    private volatile String acceptedMessage;
 
-    private String succeededMessage;
+    private volatile String succeededMessage;
 
-    private String startedMessage;
+    private volatile String startedMessage;
 
-    private String pausedMessage;
+    private volatile String pausedMessage;
 
-    private OWSException failedException;
+    private volatile OWSException failedException;
 
-    private long startTime = -1;
+    private volatile long startTime = -1;
 
-    private long finishTime = -1;
+    private volatile long finishTime = -1;
 
-    private int percentCompleted;
+    private volatile int percentCompleted;
 
     /**
      * Creates a new {@link ProcessExecution} for a {@link Processlet} that has been accepted for execution.
@@ -216,12 +216,23 @@ public class ProcessExecution implements ProcessletExecutionInfo {
         return failedException;
     }
 
+    /**
+     * Sets the message of the {@link ExecutionState#ACCEPTED} state (e.g. to report the position in the queue).
+     * 
+     * @param msg
+     *            additional human-readable client information, may be null
+     */
+    void setAccepted( String msg ) {
+        this.acceptedMessage = msg;
+    }
+
     /**
      * Sets the processing state to {@link ExecutionState#STARTED}.
      */
     void setStarted() {
-        this.processState = STARTED;
+        // the state is set last, so the other fields are consistent when the state becomes visible to other threads
         this.startTime = System.currentTimeMillis();
+        this.processState = STARTED;
     }
 
     /**
@@ -231,9 +242,9 @@ public class ProcessExecution implements ProcessletExecutionInfo {
      *            additional human-readable client information, may be null
      */
     void setSucceeded( String msg ) {
-        this.processState = SUCCEEDED;
         this.finishTime = System.currentTimeMillis();
         this.succeededMessage = msg;
+        this.processState = SUCCEEDED;
     }
 
     /**
@@ -243,8 +254,8 @@ public class ProcessExecution implements ProcessletExecutionInfo {
      *            additional human-readable client information, may be null
      */
     void setPaused( String msg ) {
-        this.processState = PAUSED;
         this.pausedMessage = msg;
+        this.processState = PAUSED;
     }
 
     /**
@@ -254,8 +265,8 @@ public class ProcessExecution implements ProcessletExecutionInfo {
      *            exception that describes the reason for the failure
      */
     void setFailed( OWSException e ) {
-        this.processState = FAILED;
         this.failedException = e;
+        this.processState = FAILED;
     }
 
     /**
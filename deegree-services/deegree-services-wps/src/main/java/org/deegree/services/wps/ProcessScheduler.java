@@ -0,0 +1,165 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.deegree.commons.tom.ows.CodeType;
+
+/**
+ * Assigns process executions to {@link ExecutionPool}s.
+ * <p>
+ * Processes can be assigned to dedicated pools (e.g. to separate long-running processes from fast ones) and get a
+ * priority that determines the order in which queued executions are started. Executions of all other processes are
+ * performed by the default pool with priority <code>0</code>.
+ * </p>
+ * 
+ * @see ExecutionManager
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ProcessScheduler {
+
+    private final ExecutionPool defaultPool;
+
+    private final Map<String, ExecutionPool> processIdToPool = new HashMap<String, ExecutionPool>();
+
+    private final Map<String, Integer> processIdToPriority = new HashMap<String, Integer>();
+
+    /**
+     * Creates a new {@link ProcessScheduler} instance.
+     * 
+     * @param defaultPool
+     *            pool for all processes that are not assigned to a dedicated pool, must not be <code>null</code>
+     */
+    public ProcessScheduler( ExecutionPool defaultPool ) {
+        this.defaultPool = defaultPool;
+    }
+
+    /**
+     * Assigns the specified process to the given pool.
+     * 
+     * @param processId
+     *            identifier of the process, must not be <code>null</code>
+     * @param pool
+     *            pool to perform the executions of the process, must not be <code>null</code>
+     * @param priority
+     *            priority of the executions of the process, higher values are started first
+     */
+    public void assign( String processId, ExecutionPool pool, int priority ) {
+        processIdToPool.put( processId, pool );
+        processIdToPriority.put( processId, priority );
+    }
+
+    /**
+     * Submits the given execution for asynchronous processing.
+     * 
+     * @param processId
+     *            identifier of the executed process, must not be <code>null</code>
+     * @param client
+     *            identifier of the requesting client, must not be <code>null</code>
+     * @param execution
+     *            execution to perform, must not be <code>null</code>
+     * @return number of executions that are queued in front of the submitted one, <code>0</code> if it has been started
+     *         immediately
+     * @throws ServerBusyException
+     *             if the execution has been rejected
+     */
+    public int submit( CodeType processId, String client, Runnable execution )
+                            throws ServerBusyException {
+        return getPool( processId ).submit( execution, client, getPriority( processId ) );
+    }
+
+    /**
+     * Performs the given execution in the calling thread, waiting for a free slot if necessary.
+     * 
+     * @param processId
+     *            identifier of the executed process, must not be <code>null</code>
+     * @param client
+     *            identifier of the requesting client, must not be <code>null</code>
+     * @param execution
+     *            execution to perform, must not be <code>null</code>
+     * @throws ServerBusyException
+     *             if the execution has been rejected
+     */
+    public void run( CodeType processId, String client, Runnable execution )
+                            throws ServerBusyException {
+        getPool( processId ).run( execution, client, getPriority( processId ) );
+    }
+
+    /**
+     * Returns all pools (e.g. for monitoring).
+     * 
+     * @return all pools, starting with the default pool, never <code>null</code>
+     */
+    public List<ExecutionPool> getPools() {
+        Set<ExecutionPool> pools = new LinkedHashSet<ExecutionPool>();
+        pools.add( defaultPool );
+        pools.addAll( processIdToPool.values() );
+        return Collections.unmodifiableList( new ArrayList<ExecutionPool>( pools ) );
+    }
+
+    /**
+     * Stops the worker threads of all pools.
+     * 
+     * @return queued asynchronous executions that have been discarded, never <code>null</code>
+     */
+    public List<Runnable> shutdown() {
+        List<Runnable> discarded = new ArrayList<Runnable>();
+        for ( ExecutionPool pool : getPools() ) {
+            discarded.addAll( pool.shutdown() );
+        }
+        return discarded;
+    }
+
+    private ExecutionPool getPool( CodeType processId ) {
+        ExecutionPool pool = processIdToPool.get( processId.getCode() );
+        return pool != null ? pool : defaultPool;
+    }
+
+    private int getPriority( CodeType processId ) {
+        Integer priority = processIdToPriority.get( processId.getCode() );
+        return priority != null ? priority : 0;
+    }
+}
@@ -0,0 +1,82 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wps;
+
+import org.deegree.commons.ows.exception.OWSException;
+
+/**
+ * {@link OWSException} that indicates that a process execution has been rejected, because the server is too busy to
+ * accept it.
+ * 
+ * @see ExecutionPool
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ServerBusyException extends OWSException {
+
+    private static final long serialVersionUID = -2460342427396573915L;
+
+    /**
+     * Exception code for rejected executions (see WPS 1.0.0 specification, table 62).
+     */
+    public static final String SERVER_BUSY = "ServerBusy";
+
+    private final int retryAfter;
+
+    /**
+     * Creates a new {@link ServerBusyException} instance.
+     * 
+     * @param message
+     *            the exception text
+     * @param retryAfter
+     *            number of seconds after which the client should retry the request
+     */
+    public ServerBusyException( String message, int retryAfter ) {
+        super( message, SERVER_BUSY );
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Returns the number of seconds after which the client should retry the request.
+     * 
+     * @return number of seconds (estimate)
+     */
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+}
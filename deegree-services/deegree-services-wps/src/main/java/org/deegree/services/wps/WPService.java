@@ -152,6 +152,10 @@ public class WPService extends AbstractOWS {
         String storage = "../var/wps";
         int trackedExecutions = 100;
         int inputDiskSwitchLimit = 1024 * 1024;
+        int maxThreads = Runtime.getRuntime().availableProcessors();
+        int maxQueued = 100;
+        int maxQueuedPerClient = 0;
+        List<DefaultExecutionManager.ExecutionPool> poolConfigs = new ArrayList<DefaultExecutionManager.ExecutionPool>();
         if ( sc.getAbstractExecutionManager() != null ) {
             LOG.info( "Explicit ExecutionManager config." );
             DefaultExecutionManager execManagerConfig = (DefaultExecutionManager) sc.getAbstractExecutionManager().getValue();
@@ -164,6 +168,16 @@ public class WPService extends AbstractOWS {
             if ( execManagerConfig.getInputDiskSwitchLimit() != null ) {
                 inputDiskSwitchLimit = execManagerConfig.getInputDiskSwitchLimit().intValue();
             }
+            if ( execManagerConfig.getMaxThreads() != null ) {
+                maxThreads = execManagerConfig.getMaxThreads().intValue();
+            }
+            if ( execManagerConfig.getMaxQueuedExecutions() != null ) {
+                maxQueued = execManagerConfig.getMaxQueuedExecutions().intValue();
+            }
+            if ( execManagerConfig.getMaxQueuedExecutionsPerClient() != null ) {
+                maxQueuedPerClient = execManagerConfig.getMaxQueuedExecutionsPerClient().intValue();
+            }
+            poolConfigs = execManagerConfig.getExecutionPool();
         }
 
         File storageDir = null;
@@ -184,12 +198,35 @@ public class WPService extends AbstractOWS {
 
         validateAndSetOfferedVersions( sc.getSupportedVersions().getVersion() );
 
-        executeHandler = new ExecutionManager( this, storageManager, trackedExecutions );
+        ProcessScheduler scheduler = createScheduler( maxThreads, maxQueued, maxQueuedPerClient, poolConfigs );
+        executeHandler = new ExecutionManager( this, storageManager, trackedExecutions, scheduler );
         mainMetadataConf = serviceMetadata;
     }
 
+    private ProcessScheduler createScheduler( int maxThreads, int maxQueued, int maxQueuedPerClient,
+                                              List<DefaultExecutionManager.ExecutionPool> poolConfigs ) {
+        ExecutionPool defaultPool = new ExecutionPool( "default", maxThreads, maxQueued, maxQueuedPerClient );
+        LOG.info( "Default execution pool: " + defaultPool );
+        ProcessScheduler scheduler = new ProcessScheduler( defaultPool );
+        int i = 1;
+        for ( DefaultExecutionManager.ExecutionPool poolConfig : poolConfigs ) {
+            String name = poolConfig.getName() != null ? poolConfig.getName() : "pool" + i;
+            ExecutionPool pool = new ExecutionPool( name, poolConfig.getMaxThreads(), poolConfig.getMaxQueued(),
+                                                    poolConfig.getMaxQueuedPerClient() );
+            LOG.info( "Execution pool: " + pool );
+            for ( DefaultExecutionManager.ExecutionPool.Process process : poolConfig.getProcess() ) {
+                scheduler.assign( process.getValue().trim(), pool, process.getPriority() );
+            }
+            i++;
+        }
+        return scheduler;
+    }
+
     @Override
     public void destroy() {
+        if ( executeHandler != null ) {
+            executeHandler.shutdown();
+        }
         // rest should be done by workspace
     }
 
@@ -541,7 +578,12 @@ public class WPService extends AbstractOWS {
 
     private void sendServiceException( OWSException ex, HttpResponseBuffer response )
                             throws ServletException {
-        sendException( null, new OWS110ExceptionReportSerializer( VERSION_100 ), ex, response );
+        Map<String, String> headers = null;
+        if ( ex instanceof ServerBusyException ) {
+            headers = new HashMap<String, String>();
+            headers.put( "Retry-After", "" + ( (ServerBusyException) ex ).getRetryAfter() );
+        }
+        sendException( headers, new OWS110ExceptionReportSerializer( VERSION_100 ), ex, response );
     }
 
 }
@@ -0,0 +1,328 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.services.wps;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link ExecutionPool}.
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+public class ExecutionPoolTest {
+
+    private final List<String> started = Collections.synchronizedList( new ArrayList<String>() );
+
+    private CountDownLatch blocker;
+
+    private ExecutionPool pool;
+
+    @Before
+    public void setUp() {
+        blocker = new CountDownLatch( 1 );
+    }
+
+    @After
+    public void tearDown() {
+        blocker.countDown();
+        if ( pool != null ) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSubmitStartsImmediatelyIfIdle()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 10, 0 );
+        Recorder execution = new Recorder( "a" );
+        assertEquals( 0, pool.submit( execution, "client", 0 ) );
+        execution.awaitFinished();
+        assertEquals( asList( "a" ), started );
+        assertEquals( 1, pool.getAccepted() );
+        assertEquals( 0, pool.getQueuedTotal() );
+    }
+
+    @Test
+    public void testQueuedExecutionsAreStartedByPriority()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 10, 0 );
+        pool.submit( new Blocker(), "blocker", 0 );
+        assertEquals( 1, pool.submit( new Recorder( "low" ), "a", 0 ) );
+        assertEquals( 2, pool.submit( new Recorder( "high" ), "b", 5 ) );
+        assertEquals( 3, pool.submit( new Recorder( "medium" ), "c", 1 ) );
+        assertEquals( 3, pool.getQueued() );
+
+        blocker.countDown();
+        awaitCompleted( 4 );
+        assertEquals( asList( "high", "medium", "low" ), started );
+    }
+
+    @Test
+    public void testQueuedExecutionsAreSharedFairlyBetweenClients()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 10, 0 );
+        pool.submit( new Blocker(), "a", 0 );
+        pool.submit( new Recorder( "a1" ), "a", 0 );
+        pool.submit( new Recorder( "a2" ), "a", 0 );
+        pool.submit( new Recorder( "b1" ), "b", 0 );
+        pool.submit( new Recorder( "a3" ), "a", 0 );
+        pool.submit( new Recorder( "b2" ), "b", 0 );
+
+        blocker.countDown();
+        awaitCompleted( 6 );
+        // b has never been started, then the clients alternate (round robin)
+        assertEquals( asList( "b1", "a1", "b2", "a2", "a3" ), started );
+    }
+
+    @Test
+    public void testClientWithLeastRunningExecutionsIsStartedFirst()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 2, 10, 0 );
+        CountDownLatch first = new CountDownLatch( 1 );
+        pool.submit( new Blocker(), "b", 0 );
+        pool.submit( new Blocker( first ), "a", 0 );
+        pool.submit( new Recorder( "b1" ), "b", 0 );
+        pool.submit( new Recorder( "a1" ), "a", 0 );
+
+        // a's execution finishes while b's execution is still running, so a has less running executions than b (even
+        // though b has waited longer since its last start)
+        first.countDown();
+        awaitCompleted( 2 );
+        assertEquals( "a1", started.get( 0 ) );
+
+        blocker.countDown();
+        awaitCompleted( 4 );
+        assertEquals( asList( "a1", "b1" ), started );
+    }
+
+    @Test
+    public void testRejectIfQueueIsFull()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 1, 0 );
+        pool.submit( new Blocker(), "a", 0 );
+        pool.submit( new Recorder( "queued" ), "b", 0 );
+        try {
+            pool.submit( new Recorder( "rejected" ), "c", 0 );
+            fail( "Expected ServerBusyException." );
+        } catch ( ServerBusyException e ) {
+            assertEquals( ServerBusyException.SERVER_BUSY, e.getExceptionCode() );
+            assertTrue( e.getRetryAfter() >= 1 );
+        }
+        assertEquals( 1, pool.getRejected() );
+        assertEquals( 2, pool.getAccepted() );
+
+        blocker.countDown();
+        awaitCompleted( 2 );
+        assertEquals( asList( "queued" ), started );
+    }
+
+    @Test
+    public void testRejectIfClientHasTooManyQueuedExecutions()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 10, 1 );
+        pool.submit( new Blocker(), "a", 0 );
+        pool.submit( new Recorder( "a1" ), "a", 0 );
+        try {
+            pool.submit( new Recorder( "a2" ), "a", 0 );
+            fail( "Expected ServerBusyException." );
+        } catch ( ServerBusyException e ) {
+            assertEquals( ServerBusyException.SERVER_BUSY, e.getExceptionCode() );
+        }
+        // other clients are not affected
+        pool.submit( new Recorder( "b1" ), "b", 0 );
+        assertEquals( 2, pool.getQueued() );
+    }
+
+    @Test
+    public void testRejectIfQueueingIsDisabled()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 0, 0 );
+        pool.submit( new Blocker(), "a", 0 );
+        try {
+            pool.submit( new Recorder( "a1" ), "b", 0 );
+            fail( "Expected ServerBusyException." );
+        } catch ( ServerBusyException e ) {
+            assertEquals( ServerBusyException.SERVER_BUSY, e.getExceptionCode() );
+        }
+    }
+
+    @Test
+    public void testRunWaitsForSlot()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 10, 0 );
+        pool.submit( new Blocker(), "a", 0 );
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pool.run( new Recorder( "sync" ), "b", 0 );
+                } catch ( Throwable t ) {
+                    error.set( t );
+                }
+            }
+        };
+        caller.start();
+        awaitQueued( 1 );
+        assertTrue( started.isEmpty() );
+
+        blocker.countDown();
+        caller.join( 10000 );
+        assertEquals( null, error.get() );
+        assertEquals( asList( "sync" ), started );
+        assertEquals( 2, pool.getCompleted() );
+    }
+
+    @Test
+    public void testShutdownDiscardsQueuedExecutions()
+                            throws Exception {
+        pool = new ExecutionPool( "test", 1, 10, 0 );
+        pool.submit( new Blocker(), "a", 0 );
+        Recorder queued = new Recorder( "async" );
+        pool.submit( queued, "b", 0 );
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        Thread caller = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    pool.run( new Recorder( "sync" ), "c", 0 );
+                } catch ( Throwable t ) {
+                    error.set( t );
+                }
+            }
+        };
+        caller.start();
+        awaitQueued( 2 );
+
+        // only the asynchronous execution is returned, the waiting caller is rejected
+        List<Runnable> discarded = pool.shutdown();
+        assertEquals( 1, discarded.size() );
+        assertSame( queued, discarded.get( 0 ) );
+        caller.join( 10000 );
+        assertTrue( error.get() instanceof ServerBusyException );
+        assertEquals( 0, pool.getQueued() );
+
+        try {
+            pool.submit( new Recorder( "late" ), "d", 0 );
+            fail( "Expected ServerBusyException." );
+        } catch ( ServerBusyException e ) {
+            assertEquals( ServerBusyException.SERVER_BUSY, e.getExceptionCode() );
+        }
+
+        blocker.countDown();
+        awaitCompleted( 1 );
+        assertTrue( started.isEmpty() );
+    }
+
+    private void awaitQueued( int queued )
+                            throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while ( pool.getQueued() < queued ) {
+            assertTrue( "Timeout waiting for queued executions.", System.currentTimeMillis() < timeout );
+            Thread.sleep( 10 );
+        }
+    }
+
+    private void awaitCompleted( long completed )
+                            throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while ( pool.getCompleted() < completed ) {
+            assertTrue( "Timeout waiting for completed executions.", System.currentTimeMillis() < timeout );
+            Thread.sleep( 10 );
+        }
+    }
+
+    private class Recorder implements Runnable {
+
+        private final String name;
+
+        private final CountDownLatch finished = new CountDownLatch( 1 );
+
+        Recorder( String name ) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            started.add( name );
+            finished.countDown();
+        }
+
+        void awaitFinished()
+                                throws InterruptedException {
+            assertTrue( finished.await( 10, TimeUnit.SECONDS ) );
+        }
+    }
+
+    private class Blocker implements Runnable {
+
+        private final CountDownLatch latch;
+
+        Blocker() {
+            this( blocker );
+        }
+
+        Blocker( CountDownLatch latch ) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            try {
+                latch.await( 10, TimeUnit.SECONDS );
+            } catch ( InterruptedException e ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
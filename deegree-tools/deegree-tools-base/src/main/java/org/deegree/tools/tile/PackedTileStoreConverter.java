@@ -0,0 +1,155 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.tile;
+
+import java.io.File;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.deegree.commons.annotations.Tool;
+import org.deegree.commons.tools.CommandUtils;
+import org.deegree.tile.TileMatrixSet;
+import org.deegree.tile.persistence.filesystem.packed.PackedTileContainer;
+import org.deegree.tile.persistence.filesystem.packed.TileCacheConverter;
+import org.deegree.tile.tilematrixset.TileMatrixSetProvider;
+import org.deegree.tools.i18n.Messages;
+import org.deegree.workspace.Workspace;
+import org.deegree.workspace.standard.DefaultWorkspace;
+
+/**
+ * Converts the tiles of a file system tile store from the TileCache disk layout (one file per tile) into the packed
+ * layout (bundle files).
+ * 
+ * @see TileCacheConverter
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@Tool("Converts a TileCache disk layout directory into the packed layout of the file system tile store")
+public class PackedTileStoreConverter {
+
+    // command line parameters
+    private static final String OPT_WORKSPACE = "workspace";
+
+    private static final String OPT_TILE_MATRIX_SET = "tilematrixset";
+
+    private static final String OPT_SOURCE = "source";
+
+    private static final String OPT_TARGET = "target";
+
+    private static final String OPT_FILE_TYPE = "filetype";
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main( String[] args )
+                            throws Exception {
+
+        // for the moment, using the CLI API there is no way to respond to a help argument; see
+        // https://issues.apache.org/jira/browse/CLI-179
+        if ( args.length == 0 || ( args.length > 0 && ( args[0].contains( "help" ) || args[0].contains( "?" ) ) ) ) {
+            printHelp( initOptions() );
+        }
+
+        try {
+            CommandLine cmdline = new PosixParser().parse( initOptions(), args );
+
+            Workspace ws = new DefaultWorkspace( new File( cmdline.getOptionValue( OPT_WORKSPACE ) ) );
+            ws.initAll();
+
+            String tmsId = cmdline.getOptionValue( OPT_TILE_MATRIX_SET );
+            TileMatrixSet tms = ws.getResource( TileMatrixSetProvider.class, tmsId );
+            if ( tms == null ) {
+                System.err.println( "No tile matrix set with id '" + tmsId + "' found in workspace." );
+                System.exit( 1 );
+            }
+
+            String fileType = cmdline.getOptionValue( OPT_FILE_TYPE );
+            File source = new File( cmdline.getOptionValue( OPT_SOURCE ) );
+            File target = new File( cmdline.getOptionValue( OPT_TARGET ) );
+
+            PackedTileContainer container = new PackedTileContainer( target, fileType,
+                                                                     PackedTileContainer.DEFAULT_MAX_OPEN_FILES );
+            try {
+                System.out.println( "- Converting tiles from '" + source + "' into '" + target + "'..." );
+                long numTiles = new TileCacheConverter( source, fileType, tms.getTileMatrices() ).convert( container );
+                System.out.println( "- Converted " + numTiles + " tiles." );
+            } finally {
+                container.close();
+            }
+            ws.destroy();
+        } catch ( ParseException exp ) {
+            System.err.println( Messages.getMessage( "TOOL_COMMANDLINE_ERROR", exp.getMessage() ) );
+        }
+    }
+
+    private static Options initOptions() {
+
+        Options opts = new Options();
+
+        Option opt = new Option( OPT_WORKSPACE, true, "workspace name" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_TILE_MATRIX_SET, true, "id of the tile matrix set of the tiles" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_SOURCE, true, "layer directory of the TileCache disk layout" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_TARGET, true, "layer directory of the packed layout" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_FILE_TYPE, true, "file type of the tiles, e.g. png" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        CommandUtils.addDefaultOptions( opts );
+        return opts;
+    }
+
+    private static void printHelp( Options options ) {
+        CommandUtils.printHelp( options, PackedTileStoreConverter.class.getSimpleName(), null, null );
+    }
+}
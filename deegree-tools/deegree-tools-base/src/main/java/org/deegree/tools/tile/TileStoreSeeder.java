@@ -0,0 +1,261 @@
+//$HeadURL$
+/*----------------------------------------------------------------------------
+ This file is part of deegree, http://deegree.org/
+ Copyright (C) 2001-2014 by:
+ Department of Geography, University of Bonn
+ and
+ lat/lon GmbH
+
+ This library is free software; you can redistribute it and/or modify it under
+ the terms of the GNU Lesser General Public License as published by the Free
+ Software Foundation; either version 2.1 of the License, or (at your option)
+ any later version.
+ This library is distributed in the hope that it will be useful, but WITHOUT
+ ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ details.
+ You should have received a copy of the GNU Lesser General Public License
+ along with this library; if not, write to the Free Software Foundation, Inc.,
+ 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+
+ Contact information:
+
+ lat/lon GmbH
+ Aennchenstr. 19, 53177 Bonn
+ Germany
+ http://lat-lon.de/
+
+ Department of Geography, University of Bonn
+ Prof. Dr. Klaus Greve
+ Postfach 1147, 53001 Bonn
+ Germany
+ http://www.geographie.uni-bonn.de/deegree/
+
+ e-mail: info@deegree.org
+ ----------------------------------------------------------------------------*/
+package org.deegree.tools.tile;
+
+import static java.util.Arrays.asList;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.deegree.commons.annotations.Tool;
+import org.deegree.commons.tools.CommandUtils;
+import org.deegree.cs.coordinatesystems.ICRS;
+import org.deegree.cs.persistence.CRSManager;
+import org.deegree.geometry.Geometry;
+import org.deegree.geometry.GeometryFactory;
+import org.deegree.geometry.io.WKTReader;
+import org.deegree.services.OWS;
+import org.deegree.services.OWSProvider;
+import org.deegree.services.wms.controller.WMSController;
+import org.deegree.services.wms.seeding.SeedingOptions;
+import org.deegree.services.wms.seeding.SeedingStatistics;
+import org.deegree.services.wms.seeding.TileSeeder;
+import org.deegree.tile.persistence.TileStore;
+import org.deegree.tile.persistence.TileStoreProvider;
+import org.deegree.tools.i18n.Messages;
+import org.deegree.workspace.Workspace;
+import org.deegree.workspace.standard.DefaultWorkspace;
+
+/**
+ * Pre-generates the tiles of a tile store (e.g. a file system tile store) from the themes of a WMS.
+ * 
+ * @see TileSeeder
+ * 
+ * @author last edited by: $Author$
+ * 
+ * @version $Revision$, $Date$
+ */
+@Tool("Pre-generates the tiles of a tile store from the themes of a WMS")
+public class TileStoreSeeder {
+
+    // command line parameters
+    private static final String OPT_WORKSPACE = "workspace";
+
+    private static final String OPT_WMS = "wms";
+
+    private static final String OPT_THEMES = "themes";
+
+    private static final String OPT_STYLES = "styles";
+
+    private static final String OPT_TILE_STORE = "tilestore";
+
+    private static final String OPT_TILE_DATA_SET = "tiledataset";
+
+    private static final String OPT_TILE_MATRICES = "matrices";
+
+    private static final String OPT_BBOX = "bbox";
+
+    private static final String OPT_POLYGON = "polygon";
+
+    private static final String OPT_CRS = "crs";
+
+    private static final String OPT_METATILE = "metatile";
+
+    private static final String OPT_BUFFER = "buffer";
+
+    private static final String OPT_THREADS = "threads";
+
+    private static final String OPT_CHECKPOINT = "checkpoint";
+
+    private static final String OPT_KEEP_EMPTY = "keepempty";
+
+    private static final String OPT_SKIP_UNIFORM = "skipuniform";
+
+    private static final String OPT_OPAQUE = "opaque";
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main( String[] args )
+                            throws Exception {
+
+        // for the moment, using the CLI API there is no way to respond to a help argument; see
+        // https://issues.apache.org/jira/browse/CLI-179
+        if ( args.length == 0 || ( args.length > 0 && ( args[0].contains( "help" ) || args[0].contains( "?" ) ) ) ) {
+            printHelp( initOptions() );
+        }
+
+        try {
+            CommandLine cmdline = new PosixParser().parse( initOptions(), args );
+
+            SeedingOptions options = new SeedingOptions();
+            options.setThemes( asList( cmdline.getOptionValue( OPT_THEMES ).split( "," ) ) );
+            if ( cmdline.hasOption( OPT_STYLES ) ) {
+                options.setStyles( asList( cmdline.getOptionValue( OPT_STYLES ).split( "," ) ) );
+            }
+            if ( cmdline.hasOption( OPT_TILE_MATRICES ) ) {
+                options.setTileMatrices( asList( cmdline.getOptionValue( OPT_TILE_MATRICES ).split( "," ) ) );
+            }
+            options.setArea( getArea( cmdline ) );
+            if ( cmdline.hasOption( OPT_METATILE ) ) {
+                options.setMetatileSize( Integer.parseInt( cmdline.getOptionValue( OPT_METATILE ) ) );
+            }
+            if ( cmdline.hasOption( OPT_BUFFER ) ) {
+                options.setBuffer( Integer.parseInt( cmdline.getOptionValue( OPT_BUFFER ) ) );
+            }
+            if ( cmdline.hasOption( OPT_THREADS ) ) {
+                options.setThreads( Integer.parseInt( cmdline.getOptionValue( OPT_THREADS ) ) );
+            }
+            if ( cmdline.hasOption( OPT_CHECKPOINT ) ) {
+                options.setCheckpointFile( new File( cmdline.getOptionValue( OPT_CHECKPOINT ) ) );
+            }
+            options.setSkipEmpty( !cmdline.hasOption( OPT_KEEP_EMPTY ) );
+            options.setSkipUniform( cmdline.hasOption( OPT_SKIP_UNIFORM ) );
+            if ( cmdline.hasOption( OPT_OPAQUE ) ) {
+                options.setTransparent( false );
+                options.setBgColor( Color.decode( cmdline.getOptionValue( OPT_OPAQUE ) ) );
+            }
+
+            Workspace ws = new DefaultWorkspace( new File( cmdline.getOptionValue( OPT_WORKSPACE ) ) );
+            ws.initAll();
+
+            String wmsId = cmdline.getOptionValue( OPT_WMS );
+            OWS ows = ws.getResource( OWSProvider.class, wmsId );
+            if ( !( ows instanceof WMSController ) ) {
+                System.err.println( "No WMS with id '" + wmsId + "' found in workspace." );
+                System.exit( 1 );
+            }
+            String tileStoreId = cmdline.getOptionValue( OPT_TILE_STORE );
+            TileStore store = ws.getResource( TileStoreProvider.class, tileStoreId );
+            if ( store == null ) {
+                System.err.println( "No tile store with id '" + tileStoreId + "' found in workspace." );
+                System.exit( 1 );
+            }
+
+            TileSeeder seeder = new TileSeeder( ( (WMSController) ows ).getMapService(), store,
+                                                cmdline.getOptionValue( OPT_TILE_DATA_SET ), options );
+            SeedingStatistics stats = seeder.seed();
+            System.out.println( "- Seeding finished: " + stats );
+            ws.destroy();
+        } catch ( ParseException exp ) {
+            System.err.println( Messages.getMessage( "TOOL_COMMANDLINE_ERROR", exp.getMessage() ) );
+        }
+    }
+
+    private static Geometry getArea( CommandLine cmdline )
+                            throws Exception {
+        ICRS crs = null;
+        if ( cmdline.hasOption( OPT_CRS ) ) {
+            crs = CRSManager.lookup( cmdline.getOptionValue( OPT_CRS ) );
+        }
+        if ( cmdline.hasOption( OPT_POLYGON ) ) {
+            Reader reader = new InputStreamReader( new FileInputStream( cmdline.getOptionValue( OPT_POLYGON ) ),
+                                                   "UTF-8" );
+            try {
+                return new WKTReader( crs ).read( reader );
+            } finally {
+                reader.close();
+            }
+        }
+        if ( cmdline.hasOption( OPT_BBOX ) ) {
+            String[] coords = cmdline.getOptionValue( OPT_BBOX ).split( "," );
+            if ( coords.length != 4 ) {
+                throw new IOException( "Invalid bbox '" + cmdline.getOptionValue( OPT_BBOX ) + "'." );
+            }
+            return new GeometryFactory().createEnvelope( Double.parseDouble( coords[0] ),
+                                                         Double.parseDouble( coords[1] ),
+                                                         Double.parseDouble( coords[2] ),
+                                                         Double.parseDouble( coords[3] ), crs );
+        }
+        return null;
+    }
+
+    private static Options initOptions() {
+
+        Options opts = new Options();
+
+        Option opt = new Option( OPT_WORKSPACE, true, "workspace name" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_WMS, true, "id of the WMS that renders the tiles" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_THEMES, true, "comma separated list of themes to render" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opts.addOption( new Option( OPT_STYLES, true, "comma separated list of styles (one per theme)" ) );
+
+        opt = new Option( OPT_TILE_STORE, true, "id of the tile store to write to" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opt = new Option( OPT_TILE_DATA_SET, true, "id of the tile data set to seed" );
+        opt.setRequired( true );
+        opts.addOption( opt );
+
+        opts.addOption( new Option( OPT_TILE_MATRICES, true, "comma separated list of tile matrices (default: all)" ) );
+        opts.addOption( new Option( OPT_BBOX, true, "area to seed: minx,miny,maxx,maxy" ) );
+        opts.addOption( new Option( OPT_POLYGON, true, "area to seed: file containing a WKT (multi) polygon" ) );
+        opts.addOption( new Option( OPT_CRS, true, "crs of bbox/polygon (default: crs of the tile matrix set)" ) );
+        opts.addOption( new Option( OPT_METATILE, true, "number of tiles per metatile side (default: 8)" ) );
+        opts.addOption( new Option( OPT_BUFFER, true, "pixels rendered around each metatile (default: 0)" ) );
+        opts.addOption( new Option( OPT_THREADS, true, "number of rendering threads (default: number of cpus)" ) );
+        opts.addOption( new Option( OPT_CHECKPOINT, true, "file to record finished metatiles in (for resuming)" ) );
+        opts.addOption( new Option( OPT_KEEP_EMPTY, false, "write empty (fully transparent) tiles as well" ) );
+        opts.addOption( new Option( OPT_SKIP_UNIFORM, false, "skip tiles that consist of a single color" ) );
+        opts.addOption( new Option( OPT_OPAQUE, true, "render opaque tiles with the given background, e.g. #FFFFFF" ) );
+
+        CommandUtils.addDefaultOptions( opts );
+        return opts;
+    }
+
+    private static void printHelp( Options options ) {
+        CommandUtils.printHelp( options, TileStoreSeeder.class.getSimpleName(), null, null );
+    }
+}